@@ -41,6 +41,23 @@ public interface CorpusStructureBridge {
      */
     public String getCorpusNamePathToClosestTopNode(WorkspaceNode node);
     
+    /**
+     * Opens a cache for the paths determined in
+     * getCorpusNamePathToClosestTopNode for nodes of the given workspace,
+     * so that the path of each ancestor is resolved only once
+     * and reused for all its descendants.
+     * To be used while the corpus structure is not expected to change
+     * (e.g. during the export of the workspace tree).
+     * @param workspaceID ID of the workspace
+     */
+    public void openAncestorPathCache(int workspaceID);
+    
+    /**
+     * Discards the cache of paths for nodes of the given workspace.
+     * @param workspaceID ID of the workspace
+     */
+    public void closeAncestorPathCache(int workspaceID);
+    
     /**
      * Retrieves a list containing the URIs (as strings)
      * of both the ancestors and descendants of the given node.
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.archive;
+
+import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
+import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
+
+/**
+ * Read-through cache for the lookups done in the corpus structure database,
+ * so that the same archive nodes are not retrieved again and again
+ * during the creation or the submission of a workspace.
+ * 
+ * @author guisil
+ */
+public interface CorpusStructureCache {
+    
+    /**
+     * Wraps the given provider, so that the lookups of nodes and their parents
+     * are first searched in the cache.
+     * @param provider CorpusStructureProvider to wrap
+     * @return caching CorpusStructureProvider
+     */
+    public CorpusStructureProvider decorate(CorpusStructureProvider provider);
+    
+    /**
+     * Wraps the given resolver, so that the resolved locations and identifiers
+     * of nodes are first searched in the cache.
+     * @param resolver NodeResolver to wrap
+     * @return caching NodeResolver
+     */
+    public NodeResolver decorate(NodeResolver resolver);
+    
+    /**
+     * Discards all the cached lookups.
+     * To be called whenever the corpus structure database changes,
+     * for instance when a crawler finishes.
+     */
+    public void invalidateAll();
+    
+    /**
+     * @return number of lookups which found a cached result
+     */
+    public long getHitCount();
+    
+    /**
+     * @return number of lookups which were passed on to the corpus structure database
+     */
+    public long getMissCount();
+    
+    /**
+     * @return number of lookups currently cached
+     */
+    public int getSize();
+}
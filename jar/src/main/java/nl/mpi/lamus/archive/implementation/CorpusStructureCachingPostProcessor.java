@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.archive.implementation;
+
+import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
+import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
+import nl.mpi.lamus.archive.CorpusStructureCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wraps the CorpusStructureProvider and NodeResolver beans, whichever way
+ * they are configured (production or adapter profiles), with the shared
+ * CorpusStructureCache, so that all the components using them go through the cache.
+ * 
+ * @see BeanPostProcessor
+ * @author guisil
+ */
+@Component
+public class CorpusStructureCachingPostProcessor implements BeanPostProcessor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(CorpusStructureCachingPostProcessor.class);
+    
+    private final CorpusStructureCache corpusStructureCache;
+    
+    @Autowired
+    public CorpusStructureCachingPostProcessor(CorpusStructureCache csCache) {
+        corpusStructureCache = csCache;
+    }
+
+    /**
+     * @see BeanPostProcessor#postProcessBeforeInitialization(java.lang.Object, java.lang.String)
+     */
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        return bean;
+    }
+
+    /**
+     * @see BeanPostProcessor#postProcessAfterInitialization(java.lang.Object, java.lang.String)
+     */
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        
+        if(bean instanceof CorpusStructureProvider) {
+            logger.debug("Caching lookups of bean " + beanName);
+            return corpusStructureCache.decorate((CorpusStructureProvider) bean);
+        }
+        if(bean instanceof NodeResolver) {
+            logger.debug("Caching lookups of bean " + beanName);
+            return corpusStructureCache.decorate((NodeResolver) bean);
+        }
+        return bean;
+    }
+}
@@ -18,9 +18,15 @@ package nl.mpi.lamus.archive.implementation;
 
 import java.io.File;
 import java.net.URI;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import nl.mpi.archiving.corpusstructure.core.CorpusNode;
 import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
 import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
@@ -52,6 +58,11 @@ public class LamusCorpusStructureBridge implements CorpusStructureBridge{
     private final String corpusstructureDirectoryName;
     private final String metadataDirectoryName;
     
+    private static final AncestorPath UNRESOLVED_PATH = new AncestorPath(null, Collections.<String>emptyList());
+    
+    // paths already determined, by workspace and archive URI of the node
+    private final Map<Integer, Map<URI, AncestorPath>> ancestorPathCaches = new ConcurrentHashMap<>();
+    
     
     @Autowired
     public LamusCorpusStructureBridge(
@@ -68,92 +79,50 @@ public class LamusCorpusStructureBridge implements CorpusStructureBridge{
     }
 
     /**
+     * The path of each node is kept as the elements to insert in the path,
+     * derived from the path of its canonical parent, so that (while a cache is open)
+     * each ancestor is resolved only once.
+     * 
      * @see CorpusStructureBridge#getCorpusNamePathToClosestTopNode(nl.mpi.lamus.workspace.model.WorkspaceNode)
      */
     @Override
     public String getCorpusNamePathToClosestTopNode(WorkspaceNode node) {
         
-        StringBuilder pathSoFar = new StringBuilder();
-        boolean foundTopNode = false;
-        
-        URI currentNodeURI = node.getArchiveURI();
-        
-        logger.trace("Node archive uri: " + currentNodeURI.toString());
+        Map<URI, AncestorPath> cache = ancestorPathCaches.get(node.getWorkspaceID());
+        if(cache == null) {
+            cache = new HashMap<>();
+        }
         
-        CorpusNode currentCorpusNode = corpusStructureProvider.getNode(currentNodeURI);
-        if(currentCorpusNode == null) {
-            String errorMessage = "Node not found in archive database for URI " + currentNodeURI;
-            logger.error(errorMessage);
+        AncestorPath nodePath = getAncestorPath(node.getArchiveURI(), cache);
+        if(nodePath == UNRESOLVED_PATH) {
             return null;
         }
-        File currentLocalFile = nodeResolver.getLocalFile(currentCorpusNode);
-        String currentLocalPath = currentLocalFile.getAbsolutePath();
         
-        logger.trace("Node local path: " + currentLocalPath);
-
-        boolean currentPathContainsCorpusstructureDir = currentLocalPath.contains(File.separator + corpusstructureDirectoryName + File.separator);
-        boolean currentPathContainsMetadataDir = currentLocalPath.contains(File.separator + metadataDirectoryName + File.separator);
-        
-        String nextNodeNameToInsert = "";
-        
-        while(!foundTopNode) {
-        
-            URI parentNodeURI = corpusStructureProvider.getCanonicalParent(currentNodeURI);
-            if(parentNodeURI == null) {
-                String errorMessage = "Could not retrieve canonical parent for node " + currentNodeURI;
-                logger.error(errorMessage);
-                return null;
-            }
-            CorpusNode parentCorpusNode = corpusStructureProvider.getNode(parentNodeURI);
-            if(parentCorpusNode == null) {
-                String errorMessage = "Node not found in archive database for URI " + parentNodeURI;
-                logger.error(errorMessage);
-                return null;
-            }
-            File parentLocalFile = nodeResolver.getLocalFile(parentCorpusNode);
-            String parentLocalPath = parentLocalFile.getAbsolutePath();
-            boolean parentPathContainsCorpusstructureDir = parentLocalPath.contains(File.separator + corpusstructureDirectoryName + File.separator);
-            boolean parentPathContainsMetadataDir = parentLocalPath.contains(File.separator + metadataDirectoryName + File.separator);
-            
-            logger.trace("Parent local path: " + parentLocalPath);
-            
-            if(currentPathContainsCorpusstructureDir) {
-                String currentDirectory = FilenameUtils.getFullPath(currentLocalPath);
-                String parentDirectory = FilenameUtils.getFullPath(parentLocalPath);
-                
-                logger.trace("Parent directory: " + parentDirectory + " Current directory: " + currentDirectory);
-
-                if(!currentDirectory.equals(parentDirectory)) {
-                    foundTopNode = true;
-                    
-                    //for the top node, the path name (instead of the node name) should be used, since top node folders were probably created by corpus managers
-                    if(!nextNodeNameToInsert.isEmpty()) {
-                        insertStringInTheBeginning(pathSoFar, archiveFileLocationProvider.getFolderNameBeforeCorpusstructure(currentDirectory));
-                    }
-                    
-                } else {
-                    if(!nextNodeNameToInsert.isEmpty()) {
-                        insertStringInTheBeginning(pathSoFar, nextNodeNameToInsert);
-                    }
-                    nextNodeNameToInsert = archiveFileHelper.correctPathElement(parentCorpusNode.getName(), "getCorpusNamePathToClosestTopNode");
-                }
-            } else if(currentPathContainsMetadataDir && parentPathContainsCorpusstructureDir) {
-                if(!nextNodeNameToInsert.isEmpty()) {
-                    insertStringInTheBeginning(pathSoFar, nextNodeNameToInsert);
-                }
-                nextNodeNameToInsert = archiveFileHelper.correctPathElement(parentCorpusNode.getName(), "getCorpusNamePathToClosestTopNode");
-            }
-            
-            currentNodeURI = parentNodeURI;
-            currentCorpusNode = parentCorpusNode;
-            currentLocalFile = parentLocalFile;
-            currentLocalPath = parentLocalPath;
-            currentPathContainsCorpusstructureDir = parentPathContainsCorpusstructureDir;
-            currentPathContainsMetadataDir = parentPathContainsMetadataDir;
+        StringBuilder pathSoFar = new StringBuilder();
+        for(String element : nodePath.insertionsWithoutPendingName) {
+            insertStringInTheBeginning(pathSoFar, element);
         }
-        
         return pathSoFar.toString();
     }
+    
+    /**
+     * @see CorpusStructureBridge#openAncestorPathCache(int)
+     */
+    @Override
+    public void openAncestorPathCache(int workspaceID) {
+        ancestorPathCaches.put(workspaceID, new ConcurrentHashMap<URI, AncestorPath>());
+    }
+    
+    /**
+     * @see CorpusStructureBridge#closeAncestorPathCache(int)
+     */
+    @Override
+    public void closeAncestorPathCache(int workspaceID) {
+        Map<URI, AncestorPath> cache = ancestorPathCaches.remove(workspaceID);
+        if(cache != null) {
+            logger.debug("Closed ancestor path cache of workspace " + workspaceID + "; " + cache.size() + " nodes were resolved");
+        }
+    }
 
     /**
      * @see CorpusStructureBridge#getURIsOfAncestorsAndDescendants(java.net.URI)
@@ -205,10 +174,206 @@ public class LamusCorpusStructureBridge implements CorpusStructureBridge{
     }
     
     
+    private AncestorPath getAncestorPath(URI nodeURI, Map<URI, AncestorPath> cache) {
+        
+        AncestorPath cachedPath = cache.get(nodeURI);
+        if(cachedPath != null) {
+            return cachedPath;
+        }
+        
+        logger.trace("Node archive uri: " + nodeURI.toString());
+        
+        NodeLocation current = getNodeLocation(nodeURI);
+        if(current == null) {
+            cache.put(nodeURI, UNRESOLVED_PATH);
+            return UNRESOLVED_PATH;
+        }
+        
+        // nodes whose path depends on the path of the node above them, the closest on top
+        Deque<NodeLocation> pendingNodes = new ArrayDeque<>();
+        AncestorPath resolvedPath = null;
+        
+        while(resolvedPath == null) {
+            
+            URI parentNodeURI = corpusStructureProvider.getCanonicalParent(current.uri);
+            if(parentNodeURI == null) {
+                String errorMessage = "Could not retrieve canonical parent for node " + current.uri;
+                logger.error(errorMessage);
+                resolvedPath = UNRESOLVED_PATH;
+                break;
+            }
+            
+            AncestorPath parentPath = cache.get(parentNodeURI);
+            if(parentPath == UNRESOLVED_PATH) {
+                resolvedPath = UNRESOLVED_PATH;
+                break;
+            }
+            NodeLocation parent = parentPath != null ? parentPath.location : getNodeLocation(parentNodeURI);
+            if(parent == null) {
+                cache.put(parentNodeURI, UNRESOLVED_PATH);
+                resolvedPath = UNRESOLVED_PATH;
+                break;
+            }
+            
+            logger.trace("Parent local path: " + parent.localPath);
+            
+            if(isTopNode(current, parent)) {
+                resolvedPath = new AncestorPath(current);
+            } else if(parentPath != null) {
+                resolvedPath = deriveAncestorPath(current, parentPath);
+            } else {
+                pendingNodes.push(current);
+                current = parent;
+            }
+        }
+        
+        cache.put(current.uri, resolvedPath);
+        
+        while(!pendingNodes.isEmpty()) {
+            NodeLocation child = pendingNodes.pop();
+            if(resolvedPath != UNRESOLVED_PATH) {
+                resolvedPath = deriveAncestorPath(child, resolvedPath);
+            }
+            cache.put(child.uri, resolvedPath);
+        }
+        
+        return resolvedPath;
+    }
+    
+    private NodeLocation getNodeLocation(URI nodeURI) {
+        
+        CorpusNode corpusNode = corpusStructureProvider.getNode(nodeURI);
+        if(corpusNode == null) {
+            String errorMessage = "Node not found in archive database for URI " + nodeURI;
+            logger.error(errorMessage);
+            return null;
+        }
+        File localFile = nodeResolver.getLocalFile(corpusNode);
+        String localPath = localFile.getAbsolutePath();
+        
+        logger.trace("Node local path: " + localPath);
+        
+        return new NodeLocation(nodeURI, corpusNode.getName(), localPath,
+                localPath.contains(File.separator + corpusstructureDirectoryName + File.separator),
+                localPath.contains(File.separator + metadataDirectoryName + File.separator));
+    }
+    
+    private boolean isTopNode(NodeLocation node, NodeLocation parent) {
+        
+        if(!node.inCorpusstructureDirectory) {
+            return false;
+        }
+        
+        String currentDirectory = FilenameUtils.getFullPath(node.localPath);
+        String parentDirectory = FilenameUtils.getFullPath(parent.localPath);
+        
+        logger.trace("Parent directory: " + parentDirectory + " Current directory: " + currentDirectory);
+        
+        return !currentDirectory.equals(parentDirectory);
+    }
+    
+    private AncestorPath deriveAncestorPath(NodeLocation node, AncestorPath parentPath) {
+        
+        NodeLocation parent = parentPath.location;
+        
+        // the name of the parent is inserted in the path of nodes in the same corpusstructure directory
+            // and of metadata nodes with a parent in a corpusstructure directory
+        if(node.inCorpusstructureDirectory || (node.inMetadataDirectory && parent.inCorpusstructureDirectory)) {
+            String parentName = archiveFileHelper.correctPathElement(parent.name, "getCorpusNamePathToClosestTopNode");
+            return new AncestorPath(node, getInsertions(parentPath, parentName));
+        }
+        
+        return new AncestorPath(node, parentPath);
+    }
+    
+    private List<String> getInsertions(AncestorPath path, String pendingName) {
+        
+        if(pendingName.isEmpty()) {
+            return path.insertionsWithoutPendingName;
+        }
+        
+        AncestorPath target = path.pendingNameTarget;
+        List<String> insertions = new ArrayList<>();
+        if(target.topNode) {
+            //for the top node, the path name (instead of the node name) should be used, since top node folders were probably created by corpus managers
+            if(target.topNodeFolderName == null) {
+                target.topNodeFolderName = archiveFileLocationProvider.getFolderNameBeforeCorpusstructure(FilenameUtils.getFullPath(target.location.localPath));
+            }
+            insertions.add(target.topNodeFolderName);
+        } else {
+            insertions.add(pendingName);
+            insertions.addAll(target.insertionsAfterPendingName);
+        }
+        return insertions;
+    }
+    
     private void insertStringInTheBeginning(StringBuilder path, String toInsert) {
         if(path.length() > 0) {
             path.insert(0, File.separator);
         }
         path.insert(0, toInsert);
     }
+    
+    
+    /**
+     * Location of a node in the archive.
+     */
+    private static class NodeLocation {
+        
+        private final URI uri;
+        private final String name;
+        private final String localPath;
+        private final boolean inCorpusstructureDirectory;
+        private final boolean inMetadataDirectory;
+        
+        private NodeLocation(URI uri, String name, String localPath, boolean inCorpusstructureDirectory, boolean inMetadataDirectory) {
+            this.uri = uri;
+            this.name = name;
+            this.localPath = localPath;
+            this.inCorpusstructureDirectory = inCorpusstructureDirectory;
+            this.inMetadataDirectory = inMetadataDirectory;
+        }
+    }
+    
+    /**
+     * Path of a node, as the elements inserted in the beginning of the path (bottom first),
+     * both for the node itself and for when the name of a descendant is still to be inserted.
+     */
+    private static class AncestorPath {
+        
+        private final NodeLocation location;
+        private final List<String> insertionsWithoutPendingName;
+        private final boolean topNode;
+        // node which decides what happens to a name still to be inserted (replaced, if it is a top node)
+        private final AncestorPath pendingNameTarget;
+        private final List<String> insertionsAfterPendingName;
+        private String topNodeFolderName;
+        
+        // top node
+        private AncestorPath(NodeLocation location) {
+            this.location = location;
+            this.insertionsWithoutPendingName = Collections.emptyList();
+            this.topNode = true;
+            this.pendingNameTarget = this;
+            this.insertionsAfterPendingName = Collections.emptyList();
+        }
+        
+        // node which inserts the name of its parent
+        private AncestorPath(NodeLocation location, List<String> insertions) {
+            this.location = location;
+            this.insertionsWithoutPendingName = insertions;
+            this.topNode = false;
+            this.pendingNameTarget = this;
+            this.insertionsAfterPendingName = insertions;
+        }
+        
+        // node which leaves it to its parent
+        private AncestorPath(NodeLocation location, AncestorPath parentPath) {
+            this.location = location;
+            this.insertionsWithoutPendingName = parentPath.insertionsWithoutPendingName;
+            this.topNode = false;
+            this.pendingNameTarget = parentPath.pendingNameTarget;
+            this.insertionsAfterPendingName = parentPath.insertionsAfterPendingName;
+        }
+    }
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.archive.implementation;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
+import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
+import nl.mpi.lamus.archive.CorpusStructureCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Bounded LRU cache, with a time to live for each entry.
+ * Results which are not found (null) are cached as well.
+ * Exceptions are never cached.
+ * 
+ * Only the lookups listed in CACHED_PROVIDER_METHODS and CACHED_RESOLVER_METHODS
+ * are cached; any other call is passed on directly. Since the same CorpusNode
+ * object is returned for repeated lookups of a node, the resolver lookups,
+ * which take CorpusNode arguments, are also found in the cache.
+ * 
+ * The instance created by Spring is shared by the whole application
+ * (see CorpusStructureCachingPostProcessor), but other instances can be
+ * created to keep a separate cache during a single job.
+ * 
+ * @see CorpusStructureCache
+ * @author guisil
+ */
+@Component
+public class LamusCorpusStructureCache implements CorpusStructureCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LamusCorpusStructureCache.class);
+    
+    static final Set<String> CACHED_PROVIDER_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "getNode", "getCanonicalParent", "getParentNodeURIs")));
+    static final Set<String> CACHED_RESOLVER_METHODS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "getLocalFile", "getUrl", "getPID", "getId")));
+    
+    // number of lookups after which the statistics are logged
+    private static final long STATISTICS_LOG_INTERVAL = 10000;
+    
+    private static final Object NULL_RESULT = new Object();
+    
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+    
+    private final Map<List<Object>, CacheEntry> entries;
+    
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    
+    @Autowired
+    public LamusCorpusStructureCache(@Qualifier("corpusStructureCacheMaxEntries") int maxEntries,
+            @Qualifier("corpusStructureCacheTimeToLiveSeconds") long timeToLiveSeconds) {
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveSeconds * 1000;
+        this.entries = new LinkedHashMap<List<Object>, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, CacheEntry> eldest) {
+                return size() > LamusCorpusStructureCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @see CorpusStructureCache#decorate(nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider)
+     */
+    @Override
+    public CorpusStructureProvider decorate(CorpusStructureProvider provider) {
+        if(!isEnabled()) {
+            return provider;
+        }
+        return (CorpusStructureProvider) createProxy(provider, CorpusStructureProvider.class, CACHED_PROVIDER_METHODS);
+    }
+
+    /**
+     * @see CorpusStructureCache#decorate(nl.mpi.archiving.corpusstructure.core.service.NodeResolver)
+     */
+    @Override
+    public NodeResolver decorate(NodeResolver resolver) {
+        if(!isEnabled()) {
+            return resolver;
+        }
+        return (NodeResolver) createProxy(resolver, NodeResolver.class, CACHED_RESOLVER_METHODS);
+    }
+
+    /**
+     * @see CorpusStructureCache#invalidateAll()
+     */
+    @Override
+    public void invalidateAll() {
+        int discarded;
+        synchronized(entries) {
+            discarded = entries.size();
+            entries.clear();
+        }
+        logger.info("Corpus structure cache invalidated; " + discarded + " entries discarded. " + getStatistics());
+    }
+
+    /**
+     * @see CorpusStructureCache#getHitCount()
+     */
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @see CorpusStructureCache#getMissCount()
+     */
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @see CorpusStructureCache#getSize()
+     */
+    @Override
+    public int getSize() {
+        synchronized(entries) {
+            return entries.size();
+        }
+    }
+    
+    
+    private boolean isEnabled() {
+        return maxEntries > 0 && timeToLiveMillis > 0;
+    }
+    
+    private Object createProxy(Object target, Class<?> mainInterface, Set<String> cachedMethods) {
+        List<Class<?>> interfaces = new ArrayList<>(Arrays.asList(ClassUtils.getAllInterfaces(target)));
+        if(!interfaces.contains(mainInterface)) {
+            interfaces.add(mainInterface);
+        }
+        return Proxy.newProxyInstance(target.getClass().getClassLoader(),
+                interfaces.toArray(new Class<?>[interfaces.size()]), new CachingInvocationHandler(target, cachedMethods));
+    }
+    
+    private Object lookup(Object target, Method method, Object[] args) throws Throwable {
+        
+        List<Object> key = new ArrayList<>();
+        key.add(method.getDeclaringClass().getName());
+        key.add(method.getName());
+        if(args != null) {
+            key.addAll(Arrays.asList(args));
+        }
+        
+        long now = System.currentTimeMillis();
+        synchronized(entries) {
+            CacheEntry entry = entries.get(key);
+            if(entry != null && entry.expiresAt > now) {
+                countLookup(hitCount.incrementAndGet() + missCount.get());
+                return entry.value == NULL_RESULT ? null : entry.value;
+            }
+        }
+        
+        countLookup(hitCount.get() + missCount.incrementAndGet());
+        Object result = invoke(target, method, args);
+        
+        synchronized(entries) {
+            entries.put(key, new CacheEntry(result == null ? NULL_RESULT : result, now + timeToLiveMillis));
+        }
+        return result;
+    }
+    
+    private void countLookup(long numberOfLookups) {
+        if(numberOfLookups % STATISTICS_LOG_INTERVAL == 0) {
+            logger.info(getStatistics());
+        }
+    }
+    
+    private String getStatistics() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        long lookups = hits + misses;
+        long hitRate = lookups > 0 ? hits * 100 / lookups : 0;
+        return "Corpus structure cache statistics: " + lookups + " lookups, " + hits + " hits (" + hitRate + "%), "
+                + getSize() + " of maximum " + maxEntries + " entries in use";
+    }
+    
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+    
+    
+    private final class CachingInvocationHandler implements InvocationHandler {
+        
+        private final Object target;
+        private final Set<String> cachedMethods;
+        
+        CachingInvocationHandler(Object target, Set<String> cachedMethods) {
+            this.target = target;
+            this.cachedMethods = cachedMethods;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if(cachedMethods.contains(method.getName())) {
+                return lookup(target, method, args);
+            }
+            return LamusCorpusStructureCache.invoke(target, method, args);
+        }
+    }
+    
+    private static final class CacheEntry {
+        
+        private final Object value;
+        private final long expiresAt;
+        
+        CacheEntry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -25,6 +25,7 @@ import nl.mpi.lamus.archive.ArchiveFileLocationProvider;
 import nl.mpi.lamus.archive.permissions.PermissionAdjuster;
 import nl.mpi.lamus.archive.permissions.PermissionAdjusterHelper;
 import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.dao.WorkspaceNodeHandler;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,26 +69,38 @@ public class LamusPermissionAdjuster implements PermissionAdjuster {
 
         if(PermissionAdjusterScope.ALL_NODES.equals(scope)) {
             logger.info("Adjusting permissions for all nodes in workspace " + workspaceID);
-            Collection<WorkspaceNode> allNodes = workspaceDao.getNodesForWorkspace(workspaceID);
-            adjustPermissionsForNodes(allNodes);
+            // the nodes are handled as they are read, instead of being all loaded first
+            NodePermissionAdjuster nodePermissionAdjuster = new NodePermissionAdjuster();
+            workspaceDao.processNodesForWorkspace(workspaceID, nodePermissionAdjuster);
+            nodePermissionAdjuster.logResult();
             return;
         }
         if(PermissionAdjusterScope.UNLINKED_NODES_ONLY.equals(scope)) {
             logger.info("Adjusting permissions for unlinked nodes in workpsace " + workspaceID);
             Collection<WorkspaceNode> unlinkedNodesAndDescendants = workspaceDao.getUnlinkedNodesAndDescendants(workspaceID);
-            adjustPermissionsForNodes(unlinkedNodesAndDescendants);
+            NodePermissionAdjuster nodePermissionAdjuster = new NodePermissionAdjuster();
+            for(WorkspaceNode node : unlinkedNodesAndDescendants) {
+                nodePermissionAdjuster.handleNode(node);
+            }
+            nodePermissionAdjuster.logResult();
             return;
         }
         logger.info("The scope indicated for adjusting permissions in the workspace is not handled. Skipping permission adjustment.");
     }
     
-    private void adjustPermissionsForNodes(Collection<WorkspaceNode> nodes) {
+    /**
+     * Adjusts the permissions of the files of the nodes it is given,
+     * counting the checked files and the changed permissions.
+     */
+    private class NodePermissionAdjuster implements WorkspaceNodeHandler {
         
-        int n = 0;
-        int changed = 0;
-        for(WorkspaceNode node : nodes) {
+        private int n = 0;
+        private int changed = 0;
+        
+        @Override
+        public void handleNode(WorkspaceNode node) {
             if(node.isExternal()) {
-                continue;
+                return;
             } // skip remote files
             n++;
             
@@ -101,7 +114,7 @@ public class LamusPermissionAdjuster implements PermissionAdjuster {
             
             if(nodeURL == null) { //it shouldn't be null, but if this eventually happens we want to skip to the next file
                 logger.warn("Could not get a URL for node " + node.getWorkspaceNodeID());
-                continue;
+                return;
             }
             
             File nodeFile;
@@ -109,12 +122,12 @@ public class LamusPermissionAdjuster implements PermissionAdjuster {
                 nodeFile = new File(nodeURL.toURI());
             } catch (URISyntaxException ex) {
                 logger.info("Could not proceed with permission change for location " + nodeURL, ex);
-                continue;
+                return;
             }
             
             if(node.getArchiveURI() == null && !archiveFileLocationProvider.isFileInOrphansDirectory(nodeFile)) {
                 //in this case we don't need to adjust any permissions; only if the node was in the orphans folder
-                continue;
+                return;
             }
             
             ApaPermission currentPermissions = permissionAdjusterHelper.getCurrentPermissionsForPath(nodeFile.getAbsolutePath());
@@ -124,6 +137,9 @@ public class LamusPermissionAdjuster implements PermissionAdjuster {
                 changed++;
             }
         }
-        logger.info("Checked " + n + " files, changed " + changed + " permissions");
+        
+        private void logResult() {
+            logger.info("Checked " + n + " files, changed " + changed + " permissions");
+        }
     }
 }
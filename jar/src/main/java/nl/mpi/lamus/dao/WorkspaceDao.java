@@ -18,6 +18,7 @@ package nl.mpi.lamus.dao;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import nl.mpi.lamus.exception.WorkspaceNodeNotFoundException;
 import nl.mpi.lamus.exception.WorkspaceNotFoundException;
 import nl.mpi.lamus.workspace.model.Workspace;
@@ -26,6 +27,7 @@ import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeReplacement;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
 import nl.mpi.lamus.workspace.model.WorkspaceReplacedNodeUrlUpdate;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
 
 /**
  * Data access layer for the workspace data.
@@ -42,12 +44,26 @@ public interface WorkspaceDao {
     public void addWorkspace(Workspace workspace);
     
     /**
-     * Deletes a workspace from the database
+     * Deletes a workspace from the database, together with its nodes, links and locks,
+     * in a single transaction.
+     * For big workspaces, deleteChunkOfWorkspaceNodes can be used beforehand
+     * in order to keep this transaction small.
      * 
      * @param workspace workspace to delete
      */
     public void deleteWorkspace(Workspace workspace);
     
+    /**
+     * Deletes, in a single transaction, up to the given number of nodes
+     * (together with their links and replacements) and of node locks
+     * of the given workspace.
+     * 
+     * @param workspaceID ID of the workspace
+     * @param chunkSize maximum number of nodes, and of locks, to delete
+     * @return number of nodes and locks deleted; 0 if there were none left
+     */
+    public int deleteChunkOfWorkspaceNodes(int workspaceID, int chunkSize);
+    
     /**
      * Updates the top node of the given workspace.
      * 
@@ -115,6 +131,20 @@ public interface WorkspaceDao {
      */
     public Collection<Workspace> getWorkspacesInFinalStage();
     
+    /**
+     * Retrieves a collection of workspaces which were submitted
+     * but whose data is not yet in the archive.
+     * @return Collection of submitted workspaces
+     */
+    public Collection<Workspace> getSubmittedWorkspaces();
+    
+    /**
+     * Retrieves a collection of workspaces which were marked for deletion
+     * but are still (partially) in the database.
+     * @return Collection of workspaces being deleted
+     */
+    public Collection<Workspace> getWorkspacesMarkedForDeletion();
+    
     /**
      * Retrieves a list containing all workspaces in the database.
      * @return List with all the workspaces
@@ -149,6 +179,14 @@ public interface WorkspaceDao {
      */
     public boolean isNodeLocked(URI archiveNodeURI);
     
+    /**
+     * Checks which of the given archive nodes are locked
+     * (are part of any existing workspace), querying them in chunks.
+     * @param archiveNodeURIs URIs of the archive nodes to be checked
+     * @return URIs of the given archive nodes which are locked
+     */
+    public Set<URI> getLockedNodes(Collection<URI> archiveNodeURIs);
+    
     /**
      * Adds a lock on the given node.
      * @param uriToLock Archive URI of the node to lock
@@ -156,6 +194,13 @@ public interface WorkspaceDao {
      */
     public void lockNode(URI uriToLock, int workspaceID);
     
+    /**
+     * Adds locks on the given nodes, in a single batch.
+     * @param urisToLock Archive URIs of the nodes to lock
+     * @param workspaceID ID of the workspace where the nodes are being locked
+     */
+    public void lockNodes(Collection<URI> urisToLock, int workspaceID);
+    
     /**
      * Removes a lock on the given node.
      * @param uriToUnlock Archive URI of the node to be unlocked
@@ -183,6 +228,15 @@ public interface WorkspaceDao {
      * @param node WorkspaceNode object to insert into the database
      */
     public void addWorkspaceNode(WorkspaceNode node);
+    
+    /**
+     * Inserts several nodes into the database, in a single batch
+     * when the database allows the IDs of the new nodes to be allocated in advance.
+     * The generated IDs are set in the given objects.
+     * 
+     * @param nodes WorkspaceNode objects to insert into the database
+     */
+    public void addWorkspaceNodes(List<WorkspaceNode> nodes);
 
     /**
      * Sets a node as deleted in the database
@@ -208,6 +262,14 @@ public interface WorkspaceDao {
     public WorkspaceNode getWorkspaceNode(int workspaceNodeID)
             throws WorkspaceNodeNotFoundException;
     
+    /**
+     * Counts the nodes of the given workspace.
+     * 
+     * @param workspaceID ID of the workspace
+     * @return number of nodes in the workspace
+     */
+    public int getWorkspaceNodeCount(int workspaceID);
+    
     /**
      * Retrieves the top node of the given workspace.
      * 
@@ -241,6 +303,16 @@ public interface WorkspaceDao {
      */
     public Collection<WorkspaceNode> getNodesForWorkspace(int workspaceID);
     
+    /**
+     * Passes all the nodes of the workspace with the given ID to the given handler,
+     * one at a time, as they are read from the database.
+     * To be used instead of getNodesForWorkspace when the nodes only need to be iterated.
+     * 
+     * @param workspaceID ID of the workspace
+     * @param nodeHandler handler to which each node is passed
+     */
+    public void processNodesForWorkspace(int workspaceID, WorkspaceNodeHandler nodeHandler);
+    
     /**
      * Retrieves a collection containing all the metadata nodes present in the tree
      * (top node and descendants) of the workspace with the given ID.
@@ -249,6 +321,15 @@ public interface WorkspaceDao {
      */
     public Collection<WorkspaceNode> getMetadataNodesInTreeForWorkspace(int workspaceID);
     
+    /**
+     * Retrieves a snapshot of the tree of the workspace with the given ID,
+     * containing all its nodes and the links between them, loaded at once.
+     * 
+     * @param workspaceID ID of the workspace
+     * @return snapshot of the nodes and links of the given workspace
+     */
+    public WorkspaceTreeSnapshot getWorkspaceTreeSnapshot(int workspaceID);
+    
     /**
      * Retrieves a collection containing the child nodes of the node with the
      * given ID.
@@ -269,6 +350,8 @@ public interface WorkspaceDao {
     /**
      * Retrieves a collection containing the descendant nodes of the node with
      * the given ID, filtering them by the given node type.
+     * The nodes are returned in depth-first order, siblings ordered by their ID.
+     * Descendants of nodes that don't match the type are still included.
      * @param workspaceNodeID ID of the parent node
      * @param nodeType type to filter the descendants; if UNKNOWN is passed, all nodes will be returned
      * @return Collection of nodes, of the given type, that have the given node as ancestor
@@ -296,7 +379,7 @@ public interface WorkspaceDao {
      * Retrieves a collection containing the nodes that have no parent
      * (unlinked nodes).
      * @param workspaceID ID of the workspace
-     * @return List of unlinked nodes in the workspace
+     * @return List of unlinked nodes in the workspace, ordered by ID
      */
     public List<WorkspaceNode> getUnlinkedNodes(int workspaceID);
     
@@ -322,6 +405,13 @@ public interface WorkspaceDao {
      */
     public void updateNodeArchiveUri(WorkspaceNode node);
     
+    /**
+     * Updates the Archive URI of the given nodes, in a single batch.
+     * 
+     * @param nodes WorkspaceNode objects to be updated
+     */
+    public void updateNodeArchiveUris(Collection<WorkspaceNode> nodes);
+    
     /**
      * Updates the Archive URL of the given node.
      * 
@@ -341,6 +431,12 @@ public interface WorkspaceDao {
      */
     public void addWorkspaceNodeLink(WorkspaceNodeLink nodeLink);
     
+    /**
+     * Inserts several links between nodes into the database, in a single batch.
+     * @param nodeLinks WorkspaceNodeLink objects to insert into the database
+     */
+    public void addWorkspaceNodeLinks(Collection<WorkspaceNodeLink> nodeLinks);
+    
     /**
      * Deletes a link between two nodes (parent and child) from the database.
      * @param workspaceID ID of the workspace
@@ -350,7 +446,8 @@ public interface WorkspaceDao {
     public void deleteWorkspaceNodeLink(int workspaceID, int parentNodeID, int childNodeID);
     
     /**
-     * Cleans the information regarding nodes and links of a workspace.
+     * Cleans the information regarding nodes and links of a workspace,
+     * in a single transaction.
      * @param workspace 
      */
     public void cleanWorkspaceNodesAndLinks(Workspace workspace);
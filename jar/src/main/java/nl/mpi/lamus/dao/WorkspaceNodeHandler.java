@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.dao;
+
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+
+/**
+ * Callback for the methods of WorkspaceDao which pass the retrieved
+ * nodes one at a time, instead of collecting them all in memory.
+ * 
+ * @author guisil
+ */
+public interface WorkspaceNodeHandler {
+    
+    /**
+     * Called for each node retrieved from the database.
+     * The database connection is still in use while this method runs.
+     * 
+     * @param node retrieved node
+     */
+    public void handleNode(WorkspaceNode node);
+}
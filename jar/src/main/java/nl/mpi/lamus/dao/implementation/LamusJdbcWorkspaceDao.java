@@ -25,27 +25,42 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.sql.DataSource;
 import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.dao.WorkspaceNodeHandler;
 import nl.mpi.lamus.exception.WorkspaceNodeNotFoundException;
 import nl.mpi.lamus.exception.WorkspaceNotFoundException;
 import nl.mpi.lamus.workspace.model.*;
+import nl.mpi.lamus.workspace.model.implementation.LamusLazyWorkspaceNode;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspace;
-import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNodeLink;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNodeReplacement;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceReplacedNodeUrlUpdate;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceTreeSnapshot;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
 import org.springframework.jdbc.support.rowset.SqlRowSet;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * Data access layer that uses JDBC from the Spring framework
@@ -59,7 +74,34 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
     
     private static final Logger logger = LoggerFactory.getLogger(LamusJdbcWorkspaceDao.class);
     
+    /**
+     * Condition excluding deleted and replaced nodes. The statuses are part of the SQL
+     * (not parameters) so that the planner can use the partial index "node_workspace_active_idx",
+     * which is defined with the same predicate.
+     */
+    private static final String ACTIVE_NODE_STATUS_CONDITION = "status NOT IN ('"
+            + WorkspaceNodeStatus.DELETED.name() + "', '"
+            + WorkspaceNodeStatus.EXTERNAL_DELETED.name() + "', '"
+            + WorkspaceNodeStatus.REPLACED.name() + "')";
+    
+    /**
+     * Conditions (on a row of the "node" table, compared with the workspace in the parameter "workspace_id")
+     * for nodes which are not the child of any other node and are not the top node of the workspace.
+     * They are anti-joins instead of "NOT IN" subqueries, so that only the links of the nodes
+     * being checked are looked up, not the whole "node_link" table.
+     */
+    private static final String NOT_LINKED_AS_CHILD_CONDITION =
+            "NOT EXISTS (SELECT 1 FROM node_link WHERE node_link.child_workspace_node_id = node.workspace_node_id)";
+    private static final String NOT_WORKSPACE_TOP_NODE_CONDITION =
+            "NOT EXISTS (SELECT 1 FROM workspace WHERE workspace.workspace_id = :workspace_id AND workspace.top_node_id = node.workspace_node_id)";
+    
+    // number of rows fetched at a time when the nodes of a workspace are streamed
+    private static final int NODE_STREAMING_FETCH_SIZE = 500;
+    
     private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private NamedParameterJdbcTemplate streamingJdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTransactionTemplate;
     private SimpleJdbcInsert insertWorkspace;
     private SimpleJdbcInsert insertPreLock;
     private SimpleJdbcInsert insertWorkspaceNode;
@@ -67,6 +109,13 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
     private SimpleJdbcInsert insertWorkspaceNodeLink;
     private SimpleJdbcInsert insertNodeReplacement;
     
+    private DataSource dataSource;
+    
+    // the database features below are detected on first use (null until then),
+        // so that creating the DAO does not need a connection
+    private volatile Boolean recursiveQueriesSupported;
+    private volatile Boolean nodeIdPreallocationSupported;
+    
     public LamusJdbcWorkspaceDao(DataSource dataSource) {
         this.setDataSource(dataSource);
     }
@@ -79,6 +128,20 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
      */
     public final void setDataSource(DataSource datasource) {
         this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(datasource);
+        // statements which must succeed or fail together (e.g. deletion of a workspace);
+            // if a transaction is already active for this data source, they will be part of it
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(datasource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // the PostgreSQL driver only honours the fetch size (instead of loading the whole result)
+            // when autocommit is off, so the streaming queries run in a read-only transaction
+        JdbcTemplate streamingTemplate = new JdbcTemplate(datasource);
+        streamingTemplate.setFetchSize(NODE_STREAMING_FETCH_SIZE);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streamingTemplate);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.dataSource = datasource;
+        this.recursiveQueriesSupported = null;
+        this.nodeIdPreallocationSupported = null;
         this.insertWorkspace = new SimpleJdbcInsert(datasource)
                 .withTableName("workspace")
                 .usingGeneratedKeyColumns("workspace_id")
@@ -189,29 +252,80 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
      * @see WorkspaceDao#deleteWorkspace(nl.mpi.lamus.workspace.model.Workspace)
      */
     @Override
-    public void deleteWorkspace(Workspace workspace) {
+    public void deleteWorkspace(final Workspace workspace) {
         
         logger.debug("Deleting workspace with ID " + workspace.getWorkspaceID());
         
-        String deleteNodeReplacementSql = "DELETE FROM node_replacement WHERE old_node_id IN (SELECT workspace_node_id FROM node WHERE workspace_id = :workspace_id);";
-        String deleteNodeLinkSql = "DELETE FROM node_link WHERE parent_workspace_node_id IN (SELECT workspace_node_id FROM node WHERE workspace_id = :workspace_id);";
-        String deleteNodeLockSql = "DELETE FROM node_lock WHERE workspace_id = :workspace_id";
-        String deleteNodeSql = "DELETE FROM node WHERE workspace_ID = :workspace_id;";
-        String deletePreLockSql = "DELETE FROM pre_lock WHERE archive_uri = :archive_uri";
-        String deleteWorkspaceSql = "DELETE FROM workspace WHERE workspace_id = :workspace_id;";
-        SqlParameterSource namedParameters = new MapSqlParameterSource()
+        final String deletePreLockSql = "DELETE FROM pre_lock WHERE archive_uri = :archive_uri";
+        final String deleteWorkspaceSql = "DELETE FROM workspace WHERE workspace_id = :workspace_id;";
+        final SqlParameterSource namedParameters = new MapSqlParameterSource()
                 .addValue("workspace_id", workspace.getWorkspaceID())
                 .addValue("archive_uri", workspace.getTopNodeArchiveURI() != null ? workspace.getTopNodeArchiveURI().toString() : "");
-        this.namedParameterJdbcTemplate.update(deleteNodeReplacementSql, namedParameters);
-        this.namedParameterJdbcTemplate.update(deleteNodeLinkSql, namedParameters);
-        this.namedParameterJdbcTemplate.update(deleteNodeLockSql, namedParameters);
-        this.namedParameterJdbcTemplate.update(deleteNodeSql, namedParameters);
-        this.namedParameterJdbcTemplate.update(deletePreLockSql, namedParameters);
-        this.namedParameterJdbcTemplate.update(deleteWorkspaceSql, namedParameters);
+        
+        this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                deleteNodesAndLinksOfWorkspace(workspace.getWorkspaceID());
+                namedParameterJdbcTemplate.update(deletePreLockSql, namedParameters);
+                namedParameterJdbcTemplate.update(deleteWorkspaceSql, namedParameters);
+            }
+        });
         
         logger.info("Workspace with ID " + workspace.getWorkspaceID() + " deleted");
     }
     
+    /**
+     * @see WorkspaceDao#deleteChunkOfWorkspaceNodes(int, int)
+     */
+    @Override
+    public int deleteChunkOfWorkspaceNodes(final int workspaceID, final int chunkSize) {
+        
+        logger.debug("Deleting up to " + chunkSize + " nodes and locks of workspace with ID " + workspaceID);
+        
+        final String queryNodeIDsSql = "SELECT workspace_node_id FROM node WHERE workspace_id = :workspace_id"
+                + " ORDER BY workspace_node_id LIMIT " + chunkSize;
+        final String queryLockUrisSql = "SELECT archive_uri FROM node_lock WHERE workspace_id = :workspace_id"
+                + " ORDER BY archive_uri LIMIT " + chunkSize;
+        // the links and replacements of the nodes in the chunk are deleted in both directions,
+        // since the nodes at the other end may belong to a chunk which is only deleted later
+        final String deleteReplacementsSql = "DELETE FROM node_replacement WHERE old_node_id IN (:node_ids)";
+        final String deleteReplacementsAsNewSql = "DELETE FROM node_replacement WHERE new_node_id IN (:node_ids)";
+        final String deleteLinksAsParentSql = "DELETE FROM node_link WHERE parent_workspace_node_id IN (:node_ids)";
+        final String deleteLinksAsChildSql = "DELETE FROM node_link WHERE child_workspace_node_id IN (:node_ids)";
+        final String deleteNodesSql = "DELETE FROM node WHERE workspace_node_id IN (:node_ids)";
+        final String deleteLocksSql = "DELETE FROM node_lock WHERE archive_uri IN (:archive_uris)";
+        final SqlParameterSource chunkParameters = new MapSqlParameterSource("workspace_id", workspaceID);
+        
+        int deleted = this.transactionTemplate.execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                
+                int deletedRows = 0;
+                
+                List<Integer> nodeIDs = namedParameterJdbcTemplate.queryForList(queryNodeIDsSql, chunkParameters, Integer.class);
+                if(!nodeIDs.isEmpty()) {
+                    SqlParameterSource nodeParameters = new MapSqlParameterSource("node_ids", nodeIDs);
+                    namedParameterJdbcTemplate.update(deleteReplacementsSql, nodeParameters);
+                    namedParameterJdbcTemplate.update(deleteReplacementsAsNewSql, nodeParameters);
+                    namedParameterJdbcTemplate.update(deleteLinksAsParentSql, nodeParameters);
+                    namedParameterJdbcTemplate.update(deleteLinksAsChildSql, nodeParameters);
+                    deletedRows += namedParameterJdbcTemplate.update(deleteNodesSql, nodeParameters);
+                }
+                
+                List<String> lockUris = namedParameterJdbcTemplate.queryForList(queryLockUrisSql, chunkParameters, String.class);
+                if(!lockUris.isEmpty()) {
+                    deletedRows += namedParameterJdbcTemplate.update(deleteLocksSql, new MapSqlParameterSource("archive_uris", lockUris));
+                }
+                
+                return deletedRows;
+            }
+        });
+        
+        logger.info(deleted + " nodes and locks of workspace " + workspaceID + " were deleted");
+        
+        return deleted;
+    }
+    
     /**
      * @see WorkspaceDao#updateWorkspaceTopNode(nl.mpi.lamus.workspace.model.Workspace)
      */
@@ -391,7 +505,7 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         
         logger.debug("Retrieving list of workspace in final stage (submitted but still waiting for result of crawler)");
         
-        String queryWorkspaceListSql = "SELECT * FROM workspace WHERE status LIKE :pending_db_update_status";
+        String queryWorkspaceListSql = "SELECT * FROM workspace WHERE status = :pending_db_update_status";
         SqlParameterSource namedParameters = new MapSqlParameterSource()
                 .addValue("pending_db_update_status", WorkspaceStatus.UPDATING_ARCHIVE.name());
         
@@ -400,6 +514,40 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         return listToReturn;
     }
 
+    /**
+     * @see WorkspaceDao#getSubmittedWorkspaces()
+     */
+    @Override
+    public Collection<Workspace> getSubmittedWorkspaces() {
+        
+        logger.debug("Retrieving list of submitted workspaces");
+        
+        String queryWorkspaceListSql = "SELECT * FROM workspace WHERE status = :submitted_status";
+        SqlParameterSource namedParameters = new MapSqlParameterSource()
+                .addValue("submitted_status", WorkspaceStatus.SUBMITTED.name());
+        
+        Collection<Workspace> listToReturn = this.namedParameterJdbcTemplate.query(queryWorkspaceListSql, namedParameters, new WorkspaceMapper());
+        
+        return listToReturn;
+    }
+
+    /**
+     * @see WorkspaceDao#getWorkspacesMarkedForDeletion()
+     */
+    @Override
+    public Collection<Workspace> getWorkspacesMarkedForDeletion() {
+        
+        logger.debug("Retrieving list of workspaces marked for deletion");
+        
+        String queryWorkspaceListSql = "SELECT * FROM workspace WHERE status = :deleting_status";
+        SqlParameterSource namedParameters = new MapSqlParameterSource()
+                .addValue("deleting_status", WorkspaceStatus.DELETING.name());
+        
+        Collection<Workspace> listToReturn = this.namedParameterJdbcTemplate.query(queryWorkspaceListSql, namedParameters, new WorkspaceMapper());
+        
+        return listToReturn;
+    }
+
     /**
      * @see WorkspaceDao#getAllWorkspaces()
      */
@@ -518,6 +666,45 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         return true;
     }
     
+    /**
+     * @see WorkspaceDao#getLockedNodes(java.util.Collection)
+     */
+    @Override
+    public Set<URI> getLockedNodes(Collection<URI> archiveNodeURIs) {
+        
+        logger.debug("Checking which of " + archiveNodeURIs.size() + " nodes are locked");
+        
+        List<String> nodeURIs = new ArrayList<>(archiveNodeURIs.size());
+        for(URI archiveNodeURI : archiveNodeURIs) {
+            if(archiveNodeURI == null) {
+                throw new IllegalArgumentException("URI to check should not be null");
+            }
+            nodeURIs.add(archiveNodeURI.toString());
+        }
+        
+        String queryLockSql = "SELECT archive_uri FROM node_lock WHERE archive_uri in (:uris)";
+        Set<URI> lockedNodes = new HashSet<>();
+        
+        int from = 0;
+        int to = nodeURIs.size() <= 100 ? nodeURIs.size() : 100;
+        
+        while(from < nodeURIs.size()) {
+            
+            List<String> someURIs = nodeURIs.subList(from, to);
+            SqlParameterSource namedParameters = new MapSqlParameterSource().addValue("uris", someURIs);
+            List<String> lockedURIs = this.namedParameterJdbcTemplate.queryForList(queryLockSql, namedParameters, String.class);
+            for(String lockedURI : lockedURIs) {
+                lockedNodes.add(URI.create(lockedURI));
+            }
+            
+            from = to;
+            to = nodeURIs.size() <= from + 100 ? nodeURIs.size() : from + 100;
+        }
+        
+        logger.debug(lockedNodes.size() + " of the given " + nodeURIs.size() + " nodes are locked");
+        return lockedNodes;
+    }
+    
     /**
      * @see WorkspaceDao#lockNode(java.net.URI, int)
      */
@@ -540,6 +727,34 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
                 + "; Workspace ID: " + workspaceID);
     }
 
+    /**
+     * @see WorkspaceDao#lockNodes(java.util.Collection, int)
+     */
+    @Override
+    public void lockNodes(Collection<URI> urisToLock, int workspaceID) {
+        
+        if(urisToLock.isEmpty()) {
+            return;
+        }
+        
+        logger.debug("Adding to the database " + urisToLock.size() + " locks in workspace " + workspaceID);
+        
+        String insertLockSql = "INSERT INTO node_lock (archive_uri, workspace_id) VALUES (:archive_uri, :workspace_id)";
+        SqlParameterSource[] batchParameters = new SqlParameterSource[urisToLock.size()];
+        int i = 0;
+        for(URI uriToLock : urisToLock) {
+            if(uriToLock == null) {
+                throw new IllegalArgumentException("Archive URI to lock should not be null");
+            }
+            batchParameters[i++] = new MapSqlParameterSource()
+                    .addValue("archive_uri", uriToLock.toString())
+                    .addValue("workspace_id", workspaceID);
+        }
+        this.namedParameterJdbcTemplate.batchUpdate(insertLockSql, batchParameters);
+        
+        logger.info(urisToLock.size() + " locks added to the database. Workspace ID: " + workspaceID);
+    }
+
     /**
      * @see WorkspaceDao#unlockNode(java.net.URI)
      */
@@ -602,52 +817,52 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
                 
         logger.debug("Adding node to the database belonging to workspace with ID: " + node.getWorkspaceID());
 
-        String profileSchemaURIStr = null;
-        if(node.getProfileSchemaURI() != null) {
-            profileSchemaURIStr = node.getProfileSchemaURI().toString();
-        }
-        String typeStr = null;
-        if(node.getType() != null) {
-            typeStr = node.getType().name();
-        }
-        String workspaceURLStr = null;
-        if(node.getWorkspaceURL() != null) {
-            workspaceURLStr = node.getWorkspaceURL().toString();
-        }
-        String archiveUriStr = null;
-        if(node.getArchiveURI() != null) {
-            archiveUriStr = node.getArchiveURI().toString();
-        }
-        String archiveUrlStr = null;
-        if(node.getArchiveURL() != null) {
-            archiveUrlStr = node.getArchiveURL().toString();
+        SqlParameterSource parameters = getWorkspaceNodeParameters(node);
+        Number newID = this.insertWorkspaceNode.executeAndReturnKey(parameters);
+        node.setWorkspaceNodeID(newID.intValue());
+        
+        logger.info("Node added to the database. Node ID: " + node.getWorkspaceNodeID());
+    }
+    
+    /**
+     * @see WorkspaceDao#addWorkspaceNodes(java.util.List)
+     */
+    @Override
+    public void addWorkspaceNodes(List<WorkspaceNode> nodes) {
+        
+        if(nodes.isEmpty()) {
+            return;
         }
-        String originURLStr = null;
-        if(node.getOriginURI() != null) {
-            originURLStr = node.getOriginURI().toString();
+        
+        if(!isNodeIdPreallocationSupported()) {
+            for(WorkspaceNode node : nodes) {
+                addWorkspaceNode(node);
+            }
+            return;
         }
-        String statusStr = null;
-        if(node.getStatus() != null) {
-            statusStr = node.getStatus().name();
+        
+        logger.debug("Adding " + nodes.size() + " nodes to the database in a batch");
+        
+        String allocateIDsSql = "SELECT nextval('node_workspace_node_id_seq') FROM generate_series(1, :count)";
+        List<Integer> newIDs = this.namedParameterJdbcTemplate.queryForList(
+                allocateIDsSql, new MapSqlParameterSource("count", nodes.size()), Integer.class);
+        
+        String insertNodeSql = "INSERT INTO node (workspace_node_id, workspace_id, profile_schema_uri, name, title, type,"
+                + " workspace_url, archive_uri, archive_url, origin_url, status, protected, format)"
+                + " VALUES (:workspace_node_id, :workspace_id, :profile_schema_uri, :name, :title, :type,"
+                + " :workspace_url, :archive_uri, :archive_url, :origin_url, :status, :protected, :format)";
+        SqlParameterSource[] batchParameters = new SqlParameterSource[nodes.size()];
+        for(int i = 0; i < nodes.size(); i++) {
+            batchParameters[i] = getWorkspaceNodeParameters(nodes.get(i))
+                    .addValue("workspace_node_id", newIDs.get(i));
         }
+        this.namedParameterJdbcTemplate.batchUpdate(insertNodeSql, batchParameters);
         
-        SqlParameterSource parameters = new MapSqlParameterSource()
-                .addValue("workspace_id", node.getWorkspaceID())
-                .addValue("profile_schema_uri", profileSchemaURIStr)
-                .addValue("name", node.getName())
-                .addValue("title", node.getTitle())
-                .addValue("type", typeStr)
-                .addValue("workspace_url", workspaceURLStr)
-                .addValue("archive_uri", archiveUriStr)
-                .addValue("archive_url", archiveUrlStr)
-                .addValue("origin_url", originURLStr)
-                .addValue("status", statusStr)
-                .addValue("protected", node.isProtected())
-                .addValue("format", node.getFormat());
-        Number newID = this.insertWorkspaceNode.executeAndReturnKey(parameters);
-        node.setWorkspaceNodeID(newID.intValue());
+        for(int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).setWorkspaceNodeID(newIDs.get(i));
+        }
         
-        logger.info("Node added to the database. Node ID: " + node.getWorkspaceNodeID());
+        logger.info(nodes.size() + " nodes added to the database. Node IDs: " + newIDs);
     }
     
     /**
@@ -748,6 +963,20 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         return topWorkspaceNode;
     }
 
+    /**
+     * @see WorkspaceDao#getWorkspaceNodeCount(int)
+     */
+    @Override
+    public int getWorkspaceNodeCount(int workspaceID) {
+        
+        logger.debug("Counting nodes of workspace with ID: " + workspaceID);
+        
+        String queryNodeCountSql = "SELECT COUNT(*) FROM node WHERE workspace_id = :workspace_id";
+        SqlParameterSource namedParameters = new MapSqlParameterSource("workspace_id", workspaceID);
+        
+        return this.namedParameterJdbcTemplate.queryForObject(queryNodeCountSql, namedParameters, Integer.class);
+    }
+
     /**
      * @see WorkspaceDao#getWorkspaceTopNodeID(int)
      */
@@ -803,6 +1032,31 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         return listToReturn;
     }
 
+    /**
+     * @see WorkspaceDao#processNodesForWorkspace(int, nl.mpi.lamus.dao.WorkspaceNodeHandler)
+     */
+    @Override
+    public void processNodesForWorkspace(int workspaceID, final WorkspaceNodeHandler nodeHandler) {
+        
+        logger.debug("Processing nodes of the workspace with ID " + workspaceID);
+        
+        final String queryWorkspaceNodeListSql = "SELECT * FROM node WHERE workspace_id = :workspace_id";
+        final SqlParameterSource namedParameters = new MapSqlParameterSource("workspace_id", workspaceID);
+        
+        final WorkspaceNodeMapper nodeMapper = new WorkspaceNodeMapper();
+        this.readOnlyTransactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                streamingJdbcTemplate.query(queryWorkspaceNodeListSql, namedParameters, new RowCallbackHandler() {
+                    @Override
+                    public void processRow(ResultSet rs) throws SQLException {
+                        nodeHandler.handleNode(nodeMapper.mapRow(rs, rs.getRow()));
+                    }
+                });
+            }
+        });
+    }
+
     /**
      * @see WorkspaceDao#getMetadataNodesInTreeForWorkspace(int)
      */
@@ -826,6 +1080,45 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         return listToReturn;
     }
     
+    /**
+     * @see WorkspaceDao#getWorkspaceTreeSnapshot(int)
+     */
+    @Override
+    public WorkspaceTreeSnapshot getWorkspaceTreeSnapshot(int workspaceID) {
+        
+        logger.debug("Retrieving tree snapshot of the workspace with ID " + workspaceID);
+        
+        int topNodeID = getWorkspaceTopNodeID(workspaceID);
+        
+        String queryNodesAndLinksSql = "SELECT node_link.parent_workspace_node_id AS link_parent_id, node.* FROM node"
+                + " LEFT OUTER JOIN node_link ON node_link.child_workspace_node_id = node.workspace_node_id"
+                + " WHERE node.workspace_id = :workspace_id";
+        SqlParameterSource namedParameters = new MapSqlParameterSource("workspace_id", workspaceID);
+        
+        final Map<Integer, WorkspaceNode> nodesByID = new HashMap<>();
+        final List<WorkspaceNodeLink> links = new ArrayList<>();
+        final WorkspaceNodeMapper nodeMapper = new WorkspaceNodeMapper();
+        this.namedParameterJdbcTemplate.query(queryNodesAndLinksSql, namedParameters, new RowCallbackHandler() {
+            @Override
+            public void processRow(ResultSet rs) throws SQLException {
+                int nodeID = rs.getInt("workspace_node_id");
+                if(!nodesByID.containsKey(nodeID)) {
+                    nodesByID.put(nodeID, nodeMapper.mapRow(rs, rs.getRow()));
+                }
+                int parentID = rs.getInt("link_parent_id");
+                if(!rs.wasNull()) {
+                    links.add(new LamusWorkspaceNodeLink(parentID, nodeID));
+                }
+            }
+        });
+        
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodesByID.values(), links);
+        
+        logger.info("Tree snapshot of workspace with ID " + workspaceID + " retrieved from the database (" + snapshot + ")");
+        
+        return snapshot;
+    }
+    
     /**
      * @see WorkspaceDao#getChildWorkspaceNodes(int)
      */
@@ -862,18 +1155,10 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         
         logger.debug("Retrieving list containing descendant nodes (filtered by type " + nodeType.name() + ") of the node with ID: " + workspaceNodeID);
         
-        Collection<WorkspaceNode> allDescendantsOfType = new ArrayList<>();
-        
-        Collection<WorkspaceNode> children = getChildWorkspaceNodes(workspaceNodeID);
-        
-        for(WorkspaceNode child : children) {
-            if(WorkspaceNodeType.UNKNOWN.equals(nodeType) || child.getType().equals(nodeType)) {
-                allDescendantsOfType.add(child);
-            }
-            allDescendantsOfType.addAll(getDescendantWorkspaceNodesByType(child.getWorkspaceNodeID(), nodeType));
+        if(isRecursiveQueriesSupported()) {
+            return getDescendantWorkspaceNodesByTypeWithRecursiveQuery(workspaceNodeID, nodeType);
         }
-        
-        return allDescendantsOfType;
+        return getDescendantWorkspaceNodesByTypeLevelByLevel(workspaceNodeID, nodeType);
     }
     
     /**
@@ -901,10 +1186,9 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         
         logger.debug("Retrieving list containing unlinked and deleted top nodes of the workspace with ID: " + workspaceID);
         
-        String queryUnlinkedAndDeletedTopNodeListSql = "SELECT * FROM node"
-                + " WHERE workspace_node_id NOT IN (SELECT child_workspace_node_id from node_link)"
-                + " AND workspace_node_id NOT IN (SELECT top_node_id FROM workspace WHERE workspace_id = :workspace_id)"
-                + " AND workspace_id = :workspace_id;";
+        String queryUnlinkedAndDeletedTopNodeListSql = "SELECT * FROM node WHERE workspace_id = :workspace_id"
+                + " AND " + NOT_LINKED_AS_CHILD_CONDITION
+                + " AND " + NOT_WORKSPACE_TOP_NODE_CONDITION + ";";
         SqlParameterSource namedParameters = new MapSqlParameterSource("workspace_id", workspaceID);
         
         Collection<WorkspaceNode> listToReturn =
@@ -921,14 +1205,13 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         
         logger.debug("Retrieving list containing unlinked nodes of the workspace with ID: " + workspaceID);
         
-        String queryUnlinkedNodeListSql = "SELECT * FROM node WHERE workspace_node_id NOT IN (SELECT child_workspace_node_id from node_link)"
-                + " AND workspace_id = :workspace_id AND status NOT LIKE :status_deleted AND status NOT LIKE :status_external_deleted AND status NOT LIKE :status_replaced"
-                + " AND workspace_node_id NOT IN (SELECT top_node_id FROM workspace WHERE workspace_id = :workspace_id);";
+        String queryUnlinkedNodeListSql = "SELECT * FROM node WHERE workspace_id = :workspace_id"
+                + " AND " + ACTIVE_NODE_STATUS_CONDITION
+                + " AND " + NOT_LINKED_AS_CHILD_CONDITION
+                + " AND " + NOT_WORKSPACE_TOP_NODE_CONDITION
+                + " ORDER BY workspace_node_id;";
         SqlParameterSource namedParameters = new MapSqlParameterSource()
-                .addValue("workspace_id", workspaceID)
-                .addValue("status_deleted", WorkspaceNodeStatus.DELETED.name())
-                .addValue("status_external_deleted", WorkspaceNodeStatus.EXTERNAL_DELETED.name())
-                .addValue("status_replaced", WorkspaceNodeStatus.REPLACED.name());
+                .addValue("workspace_id", workspaceID);
         
         List<WorkspaceNode> listToReturn =
                 this.namedParameterJdbcTemplate.query(queryUnlinkedNodeListSql, namedParameters, new WorkspaceNodeMapper());
@@ -944,6 +1227,10 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         
         logger.debug("Retrieving list containing unlinked nodes and descendants for workspace with ID: " + workspaceID);
         
+        if(isRecursiveQueriesSupported()) {
+            return getUnlinkedNodesAndDescendantsWithRecursiveQuery(workspaceID);
+        }
+        
         Collection<WorkspaceNode> unlinkedNodesAndDescendants = new ArrayList<>();
         
         List<WorkspaceNode> unlinkedNodes = getUnlinkedNodes(workspaceID);
@@ -1003,6 +1290,36 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
         logger.info("Archive URI of node " + node.getWorkspaceNodeID() + " updated to " + node.getArchiveURI());
     }
     
+    /**
+     * @see WorkspaceDao#updateNodeArchiveUris(java.util.Collection)
+     */
+    @Override
+    public void updateNodeArchiveUris(Collection<WorkspaceNode> nodes) {
+        
+        if(nodes.isEmpty()) {
+            return;
+        }
+        
+        logger.debug("Updating archive URI for " + nodes.size() + " nodes");
+        
+        String updateSql = "UPDATE node SET archive_uri = :archive_uri"
+                + " WHERE workspace_node_id = :workspace_node_id";
+        SqlParameterSource[] batchParameters = new SqlParameterSource[nodes.size()];
+        int i = 0;
+        for(WorkspaceNode node : nodes) {
+            String nodeArchiveUriStr = null;
+            if(node.getArchiveURI() != null) {
+                nodeArchiveUriStr = node.getArchiveURI().toString();
+            }
+            batchParameters[i++] = new MapSqlParameterSource()
+                    .addValue("archive_uri", nodeArchiveUriStr)
+                    .addValue("workspace_node_id", node.getWorkspaceNodeID());
+        }
+        this.namedParameterJdbcTemplate.batchUpdate(updateSql, batchParameters);
+        
+        logger.info("Archive URI of " + nodes.size() + " nodes updated");
+    }
+    
     /**
      * @see WorkspaceDao#updateNodeArchiveUrl(nl.mpi.lamus.workspace.model.WorkspaceNode)
      */
@@ -1060,6 +1377,32 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
                 + "; Child node ID: " + nodeLink.getChildWorkspaceNodeID());
     }
     
+    /**
+     * @see WorkspaceDao#addWorkspaceNodeLinks(java.util.Collection)
+     */
+    @Override
+    public void addWorkspaceNodeLinks(Collection<WorkspaceNodeLink> nodeLinks) {
+        
+        if(nodeLinks.isEmpty()) {
+            return;
+        }
+        
+        logger.debug("Adding to the database " + nodeLinks.size() + " links in a batch");
+        
+        String insertLinkSql = "INSERT INTO node_link (parent_workspace_node_id, child_workspace_node_id)"
+                + " VALUES (:parent_workspace_node_id, :child_workspace_node_id)";
+        SqlParameterSource[] batchParameters = new SqlParameterSource[nodeLinks.size()];
+        int i = 0;
+        for(WorkspaceNodeLink nodeLink : nodeLinks) {
+            batchParameters[i++] = new MapSqlParameterSource()
+                    .addValue("parent_workspace_node_id", nodeLink.getParentWorkspaceNodeID())
+                    .addValue("child_workspace_node_id", nodeLink.getChildWorkspaceNodeID());
+        }
+        this.namedParameterJdbcTemplate.batchUpdate(insertLinkSql, batchParameters);
+        
+        logger.info(nodeLinks.size() + " links added to the database");
+    }
+    
     /**
      * @see WorkspaceDao#deleteWorkspaceNodeLink(int, int, int)
      */
@@ -1082,23 +1425,16 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
      * @see WorkspaceDao#cleanWorkspaceNodesAndLinks(nl.mpi.lamus.workspace.model.Workspace)
      */
     @Override
-    public void cleanWorkspaceNodesAndLinks(Workspace workspace) {
+    public void cleanWorkspaceNodesAndLinks(final Workspace workspace) {
         
         logger.debug("Cleaning nodes and links belonging to workspace " + workspace.getWorkspaceID());
         
-        String deleteReplacementsSql =
-                "DELETE FROM node_replacement WHERE old_node_id in (SELECT workspace_node_id FROM node WHERE workspace_id = :workspace_id);";
-        String deleteLinksSql =
-                "DELETE FROM node_link WHERE parent_workspace_node_id in (SELECT workspace_node_id FROM node WHERE workspace_id = :workspace_id);";
-        String deleteLocksSql =
-                "DELETE FROM node_lock WHERE workspace_id = :workspace_id;";
-        String deleteNodesSql =
-                "DELETE FROM node WHERE workspace_id = :workspace_id;";
-        SqlParameterSource namedParameters = new MapSqlParameterSource("workspace_id", workspace.getWorkspaceID());
-        this.namedParameterJdbcTemplate.update(deleteReplacementsSql, namedParameters);
-        this.namedParameterJdbcTemplate.update(deleteLinksSql, namedParameters);
-        this.namedParameterJdbcTemplate.update(deleteLocksSql, namedParameters);
-        this.namedParameterJdbcTemplate.update(deleteNodesSql, namedParameters);
+        this.transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                deleteNodesAndLinksOfWorkspace(workspace.getWorkspaceID());
+            }
+        });
         
         logger.info("Nodes and links belonging to workspace " + workspace.getWorkspaceID() + " were deleted");
     }
@@ -1264,6 +1600,244 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
     }
     
     
+    private MapSqlParameterSource getWorkspaceNodeParameters(WorkspaceNode node) {
+        
+        String profileSchemaURIStr = null;
+        if(node.getProfileSchemaURI() != null) {
+            profileSchemaURIStr = node.getProfileSchemaURI().toString();
+        }
+        String typeStr = null;
+        if(node.getType() != null) {
+            typeStr = node.getType().name();
+        }
+        String workspaceURLStr = null;
+        if(node.getWorkspaceURL() != null) {
+            workspaceURLStr = node.getWorkspaceURL().toString();
+        }
+        String archiveUriStr = null;
+        if(node.getArchiveURI() != null) {
+            archiveUriStr = node.getArchiveURI().toString();
+        }
+        String archiveUrlStr = null;
+        if(node.getArchiveURL() != null) {
+            archiveUrlStr = node.getArchiveURL().toString();
+        }
+        String originURLStr = null;
+        if(node.getOriginURI() != null) {
+            originURLStr = node.getOriginURI().toString();
+        }
+        String statusStr = null;
+        if(node.getStatus() != null) {
+            statusStr = node.getStatus().name();
+        }
+        
+        return new MapSqlParameterSource()
+                .addValue("workspace_id", node.getWorkspaceID())
+                .addValue("profile_schema_uri", profileSchemaURIStr)
+                .addValue("name", node.getName())
+                .addValue("title", node.getTitle())
+                .addValue("type", typeStr)
+                .addValue("workspace_url", workspaceURLStr)
+                .addValue("archive_uri", archiveUriStr)
+                .addValue("archive_url", archiveUrlStr)
+                .addValue("origin_url", originURLStr)
+                .addValue("status", statusStr)
+                .addValue("protected", node.isProtected())
+                .addValue("format", node.getFormat());
+    }
+    
+    private boolean isRecursiveQueriesSupported() {
+        
+        if(recursiveQueriesSupported == null) {
+            recursiveQueriesSupported = isPostgreSQL(dataSource);
+        }
+        return recursiveQueriesSupported;
+    }
+    
+    private boolean isNodeIdPreallocationSupported() {
+        
+        if(nodeIdPreallocationSupported == null) {
+            // the IDs of new nodes can only be taken in advance when the "workspace_node_id" column
+                // is backed by a sequence (in HSQLDB 1.8, for instance, identity columns are not)
+            nodeIdPreallocationSupported = isPostgreSQL(dataSource);
+            if(!nodeIdPreallocationSupported) {
+                logger.info("Node IDs cannot be allocated in advance for this database; nodes will be inserted one at a time");
+            }
+        }
+        return nodeIdPreallocationSupported;
+    }
+    
+    private static boolean isPostgreSQL(DataSource datasource) {
+        
+        try {
+            String productName = (String) JdbcUtils.extractDatabaseMetaData(datasource, "getDatabaseProductName");
+            return productName != null && productName.toLowerCase().contains("postgresql");
+        } catch(MetaDataAccessException ex) {
+            logger.warn("Could not determine the database product; PostgreSQL specific queries will not be used", ex);
+            return false;
+        }
+    }
+    
+    /**
+     * Retrieves the descendants of the given node with a single recursive query.
+     * Nodes are returned in depth-first order, with siblings ordered by their ID.
+     * The path of each row is used both for ordering and to avoid following cycles.
+     */
+    private Collection<WorkspaceNode> getDescendantWorkspaceNodesByTypeWithRecursiveQuery(int workspaceNodeID, WorkspaceNodeType nodeType) {
+        
+        String queryDescendantsSql = "WITH RECURSIVE descendant(workspace_node_id, path) AS ("
+                + " SELECT child_workspace_node_id, ARRAY[child_workspace_node_id] FROM node_link"
+                + " WHERE parent_workspace_node_id = :workspace_node_id"
+                + " UNION ALL"
+                + " SELECT l.child_workspace_node_id, d.path || l.child_workspace_node_id"
+                + " FROM node_link l JOIN descendant d ON l.parent_workspace_node_id = d.workspace_node_id"
+                + " WHERE NOT l.child_workspace_node_id = ANY(d.path))"
+                + " SELECT n.* FROM node n JOIN descendant d ON n.workspace_node_id = d.workspace_node_id";
+        MapSqlParameterSource namedParameters = new MapSqlParameterSource("workspace_node_id", workspaceNodeID);
+        if(!WorkspaceNodeType.UNKNOWN.equals(nodeType)) {
+            queryDescendantsSql += " WHERE n.type = :type";
+            namedParameters.addValue("type", nodeType.name());
+        }
+        queryDescendantsSql += " ORDER BY d.path;";
+        
+        List<WorkspaceNode> listToReturn = this.namedParameterJdbcTemplate.query(queryDescendantsSql, namedParameters, new WorkspaceNodeMapper());
+        
+        logger.info("Retrieved " + listToReturn.size() + " descendant nodes of the node with ID " + workspaceNodeID);
+        
+        return listToReturn;
+    }
+    
+    /**
+     * Deletes the nodes of the workspace, together with their links, replacements and locks,
+     * using one statement for each table. Meant to be called inside a transaction.
+     */
+    private void deleteNodesAndLinksOfWorkspace(int workspaceID) {
+        
+        String deleteReplacementsSql =
+                "DELETE FROM node_replacement WHERE old_node_id IN (SELECT workspace_node_id FROM node WHERE workspace_id = :workspace_id);";
+        String deleteLinksSql =
+                "DELETE FROM node_link WHERE parent_workspace_node_id IN (SELECT workspace_node_id FROM node WHERE workspace_id = :workspace_id);";
+        String deleteLocksSql =
+                "DELETE FROM node_lock WHERE workspace_id = :workspace_id;";
+        String deleteNodesSql =
+                "DELETE FROM node WHERE workspace_id = :workspace_id;";
+        SqlParameterSource namedParameters = new MapSqlParameterSource("workspace_id", workspaceID);
+        this.namedParameterJdbcTemplate.update(deleteReplacementsSql, namedParameters);
+        this.namedParameterJdbcTemplate.update(deleteLinksSql, namedParameters);
+        this.namedParameterJdbcTemplate.update(deleteLocksSql, namedParameters);
+        this.namedParameterJdbcTemplate.update(deleteNodesSql, namedParameters);
+    }
+    
+    /**
+     * Retrieves the unlinked nodes of the workspace and their descendants with a single recursive query.
+     * Each unlinked node (ordered by ID) is followed by its descendants, in depth-first order,
+     * which is the same order as the one of the per-node fallback.
+     */
+    private Collection<WorkspaceNode> getUnlinkedNodesAndDescendantsWithRecursiveQuery(int workspaceID) {
+        
+        String queryUnlinkedSubtreesSql = "WITH RECURSIVE unlinked(workspace_node_id, path) AS ("
+                + " SELECT workspace_node_id, ARRAY[workspace_node_id] FROM node"
+                + " WHERE workspace_id = :workspace_id AND " + ACTIVE_NODE_STATUS_CONDITION
+                + " AND " + NOT_LINKED_AS_CHILD_CONDITION
+                + " AND " + NOT_WORKSPACE_TOP_NODE_CONDITION
+                + " UNION ALL"
+                + " SELECT l.child_workspace_node_id, u.path || l.child_workspace_node_id"
+                + " FROM node_link l JOIN unlinked u ON l.parent_workspace_node_id = u.workspace_node_id"
+                + " WHERE NOT l.child_workspace_node_id = ANY(u.path))"
+                + " SELECT n.* FROM node n JOIN unlinked u ON n.workspace_node_id = u.workspace_node_id"
+                + " ORDER BY u.path;";
+        SqlParameterSource namedParameters = new MapSqlParameterSource("workspace_id", workspaceID);
+        
+        List<WorkspaceNode> listToReturn = this.namedParameterJdbcTemplate.query(queryUnlinkedSubtreesSql, namedParameters, new WorkspaceNodeMapper());
+        
+        logger.info("Retrieved " + listToReturn.size() + " unlinked nodes and descendants in the workspace with ID " + workspaceID);
+        
+        return listToReturn;
+    }
+    
+    /**
+     * Fallback for databases without support for recursive queries (e.g. HSQL).
+     * Loads the tree one level at a time (one query per level, in chunks of parent IDs)
+     * and then traverses it in memory, keeping the same order as the recursive query.
+     */
+    private Collection<WorkspaceNode> getDescendantWorkspaceNodesByTypeLevelByLevel(int workspaceNodeID, WorkspaceNodeType nodeType) {
+        
+        String queryChildrenSql = "SELECT node_link.parent_workspace_node_id AS link_parent_id, node.* FROM node_link, node"
+                + " WHERE node.workspace_node_id = node_link.child_workspace_node_id"
+                + " AND node_link.parent_workspace_node_id IN (:parent_ids)"
+                + " ORDER BY node.workspace_node_id";
+        
+        final Map<Integer, List<WorkspaceNode>> childrenByParent = new HashMap<>();
+        final WorkspaceNodeMapper nodeMapper = new WorkspaceNodeMapper();
+        Set<Integer> expandedNodeIDs = new HashSet<>();
+        List<Integer> nodeIDsToExpand = new ArrayList<>();
+        nodeIDsToExpand.add(workspaceNodeID);
+        
+        while(!nodeIDsToExpand.isEmpty()) {
+            
+            expandedNodeIDs.addAll(nodeIDsToExpand);
+            final Set<Integer> nextLevelNodeIDs = new LinkedHashSet<>();
+            
+            int from = 0;
+            int to = nodeIDsToExpand.size() <= 100 ? nodeIDsToExpand.size() : 100;
+            
+            while(from < nodeIDsToExpand.size()) {
+                
+                SqlParameterSource namedParameters = new MapSqlParameterSource("parent_ids", nodeIDsToExpand.subList(from, to));
+                this.namedParameterJdbcTemplate.query(queryChildrenSql, namedParameters, new RowCallbackHandler() {
+                    @Override
+                    public void processRow(ResultSet rs) throws SQLException {
+                        int parentID = rs.getInt("link_parent_id");
+                        WorkspaceNode child = nodeMapper.mapRow(rs, rs.getRow());
+                        List<WorkspaceNode> siblings = childrenByParent.get(parentID);
+                        if(siblings == null) {
+                            siblings = new ArrayList<>();
+                            childrenByParent.put(parentID, siblings);
+                        }
+                        siblings.add(child);
+                        nextLevelNodeIDs.add(child.getWorkspaceNodeID());
+                    }
+                });
+                from = to;
+                to = nodeIDsToExpand.size() <= from + 100 ? nodeIDsToExpand.size() : from + 100;
+            }
+            
+            nextLevelNodeIDs.removeAll(expandedNodeIDs);
+            nodeIDsToExpand = new ArrayList<>(nextLevelNodeIDs);
+        }
+        
+        List<WorkspaceNode> listToReturn = new ArrayList<>();
+        Set<Integer> currentPath = new HashSet<>();
+        currentPath.add(workspaceNodeID);
+        collectDescendantsInOrder(workspaceNodeID, nodeType, childrenByParent, currentPath, listToReturn);
+        
+        logger.info("Retrieved " + listToReturn.size() + " descendant nodes of the node with ID " + workspaceNodeID);
+        
+        return listToReturn;
+    }
+    
+    private void collectDescendantsInOrder(int workspaceNodeID, WorkspaceNodeType nodeType,
+            Map<Integer, List<WorkspaceNode>> childrenByParent, Set<Integer> currentPath, Collection<WorkspaceNode> descendants) {
+        
+        List<WorkspaceNode> children = childrenByParent.get(workspaceNodeID);
+        if(children == null) {
+            return;
+        }
+        for(WorkspaceNode child : children) {
+            int childID = child.getWorkspaceNodeID();
+            if(currentPath.contains(childID)) {
+                logger.warn("Node " + childID + " is an ancestor of itself; cycle not followed");
+                continue;
+            }
+            if(WorkspaceNodeType.UNKNOWN.equals(nodeType) || nodeType.equals(child.getType())) {
+                descendants.add(child);
+            }
+            currentPath.add(childID);
+            collectDescendantsInOrder(childID, nodeType, childrenByParent, currentPath, descendants);
+            currentPath.remove(childID);
+        }
+    }
+    
     private void setWorkspaceNodeAsReplaced(int workspaceID, int nodeID) {
         
         logger.debug("Setting node " + nodeID + " in workspace " + workspaceID + " as replaced");
@@ -1348,71 +1922,52 @@ public class LamusJdbcWorkspaceDao implements WorkspaceDao {
     }
     
     /**
-     * Inner class used to map rows from the node table into WorkspaceNode objects in queries
+     * Inner class used to map rows from the node table into WorkspaceNode objects in queries.
+     * The locations of the nodes are only parsed when requested (see LamusLazyWorkspaceNode)
+     * and the profile schema URIs are shared between the nodes mapped by the same instance.
      */
     private static final class WorkspaceNodeMapper implements RowMapper<WorkspaceNode> {
+        
+        // a workspace uses only a handful of profiles
+        private final Map<String, URI> profileSchemaURIs = new HashMap<>();
 
         @Override
         public WorkspaceNode mapRow(ResultSet rs, int rowNum) throws SQLException {
 
-            String profileSchemaURIStr = rs.getString("profile_schema_uri");
-            URI profileSchemaURI = null;
-            if(profileSchemaURIStr != null && !profileSchemaURIStr.isEmpty()) {
-                try {
-                    profileSchemaURI = new URI(profileSchemaURIStr);
-                } catch (URISyntaxException ex) {
-                    logger.warn("Profile Schema URI has invalid syntax; null used instead", ex);
-                }
-            }
-            String workspaceURLStr = rs.getString("workspace_url");
-            URL workspaceURL = null;
-            if(workspaceURLStr != null && !workspaceURLStr.isEmpty()) {
-                try {
-                    workspaceURL = new URL(workspaceURLStr);
-                } catch (MalformedURLException ex) {
-                    logger.warn("Workspace URL is malformed; null used instead", ex);
-                }
-            }
-            String archiveURIStr = rs.getString("archive_uri");
-            URI archiveURI = null;
-            if(archiveURIStr != null && !archiveURIStr.isEmpty()) {
-                try {
-                    archiveURI = new URI(archiveURIStr);
-                } catch (URISyntaxException ex) {
-                    logger.warn("Archive URI is malformed; null used instead", ex);
-                }
-            }
-            String archiveURLStr = rs.getString("archive_url");
-            URL archiveURL = null;
-            if(archiveURLStr != null) {
-                try {
-                    archiveURL = new URL(archiveURLStr);
-                } catch (MalformedURLException ex) {
-                    logger.warn("Archive URL is malformed; null used instead", ex);
-                }
-            }
-            String originURIStr = rs.getString("origin_url");
-            URI originURI = null;
-            if(originURIStr != null) {
-                originURI = URI.create(originURIStr);
-            }
-
-            WorkspaceNode workspaceNode = new LamusWorkspaceNode(
+            WorkspaceNode workspaceNode = new LamusLazyWorkspaceNode(
                     rs.getInt("workspace_node_id"),
                     rs.getInt("workspace_id"),
-                    profileSchemaURI,
+                    getProfileSchemaURI(rs.getString("profile_schema_uri")),
                     rs.getString("name"),
                     rs.getString("title"),
                     WorkspaceNodeType.valueOf(rs.getString("type")),
-                    workspaceURL,
-                    archiveURI,
-                    archiveURL,
-                    originURI,
+                    rs.getString("workspace_url"),
+                    rs.getString("archive_uri"),
+                    rs.getString("archive_url"),
+                    rs.getString("origin_url"),
                     WorkspaceNodeStatus.valueOf(rs.getString("status")),
                     rs.getBoolean("protected"),
                     rs.getString("format"));
             return workspaceNode;
         }
+        
+        private URI getProfileSchemaURI(String profileSchemaURIStr) {
+            
+            if(profileSchemaURIStr == null || profileSchemaURIStr.isEmpty()) {
+                return null;
+            }
+            if(profileSchemaURIs.containsKey(profileSchemaURIStr)) {
+                return profileSchemaURIs.get(profileSchemaURIStr);
+            }
+            URI profileSchemaURI = null;
+            try {
+                profileSchemaURI = new URI(profileSchemaURIStr);
+            } catch (URISyntaxException ex) {
+                logger.warn("Profile Schema URI has invalid syntax; null used instead", ex);
+            }
+            profileSchemaURIs.put(profileSchemaURIStr, profileSchemaURI);
+            return profileSchemaURI;
+        }
     }
     
     /**
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.filesystem;
+
+import java.io.File;
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * Information about a file which was copied into the workspace,
+ * calculated while the data was being written.
+ *
+ * @author guisil
+ */
+public class CopiedFileInfo {
+
+    private final File file;
+    private final long size;
+    private final String checksum;
+
+    /**
+     * @param file copied file
+     * @param size number of bytes written
+     * @param checksum MD5 digest of the content, in hexadecimal
+     */
+    public CopiedFileInfo(File file, long size, String checksum) {
+        this.file = file;
+        this.size = size;
+        this.checksum = checksum;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+
+    @Override
+    public int hashCode() {
+
+        HashCodeBuilder hashCodeB = new HashCodeBuilder()
+                .append(this.file)
+                .append(this.size)
+                .append(this.checksum);
+
+        return hashCodeB.toHashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+
+        if(this == obj) {
+            return true;
+        }
+        if(!(obj instanceof CopiedFileInfo)) {
+            return false;
+        }
+        CopiedFileInfo other = (CopiedFileInfo) obj;
+
+        EqualsBuilder equalsB = new EqualsBuilder()
+                .append(this.file, other.getFile())
+                .append(this.size, other.getSize())
+                .append(this.checksum, other.getChecksum());
+
+        return equalsB.isEquals();
+    }
+
+    @Override
+    public String toString() {
+        return "File: " + file + ", Size: " + size + ", Checksum: " + checksum;
+    }
+}
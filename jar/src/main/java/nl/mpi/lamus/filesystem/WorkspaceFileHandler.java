@@ -75,11 +75,28 @@ public interface WorkspaceFileHandler {
     public File getFileForImportedWorkspaceNode(File archiveFile, WorkspaceNode workspaceNode);
     
     /**
-     * Copies given input stream to the given file location
+     * Copies given input stream to the given file location,
+     * calculating the size and checksum of the data while it is written.
+     * The input stream is not closed.
      * @param inputStream input stream to copy
      * @param targetFile File object corresponding to the target location
+     * @return size and checksum of the copied file
      */
-    public void copyInputStreamToTargetFile(InputStream inputStream, File targetFile)
+    public CopiedFileInfo copyInputStreamToTargetFile(InputStream inputStream, File targetFile)
+            throws IOException;
+    
+    /**
+     * Moves the given uploaded file, already stored on disk (e.g. spooled by the web server),
+     * into the given location. The file is renamed if both locations are in the same file system
+     * and otherwise copied between file channels, being deleted afterwards.
+     * If a file already exists in the target location, it will be replaced.
+     * No checksum is calculated, since the data is not read
+     * (it is only calculated from the file when the typecheck needs it).
+     * @param uploadedFile File object corresponding to the uploaded file
+     * @param targetFile File object corresponding to the target location
+     * @return size of the moved file (without checksum)
+     */
+    public CopiedFileInfo moveUploadedFileToTargetFile(File uploadedFile, File targetFile)
             throws IOException;
     
     /**
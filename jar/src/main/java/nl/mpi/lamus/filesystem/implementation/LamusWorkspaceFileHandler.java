@@ -16,20 +16,27 @@
 package nl.mpi.lamus.filesystem.implementation;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.math.BigInteger;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
 import javax.xml.transform.stream.StreamResult;
 import nl.mpi.lamus.archive.ArchiveFileLocationProvider;
 import nl.mpi.lamus.archive.ArchiveFileHelper;
 import nl.mpi.lamus.exception.NodeAccessException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.filesystem.WorkspaceFileHandler;
 import nl.mpi.lamus.workspace.management.WorkspaceAccessChecker;
 import nl.mpi.lamus.workspace.model.Workspace;
@@ -51,6 +58,17 @@ import org.springframework.stereotype.Component;
 public class LamusWorkspaceFileHandler implements WorkspaceFileHandler {
     
     private static final Logger logger = LoggerFactory.getLogger(LamusWorkspaceFileHandler.class);
+    
+    private static final int COPY_BUFFER_SIZE = 1024 * 1024;
+    private static final String CHECKSUM_ALGORITHM = "MD5";
+    
+    // direct buffers are expensive to allocate, so each thread keeps its own
+    private static final ThreadLocal<ByteBuffer> copyBuffer = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+        }
+    };
         
     @Autowired
     @Qualifier("workspaceBaseDirectory")
@@ -134,17 +152,60 @@ public class LamusWorkspaceFileHandler implements WorkspaceFileHandler {
      * @see WorkspaceFileHandler#copyInputStreamToTargetFile(java.io.InputStream, java.io.File)
      */
     @Override
-    public void copyInputStreamToTargetFile(InputStream inputStream, File targetFile)
+    public CopiedFileInfo copyInputStreamToTargetFile(InputStream inputStream, File targetFile)
             throws IOException {
         
-        byte[] buffer = new byte[1024];
+        MessageDigest checksumDigest;
+        try {
+            checksumDigest = MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Checksum algorithm not available: " + CHECKSUM_ALGORITHM, ex);
+        }
+        
+        ByteBuffer buffer = copyBuffer.get();
+        buffer.clear();
+        long size = 0;
         
-        try (OutputStream outputStream = new FileOutputStream(targetFile)) {
-            int len;
-            while((len = inputStream.read(buffer)) > 0) {
-                outputStream.write(buffer, 0, len);
+        // the input channel is not closed, since that would close the given stream (e.g. a whole zip file)
+        ReadableByteChannel inputChannel = Channels.newChannel(inputStream);
+        try (FileChannel outputChannel = FileChannel.open(targetFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            boolean endOfStream = false;
+            while(!endOfStream) {
+                // the stream channel only transfers a few KB per read, so the buffer is filled before writing
+                while(buffer.hasRemaining() && !endOfStream) {
+                    endOfStream = inputChannel.read(buffer) == -1;
+                }
+                buffer.flip();
+                checksumDigest.update(buffer.duplicate());
+                while(buffer.hasRemaining()) {
+                    size += outputChannel.write(buffer);
+                }
+                buffer.clear();
             }
         }
+        
+        String checksum = String.format("%032x", new BigInteger(1, checksumDigest.digest()));
+        return new CopiedFileInfo(targetFile, size, checksum);
+    }
+
+    /**
+     * @see WorkspaceFileHandler#moveUploadedFileToTargetFile(java.io.File, java.io.File)
+     */
+    @Override
+    public CopiedFileInfo moveUploadedFileToTargetFile(File uploadedFile, File targetFile)
+            throws IOException {
+        
+        try {
+            Files.move(uploadedFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            logger.debug("Uploaded file " + uploadedFile + " is in a different file system. Copying it instead...");
+            transferFile(uploadedFile, targetFile);
+            deleteFile(uploadedFile);
+        }
+        
+        return new CopiedFileInfo(targetFile, targetFile.length(), null);
     }
 
     /**
@@ -204,6 +265,32 @@ public class LamusWorkspaceFileHandler implements WorkspaceFileHandler {
 		}
     }
     
+    private void transferFile(File originFile, File targetFile)
+            throws IOException {
+        
+        boolean transferred = false;
+        try (FileChannel inputChannel = FileChannel.open(originFile.toPath(), StandardOpenOption.READ);
+                FileChannel outputChannel = FileChannel.open(targetFile.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            
+            // the transfer can be done by the operating system, without the data going through the heap
+            long size = inputChannel.size();
+            long position = 0;
+            while(position < size) {
+                long count = inputChannel.transferTo(position, size - position, outputChannel);
+                if(count <= 0) {
+                    throw new IOException("Couldn't copy file " + originFile + " to " + targetFile);
+                }
+                position += count;
+            }
+            transferred = true;
+        } finally {
+            if(!transferred) {
+                deleteFile(targetFile);
+            }
+        }
+    }
+    
     private File copyOrphanFileToWorkspace(File file, Workspace workspace) throws URISyntaxException {
     	File wsOrphansDirectory = new File(workspaceBaseDirectory, workspace.getWorkspaceID() + "/" + orphansDirectoryName);
         File origOrphansDirectory = archiveFileLocationProvider.getOrphansDirectory(workspace.getTopNodeArchiveURL().toURI());
@@ -60,6 +60,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.xmlbeans.SchemaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.xml.sax.SAXException;
@@ -75,7 +76,7 @@ public class LamusMetadataApiBridge implements MetadataApiBridge {
 
     private static final Logger logger = LoggerFactory.getLogger(LamusMetadataApiBridge.class);
     
-    private final MetadataAPI metadataAPI;
+    private final ThreadLocal<MetadataAPI> metadataAPI;
     private final WorkspaceFileHandler workspaceFileHandler;
     private final HandleParser handleParser;
     private final CMDIMetadataElementFactory metadataElementFactory;
@@ -84,11 +85,16 @@ public class LamusMetadataApiBridge implements MetadataApiBridge {
     
     
     @Autowired
-    public LamusMetadataApiBridge(MetadataAPI mdApi,
+    public LamusMetadataApiBridge(final ObjectFactory<MetadataAPI> mdApiFactory,
             WorkspaceFileHandler wsFileHandler, HandleParser hdlParser,
             CMDIMetadataElementFactory mdElementFactory,
             AllowedCmdiProfiles profiles) {
-        this.metadataAPI = mdApi;
+        this.metadataAPI = new ThreadLocal<MetadataAPI>() {
+            @Override
+            protected MetadataAPI initialValue() {
+                return mdApiFactory.getObject();
+            }
+        };
         this.workspaceFileHandler = wsFileHandler;
         this.handleParser = hdlParser;
         this.metadataElementFactory = mdElementFactory;
@@ -105,7 +111,7 @@ public class LamusMetadataApiBridge implements MetadataApiBridge {
         
         MetadataDocument document;
         try {
-            document = metadataAPI.getMetadataDocument(fileURL);
+            document = metadataAPI.get().getMetadataDocument(fileURL);
         } catch (IOException | MetadataException ex) {
             logger.warn("Error retrieving metadata document for URL " + fileURL, ex);
             return null;
@@ -154,7 +160,7 @@ public class LamusMetadataApiBridge implements MetadataApiBridge {
     @Override
     public void removeSelfHandleAndSaveDocument(URL fileURL) throws IOException, TransformerException, MetadataException {
         
-        MetadataDocument document = metadataAPI.getMetadataDocument(fileURL);
+        MetadataDocument document = metadataAPI.get().getMetadataDocument(fileURL);
 
         removeSelfHandleAndSaveDocument(document, fileURL);
     }
@@ -193,7 +199,7 @@ public class LamusMetadataApiBridge implements MetadataApiBridge {
         logger.debug("Saving metadata document; targetUrl: " + targetURL);
         
         StreamResult documentStreamResult = workspaceFileHandler.getStreamResultForNodeFile(FileUtils.toFile(targetURL));
-        metadataAPI.writeMetadataDocument(document, documentStreamResult);
+        metadataAPI.get().writeMetadataDocument(document, documentStreamResult);
     }
 
     /**
@@ -204,7 +210,7 @@ public class LamusMetadataApiBridge implements MetadataApiBridge {
         
         MetadataDocument document;
         try {
-            document = metadataAPI.getMetadataDocument(fileURL);
+            document = metadataAPI.get().getMetadataDocument(fileURL);
         } catch (IOException | MetadataException ex) {
             logger.info("Error getting document from file [" + fileURL + "]", ex);
             return false;
@@ -222,7 +228,7 @@ public class LamusMetadataApiBridge implements MetadataApiBridge {
         logger.debug("Validating metadata file [" + document.getFileLocation() + "]");
         
         try {
-            metadataAPI.validateMetadataDocument(document, new DefaultHandler());
+            metadataAPI.get().validateMetadataDocument(document, new DefaultHandler());
         } catch(SAXException ex) {
             logger.info("Validation error in file [" + document.getFileLocation() + "]", ex);
             return false;
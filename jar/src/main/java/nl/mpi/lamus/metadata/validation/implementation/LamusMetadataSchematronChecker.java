@@ -25,6 +25,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.xml.transform.stream.StreamSource;
 import nl.mpi.lamus.metadata.validation.MetadataSchematronChecker;
 import org.oclc.purl.dsdl.svrl.SchematronOutputType;
@@ -33,6 +38,10 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 /**
+ * The Schematron XSLT files are compiled only once and the resulting
+ * resources are reused for all validations, also by several threads at the same time
+ * (each validation gets its own transformer from the compiled templates).
+ * 
  * @see MetadataSchematronChecker
  * @author guisil
  */
@@ -45,6 +54,12 @@ public class LamusMetadataSchematronChecker implements MetadataSchematronChecker
     @Autowired
     @Qualifier("schematronXsltFile_submit")
     private File schematronXsltFile_submit;
+    
+    @Autowired
+    @Qualifier("MetadataValidationExecutorService")
+    private ExecutorService validationExecutorService;
+    
+    private final ConcurrentHashMap<File, ISchematronResource> compiledSchematronResources = new ConcurrentHashMap<>();
 
     /**
      * @see MetadataChecker#validateUploadedFile(java.io.File)
@@ -58,6 +73,8 @@ public class LamusMetadataSchematronChecker implements MetadataSchematronChecker
     }
 
     /**
+     * The files are validated in parallel, but the issues are returned
+     * in the same order as the given files.
      * @see MetadataChecker#validateSubmittedFile(java.util.Collection)
      */
     @Override
@@ -65,25 +82,58 @@ public class LamusMetadataSchematronChecker implements MetadataSchematronChecker
 
         final ISchematronResource schRes = getSchematronResource(schematronXsltFile_submit);
 
-        Collection<MetadataValidationIssue> issuesToReturn = new ArrayList<>();
-        for(File mdFile : metadataFiles) {
-            issuesToReturn.addAll(validateFile(schRes, mdFile));
+        List<Future<Collection<MetadataValidationIssue>>> validationResults = new ArrayList<>();
+        try {
+            for(final File mdFile : metadataFiles) {
+                validationResults.add(validationExecutorService.submit(new Callable<Collection<MetadataValidationIssue>>() {
+                    @Override
+                    public Collection<MetadataValidationIssue> call() throws Exception {
+                        return validateFile(schRes, mdFile);
+                    }
+                }));
+            }
+            
+            Collection<MetadataValidationIssue> issuesToReturn = new ArrayList<>();
+            for(Future<Collection<MetadataValidationIssue>> result : validationResults) {
+                issuesToReturn.addAll(getValidationResult(result));
+            }
+            return issuesToReturn;
+        } finally {
+            for(Future<Collection<MetadataValidationIssue>> result : validationResults) {
+                result.cancel(true);
+            }
         }
-        return issuesToReturn;
     }
 
     
     private ISchematronResource getSchematronResource(File schXsltFile) {
+        
+        ISchematronResource schRes = compiledSchematronResources.get(schXsltFile);
+        if(schRes != null) {
+            return schRes;
+        }
 
-        final ISchematronResource schRes = new SchematronResourceXSLT(new FileSystemResource(schXsltFile));
+        schRes = new SchematronResourceXSLT(new FileSystemResource(schXsltFile));
 
         if (!schRes.isValidSchematron()) {
             throw new IllegalArgumentException("Invalid Schematron");
         }
-
-        return schRes;
+        
+        ISchematronResource existingSchRes = compiledSchematronResources.putIfAbsent(schXsltFile, schRes);
+        return existingSchRes != null ? existingSchRes : schRes;
+    }
+    
+    private Collection<MetadataValidationIssue> getValidationResult(Future<Collection<MetadataValidationIssue>> result) throws Exception {
+        
+        try {
+            return result.get();
+        } catch(ExecutionException ex) {
+            if(ex.getCause() instanceof Exception) {
+                throw (Exception) ex.getCause();
+            }
+            throw ex;
+        }
     }
-
     private Collection<MetadataValidationIssue> validateFile(ISchematronResource schRes, File fileToValidate) throws Exception {
 
         Collection<MetadataValidationIssue> issues = new ArrayList<>();
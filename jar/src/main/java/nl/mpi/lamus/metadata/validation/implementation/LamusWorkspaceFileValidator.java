@@ -25,6 +25,11 @@ import eu.clarin.cmdi.validator.SimpleCMDIValidatorProcessor;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.MetadataValidationException;
 import nl.mpi.lamus.metadata.validation.MetadataSchematronChecker;
@@ -33,6 +38,7 @@ import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 /**
@@ -46,11 +52,17 @@ public class LamusWorkspaceFileValidator implements WorkspaceFileValidator{
     
     private final WorkspaceDao workspaceDao;
     private final MetadataSchematronChecker metadataChecker;
+    private final ExecutorService validationExecutorService;
+    private final File cmdiSchemaCacheDirectory;
     
     @Autowired
-    public LamusWorkspaceFileValidator(WorkspaceDao wsDao, MetadataSchematronChecker mdChecker) {
+    public LamusWorkspaceFileValidator(WorkspaceDao wsDao, MetadataSchematronChecker mdChecker,
+            @Qualifier("MetadataValidationExecutorService") ExecutorService validationExecutorService,
+            @Qualifier("cmdiSchemaCacheDirectory") File cmdiSchemaCacheDirectory) {
         workspaceDao = wsDao;
         metadataChecker = mdChecker;
+        this.validationExecutorService = validationExecutorService;
+        this.cmdiSchemaCacheDirectory = cmdiSchemaCacheDirectory;
     }
     
     /**
@@ -131,6 +143,8 @@ public class LamusWorkspaceFileValidator implements WorkspaceFileValidator{
         
         CMDIValidatorConfig.Builder builder = new CMDIValidatorConfig.Builder(file, handler);
         builder.disableSchematron();
+        // profile schemas are downloaded only once, then loaded from the cache
+        builder.schemaCacheDirectory(getSchemaCacheDirectory());
         
         CMDIValidator validator = new CMDIValidator(builder.build());
         CMDIValidatorProcessor processor = new SimpleCMDIValidatorProcessor();
@@ -164,20 +178,30 @@ public class LamusWorkspaceFileValidator implements WorkspaceFileValidator{
         Collection<MetadataValidationIssue> validationIssues = new ArrayList<>();
         
         Collection<WorkspaceNode> metadataNodesInTree = workspaceDao.getMetadataNodesInTreeForWorkspace(workspaceID);
-        for(WorkspaceNode node : metadataNodesInTree) {
-    		// External and protected node do not have WorkspaceURL
-    		File fileToValidate;
-    		if (node.getWorkspaceURL() != null) {
-    			fileToValidate = new File(node.getWorkspaceURL().getPath());
-    		} else {
-    			fileToValidate = new File(node.getArchiveURL().getPath());
-    		}
-        	try {
-                triggerSchemaValidationForFile(workspaceID, fileToValidate);                
-        	} catch (MetadataValidationException ex) {
-        		validationIssues.addAll(ex.getValidationIssues());
-        	}
-        }  
+        
+        // files are validated in parallel, but the issues are collected in the order of the nodes
+        List<Future<Collection<MetadataValidationIssue>>> validationResults = new ArrayList<>();
+        try {
+            for(WorkspaceNode node : metadataNodesInTree) {
+                // External and protected node do not have WorkspaceURL
+                final File fileToValidate;
+                if (node.getWorkspaceURL() != null) {
+                    fileToValidate = new File(node.getWorkspaceURL().getPath());
+                } else {
+                    fileToValidate = new File(node.getArchiveURL().getPath());
+                }
+                validationResults.add(validationExecutorService.submit(
+                        new SchemaValidationTask(workspaceID, fileToValidate)));
+            }
+            
+            for(Future<Collection<MetadataValidationIssue>> result : validationResults) {
+                validationIssues.addAll(getSchemaValidationResult(workspaceID, result));
+            }
+        } finally {
+            for(Future<Collection<MetadataValidationIssue>> result : validationResults) {
+                result.cancel(true);
+            }
+        }
         
         if(!validationIssues.isEmpty()) {
             throwMetadataValidationException(
@@ -216,6 +240,32 @@ public class LamusWorkspaceFileValidator implements WorkspaceFileValidator{
     }
     
     
+    private File getSchemaCacheDirectory() {
+        if(!cmdiSchemaCacheDirectory.isDirectory() && !cmdiSchemaCacheDirectory.mkdirs()) {
+            logger.warn("Could not create CMDI schema cache directory " + cmdiSchemaCacheDirectory);
+        }
+        return cmdiSchemaCacheDirectory;
+    }
+    
+    private Collection<MetadataValidationIssue> getSchemaValidationResult(int workspaceID, Future<Collection<MetadataValidationIssue>> result)
+            throws MetadataValidationException, CMDIValidatorInitException {
+        
+        try {
+            return result.get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MetadataValidationException("Interrupted during schema metadata validation", workspaceID, ex);
+        } catch(ExecutionException ex) {
+            if(ex.getCause() instanceof CMDIValidatorInitException) {
+                throw (CMDIValidatorInitException) ex.getCause();
+            }
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new MetadataValidationException("Problems with schema metadata validation", workspaceID, ex.getCause());
+        }
+    }
+    
     private void throwMetadataValidationException(int workspaceID, Exception cause, String message, Collection<MetadataValidationIssue> issues)
                 throws MetadataValidationException {
         
@@ -225,4 +275,30 @@ public class LamusWorkspaceFileValidator implements WorkspaceFileValidator{
         }
         throw exceptionToThrow;
     }
+    
+    
+    /**
+     * Validates one file against its schema, returning the issues
+     * instead of throwing them.
+     */
+    private class SchemaValidationTask implements Callable<Collection<MetadataValidationIssue>> {
+        
+        private final int workspaceID;
+        private final File fileToValidate;
+        
+        private SchemaValidationTask(int workspaceID, File fileToValidate) {
+            this.workspaceID = workspaceID;
+            this.fileToValidate = fileToValidate;
+        }
+        
+        @Override
+        public Collection<MetadataValidationIssue> call() throws CMDIValidatorInitException {
+            try {
+                triggerSchemaValidationForFile(workspaceID, fileToValidate);
+                return new ArrayList<>();
+            } catch(MetadataValidationException ex) {
+                return ex.getValidationIssues();
+            }
+        }
+    }
 }
@@ -17,11 +17,9 @@ package nl.mpi.lamus.service;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipInputStream;
 import nl.mpi.archiving.corpusstructure.core.NodeNotFoundException;
 import nl.mpi.lamus.exception.CrawlerInvocationException;
 import nl.mpi.lamus.exception.DisallowedPathException;
@@ -34,6 +32,7 @@ import nl.mpi.lamus.exception.WorkspaceNotFoundException;
 import nl.mpi.lamus.exception.WorkspaceException;
 import nl.mpi.lamus.exception.WorkspaceExportException;
 import nl.mpi.lamus.exception.WorkspaceImportException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import nl.mpi.lamus.workspace.importing.implementation.ImportProblem;
@@ -107,6 +106,8 @@ public interface WorkspaceService {
     
     /**
      * Submits a workspace back into the archive.
+     * The data is moved in the background, the outcome being
+     * reflected in the status of the workspace.
      * 
      * @param userID ID of the user
      * @param workspaceID ID of the workspace
@@ -199,25 +200,26 @@ public interface WorkspaceService {
     public File getWorkspaceUploadDirectory(int workspaceID);
     
     /**
-     * Given an InputStream and filename, uploads the file into the workspace.
+     * Given a file already stored on disk and a filename, moves the file into the workspace.
      * @param userID ID of the user
      * @param workspaceID ID of the workspace
-     * @param inputStream InputStream to be uploaded
+     * @param uploadedFile file to be uploaded (which will no longer exist in its original location)
      * @param filename name of the file to upload
-     * @return uploaded File
+     * @return information about the uploaded file, to be passed on when processing it
      */
-    public File uploadFileIntoWorkspace(String userID, int workspaceID, InputStream inputStream, String filename)
+    public CopiedFileInfo uploadFileIntoWorkspace(String userID, int workspaceID, File uploadedFile, String filename)
             throws IOException, DisallowedPathException;
     
     /**
-     * Given a ZipInputStream and filename, uploads the zip content into the workspace.
+     * Given a zip file already stored on disk, uploads its content into the workspace.
+     * The zip file itself is not deleted.
      * @param userID ID of the user
      * @param workspaceID ID of the workspace
-     * @param zipInputStream ZipInputStream to be uploaded
+     * @param zipFile zip file to be uploaded
      * @param filename name of the file to upload
      * @return Object containing results of the upload for the files in the zip
      */
-    public ZipUploadResult uploadZipFileIntoWorkspace(String userID, int workspaceID, ZipInputStream zipInputStream, String filename)
+    public ZipUploadResult uploadZipFileIntoWorkspace(String userID, int workspaceID, File zipFile, String filename)
             throws IOException, DisallowedPathException;
     
     /**
@@ -226,9 +228,10 @@ public interface WorkspaceService {
      * @param userID ID of the user
      * @param workspaceID ID of the workspace
      * @param uploadedFiles Files previously uploaded
+     * @param copiedFilesInfo information returned by the upload of the files
      * @return collection containing the eventual problems which occurred with the uploaded files
      */
-    public Collection<ImportProblem> processUploadedFiles(String userID, int workspaceID, Collection<File> uploadedFiles)
+    public Collection<ImportProblem> processUploadedFiles(String userID, int workspaceID, Collection<File> uploadedFiles, Collection<CopiedFileInfo> copiedFilesInfo)
             throws WorkspaceException;
     
     /**
@@ -17,11 +17,9 @@ package nl.mpi.lamus.service.implementation;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipInputStream;
 import nl.mpi.archiving.corpusstructure.core.NodeNotFoundException;
 import nl.mpi.lamus.archive.ArchiveHandleHelper;
 import nl.mpi.lamus.dao.WorkspaceDao;
@@ -38,6 +36,7 @@ import nl.mpi.lamus.service.WorkspaceService;
 import nl.mpi.lamus.exception.WorkspaceException;
 import nl.mpi.lamus.exception.WorkspaceExportException;
 import nl.mpi.lamus.exception.WorkspaceImportException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.workspace.exporting.WorkspaceCorpusStructureExporter;
 import nl.mpi.lamus.workspace.management.WorkspaceNodeLinkManager;
 import nl.mpi.lamus.workspace.management.WorkspaceAccessChecker;
@@ -144,6 +143,8 @@ public class LamusWorkspaceService implements WorkspaceService {
         
         this.nodeAccessChecker.ensureUserHasAccessToWorkspace(userID, workspaceID);
         
+        // not waiting for the result; the outcome of the data being moved ends up in the
+        // status of the workspace, while unexpected failures of the job are logged by the scheduler
         this.workspaceManager.submitWorkspace(workspaceID, keepUnlinkedFiles);
     }
 
@@ -324,39 +325,39 @@ public class LamusWorkspaceService implements WorkspaceService {
     }
 
     /**
-     * @see WorkspaceService#uploadFileIntoWorkspace(java.lang.String, int, java.io.InputStream, java.lang.String)
+     * @see WorkspaceService#uploadFileIntoWorkspace(java.lang.String, int, java.io.File, java.lang.String)
      */
     @Override
-    public File uploadFileIntoWorkspace(String userID, int workspaceID, InputStream inputStream, String filename)
+    public CopiedFileInfo uploadFileIntoWorkspace(String userID, int workspaceID, File uploadedFile, String filename)
             throws IOException, DisallowedPathException {
         
         logger.debug("Triggered upload of file into workspace; userID: " + userID + "; workspaceID: " + workspaceID + "; filename: " + filename);
         
-        return this.workspaceUploader.uploadFileIntoWorkspace(workspaceID, inputStream, filename);
+        return this.workspaceUploader.uploadFileIntoWorkspace(workspaceID, uploadedFile, filename);
     }
     
     /**
-     * @see WorkspaceService#uploadZipFileIntoWorkspace(java.lang.String, int, java.util.zip.ZipInputStream, java.lang.String)
+     * @see WorkspaceService#uploadZipFileIntoWorkspace(java.lang.String, int, java.io.File, java.lang.String)
      */
     @Override
-    public ZipUploadResult uploadZipFileIntoWorkspace(String userID, int workspaceID, ZipInputStream zipInputStream, String filename)
+    public ZipUploadResult uploadZipFileIntoWorkspace(String userID, int workspaceID, File zipFile, String filename)
             throws IOException, DisallowedPathException {
         
         logger.debug("Triggered upload of zip file into workspace; userID: " + userID + "; workspaceID: " + workspaceID + "; filename: " + filename);
         
-        return this.workspaceUploader.uploadZipFileIntoWorkspace(workspaceID, zipInputStream);
+        return this.workspaceUploader.uploadZipFileIntoWorkspace(workspaceID, zipFile);
     }
     
     /**
-     * @see WorkspaceService#processUploadedFiles(java.lang.String, int, java.util.Collection)
+     * @see WorkspaceService#processUploadedFiles(java.lang.String, int, java.util.Collection, java.util.Collection)
      */
     @Override
-    public Collection<ImportProblem> processUploadedFiles(String userID, int workspaceID, Collection<File> uploadedFiles)
+    public Collection<ImportProblem> processUploadedFiles(String userID, int workspaceID, Collection<File> uploadedFiles, Collection<CopiedFileInfo> copiedFilesInfo)
             throws WorkspaceException {
         
         logger.debug("Triggered processing of uploaded files; userID: " + userID + "; workspaceID: " + workspaceID);
         
-        return this.workspaceUploader.processUploadedFiles(workspaceID, uploadedFiles);
+        return this.workspaceUploader.processUploadedFiles(workspaceID, uploadedFiles, copiedFilesInfo);
     }
     
     /**
@@ -60,7 +60,13 @@ public class LamusWorkspaceTreeService extends LamusWorkspaceService implements
     public WorkspaceTreeNode getTreeNode(int nodeID, WorkspaceTreeNode parentTreeNode)
             throws WorkspaceNodeNotFoundException {
         
-        WorkspaceNode child = this.workspaceDao.getWorkspaceNode(nodeID);
+        WorkspaceNode child = null;
+        if(parentTreeNode != null) {
+            child = this.workspaceDao.getWorkspaceTreeSnapshot(parentTreeNode.getWorkspaceID()).getNode(nodeID);
+        }
+        if(child == null) {
+            child = this.workspaceDao.getWorkspaceNode(nodeID);
+        }
         
         WorkspaceTreeNode treeNode = new LamusWorkspaceTreeNode(
                         child.getWorkspaceNodeID(), child.getWorkspaceID(),
@@ -78,7 +84,7 @@ public class LamusWorkspaceTreeService extends LamusWorkspaceService implements
     @Override
     public List<WorkspaceTreeNode> listUnlinkedTreeNodes(String userID, int workspaceID) {
         
-        List<WorkspaceNode> nodes = super.listUnlinkedNodes(userID, workspaceID);
+        List<WorkspaceNode> nodes = this.workspaceDao.getWorkspaceTreeSnapshot(workspaceID).getUnlinkedNodes();
         List<WorkspaceTreeNode> treeNodes = new ArrayList<>();
         
         for(WorkspaceNode node : nodes) {
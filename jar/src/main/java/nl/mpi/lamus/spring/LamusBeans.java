@@ -39,6 +39,7 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.ImportResource;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.annotation.Scope;
 
 /**
  *
@@ -65,11 +66,74 @@ public class LamusBeans {
     @Autowired
     @Qualifier("handleAdminHandlePassword")
     private String handleAdminPassword;
+    @Autowired
+    @Qualifier("maxConcurrentWorkspaceJobs")
+    private int maxConcurrentWorkspaceJobs;
+    @Autowired
+    @Qualifier("numberOfWorkspaceImportThreads")
+    private int numberOfWorkspaceImportThreads;
+    @Autowired
+    @Qualifier("numberOfUploadProcessingThreads")
+    private int numberOfUploadProcessingThreads;
+    @Autowired
+    @Qualifier("numberOfMetadataValidationThreads")
+    private int numberOfMetadataValidationThreads;
+    @Autowired
+    @Qualifier("numberOfHandleAssignmentThreads")
+    private int numberOfHandleAssignmentThreads;
+    @Autowired
+    @Qualifier("numberOfCrawlerStatePollThreads")
+    private int numberOfCrawlerStatePollThreads;
+    @Autowired
+    @Qualifier("numberOfWorkspaceFinalisationThreads")
+    private int numberOfWorkspaceFinalisationThreads;
     
     
     @Bean
     @Qualifier("WorkspaceExecutorService")
     public ExecutorService workspaceExecutorService() {
+        return Executors.newFixedThreadPool(maxConcurrentWorkspaceJobs);
+    }
+    
+    @Bean
+    @Qualifier("WorkspaceImportExecutorService")
+    public ExecutorService workspaceImportExecutorService() {
+        return Executors.newFixedThreadPool(numberOfWorkspaceImportThreads);
+    }
+    
+    @Bean
+    @Qualifier("UploadProcessingExecutorService")
+    public ExecutorService uploadProcessingExecutorService() {
+        return Executors.newFixedThreadPool(numberOfUploadProcessingThreads);
+    }
+    
+    @Bean
+    @Qualifier("MetadataValidationExecutorService")
+    public ExecutorService metadataValidationExecutorService() {
+        return Executors.newFixedThreadPool(numberOfMetadataValidationThreads);
+    }
+    
+    @Bean
+    @Qualifier("HandleAssignmentExecutorService")
+    public ExecutorService handleAssignmentExecutorService() {
+        return Executors.newFixedThreadPool(numberOfHandleAssignmentThreads);
+    }
+    
+    @Bean
+    @Qualifier("CrawlerStatePollExecutorService")
+    public ExecutorService crawlerStatePollExecutorService() {
+        return Executors.newFixedThreadPool(numberOfCrawlerStatePollThreads);
+    }
+    
+    @Bean
+    @Qualifier("WorkspaceFinalisationExecutorService")
+    public ExecutorService workspaceFinalisationExecutorService() {
+        return Executors.newFixedThreadPool(numberOfWorkspaceFinalisationThreads);
+    }
+    
+    @Bean
+    @Qualifier("WorkspacePurgeExecutorService")
+    public ExecutorService workspacePurgeExecutorService() {
         return Executors.newSingleThreadExecutor();
     }
     
@@ -79,7 +143,10 @@ public class LamusBeans {
         return Executors.newScheduledThreadPool(1);
     }
     
+    // neither the metadata API nor the deep typechecker are thread-safe;
+    // the components using them from several threads get one instance per thread
     @Bean
+    @Scope("prototype")
     public MetadataAPI metadataAPI() {
         return new CMDIApi();
     }
@@ -95,6 +162,7 @@ public class LamusBeans {
     }
     
     @Bean
+    @Scope("prototype")
     public DeepFileType deepTypechecker() {
         return new DeepFileType();
     }
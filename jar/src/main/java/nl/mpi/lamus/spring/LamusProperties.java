@@ -90,6 +90,182 @@ public class LamusProperties implements ServletContextAware {
         return numberOfDaysOfInactivityAllowedSinceLastWarningEmail;
     }
     
+    @Value("${max_concurrent_workspace_jobs}")
+    private int maxConcurrentWorkspaceJobs;
+    @Bean
+    @Qualifier("maxConcurrentWorkspaceJobs")
+    public int maxConcurrentWorkspaceJobs() {
+        return maxConcurrentWorkspaceJobs;
+    }
+    
+    @Value("${workspace_import_threads}")
+    private int numberOfWorkspaceImportThreads;
+    @Bean
+    @Qualifier("numberOfWorkspaceImportThreads")
+    public int numberOfWorkspaceImportThreads() {
+        return numberOfWorkspaceImportThreads;
+    }
+    
+    @Value("${workspace_import_batch_size}")
+    private int workspaceImportBatchSize;
+    @Bean
+    @Qualifier("workspaceImportBatchSize")
+    public int workspaceImportBatchSize() {
+        return workspaceImportBatchSize;
+    }
+    
+    @Value("${max_cached_tree_snapshot_nodes}")
+    private int maxCachedTreeSnapshotNodes;
+    @Bean
+    @Qualifier("maxCachedTreeSnapshotNodes")
+    public int maxCachedTreeSnapshotNodes() {
+        return maxCachedTreeSnapshotNodes;
+    }
+    
+    @Value("${upload_processing_threads}")
+    private int numberOfUploadProcessingThreads;
+    @Bean
+    @Qualifier("numberOfUploadProcessingThreads")
+    public int numberOfUploadProcessingThreads() {
+        return numberOfUploadProcessingThreads;
+    }
+    
+    @Value("${zip_upload_max_entries}")
+    private int maxZipUploadEntries;
+    @Bean
+    @Qualifier("maxZipUploadEntries")
+    public int maxZipUploadEntries() {
+        return maxZipUploadEntries;
+    }
+    
+    @Value("${zip_upload_max_size_in_megabytes}")
+    private long maxZipUploadSizeInMegabytes;
+    @Bean
+    @Qualifier("maxZipUploadSizeInMegabytes")
+    public long maxZipUploadSizeInMegabytes() {
+        return maxZipUploadSizeInMegabytes;
+    }
+    
+    @Value("${metadata_validation_threads}")
+    private int numberOfMetadataValidationThreads;
+    @Bean
+    @Qualifier("numberOfMetadataValidationThreads")
+    public int numberOfMetadataValidationThreads() {
+        return numberOfMetadataValidationThreads;
+    }
+    
+    @Value("${handle_assignment_threads}")
+    private int numberOfHandleAssignmentThreads;
+    @Bean
+    @Qualifier("numberOfHandleAssignmentThreads")
+    public int numberOfHandleAssignmentThreads() {
+        return numberOfHandleAssignmentThreads;
+    }
+    
+    @Value("${typechecker_configuration_version}")
+    private String typecheckerConfigurationVersion;
+    @Bean
+    @Qualifier("typecheckerConfigurationVersion")
+    public String typecheckerConfigurationVersion() {
+        return typecheckerConfigurationVersion;
+    }
+    
+    @Value("${corpusstructure_cache_max_entries}")
+    private int corpusStructureCacheMaxEntries;
+    @Bean
+    @Qualifier("corpusStructureCacheMaxEntries")
+    public int corpusStructureCacheMaxEntries() {
+        return corpusStructureCacheMaxEntries;
+    }
+    
+    @Value("${corpusstructure_cache_time_to_live_seconds}")
+    private long corpusStructureCacheTimeToLiveSeconds;
+    @Bean
+    @Qualifier("corpusStructureCacheTimeToLiveSeconds")
+    public long corpusStructureCacheTimeToLiveSeconds() {
+        return corpusStructureCacheTimeToLiveSeconds;
+    }
+    
+    @Value("${corpusstructure_service_connect_timeout_seconds}")
+    private int corpusStructureServiceConnectTimeoutSeconds;
+    @Bean
+    @Qualifier("corpusStructureServiceConnectTimeoutSeconds")
+    public int corpusStructureServiceConnectTimeoutSeconds() {
+        return corpusStructureServiceConnectTimeoutSeconds;
+    }
+    
+    @Value("${corpusstructure_service_read_timeout_seconds}")
+    private int corpusStructureServiceReadTimeoutSeconds;
+    @Bean
+    @Qualifier("corpusStructureServiceReadTimeoutSeconds")
+    public int corpusStructureServiceReadTimeoutSeconds() {
+        return corpusStructureServiceReadTimeoutSeconds;
+    }
+    
+    @Value("${corpusstructure_service_get_retries}")
+    private int corpusStructureServiceGetRetries;
+    @Bean
+    @Qualifier("corpusStructureServiceGetRetries")
+    public int corpusStructureServiceGetRetries() {
+        return corpusStructureServiceGetRetries;
+    }
+    
+    @Value("${corpusstructure_service_retry_delay_milliseconds}")
+    private long corpusStructureServiceRetryDelayMilliseconds;
+    @Bean
+    @Qualifier("corpusStructureServiceRetryDelayMilliseconds")
+    public long corpusStructureServiceRetryDelayMilliseconds() {
+        return corpusStructureServiceRetryDelayMilliseconds;
+    }
+    
+    @Value("${crawler_state_poll_threads}")
+    private int numberOfCrawlerStatePollThreads;
+    @Bean
+    @Qualifier("numberOfCrawlerStatePollThreads")
+    public int numberOfCrawlerStatePollThreads() {
+        return numberOfCrawlerStatePollThreads;
+    }
+    
+    @Value("${workspace_finalisation_threads}")
+    private int numberOfWorkspaceFinalisationThreads;
+    @Bean
+    @Qualifier("numberOfWorkspaceFinalisationThreads")
+    public int numberOfWorkspaceFinalisationThreads() {
+        return numberOfWorkspaceFinalisationThreads;
+    }
+    
+    @Value("${workspace_purge_chunk_size}")
+    private int workspacePurgeChunkSize;
+    @Bean
+    @Qualifier("workspacePurgeChunkSize")
+    public int workspacePurgeChunkSize() {
+        return workspacePurgeChunkSize;
+    }
+    
+    @Value("${crawler_poll_min_interval_seconds}")
+    private long crawlerPollMinIntervalSeconds;
+    @Bean
+    @Qualifier("crawlerPollMinIntervalSeconds")
+    public long crawlerPollMinIntervalSeconds() {
+        return crawlerPollMinIntervalSeconds;
+    }
+    
+    @Value("${crawler_poll_max_interval_seconds}")
+    private long crawlerPollMaxIntervalSeconds;
+    @Bean
+    @Qualifier("crawlerPollMaxIntervalSeconds")
+    public long crawlerPollMaxIntervalSeconds() {
+        return crawlerPollMaxIntervalSeconds;
+    }
+    
+    @Value("${crawler_poll_interval_milliseconds_per_node}")
+    private long crawlerPollIntervalMillisecondsPerNode;
+    @Bean
+    @Qualifier("crawlerPollIntervalMillisecondsPerNode")
+    public long crawlerPollIntervalMillisecondsPerNode() {
+        return crawlerPollIntervalMillisecondsPerNode;
+    }
+    
     
     // Properties loaded from the web server context
     
@@ -423,6 +599,17 @@ public class LamusProperties implements ServletContextAware {
         return new File(servletContext.getInitParameter("nl.mpi.lamus.schematronXsltValidationFile_submit"));
     }
     
+    @Bean
+    @Qualifier("cmdiSchemaCacheDirectory")
+    public File cmdiSchemaCacheDirectory() {
+        String cacheDirectory = servletContext.getInitParameter("nl.mpi.lamus.cmdi_schema_cache_directory");
+        if(cacheDirectory != null) {
+            return new File(cacheDirectory);
+        } else {
+            return new File(System.getProperty("java.io.tmpdir"), "lamus2_cmdi_schemas");
+        }
+    }
+    
     @Bean
     @Qualifier("allowedProfiles_File")
     public File allowedProfiles_File() {
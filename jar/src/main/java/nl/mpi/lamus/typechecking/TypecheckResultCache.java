@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.typechecking;
+
+/**
+ * Persistent cache for the results of the typechecker, so that the same
+ * content is not checked again every time it is imported or uploaded.
+ * Results are indexed by the checksum and size of the content,
+ * the extension of the filename (also taken into account by the typechecker)
+ * and the version of the typechecker configuration.
+ *
+ * @author guisil
+ */
+public interface TypecheckResultCache {
+
+    /**
+     * Retrieves the cached results for the given content.
+     * @param checksum checksum of the content
+     * @param size size of the content, in bytes
+     * @param filename name of the file
+     * @return cached results, null if there are none
+     */
+    public TypecheckedResults getCachedResults(String checksum, long size, String filename);
+
+    /**
+     * Stores the results of the typechecker for the given content.
+     * @param checksum checksum of the content
+     * @param size size of the content, in bytes
+     * @param filename name of the file
+     * @param results results of the typechecker
+     */
+    public void cacheResults(String checksum, long size, String filename, TypecheckedResults results);
+
+    /**
+     * @return number of lookups which found cached results
+     */
+    public long getHitCount();
+
+    /**
+     * @return number of lookups which did not find cached results
+     */
+    public long getMissCount();
+}
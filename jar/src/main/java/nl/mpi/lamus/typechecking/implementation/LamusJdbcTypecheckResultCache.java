@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.typechecking.implementation;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sql.DataSource;
+import nl.mpi.lamus.typechecking.TypecheckResultCache;
+import nl.mpi.lamus.typechecking.TypecheckedResults;
+import nl.mpi.lamus.typechecking.TypecheckerJudgement;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the cached results in the "typecheck_result" table of the lamus database.
+ * Failing to access the cache never prevents a resource from being typechecked:
+ * errors are logged and treated as a miss.
+ *
+ * @see TypecheckResultCache
+ * @author guisil
+ */
+@Component
+public class LamusJdbcTypecheckResultCache implements TypecheckResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LamusJdbcTypecheckResultCache.class);
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final String configurationVersion;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Autowired
+    public LamusJdbcTypecheckResultCache(@Qualifier("lamusDataSource") DataSource lamusDataSource,
+            @Qualifier("typecheckerConfigurationVersion") String configurationVersion) {
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(lamusDataSource);
+        this.configurationVersion = configurationVersion;
+    }
+
+    /**
+     * @see TypecheckResultCache#getCachedResults(java.lang.String, long, java.lang.String)
+     */
+    @Override
+    public TypecheckedResults getCachedResults(String checksum, long size, String filename) {
+
+        String querySql = "SELECT mimetype, analysis, judgement FROM typecheck_result"
+                + " WHERE checksum = :checksum AND file_size = :file_size"
+                + " AND file_extension = :file_extension AND configuration_version = :configuration_version";
+        SqlParameterSource namedParameters = getKeyParameters(checksum, size, filename);
+
+        List<TypecheckedResults> results;
+        try {
+            results = this.namedParameterJdbcTemplate.query(querySql, namedParameters, new TypecheckedResultsMapper());
+        } catch(DataAccessException ex) {
+            logger.warn("Error retrieving cached typecheck results for file " + filename, ex);
+            results = null;
+        }
+
+        if(results == null || results.isEmpty()) {
+            long misses = missCount.incrementAndGet();
+            logger.debug("Typecheck cache miss for file " + filename + " (hits: " + hitCount.get() + ", misses: " + misses + ")");
+            return null;
+        }
+
+        long hits = hitCount.incrementAndGet();
+        logger.debug("Typecheck cache hit for file " + filename + " (hits: " + hits + ", misses: " + missCount.get() + ")");
+        return results.get(0);
+    }
+
+    /**
+     * @see TypecheckResultCache#cacheResults(java.lang.String, long, java.lang.String, nl.mpi.lamus.typechecking.TypecheckedResults)
+     */
+    @Override
+    public void cacheResults(String checksum, long size, String filename, TypecheckedResults results) {
+
+        if(results.getTypecheckerJudgement() == null) {
+            logger.debug("Typecheck results for file " + filename + " have no judgement; will not be cached");
+            return;
+        }
+
+        String insertSql = "INSERT INTO typecheck_result"
+                + " (checksum, file_size, file_extension, configuration_version, mimetype, analysis, judgement, checked_on)"
+                + " VALUES (:checksum, :file_size, :file_extension, :configuration_version, :mimetype, :analysis, :judgement, :checked_on)";
+        MapSqlParameterSource namedParameters = getKeyParameters(checksum, size, filename)
+                .addValue("mimetype", results.getCheckedMimetype())
+                .addValue("analysis", results.getCompleteAnalysis())
+                .addValue("judgement", results.getTypecheckerJudgement().name())
+                .addValue("checked_on", new Timestamp(Calendar.getInstance().getTimeInMillis()));
+
+        try {
+            this.namedParameterJdbcTemplate.update(insertSql, namedParameters);
+        } catch(DataIntegrityViolationException ex) {
+            // the same content was checked at the same time by another thread
+            logger.debug("Typecheck results for file " + filename + " were already cached");
+        } catch(DataAccessException ex) {
+            logger.warn("Error caching typecheck results for file " + filename, ex);
+        }
+    }
+
+    /**
+     * @see TypecheckResultCache#getHitCount()
+     */
+    @Override
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @see TypecheckResultCache#getMissCount()
+     */
+    @Override
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+
+    private MapSqlParameterSource getKeyParameters(String checksum, long size, String filename) {
+        return new MapSqlParameterSource()
+                .addValue("checksum", checksum)
+                .addValue("file_size", size)
+                .addValue("file_extension", FilenameUtils.getExtension(filename).toLowerCase())
+                .addValue("configuration_version", configurationVersion);
+    }
+
+
+    private static final class TypecheckedResultsMapper implements RowMapper<TypecheckedResults> {
+
+        @Override
+        public TypecheckedResults mapRow(ResultSet rs, int rowNum) throws SQLException {
+            return new LamusTypecheckedResults(
+                    rs.getString("mimetype"),
+                    rs.getString("analysis"),
+                    TypecheckerJudgement.valueOf(rs.getString("judgement")));
+        }
+    }
+}
@@ -22,6 +22,7 @@ import nl.mpi.bcarchive.typecheck.DeepFileType;
 import nl.mpi.bcarchive.typecheck.FileType;
 import nl.mpi.lamus.typechecking.TypecheckHandler;
 import nl.mpi.lamus.typechecking.TypecheckerJudgement;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -34,12 +35,19 @@ public class LamusTypecheckHandler implements TypecheckHandler {
     
     private final FileType typechecker;
     // Deep typechecking is the default
-    private final DeepFileType deepTypechecker;
+    // (files are typechecked by several threads at the same time, during imports and uploads,
+    // and the deep typechecker is not thread-safe, so each thread uses its own instance)
+    private final ThreadLocal<DeepFileType> deepTypechecker;
     
     @Autowired
-    public LamusTypecheckHandler(FileType typechecker, DeepFileType deepTypechecker) {
+    public LamusTypecheckHandler(FileType typechecker, final ObjectFactory<DeepFileType> deepTypecheckerFactory) {
         this.typechecker = typechecker;
-        this.deepTypechecker = deepTypechecker;
+        this.deepTypechecker = new ThreadLocal<DeepFileType>() {
+            @Override
+            protected DeepFileType initialValue() {
+                return deepTypecheckerFactory.getObject();
+            }
+        };
     }
 
     
@@ -56,7 +64,7 @@ public class LamusTypecheckHandler implements TypecheckHandler {
      */
     @Override
     public String deepTypecheck(URL fileUrl, String filename) throws IOException {
-        return deepTypechecker.checkURL(fileUrl, filename);
+        return deepTypechecker.get().checkURL(fileUrl, filename);
     }
     
     /**
@@ -17,7 +17,14 @@
 package nl.mpi.lamus.util.implementation;
 
 import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
 import javax.json.JsonObject;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.ServerErrorException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
@@ -25,11 +32,24 @@ import javax.ws.rs.client.Invocation;
 import javax.ws.rs.client.WebTarget;
 import javax.ws.rs.core.MediaType;
 import nl.mpi.lamus.util.JerseyHelper;
+import org.glassfish.jersey.client.ClientProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 /**
+ * A single client is shared by all the requests, so that the connections
+ * kept alive by the underlying HttpURLConnection are reused.
+ * GET requests which fail because of a connection problem or a server error
+ * are repeated, with an increasing delay between attempts.
+ * The read timeout only applies to the GET requests. The POST requests
+ * (starting a crawler, versioning, updating URLs) change data in the service
+ * and are not repeated; giving up on a slow one would report a failure
+ * for an operation which may still complete, so they wait for the response.
+ * The number of requests, failures and their latency are kept for each endpoint.
+ * 
  * @see JerseyHelper
  * @author guisil
  */
@@ -37,6 +57,29 @@ import org.springframework.stereotype.Component;
 public class LamusJerseyHelper implements JerseyHelper {
     
     private static final Logger logger = LoggerFactory.getLogger(JerseyHelper.class);
+    
+    // number of requests to an endpoint after which its statistics are logged
+    private static final long STATISTICS_LOG_INTERVAL = 100;
+    
+    private final Client client;
+    private final int getReadTimeoutMillis;
+    private final int getRetries;
+    private final long retryDelayMillis;
+    
+    private final ConcurrentMap<String, EndpointStatistics> statistics = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public LamusJerseyHelper(
+            @Qualifier("corpusStructureServiceConnectTimeoutSeconds") int connectTimeoutSeconds,
+            @Qualifier("corpusStructureServiceReadTimeoutSeconds") int readTimeoutSeconds,
+            @Qualifier("corpusStructureServiceGetRetries") int getRetries,
+            @Qualifier("corpusStructureServiceRetryDelayMilliseconds") long retryDelayMillis) {
+        this.client = ClientBuilder.newClient()
+                .property(ClientProperties.CONNECT_TIMEOUT, connectTimeoutSeconds * 1000);
+        this.getReadTimeoutMillis = readTimeoutSeconds * 1000;
+        this.getRetries = getRetries;
+        this.retryDelayMillis = retryDelayMillis;
+    }
 
     /**
      * @see JerseyHelper#postRequestCorpusStructure(javax.json.JsonObject, java.lang.String, java.lang.String[])
@@ -46,11 +89,16 @@ public class LamusJerseyHelper implements JerseyHelper {
         
         WebTarget finalTarget = getTargetForService(location, paths);
         
-        Invocation.Builder invocationBuilder = finalTarget.request(MediaType.APPLICATION_JSON);
+        final Invocation.Builder invocationBuilder = finalTarget.request(MediaType.APPLICATION_JSON);
         
-        Entity<JsonObject> jsonObjectEntity = Entity.entity(requestJsonObject, MediaType.APPLICATION_JSON);
+        final Entity<JsonObject> jsonObjectEntity = Entity.entity(requestJsonObject, MediaType.APPLICATION_JSON);
         
-        JsonObject responseJsonObject = invocationBuilder.post(jsonObjectEntity, JsonObject.class);
+        JsonObject responseJsonObject = execute(getEndpoint("POST", location, paths), 0, new Request() {
+            @Override
+            public JsonObject send() {
+                return invocationBuilder.post(jsonObjectEntity, JsonObject.class);
+            }
+        });
         
         return responseJsonObject;
     }
@@ -63,15 +111,20 @@ public class LamusJerseyHelper implements JerseyHelper {
         
         WebTarget finalTarget = getTargetForService(location, paths);
         
-        Invocation.Builder invocationBuilder = finalTarget.request(MediaType.APPLICATION_JSON);
+        final Invocation.Builder invocationBuilder = finalTarget.request(MediaType.APPLICATION_JSON);
         
-        Entity<String> uriEntity = Entity.entity(
+        final Entity<String> uriEntity = Entity.entity(
                 "root=" + requestUri.toString()
                 + "&forceUpdate=" + true
                 + "&triggerAmsRecalculation=" + false,
                 MediaType.APPLICATION_FORM_URLENCODED);
         
-        JsonObject responseJsonObject = invocationBuilder.post(uriEntity, JsonObject.class);
+        JsonObject responseJsonObject = execute(getEndpoint("POST", location, paths), 0, new Request() {
+            @Override
+            public JsonObject send() {
+                return invocationBuilder.post(uriEntity, JsonObject.class);
+            }
+        });
         
         return responseJsonObject;
     }
@@ -85,18 +138,39 @@ public class LamusJerseyHelper implements JerseyHelper {
         WebTarget finalTarget =
                 getTargetForService(location, paths).path(requestCrawlerID);
         
-        Invocation.Builder invocationBuilder = finalTarget.request(MediaType.APPLICATION_JSON);
+        final Invocation.Builder invocationBuilder = finalTarget.request(MediaType.APPLICATION_JSON)
+                .property(ClientProperties.READ_TIMEOUT, getReadTimeoutMillis);
         
-        JsonObject responseJsonObject = invocationBuilder.get(JsonObject.class);
+        // the crawler ID is left out of the endpoint, so that all the polls are counted together
+        JsonObject responseJsonObject = execute(getEndpoint("GET", location, paths), getRetries, new Request() {
+            @Override
+            public JsonObject send() {
+                return invocationBuilder.get(JsonObject.class);
+            }
+        });
         
         return responseJsonObject;
     }
     
+    /**
+     * Closes the shared client, releasing its connections.
+     */
+    @PreDestroy
+    public void close() {
+        for(EndpointStatistics endpointStatistics : statistics.values()) {
+            logger.info(endpointStatistics.toString());
+        }
+        client.close();
+    }
+    
+    
+    EndpointStatistics getStatistics(String endpoint) {
+        return statistics.get(endpoint);
+    }
+    
     
     private WebTarget getTargetForService(String location, String... paths) {
         
-        Client client = ClientBuilder.newClient();
-        
         WebTarget finalTarget = client.target(location);
         for(String path : paths) {
             finalTarget = finalTarget.path(path);
@@ -104,4 +178,122 @@ public class LamusJerseyHelper implements JerseyHelper {
         
         return finalTarget;
     }
+    
+    private static String getEndpoint(String method, String location, String... paths) {
+        
+        StringBuilder endpoint = new StringBuilder(method).append(' ').append(location);
+        for(String path : paths) {
+            endpoint.append('/').append(path);
+        }
+        return endpoint.toString();
+    }
+    
+    private JsonObject execute(String endpoint, int retries, Request request) {
+        
+        EndpointStatistics endpointStatistics = statistics.get(endpoint);
+        if(endpointStatistics == null) {
+            EndpointStatistics newStatistics = new EndpointStatistics(endpoint);
+            endpointStatistics = statistics.putIfAbsent(endpoint, newStatistics);
+            if(endpointStatistics == null) {
+                endpointStatistics = newStatistics;
+            }
+        }
+        
+        int attempt = 0;
+        while(true) {
+            long start = System.nanoTime();
+            try {
+                JsonObject response = request.send();
+                endpointStatistics.countRequest(start, false);
+                return response;
+            } catch(ProcessingException | ServerErrorException ex) {
+                endpointStatistics.countRequest(start, true);
+                if(attempt >= retries) {
+                    throw ex;
+                }
+                long delay = retryDelayMillis << attempt;
+                attempt++;
+                endpointStatistics.countRetry();
+                logger.warn("Request to " + endpoint + " failed (" + ex.getMessage() + "); retrying in " + delay + " ms (attempt " + attempt + " of " + retries + ")");
+                try {
+                    Thread.sleep(delay);
+                } catch(InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            } catch(RuntimeException ex) {
+                endpointStatistics.countRequest(start, true);
+                throw ex;
+            }
+        }
+    }
+    
+    
+    private interface Request {
+        JsonObject send();
+    }
+    
+    /**
+     * Number of requests, failures, retries and latency of the requests to one endpoint.
+     */
+    static class EndpointStatistics {
+        
+        private final String endpoint;
+        private final AtomicLong requestCount = new AtomicLong();
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong retryCount = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        
+        private EndpointStatistics(String endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+        private void countRequest(long startNanos, boolean failed) {
+            
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            totalMillis.addAndGet(millis);
+            long max = maxMillis.get();
+            while(millis > max && !maxMillis.compareAndSet(max, millis)) {
+                max = maxMillis.get();
+            }
+            if(failed) {
+                failureCount.incrementAndGet();
+            }
+            long requests = requestCount.incrementAndGet();
+            
+            logger.debug("Request to " + endpoint + (failed ? " failed" : " succeeded") + " after " + millis + " ms");
+            if(requests % STATISTICS_LOG_INTERVAL == 0) {
+                logger.info(toString());
+            }
+        }
+        
+        private void countRetry() {
+            retryCount.incrementAndGet();
+        }
+        
+        long getRequestCount() {
+            return requestCount.get();
+        }
+        
+        long getFailureCount() {
+            return failureCount.get();
+        }
+        
+        long getRetryCount() {
+            return retryCount.get();
+        }
+        
+        long getMaxMillis() {
+            return maxMillis.get();
+        }
+
+        @Override
+        public String toString() {
+            long requests = requestCount.get();
+            long averageMillis = requests > 0 ? totalMillis.get() / requests : 0;
+            return "Statistics for " + endpoint + ": " + requests + " requests, " + failureCount.get() + " failed, "
+                    + retryCount.get() + " retried; average " + averageMillis + " ms, maximum " + maxMillis.get() + " ms";
+        }
+    }
 }
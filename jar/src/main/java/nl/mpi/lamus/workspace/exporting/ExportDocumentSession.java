@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.exporting;
+
+import java.io.IOException;
+import java.net.URL;
+import javax.xml.transform.TransformerException;
+import nl.mpi.metadata.api.MetadataException;
+import nl.mpi.metadata.api.model.MetadataDocument;
+
+/**
+ * Keeps in memory the metadata documents used during the export of a workspace,
+ * so that a parent document is parsed only once and written only once,
+ * after the references to all its children have been updated.
+ * Outside of an open session, documents are loaded and saved directly.
+ *
+ * @author guisil
+ */
+public interface ExportDocumentSession {
+
+    /**
+     * Opens a session for the given workspace.
+     *
+     * @param workspaceID ID of the workspace being exported
+     */
+    public void openSession(int workspaceID);
+
+    /**
+     * Retrieves the document at the given location, parsing it only
+     * if it is not yet kept in the session.
+     *
+     * @param workspaceID ID of the workspace being exported
+     * @param documentURL location of the document in the workspace
+     * @return the metadata document
+     */
+    public MetadataDocument getDocument(int workspaceID, URL documentURL)
+            throws IOException, MetadataException;
+
+    /**
+     * Indicates that the given document was changed. If a session is open,
+     * the document will only be saved when released or when the session is closed,
+     * otherwise it is saved immediately.
+     *
+     * @param workspaceID ID of the workspace being exported
+     * @param documentURL location of the document in the workspace
+     * @param document the changed document
+     */
+    public void documentChanged(int workspaceID, URL documentURL, MetadataDocument document)
+            throws IOException, TransformerException, MetadataException;
+
+    /**
+     * Removes the document from the session, saving it first
+     * in its location if it has pending changes.
+     * To be used when no more changes are expected for the document.
+     *
+     * @param workspaceID ID of the workspace being exported
+     * @param documentURL location of the document in the workspace
+     * @return the metadata document
+     */
+    public MetadataDocument releaseDocument(int workspaceID, URL documentURL)
+            throws IOException, TransformerException, MetadataException;
+
+    /**
+     * Removes the document from the session without saving it.
+     * The caller becomes responsible for saving any pending changes.
+     *
+     * @param workspaceID ID of the workspace being exported
+     * @param documentURL location of the document in the workspace
+     * @return the metadata document
+     */
+    public MetadataDocument takeDocument(int workspaceID, URL documentURL)
+            throws IOException, MetadataException;
+
+    /**
+     * Closes the session of the given workspace, saving the documents
+     * which still have pending changes. Should be called also when the export fails.
+     *
+     * @param workspaceID ID of the workspace being exported
+     * @return true if all the pending changes were saved successfully
+     */
+    public boolean closeSession(int workspaceID);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.exporting;
+
+import java.io.File;
+import java.net.URI;
+import nl.mpi.lamus.exception.WorkspaceExportException;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+
+/**
+ * Assigns new handles to the nodes added to the archive during the export of a workspace.
+ * The handles are registered in the background, several at the same time,
+ * while the export goes on with the siblings of the nodes.
+ * The nodes only get their new handles when the pending handles
+ * of their parent are completed, which has to happen before the parent document is saved.
+ *
+ * @author guisil
+ */
+public interface ExportHandleAssigner {
+
+    /**
+     * Requests a new handle for the given node, pointing to the given location.
+     * The handle is registered in the background.
+     *
+     * @param workspaceID ID of the workspace being exported
+     * @param parentNode parent of the node, used to group the pending handles
+     * @param node node which should get a new handle
+     * @param nodeFile file of the node (already in its archive location),
+     *  which has to exist until the handle is registered
+     * @param targetUri location in the archive to which the handle should point
+     * @param listener to be notified once the node gets its new handle
+     */
+    public void requestHandle(int workspaceID, WorkspaceNode parentNode, WorkspaceNode node, File nodeFile, URI targetUri, AssignedHandleListener listener);
+
+    /**
+     * Waits for the pending handles requested for the children of the given node
+     * and sets them as archive URI of the corresponding nodes, which are then
+     * updated in the database in a single batch. The listeners are notified afterwards,
+     * in the same order as the handles were requested.
+     * If any of the handles fails, the requests not yet sent are skipped,
+     * but the ones already sent are still waited for and the handles
+     * which were registered are saved anyway, before the failure is thrown.
+     *
+     * @param workspaceID ID of the workspace being exported
+     * @param parentNode node whose children have pending handles
+     */
+    public void completePendingHandles(int workspaceID, WorkspaceNode parentNode)
+            throws WorkspaceExportException;
+
+    /**
+     * Discards the pending handles requested for the children of the given node.
+     * The requests not yet sent to the handle server are skipped; the ones
+     * already sent are waited for and the handles which were registered
+     * are saved as archive URI of the corresponding nodes, so that none is lost.
+     * The listeners are not notified. To be used when the export fails.
+     *
+     * @param workspaceID ID of the workspace being exported
+     * @param parentNode node whose children have pending handles
+     */
+    public void discardPendingHandles(int workspaceID, WorkspaceNode parentNode);
+
+
+    /**
+     * Listener to be notified when a node gets the handle requested for it.
+     */
+    public interface AssignedHandleListener {
+
+        /**
+         * @param node node which got its new handle (already set as its archive URI)
+         */
+        public void handleAssigned(WorkspaceNode node) throws WorkspaceExportException;
+    }
+}
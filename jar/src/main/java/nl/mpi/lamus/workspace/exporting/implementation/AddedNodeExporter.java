@@ -35,6 +35,8 @@ import nl.mpi.lamus.filesystem.WorkspaceFileHandler;
 import nl.mpi.lamus.exception.WorkspaceExportException;
 import nl.mpi.lamus.exception.WorkspaceNotFoundException;
 import nl.mpi.lamus.metadata.MetadataApiBridge;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
+import nl.mpi.lamus.workspace.exporting.ExportHandleAssigner;
 import nl.mpi.lamus.workspace.exporting.ExporterHelper;
 import nl.mpi.lamus.workspace.exporting.NodeExporter;
 import nl.mpi.lamus.workspace.exporting.WorkspaceTreeExporter;
@@ -43,7 +45,6 @@ import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceExportPhase;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import nl.mpi.lamus.workspace.model.WorkspaceSubmissionType;
-import nl.mpi.metadata.api.MetadataAPI;
 import nl.mpi.metadata.api.MetadataException;
 import nl.mpi.metadata.api.model.MetadataDocument;
 import nl.mpi.metadata.api.model.Reference;
@@ -74,8 +75,6 @@ public class AddedNodeExporter implements NodeExporter {
     @Autowired
     private WorkspaceDirectoryHandler workspaceDirectoryHandler;
     @Autowired
-    private MetadataAPI metadataAPI;
-    @Autowired
     private WorkspaceDao workspaceDao;
     @Autowired
     private WorkspaceTreeExporter workspaceTreeExporter;
@@ -93,6 +92,10 @@ public class AddedNodeExporter implements NodeExporter {
     private NodeUtil nodeUtil;
     @Autowired
     private ExporterHelper exporterHelper;
+    @Autowired
+    private ExportDocumentSession exportDocumentSession;
+    @Autowired
+    private ExportHandleAssigner exportHandleAssigner;
     
 
     /**
@@ -152,13 +155,15 @@ public class AddedNodeExporter implements NodeExporter {
             workspaceTreeExporter.explore(workspace, currentNode, currentCorpusNamePathToClosestTopNode, keepUnlinkedFiles, submissionType, exportPhase);
         }
         
+        // the document may have been kept in the session while the children were updating their references;
+            // it is saved below, together with the self handle
         MetadataDocument currentDocument = retrieveMetadataDocument(workspaceID, currentNode);
         
         File currentNodeWorkspaceFile = new File(currentNode.getWorkspaceURL().getPath());
         
-        assignAndUpdateNewHandle(workspaceID, currentNode);
-        
         if(nodeUtil.isNodeMetadata(currentNode)) {
+            // the self handle is written in the document, so the new handle is needed right away
+            assignAndUpdateNewHandle(workspaceID, currentNode);
             updateSelfHandle(workspaceID, currentNode, currentDocument);
         }
         
@@ -168,7 +173,7 @@ public class AddedNodeExporter implements NodeExporter {
         
         String currentPathRelativeToParent = archiveFileLocationProvider.getChildPathRelativeToParent(parentArchiveFile, nextAvailableFile);
             
-        updateReferenceInParent(workspaceID, currentNode, parentNode, referencingParentDocument, currentPathRelativeToParent);
+        updateReferenceInParent(workspaceID, currentNode, parentNode, referencingParentDocument, currentPathRelativeToParent, nextAvailableFile);
     }
     
     private File retrieveParentArchiveLocation(int workspaceID, WorkspaceNode parentNode) throws WorkspaceExportException {
@@ -222,7 +227,7 @@ public class AddedNodeExporter implements NodeExporter {
         
         if(nodeUtil.isNodeMetadata(node)) {
             try {
-                document = metadataAPI.getMetadataDocument(node.getWorkspaceURL());
+                document = exportDocumentSession.takeDocument(workspaceID, node.getWorkspaceURL());
                 
             } catch (IOException | MetadataException ex) {
                 String errorMessage = "Error getting Metadata Document for node " + node.getWorkspaceURL();
@@ -235,7 +240,15 @@ public class AddedNodeExporter implements NodeExporter {
     
     private ReferencingMetadataDocument retrieveReferencingMetadataDocument(int workspaceID, WorkspaceNode node) throws WorkspaceExportException {
         
-        MetadataDocument document = retrieveMetadataDocument(workspaceID, node);
+        MetadataDocument document = null;
+        if(nodeUtil.isNodeMetadata(node)) {
+            try {
+                document = exportDocumentSession.getDocument(workspaceID, node.getWorkspaceURL());
+            } catch (IOException | MetadataException ex) {
+                String errorMessage = "Error getting Metadata Document for node " + node.getWorkspaceURL();
+                throwWorkspaceExportException(workspaceID, errorMessage, ex);
+            }
+        }
         ReferencingMetadataDocument referencingParentDocument = null;
         if(document instanceof ReferencingMetadataDocument) {
             referencingParentDocument = (ReferencingMetadataDocument) document;
@@ -289,23 +302,34 @@ public class AddedNodeExporter implements NodeExporter {
         }
     }
     
-    private void updateReferenceInParent(int workspaceID, WorkspaceNode currentNode, WorkspaceNode parentNode,
-            ReferencingMetadataDocument referencingParentDocument, String currentPathRelativeToParent) throws WorkspaceExportException {
+    private void updateReferenceInParent(final int workspaceID, WorkspaceNode currentNode, final WorkspaceNode parentNode,
+            final ReferencingMetadataDocument referencingParentDocument, String currentPathRelativeToParent,
+            File currentNodeArchiveFile) throws WorkspaceExportException {
         
         try {
             logger.debug("Updating reference for node '{}' in parent '{}'", currentNode.getWorkspaceURL().toString(), parentNode.getWorkspaceURL().toString());
             
-            Reference currentReference = referencingParentDocument.getDocumentReferenceByLocation(currentNode.getWorkspaceURL().toURI());
-            currentReference.setURI(handleParser.prepareAndValidateHandleWithHdlPrefix(currentNode.getArchiveURI()));
-            
-            logger.debug("Updated ResourceRef '{}' for node '{}' to '{}'", ((ResourceProxy)currentReference).getId(), currentNode.getWorkspaceURL().toString(), currentReference.getURI().toString());
+            final Reference currentReference = referencingParentDocument.getDocumentReferenceByLocation(currentNode.getWorkspaceURL().toURI());
+            if(nodeUtil.isNodeMetadata(currentNode)) {
+                updateReferenceHandle(currentNode, currentReference);
+            } else {
+                // resources get their new handles in the background, while their siblings are exported,
+                // and the reference is updated once the handles of the siblings are completed (before the parent is saved);
+                // by now the file was already moved into the archive, so that is the one passed for the registration
+                requestNewHandle(workspaceID, parentNode, currentNode, currentNodeArchiveFile, new ExportHandleAssigner.AssignedHandleListener() {
+                    @Override
+                    public void handleAssigned(WorkspaceNode node) throws WorkspaceExportException {
+                        updateReferenceHandleInParent(workspaceID, node, parentNode, referencingParentDocument, currentReference);
+                    }
+                });
+            }
             
             URI currentUriRelativeToParent = URI.create(currentPathRelativeToParent);
             currentReference.setLocation(currentUriRelativeToParent);
             
             logger.debug("Updated localURI for node '{}' to '{}'", currentNode.getWorkspaceURL().toString(), currentReference.getLocation().toString());
             
-            metadataApiBridge.saveMetadataDocument(referencingParentDocument, parentNode.getWorkspaceURL());
+            exportDocumentSession.documentChanged(workspaceID, parentNode.getWorkspaceURL(), referencingParentDocument);
          
         } catch (IOException | MetadataException | URISyntaxException | TransformerException ex) {
             String errorMessage = "Error writing file (updating child reference) for node " + parentNode.getWorkspaceURL();
@@ -313,6 +337,38 @@ public class AddedNodeExporter implements NodeExporter {
         }
     }
     
+    private void updateReferenceHandle(WorkspaceNode currentNode, Reference currentReference) {
+        
+        currentReference.setURI(handleParser.prepareAndValidateHandleWithHdlPrefix(currentNode.getArchiveURI()));
+        
+        logger.debug("Updated ResourceRef '{}' for node '{}' to '{}'", ((ResourceProxy)currentReference).getId(), currentNode.getWorkspaceURL().toString(), currentReference.getURI().toString());
+    }
+    
+    private void updateReferenceHandleInParent(int workspaceID, WorkspaceNode currentNode, WorkspaceNode parentNode,
+            ReferencingMetadataDocument referencingParentDocument, Reference currentReference) throws WorkspaceExportException {
+        
+        try {
+            updateReferenceHandle(currentNode, currentReference);
+            exportDocumentSession.documentChanged(workspaceID, parentNode.getWorkspaceURL(), referencingParentDocument);
+        } catch (IOException | MetadataException | TransformerException ex) {
+            String errorMessage = "Error writing file (updating child reference) for node " + parentNode.getWorkspaceURL();
+            throwWorkspaceExportException(workspaceID, errorMessage, ex);
+        }
+    }
+    
+    private void requestNewHandle(int workspaceID, WorkspaceNode parentNode, WorkspaceNode currentNode,
+            File currentNodeArchiveFile, ExportHandleAssigner.AssignedHandleListener listener) throws WorkspaceExportException {
+        
+        try {
+            URI targetUri = archiveFileLocationProvider.getUriWithHttpsRoot(currentNode.getArchiveURL().toURI());
+            
+            exportHandleAssigner.requestHandle(workspaceID, parentNode, currentNode, currentNodeArchiveFile, targetUri, listener);
+        } catch (URISyntaxException ex) {
+            String errorMessage = "Error assigning new handle for node " + currentNode.getWorkspaceURL();
+            throwWorkspaceExportException(workspaceID, errorMessage, ex);
+        }
+    }
+    
     private void assignAndUpdateNewHandle(int workspaceID, WorkspaceNode currentNode) throws WorkspaceExportException {
         
         try {
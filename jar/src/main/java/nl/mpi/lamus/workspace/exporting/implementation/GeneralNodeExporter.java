@@ -28,6 +28,7 @@ import nl.mpi.lamus.archive.ArchiveFileLocationProvider;
 import nl.mpi.lamus.filesystem.WorkspaceFileHandler;
 import nl.mpi.lamus.exception.WorkspaceExportException;
 import nl.mpi.lamus.metadata.MetadataApiBridge;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
 import nl.mpi.lamus.workspace.exporting.ExporterHelper;
 import nl.mpi.lamus.workspace.exporting.NodeExporter;
 import nl.mpi.lamus.workspace.exporting.WorkspaceTreeExporter;
@@ -45,6 +46,7 @@ import nl.mpi.metadata.cmdi.api.model.CMDIDocument;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -61,7 +63,7 @@ public class GeneralNodeExporter implements NodeExporter {
     private final static Logger logger = LoggerFactory.getLogger(GeneralNodeExporter.class);
 
     @Autowired
-    private MetadataAPI metadataAPI;
+    private ObjectFactory<MetadataAPI> metadataAPIFactory;
     @Autowired
     private MetadataApiBridge metadataApiBridge;
     @Autowired
@@ -78,6 +80,15 @@ public class GeneralNodeExporter implements NodeExporter {
     private NodeUtil nodeUtil;
     @Autowired
     private ExporterHelper exporterHelper;
+    @Autowired
+    private ExportDocumentSession exportDocumentSession;
+    
+    private final ThreadLocal<MetadataAPI> metadataAPI = new ThreadLocal<MetadataAPI>() {
+        @Override
+        protected MetadataAPI initialValue() {
+            return metadataAPIFactory.getObject();
+        }
+    };
     
 
     /**
@@ -147,10 +158,11 @@ public class GeneralNodeExporter implements NodeExporter {
             // assuming that the metadata always changes (due to the localURI attribute being edited during the import)
                 // so a file size or checksum check wouldn't work in this case
             
+            // the references updated by the children are saved in the workspace file when it is released
             MetadataDocument nodeDocument = null;
             try {
-                nodeDocument = metadataAPI.getMetadataDocument(currentNode.getWorkspaceURL());
-            } catch (IOException | MetadataException ex) {
+                nodeDocument = exportDocumentSession.releaseDocument(workspaceID, currentNode.getWorkspaceURL());
+            } catch (IOException | TransformerException | MetadataException ex) {
                 String errorMessage = "Error getting Metadata Document for node " + currentNode.getArchiveURI();
                 throwWorkspaceExportException(workspaceID, errorMessage, ex);
             }
@@ -158,7 +170,7 @@ public class GeneralNodeExporter implements NodeExporter {
             StreamResult nodeArchiveStreamResult = workspaceFileHandler.getStreamResultForNodeFile(nodeArchiveFile);
             
             try {
-                metadataAPI.writeMetadataDocument(nodeDocument, nodeArchiveStreamResult);
+                metadataAPI.get().writeMetadataDocument(nodeDocument, nodeArchiveStreamResult);
             } catch (IOException | TransformerException | MetadataException ex) {
                 String errorMessage = "Error writing file for node " + currentNode.getArchiveURI();
                 throwWorkspaceExportException(workspaceID, errorMessage, ex);
@@ -198,7 +210,7 @@ public class GeneralNodeExporter implements NodeExporter {
         
         if(nodeUtil.isNodeMetadata(node)) {
             try {
-                document = metadataAPI.getMetadataDocument(node.getWorkspaceURL());
+                document = exportDocumentSession.getDocument(workspaceID, node.getWorkspaceURL());
                 
             } catch (IOException | MetadataException ex) {
                 String errorMessage = "Error getting Metadata Document for node " + node.getWorkspaceURL();
@@ -230,8 +242,7 @@ public class GeneralNodeExporter implements NodeExporter {
             Reference currentReference = metadataApiBridge.getDocumentReferenceByDoubleCheckingURI(referencingParentDocument, currentNode.getArchiveURI());
             URI currentUriRelativeToParent = URI.create(currentPathRelativeToParent);
             currentReference.setLocation(currentUriRelativeToParent);
-            StreamResult targetParentStreamResult = workspaceFileHandler.getStreamResultForNodeFile(new File(parentNode.getWorkspaceURL().getPath()));
-            metadataAPI.writeMetadataDocument(referencingParentDocument, targetParentStreamResult);
+            exportDocumentSession.documentChanged(workspaceID, parentNode.getWorkspaceURL(), referencingParentDocument);
             
         } catch (IOException | MetadataException | TransformerException ex) {
             String errorMessage = "Error writing file (updating child reference) for node " + parentNode.getWorkspaceURL();
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.exporting.implementation;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.xml.transform.TransformerException;
+import nl.mpi.lamus.metadata.MetadataApiBridge;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
+import nl.mpi.metadata.api.MetadataAPI;
+import nl.mpi.metadata.api.MetadataException;
+import nl.mpi.metadata.api.model.MetadataDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Each workspace has its own set of documents, since several workspaces
+ * can be exported at the same time. The documents of a workspace are
+ * only accessed by the thread exporting it.
+ *
+ * @see ExportDocumentSession
+ * @author guisil
+ */
+@Component
+public class LamusExportDocumentSession implements ExportDocumentSession {
+
+    private static final Logger logger = LoggerFactory.getLogger(LamusExportDocumentSession.class);
+
+    private final ThreadLocal<MetadataAPI> metadataAPI;
+    private final MetadataApiBridge metadataApiBridge;
+
+    // documents are indexed by the string representation of the URL, to avoid URL.equals
+    private final Map<Integer, Map<String, SessionDocument>> openSessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LamusExportDocumentSession(final ObjectFactory<MetadataAPI> mdAPIFactory, MetadataApiBridge mdApiBridge) {
+        this.metadataAPI = new ThreadLocal<MetadataAPI>() {
+            @Override
+            protected MetadataAPI initialValue() {
+                return mdAPIFactory.getObject();
+            }
+        };
+        this.metadataApiBridge = mdApiBridge;
+    }
+
+    /**
+     * @see ExportDocumentSession#openSession(int)
+     */
+    @Override
+    public void openSession(int workspaceID) {
+        logger.debug("Opening export document session for workspace " + workspaceID);
+        openSessions.put(workspaceID, new LinkedHashMap<String, SessionDocument>());
+    }
+
+    /**
+     * @see ExportDocumentSession#getDocument(int, java.net.URL)
+     */
+    @Override
+    public MetadataDocument getDocument(int workspaceID, URL documentURL)
+            throws IOException, MetadataException {
+
+        Map<String, SessionDocument> documents = openSessions.get(workspaceID);
+        if(documents == null) {
+            return metadataAPI.get().getMetadataDocument(documentURL);
+        }
+
+        SessionDocument sessionDocument = documents.get(documentURL.toString());
+        if(sessionDocument == null) {
+            sessionDocument = new SessionDocument(documentURL, metadataAPI.get().getMetadataDocument(documentURL));
+            documents.put(documentURL.toString(), sessionDocument);
+        }
+        return sessionDocument.document;
+    }
+
+    /**
+     * @see ExportDocumentSession#documentChanged(int, java.net.URL, nl.mpi.metadata.api.model.MetadataDocument)
+     */
+    @Override
+    public void documentChanged(int workspaceID, URL documentURL, MetadataDocument document)
+            throws IOException, TransformerException, MetadataException {
+
+        Map<String, SessionDocument> documents = openSessions.get(workspaceID);
+        if(documents == null) {
+            metadataApiBridge.saveMetadataDocument(document, documentURL);
+            return;
+        }
+
+        SessionDocument sessionDocument = documents.get(documentURL.toString());
+        if(sessionDocument == null || sessionDocument.document != document) {
+            sessionDocument = new SessionDocument(documentURL, document);
+            documents.put(documentURL.toString(), sessionDocument);
+        }
+        sessionDocument.changed = true;
+    }
+
+    /**
+     * @see ExportDocumentSession#releaseDocument(int, java.net.URL)
+     */
+    @Override
+    public MetadataDocument releaseDocument(int workspaceID, URL documentURL)
+            throws IOException, TransformerException, MetadataException {
+
+        Map<String, SessionDocument> documents = openSessions.get(workspaceID);
+        if(documents == null) {
+            return metadataAPI.get().getMetadataDocument(documentURL);
+        }
+
+        SessionDocument sessionDocument = documents.get(documentURL.toString());
+        if(sessionDocument == null) {
+            return metadataAPI.get().getMetadataDocument(documentURL);
+        }
+        if(sessionDocument.changed) {
+            metadataApiBridge.saveMetadataDocument(sessionDocument.document, documentURL);
+        }
+        documents.remove(documentURL.toString());
+        return sessionDocument.document;
+    }
+
+    /**
+     * @see ExportDocumentSession#takeDocument(int, java.net.URL)
+     */
+    @Override
+    public MetadataDocument takeDocument(int workspaceID, URL documentURL)
+            throws IOException, MetadataException {
+
+        Map<String, SessionDocument> documents = openSessions.get(workspaceID);
+        SessionDocument sessionDocument = null;
+        if(documents != null) {
+            sessionDocument = documents.remove(documentURL.toString());
+        }
+        if(sessionDocument == null) {
+            return metadataAPI.get().getMetadataDocument(documentURL);
+        }
+        return sessionDocument.document;
+    }
+
+    /**
+     * @see ExportDocumentSession#closeSession(int)
+     */
+    @Override
+    public boolean closeSession(int workspaceID) {
+
+        Map<String, SessionDocument> documents = openSessions.remove(workspaceID);
+        if(documents == null) {
+            return true;
+        }
+
+        logger.debug("Closing export document session for workspace " + workspaceID);
+
+        boolean allSaved = true;
+        for(SessionDocument sessionDocument : documents.values()) {
+            if(!sessionDocument.changed) {
+                continue;
+            }
+            try {
+                metadataApiBridge.saveMetadataDocument(sessionDocument.document, sessionDocument.documentURL);
+            } catch(IOException | TransformerException | MetadataException ex) {
+                logger.error("Error saving metadata document " + sessionDocument.documentURL + " of workspace " + workspaceID, ex);
+                allSaved = false;
+            }
+        }
+        return allSaved;
+    }
+
+
+    private static class SessionDocument {
+
+        private final URL documentURL;
+        private final MetadataDocument document;
+        private boolean changed = false;
+
+        private SessionDocument(URL documentURL, MetadataDocument document) {
+            this.documentURL = documentURL;
+            this.document = document;
+        }
+    }
+}
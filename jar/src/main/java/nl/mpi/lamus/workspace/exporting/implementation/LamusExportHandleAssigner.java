@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.exporting.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.handle.hdllib.HandleException;
+import nl.mpi.handle.util.HandleManager;
+import nl.mpi.handle.util.HandleParser;
+import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.exception.WorkspaceExportException;
+import nl.mpi.lamus.workspace.exporting.ExportHandleAssigner;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * The handles are registered by a pool of threads, so that the number
+ * of requests to the handle server at the same time is limited by its size.
+ * The pending handles of a node are only accessed by the thread exporting its workspace.
+ *
+ * @see ExportHandleAssigner
+ * @author guisil
+ */
+@Component
+public class LamusExportHandleAssigner implements ExportHandleAssigner {
+
+    private static final Logger logger = LoggerFactory.getLogger(LamusExportHandleAssigner.class);
+
+    private final HandleManager handleManager;
+    private final HandleParser handleParser;
+    private final WorkspaceDao workspaceDao;
+    private final ExecutorService handleAssignmentExecutorService;
+
+    // pending handles, indexed by the ID of the parent node
+    private final Map<Integer, List<PendingHandle>> pendingHandles = new ConcurrentHashMap<>();
+
+    @Autowired
+    public LamusExportHandleAssigner(HandleManager hManager, HandleParser hParser, WorkspaceDao wsDao,
+            @Qualifier("HandleAssignmentExecutorService") ExecutorService handleAssignmentExecutorService) {
+        this.handleManager = hManager;
+        this.handleParser = hParser;
+        this.workspaceDao = wsDao;
+        this.handleAssignmentExecutorService = handleAssignmentExecutorService;
+    }
+
+    /**
+     * @see ExportHandleAssigner#requestHandle(int, nl.mpi.lamus.workspace.model.WorkspaceNode,
+     *  nl.mpi.lamus.workspace.model.WorkspaceNode, java.io.File, java.net.URI,
+     *  nl.mpi.lamus.workspace.exporting.ExportHandleAssigner.AssignedHandleListener)
+     */
+    @Override
+    public void requestHandle(int workspaceID, WorkspaceNode parentNode, WorkspaceNode node,
+            final File nodeFile, final URI targetUri, AssignedHandleListener listener) {
+
+        logger.debug("Requesting new handle for node " + node.getWorkspaceNodeID() + " in workspace " + workspaceID + "; target: " + targetUri);
+
+        final AtomicBoolean skipped = new AtomicBoolean(false);
+        Future<URI> assignment = handleAssignmentExecutorService.submit(new Callable<URI>() {
+            @Override
+            public URI call() throws HandleException, IOException {
+                // requests which were discarded before being sent are not needed anymore
+                if(skipped.get()) {
+                    return null;
+                }
+                return handleManager.assignNewHandle(nodeFile, targetUri);
+            }
+        });
+
+        List<PendingHandle> parentPendingHandles = pendingHandles.get(parentNode.getWorkspaceNodeID());
+        if(parentPendingHandles == null) {
+            parentPendingHandles = new ArrayList<>();
+            pendingHandles.put(parentNode.getWorkspaceNodeID(), parentPendingHandles);
+        }
+        parentPendingHandles.add(new PendingHandle(node, assignment, skipped, listener));
+    }
+
+    /**
+     * @see ExportHandleAssigner#completePendingHandles(int, nl.mpi.lamus.workspace.model.WorkspaceNode)
+     */
+    @Override
+    public void completePendingHandles(int workspaceID, WorkspaceNode parentNode)
+            throws WorkspaceExportException {
+
+        List<PendingHandle> parentPendingHandles = pendingHandles.remove(parentNode.getWorkspaceNodeID());
+        if(parentPendingHandles == null) {
+            return;
+        }
+
+        logger.debug("Completing " + parentPendingHandles.size() + " pending handles for children of node " + parentNode.getWorkspaceNodeID() + " in workspace " + workspaceID);
+
+        Throwable failure = saveAssignedHandles(workspaceID, parentPendingHandles);
+        if(failure instanceof WorkspaceExportException) {
+            throw (WorkspaceExportException) failure;
+        }
+        if(failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if(failure instanceof Error) {
+            throw (Error) failure;
+        }
+
+        for(PendingHandle pendingHandle : parentPendingHandles) {
+            pendingHandle.listener.handleAssigned(pendingHandle.node);
+        }
+    }
+
+    /**
+     * @see ExportHandleAssigner#discardPendingHandles(int, nl.mpi.lamus.workspace.model.WorkspaceNode)
+     */
+    @Override
+    public void discardPendingHandles(int workspaceID, WorkspaceNode parentNode) {
+
+        List<PendingHandle> parentPendingHandles = pendingHandles.remove(parentNode.getWorkspaceNodeID());
+        if(parentPendingHandles == null) {
+            return;
+        }
+
+        logger.debug("Discarding " + parentPendingHandles.size() + " pending handles for children of node " + parentNode.getWorkspaceNodeID() + " in workspace " + workspaceID);
+
+        skipRequestsNotSent(parentPendingHandles);
+        Throwable failure = saveAssignedHandles(workspaceID, parentPendingHandles);
+        if(failure != null) {
+            logger.warn("Some of the discarded handles for children of node " + parentNode.getWorkspaceNodeID()
+                    + " in workspace " + workspaceID + " could not be registered", failure);
+        }
+    }
+
+
+    /**
+     * Waits for all the given requests (without interrupting them) and saves
+     * the handles which were registered, in a single batch, even if some of them failed.
+     * Once a request fails, the ones which were not sent yet are skipped.
+     * 
+     * @return the first failure, or null if there was none
+     */
+    private Throwable saveAssignedHandles(int workspaceID, List<PendingHandle> handlesToSave) {
+
+        Collection<WorkspaceNode> nodes = new ArrayList<>(handlesToSave.size());
+        Throwable firstFailure = null;
+        for(PendingHandle pendingHandle : handlesToSave) {
+            try {
+                URI newHandle = getAssignedHandle(workspaceID, pendingHandle);
+                if(newHandle != null) {
+                    pendingHandle.node.setArchiveURI(handleParser.prepareAndValidateHandleWithHdlPrefix(newHandle));
+                    nodes.add(pendingHandle.node);
+                }
+            } catch(WorkspaceExportException | RuntimeException | Error ex) {
+                if(firstFailure == null) {
+                    firstFailure = ex;
+                    skipRequestsNotSent(handlesToSave);
+                }
+            }
+        }
+
+        if(!nodes.isEmpty()) {
+            workspaceDao.updateNodeArchiveUris(nodes);
+        }
+
+        return firstFailure;
+    }
+
+    /**
+     * @return the registered handle, or null if the request was skipped before being sent
+     */
+    private URI getAssignedHandle(int workspaceID, PendingHandle pendingHandle) throws WorkspaceExportException {
+
+        // the request is waited for even if the thread is interrupted,
+        // otherwise a handle could be registered without ever being saved
+        boolean interrupted = false;
+        try {
+            while(true) {
+                try {
+                    return pendingHandle.assignment.get();
+                } catch(InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        } catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            String errorMessage = "Error assigning new handle for node " + pendingHandle.node.getWorkspaceURL();
+            logger.error(errorMessage, cause);
+            throw new WorkspaceExportException(errorMessage, workspaceID, cause);
+        } finally {
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void skipRequestsNotSent(Collection<PendingHandle> handlesToSkip) {
+
+        for(PendingHandle pendingHandle : handlesToSkip) {
+            pendingHandle.skipped.set(true);
+        }
+    }
+
+
+    private static class PendingHandle {
+
+        private final WorkspaceNode node;
+        private final Future<URI> assignment;
+        private final AtomicBoolean skipped;
+        private final AssignedHandleListener listener;
+
+        private PendingHandle(WorkspaceNode node, Future<URI> assignment, AtomicBoolean skipped, AssignedHandleListener listener) {
+            this.node = node;
+            this.assignment = assignment;
+            this.skipped = skipped;
+            this.listener = listener;
+        }
+    }
+}
@@ -17,11 +17,26 @@
 package nl.mpi.lamus.workspace.exporting.implementation;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
 import nl.mpi.lamus.ams.AmsServiceBridge;
+import nl.mpi.lamus.archive.CorpusStructureCache;
 import nl.mpi.lamus.archive.CorpusStructureServiceBridge;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.CrawlerStateRetrievalException;
@@ -35,9 +50,19 @@ import nl.mpi.lamus.workspace.model.WorkspaceStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 /**
+ * The crawler states of the submitted workspaces are retrieved at the same time.
+ * A workspace is polled as soon as it is found; while its crawler is running,
+ * the interval until the next poll starts at an estimate based on the number
+ * of nodes in the workspace (counted in the database when the crawler is first
+ * found running, as an approximation of what the crawler has to go through)
+ * and is doubled after every poll, between the configured minimum and maximum.
+ * Workspaces whose crawler has finished are finalised by a separate pool of threads,
+ * so that a slow finalisation doesn't delay the other workspaces.
+ * 
  * @see WorkspaceCrawlerChecker
  * @author guisil
  */
@@ -51,15 +76,45 @@ public class LamusWorkspaceCrawlerChecker implements WorkspaceCrawlerChecker {
     private final WorkspaceMailer workspaceMailer;
     private final AmsServiceBridge amsBridge;
     private final CorpusStructureProvider corpusStructureProvider;
+    private final CorpusStructureCache corpusStructureCache;
+    private final ExecutorService crawlerStatePollExecutorService;
+    private final ExecutorService workspaceFinalisationExecutorService;
+    
+    @Autowired
+    @Qualifier("crawlerPollMinIntervalSeconds")
+    private long crawlerPollMinIntervalSeconds;
+    @Autowired
+    @Qualifier("crawlerPollMaxIntervalSeconds")
+    private long crawlerPollMaxIntervalSeconds;
+    @Autowired
+    @Qualifier("crawlerPollIntervalMillisecondsPerNode")
+    private long crawlerPollIntervalMillisecondsPerNode;
+    
+    // polling schedule of the workspaces whose crawler is running, indexed by workspace ID
+    private final Map<Integer, CrawlerPoll> crawlerPolls = new ConcurrentHashMap<>();
+    private final Set<Integer> workspacesBeingFinalised = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    // finalised workspaces are kept until they are no longer listed, since a check which
+    // retrieved the submitted workspaces before their status was updated would finalise them again
+    private final Set<Integer> finalisedWorkspaces = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    
+    private final AtomicLong finalisedCount = new AtomicLong();
+    private final AtomicLong totalTimeToFinaliseMillis = new AtomicLong();
+    private final AtomicLong maxTimeToFinaliseMillis = new AtomicLong();
 
     @Autowired
     public LamusWorkspaceCrawlerChecker(WorkspaceDao wsDao, CorpusStructureServiceBridge csServiceBridge,
-        WorkspaceMailer wsMailer, AmsServiceBridge amsBridge, CorpusStructureProvider csProvider) {
+        WorkspaceMailer wsMailer, AmsServiceBridge amsBridge, CorpusStructureProvider csProvider,
+        CorpusStructureCache csCache,
+        @Qualifier("CrawlerStatePollExecutorService") ExecutorService crawlerStatePollExecutorService,
+        @Qualifier("WorkspaceFinalisationExecutorService") ExecutorService workspaceFinalisationExecutorService) {
         workspaceDao = wsDao;
         corpusStructureServiceBridge = csServiceBridge;
         workspaceMailer = wsMailer;
         this.amsBridge = amsBridge;
         this.corpusStructureProvider = csProvider;
+        this.corpusStructureCache = csCache;
+        this.crawlerStatePollExecutorService = crawlerStatePollExecutorService;
+        this.workspaceFinalisationExecutorService = workspaceFinalisationExecutorService;
     }
     
     /**
@@ -74,26 +129,250 @@ public class LamusWorkspaceCrawlerChecker implements WorkspaceCrawlerChecker {
         
         logger.debug("Found " + submittedWorkspaces.size() + " submitted workspaces");
         
-        for(Workspace ws : submittedWorkspaces) {
+        long now = currentTimeMillis();
+        
+        Set<Integer> submittedWorkspaceIDs = new HashSet<>();
+        List<Workspace> polledWorkspaces = new ArrayList<>();
+        List<Future<CrawlerPollResult>> pollResults = new ArrayList<>();
+        
+        for(final Workspace ws : submittedWorkspaces) {
             
-            String crawlerID = ws.getCrawlerID();
+            submittedWorkspaceIDs.add(ws.getWorkspaceID());
             
-            String crawlerState = corpusStructureServiceBridge.getCrawlerState(crawlerID);
+            if(workspacesBeingFinalised.contains(ws.getWorkspaceID()) || finalisedWorkspaces.contains(ws.getWorkspaceID())) {
+                continue;
+            }
             
-            if("STARTED".equals(crawlerState)) {
+            CrawlerPoll crawlerPoll = crawlerPolls.get(ws.getWorkspaceID());
+            if(crawlerPoll == null) {
+                crawlerPoll = new CrawlerPoll(now);
+                crawlerPolls.put(ws.getWorkspaceID(), crawlerPoll);
+            }
+            if(crawlerPoll.nextPollMillis > now) {
                 continue;
             }
             
-            if("SUCCESS".equals(crawlerState)) {
-                finaliseWorkspace(ws, true);
+            final boolean estimateCrawlSize = crawlerPoll.intervalMillis == 0;
+            polledWorkspaces.add(ws);
+            pollResults.add(crawlerStatePollExecutorService.submit(new Callable<CrawlerPollResult>() {
+                @Override
+                public CrawlerPollResult call() throws CrawlerStateRetrievalException {
+                    return pollCrawler(ws, estimateCrawlSize);
+                }
+            }));
+        }
+        
+        // workspaces which are no longer submitted (e.g. finalised or deleted) don't need to be polled anymore
+        Iterator<Integer> polledWorkspaceIDs = crawlerPolls.keySet().iterator();
+        while(polledWorkspaceIDs.hasNext()) {
+            if(!submittedWorkspaceIDs.contains(polledWorkspaceIDs.next())) {
+                polledWorkspaceIDs.remove();
+            }
+        }
+        finalisedWorkspaces.retainAll(submittedWorkspaceIDs);
+        
+        CrawlerStateRetrievalException firstException = null;
+        for(int i = 0; i < pollResults.size(); i++) {
+            Workspace ws = polledWorkspaces.get(i);
+            try {
+                handleCrawlerPollResult(ws, getCrawlerPollResult(pollResults.get(i)));
+            } catch(CrawlerStateRetrievalException ex) {
+                logger.error("Error retrieving crawler state for workspace " + ws.getWorkspaceID(), ex);
+                pollAgainLater(ws.getWorkspaceID());
+                if(firstException == null) {
+                    firstException = ex;
+                }
+            } catch(RuntimeException ex) {
+                // the other workspaces are still handled
+                logger.error("Error checking crawler for workspace " + ws.getWorkspaceID(), ex);
+                pollAgainLater(ws.getWorkspaceID());
+                if(firstException == null) {
+                    firstException = new CrawlerStateRetrievalException("Error checking crawler for workspace " + ws.getWorkspaceID(), ex);
+                }
+            }
+        }
+        
+        if(firstException != null) {
+            throw firstException;
+        }
+    }
+    
+    
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+    
+    long getPollIntervalMillis(int workspaceID) {
+        CrawlerPoll crawlerPoll = crawlerPolls.get(workspaceID);
+        return crawlerPoll != null ? crawlerPoll.intervalMillis : 0;
+    }
+    
+    long getFinalisedCount() {
+        return finalisedCount.get();
+    }
+    
+    
+    private void pollAgainLater(int workspaceID) {
+        
+        CrawlerPoll crawlerPoll = crawlerPolls.get(workspaceID);
+        if(crawlerPoll != null) {
+            crawlerPoll.nextPollMillis = currentTimeMillis() + getMinIntervalMillis();
+        }
+    }
+    
+    private CrawlerPollResult pollCrawler(Workspace ws, boolean estimateCrawlSize) throws CrawlerStateRetrievalException {
+        
+        String crawlerState = corpusStructureServiceBridge.getCrawlerState(ws.getCrawlerID());
+        
+        int expectedCrawlSize = -1;
+        if("STARTED".equals(crawlerState) && estimateCrawlSize) {
+            expectedCrawlSize = workspaceDao.getWorkspaceNodeCount(ws.getWorkspaceID());
+        }
+        
+        return new CrawlerPollResult(crawlerState, expectedCrawlSize);
+    }
+    
+    private CrawlerPollResult getCrawlerPollResult(Future<CrawlerPollResult> pollResult) throws CrawlerStateRetrievalException {
+        
+        try {
+            return pollResult.get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            pollResult.cancel(true);
+            throw new CrawlerStateRetrievalException("Interrupted while retrieving crawler state", ex);
+        } catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof CrawlerStateRetrievalException) {
+                throw (CrawlerStateRetrievalException) cause;
+            }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CrawlerStateRetrievalException("Error retrieving crawler state", cause);
+        }
+    }
+    
+    private void handleCrawlerPollResult(final Workspace ws, CrawlerPollResult pollResult) {
+        
+        final CrawlerPoll crawlerPoll = crawlerPolls.get(ws.getWorkspaceID());
+        crawlerPoll.pollCount++;
+        
+        if(!"SUCCESS".equals(pollResult.crawlerState) && !"CRASHED".equals(pollResult.crawlerState)) {
+            
+            if(crawlerPoll.intervalMillis == 0) {
+                crawlerPoll.intervalMillis = Math.max(pollResult.expectedCrawlSize, 0) * crawlerPollIntervalMillisecondsPerNode;
+            } else {
+                crawlerPoll.intervalMillis = crawlerPoll.intervalMillis * 2;
             }
+            crawlerPoll.intervalMillis = Math.min(Math.max(crawlerPoll.intervalMillis, getMinIntervalMillis()), crawlerPollMaxIntervalSeconds * 1000);
+            crawlerPoll.nextPollMillis = currentTimeMillis() + crawlerPoll.intervalMillis;
             
-            if("CRASHED".equals(crawlerState)) {
-                finaliseWorkspace(ws, false);
+            logger.debug("Crawler for workspace " + ws.getWorkspaceID() + " still running (" + pollResult.crawlerState
+                    + "); polling again in " + crawlerPoll.intervalMillis + " ms");
+            return;
+        }
+        
+        // the crawler has changed the corpus structure database
+        corpusStructureCache.invalidateAll();
+        
+        final boolean crawlerWasSuccessful = "SUCCESS".equals(pollResult.crawlerState);
+        
+        workspacesBeingFinalised.add(ws.getWorkspaceID());
+        try {
+            workspaceFinalisationExecutorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long finalisationStart = currentTimeMillis();
+                        finaliseWorkspace(ws, crawlerWasSuccessful);
+                        finalisedWorkspaces.add(ws.getWorkspaceID());
+                        countFinalisedWorkspace(ws, crawlerPoll, finalisationStart);
+                    } catch(RuntimeException ex) {
+                        // the workspace is finalised again if it is still submitted
+                        logger.error("Error finalising workspace " + ws.getWorkspaceID(), ex);
+                    } finally {
+                        workspacesBeingFinalised.remove(ws.getWorkspaceID());
+                    }
+                }
+            });
+        } catch(RejectedExecutionException ex) {
+            workspacesBeingFinalised.remove(ws.getWorkspaceID());
+            throw ex;
+        }
+        crawlerPolls.remove(ws.getWorkspaceID());
+    }
+    
+    private void countFinalisedWorkspace(Workspace ws, CrawlerPoll crawlerPoll, long finalisationStart) {
+        
+        long now = currentTimeMillis();
+        long timeToFinalise = now - crawlerPoll.firstSeenMillis;
+        long finalised = finalisedCount.incrementAndGet();
+        long total = totalTimeToFinaliseMillis.addAndGet(timeToFinalise);
+        long max = maxTimeToFinaliseMillis.get();
+        while(timeToFinalise > max && !maxTimeToFinaliseMillis.compareAndSet(max, timeToFinalise)) {
+            max = maxTimeToFinaliseMillis.get();
+        }
+        
+        logger.info("Workspace " + ws.getWorkspaceID() + " finalised " + timeToFinalise + " ms after it was found waiting for the crawler ("
+                + crawlerPoll.pollCount + " polls; finalisation took " + (now - finalisationStart) + " ms). "
+                + "Finalised workspaces: " + finalised + "; average " + (total / finalised) + " ms, maximum " + maxTimeToFinaliseMillis.get() + " ms");
+    }
+    
+    private long getMinIntervalMillis() {
+        return crawlerPollMinIntervalSeconds * 1000;
+    }
+    
+    /**
+     * Canonical parents of the protected nodes which are not under the top node
+     * of the workspace (their access rights have to be recalculated as well).
+     * The descendants of the top node are retrieved only once, and only if needed.
+     */
+    private Set<URI> getCanonicalParentsOutsideTopNode(URI topNodeArchiveURI, Collection<WorkspaceNode> descendantNodes) {
+        
+        Map<URI, WorkspaceNode> protectedNodes = new LinkedHashMap<>();
+        for(WorkspaceNode node : descendantNodes) {
+            if(node.isProtected()) {
+                protectedNodes.put(node.getArchiveURI(), node);
+            }
+        }
+        
+        Map<URI, URI> canonicalParents = getCanonicalParents(protectedNodes.keySet());
+        
+        Set<URI> topNodeDescendants = null;
+        Set<URI> canonicalParentsOutsideTopNode = new HashSet<>();
+        for(Map.Entry<URI, WorkspaceNode> protectedNode : protectedNodes.entrySet()) {
+            URI canonicalParent = canonicalParents.get(protectedNode.getKey());
+            if(canonicalParent == null) {
+                continue;
+            }
+            if(topNodeDescendants == null) {
+                topNodeDescendants = new HashSet<>(corpusStructureProvider.getDescendants(topNodeArchiveURI));
+            }
+            if(!topNodeDescendants.contains(canonicalParent)) {
+                logger.debug("Worspace child protected: [" + protectedNode.getValue().getName() + "] adding canonical parent for rights recalcualtion: [" + canonicalParent.toString() + "]");
+                canonicalParentsOutsideTopNode.add(canonicalParent);
             }
         }
+        
+        return canonicalParentsOutsideTopNode;
     }
     
+    /**
+     * Resolves the canonical parents of all the given nodes in one step.
+     * The corpus structure provider has no bulk lookup, so each node is still
+     * looked up separately, but only once (the lookups go through the corpus structure cache).
+     */
+    private Map<URI, URI> getCanonicalParents(Collection<URI> nodeURIs) {
+        
+        Map<URI, URI> canonicalParents = new HashMap<>();
+        for(URI nodeURI : nodeURIs) {
+            canonicalParents.put(nodeURI, corpusStructureProvider.getCanonicalParent(nodeURI));
+        }
+        return canonicalParents;
+    }
     
     private void finaliseWorkspace(Workspace workspace, boolean crawlerWasSuccessful) {
         
@@ -139,16 +418,7 @@ public class LamusWorkspaceCrawlerChecker implements WorkspaceCrawlerChecker {
         
         URI topNodeArchiveURI = workspace.getTopNodeArchiveURI();
         
-        Set<URI> canoninalParents = new HashSet<URI>();
-        for (WorkspaceNode node : descendantNodes) {
-        	URI canonicalParent = corpusStructureProvider.getCanonicalParent(node.getArchiveURI());
-        	Collection<URI> topNodeDescendants = corpusStructureProvider.getDescendants(topNodeArchiveURI);
-        	
-        	if (node.isProtected() && canonicalParent != null && !topNodeDescendants.contains(canonicalParent)) {
-                logger.debug("Worspace child protected: [" + node.getName() + "] adding canonical parent for rights recalcualtion: [" + canonicalParent.toString() + "]");
-        		canoninalParents.add(canonicalParent);
-        	}
-        }
+        Set<URI> canoninalParents = getCanonicalParentsOutsideTopNode(topNodeArchiveURI, descendantNodes);
         
         if(crawlerWasSuccessful && versioningWasSuccessful) {
             workspaceDao.cleanWorkspaceNodesAndLinks(workspace);
@@ -169,4 +439,33 @@ public class LamusWorkspaceCrawlerChecker implements WorkspaceCrawlerChecker {
         
         workspaceMailer.sendWorkspaceFinalMessage(workspace, crawlerWasSuccessful, versioningWasSuccessful);
     }
+    
+    
+    /**
+     * Polling schedule of a workspace whose crawler is running;
+     * only accessed by the thread checking the crawlers.
+     */
+    private static class CrawlerPoll {
+        
+        private final long firstSeenMillis;
+        private long nextPollMillis;
+        private long intervalMillis = 0;
+        private int pollCount = 0;
+        
+        private CrawlerPoll(long firstSeenMillis) {
+            this.firstSeenMillis = firstSeenMillis;
+            this.nextPollMillis = firstSeenMillis;
+        }
+    }
+    
+    private static class CrawlerPollResult {
+        
+        private final String crawlerState;
+        private final int expectedCrawlSize;
+        
+        private CrawlerPollResult(String crawlerState, int expectedCrawlSize) {
+            this.crawlerState = crawlerState;
+            this.expectedCrawlSize = expectedCrawlSize;
+        }
+    }
 }
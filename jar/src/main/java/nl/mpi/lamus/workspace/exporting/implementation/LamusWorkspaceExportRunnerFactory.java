@@ -16,8 +16,10 @@
  */
 package nl.mpi.lamus.workspace.exporting.implementation;
 
+import nl.mpi.lamus.archive.CorpusStructureBridge;
 import nl.mpi.lamus.archive.CorpusStructureServiceBridge;
 import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
 import nl.mpi.lamus.workspace.exporting.NodeExporterFactory;
 import nl.mpi.lamus.workspace.exporting.UnlinkedAndDeletedNodesExportHandler;
 import nl.mpi.lamus.workspace.exporting.WorkspaceCorpusStructureExporter;
@@ -37,19 +39,25 @@ public class LamusWorkspaceExportRunnerFactory implements WorkspaceExportRunnerF
     private final UnlinkedAndDeletedNodesExportHandler unlinkedAndDeletedNodesExportHandler;
     private final CorpusStructureServiceBridge corpusStructureServiceBridge;
     private final WorkspaceCorpusStructureExporter workspaceCorpusStructureExporter;
+    private final ExportDocumentSession exportDocumentSession;
+    private final CorpusStructureBridge corpusStructureBridge;
     
     @Autowired
     public LamusWorkspaceExportRunnerFactory(WorkspaceDao wsDao,
             NodeExporterFactory nExporterFactory,
             UnlinkedAndDeletedNodesExportHandler udNodesExportHandler,
             CorpusStructureServiceBridge csServiceBridge,
-            WorkspaceCorpusStructureExporter wsCsExporter) {
+            WorkspaceCorpusStructureExporter wsCsExporter,
+            ExportDocumentSession exportDocSession,
+            CorpusStructureBridge csBridge) {
         
         this.workspaceDao = wsDao;
         this.nodeExporterFactory = nExporterFactory;
         this.unlinkedAndDeletedNodesExportHandler = udNodesExportHandler;
         this.corpusStructureServiceBridge = csServiceBridge;
         this.workspaceCorpusStructureExporter = wsCsExporter;
+        this.exportDocumentSession = exportDocSession;
+        this.corpusStructureBridge = csBridge;
     }
     
     /**
@@ -59,7 +67,8 @@ public class LamusWorkspaceExportRunnerFactory implements WorkspaceExportRunnerF
     public WorkspaceExportRunner getNewExportRunner() {
         return new WorkspaceExportRunner(workspaceDao, nodeExporterFactory,
                 unlinkedAndDeletedNodesExportHandler, corpusStructureServiceBridge,
-                workspaceCorpusStructureExporter);
+                workspaceCorpusStructureExporter, exportDocumentSession,
+                corpusStructureBridge);
     }
     
 }
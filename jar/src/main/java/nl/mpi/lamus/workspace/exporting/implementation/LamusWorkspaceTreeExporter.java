@@ -19,6 +19,7 @@ package nl.mpi.lamus.workspace.exporting.implementation;
 import java.util.Collection;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.WorkspaceExportException;
+import nl.mpi.lamus.workspace.exporting.ExportHandleAssigner;
 import nl.mpi.lamus.workspace.exporting.NodeExporter;
 import nl.mpi.lamus.workspace.exporting.NodeExporterFactory;
 import nl.mpi.lamus.workspace.exporting.WorkspaceTreeExporter;
@@ -44,6 +45,8 @@ public class LamusWorkspaceTreeExporter implements WorkspaceTreeExporter {
     private WorkspaceDao workspaceDao;
     @Autowired
     private NodeExporterFactory nodeExporterFactory;
+    @Autowired
+    private ExportHandleAssigner exportHandleAssigner;
     
     
     /**
@@ -63,11 +66,22 @@ public class LamusWorkspaceTreeExporter implements WorkspaceTreeExporter {
         
         Collection<WorkspaceNode> children = workspaceDao.getChildWorkspaceNodes(node.getWorkspaceNodeID());
         
-        for(WorkspaceNode child : children) {
+        boolean explored = false;
+        try {
+            for(WorkspaceNode child : children) {
+
+                if(!child.isExternal()) {
+                    NodeExporter childNodeExporter = nodeExporterFactory.getNodeExporterForNode(workspace, child, exportPhase);
+                    childNodeExporter.exportNode(workspace, node, corpusNamePathToClosestTopNode, child, keepUnlinkedFiles, submissionType, exportPhase);
+                }
+            }
             
-            if(!child.isExternal()) {
-                NodeExporter childNodeExporter = nodeExporterFactory.getNodeExporterForNode(workspace, child, exportPhase);
-                childNodeExporter.exportNode(workspace, node, corpusNamePathToClosestTopNode, child, keepUnlinkedFiles, submissionType, exportPhase);
+            // the handles requested for the children are needed from here on, when the document of this node is saved
+            exportHandleAssigner.completePendingHandles(workspace.getWorkspaceID(), node);
+            explored = true;
+        } finally {
+            if(!explored) {
+                exportHandleAssigner.discardPendingHandles(workspace.getWorkspaceID(), node);
             }
         }
     }
@@ -47,6 +47,7 @@ import nl.mpi.metadata.cmdi.api.model.CMDIDocument;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -68,7 +69,7 @@ public class UnlinkedNodeExporter implements NodeExporter{
     @Autowired
     private MetadataApiBridge metadataApiBridge;
     @Autowired
-    private MetadataAPI metadataAPI;
+    private ObjectFactory<MetadataAPI> metadataAPIFactory;
     @Autowired
     private WorkspaceDao workspaceDao;
     @Autowired
@@ -78,6 +79,13 @@ public class UnlinkedNodeExporter implements NodeExporter{
     @Autowired
     private ArchiveFileLocationProvider archiveFileLocationProvider;
     
+    private final ThreadLocal<MetadataAPI> metadataAPI = new ThreadLocal<MetadataAPI>() {
+        @Override
+        protected MetadataAPI initialValue() {
+            return metadataAPIFactory.getObject();
+        }
+    };
+    
 
     /**
      * @see NodeExporter#exportNode(
@@ -242,7 +250,7 @@ public class UnlinkedNodeExporter implements NodeExporter{
         
         if(nodeUtil.isNodeMetadata(node)) {
             try {
-                document = metadataAPI.getMetadataDocument(nodeLocationURL);
+                document = metadataAPI.get().getMetadataDocument(nodeLocationURL);
                 
             } catch (IOException | MetadataException ex) {
                 String errorMessage = "Error getting Metadata Document for node " + nodeLocationURL;
@@ -17,12 +17,14 @@ package nl.mpi.lamus.workspace.exporting.implementation;
 
 import java.util.Collection;
 import java.util.concurrent.Callable;
+import nl.mpi.lamus.archive.CorpusStructureBridge;
 import nl.mpi.lamus.archive.CorpusStructureServiceBridge;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.CrawlerInvocationException;
 import nl.mpi.lamus.exception.NodeUrlUpdateException;
 import nl.mpi.lamus.exception.WorkspaceNodeNotFoundException;
 import nl.mpi.lamus.exception.WorkspaceExportException;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
 import nl.mpi.lamus.workspace.exporting.NodeExporter;
 import nl.mpi.lamus.workspace.exporting.NodeExporterFactory;
 import nl.mpi.lamus.workspace.exporting.UnlinkedAndDeletedNodesExportHandler;
@@ -46,6 +48,8 @@ public class WorkspaceExportRunner implements Callable<Boolean> {
     private final UnlinkedAndDeletedNodesExportHandler unlinkedAndDeletedNodesExportHandler;
     private final CorpusStructureServiceBridge corpusStructureServiceBridge;
     private final WorkspaceCorpusStructureExporter workspaceCorpusStructureExporter;
+    private final ExportDocumentSession exportDocumentSession;
+    private final CorpusStructureBridge corpusStructureBridge;
     
     private Workspace workspace;
     private boolean keepUnlinkedFiles;
@@ -54,12 +58,16 @@ public class WorkspaceExportRunner implements Callable<Boolean> {
     public WorkspaceExportRunner(WorkspaceDao wsDao, NodeExporterFactory exporterFactory,
             UnlinkedAndDeletedNodesExportHandler dnExportHandler,
             CorpusStructureServiceBridge csServiceBridge,
-            WorkspaceCorpusStructureExporter wsCsExporter) {
+            WorkspaceCorpusStructureExporter wsCsExporter,
+            ExportDocumentSession exportDocSession,
+            CorpusStructureBridge csBridge) {
         this.workspaceDao = wsDao;
         this.nodeExporterFactory = exporterFactory;
         this.unlinkedAndDeletedNodesExportHandler = dnExportHandler;
         this.corpusStructureServiceBridge = csServiceBridge;
         this.workspaceCorpusStructureExporter = wsCsExporter;
+        this.exportDocumentSession = exportDocSession;
+        this.corpusStructureBridge = csBridge;
     }
     
     /**
@@ -119,7 +127,21 @@ public class WorkspaceExportRunner implements Callable<Boolean> {
             WorkspaceNode topNode = workspaceDao.getWorkspaceTopNode(workspace.getWorkspaceID());
 
             NodeExporter topNodeExporter = nodeExporterFactory.getNodeExporterForNode(workspace, topNode, WorkspaceExportPhase.TREE_EXPORT);
-            topNodeExporter.exportNode(workspace, null, null, topNode, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.TREE_EXPORT);
+            
+            // metadata documents are kept in memory during the tree export, so that each one is written only once
+                // and the archive paths of the ancestors are determined only once for all their descendants
+            boolean documentsSaved;
+            exportDocumentSession.openSession(workspace.getWorkspaceID());
+            corpusStructureBridge.openAncestorPathCache(workspace.getWorkspaceID());
+            try {
+                topNodeExporter.exportNode(workspace, null, null, topNode, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.TREE_EXPORT);
+            } finally {
+                corpusStructureBridge.closeAncestorPathCache(workspace.getWorkspaceID());
+                documentsSaved = exportDocumentSession.closeSession(workspace.getWorkspaceID());
+            }
+            if(!documentsSaved) {
+                throw new WorkspaceExportException("Error saving metadata documents of workspace " + workspace.getWorkspaceID(), workspace.getWorkspaceID(), null);
+            }
 
             workspaceCorpusStructureExporter.triggerWorkspaceCrawl(workspace);
         
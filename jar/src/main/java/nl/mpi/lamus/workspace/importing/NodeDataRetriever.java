@@ -19,7 +19,9 @@ import java.io.File;
 import java.net.URI;
 import java.net.URL;
 import nl.mpi.archiving.corpusstructure.core.CorpusNode;
+import nl.mpi.archiving.corpusstructure.core.FileInfo;
 import nl.mpi.archiving.corpusstructure.core.NodeNotFoundException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.typechecking.TypecheckedResults;
 import nl.mpi.lamus.exception.TypeCheckerException;
 import nl.mpi.metadata.api.model.Reference;
@@ -63,6 +65,28 @@ public interface NodeDataRetriever {
      */
     public TypecheckedResults triggerResourceFileCheck(URL resourceFileUrl, String resourceFilename) throws TypeCheckerException;
     
+    /**
+     * Invokes typechecking for a resource which was just copied into the workspace,
+     * making use of the information calculated during the copy.
+     * Results previously cached for the same content are reused.
+     * @param resourceFileUrl URL of the resource
+     * @param resourceFilename Filename of the resource
+     * @param copiedFileInfo size and checksum calculated when the file was copied (can be null);
+     *  if the checksum is missing (e.g. for moved files), it is calculated from the file
+     * @return results of the typechecker
+     */
+    public TypecheckedResults triggerResourceFileCheck(URL resourceFileUrl, String resourceFilename, CopiedFileInfo copiedFileInfo) throws TypeCheckerException;
+    
+    /**
+     * Invokes typechecking for a resource from the archive,
+     * reusing the results previously cached for the same content.
+     * @param resourceFileUrl URL of the resource
+     * @param resourceFilename Filename of the resource
+     * @param archiveFileInfo size and checksum of the file, from the corpus structure database (can be null)
+     * @return results of the typechecker
+     */
+    public TypecheckedResults triggerResourceFileCheck(URL resourceFileUrl, String resourceFilename, FileInfo archiveFileInfo) throws TypeCheckerException;
+    
     /**
      * Verifies the results of the typechecker.
      * @param resourceFile File object referring to the resource
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.importing;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import nl.mpi.archiving.corpusstructure.core.CorpusNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.metadata.api.model.MetadataDocument;
+
+/**
+ * Data retrieved from the archive for a node that is about to be imported
+ * (corpus structure information, parsed metadata document, type checking results).
+ * It is obtained without changing the workspace, so that it can be retrieved
+ * for several nodes at the same time.
+ *
+ * @author guisil
+ */
+public class NodeImportData {
+
+    private final URI handleInReference;
+    private final URI preparedHandle;
+    private final URI nodeURI;
+    private final CorpusNode corpusNode;
+    private final String name;
+    private final boolean onSite;
+    private final File localFile;
+    private final URL archiveURL;
+    private final MetadataDocument metadataDocument;
+    private final String mimetype;
+    private final WorkspaceNodeType nodeType;
+    private final boolean toBeProtected;
+
+    /**
+     * @param handleInReference handle contained in the reference, as it is in the parent document
+     * @param preparedHandle the same handle, after being validated and completed with the proper prefix
+     * @param nodeURI archive URI of the node
+     * @param corpusNode corresponding node in the corpus structure
+     * @param name name of the node
+     * @param onSite true if the node is available locally
+     * @param localFile local file of the node, if available
+     * @param archiveURL archive URL of the node
+     * @param metadataDocument parsed document (for metadata nodes)
+     * @param mimetype mimetype of the node (for resource nodes)
+     * @param nodeType type of the node (for resource nodes)
+     * @param toBeProtected true if the node should be protected in the workspace
+     */
+    public NodeImportData(URI handleInReference, URI preparedHandle, URI nodeURI,
+            CorpusNode corpusNode, String name, boolean onSite, File localFile, URL archiveURL,
+            MetadataDocument metadataDocument, String mimetype, WorkspaceNodeType nodeType, boolean toBeProtected) {
+        this.handleInReference = handleInReference;
+        this.preparedHandle = preparedHandle;
+        this.nodeURI = nodeURI;
+        this.corpusNode = corpusNode;
+        this.name = name;
+        this.onSite = onSite;
+        this.localFile = localFile;
+        this.archiveURL = archiveURL;
+        this.metadataDocument = metadataDocument;
+        this.mimetype = mimetype;
+        this.nodeType = nodeType;
+        this.toBeProtected = toBeProtected;
+    }
+
+    public URI getHandleInReference() {
+        return handleInReference;
+    }
+
+    public URI getPreparedHandle() {
+        return preparedHandle;
+    }
+
+    /**
+     * @return true if the handle in the reference should be replaced by the prepared one
+     */
+    public boolean isHandleToUpdate() {
+        return handleInReference != null && !handleInReference.equals(preparedHandle);
+    }
+
+    public URI getNodeURI() {
+        return nodeURI;
+    }
+
+    public CorpusNode getCorpusNode() {
+        return corpusNode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isOnSite() {
+        return onSite;
+    }
+
+    public File getLocalFile() {
+        return localFile;
+    }
+
+    public URL getArchiveURL() {
+        return archiveURL;
+    }
+
+    public MetadataDocument getMetadataDocument() {
+        return metadataDocument;
+    }
+
+    public String getMimetype() {
+        return mimetype;
+    }
+
+    public WorkspaceNodeType getNodeType() {
+        return nodeType;
+    }
+
+    public boolean isToBeProtected() {
+        return toBeProtected;
+    }
+}
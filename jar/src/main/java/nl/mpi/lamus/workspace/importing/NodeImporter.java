@@ -42,4 +42,30 @@ public interface NodeImporter<R extends Reference> {
      */
     public void importNode(Workspace workspace, WorkspaceNode parentNode, ReferencingMetadataDocument parentDocument,
             Reference referenceFromParent) throws WorkspaceImportException;
+    
+    /**
+     * Retrieves the data necessary to import the node corresponding to the
+     * given reference (information from the archive, metadata document,
+     * type checking results). Nothing is changed in the workspace or in the
+     * reference itself, so this can be invoked for several references at the same time.
+     * 
+     * @param workspace workspace where the node will be imported
+     * @param referenceFromParent reference corresponding to the node (null for the top node)
+     * @return data retrieved for the node
+     */
+    public NodeImportData retrieveNodeData(Workspace workspace, Reference referenceFromParent)
+            throws WorkspaceImportException;
+    
+    /**
+     * Imports the node into the workspace, using data which was previously retrieved.
+     * 
+     * @param workspace workspace where to import the node
+     * @param parentNode parent of the node to be imported
+     * @param parentDocument metadata document corresponding to the parent node
+     * @param referenceFromParent reference corresponding to the current node
+     * @param nodeData data retrieved for the current node
+     * @see NodeImporter#retrieveNodeData(nl.mpi.lamus.workspace.model.Workspace, nl.mpi.metadata.api.model.Reference)
+     */
+    public void importNode(Workspace workspace, WorkspaceNode parentNode, ReferencingMetadataDocument parentDocument,
+            Reference referenceFromParent, NodeImportData nodeData) throws WorkspaceImportException;
 }
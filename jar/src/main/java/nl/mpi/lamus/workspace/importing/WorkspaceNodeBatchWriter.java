@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.importing;
+
+import java.net.URI;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+
+/**
+ * Collects the nodes being imported into a workspace, together with
+ * their locks and links, and writes them to the database in batches.
+ * 
+ * @author guisil
+ */
+public interface WorkspaceNodeBatchWriter {
+    
+    /**
+     * Adds a node, linked to an existing parent node, to the pending writes
+     * of its workspace. When the configured batch size is reached,
+     * the pending writes are flushed.
+     * 
+     * @param parentNode node to which the new node should be linked; must already exist in the database
+     * @param childNode node to insert; its ID is only set when the writes are flushed
+     * @param archiveURIToLock archive URI of the node, to be locked; null if the node should not be locked
+     */
+    public void addLinkedNode(WorkspaceNode parentNode, WorkspaceNode childNode, URI archiveURIToLock);
+    
+    /**
+     * Writes to the database all the pending nodes, locks and links of the given workspace.
+     * 
+     * @param workspaceID ID of the workspace
+     */
+    public void flush(int workspaceID);
+    
+    /**
+     * Discards all the pending writes of the given workspace, without writing them.
+     * 
+     * @param workspaceID ID of the workspace
+     */
+    public void discard(int workspaceID);
+}
@@ -20,17 +20,21 @@ import java.net.URI;
 import java.net.URL;
 import java.util.List;
 import nl.mpi.archiving.corpusstructure.core.CorpusNode;
+import nl.mpi.archiving.corpusstructure.core.FileInfo;
 import nl.mpi.archiving.corpusstructure.core.NodeNotFoundException;
 import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
 import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
 import nl.mpi.lamus.archive.ArchiveFileHelper;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.typechecking.FileTypeHandler;
+import nl.mpi.lamus.typechecking.TypecheckResultCache;
 import nl.mpi.lamus.typechecking.TypecheckedResults;
 import nl.mpi.lamus.exception.TypeCheckerException;
 import nl.mpi.lamus.typechecking.TypecheckerConfiguration;
 import nl.mpi.lamus.typechecking.TypecheckerJudgement;
 import nl.mpi.lamus.workspace.importing.NodeDataRetriever;
 import nl.mpi.metadata.api.model.Reference;
+import nl.mpi.util.Checksum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -50,16 +54,19 @@ public class LamusNodeDataRetriever implements NodeDataRetriever {
     private final FileTypeHandler fileTypeHandler;
     private final TypecheckerConfiguration typecheckerConfiguration;
     private final ArchiveFileHelper archiveFileHelper;
+    private final TypecheckResultCache typecheckResultCache;
     
     @Autowired
     public LamusNodeDataRetriever(CorpusStructureProvider csProvider,
         NodeResolver nodeResolver, FileTypeHandler fileTypeHandler,
-        TypecheckerConfiguration typecheckerConfiguration, ArchiveFileHelper archiveFileHelper) {
+        TypecheckerConfiguration typecheckerConfiguration, ArchiveFileHelper archiveFileHelper,
+        TypecheckResultCache typecheckResultCache) {
         this.corpusStructureProvider = csProvider;
         this.nodeResolver = nodeResolver;
         this.fileTypeHandler = fileTypeHandler;
         this.typecheckerConfiguration = typecheckerConfiguration;
         this.archiveFileHelper = archiveFileHelper;
+        this.typecheckResultCache = typecheckResultCache;
     }
 
     
@@ -143,6 +150,39 @@ public class LamusNodeDataRetriever implements NodeDataRetriever {
         return fileTypeHandler.checkType(resourceFileUrl, resourceFilename);
     }
     
+    /**
+     * @see NodeDataRetriever#triggerResourceFileCheck(java.net.URL, java.lang.String, nl.mpi.lamus.filesystem.CopiedFileInfo)
+     */
+    @Override
+    public TypecheckedResults triggerResourceFileCheck(URL resourceFileUrl, String resourceFilename, CopiedFileInfo copiedFileInfo) throws TypeCheckerException {
+        
+        if(copiedFileInfo == null) {
+            return triggerResourceFileCheck(resourceFileUrl, resourceFilename);
+        }
+        
+        String checksum = copiedFileInfo.getChecksum();
+        if(checksum == null) {
+            // the data of moved files is not read during the upload, so the checksum is only calculated now
+            checksum = Checksum.create(copiedFileInfo.getFile().getPath());
+        }
+        
+        logger.debug("Typechecking copied file " + resourceFilename + "; size: " + copiedFileInfo.getSize() + "; checksum: " + checksum);
+        return checkTypeUsingCache(resourceFileUrl, resourceFilename, checksum, copiedFileInfo.getSize());
+    }
+    
+    /**
+     * @see NodeDataRetriever#triggerResourceFileCheck(java.net.URL, java.lang.String, nl.mpi.archiving.corpusstructure.core.FileInfo)
+     */
+    @Override
+    public TypecheckedResults triggerResourceFileCheck(URL resourceFileUrl, String resourceFilename, FileInfo archiveFileInfo) throws TypeCheckerException {
+        
+        if(archiveFileInfo == null) {
+            return triggerResourceFileCheck(resourceFileUrl, resourceFilename);
+        }
+        
+        return checkTypeUsingCache(resourceFileUrl, resourceFilename, archiveFileInfo.getChecksum(), archiveFileInfo.getSize());
+    }
+    
     /**
      * @see NodeDataRetriever#verifyTypecheckedResults(java.io.File,
      *      nl.mpi.metadata.api.model.Reference, nl.mpi.lamus.typechecking.TypecheckedResults)
@@ -197,4 +237,21 @@ public class LamusNodeDataRetriever implements NodeDataRetriever {
             return false;
         }
     }
+    
+    
+    private TypecheckedResults checkTypeUsingCache(URL resourceFileUrl, String resourceFilename, String checksum, long size) throws TypeCheckerException {
+        
+        if(checksum == null || checksum.isEmpty()) {
+            return triggerResourceFileCheck(resourceFileUrl, resourceFilename);
+        }
+        
+        TypecheckedResults cachedResults = typecheckResultCache.getCachedResults(checksum, size, resourceFilename);
+        if(cachedResults != null) {
+            return cachedResults;
+        }
+        
+        TypecheckedResults results = triggerResourceFileCheck(resourceFileUrl, resourceFilename);
+        typecheckResultCache.cacheResults(checksum, size, resourceFilename, results);
+        return results;
+    }
 }
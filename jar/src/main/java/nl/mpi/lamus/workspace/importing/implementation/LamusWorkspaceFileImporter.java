@@ -29,6 +29,7 @@ import nl.mpi.metadata.api.MetadataException;
 import nl.mpi.metadata.api.model.MetadataDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -43,14 +44,19 @@ public class LamusWorkspaceFileImporter implements WorkspaceFileImporter {
     
     private final WorkspaceFileHandler workspaceFileHandler;
     private final WorkspaceDao workspaceDao;
-    private final MetadataAPI metadataAPI;
+    private final ThreadLocal<MetadataAPI> metadataAPI;
     
     @Autowired
-    public LamusWorkspaceFileImporter(WorkspaceFileHandler wFileHandler, WorkspaceDao wDao, MetadataAPI mAPI) {
+    public LamusWorkspaceFileImporter(WorkspaceFileHandler wFileHandler, WorkspaceDao wDao, final ObjectFactory<MetadataAPI> mAPIFactory) {
         
         this.workspaceFileHandler = wFileHandler;
         this.workspaceDao = wDao;
-        this.metadataAPI = mAPI;
+        this.metadataAPI = new ThreadLocal<MetadataAPI>() {
+            @Override
+            protected MetadataAPI initialValue() {
+                return mAPIFactory.getObject();
+            }
+        };
     }
 
     /**
@@ -66,7 +72,7 @@ public class LamusWorkspaceFileImporter implements WorkspaceFileImporter {
 	File workspaceFile = workspaceFileHandler.getFileForImportedWorkspaceNode(archiveFile, workspaceNode);
 	StreamResult streamResult = workspaceFileHandler.getStreamResultForNodeFile(workspaceFile);
 
-        metadataAPI.writeMetadataDocument(document, streamResult);
+        metadataAPI.get().writeMetadataDocument(document, streamResult);
         
         workspaceNode.setWorkspaceURL(workspaceFile.toURI().toURL());
         this.workspaceDao.updateNodeWorkspaceURL(workspaceNode);
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.importing.implementation;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.workspace.factory.WorkspaceNodeLinkFactory;
+import nl.mpi.lamus.workspace.importing.WorkspaceNodeBatchWriter;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * The pending writes are kept separately for each workspace.
+ * When flushing, the nodes are inserted first, so that their IDs are known,
+ * followed by the locks and then the links.
+ * 
+ * @see WorkspaceNodeBatchWriter
+ * 
+ * @author guisil
+ */
+@Component
+public class LamusWorkspaceNodeBatchWriter implements WorkspaceNodeBatchWriter {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LamusWorkspaceNodeBatchWriter.class);
+    
+    private final WorkspaceDao workspaceDao;
+    private final WorkspaceNodeLinkFactory workspaceNodeLinkFactory;
+    private final int batchSize;
+    
+    private final ConcurrentMap<Integer, PendingWrites> pendingWritesPerWorkspace = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public LamusWorkspaceNodeBatchWriter(WorkspaceDao workspaceDao, WorkspaceNodeLinkFactory workspaceNodeLinkFactory,
+            @Qualifier("workspaceImportBatchSize") int batchSize) {
+        this.workspaceDao = workspaceDao;
+        this.workspaceNodeLinkFactory = workspaceNodeLinkFactory;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @see WorkspaceNodeBatchWriter#addLinkedNode(nl.mpi.lamus.workspace.model.WorkspaceNode, nl.mpi.lamus.workspace.model.WorkspaceNode, java.net.URI)
+     */
+    @Override
+    public void addLinkedNode(WorkspaceNode parentNode, WorkspaceNode childNode, URI archiveURIToLock) {
+        
+        int workspaceID = childNode.getWorkspaceID();
+        
+        PendingWrites pendingWrites = pendingWritesPerWorkspace.get(workspaceID);
+        if(pendingWrites == null) {
+            PendingWrites newPendingWrites = new PendingWrites();
+            pendingWrites = pendingWritesPerWorkspace.putIfAbsent(workspaceID, newPendingWrites);
+            if(pendingWrites == null) {
+                pendingWrites = newPendingWrites;
+            }
+        }
+        
+        int numberOfPendingNodes;
+        synchronized(pendingWrites) {
+            pendingWrites.parentNodes.add(parentNode);
+            pendingWrites.childNodes.add(childNode);
+            if(archiveURIToLock != null) {
+                pendingWrites.urisToLock.add(archiveURIToLock);
+            }
+            numberOfPendingNodes = pendingWrites.childNodes.size();
+        }
+        
+        if(numberOfPendingNodes >= batchSize) {
+            flush(workspaceID);
+        }
+    }
+
+    /**
+     * @see WorkspaceNodeBatchWriter#flush(int)
+     */
+    @Override
+    public void flush(int workspaceID) {
+        
+        PendingWrites pendingWrites = pendingWritesPerWorkspace.remove(workspaceID);
+        if(pendingWrites == null) {
+            return;
+        }
+        
+        synchronized(pendingWrites) {
+            
+            logger.debug("Writing " + pendingWrites.childNodes.size() + " imported nodes of workspace " + workspaceID);
+            
+            workspaceDao.addWorkspaceNodes(pendingWrites.childNodes);
+            workspaceDao.lockNodes(pendingWrites.urisToLock, workspaceID);
+            
+            List<WorkspaceNodeLink> nodeLinks = new ArrayList<>(pendingWrites.childNodes.size());
+            for(int i = 0; i < pendingWrites.childNodes.size(); i++) {
+                nodeLinks.add(workspaceNodeLinkFactory.getNewWorkspaceNodeLink(
+                        pendingWrites.parentNodes.get(i).getWorkspaceNodeID(), pendingWrites.childNodes.get(i).getWorkspaceNodeID()));
+            }
+            workspaceDao.addWorkspaceNodeLinks(nodeLinks);
+        }
+    }
+
+    /**
+     * @see WorkspaceNodeBatchWriter#discard(int)
+     */
+    @Override
+    public void discard(int workspaceID) {
+        
+        PendingWrites pendingWrites = pendingWritesPerWorkspace.remove(workspaceID);
+        if(pendingWrites != null) {
+            logger.debug("Discarding " + pendingWrites.childNodes.size() + " imported nodes of workspace " + workspaceID);
+        }
+    }
+    
+    
+    private static final class PendingWrites {
+        
+        private final List<WorkspaceNode> parentNodes = new ArrayList<>();
+        private final List<WorkspaceNode> childNodes = new ArrayList<>();
+        private final List<URI> urisToLock = new ArrayList<>();
+    }
+}
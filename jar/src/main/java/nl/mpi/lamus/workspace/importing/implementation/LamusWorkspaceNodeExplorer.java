@@ -16,13 +16,21 @@
 package nl.mpi.lamus.workspace.importing.implementation;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.xml.transform.TransformerException;
 import nl.mpi.lamus.exception.UnusableReferenceTypeException;
 import nl.mpi.lamus.exception.WorkspaceImportException;
 import nl.mpi.lamus.metadata.MetadataApiBridge;
+import nl.mpi.lamus.workspace.importing.NodeImportData;
 import nl.mpi.lamus.workspace.importing.NodeImporter;
 import nl.mpi.lamus.workspace.importing.NodeImporterAssigner;
+import nl.mpi.lamus.workspace.importing.WorkspaceNodeBatchWriter;
 import nl.mpi.lamus.workspace.importing.WorkspaceNodeExplorer;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
@@ -32,9 +40,19 @@ import nl.mpi.metadata.api.model.ReferencingMetadataDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 /**
+ * The data for the referenced nodes (corpus structure information,
+ * metadata documents, type checking) is retrieved in advance by a bounded
+ * thread pool, while the nodes themselves are still imported one by one,
+ * in the same order as the references. The resource nodes are written
+ * to the database in batches. The pending writes belong to the whole workspace,
+ * so only the outermost exploration (of the top node) flushes them, before
+ * its metadata document is saved, or discards them, when the import fails;
+ * the explorations of the metadata nodes below leave them pending.
+ * 
  * @see WorkspaceNodeExplorer
  * 
  * @author guisil
@@ -44,10 +62,30 @@ public class LamusWorkspaceNodeExplorer implements WorkspaceNodeExplorer {
     
     private static final Logger logger = LoggerFactory.getLogger(LamusWorkspaceNodeExplorer.class);
     
+    // references for which the data is retrieved in advance, per import thread;
+        // more than one, so that the threads stay busy while the nodes are being imported
+    private static final int PREFETCHED_REFERENCES_PER_THREAD = 2;
+    
     @Autowired
     private NodeImporterAssigner nodeImporterAssigner;
     @Autowired
     private MetadataApiBridge metadataApiBridge;
+    @Autowired
+    @Qualifier("WorkspaceImportExecutorService")
+    private ExecutorService importExecutorService;
+    @Autowired
+    @Qualifier("numberOfWorkspaceImportThreads")
+    private int numberOfWorkspaceImportThreads;
+    @Autowired
+    private WorkspaceNodeBatchWriter nodeBatchWriter;
+    
+    // depth of the current exploration in each thread (the metadata importer explores the child nodes recursively)
+    private final ThreadLocal<Integer> explorationDepth = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
 
     
     /**
@@ -61,6 +99,10 @@ public class LamusWorkspaceNodeExplorer implements WorkspaceNodeExplorer {
         
         logger.debug("Exploring references in metadata node to import; workspaceID: " + workspace.getWorkspaceID() + "; nodeID: " + nodeToExplore.getWorkspaceNodeID());
         
+        int workspaceID = workspace.getWorkspaceID();
+        
+        List<Reference> linksToImport = new ArrayList<>();
+        List<NodeImporter> importersToUse = new ArrayList<>();
         for(Reference currentLink : linksInNode) {
 
             NodeImporter linkImporterToUse = null;
@@ -71,10 +113,43 @@ public class LamusWorkspaceNodeExplorer implements WorkspaceNodeExplorer {
                 continue;
             } catch(IllegalArgumentException ex) {
                 String errorMessage = "Error getting file importer";
-                throw new WorkspaceImportException(errorMessage, workspace.getWorkspaceID(), ex);
+                throw new WorkspaceImportException(errorMessage, workspaceID, ex);
             }
             
-            linkImporterToUse.importNode(workspace, nodeToExplore, nodeDocument, currentLink);
+            linksToImport.add(currentLink);
+            importersToUse.add(linkImporterToUse);
+        }
+        
+        int maxPrefetchedReferences = Math.max(1, PREFETCHED_REFERENCES_PER_THREAD * numberOfWorkspaceImportThreads);
+        int depth = explorationDepth.get();
+        boolean outermost = depth == 0;
+        explorationDepth.set(depth + 1);
+        
+        List<Future<NodeImportData>> retrievals = new ArrayList<>(linksToImport.size());
+        boolean imported = false;
+        try {
+            for(int i = 0; i < linksToImport.size(); i++) {
+                
+                while(retrievals.size() < linksToImport.size() && retrievals.size() < i + maxPrefetchedReferences) {
+                    int next = retrievals.size();
+                    retrievals.add(submitRetrieval(workspace, importersToUse.get(next), linksToImport.get(next)));
+                }
+                
+                NodeImportData nodeData = getRetrievedData(workspaceID, retrievals.get(i));
+                importersToUse.get(i).importNode(workspace, nodeToExplore, nodeDocument, linksToImport.get(i), nodeData);
+            }
+            if(outermost) {
+                nodeBatchWriter.flush(workspaceID);
+            }
+            imported = true;
+        } finally {
+            explorationDepth.set(depth);
+            for(Future<NodeImportData> retrieval : retrievals) {
+                retrieval.cancel(true);
+            }
+            if(!imported && outermost) {
+                nodeBatchWriter.discard(workspaceID);
+            }
         }
         
         try {
@@ -87,6 +162,39 @@ public class LamusWorkspaceNodeExplorer implements WorkspaceNodeExplorer {
     }
     
     
+    private Future<NodeImportData> submitRetrieval(final Workspace workspace, final NodeImporter importer, final Reference reference) {
+        return importExecutorService.submit(new Callable<NodeImportData>() {
+            @Override
+            public NodeImportData call() throws WorkspaceImportException {
+                return importer.retrieveNodeData(workspace, reference);
+            }
+        });
+    }
+    
+    private NodeImportData getRetrievedData(int workspaceID, Future<NodeImportData> retrieval) throws WorkspaceImportException {
+        try {
+            return retrieval.get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            String errorMessage = "Interrupted while retrieving data for node to import";
+            throwWorkspaceImportException(workspaceID, errorMessage, ex);
+        } catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof WorkspaceImportException) {
+                throw (WorkspaceImportException) cause;
+            }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            String errorMessage = "Error retrieving data for node to import";
+            throwWorkspaceImportException(workspaceID, errorMessage, (Exception) cause);
+        }
+        return null;
+    }
+    
     private void throwWorkspaceImportException(int workspaceID, String errorMessage, Exception cause) throws WorkspaceImportException {
         logger.error(errorMessage, cause);
         throw new WorkspaceImportException(errorMessage, workspaceID, cause);
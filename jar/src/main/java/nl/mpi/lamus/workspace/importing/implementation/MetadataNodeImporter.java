@@ -33,6 +33,7 @@ import nl.mpi.lamus.exception.WorkspaceImportException;
 import nl.mpi.lamus.metadata.MetadataApiBridge;
 import nl.mpi.lamus.workspace.factory.WorkspaceNodeFactory;
 import nl.mpi.lamus.workspace.importing.NodeDataRetriever;
+import nl.mpi.lamus.workspace.importing.NodeImportData;
 import nl.mpi.lamus.workspace.importing.NodeImporter;
 import nl.mpi.lamus.workspace.importing.WorkspaceFileImporter;
 import nl.mpi.lamus.workspace.importing.WorkspaceNodeExplorer;
@@ -43,6 +44,7 @@ import nl.mpi.metadata.api.MetadataException;
 import nl.mpi.metadata.api.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -64,7 +66,7 @@ public class MetadataNodeImporter implements NodeImporter<MetadataReference> {
     @Autowired
     private WorkspaceDao workspaceDao;
     @Autowired
-    private MetadataAPI metadataAPI;
+    private ObjectFactory<MetadataAPI> metadataAPIFactory;
     @Autowired
     private WorkspaceNodeLinkManager workspaceNodeLinkManager;
     @Autowired
@@ -79,6 +81,15 @@ public class MetadataNodeImporter implements NodeImporter<MetadataReference> {
     private HandleParser handleParser;
     @Autowired
     private String mailBccAddress;
+    
+    // the data of several nodes is retrieved at the same time, in different threads,
+    // and the metadata API is not thread-safe, so each thread parses the documents with its own instance
+    private final ThreadLocal<MetadataAPI> metadataAPI = new ThreadLocal<MetadataAPI>() {
+        @Override
+        protected MetadataAPI initialValue() {
+            return metadataAPIFactory.getObject();
+        }
+    };
 
 
     
@@ -97,24 +108,28 @@ public class MetadataNodeImporter implements NodeImporter<MetadataReference> {
             throw new IllegalArgumentException(errorMessage);
         }
         
+        NodeImportData nodeData = retrieveNodeData(workspace, referenceFromParent);
+        importNode(workspace, parentNode, parentDocument, referenceFromParent, nodeData);
+    }
+    
+    /**
+     * @see NodeImporter#retrieveNodeData(nl.mpi.lamus.workspace.model.Workspace, nl.mpi.metadata.api.model.Reference)
+     */
+    @Override
+    public NodeImportData retrieveNodeData(Workspace workspace, Reference referenceFromParent) throws WorkspaceImportException {
+        
         int workspaceID = workspace.getWorkspaceID();
 
+        URI handleInFile = null;
         URI childArchiveURI = null;
         
         if(referenceFromParent == null) { // top node
             childArchiveURI = workspace.getTopNodeArchiveURI();
         } else {
             if(referenceFromParent instanceof HandleCarrier) {
-                URI handleInFile = ((HandleCarrier) referenceFromParent).getHandle();
+                handleInFile = ((HandleCarrier) referenceFromParent).getHandle();
                 if(handleInFile != null) {
                     childArchiveURI = handleParser.prepareAndValidateHandleWithHdlPrefix(handleInFile);
-                    if(!handleInFile.equals(childArchiveURI)) {
-                        try {
-                            ((HandleCarrier) referenceFromParent).setHandle(childArchiveURI);
-                        } catch (MetadataException | UnsupportedOperationException | IllegalArgumentException ex) {
-                            logger.info("Couldn't update handle in parent reference. Current handle is: " + handleInFile);
-                        }
-                    }
                 }
             }
             
@@ -123,14 +138,14 @@ public class MetadataNodeImporter implements NodeImporter<MetadataReference> {
             }
         }
         
-        logger.debug("Importing node into new workspace; workspaceID: " + workspaceID + "; nodeURI: " + childArchiveURI);
+        logger.debug("Retrieving data for node to import into new workspace; workspaceID: " + workspaceID + "; nodeURI: " + childArchiveURI);
         
         URL childArchiveURL = null;
         String childName = null;
         boolean childOnSite = true;
         
         MetadataDocument childDocument = null;
-        CorpusNode childCorpusNode;
+        CorpusNode childCorpusNode = null;
         File childLocalFile = null;
         try {
             
@@ -152,7 +167,7 @@ public class MetadataNodeImporter implements NodeImporter<MetadataReference> {
                 childArchiveURL = childArchiveUrlUri.toURL();
             }
             
-            childDocument = metadataAPI.getMetadataDocument(childArchiveURL);
+            childDocument = metadataAPI.get().getMetadataDocument(childArchiveURL);
 
         } catch (IOException | MetadataException ioex) {
         	String errorMessage = "Error getting Metadata Document for node " + childArchiveURI;
@@ -161,6 +176,37 @@ public class MetadataNodeImporter implements NodeImporter<MetadataReference> {
         
         boolean childToBeProtected = nodeDataRetriever.isNodeToBeProtected(childArchiveURI);
         
+        return new NodeImportData(handleInFile, childArchiveURI, childArchiveURI, childCorpusNode,
+                childName, childOnSite, childLocalFile, childArchiveURL, childDocument, null, WorkspaceNodeType.METADATA, childToBeProtected);
+    }
+    
+    /**
+     * @see NodeImporter#importNode(
+     *      nl.mpi.lamus.workspace.model.Workspace, nl.mpi.lamus.workspace.model.WorkspaceNode,
+     *      nl.mpi.metadata.api.model.ReferencingMetadataDocument, nl.mpi.metadata.api.model.Reference,
+     *      nl.mpi.lamus.workspace.importing.NodeImportData)
+     */
+    @Override
+    public void importNode(Workspace workspace, WorkspaceNode parentNode, ReferencingMetadataDocument parentDocument,
+            Reference referenceFromParent, NodeImportData nodeData) throws WorkspaceImportException {
+        
+        int workspaceID = workspace.getWorkspaceID();
+        
+        URI childArchiveURI = nodeData.getNodeURI();
+        
+        if(nodeData.isHandleToUpdate()) {
+            try {
+                ((HandleCarrier) referenceFromParent).setHandle(nodeData.getPreparedHandle());
+            } catch (MetadataException | UnsupportedOperationException | IllegalArgumentException ex) {
+                logger.info("Couldn't update handle in parent reference. Current handle is: " + nodeData.getHandleInReference());
+            }
+        }
+        
+        logger.debug("Importing node into new workspace; workspaceID: " + workspaceID + "; nodeURI: " + childArchiveURI);
+        
+        MetadataDocument childDocument = nodeData.getMetadataDocument();
+        boolean childToBeProtected = nodeData.isToBeProtected();
+        
         if (childArchiveURI.equals(workspace.getTopNodeArchiveURI()) && childToBeProtected) {
             String errorMessage = "Failed to create workspace. Workspace top node: [" + workspace.getTopNodeArchiveURI() + "] exists in a different branch"
             		+ " of the archive tree and currently Lamus 2 does not support edding parallel structures. In order to edit this node please contact: "
@@ -169,7 +215,8 @@ public class MetadataNodeImporter implements NodeImporter<MetadataReference> {
         }
         
         WorkspaceNode childNode =
-                workspaceNodeFactory.getNewWorkspaceMetadataNode(workspaceID, childArchiveURI, childArchiveURL, childDocument, childName, childOnSite, childToBeProtected);
+                workspaceNodeFactory.getNewWorkspaceMetadataNode(workspaceID, childArchiveURI, nodeData.getArchiveURL(), childDocument,
+                    nodeData.getName(), nodeData.isOnSite(), childToBeProtected);
         workspaceDao.addWorkspaceNode(childNode);
         if(!childToBeProtected) {
             workspaceDao.lockNode(childArchiveURI, workspaceID);
@@ -182,7 +229,7 @@ public class MetadataNodeImporter implements NodeImporter<MetadataReference> {
         }
         
         try {
-            this.workspaceFileImporter.importMetadataFileToWorkspace(childLocalFile, childNode, childDocument);
+            this.workspaceFileImporter.importMetadataFileToWorkspace(nodeData.getLocalFile(), childNode, childDocument);
             
             if(referenceFromParent != null) {
                 referenceFromParent.setLocation(childNode.getWorkspaceURL().toURI());
@@ -23,15 +23,15 @@ import nl.mpi.archiving.corpusstructure.core.CorpusNode;
 import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
 import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
 import nl.mpi.handle.util.HandleParser;
-import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.typechecking.TypecheckedResults;
 import nl.mpi.lamus.exception.WorkspaceImportException;
 import nl.mpi.lamus.exception.TypeCheckerException;
 import nl.mpi.lamus.metadata.MetadataApiBridge;
 import nl.mpi.lamus.workspace.factory.WorkspaceNodeFactory;
-import nl.mpi.lamus.workspace.factory.WorkspaceNodeLinkFactory;
 import nl.mpi.lamus.workspace.importing.NodeDataRetriever;
+import nl.mpi.lamus.workspace.importing.NodeImportData;
 import nl.mpi.lamus.workspace.importing.NodeImporter;
+import nl.mpi.lamus.workspace.importing.WorkspaceNodeBatchWriter;
 import nl.mpi.lamus.workspace.model.*;
 import nl.mpi.metadata.api.MetadataException;
 import nl.mpi.metadata.api.model.HandleCarrier;
@@ -59,15 +59,13 @@ public class ResourceNodeImporter implements NodeImporter<ResourceReference> {
     @Autowired
     private NodeResolver nodeResolver;
     @Autowired
-    private WorkspaceDao workspaceDao;
-    @Autowired
     private MetadataApiBridge metadataApiBridge;
     @Autowired
     private NodeDataRetriever nodeDataRetriever;
     @Autowired
     private WorkspaceNodeFactory workspaceNodeFactory;
     @Autowired
-    private WorkspaceNodeLinkFactory workspaceNodeLinkFactory;
+    private WorkspaceNodeBatchWriter nodeBatchWriter;
     @Autowired
     private NodeUtil nodeUtil;
     @Autowired
@@ -89,20 +87,24 @@ public class ResourceNodeImporter implements NodeImporter<ResourceReference> {
             throw new IllegalArgumentException(errorMessage);
         }
         
+        NodeImportData nodeData = retrieveNodeData(workspace, referenceFromParent);
+        importNode(workspace, parentNode, parentDocument, referenceFromParent, nodeData);
+    }
+    
+    /**
+     * @see NodeImporter#retrieveNodeData(nl.mpi.lamus.workspace.model.Workspace, nl.mpi.metadata.api.model.Reference)
+     */
+    @Override
+    public NodeImportData retrieveNodeData(Workspace workspace, Reference referenceFromParent) throws WorkspaceImportException {
+        
         int workspaceID = workspace.getWorkspaceID();
    
+        URI handleInFile = null;
         URI childURI = null;
         if(referenceFromParent instanceof HandleCarrier) {
-            URI handleInFile = ((HandleCarrier) referenceFromParent).getHandle();
+            handleInFile = ((HandleCarrier) referenceFromParent).getHandle();
             if(handleInFile != null) {
                 childURI = handleParser.prepareAndValidateHandleWithHdlPrefix(handleInFile);
-                if(!handleInFile.equals(childURI)) {
-                    try {
-                        ((HandleCarrier) referenceFromParent).setHandle(childURI);
-                    } catch (MetadataException | UnsupportedOperationException | IllegalArgumentException ex) {
-                        logger.info("Couldn't update handle in parent reference. Current handle is: " + handleInFile);
-                    }
-                }
             }
         }
         
@@ -110,7 +112,7 @@ public class ResourceNodeImporter implements NodeImporter<ResourceReference> {
             childURI = referenceFromParent.getURI();
         }
         
-        logger.debug("Importing node into new workspace; workspaceID: " + workspaceID + "; nodeURI: " + childURI);
+        logger.debug("Retrieving data for node to import into new workspace; workspaceID: " + workspaceID + "; nodeURI: " + childURI);
             
         CorpusNode childCorpusNode = corpusStructureProvider.getNode(childURI);
         if(childCorpusNode == null) {
@@ -147,7 +149,7 @@ public class ResourceNodeImporter implements NodeImporter<ResourceReference> {
             
             TypecheckedResults typecheckedResults = null;
             try {
-                typecheckedResults = nodeDataRetriever.triggerResourceFileCheck(childArchiveURL, childLocalFile.getName());
+                typecheckedResults = nodeDataRetriever.triggerResourceFileCheck(childArchiveURL, childLocalFile.getName(), childCorpusNode.getFileInfo());
             } catch(TypeCheckerException tcex) {
                 String errorMessage = "ResourceNodeImporter.importNode: error during type checking";
                 logger.error(errorMessage, tcex);
@@ -161,21 +163,48 @@ public class ResourceNodeImporter implements NodeImporter<ResourceReference> {
         WorkspaceNodeType childNodeType = nodeUtil.convertMimetype(childMimetype);
         boolean childToBeProtected = nodeDataRetriever.isNodeToBeProtected(childURI);
         
+        return new NodeImportData(handleInFile, childURI, childURI, childCorpusNode, childCorpusNode.getName(),
+                childOnSite, childLocalFile, childArchiveURL, null, childMimetype, childNodeType, childToBeProtected);
+    }
+    
+    /**
+     * @see NodeImporter#importNode(
+     *      nl.mpi.lamus.workspace.model.Workspace, nl.mpi.lamus.workspace.model.WorkspaceNode,
+     *      nl.mpi.metadata.api.model.ReferencingMetadataDocument, nl.mpi.metadata.api.model.Reference,
+     *      nl.mpi.lamus.workspace.importing.NodeImportData)
+     */
+    @Override
+    public void importNode(Workspace workspace, WorkspaceNode parentNode, ReferencingMetadataDocument parentDocument,
+            Reference referenceFromParent, NodeImportData nodeData) throws WorkspaceImportException {
+        
+        int workspaceID = workspace.getWorkspaceID();
+        URI childURI = nodeData.getNodeURI();
+        
+        if(nodeData.isHandleToUpdate()) {
+            try {
+                ((HandleCarrier) referenceFromParent).setHandle(nodeData.getPreparedHandle());
+            } catch (MetadataException | UnsupportedOperationException | IllegalArgumentException ex) {
+                logger.info("Couldn't update handle in parent reference. Current handle is: " + nodeData.getHandleInReference());
+            }
+        }
+        
+        logger.debug("Importing node into new workspace; workspaceID: " + workspaceID + "; nodeURI: " + childURI);
+        
+        WorkspaceNodeType childNodeType = nodeData.getNodeType();
+        boolean childToBeProtected = nodeData.isToBeProtected();
+        
         if(metadataApiBridge.isReferenceAnInfoLink(parentDocument, referenceFromParent)) {
             childNodeType = WorkspaceNodeType.RESOURCE_INFO;
         }
 
         WorkspaceNode childNode = workspaceNodeFactory.getNewWorkspaceNode(
-                workspaceID, childURI, childArchiveURL, referenceFromParent,
-                childMimetype, childNodeType, childCorpusNode.getName(), childOnSite, childToBeProtected);
-        workspaceDao.addWorkspaceNode(childNode);
+                workspaceID, childURI, nodeData.getArchiveURL(), referenceFromParent,
+                nodeData.getMimetype(), childNodeType, nodeData.getName(), nodeData.isOnSite(), childToBeProtected);
+        URI uriToLock = null;
         if(!childToBeProtected) {
-            workspaceDao.lockNode(childURI, workspaceID);
+            uriToLock = childURI;
         }
-        
-        WorkspaceNodeLink nodeLink = workspaceNodeLinkFactory.getNewWorkspaceNodeLink(
-                parentNode.getWorkspaceNodeID(), childNode.getWorkspaceNodeID());
-        workspaceDao.addWorkspaceNodeLink(nodeLink);
+        nodeBatchWriter.addLinkedNode(parentNode, childNode, uriToLock);
         
         referenceFromParent.setLocation(null);
     }
@@ -50,6 +50,7 @@ public interface WorkspaceAccessChecker {
     /**
      * Checks if the given user has access to the given workspace
      * (the user has access if he/she was the creator of the workspace).
+     * Workspaces which are being deleted are not accessible.
      * @param userID ID of the user
      * @param workspaceID ID of the workspace
      */
@@ -59,7 +60,7 @@ public interface WorkspaceAccessChecker {
     /**
      * Checks if the given user can delete the given workspace.
      * This is true if the user is the owner of the workspace or
-     * if the user is a manager.
+     * if the user is a manager, unless the workspace is already being deleted.
      * @param userID ID of the user
      * @param workspaceID  ID of the workspace
      */
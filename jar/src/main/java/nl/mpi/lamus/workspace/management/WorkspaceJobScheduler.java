@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.management;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Scheduler for the long running jobs of a workspace (import, export).
+ * Jobs of the same workspace are executed one after the other,
+ * in the order they were submitted, while jobs of different workspaces
+ * can run at the same time, up to a maximum number of simultaneous jobs.
+ *
+ * @author guisil
+ */
+public interface WorkspaceJobScheduler {
+
+    /**
+     * Schedules a job for the given workspace. This method returns immediately.
+     * A job should never wait for the result of a later job of the same workspace,
+     * since that one would only start after the first is finished.
+     *
+     * @param workspaceID ID of the workspace to which the job belongs
+     * @param job job to execute
+     * @return handle for the scheduled job, which can be used to check if it is done
+     *  or to wait for its result
+     */
+    public <T> Future<T> submitJob(int workspaceID, Callable<T> job);
+
+    /**
+     * @param workspaceID ID of the workspace
+     * @return true if there is any job running or waiting to run for the given workspace
+     */
+    public boolean hasPendingJobs(int workspaceID);
+}
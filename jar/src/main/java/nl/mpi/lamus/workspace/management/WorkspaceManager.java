@@ -17,6 +17,7 @@ package nl.mpi.lamus.workspace.management;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.concurrent.Future;
 import nl.mpi.lamus.exception.MetadataValidationException;
 import nl.mpi.lamus.exception.WorkspaceNotFoundException;
 import nl.mpi.lamus.exception.WorkspaceExportException;
@@ -44,6 +45,9 @@ public interface WorkspaceManager {
     /**
      * Triggers the deletion of a workspace
      * (removing the data both from the database and the filesystem).
+     * The workspace is marked as being deleted and its data is then
+     * removed in the background. A workspace already being deleted
+     * cannot be deleted again.
      * 
      * @param workspaceID  ID of the workspace to be deleted
      * @param keepUnlinkedFiles true if the unlinked files are to be kept for future use
@@ -54,20 +58,35 @@ public interface WorkspaceManager {
     /**
      * Triggers the submission of a workspace 
      * (copying the corresponding data back to the archive).
+     * The metadata files are validated before returning, but the data
+     * is copied in the background; its outcome is reflected in the status
+     * of the workspace. A workspace being deleted cannot be submitted.
      * 
      * @param workspaceID ID of the workspace to submit
      * @param keepUnlinkedFiles true if the unlinked files are to be kept for future use
+     * @return handle for the job copying the data, resulting in true if it is successful
      */
-    public void submitWorkspace(int workspaceID, boolean keepUnlinkedFiles)
+    public Future<Boolean> submitWorkspace(int workspaceID, boolean keepUnlinkedFiles)
             throws WorkspaceNotFoundException, WorkspaceExportException, MetadataValidationException;
     
     /**
      * Opens a workspace, getting the corresponding object from the
      * database, as well as changing its status.
+     * A workspace being deleted is treated as not found.
      * 
      * @param workspaceID ID of the workspace to be opened
      * @return the object corresponding to the opened workspace
      */
     public Workspace openWorkspace(int workspaceID)
             throws WorkspaceNotFoundException, IOException;
+    
+    /**
+     * Takes care of the workspaces which were submitted but whose data
+     * was not (completely) moved to the archive, which happens when the
+     * application is restarted in the meantime.
+     * Those still waiting are submitted again (keeping the unlinked files,
+     * since the original choice is not stored), while those which were
+     * interrupted halfway are marked as failed.
+     */
+    public void resumeSubmittedWorkspaces();
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.management;
+
+import nl.mpi.lamus.workspace.model.Workspace;
+
+/**
+ * Queue for the removal, in the background, of the data of deleted workspaces
+ * (database records and workspace directory).
+ * 
+ * @author guisil
+ */
+public interface WorkspacePurgeQueue {
+    
+    /**
+     * Adds the given workspace, which should already be marked for deletion,
+     * to the queue. This method returns immediately.
+     * If the workspace is already in the queue, nothing happens.
+     * 
+     * @param workspace workspace to purge
+     */
+    public void purgeWorkspace(Workspace workspace);
+    
+    /**
+     * Adds to the queue the workspaces which were marked for deletion
+     * but still exist (e.g. the purge was interrupted or failed).
+     */
+    public void purgeWorkspacesMarkedForDeletion();
+}
@@ -16,7 +16,10 @@
 package nl.mpi.lamus.workspace.management.implementation;
 
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 import javax.annotation.Resource;
 import nl.mpi.archiving.corpusstructure.adapter.utils.AdapterUtils;
 import nl.mpi.archiving.corpusstructure.core.CorpusNode;
@@ -36,6 +39,7 @@ import nl.mpi.lamus.workspace.management.PreLockChecker;
 import nl.mpi.lamus.workspace.management.WorkspaceAccessChecker;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -116,14 +120,31 @@ public class LamusWorkspaceAccessChecker implements WorkspaceAccessChecker {
         
         logger.debug("Ensuring that the descendants of node '{}' (count = {}) are not locked and accessible to user {}", archiveNodeURI, descendants.size(), userID);
         
+        List<URI> descendantIDs = new ArrayList<>(descendants.size());
+        List<URI> descendantPids = new ArrayList<>(descendants.size());
+        List<URI> descendantPidsToCheck = new ArrayList<>(descendants.size());
         for(CorpusNode descendant : descendants) {
             if(descendant.isOnSite()) {
-                
                 String descendantID = nodeResolver.getId(descendant);
-                URI descendantID_URI = AdapterUtils.toNodeUri(Integer.parseInt(descendantID));
-                ensureWriteAccessToNode(userID, descendantID_URI);
-                
+                descendantIDs.add(AdapterUtils.toNodeUri(Integer.parseInt(descendantID)));
                 URI descendantPid = nodeResolver.getPID(descendant);
+                descendantPids.add(descendantPid);
+                if(descendantPid != null) {
+                    descendantPidsToCheck.add(descendantPid);
+                }
+            }
+        }
+        
+        // the locks of all the descendants are retrieved at once;
+        // the nodes are still checked in order, so that the first problem found is the one reported
+            // (a missing PID is left to the single lock check, which rejects it at its own position)
+        Set<URI> lockedDescendants = workspaceDao.getLockedNodes(descendantPidsToCheck);
+        
+        for(int i = 0; i < descendantIDs.size(); i++) {
+            ensureWriteAccessToNode(userID, descendantIDs.get(i));
+            
+            URI descendantPid = descendantPids.get(i);
+            if(descendantPid == null || lockedDescendants.contains(descendantPid)) {
                 ensureNodeIsNotLocked(descendantPid);
             }
         }
@@ -156,6 +177,8 @@ public class LamusWorkspaceAccessChecker implements WorkspaceAccessChecker {
             throw new WorkspaceAccessException(errorMessage, workspaceID, null);
         }
         
+        ensureWorkspaceIsNotBeingDeleted(workspace);
+        
         logger.debug("User " + userID + " has access to workspace " + workspaceID);
     }
 
@@ -174,9 +197,20 @@ public class LamusWorkspaceAccessChecker implements WorkspaceAccessChecker {
             throw new WorkspaceAccessException(errorMessage, workspaceID, null);
         }
         
+        ensureWorkspaceIsNotBeingDeleted(workspace);
+        
         logger.debug("User " + userID + " can delete workspace " + workspaceID);
     }
     
+    private void ensureWorkspaceIsNotBeingDeleted(Workspace workspace) throws WorkspaceAccessException {
+        
+        if(WorkspaceStatus.DELETING.equals(workspace.getStatus())) {
+            String errorMessage = "Workspace with ID " + workspace.getWorkspaceID() + " is being deleted";
+            logger.error(errorMessage);
+            throw new WorkspaceAccessException(errorMessage, workspace.getWorkspaceID(), null);
+        }
+    }
+    
     /**
      * @see WorkspaceAccessChecker#ensureWriteAccessToNode(java.lang.String, java.net.URI)
      */
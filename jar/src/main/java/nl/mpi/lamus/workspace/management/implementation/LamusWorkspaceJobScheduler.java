@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.management.implementation;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import nl.mpi.lamus.workspace.management.WorkspaceJobScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * The jobs are executed by a shared thread pool, whose size limits how many
+ * jobs run at the same time. Each workspace with a job in the pool has
+ * its own queue of waiting jobs, the next one being passed to the pool
+ * only when the previous one is finished.
+ *
+ * @see WorkspaceJobScheduler
+ * @author guisil
+ */
+@Component
+public class LamusWorkspaceJobScheduler implements WorkspaceJobScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LamusWorkspaceJobScheduler.class);
+
+    private final ExecutorService executorService;
+
+    // a workspace is present in the map while it has a job in the pool
+    private final Map<Integer, Queue<FutureTask<?>>> waitingJobs = new HashMap<>();
+
+    @Autowired
+    public LamusWorkspaceJobScheduler(@Qualifier("WorkspaceExecutorService") ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * @see WorkspaceJobScheduler#submitJob(int, java.util.concurrent.Callable)
+     */
+    @Override
+    public <T> Future<T> submitJob(int workspaceID, Callable<T> job) {
+
+        FutureTask<T> task = new FutureTask<>(job);
+
+        synchronized(waitingJobs) {
+            Queue<FutureTask<?>> workspaceQueue = waitingJobs.get(workspaceID);
+            if(workspaceQueue != null) {
+                logger.debug("Job for workspace " + workspaceID + " will wait for the previous ones to finish");
+                workspaceQueue.add(task);
+                return task;
+            }
+
+            waitingJobs.put(workspaceID, new ArrayDeque<FutureTask<?>>());
+            try {
+                execute(workspaceID, task);
+            } catch(RejectedExecutionException ex) {
+                waitingJobs.remove(workspaceID);
+                throw ex;
+            }
+        }
+
+        return task;
+    }
+
+    /**
+     * @see WorkspaceJobScheduler#hasPendingJobs(int)
+     */
+    @Override
+    public boolean hasPendingJobs(int workspaceID) {
+        synchronized(waitingJobs) {
+            return waitingJobs.containsKey(workspaceID);
+        }
+    }
+
+
+    private void execute(final int workspaceID, final FutureTask<?> task) {
+        executorService.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                    logFailure(workspaceID, task);
+                } finally {
+                    jobFinished(workspaceID);
+                }
+            }
+        });
+    }
+
+    // the callers don't always wait for the result, so a failed job
+    // would otherwise leave no trace
+    private void logFailure(int workspaceID, FutureTask<?> task) {
+        if(task.isCancelled()) {
+            return;
+        }
+        try {
+            task.get();
+        } catch(ExecutionException ex) {
+            logger.error("Job for workspace " + workspaceID + " failed", ex.getCause());
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void jobFinished(int workspaceID) {
+        synchronized(waitingJobs) {
+            Queue<FutureTask<?>> workspaceQueue = waitingJobs.get(workspaceID);
+            FutureTask<?> nextTask = workspaceQueue.poll();
+            if(nextTask == null) {
+                waitingJobs.remove(workspaceID);
+                return;
+            }
+            try {
+                execute(workspaceID, nextTask);
+            } catch(RejectedExecutionException ex) {
+                logger.error("Could not execute the remaining jobs for workspace " + workspaceID, ex);
+                nextTask.cancel(false);
+                for(FutureTask<?> remainingTask : workspaceQueue) {
+                    remainingTask.cancel(false);
+                }
+                waitingJobs.remove(workspaceID);
+            }
+        }
+    }
+}
@@ -20,9 +20,10 @@ import java.net.URI;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import javax.annotation.PostConstruct;
 import nl.mpi.lamus.archive.permissions.PermissionAdjuster;
 import nl.mpi.lamus.archive.permissions.implementation.PermissionAdjusterScope;
 import nl.mpi.lamus.dao.WorkspaceDao;
@@ -40,7 +41,9 @@ import nl.mpi.lamus.workspace.importing.implementation.FileImportProblem;
 import nl.mpi.lamus.workspace.importing.implementation.ImportProblem;
 import nl.mpi.lamus.workspace.importing.implementation.WorkspaceImportRunner;
 import nl.mpi.lamus.workspace.importing.WorkspaceImportRunnerFactory;
+import nl.mpi.lamus.workspace.management.WorkspaceJobScheduler;
 import nl.mpi.lamus.workspace.management.WorkspaceManager;
+import nl.mpi.lamus.workspace.management.WorkspacePurgeQueue;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceStatus;
 import nl.mpi.lamus.workspace.model.WorkspaceSubmissionType;
@@ -61,7 +64,11 @@ public class LamusWorkspaceManager implements WorkspaceManager {
     
     private static final Logger logger = LoggerFactory.getLogger(LamusWorkspaceManager.class);
     
-    private final ExecutorService executorService;
+    private static final String SUBMITTED_MESSAGE = "workspace was submitted";
+    // set once the data starts being moved, which tells an interrupted submission from one still queued
+    private static final String EXPORTING_MESSAGE = "workspace was submitted; data is being moved to the archive";
+    
+    private final WorkspaceJobScheduler workspaceJobScheduler;
     private final WorkspaceFactory workspaceFactory;
     private final WorkspaceDao workspaceDao;
     private final WorkspaceDirectoryHandler workspaceDirectoryHandler;
@@ -72,18 +79,21 @@ public class LamusWorkspaceManager implements WorkspaceManager {
     private final WorkspaceImportRunnerFactory workspaceImportRunnerFactory;
     private final WorkspaceExportRunnerFactory workspaceExportRunnerFactory;
     
+    private final WorkspacePurgeQueue workspacePurgeQueue;
+    
     @Autowired
     @Qualifier("numberOfDaysOfInactivityAllowedSinceLastSession")
     private int numberOfDaysOfInactivityAllowedSinceLastSession;
 
     @Autowired
     public LamusWorkspaceManager(
-            @Qualifier("WorkspaceExecutorService") ExecutorService executorService,
+            WorkspaceJobScheduler jobScheduler,
             WorkspaceFactory factory, WorkspaceDao dao,
             WorkspaceDirectoryHandler directoryHandler, CalendarHelper calendarHelper,
             WorkspaceFileValidator wsFileValidator, PermissionAdjuster permAdjuster,
-            WorkspaceImportRunnerFactory wsImportRunnerFactory, WorkspaceExportRunnerFactory wsExportRunnerFactory) {
-        this.executorService = executorService;
+            WorkspaceImportRunnerFactory wsImportRunnerFactory, WorkspaceExportRunnerFactory wsExportRunnerFactory,
+            WorkspacePurgeQueue wsPurgeQueue) {
+        this.workspaceJobScheduler = jobScheduler;
         this.workspaceFactory = factory;
         this.workspaceDao = dao;
         this.workspaceDirectoryHandler = directoryHandler;
@@ -93,6 +103,8 @@ public class LamusWorkspaceManager implements WorkspaceManager {
         
         this.workspaceImportRunnerFactory = wsImportRunnerFactory;
         this.workspaceExportRunnerFactory = wsExportRunnerFactory;
+        
+        this.workspacePurgeQueue = wsPurgeQueue;
     }
     
     /**
@@ -118,7 +130,8 @@ public class LamusWorkspaceManager implements WorkspaceManager {
         workspaceImportRunner.setWorkspace(newWorkspace);
         workspaceImportRunner.setTopNodeArchiveURI(topArchiveNodeURI);
         
-        Future<Collection<ImportProblem>> importResult = executorService.submit(workspaceImportRunner);
+        Future<Collection<ImportProblem>> importResult =
+                workspaceJobScheduler.submitJob(newWorkspace.getWorkspaceID(), workspaceImportRunner);
         
         Boolean isSuccessful = false;
         
@@ -169,6 +182,11 @@ public class LamusWorkspaceManager implements WorkspaceManager {
             throws WorkspaceNotFoundException, WorkspaceExportException, IOException {
         
         Workspace workspace = workspaceDao.getWorkspace(workspaceID);
+        if(isBeingDeleted(workspace)) {
+            String errorMessage = "Workspace " + workspaceID + " is already being deleted";
+            logger.error(errorMessage);
+            throw new WorkspaceExportException(errorMessage, workspaceID, null);
+        }
         WorkspaceSubmissionType submissionType = WorkspaceSubmissionType.DELETE_WORKSPACE;
         
         WorkspaceExportRunner workspaceExportRunner = workspaceExportRunnerFactory.getNewExportRunner();
@@ -176,7 +194,7 @@ public class LamusWorkspaceManager implements WorkspaceManager {
         workspaceExportRunner.setKeepUnlinkedFiles(keepUnlinkedFiles);
         workspaceExportRunner.setSubmissionType(submissionType);
         
-        Future<Boolean> exportResult = executorService.submit(workspaceExportRunner);
+        Future<Boolean> exportResult = workspaceJobScheduler.submitJob(workspaceID, workspaceExportRunner);
         
         Boolean isSuccessful;
         
@@ -201,21 +219,28 @@ public class LamusWorkspaceManager implements WorkspaceManager {
             throw new WorkspaceExportException(errorMessage, workspaceID, null);
         }
         
-        workspaceDao.deleteWorkspace(workspace);
-        workspaceDirectoryHandler.deleteWorkspaceDirectory(workspaceID);
-        adjustPermissionsInArchive(workspaceID, submissionType);
+        // the removal of the database records and of the workspace directory
+        // can take long for big workspaces, so it happens in the background;
+        // the permissions are adjusted after the purge
+        workspace.setStatus(WorkspaceStatus.DELETING);
+        workspace.setMessage("Workspace deleted; its data is being removed");
+        workspaceDao.updateWorkspaceStatusMessage(workspace);
+        workspacePurgeQueue.purgeWorkspace(workspace);
     }
 
     /**
      * @see WorkspaceManager#submitWorkspace(int, boolean)
      */
     @Override
-    public void submitWorkspace(int workspaceID, boolean keepUnlinkedFiles)
+    public Future<Boolean> submitWorkspace(final int workspaceID, boolean keepUnlinkedFiles)
             throws WorkspaceNotFoundException, WorkspaceExportException, MetadataValidationException {
         
         Workspace workspace = workspaceDao.getWorkspace(workspaceID);
-        WorkspaceSubmissionType submissionType = WorkspaceSubmissionType.SUBMIT_WORKSPACE;
-        
+        if(isBeingDeleted(workspace)) {
+            String errorMessage = "Cannot submit workspace " + workspaceID + ", since it is being deleted";
+            logger.error(errorMessage);
+            throw new WorkspaceExportException(errorMessage, workspaceID, null);
+        }
         try {
 			workspaceFileValidator.triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
 		} catch (CMDIValidatorInitException e) {
@@ -254,46 +279,38 @@ public class LamusWorkspaceManager implements WorkspaceManager {
         }
         
         workspace.setStatus(WorkspaceStatus.SUBMITTED);
-        workspace.setMessage("workspace was submitted");
+        workspace.setMessage(SUBMITTED_MESSAGE);
         workspaceDao.updateWorkspaceStatusMessage(workspace);
         
-        WorkspaceExportRunner workspaceExportRunner = workspaceExportRunnerFactory.getNewExportRunner();
-        workspaceExportRunner.setWorkspace(workspace);
-        workspaceExportRunner.setKeepUnlinkedFiles(keepUnlinkedFiles);
-        workspaceExportRunner.setSubmissionType(submissionType);
-        
-        Future<Boolean> exportResult = executorService.submit(workspaceExportRunner);
-        
-        Boolean isSuccessful;
-        
-        workspace = workspaceDao.getWorkspace(workspaceID);
-        
-        try {
-            isSuccessful = exportResult.get();
-        } catch(InterruptedException iex) {
-            String errorMessage = "Interruption in thread while submitting workspace " + workspaceID;
-            logger.error(errorMessage, iex);
-            finaliseWorkspace(workspace, Boolean.FALSE);
-            adjustPermissionsInArchive(workspaceID, submissionType);
-            throw new WorkspaceExportException(errorMessage, workspaceID, iex);
-        } catch(ExecutionException eex) {
-            String errorMessage = "Problem with thread execution while submitting workspace " + workspaceID;
-            logger.error(errorMessage, eex);
-            finaliseWorkspace(workspace, Boolean.FALSE);
-            adjustPermissionsInArchive(workspaceID, submissionType);
-            throw new WorkspaceExportException(errorMessage, workspaceID, eex);
-        }
-        
-        if(!isSuccessful) {
-            String errorMessage = "Workspace submission failed for workspace " + workspaceID;
-            logger.error(errorMessage);
-            finaliseWorkspace(workspace, Boolean.FALSE);
-            adjustPermissionsInArchive(workspaceID, submissionType);
-            throw new WorkspaceExportException(errorMessage, workspaceID, null);
+        // the request doesn't wait for the data to be moved to the archive;
+        // the progress is reflected in the status of the workspace
+        return scheduleExport(workspace, keepUnlinkedFiles);
+    }
+
+    /**
+     * @see WorkspaceManager#resumeSubmittedWorkspaces()
+     */
+    @Override
+    @PostConstruct
+    public void resumeSubmittedWorkspaces() {
+        
+        for(Workspace workspace : workspaceDao.getSubmittedWorkspaces()) {
+            
+            int workspaceID = workspace.getWorkspaceID();
+            if(workspaceJobScheduler.hasPendingJobs(workspaceID)) {
+                continue;
+            }
+            
+            if(EXPORTING_MESSAGE.equals(workspace.getMessage())) {
+                // part of the data might already be in the archive, so it is not safe to start over
+                logger.error("Submission of workspace " + workspaceID + " was interrupted while moving the data to the archive");
+                finaliseWorkspace(workspace, false);
+                adjustPermissionsInArchive(workspaceID, WorkspaceSubmissionType.SUBMIT_WORKSPACE);
+            } else {
+                logger.info("Resuming submission of workspace " + workspaceID);
+                scheduleExport(workspace, true);
+            }
         }
-        
-        finaliseWorkspace(workspace, Boolean.TRUE);
-        adjustPermissionsInArchive(workspaceID, submissionType);
     }
 
     /**
@@ -305,6 +322,13 @@ public class LamusWorkspaceManager implements WorkspaceManager {
         
         Workspace workspace = workspaceDao.getWorkspace(workspaceID);
         
+        // a workspace being deleted only exists until its data is purged
+        if(isBeingDeleted(workspace)) {
+            String errorMessage = "Workspace " + workspaceID + " was deleted";
+            logger.error(errorMessage);
+            throw new WorkspaceNotFoundException(errorMessage, workspaceID, null);
+        }
+        
         if(workspaceDirectoryHandler.workspaceDirectoryExists(workspace)) {
             Calendar calendarNow = calendarHelper.getCalendarInstance();
             Date now = calendarNow.getTime();
@@ -323,6 +347,54 @@ public class LamusWorkspaceManager implements WorkspaceManager {
     }
     
     
+    private boolean isBeingDeleted(Workspace workspace) {
+        return WorkspaceStatus.DELETING.equals(workspace.getStatus());
+    }
+    
+    private Future<Boolean> scheduleExport(final Workspace workspace, boolean keepUnlinkedFiles) {
+        
+        final int workspaceID = workspace.getWorkspaceID();
+        
+        final WorkspaceExportRunner workspaceExportRunner = workspaceExportRunnerFactory.getNewExportRunner();
+        workspaceExportRunner.setWorkspace(workspace);
+        workspaceExportRunner.setKeepUnlinkedFiles(keepUnlinkedFiles);
+        workspaceExportRunner.setSubmissionType(WorkspaceSubmissionType.SUBMIT_WORKSPACE);
+        
+        return workspaceJobScheduler.submitJob(workspaceID, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws WorkspaceNotFoundException {
+                workspace.setMessage(EXPORTING_MESSAGE);
+                workspaceDao.updateWorkspaceStatusMessage(workspace);
+                return exportSubmittedWorkspace(workspaceID, workspaceExportRunner);
+            }
+        });
+    }
+    
+    private Boolean exportSubmittedWorkspace(int workspaceID, WorkspaceExportRunner workspaceExportRunner)
+            throws WorkspaceNotFoundException {
+        
+        WorkspaceSubmissionType submissionType = WorkspaceSubmissionType.SUBMIT_WORKSPACE;
+        
+        Boolean isSuccessful;
+        try {
+            isSuccessful = workspaceExportRunner.call();
+        } catch(Exception ex) {
+            String errorMessage = "Problem while submitting workspace " + workspaceID;
+            logger.error(errorMessage, ex);
+            isSuccessful = Boolean.FALSE;
+        }
+        
+        if(!isSuccessful) {
+            logger.error("Workspace submission failed for workspace " + workspaceID);
+        }
+        
+        Workspace workspace = workspaceDao.getWorkspace(workspaceID);
+        finaliseWorkspace(workspace, isSuccessful);
+        adjustPermissionsInArchive(workspaceID, submissionType);
+        
+        return isSuccessful;
+    }
+    
     private void failWorkspaceImport(Workspace ws, String errorMessage, Exception ex) throws WorkspaceImportException {
         
         workspaceDao.unlockAllNodesOfWorkspace(ws.getWorkspaceID());
@@ -46,6 +46,7 @@ import nl.mpi.metadata.cmdi.api.model.CMDIDocument;
 import nl.mpi.metadata.cmdi.api.model.ResourceProxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -60,19 +61,24 @@ public class LamusWorkspaceNodeLinkManager implements WorkspaceNodeLinkManager {
     
     private final WorkspaceNodeLinkFactory workspaceNodeLinkFactory;
     private final WorkspaceDao workspaceDao;
-    private final MetadataAPI metadataAPI;
+    private final ThreadLocal<MetadataAPI> metadataAPI;
     private final WorkspaceFileHandler workspaceFileHandler;
     private final MetadataApiBridge metadataApiBridge;
     private final NodeUtil nodeUtil;
     
     @Autowired
     public LamusWorkspaceNodeLinkManager(WorkspaceNodeLinkFactory nodeLinkFactory,
-            WorkspaceDao wsDao, MetadataAPI mdAPI, WorkspaceFileHandler wsFileHandler,
+            WorkspaceDao wsDao, final ObjectFactory<MetadataAPI> mdAPIFactory, WorkspaceFileHandler wsFileHandler,
             MetadataApiBridge mdApiBridge, NodeUtil nodeUtil) {
         
         this.workspaceNodeLinkFactory = nodeLinkFactory;
         this.workspaceDao = wsDao;
-        this.metadataAPI = mdAPI;
+        this.metadataAPI = new ThreadLocal<MetadataAPI>() {
+            @Override
+            protected MetadataAPI initialValue() {
+                return mdAPIFactory.getObject();
+            }
+        };
         this.workspaceFileHandler = wsFileHandler;
         this.metadataApiBridge = mdApiBridge;
         this.nodeUtil = nodeUtil;
@@ -136,7 +142,7 @@ public class LamusWorkspaceNodeLinkManager implements WorkspaceNodeLinkManager {
         
         MetadataDocument tempParentDocument = null;
         try {
-            tempParentDocument = this.metadataAPI.getMetadataDocument(parentNode.getWorkspaceURL());
+            tempParentDocument = this.metadataAPI.get().getMetadataDocument(parentNode.getWorkspaceURL());
         } catch (IOException | MetadataException ex) {
             String errorMessage = "Error retrieving metadata document for node " + parentNode.getWorkspaceNodeID();
             throwWorkspaceException(errorMessage, workspaceID, ex);
@@ -244,7 +250,7 @@ public class LamusWorkspaceNodeLinkManager implements WorkspaceNodeLinkManager {
         
         MetadataDocument tempParentDocument = null;
         try {
-            tempParentDocument = this.metadataAPI.getMetadataDocument(parentNode.getWorkspaceURL());
+            tempParentDocument = this.metadataAPI.get().getMetadataDocument(parentNode.getWorkspaceURL());
         } catch (IOException | MetadataException ex) {
             String errorMessage = "Error retrieving metadata document for node " + parentNode.getWorkspaceNodeID();
             throwWorkspaceException(errorMessage, workspaceID, ex);
@@ -367,7 +373,7 @@ public class LamusWorkspaceNodeLinkManager implements WorkspaceNodeLinkManager {
         }
         
         try {
-            MetadataDocument tempParentDocument = metadataAPI.getMetadataDocument(parentNode.getWorkspaceURL());
+            MetadataDocument tempParentDocument = metadataAPI.get().getMetadataDocument(parentNode.getWorkspaceURL());
             CMDIDocument parentDocument;
             if(tempParentDocument instanceof CMDIDocument) {
                 parentDocument = (CMDIDocument) tempParentDocument;
@@ -511,7 +517,7 @@ public class LamusWorkspaceNodeLinkManager implements WorkspaceNodeLinkManager {
             return;
         }
         
-        MetadataDocument tempParentDocument = metadataAPI.getMetadataDocument(parent.getWorkspaceURL());
+        MetadataDocument tempParentDocument = metadataAPI.get().getMetadataDocument(parent.getWorkspaceURL());
         CMDIDocument parentDocument;
         if(tempParentDocument instanceof CMDIDocument) {
             parentDocument = (CMDIDocument) tempParentDocument;
@@ -537,7 +543,7 @@ public class LamusWorkspaceNodeLinkManager implements WorkspaceNodeLinkManager {
         
         // remove archive URI from the metadata
         if(nodeUtil.isNodeMetadata(node)) {
-            MetadataDocument tempDocument = metadataAPI.getMetadataDocument(node.getWorkspaceURL());
+            MetadataDocument tempDocument = metadataAPI.get().getMetadataDocument(node.getWorkspaceURL());
             HandleCarrier handleCarrierDocument = null;
             if(tempDocument instanceof HandleCarrier) {
                 handleCarrierDocument = (HandleCarrier) tempDocument;
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.management.implementation;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import nl.mpi.lamus.archive.permissions.PermissionAdjuster;
+import nl.mpi.lamus.archive.permissions.implementation.PermissionAdjusterScope;
+import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.filesystem.WorkspaceDirectoryHandler;
+import nl.mpi.lamus.workspace.management.WorkspacePurgeQueue;
+import nl.mpi.lamus.workspace.model.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * The nodes and locks of each workspace are deleted in chunks, each one
+ * in its own transaction, so that big workspaces don't keep the tables locked
+ * (or fill the transaction log) for a long time. The permissions are adjusted
+ * (while the unlinked nodes are still known) and the directory deleted before that.
+ * The workspace record itself is only deleted at the end, once everything else
+ * succeeded, which means that a failed or interrupted purge leaves the workspace
+ * marked for deletion and can be resumed later on.
+ * 
+ * @see WorkspacePurgeQueue
+ * @author guisil
+ */
+@Component
+public class LamusWorkspacePurgeQueue implements WorkspacePurgeQueue {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LamusWorkspacePurgeQueue.class);
+    
+    private final WorkspaceDao workspaceDao;
+    private final WorkspaceDirectoryHandler workspaceDirectoryHandler;
+    private final PermissionAdjuster permissionAdjuster;
+    private final ExecutorService purgeExecutorService;
+    
+    // workspaces waiting in the queue or being purged
+    private final Set<Integer> queuedWorkspaces = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    
+    @Autowired
+    @Qualifier("workspacePurgeChunkSize")
+    private int workspacePurgeChunkSize;
+    
+    @Autowired
+    public LamusWorkspacePurgeQueue(WorkspaceDao wsDao, WorkspaceDirectoryHandler wsDirectoryHandler,
+            PermissionAdjuster permAdjuster,
+            @Qualifier("WorkspacePurgeExecutorService") ExecutorService purgeExecutorService) {
+        this.workspaceDao = wsDao;
+        this.workspaceDirectoryHandler = wsDirectoryHandler;
+        this.permissionAdjuster = permAdjuster;
+        this.purgeExecutorService = purgeExecutorService;
+    }
+    
+    /**
+     * @see WorkspacePurgeQueue#purgeWorkspace(nl.mpi.lamus.workspace.model.Workspace)
+     */
+    @Override
+    public void purgeWorkspace(final Workspace workspace) {
+        
+        final int workspaceID = workspace.getWorkspaceID();
+        if(!queuedWorkspaces.add(workspaceID)) {
+            logger.debug("Workspace " + workspaceID + " is already waiting to be purged");
+            return;
+        }
+        
+        logger.info("Workspace " + workspaceID + " added to the purge queue");
+        
+        purgeExecutorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    purge(workspace);
+                } catch(IOException | RuntimeException ex) {
+                    logger.error("Error purging workspace " + workspaceID + "; it will be retried later", ex);
+                } finally {
+                    queuedWorkspaces.remove(workspaceID);
+                }
+            }
+        });
+    }
+    
+    /**
+     * @see WorkspacePurgeQueue#purgeWorkspacesMarkedForDeletion()
+     */
+    @Override
+    public void purgeWorkspacesMarkedForDeletion() {
+        for(Workspace workspace : workspaceDao.getWorkspacesMarkedForDeletion()) {
+            purgeWorkspace(workspace);
+        }
+    }
+    
+    
+    private void purge(Workspace workspace) throws IOException {
+        
+        int workspaceID = workspace.getWorkspaceID();
+        long startTime = System.currentTimeMillis();
+        
+        permissionAdjuster.adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+        
+        workspaceDirectoryHandler.deleteWorkspaceDirectory(workspaceID);
+        
+        int deletedRows = 0;
+        int deletedInChunk;
+        do {
+            deletedInChunk = workspaceDao.deleteChunkOfWorkspaceNodes(workspaceID, workspacePurgeChunkSize);
+            deletedRows += deletedInChunk;
+        } while(deletedInChunk > 0);
+        
+        workspaceDao.deleteWorkspace(workspace);
+        
+        logger.info("Workspace " + workspaceID + " purged (" + deletedRows + " nodes and locks) in "
+                + (System.currentTimeMillis() - startTime) + " ms");
+    }
+}
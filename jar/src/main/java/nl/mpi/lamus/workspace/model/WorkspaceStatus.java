@@ -90,7 +90,13 @@ public enum WorkspaceStatus {
     /**
      * An error occurred when creating versions of replaced nodes.
      */
-    ERROR_VERSIONING;
+    ERROR_VERSIONING,
+    
+    /**
+     * The workspace was deleted by the user and its data is being removed
+     * (in the background) from the database and the filesystem.
+     */
+    DELETING;
 
     
     @Override
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.model;
+
+import java.util.List;
+
+/**
+ * Immutable picture of the nodes and links of a workspace,
+ * taken at a certain moment, which allows the tree to be
+ * navigated without further database access.
+ * The nodes returned are copies, so changing them has no effect
+ * on the snapshot or on anyone else using it.
+ *
+ * @author guisil
+ */
+public interface WorkspaceTreeSnapshot {
+
+    public int getWorkspaceID();
+
+    public int getTopNodeID();
+
+    /**
+     * @return number of nodes in the snapshot
+     */
+    public int getNodeCount();
+
+    /**
+     * @param workspaceNodeID ID of the node
+     * @return true if the node is part of the snapshot
+     */
+    public boolean containsNode(int workspaceNodeID);
+
+    /**
+     * @param workspaceNodeID ID of the node
+     * @return the node with the given ID, or null if it is not part of the snapshot
+     */
+    public WorkspaceNode getNode(int workspaceNodeID);
+
+    /**
+     * @param workspaceNodeID ID of the parent node
+     * @return list with the children of the given node, ordered by ID
+     */
+    public List<WorkspaceNode> getChildren(int workspaceNodeID);
+
+    /**
+     * @return list with the nodes that have no parent, are not the top node
+     * and are not deleted or replaced, ordered by ID
+     */
+    public List<WorkspaceNode> getUnlinkedNodes();
+}
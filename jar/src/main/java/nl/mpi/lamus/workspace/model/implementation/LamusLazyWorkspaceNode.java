@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.model.implementation;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Workspace node as retrieved from the database.
+ * The locations of the node (workspace URL, archive URI and URL, origin URI)
+ * are kept as they were stored and only parsed when they are first requested,
+ * since most of the nodes in a big listing are never asked for them.
+ * 
+ * @see WorkspaceNode
+ * @author guisil
+ */
+public class LamusLazyWorkspaceNode extends LamusWorkspaceNode {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LamusLazyWorkspaceNode.class);
+    
+    // set to null once parsed (or replaced by a setter)
+    private String workspaceURLStr;
+    private String archiveURIStr;
+    private String archiveURLStr;
+    private String originURIStr;
+    
+    public LamusLazyWorkspaceNode(int workspaceNodeID, int workspaceID,
+            URI profileSchemaURI, String name, String title, WorkspaceNodeType type,
+            String workspaceURLStr, String archiveURIStr, String archiveURLStr, String originURIStr,
+            WorkspaceNodeStatus status, boolean isProtected, String format) {
+        
+        super(workspaceNodeID, workspaceID, profileSchemaURI, name, title, type,
+                null, null, null, null, status, isProtected, format);
+        
+        this.workspaceURLStr = emptyToNull(workspaceURLStr);
+        this.archiveURIStr = emptyToNull(archiveURIStr);
+        this.archiveURLStr = archiveURLStr;
+        this.originURIStr = originURIStr;
+    }
+    
+
+    @Override
+    public synchronized URL getWorkspaceURL() {
+        if(this.workspaceURLStr != null) {
+            try {
+                super.setWorkspaceURL(new URL(this.workspaceURLStr));
+            } catch (MalformedURLException ex) {
+                logger.warn("Workspace URL is malformed; null used instead", ex);
+            }
+            this.workspaceURLStr = null;
+        }
+        return super.getWorkspaceURL();
+    }
+    
+    @Override
+    public synchronized void setWorkspaceURL(URL workspaceURL) {
+        this.workspaceURLStr = null;
+        super.setWorkspaceURL(workspaceURL);
+    }
+
+    @Override
+    public synchronized URI getArchiveURI() {
+        if(this.archiveURIStr != null) {
+            try {
+                super.setArchiveURI(new URI(this.archiveURIStr));
+            } catch (URISyntaxException ex) {
+                logger.warn("Archive URI is malformed; null used instead", ex);
+            }
+            this.archiveURIStr = null;
+        }
+        return super.getArchiveURI();
+    }
+    
+    @Override
+    public synchronized void setArchiveURI(URI archiveURI) {
+        this.archiveURIStr = null;
+        super.setArchiveURI(archiveURI);
+    }
+    
+    @Override
+    public synchronized URL getArchiveURL() {
+        if(this.archiveURLStr != null) {
+            try {
+                super.setArchiveURL(new URL(this.archiveURLStr));
+            } catch (MalformedURLException ex) {
+                logger.warn("Archive URL is malformed; null used instead", ex);
+            }
+            this.archiveURLStr = null;
+        }
+        return super.getArchiveURL();
+    }
+    
+    @Override
+    public synchronized void setArchiveURL(URL archiveURL) {
+        this.archiveURLStr = null;
+        super.setArchiveURL(archiveURL);
+    }
+
+    @Override
+    public synchronized URI getOriginURI() {
+        if(this.originURIStr != null) {
+            try {
+                super.setOriginURI(new URI(this.originURIStr));
+            } catch (URISyntaxException ex) {
+                logger.warn("Origin URI is malformed; null used instead", ex);
+            }
+            this.originURIStr = null;
+        }
+        return super.getOriginURI();
+    }
+    
+    @Override
+    public synchronized void setOriginURI(URI originURI) {
+        this.originURIStr = null;
+        super.setOriginURI(originURI);
+    }
+    
+    
+    private static String emptyToNull(String value) {
+        if(value != null && value.isEmpty()) {
+            return null;
+        }
+        return value;
+    }
+}
@@ -216,23 +216,25 @@ public class LamusWorkspaceNode implements WorkspaceNode {
     }
     
 
+    // equals, hashCode and toString use the getters, so that subclasses
+    // which retrieve the values differently (see LamusLazyWorkspaceNode) are compared correctly
     @Override
     public int hashCode() {
         
         HashCodeBuilder hashCodeB = new HashCodeBuilder()
-                .append(this.workspaceNodeID)
-                .append(this.workspaceID)
-                .append(this.profileSchemaURI)
-                .append(this.name)
-                .append(this.title)
-                .append(this.type)
-                .append(this.workspaceURL)
-                .append(this.archiveURI)
-                .append(this.archiveURL)
-                .append(this.originURI)
-                .append(this.status)
-                .append(this.isProtected)
-                .append(this.format);
+                .append(this.getWorkspaceNodeID())
+                .append(this.getWorkspaceID())
+                .append(this.getProfileSchemaURI())
+                .append(this.getName())
+                .append(this.getTitle())
+                .append(this.getType())
+                .append(this.getWorkspaceURL())
+                .append(this.getArchiveURI())
+                .append(this.getArchiveURL())
+                .append(this.getOriginURI())
+                .append(this.getStatus())
+                .append(this.isProtected())
+                .append(this.getFormat());
                 
         return hashCodeB.toHashCode();
     }
@@ -250,19 +252,19 @@ public class LamusWorkspaceNode implements WorkspaceNode {
         
         
         EqualsBuilder equalsB = new EqualsBuilder()
-                .append(this.workspaceNodeID, other.getWorkspaceNodeID())
-                .append(this.workspaceID, other.getWorkspaceID())
-                .append(this.profileSchemaURI, other.getProfileSchemaURI())
-                .append(this.name, other.getName())
-                .append(this.title, other.getTitle())
-                .append(this.type, other.getType())
-                .append(this.workspaceURL, other.getWorkspaceURL())
-                .append(this.archiveURI, other.getArchiveURI())
-                .append(this.archiveURL, other.getArchiveURL())
-                .append(this.originURI, other.getOriginURI())
-                .append(this.status, other.getStatus())
-                .append(this.isProtected, other.isProtected())
-                .append(this.format, other.getFormat());
+                .append(this.getWorkspaceNodeID(), other.getWorkspaceNodeID())
+                .append(this.getWorkspaceID(), other.getWorkspaceID())
+                .append(this.getProfileSchemaURI(), other.getProfileSchemaURI())
+                .append(this.getName(), other.getName())
+                .append(this.getTitle(), other.getTitle())
+                .append(this.getType(), other.getType())
+                .append(this.getWorkspaceURL(), other.getWorkspaceURL())
+                .append(this.getArchiveURI(), other.getArchiveURI())
+                .append(this.getArchiveURL(), other.getArchiveURL())
+                .append(this.getOriginURI(), other.getOriginURI())
+                .append(this.getStatus(), other.getStatus())
+                .append(this.isProtected(), other.isProtected())
+                .append(this.getFormat(), other.getFormat());
         
         return equalsB.isEquals();
     }
@@ -270,12 +272,12 @@ public class LamusWorkspaceNode implements WorkspaceNode {
     @Override
     public String toString() {
         
-        String stringResult = "Workspace Node ID: " + this.workspaceNodeID + ", Workspace ID: " + this.workspaceID +
-                ", Profile Schema URI: " + this.profileSchemaURI +
-                ", Name: " + this.name + ", Title: " + this.title +
-                ", Type: " + this.type + ", Workspace URL: " + this.workspaceURL +
-                ", Archive URI: " + this.archiveURI + ", Archive URL: " + this.archiveURL + ", Origin URL: " + this.originURI +
-                ", Status: " + this.status.name() + ", Protected: " + this.isProtected + ", Format: " + this.format;
+        String stringResult = "Workspace Node ID: " + this.getWorkspaceNodeID() + ", Workspace ID: " + this.getWorkspaceID() +
+                ", Profile Schema URI: " + this.getProfileSchemaURI() +
+                ", Name: " + this.getName() + ", Title: " + this.getTitle() +
+                ", Type: " + this.getType() + ", Workspace URL: " + this.getWorkspaceURL() +
+                ", Archive URI: " + this.getArchiveURI() + ", Archive URL: " + this.getArchiveURL() + ", Origin URL: " + this.getOriginURI() +
+                ", Status: " + this.getStatus().name() + ", Protected: " + this.isProtected() + ", Format: " + this.getFormat();
         
         return stringResult;
     }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.model.implementation;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
+
+/**
+ * Nodes are kept in an array sorted by ID and the links in a compact
+ * adjacency structure (child offsets per node, pointing to a single array
+ * of child positions), so that lookups don't need boxed keys or maps.
+ *
+ * @see WorkspaceTreeSnapshot
+ * @author guisil
+ */
+public class LamusWorkspaceTreeSnapshot implements WorkspaceTreeSnapshot, Serializable {
+
+    private final int workspaceID;
+    private final int topNodeID;
+
+    private final int[] nodeIDs;
+    private final WorkspaceNode[] nodes;
+    private final int[] childOffsets;
+    private final int[] childPositions;
+    private final boolean[] hasParent;
+
+    /**
+     * @param workspaceID ID of the workspace
+     * @param topNodeID ID of the top node of the workspace
+     * @param workspaceNodes nodes of the workspace (duplicates are ignored)
+     * @param workspaceNodeLinks links between the nodes of the workspace;
+     *  links involving nodes that are not part of the given collection are ignored
+     */
+    public LamusWorkspaceTreeSnapshot(int workspaceID, int topNodeID,
+            Collection<WorkspaceNode> workspaceNodes, Collection<WorkspaceNodeLink> workspaceNodeLinks) {
+
+        this.workspaceID = workspaceID;
+        this.topNodeID = topNodeID;
+
+        List<WorkspaceNode> sortedNodes = new ArrayList<>(workspaceNodes);
+        Collections.sort(sortedNodes, new Comparator<WorkspaceNode>() {
+            @Override
+            public int compare(WorkspaceNode n1, WorkspaceNode n2) {
+                return Integer.compare(n1.getWorkspaceNodeID(), n2.getWorkspaceNodeID());
+            }
+        });
+
+        int[] ids = new int[sortedNodes.size()];
+        WorkspaceNode[] nodeArray = new WorkspaceNode[sortedNodes.size()];
+        int count = 0;
+        for(WorkspaceNode node : sortedNodes) {
+            if(count > 0 && ids[count - 1] == node.getWorkspaceNodeID()) {
+                continue;
+            }
+            ids[count] = node.getWorkspaceNodeID();
+            nodeArray[count] = node;
+            count++;
+        }
+        this.nodeIDs = Arrays.copyOf(ids, count);
+        this.nodes = Arrays.copyOf(nodeArray, count);
+        this.hasParent = new boolean[count];
+
+        // positions of parent and child for each valid link
+        int[] linkParents = new int[workspaceNodeLinks.size()];
+        int[] linkChildren = new int[workspaceNodeLinks.size()];
+        int linkCount = 0;
+        for(WorkspaceNodeLink link : workspaceNodeLinks) {
+            int parentPosition = Arrays.binarySearch(this.nodeIDs, link.getParentWorkspaceNodeID());
+            int childPosition = Arrays.binarySearch(this.nodeIDs, link.getChildWorkspaceNodeID());
+            if(parentPosition < 0 || childPosition < 0) {
+                continue;
+            }
+            linkParents[linkCount] = parentPosition;
+            linkChildren[linkCount] = childPosition;
+            linkCount++;
+        }
+
+        this.childOffsets = new int[count + 1];
+        for(int i = 0; i < linkCount; i++) {
+            this.childOffsets[linkParents[i] + 1]++;
+        }
+        for(int i = 0; i < count; i++) {
+            this.childOffsets[i + 1] += this.childOffsets[i];
+        }
+
+        this.childPositions = new int[linkCount];
+        int[] nextSlot = Arrays.copyOf(this.childOffsets, count);
+        for(int i = 0; i < linkCount; i++) {
+            this.childPositions[nextSlot[linkParents[i]]++] = linkChildren[i];
+            this.hasParent[linkChildren[i]] = true;
+        }
+        // children ordered by ID, which is the same as ordered by position
+        for(int i = 0; i < count; i++) {
+            Arrays.sort(this.childPositions, this.childOffsets[i], this.childOffsets[i + 1]);
+        }
+    }
+
+
+    @Override
+    public int getWorkspaceID() {
+        return this.workspaceID;
+    }
+
+    @Override
+    public int getTopNodeID() {
+        return this.topNodeID;
+    }
+
+    @Override
+    public int getNodeCount() {
+        return this.nodes.length;
+    }
+
+    @Override
+    public boolean containsNode(int workspaceNodeID) {
+        return Arrays.binarySearch(this.nodeIDs, workspaceNodeID) >= 0;
+    }
+
+    @Override
+    public WorkspaceNode getNode(int workspaceNodeID) {
+        int position = Arrays.binarySearch(this.nodeIDs, workspaceNodeID);
+        if(position < 0) {
+            return null;
+        }
+        return copyOf(this.nodes[position]);
+    }
+
+    @Override
+    public List<WorkspaceNode> getChildren(int workspaceNodeID) {
+        int position = Arrays.binarySearch(this.nodeIDs, workspaceNodeID);
+        if(position < 0) {
+            return Collections.emptyList();
+        }
+        int start = this.childOffsets[position];
+        int end = this.childOffsets[position + 1];
+        List<WorkspaceNode> children = new ArrayList<>(end - start);
+        for(int i = start; i < end; i++) {
+            children.add(copyOf(this.nodes[this.childPositions[i]]));
+        }
+        return children;
+    }
+
+    @Override
+    public List<WorkspaceNode> getUnlinkedNodes() {
+        List<WorkspaceNode> unlinkedNodes = new ArrayList<>();
+        for(int i = 0; i < this.nodes.length; i++) {
+            if(this.hasParent[i] || this.nodeIDs[i] == this.topNodeID) {
+                continue;
+            }
+            WorkspaceNodeStatus status = this.nodes[i].getStatus();
+            if(WorkspaceNodeStatus.DELETED.equals(status)
+                    || WorkspaceNodeStatus.EXTERNAL_DELETED.equals(status)
+                    || WorkspaceNodeStatus.REPLACED.equals(status)) {
+                continue;
+            }
+            unlinkedNodes.add(copyOf(this.nodes[i]));
+        }
+        return unlinkedNodes;
+    }
+
+    // the snapshot can be shared between several users, so its nodes never leave it
+    private WorkspaceNode copyOf(WorkspaceNode node) {
+        return new LamusWorkspaceNode(node.getWorkspaceNodeID(), node.getWorkspaceID(),
+                node.getProfileSchemaURI(), node.getName(), node.getTitle(), node.getType(),
+                node.getWorkspaceURL(), node.getArchiveURI(), node.getArchiveURL(), node.getOriginURI(),
+                node.getStatus(), node.isProtected(), node.getFormat());
+    }
+
+    @Override
+    public String toString() {
+        return "Workspace ID: " + this.workspaceID + ", Top Node ID: " + this.topNodeID
+                + ", Nodes: " + this.nodes.length + ", Links: " + this.childPositions.length;
+    }
+}
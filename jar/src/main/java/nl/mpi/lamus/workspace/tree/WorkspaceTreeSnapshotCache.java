@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.tree;
+
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
+
+/**
+ * Cache of the most recently used workspace tree snapshots,
+ * shared by all the users of the WorkspaceDao.
+ * 
+ * @author guisil
+ */
+public interface WorkspaceTreeSnapshotCache {
+    
+    /**
+     * @param workspaceID ID of the workspace
+     * @return the cached snapshot of the workspace, or null if there is none
+     */
+    public WorkspaceTreeSnapshot getTreeSnapshot(int workspaceID);
+    
+    /**
+     * @return counter which changes every time a snapshot is invalidated,
+     * to be passed to putTreeSnapshot after loading a new snapshot
+     */
+    public long getModificationCount();
+    
+    /**
+     * Adds the given snapshot to the cache, unless anything was invalidated
+     * since it started being loaded (in which case it might already be outdated).
+     * 
+     * @param snapshot snapshot to add
+     * @param modificationCountBeforeLoading value of getModificationCount
+     *  before the snapshot started being loaded
+     */
+    public void putTreeSnapshot(WorkspaceTreeSnapshot snapshot, long modificationCountBeforeLoading);
+    
+    /**
+     * Discards the snapshot of the given workspace.
+     * @param workspaceID ID of the workspace
+     */
+    public void invalidateWorkspace(int workspaceID);
+    
+    /**
+     * Discards the snapshots which contain the given node.
+     * @param workspaceNodeID ID of the node
+     */
+    public void invalidateWorkspacesContainingNode(int workspaceNodeID);
+}
@@ -18,13 +18,14 @@ package nl.mpi.lamus.workspace.tree.implementation;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import nl.mpi.archiving.tree.LinkedTreeNode;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
 import nl.mpi.lamus.workspace.tree.WorkspaceTreeNode;
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -40,6 +41,10 @@ public class LamusWorkspaceTreeNode extends LamusWorkspaceNode implements Worksp
     private WorkspaceTreeNode parentTreeNode;
     protected WorkspaceDao workspaceDao;
     
+    // children are kept for as long as the snapshot they were taken from is current
+    private transient WorkspaceTreeSnapshot childrenSnapshot;
+    private transient List<WorkspaceTreeNode> childrenTreeNodes;
+    
     public LamusWorkspaceTreeNode() {
         super();
     }
@@ -114,8 +119,12 @@ public class LamusWorkspaceTreeNode extends LamusWorkspaceNode implements Worksp
      */
     @Override
     public List<WorkspaceTreeNode> getChildren() {
-	Collection<WorkspaceNode> children = workspaceDao.getChildWorkspaceNodes(getWorkspaceNodeID());
-	List<WorkspaceTreeNode> childrenTreeNodes = new ArrayList<>(children.size());
+	WorkspaceTreeSnapshot snapshot = workspaceDao.getWorkspaceTreeSnapshot(getWorkspaceID());
+	if (childrenTreeNodes != null && snapshot == childrenSnapshot) {
+	    return childrenTreeNodes;
+	}
+	List<WorkspaceNode> children = snapshot.getChildren(getWorkspaceNodeID());
+	List<WorkspaceTreeNode> treeNodes = new ArrayList<>(children.size());
 	for (WorkspaceNode child : children) {
 	    WorkspaceTreeNode treeNode = new LamusWorkspaceTreeNode(
 		    child.getWorkspaceNodeID(), child.getWorkspaceID(),
@@ -123,8 +132,10 @@ public class LamusWorkspaceTreeNode extends LamusWorkspaceNode implements Worksp
 		    child.getType(), child.getWorkspaceURL(), child.getArchiveURI(),
 		    child.getArchiveURL(), child.getOriginURI(), child.getStatus(),
 		    child.isProtected(), child.getFormat(), this, workspaceDao);
-	    childrenTreeNodes.add(treeNode);
+	    treeNodes.add(treeNode);
 	}
+	childrenTreeNodes = Collections.unmodifiableList(treeNodes);
+	childrenSnapshot = snapshot;
 	return childrenTreeNodes;
     }
 
@@ -134,7 +145,7 @@ public class LamusWorkspaceTreeNode extends LamusWorkspaceNode implements Worksp
     @Override
     public boolean isTopNodeOfWorkspace() {
         
-        int topNodeID = workspaceDao.getWorkspaceTopNodeID(getWorkspaceID());
+        int topNodeID = workspaceDao.getWorkspaceTreeSnapshot(getWorkspaceID()).getTopNodeID();
         return getWorkspaceNodeID() == topNodeID;
     }
 
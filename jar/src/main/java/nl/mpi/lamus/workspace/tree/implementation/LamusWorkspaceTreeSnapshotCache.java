@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.tree.implementation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
+import nl.mpi.lamus.workspace.tree.WorkspaceTreeSnapshotCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+/**
+ * The size of the cache is limited by the total number of nodes
+ * in the snapshots it contains, the least recently used ones
+ * being discarded first. A snapshot bigger than the limit is not cached at all.
+ * 
+ * @see WorkspaceTreeSnapshotCache
+ * @author guisil
+ */
+@Component
+public class LamusWorkspaceTreeSnapshotCache implements WorkspaceTreeSnapshotCache {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LamusWorkspaceTreeSnapshotCache.class);
+    
+    private final int maxCachedTreeSnapshotNodes;
+    
+    // in access order, so that the first one is the least recently used
+    private final Map<Integer, WorkspaceTreeSnapshot> treeSnapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private int cachedNodes;
+    private long modificationCount;
+    
+    @Autowired
+    public LamusWorkspaceTreeSnapshotCache(@Qualifier("maxCachedTreeSnapshotNodes") int maxCachedTreeSnapshotNodes) {
+        this.maxCachedTreeSnapshotNodes = maxCachedTreeSnapshotNodes;
+    }
+    
+    /**
+     * @see WorkspaceTreeSnapshotCache#getTreeSnapshot(int)
+     */
+    @Override
+    public synchronized WorkspaceTreeSnapshot getTreeSnapshot(int workspaceID) {
+        return treeSnapshots.get(workspaceID);
+    }
+    
+    /**
+     * @see WorkspaceTreeSnapshotCache#getModificationCount()
+     */
+    @Override
+    public synchronized long getModificationCount() {
+        return modificationCount;
+    }
+    
+    /**
+     * @see WorkspaceTreeSnapshotCache#putTreeSnapshot(nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot, long)
+     */
+    @Override
+    public synchronized void putTreeSnapshot(WorkspaceTreeSnapshot snapshot, long modificationCountBeforeLoading) {
+        
+        if(modificationCountBeforeLoading != modificationCount) {
+            return;
+        }
+        if(snapshot.getNodeCount() > maxCachedTreeSnapshotNodes) {
+            logger.debug("Snapshot of workspace " + snapshot.getWorkspaceID() + " has too many nodes to be cached");
+            return;
+        }
+        
+        remove(snapshot.getWorkspaceID());
+        treeSnapshots.put(snapshot.getWorkspaceID(), snapshot);
+        cachedNodes += snapshot.getNodeCount();
+        
+        Iterator<WorkspaceTreeSnapshot> iterator = treeSnapshots.values().iterator();
+        while(cachedNodes > maxCachedTreeSnapshotNodes) {
+            cachedNodes -= iterator.next().getNodeCount();
+            iterator.remove();
+        }
+    }
+    
+    /**
+     * @see WorkspaceTreeSnapshotCache#invalidateWorkspace(int)
+     */
+    @Override
+    public synchronized void invalidateWorkspace(int workspaceID) {
+        modificationCount++;
+        remove(workspaceID);
+    }
+    
+    /**
+     * @see WorkspaceTreeSnapshotCache#invalidateWorkspacesContainingNode(int)
+     */
+    @Override
+    public synchronized void invalidateWorkspacesContainingNode(int workspaceNodeID) {
+        modificationCount++;
+        Iterator<WorkspaceTreeSnapshot> iterator = treeSnapshots.values().iterator();
+        while(iterator.hasNext()) {
+            WorkspaceTreeSnapshot snapshot = iterator.next();
+            if(snapshot.containsNode(workspaceNodeID)) {
+                cachedNodes -= snapshot.getNodeCount();
+                iterator.remove();
+            }
+        }
+    }
+    
+    
+    private void remove(int workspaceID) {
+        WorkspaceTreeSnapshot removed = treeSnapshots.remove(workspaceID);
+        if(removed != null) {
+            cachedNodes -= removed.getNodeCount();
+        }
+    }
+}
@@ -18,8 +18,11 @@ package nl.mpi.lamus.workspace.tree.implementation;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.dao.WorkspaceNodeHandler;
 import nl.mpi.lamus.exception.WorkspaceNodeNotFoundException;
 import nl.mpi.lamus.exception.WorkspaceNotFoundException;
 import nl.mpi.lamus.workspace.model.Workspace;
@@ -28,7 +31,9 @@ import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeReplacement;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
 import nl.mpi.lamus.workspace.model.WorkspaceReplacedNodeUrlUpdate;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
 import nl.mpi.lamus.workspace.tree.WorkspaceDaoFactory;
+import nl.mpi.lamus.workspace.tree.WorkspaceTreeSnapshotCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +42,9 @@ import org.springframework.stereotype.Repository;
 /**
  * Proxy for the WorkspaceDao, which uses the WorkspaceDaoFactory
  * to get the appropriate DAO object.
+ * Tree snapshots are taken from the WorkspaceTreeSnapshotCache, whose entries
+ * are discarded whenever the nodes or links of the corresponding workspace
+ * are changed through the proxy.
  * @see WorkspaceDao
  * 
  * @author guisil
@@ -51,6 +59,10 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     
     private transient WorkspaceDao workspaceDao;
     
+    // not serialised along with the proxy; a deserialised copy loads the snapshots itself
+    @Autowired
+    private transient WorkspaceTreeSnapshotCache treeSnapshotCache;
+
     
     private synchronized WorkspaceDao getWorkspaceDao() {
         if (this.workspaceDao == null) {
@@ -60,6 +72,18 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
 	return this.workspaceDao;
     }
     
+    private void invalidateTreeSnapshot(int workspaceID) {
+        if(treeSnapshotCache != null) {
+            treeSnapshotCache.invalidateWorkspace(workspaceID);
+        }
+    }
+    
+    private void invalidateTreeSnapshotsContainingNode(int workspaceNodeID) {
+        if(treeSnapshotCache != null) {
+            treeSnapshotCache.invalidateWorkspacesContainingNode(workspaceNodeID);
+        }
+    }
+    
     /**
      * @see WorkspaceDao#addWorkspace(nl.mpi.lamus.workspace.model.Workspace)
      */
@@ -74,6 +98,17 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void deleteWorkspace(Workspace workspace) {
         this.getWorkspaceDao().deleteWorkspace(workspace);
+        invalidateTreeSnapshot(workspace.getWorkspaceID());
+    }
+
+    /**
+     * @see WorkspaceDao#deleteChunkOfWorkspaceNodes(int, int)
+     */
+    @Override
+    public int deleteChunkOfWorkspaceNodes(int workspaceID, int chunkSize) {
+        int deleted = this.getWorkspaceDao().deleteChunkOfWorkspaceNodes(workspaceID, chunkSize);
+        invalidateTreeSnapshot(workspaceID);
+        return deleted;
     }
 
     /**
@@ -82,6 +117,7 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void updateWorkspaceTopNode(Workspace workspace) {
         this.getWorkspaceDao().updateWorkspaceTopNode(workspace);
+        invalidateTreeSnapshot(workspace.getWorkspaceID());
     }
 
     /**
@@ -148,6 +184,22 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
         return this.getWorkspaceDao().getWorkspacesInFinalStage();
     }
 
+    /**
+     * @see WorkspaceDao#getSubmittedWorkspaces()
+     */
+    @Override
+    public Collection<Workspace> getSubmittedWorkspaces() {
+        return this.getWorkspaceDao().getSubmittedWorkspaces();
+    }
+
+    /**
+     * @see WorkspaceDao#getWorkspacesMarkedForDeletion()
+     */
+    @Override
+    public Collection<Workspace> getWorkspacesMarkedForDeletion() {
+        return this.getWorkspaceDao().getWorkspacesMarkedForDeletion();
+    }
+
     /**
      * @see WorkspaceDao#getAllWorkspaces()
      */
@@ -188,6 +240,14 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
         return this.getWorkspaceDao().isNodeLocked(archiveNodeURI);
     }
 
+    /**
+     * @see WorkspaceDao#getLockedNodes(java.util.Collection)
+     */
+    @Override
+    public Set<URI> getLockedNodes(Collection<URI> archiveNodeURIs) {
+        return this.getWorkspaceDao().getLockedNodes(archiveNodeURIs);
+    }
+
     /**
      * @see WorkspaceDao#lockNode(java.net.URI, int)
      */
@@ -196,6 +256,14 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
         this.getWorkspaceDao().lockNode(uriToLock, workspaceID);
     }
 
+    /**
+     * @see WorkspaceDao#lockNodes(java.util.Collection, int)
+     */
+    @Override
+    public void lockNodes(Collection<URI> urisToLock, int workspaceID) {
+        this.getWorkspaceDao().lockNodes(urisToLock, workspaceID);
+    }
+
     /**
      * @see WorkspaceDao#unlockNode(java.net.URI)
      */
@@ -226,6 +294,18 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void addWorkspaceNode(WorkspaceNode node) {
         this.getWorkspaceDao().addWorkspaceNode(node);
+        invalidateTreeSnapshot(node.getWorkspaceID());
+    }
+    
+    /**
+     * @see WorkspaceDao#addWorkspaceNodes(java.util.List)
+     */
+    @Override
+    public void addWorkspaceNodes(List<WorkspaceNode> nodes) {
+        this.getWorkspaceDao().addWorkspaceNodes(nodes);
+        for(WorkspaceNode node : nodes) {
+            invalidateTreeSnapshot(node.getWorkspaceID());
+        }
     }
     
     /**
@@ -234,6 +314,7 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void setWorkspaceNodeAsDeleted(int workspaceID, int nodeID, boolean isExternal) {
         this.getWorkspaceDao().setWorkspaceNodeAsDeleted(workspaceID, nodeID, isExternal);
+        invalidateTreeSnapshot(workspaceID);
     }
 
     /**
@@ -242,6 +323,7 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void deleteWorkspaceNode(int workspaceID, int nodeID) {
         this.getWorkspaceDao().deleteWorkspaceNode(workspaceID, nodeID);
+        invalidateTreeSnapshot(workspaceID);
     }
 
     /**
@@ -260,6 +342,14 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
         return this.getWorkspaceDao().getWorkspaceTopNode(workspaceID);
     }
     
+    /**
+     * @see WorkspaceDao#getWorkspaceNodeCount(int)
+     */
+    @Override
+    public int getWorkspaceNodeCount(int workspaceID) {
+        return this.getWorkspaceDao().getWorkspaceNodeCount(workspaceID);
+    }
+
     /**
      * @see WorkspaceDao#getWorkspaceTopNodeID(int)
      */
@@ -284,6 +374,14 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
         return this.getWorkspaceDao().getNodesForWorkspace(workspaceID);
     }
 
+    /**
+     * @see WorkspaceDao#processNodesForWorkspace(int, nl.mpi.lamus.dao.WorkspaceNodeHandler)
+     */
+    @Override
+    public void processNodesForWorkspace(int workspaceID, WorkspaceNodeHandler nodeHandler) {
+        this.getWorkspaceDao().processNodesForWorkspace(workspaceID, nodeHandler);
+    }
+
     /**
      * @see WorkspaceDao#getMetadataNodesInTreeForWorkspace(int)
      */
@@ -292,6 +390,28 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
         return this.getWorkspaceDao().getMetadataNodesInTreeForWorkspace(workspaceID);
     }
 
+    /**
+     * @see WorkspaceDao#getWorkspaceTreeSnapshot(int)
+     */
+    @Override
+    public WorkspaceTreeSnapshot getWorkspaceTreeSnapshot(int workspaceID) {
+        
+        if(treeSnapshotCache == null) {
+            return this.getWorkspaceDao().getWorkspaceTreeSnapshot(workspaceID);
+        }
+        
+        WorkspaceTreeSnapshot cachedSnapshot = treeSnapshotCache.getTreeSnapshot(workspaceID);
+        if(cachedSnapshot != null) {
+            return cachedSnapshot;
+        }
+        long modificationCountBeforeLoading = treeSnapshotCache.getModificationCount();
+        
+        WorkspaceTreeSnapshot snapshot = this.getWorkspaceDao().getWorkspaceTreeSnapshot(workspaceID);
+        
+        treeSnapshotCache.putTreeSnapshot(snapshot, modificationCountBeforeLoading);
+        return snapshot;
+    }
+
     /**
      * @see WorkspaceDao#getChildWorkspaceNodes(int)
      */
@@ -354,6 +474,7 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void updateNodeWorkspaceURL(WorkspaceNode node) {
         this.getWorkspaceDao().updateNodeWorkspaceURL(node);
+        invalidateTreeSnapshot(node.getWorkspaceID());
     }
     
     /**
@@ -362,6 +483,22 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void updateNodeArchiveUri(WorkspaceNode node) {
         this.getWorkspaceDao().updateNodeArchiveUri(node);
+        invalidateTreeSnapshot(node.getWorkspaceID());
+    }
+    
+    /**
+     * @see WorkspaceDao#updateNodeArchiveUris(java.util.Collection)
+     */
+    @Override
+    public void updateNodeArchiveUris(Collection<WorkspaceNode> nodes) {
+        this.getWorkspaceDao().updateNodeArchiveUris(nodes);
+        Set<Integer> workspaceIDs = new HashSet<>();
+        for(WorkspaceNode node : nodes) {
+            workspaceIDs.add(node.getWorkspaceID());
+        }
+        for(Integer workspaceID : workspaceIDs) {
+            invalidateTreeSnapshot(workspaceID);
+        }
     }
     
     /**
@@ -370,6 +507,7 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void updateNodeArchiveUrl(WorkspaceNode node) {
         this.getWorkspaceDao().updateNodeArchiveUrl(node);
+        invalidateTreeSnapshot(node.getWorkspaceID());
     }
 
     /**
@@ -378,6 +516,7 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void updateNodeType(WorkspaceNode node) {
         this.getWorkspaceDao().updateNodeType(node);
+        invalidateTreeSnapshot(node.getWorkspaceID());
     }
 
     /**
@@ -386,6 +525,18 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void addWorkspaceNodeLink(WorkspaceNodeLink nodeLink) {
         this.getWorkspaceDao().addWorkspaceNodeLink(nodeLink);
+        invalidateTreeSnapshotsContainingNode(nodeLink.getParentWorkspaceNodeID());
+    }
+    
+    /**
+     * @see WorkspaceDao#addWorkspaceNodeLinks(java.util.Collection)
+     */
+    @Override
+    public void addWorkspaceNodeLinks(Collection<WorkspaceNodeLink> nodeLinks) {
+        this.getWorkspaceDao().addWorkspaceNodeLinks(nodeLinks);
+        for(WorkspaceNodeLink nodeLink : nodeLinks) {
+            invalidateTreeSnapshotsContainingNode(nodeLink.getParentWorkspaceNodeID());
+        }
     }
     
     /**
@@ -394,6 +545,7 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void deleteWorkspaceNodeLink(int workspaceID, int parentNodeID, int childNodeID) {
         this.getWorkspaceDao().deleteWorkspaceNodeLink(workspaceID, parentNodeID, childNodeID);
+        invalidateTreeSnapshot(workspaceID);
     }
 
     /**
@@ -402,6 +554,7 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void cleanWorkspaceNodesAndLinks(Workspace workspace) {
         this.getWorkspaceDao().cleanWorkspaceNodesAndLinks(workspace);
+        invalidateTreeSnapshot(workspace.getWorkspaceID());
     }
 
     /**
@@ -426,6 +579,10 @@ public class WorkspaceDaoProxy implements WorkspaceDao, Serializable {
     @Override
     public void replaceNode(WorkspaceNode oldNode, WorkspaceNode newNode) {
         this.getWorkspaceDao().replaceNode(oldNode, newNode);
+        invalidateTreeSnapshot(oldNode.getWorkspaceID());
+        if(newNode.getWorkspaceID() != oldNode.getWorkspaceID()) {
+            invalidateTreeSnapshot(newNode.getWorkspaceID());
+        }
     }
 
     /**
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.upload;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+
+/**
+ * Class to index the nodes of an upload, so that the references in the
+ * uploaded files can be matched without going through all the nodes
+ * for each reference.
+ * The workspace paths of the nodes are kept in a trie of their segments,
+ * from the last to the first, so that any ending of a path can be looked up.
+ * The handles are kept in a map, using their normalised form as key.
+ * When several nodes match, they are given in the order in which they were added.
+ * @author guisil
+ */
+public class UploadMatchIndex {
+    
+    private final Map<WorkspaceNode, Integer> nodePositions;
+    private final PathSegment pathRoot;
+    private final Map<String, List<WorkspaceNode>> nodesByHandle;
+    
+    
+    public UploadMatchIndex() {
+        nodePositions = new IdentityHashMap<>();
+        pathRoot = new PathSegment();
+        nodesByHandle = new HashMap<>();
+    }
+    
+    
+    /**
+     * Adds a node to the index, together with its workspace path.
+     * @param node node to add
+     * @param workspacePath path of the node in the workspace; if null, the node can't be matched by path
+     */
+    public void addNode(WorkspaceNode node, Path workspacePath) {
+        
+        if(nodePositions.containsKey(node)) {
+            return;
+        }
+        nodePositions.put(node, nodePositions.size());
+        
+        if(workspacePath == null) {
+            return;
+        }
+        
+        PathSegment current = pathRoot;
+        for(int i = workspacePath.getNameCount() - 1; i >= 0; i--) {
+            current = current.getOrAddChild(workspacePath.getName(i).toString());
+            if(current.firstNode == null) {
+                current.firstNode = node;
+            }
+        }
+        if(workspacePath.isAbsolute() && current.firstAbsoluteNode == null) {
+            current.firstAbsoluteNode = node;
+        }
+    }
+    
+    /**
+     * Adds the given handle to the ones that can be used to match an already added node.
+     * The previous handles of the node are kept, so the matches should still be confirmed.
+     * @param node node to which the handle belongs
+     * @param normalisedHandle handle, in its normalised form
+     */
+    public void addNodeHandle(WorkspaceNode node, String normalisedHandle) {
+        
+        Integer position = nodePositions.get(node);
+        if(position == null) {
+            throw new IllegalArgumentException("Node " + node.getWorkspaceNodeID() + " was not added to the index");
+        }
+        
+        List<WorkspaceNode> nodes = nodesByHandle.get(normalisedHandle);
+        if(nodes == null) {
+            nodes = new ArrayList<>(1);
+            nodesByHandle.put(normalisedHandle, nodes);
+        }
+        int insertAt = nodes.size();
+        for(int i = 0; i < nodes.size(); i++) {
+            if(nodes.get(i) == node) {
+                return;
+            }
+            if(insertAt == nodes.size() && nodePositions.get(nodes.get(i)) > position) {
+                insertAt = i;
+            }
+        }
+        nodes.add(insertAt, node);
+    }
+    
+    /**
+     * Finds the first added node whose workspace path ends with the given one,
+     * as in Path#endsWith.
+     * @param pathEnding path ending to look for
+     * @return first matching node, null if none is found
+     */
+    public WorkspaceNode getFirstNodeWithPathEnding(Path pathEnding) {
+        
+        if(pathEnding.getNameCount() == 0 || pathEnding.toString().isEmpty()) {
+            return null;
+        }
+        
+        PathSegment current = pathRoot;
+        for(int i = pathEnding.getNameCount() - 1; i >= 0 && current != null; i--) {
+            current = current.children.get(pathEnding.getName(i).toString());
+        }
+        if(current == null) {
+            return null;
+        }
+        
+        // an absolute path can only be the ending of the exact same path
+        return pathEnding.isAbsolute() ? current.firstAbsoluteNode : current.firstNode;
+    }
+    
+    /**
+     * @param normalisedHandle handle, in its normalised form
+     * @return nodes which had the given handle when added, in the order in which they were added
+     */
+    public List<WorkspaceNode> getNodesWithHandle(String normalisedHandle) {
+        List<WorkspaceNode> nodes = nodesByHandle.get(normalisedHandle);
+        if(nodes == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(nodes);
+    }
+    
+    public int size() {
+        return nodePositions.size();
+    }
+    
+    
+    private static class PathSegment {
+        
+        private final Map<String, PathSegment> children = new HashMap<>(2);
+        // first node whose path ends with the segments leading to this one
+        private WorkspaceNode firstNode;
+        // first node whose whole (absolute) path is made of the segments leading to this one
+        private WorkspaceNode firstAbsoluteNode;
+        
+        private PathSegment getOrAddChild(String name) {
+            PathSegment child = children.get(name);
+            if(child == null) {
+                child = new PathSegment();
+                children.put(name, child);
+            }
+            return child;
+        }
+    }
+}
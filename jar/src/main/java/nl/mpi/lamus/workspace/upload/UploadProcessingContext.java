@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.upload;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import nl.mpi.metadata.api.model.MetadataDocument;
+
+/**
+ * Class to keep the metadata documents parsed while processing an upload,
+ * so that the later steps of the processing (e.g. matching the references
+ * among the uploaded files) can use them instead of parsing the files again.
+ * The documents are kept by the workspace URL of their files.
+ * A document should only be added while it corresponds to the contents of its file.
+ * @author guisil
+ */
+public class UploadProcessingContext {
+    
+    private final Map<String, MetadataDocument> documentsByUrl;
+    
+    
+    public UploadProcessingContext() {
+        documentsByUrl = new HashMap<>();
+    }
+    
+    
+    /**
+     * Keeps the given document, parsed from the given file URL.
+     * @param fileUrl URL of the file from which the document was parsed
+     * @param document parsed document
+     */
+    public void addMetadataDocument(URL fileUrl, MetadataDocument document) {
+        documentsByUrl.put(fileUrl.toString(), document);
+    }
+    
+    /**
+     * Discards the document parsed from the given file URL,
+     * once it is no longer needed (or after the file was changed on disk).
+     * @param fileUrl URL of the file from which the document was parsed
+     */
+    public void removeMetadataDocument(URL fileUrl) {
+        documentsByUrl.remove(fileUrl.toString());
+    }
+    
+    /**
+     * @param fileUrl URL of the file
+     * @return document previously parsed from the given file URL, null if there is none
+     */
+    public MetadataDocument getMetadataDocument(URL fileUrl) {
+        if(fileUrl == null) {
+            return null;
+        }
+        return documentsByUrl.get(fileUrl.toString());
+    }
+    
+    /**
+     * @return number of documents kept
+     */
+    public int size() {
+        return documentsByUrl.size();
+    }
+}
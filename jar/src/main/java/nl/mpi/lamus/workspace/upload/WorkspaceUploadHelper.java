@@ -33,7 +33,10 @@ public interface WorkspaceUploadHelper {
      * and adds them in the database.
      * @param workspace current workspace
      * @param nodesToCheck Collection of nodes to be checked
+     * @param processingContext context of the upload, containing the documents
+     *  already parsed while processing it; the other documents are parsed from their files
      * @return collection containing eventual problems with the links
      */
-    public Collection<ImportProblem> assureLinksInWorkspace(Workspace workspace, Collection<WorkspaceNode> nodesToCheck);
+    public Collection<ImportProblem> assureLinksInWorkspace(Workspace workspace, Collection<WorkspaceNode> nodesToCheck,
+            UploadProcessingContext processingContext);
 }
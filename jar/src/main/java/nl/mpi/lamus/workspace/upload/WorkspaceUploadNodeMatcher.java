@@ -29,15 +29,33 @@ import nl.mpi.lamus.workspace.model.WorkspaceNode;
  */
 public interface WorkspaceUploadNodeMatcher {
     
+    /**
+     * Builds the index used to match references with the given nodes.
+     * It should be built only once for each upload.
+     * 
+     * @param nodesToCheck Collection of (uploaded) nodes to index
+     * @return index of the given nodes
+     */
+    public UploadMatchIndex buildMatchIndex(Collection<WorkspaceNode> nodesToCheck);
+    
+    /**
+     * Updates the index with the current archive URI of the given node,
+     * which should be called whenever that URI is changed.
+     * 
+     * @param matchIndex index of the (uploaded) nodes
+     * @param node node whose archive URI was changed
+     */
+    public void updateMatchIndex(UploadMatchIndex matchIndex, WorkspaceNode node);
+    
     /**
      * Tries to find a matching node for the given handle.
      * 
      * @param workspace current workspace
-     * @param nodesToCheck Collection of (uploaded) nodes to check
+     * @param matchIndex index of the (uploaded) nodes to check
      * @param handle handle for which a match should be found
      * @return node that matches the given handle, null if none is found
      */
-    public WorkspaceNode findNodeForHandle(Workspace workspace, Collection<WorkspaceNode> nodesToCheck, URI handle);
+    public WorkspaceNode findNodeForHandle(Workspace workspace, UploadMatchIndex matchIndex, URI handle);
     
     /**
      * Checks if the given URI corresponds to an external location,
@@ -52,9 +70,9 @@ public interface WorkspaceUploadNodeMatcher {
     /**
      * Tries to find a matching node for the given path.
      * 
-     * @param nodesToCheck Collection of (uploaded) nodes to check
+     * @param matchIndex index of the (uploaded) nodes to check
      * @param referencePath reference path to match
      * @return node that matches the given path, null if none is found
      */
-    public WorkspaceNode findNodeForPath(Collection<WorkspaceNode> nodesToCheck, String referencePath);
+    public WorkspaceNode findNodeForPath(UploadMatchIndex matchIndex, String referencePath);
 }
@@ -38,7 +38,7 @@ public interface WorkspaceUploadReferenceHandler {
      * If a reference has no match, it is removed.
      * 
      * @param workspace current workspace
-     * @param nodesToCheck Collection of uploaded nodes which are going to be checked for links between themselves
+     * @param matchIndex index of the uploaded nodes which are going to be checked for links between themselves
      * @param currentNode Node whose references need to be matched
      * @param currentDocument MetadataDocument corresponding to the current node
      * @param documentsWithInvalidSelfHandles map to which the current document will be added,
@@ -46,7 +46,7 @@ public interface WorkspaceUploadReferenceHandler {
      * @return Collection containing the links that were supposed to be made, but failed
      */
     public Collection<ImportProblem> matchReferencesWithNodes(
-            Workspace workspace, Collection<WorkspaceNode> nodesToCheck,
+            Workspace workspace, UploadMatchIndex matchIndex,
             WorkspaceNode currentNode, ReferencingMetadataDocument currentDocument,
             Map<MetadataDocument, WorkspaceNode> documentsWithInvalidSelfHandles);
 }
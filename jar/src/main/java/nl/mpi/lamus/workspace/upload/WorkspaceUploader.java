@@ -18,11 +18,10 @@ package nl.mpi.lamus.workspace.upload;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.Collection;
-import java.util.zip.ZipInputStream;
 import nl.mpi.lamus.exception.DisallowedPathException;
 import nl.mpi.lamus.exception.WorkspaceException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.workspace.importing.implementation.ImportProblem;
 import nl.mpi.lamus.workspace.upload.implementation.ZipUploadResult;
 
@@ -42,22 +41,31 @@ public interface WorkspaceUploader {
     public File getWorkspaceUploadDirectory(int workspaceID);
 
     /**
-     * Given an InputStream and a filename, this method uploads the corresponding file.
+     * Given a file already stored on disk (e.g. spooled by the web server) and a filename,
+     * this method moves the file into the upload directory of the workspace,
+     * which avoids writing the data again when both are in the same file system.
      * @param workspaceID ID of the workspace
-     * @param inputStream InputStream to upload
+     * @param uploadedFile file to upload (which will no longer exist in its original location)
      * @param filename name of the file
-     * @return uploaded File
+     * @return information about the uploaded file (location and size),
+     *  to be passed on when processing it
      */
-    public File uploadFileIntoWorkspace(int workspaceID, InputStream inputStream, String filename)
+    public CopiedFileInfo uploadFileIntoWorkspace(int workspaceID, File uploadedFile, String filename)
             throws IOException, DisallowedPathException;
     
     /**
-     * Given a ZipInputStream and the filename, this method uploads its content.
+     * Given a zip file already stored on disk, this method uploads its content.
+     * All the paths in the zip are checked before anything is extracted,
+     * after which the files are extracted in parallel.
      * @param workspaceID ID of the workspace
-     * @param zipInputStream ZipInputStream to upload
+     * @param zipFile zip file to upload
      * @return Object containing results of the upload for the files in the zip
+     *  (in the same order as the entries in the zip)
+     * @throws IOException if the zip can't be read or extracted, or if it exceeds
+     *  the allowed number of entries or size; in this case, whatever was already extracted is deleted
+     * @throws DisallowedPathException if any of the paths in the zip is not allowed
      */
-    public ZipUploadResult uploadZipFileIntoWorkspace(int workspaceID, ZipInputStream zipInputStream)
+    public ZipUploadResult uploadZipFileIntoWorkspace(int workspaceID, File zipFile)
             throws IOException, DisallowedPathException;
     
     /**
@@ -69,4 +77,16 @@ public interface WorkspaceUploader {
      */
     public Collection<ImportProblem> processUploadedFiles(int workspaceID, Collection<File> uploadedFiles)
             throws WorkspaceException;
+    
+    /**
+     * Same as {@link #processUploadedFiles(int, java.util.Collection)},
+     * reusing the information calculated while the files were uploaded.
+     * @param workspaceID ID of the workspace
+     * @param uploadedFiles Collection of previously uploaded files
+     * @param copiedFilesInfo information returned by the upload of the files
+     *  (files without it are just read again)
+     * @return collection containing objects which describe eventual upload problems
+     */
+    public Collection<ImportProblem> processUploadedFiles(int workspaceID, Collection<File> uploadedFiles, Collection<CopiedFileInfo> copiedFilesInfo)
+            throws WorkspaceException;
 }
@@ -18,6 +18,7 @@ package nl.mpi.lamus.workspace.upload.implementation;
 
 import nl.mpi.lamus.workspace.importing.implementation.ImportProblem;
 import java.io.IOException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -28,7 +29,10 @@ import nl.mpi.lamus.metadata.MetadataApiBridge;
 import nl.mpi.lamus.workspace.model.NodeUtil;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.upload.UploadMatchIndex;
+import nl.mpi.lamus.workspace.upload.UploadProcessingContext;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadHelper;
+import nl.mpi.lamus.workspace.upload.WorkspaceUploadNodeMatcher;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadReferenceHandler;
 import nl.mpi.metadata.api.MetadataAPI;
 import nl.mpi.metadata.api.MetadataException;
@@ -36,6 +40,7 @@ import nl.mpi.metadata.api.model.MetadataDocument;
 import nl.mpi.metadata.api.model.ReferencingMetadataDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -49,44 +54,65 @@ public class LamusWorkspaceUploadHelper implements WorkspaceUploadHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(LamusWorkspaceUploadHelper.class);
     
-    private final MetadataAPI metadataAPI;
+    private final ThreadLocal<MetadataAPI> metadataAPI;
     private final MetadataApiBridge metadataApiBridge;
     private final WorkspaceUploadReferenceHandler workspaceUploadReferenceHandler;
+    private final WorkspaceUploadNodeMatcher workspaceUploadNodeMatcher;
     private final NodeUtil nodeUtil;
     
     @Autowired
-    public LamusWorkspaceUploadHelper(MetadataAPI mdAPI, MetadataApiBridge mdApiBridge,
-            WorkspaceUploadReferenceHandler wsUploadReferenceHandler, NodeUtil nodeUtil) {
-        this.metadataAPI = mdAPI;
+    public LamusWorkspaceUploadHelper(final ObjectFactory<MetadataAPI> mdAPIFactory, MetadataApiBridge mdApiBridge,
+            WorkspaceUploadReferenceHandler wsUploadReferenceHandler,
+            WorkspaceUploadNodeMatcher wsUploadNodeMatcher, NodeUtil nodeUtil) {
+        this.metadataAPI = new ThreadLocal<MetadataAPI>() {
+            @Override
+            protected MetadataAPI initialValue() {
+                return mdAPIFactory.getObject();
+            }
+        };
         this.metadataApiBridge = mdApiBridge;
         this.workspaceUploadReferenceHandler = wsUploadReferenceHandler;
+        this.workspaceUploadNodeMatcher = wsUploadNodeMatcher;
         this.nodeUtil = nodeUtil;
     }
 
     /**
      * @see WorkspaceUploadHelper#assureLinksInWorkspace(
-     *  nl.mpi.lamus.workspace.model.Workspace, java.util.Collection)
+     *  nl.mpi.lamus.workspace.model.Workspace, java.util.Collection,
+     *  nl.mpi.lamus.workspace.upload.UploadProcessingContext)
      */
     @Override
-    public Collection<ImportProblem> assureLinksInWorkspace(Workspace workspace, Collection<WorkspaceNode> nodesToCheck) {
+    public Collection<ImportProblem> assureLinksInWorkspace(Workspace workspace, Collection<WorkspaceNode> nodesToCheck,
+            UploadProcessingContext processingContext) {
         
         logger.debug("Assuring links in workspace.");
         
         Collection<ImportProblem> allFailedLinks = new ArrayList<>();
         Map<MetadataDocument, WorkspaceNode> documentsWithInvalidSelfHandles = new HashMap<>();
         
+        // built only once, to avoid going through all the nodes for each reference
+        UploadMatchIndex matchIndex = workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck);
+        
         for(WorkspaceNode node : nodesToCheck) {
             
             if(!nodeUtil.isNodeMetadata(node)) {
                 continue;
             }
             
-            MetadataDocument document;
-            try {
-                document = metadataAPI.getMetadataDocument(node.getWorkspaceURL());
-            } catch (IOException | MetadataException ex) {
-                logger.error("Document could not be loaded for " + node.getWorkspaceURL(), ex);
-                continue;
+            URL nodeWorkspaceURL = node.getWorkspaceURL();
+            
+            // documents already parsed during the upload are not parsed again;
+                // each one is only needed for its own node, so it is released right away
+            MetadataDocument document = processingContext.getMetadataDocument(nodeWorkspaceURL);
+            if(document != null) {
+                processingContext.removeMetadataDocument(nodeWorkspaceURL);
+            } else {
+                try {
+                    document = metadataAPI.get().getMetadataDocument(nodeWorkspaceURL);
+                } catch (IOException | MetadataException ex) {
+                    logger.error("Document could not be loaded for " + nodeWorkspaceURL, ex);
+                    continue;
+                }
             }
             
             if(!(document instanceof ReferencingMetadataDocument)) {
@@ -97,7 +123,7 @@ public class LamusWorkspaceUploadHelper implements WorkspaceUploadHelper {
             
             Collection<ImportProblem> failedLinks =
                     workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                    workspace, nodesToCheck, node, referencingDocument, documentsWithInvalidSelfHandles);
+                    workspace, matchIndex, node, referencingDocument, documentsWithInvalidSelfHandles);
             
             allFailedLinks.addAll(failedLinks);
         }
@@ -23,8 +23,10 @@ import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import nl.mpi.archiving.corpusstructure.core.CorpusNode;
 import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
 import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
@@ -35,6 +37,7 @@ import nl.mpi.lamus.workspace.factory.WorkspaceNodeFactory;
 import nl.mpi.lamus.workspace.model.NodeUtil;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.upload.UploadMatchIndex;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadNodeMatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,17 +78,55 @@ public class LamusWorkspaceUploadNodeMatcher implements WorkspaceUploadNodeMatch
         this.corpusStructureBridge = csBridge;
     }
     
+    /**
+     * @see WorkspaceUploadNodeMatcher#buildMatchIndex(java.util.Collection)
+     */
+    @Override
+    public UploadMatchIndex buildMatchIndex(Collection<WorkspaceNode> nodesToCheck) {
+        
+        logger.debug("Building match index for " + nodesToCheck.size() + " nodes");
+        
+        UploadMatchIndex matchIndex = new UploadMatchIndex();
+        for(WorkspaceNode node : nodesToCheck) {
+            Path nodePath = null;
+            if(node.getWorkspaceURL() != null) {
+                nodePath = Paths.get(node.getWorkspaceURL().getPath());
+            }
+            matchIndex.addNode(node, nodePath);
+            updateMatchIndex(matchIndex, node);
+        }
+        return matchIndex;
+    }
+    
+    /**
+     * @see WorkspaceUploadNodeMatcher#updateMatchIndex(
+     *  nl.mpi.lamus.workspace.upload.UploadMatchIndex, nl.mpi.lamus.workspace.model.WorkspaceNode)
+     */
+    @Override
+    public void updateMatchIndex(UploadMatchIndex matchIndex, WorkspaceNode node) {
+        
+        String handleKey = getHandleKey(node.getArchiveURI());
+        if(handleKey != null) {
+            matchIndex.addNodeHandle(node, handleKey);
+        }
+    }
+    
     /**
      * @see WorkspaceUploadNodeMatcher#findNodeForHandle(
-     *  nl.mpi.lamus.workspace.model.Workspace, java.util.Collection, java.net.URI) 
+     *  nl.mpi.lamus.workspace.model.Workspace,
+     *  nl.mpi.lamus.workspace.upload.UploadMatchIndex, java.net.URI) 
      */
     @Override
-    public WorkspaceNode findNodeForHandle(Workspace workspace, Collection<WorkspaceNode> nodesToCheck, URI handle) {
+    public WorkspaceNode findNodeForHandle(Workspace workspace, UploadMatchIndex matchIndex, URI handle) {
         
         int topNodeID = workspace.getTopNodeID();
         URI topNodeURI = workspace.getTopNodeArchiveURI();
         
-        for(WorkspaceNode innerNode : nodesToCheck) {
+        // only the nodes indexed with the same handle are candidates, which are then confirmed
+        String handleKey = getHandleKey(handle);
+        List<WorkspaceNode> candidateNodes = handleKey != null ? matchIndex.getNodesWithHandle(handleKey) : Collections.<WorkspaceNode>emptyList();
+        
+        for(WorkspaceNode innerNode : candidateNodes) {
             
             if(nodeUtil.isNodeMetadata(innerNode)) {
                 
@@ -190,8 +231,12 @@ public class LamusWorkspaceUploadNodeMatcher implements WorkspaceUploadNodeMatch
         }
     }
     
+    /**
+     * @see WorkspaceUploadNodeMatcher#findNodeForPath(
+     *  nl.mpi.lamus.workspace.upload.UploadMatchIndex, java.lang.String)
+     */
     @Override
-    public WorkspaceNode findNodeForPath(Collection<WorkspaceNode> nodesToCheck, String referencePath) {
+    public WorkspaceNode findNodeForPath(UploadMatchIndex matchIndex, String referencePath) {
         
         if(!referencePath.isEmpty()) {            
             String referencePathEnding = referencePath;
@@ -199,17 +244,26 @@ public class LamusWorkspaceUploadNodeMatcher implements WorkspaceUploadNodeMatch
                 referencePathEnding = referencePathEnding.substring(referencePathEnding.indexOf(File.separator) + 1);
             }
             
-            for(WorkspaceNode innerNode : nodesToCheck) {
-                    
-                Path refPath = Paths.get(referencePathEnding);
-                Path nodePath = Paths.get(innerNode.getWorkspaceURL().getPath().toString());
-
-                if(nodePath.endsWith(refPath)) { //check if the node URL contains the relative path that comes in the link reference
-                    return innerNode;
-                }
-            }
+            //check if the node URL contains the relative path that comes in the link reference
+            return matchIndex.getFirstNodeWithPathEnding(Paths.get(referencePathEnding));
         }
         
         return null;
     }
+    
+    
+    private String getHandleKey(URI uri) {
+        
+        if(uri == null) {
+            return null;
+        }
+        try {
+            String strippedHandle = handleParser.stripAndValidateHandleIfPrefixIsKnown(uri);
+            // handles are case insensitive
+            return strippedHandle != null ? strippedHandle.toUpperCase(Locale.ENGLISH) : null;
+        } catch(IllegalArgumentException ex) {
+            logger.info("Invalid handle: '" + uri + "'");
+            return null;
+        }
+    }
 }
@@ -44,6 +44,7 @@ import nl.mpi.lamus.workspace.model.NodeUtil;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.upload.UploadMatchIndex;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadNodeMatcher;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadReferenceHandler;
 import nl.mpi.metadata.api.MetadataAPI;
@@ -55,6 +56,7 @@ import nl.mpi.metadata.cmdi.api.model.CMDIDocument;
 import nl.mpi.metadata.cmdi.api.model.ResourceProxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -72,7 +74,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
     private final WorkspaceDao workspaceDao;
     private final WorkspaceNodeLinkManager workspaceNodeLinkManager;
     private final HandleParser handleParser;
-    private final MetadataAPI metadataAPI;
+    private final ThreadLocal<MetadataAPI> metadataAPI;
     private final MetadataApiBridge metadataApiBridge;
     private final WorkspaceFileHandler workspaceFileHandler;
     private final NodeUtil nodeUtil;
@@ -87,13 +89,18 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
     public LamusWorkspaceUploadReferenceHandler(
             WorkspaceUploadNodeMatcher wsUploadNodeMatcher,
             WorkspaceDao wsDao, WorkspaceNodeLinkManager wsNodeLinkManager,
-            HandleParser handleParser, MetadataAPI mdAPI,
+            HandleParser handleParser, final ObjectFactory<MetadataAPI> mdAPIFactory,
             MetadataApiBridge mdApiBridge, WorkspaceFileHandler wsFileHandler, NodeUtil nodeUtil) {
         this.workspaceUploadNodeMatcher = wsUploadNodeMatcher;
         this.workspaceDao = wsDao;
         this.workspaceNodeLinkManager = wsNodeLinkManager;
         this.handleParser = handleParser;
-        this.metadataAPI = mdAPI;
+        this.metadataAPI = new ThreadLocal<MetadataAPI>() {
+            @Override
+            protected MetadataAPI initialValue() {
+                return mdAPIFactory.getObject();
+            }
+        };
         this.metadataApiBridge = mdApiBridge;
         this.workspaceFileHandler = wsFileHandler;
         this.nodeUtil = nodeUtil;
@@ -101,13 +108,14 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
     
     /**
      * @see WorkspaceUploadReferenceHandler#matchReferencesWithNodes(
-     *  nl.mpi.lamus.workspace.model.Workspace, java.util.Collection,
+     *  nl.mpi.lamus.workspace.model.Workspace,
+     *  nl.mpi.lamus.workspace.upload.UploadMatchIndex,
      *  nl.mpi.lamus.workspace.model.WorkspaceNode,
      *  nl.mpi.metadata.api.model.ReferencingMetadataDocument, java.util.Map)
      */
     @Override
     public Collection<ImportProblem> matchReferencesWithNodes(
-            Workspace workspace, Collection<WorkspaceNode> nodesToCheck,
+            Workspace workspace, UploadMatchIndex matchIndex,
             WorkspaceNode currentNode, ReferencingMetadataDocument currentDocument,
             Map<MetadataDocument, WorkspaceNode> documentsWithInvalidSelfHandles) {
         
@@ -142,12 +150,12 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
                 logger.debug("Reference has localURI " + refLocalURI);
                 
                 if(refLocalURI.isAbsolute()) {
-                	matchedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, refLocalURI.toString());
+                	matchedNode = workspaceUploadNodeMatcher.findNodeForPath(matchIndex, refLocalURI.toString());
                 } else {
                 	Path docPath = Paths.get(currentDocument.getFileLocation().getPath());
                 	Path path = Paths.get(docPath.getParent().toString(),  refLocalURI.getPath().toString()).normalize();
                 	if(path.toFile().exists()) {
-                		matchedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, path.toString());
+                		matchedNode = workspaceUploadNodeMatcher.findNodeForPath(matchIndex, path.toString());
                 	} else {
                 		//if it is a resource made available via the orphans folder look in the original orphans folder since these are not
                 		//copied to the workspace
@@ -157,22 +165,22 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
                 				Path orphansDirectoryPath = archiveFileLocationProvider.getOrphansDirectory(workspace.getTopNodeArchiveURL().toURI()).toPath();
                 				Path pathInOrphansDirectory = Paths.get(orphansDirectoryPath.toString(), wsOrphansDirectoryPath.relativize(path).toString());
                 				if (pathInOrphansDirectory.toFile().exists()) {
-                					matchedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, pathInOrphansDirectory.toString());
+                					matchedNode = workspaceUploadNodeMatcher.findNodeForPath(matchIndex, pathInOrphansDirectory.toString());
                 				}
                 			} catch (URISyntaxException e) {
                 				logger.warn("Cannot search for reference: [" + refLocalURI.toString() + "] in orphans directory. Top node archive URL: " + workspace.getTopNodeArchiveURL().toString() + 
                 						" cannot be converted to URI. Trying to match by file name only...");
-                				matchedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, refLocalURI.toString());
+                				matchedNode = workspaceUploadNodeMatcher.findNodeForPath(matchIndex, refLocalURI.toString());
                 			}
                 		} else {
                 			//if it is a resource already archived look for it in the archive since these are not copied to the workspace
                 			Path pathInArchive = Paths.get(workspace.getTopNodeArchiveURL().toString(), wsOrphansDirectoryPath.relativize(path).toString());
                 			if (pathInArchive.toFile().exists()) {
-                				matchedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, pathInArchive.toString());
+                				matchedNode = workspaceUploadNodeMatcher.findNodeForPath(matchIndex, pathInArchive.toString());
                 			} else {
                 				logger.warn("File for reference: [" + refLocalURI.toString() + "] cannot be found in the workspace, nor archive, nor in the original orphans directory via its localURI." +
                 						" Trying to match by file name only...");
-                				matchedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, refLocalURI.toString());
+                				matchedNode = workspaceUploadNodeMatcher.findNodeForPath(matchIndex, refLocalURI.toString());
                 			}
                 		}
                 	}
@@ -182,6 +190,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
                     if(refURI != null && !refURI.toString().isEmpty() && handleParser.isHandleUriWithKnownPrefix(refURI)) {
                             matchedNode.setArchiveURI(handleParser.prepareAndValidateHandleWithHdlPrefix(refURI));
                             workspaceDao.updateNodeArchiveUri(matchedNode);
+                            workspaceUploadNodeMatcher.updateMatchIndex(matchIndex, matchedNode);
                     } else {
                         clearReferenceUri(currentDocument, ref, matchedNode);
                     }
@@ -196,7 +205,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
                     
                     URI preparedHandle = handleParser.prepareAndValidateHandleWithHdlPrefix(refURI);
                     try {
-                        matchedNode = workspaceUploadNodeMatcher.findNodeForHandle(workspace, nodesToCheck, preparedHandle);
+                        matchedNode = workspaceUploadNodeMatcher.findNodeForHandle(workspace, matchIndex, preparedHandle);
                     } catch(IllegalStateException ex) {
                     	removeMatchingComponent(currentDocument, currentNode, ref);
                         removeReference(currentDocument, ref, currentNode);
@@ -210,6 +219,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
                         if(!handleParser.areHandlesEquivalent(preparedHandle, matchedNode.getArchiveURI())) {
                             matchedNode.setArchiveURI(preparedHandle);
                             workspaceDao.updateNodeArchiveUri(matchedNode);
+                            workspaceUploadNodeMatcher.updateMatchIndex(matchIndex, matchedNode);
                         }
                         if(!refURI.equals(preparedHandle)) {
                             updateHandle(currentDocument, ref, preparedHandle, currentNode);
@@ -219,7 +229,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
                     
                     logger.debug("Match not found yet. Trying to find it using URI " + refURI);
                     
-                    matchedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, refURI.toString());
+                    matchedNode = workspaceUploadNodeMatcher.findNodeForPath(matchIndex, refURI.toString());
                 }
                 
                 //check if it's an external reference
@@ -301,7 +311,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
         try {
             File documentFile = new File(document.getFileLocation().getPath());
             StreamResult documentStreamResult = workspaceFileHandler.getStreamResultForNodeFile(documentFile);
-            metadataAPI.writeMetadataDocument(document, documentStreamResult);
+            metadataAPI.get().writeMetadataDocument(document, documentStreamResult);
         } catch (IOException ex) {
             logger.error("Error clearing the reference for node " + referencedNode.getWorkspaceNodeID(), ex);
         } catch (TransformerException | MetadataException ex) {
@@ -314,7 +324,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
             document.removeDocumentReference(ref);
             File documentFile = new File(document.getFileLocation().getPath());
             StreamResult documentStreamResult = workspaceFileHandler.getStreamResultForNodeFile(documentFile);
-            metadataAPI.writeMetadataDocument(document, documentStreamResult);
+            metadataAPI.get().writeMetadataDocument(document, documentStreamResult);
         } catch (MetadataException | IOException | TransformerException ex) {
             logger.error("Error removing reference '" + ref.getURI() + "' from node " + currentNode.getWorkspaceNodeID(), ex);
         }
@@ -381,7 +391,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
         try {
             File documentFile = new File(document.getFileLocation().getPath());
             StreamResult documentStreamResult = workspaceFileHandler.getStreamResultForNodeFile(documentFile);
-            metadataAPI.writeMetadataDocument(document, documentStreamResult);
+            metadataAPI.get().writeMetadataDocument(document, documentStreamResult);
         } catch (IOException | TransformerException | MetadataException ex) {
             logger.error("Error updating the reference for node " + referencedNode.getWorkspaceNodeID() + message.toString(), ex);
         }
@@ -414,7 +424,7 @@ public class LamusWorkspaceUploadReferenceHandler implements WorkspaceUploadRefe
         try {
             File documentFile = new File(document.getFileLocation().getPath());
             StreamResult documentStreamResult = workspaceFileHandler.getStreamResultForNodeFile(documentFile);
-            metadataAPI.writeMetadataDocument(document, documentStreamResult);
+            metadataAPI.get().writeMetadataDocument(document, documentStreamResult);
         } catch (IOException | TransformerException | MetadataException ex) {
             logger.error("Error updating the reference for node " + referencedNode.getWorkspaceNodeID() + message.toString(), ex);
         }
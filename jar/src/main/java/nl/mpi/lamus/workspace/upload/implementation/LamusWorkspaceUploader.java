@@ -20,8 +20,10 @@ import eu.clarin.cmdi.validator.CMDIValidatorInitException;
 import nl.mpi.lamus.workspace.importing.implementation.FileImportProblem;
 import nl.mpi.lamus.workspace.importing.implementation.ImportProblem;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
@@ -30,8 +32,20 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipFile;
 import javax.xml.transform.TransformerException;
 import nl.mpi.archiving.corpusstructure.core.NodeNotFoundException;
 import nl.mpi.handle.util.HandleParser;
@@ -44,6 +58,7 @@ import nl.mpi.lamus.filesystem.WorkspaceDirectoryHandler;
 import nl.mpi.lamus.typechecking.TypecheckedResults;
 import nl.mpi.lamus.exception.TypeCheckerException;
 import nl.mpi.lamus.exception.WorkspaceException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.filesystem.WorkspaceFileHandler;
 import nl.mpi.lamus.workspace.factory.WorkspaceNodeFactory;
 import nl.mpi.lamus.workspace.importing.NodeDataRetriever;
@@ -54,6 +69,7 @@ import nl.mpi.lamus.metadata.validation.WorkspaceFileValidator;
 import nl.mpi.lamus.workspace.model.NodeUtil;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.upload.UploadProcessingContext;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadHelper;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploader;
 import nl.mpi.metadata.api.MetadataAPI;
@@ -61,10 +77,19 @@ import nl.mpi.metadata.api.MetadataException;
 import nl.mpi.metadata.api.model.MetadataDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 
 /**
+ * The uploaded files are checked (typecheck, archivability, metadata validation)
+ * by a bounded thread pool, while the corresponding nodes are added to the database
+ * one by one, in the same order as the files, so that the resulting nodes
+ * and upload problems don't depend on the order in which the checks finish.
+ * The metadata API is not thread-safe, so each of those threads parses the documents
+ * with its own instance; the metadata API bridge is only used by the calling thread.
+ * 
  * @see WorkspaceUploader
  * @author guisil
  */
@@ -79,22 +104,28 @@ public class LamusWorkspaceUploader implements WorkspaceUploader {
     private final WorkspaceNodeFactory workspaceNodeFactory;
     private final WorkspaceDao workspaceDao;
     private final WorkspaceUploadHelper workspaceUploadHelper;
-    private final MetadataAPI metadataAPI;
+    private final ThreadLocal<MetadataAPI> metadataAPI;
     private final MetadataApiBridge metadataApiBridge;
     private final WorkspaceFileValidator workspaceFileValidator;
     private final ArchiveFileLocationProvider archiveFileLocationProvider;
     private final ArchiveFileHelper archiveFileHelper;
     private final NodeUtil nodeUtil;
     private final HandleParser handleParser;
+    private final ExecutorService uploadProcessingExecutorService;
+    private final int maxZipUploadEntries;
+    private final long maxZipUploadSize;
     
     @Autowired
     public LamusWorkspaceUploader(NodeDataRetriever ndRetriever,
         WorkspaceDirectoryHandler wsDirHandler, WorkspaceFileHandler wsFileHandler,
         WorkspaceNodeFactory wsNodeFactory,
-        WorkspaceDao wsDao, WorkspaceUploadHelper wsUploadHelper, MetadataAPI mdAPI,
+        WorkspaceDao wsDao, WorkspaceUploadHelper wsUploadHelper, final ObjectFactory<MetadataAPI> mdAPIFactory,
         MetadataApiBridge mdApiBridge, WorkspaceFileValidator wsFileValidator,
         ArchiveFileLocationProvider afLocationProvider, ArchiveFileHelper archiveFileHelper,
-        NodeUtil nodeUtil, HandleParser hdlParser) {
+        NodeUtil nodeUtil, HandleParser hdlParser,
+        @Qualifier("UploadProcessingExecutorService") ExecutorService uploadProcessingExecutorService,
+        @Qualifier("maxZipUploadEntries") int maxZipUploadEntries,
+        @Qualifier("maxZipUploadSizeInMegabytes") long maxZipUploadSizeInMegabytes) {
         
         this.nodeDataRetriever = ndRetriever;
         this.workspaceDirectoryHandler = wsDirHandler;
@@ -102,13 +133,21 @@ public class LamusWorkspaceUploader implements WorkspaceUploader {
         this.workspaceNodeFactory = wsNodeFactory;
         this.workspaceDao = wsDao;
         this.workspaceUploadHelper = wsUploadHelper;
-        this.metadataAPI = mdAPI;
+        this.metadataAPI = new ThreadLocal<MetadataAPI>() {
+            @Override
+            protected MetadataAPI initialValue() {
+                return mdAPIFactory.getObject();
+            }
+        };
         this.metadataApiBridge = mdApiBridge;
         this.workspaceFileValidator = wsFileValidator;
         this.archiveFileLocationProvider = afLocationProvider;
         this.archiveFileHelper = archiveFileHelper;
         this.nodeUtil = nodeUtil;
         this.handleParser = hdlParser;
+        this.uploadProcessingExecutorService = uploadProcessingExecutorService;
+        this.maxZipUploadEntries = maxZipUploadEntries;
+        this.maxZipUploadSize = maxZipUploadSizeInMegabytes * 1024 * 1024;
     }
 
     /**
@@ -120,13 +159,12 @@ public class LamusWorkspaceUploader implements WorkspaceUploader {
     }
 
     /**
-     * @see WorkspaceUploader#uploadFileIntoWorkspace(int, java.io.InputStream, java.lang.String)
+     * @see WorkspaceUploader#uploadFileIntoWorkspace(int, java.io.File, java.lang.String)
      */
     @Override
-    public File uploadFileIntoWorkspace(int workspaceID, InputStream inputStream, String filename)
+    public CopiedFileInfo uploadFileIntoWorkspace(int workspaceID, File uploadedFile, String filename)
             throws IOException, DisallowedPathException {
         
-        
         assureFilenameIsValid(filename);
         
         try {
@@ -137,76 +175,85 @@ public class LamusWorkspaceUploader implements WorkspaceUploader {
         }
         
         File workspaceUploadDirectory = this.workspaceDirectoryHandler.getUploadDirectoryForWorkspace(workspaceID);
-        File fileToCopy = new File(workspaceUploadDirectory, filename);
+        File fileToMove = new File(workspaceUploadDirectory, filename);
         
-        workspaceFileHandler.copyInputStreamToTargetFile(inputStream, fileToCopy);
-        
-        return fileToCopy;
+        return workspaceFileHandler.moveUploadedFileToTargetFile(uploadedFile, fileToMove);
     }
     
     /**
-     * @see WorkspaceUploader#uploadZipFileIntoWorkspace(int, java.util.zip.ZipInputStream)
+     * @see WorkspaceUploader#uploadZipFileIntoWorkspace(int, java.io.File)
      */
     @Override
-    public ZipUploadResult uploadZipFileIntoWorkspace(int workspaceID, ZipInputStream zipInputStream)
+    public ZipUploadResult uploadZipFileIntoWorkspace(int workspaceID, File zipFile)
             throws IOException, DisallowedPathException {
         
         File workspaceUploadDirectory = this.workspaceDirectoryHandler.getUploadDirectoryForWorkspace(workspaceID);
         
         ZipUploadResult uploadResults = new ZipUploadResult();
         
-        Collection<File> copiedFiles = new ArrayList<>();
-        Collection<File> createdDirectories = new ArrayList<>();
-        
-        ZipEntry nextEntry = zipInputStream.getNextEntry();
-        while(nextEntry != null) {
-            
-            String entryName = nextEntry.getName();
-
-            assureFilenameIsValid(entryName);
-            
-            try {
-                workspaceDirectoryHandler.ensurePathIsAllowed(entryName);
-            } catch(DisallowedPathException ex) {
-                logger.warn(ex.getMessage());
-                deleteCreatedFilesAndDirectories(copiedFiles, createdDirectories);
-                throw ex;
-            }
-            
-            File entryFile = new File(workspaceUploadDirectory, entryName);
+        try (ZipFile zip = new ZipFile(zipFile)) {
             
-            if(nextEntry.isDirectory()) {
-            	File createdDirectory = entryFile;
-            	if(!entryFile.exists()) {
-	                createdDirectory = workspaceDirectoryHandler.createDirectoryInWorkspace(workspaceID, entryName);
-            	}
-                createdDirectories.add(createdDirectory);
-                nextEntry = zipInputStream.getNextEntry();
-                continue;
-            }
+            List<? extends ZipEntry> entries = Collections.list(zip.entries());
             
-        	//bugfix for windows created zips (intermediate directories are not listed as zip entries)
-            if(entryName.contains(File.separator) && !entryFile.getParentFile().exists()) {
-            	File createDirectory = entryFile.getParentFile();
-            	createDirectory.mkdirs();
-            	createdDirectories.add(createDirectory);
-            }
+            // all the entries are checked before anything is created, so there is nothing to roll back if a path is not allowed
+            checkZipEntries(entries);
             
-            File entryBaseDirectory = entryFile.getParentFile();
-            String entryFilename = entryFile.getName();
+            List<File> createdDirectories = new ArrayList<>();
+            List<ZipEntry> entriesToExtract = new ArrayList<>();
+            List<File> filesToExtract = new ArrayList<>();
+            Set<File> uniqueFilesToExtract = new HashSet<>();
             
-            File fileAttempt = new File(entryBaseDirectory, entryFilename);
-            if(fileAttempt.exists()) {
-                uploadResults.addFailedUpload(new FileImportProblem(fileAttempt, "A file with the same path already exists", null));
-                nextEntry = zipInputStream.getNextEntry();
-                continue;
+            boolean extracted = false;
+            try {
+                // the directory tree is created in a single pass, before extracting any file
+                for(ZipEntry entry : entries) {
+                    
+                    String entryName = entry.getName();
+                    File entryFile = new File(workspaceUploadDirectory, entryName);
+                    
+                    if(entry.isDirectory()) {
+                        if(!entryFile.exists()) {
+                            createdDirectories.add(workspaceDirectoryHandler.createDirectoryInWorkspace(workspaceID, entryName));
+                        }
+                        continue;
+                    }
+                    
+                    //bugfix for windows created zips (intermediate directories are not listed as zip entries)
+                    File entryParentDirectory = entryFile.getParentFile();
+                    if(!entryParentDirectory.exists()) {
+                        addMissingDirectories(entryParentDirectory, createdDirectories);
+                        if(!entryParentDirectory.mkdirs()) {
+                            throw new IOException("Couldn't create directory " + entryParentDirectory);
+                        }
+                    }
+                    
+                    if(entryFile.exists() || !uniqueFilesToExtract.add(entryFile)) {
+                        uploadResults.addFailedUpload(new FileImportProblem(entryFile, "A file with the same path already exists", null));
+                        continue;
+                    }
+                    entriesToExtract.add(entry);
+                    filesToExtract.add(entryFile);
+                }
+                
+                List<CopiedFileInfo> copiedFilesInfo = extractZipEntries(zip, entriesToExtract, filesToExtract);
+                
+                for(CopiedFileInfo copiedFileInfo : copiedFilesInfo) {
+                    uploadResults.addSuccessfulUpload(copiedFileInfo);
+                }
+                extracted = true;
+            } finally {
+                if(!extracted) {
+                    Collection<File> filesToDelete = new ArrayList<>();
+                    for(File file : filesToExtract) {
+                        if(file.exists()) {
+                            filesToDelete.add(file);
+                        }
+                    }
+                    // deepest directories first
+                    Collections.reverse(createdDirectories);
+                    deleteCreatedFilesAndDirectories(filesToDelete, createdDirectories);
+                }
             }
-            
-            workspaceFileHandler.copyInputStreamToTargetFile(zipInputStream, fileAttempt);
-            
-            nextEntry = zipInputStream.getNextEntry();
-            copiedFiles.add(fileAttempt);
-            uploadResults.addSuccessfulUpload(fileAttempt);
         }
         
         return uploadResults;
@@ -218,6 +265,20 @@ public class LamusWorkspaceUploader implements WorkspaceUploader {
     @Override
     public Collection<ImportProblem> processUploadedFiles(int workspaceID, Collection<File> uploadedFiles)
             throws WorkspaceException {
+        return processUploadedFiles(workspaceID, uploadedFiles, Collections.<CopiedFileInfo>emptyList());
+    }
+    
+    /**
+     * @see WorkspaceUploader#processUploadedFiles(int, java.util.Collection, java.util.Collection)
+     */
+    @Override
+    public Collection<ImportProblem> processUploadedFiles(int workspaceID, Collection<File> uploadedFiles, Collection<CopiedFileInfo> copiedFilesInfo)
+            throws WorkspaceException {
+        
+        Map<File, CopiedFileInfo> copiedFilesInfoByFile = new HashMap<>();
+        for(CopiedFileInfo copiedFileInfo : copiedFilesInfo) {
+            copiedFilesInfoByFile.put(copiedFileInfo.getFile(), copiedFileInfo);
+        }
         
         //collection containing all the upload problems
         Collection<ImportProblem> allUploadProblems = new ArrayList<>();
@@ -228,6 +289,9 @@ public class LamusWorkspaceUploader implements WorkspaceUploader {
         // collection containing the nodes that were eventually uploaded, to be used later for checking eventual links between them
         Collection<WorkspaceNode> uploadedNodes = new ArrayList<>();
         
+        // documents parsed here are kept, so that they don't need to be parsed again when looking for links
+        UploadProcessingContext processingContext = new UploadProcessingContext();
+        
         Workspace workspace = this.workspaceDao.getWorkspace(workspaceID);
         WorkspaceNode topNode = this.workspaceDao.getWorkspaceTopNode(workspaceID);
         File topNodeArchiveLocalFile;
@@ -239,139 +303,339 @@ public class LamusWorkspaceUploader implements WorkspaceUploader {
             throw new WorkspaceException(errorMessage, workspaceID, ex);
         }
         
-        for(File currentFile : uploadedFiles) {
-            
-            URI uploadedFileUri;
-            URL uploadedFileUrl;
-            try {
-                uploadedFileUri = currentFile.toURI();
-                uploadedFileUrl = uploadedFileUri.toURL();
-            } catch (MalformedURLException ex) {
-                String errorMessage = "Error retrieving URL from file " + currentFile.getPath();
-                logger.error(errorMessage, ex);
-                failedFiles.add(new FileImportProblem(currentFile, errorMessage, ex));
-                continue;
-            }
-            
-            TypecheckedResults typecheckedResults = null;
-            try {
-                typecheckedResults = this.nodeDataRetriever.triggerResourceFileCheck(uploadedFileUrl, currentFile.getName());
-            } catch(TypeCheckerException ex) {
-                String errorMessage = "Error while typechecking file [" + currentFile.getName() + "]";
-                failUploadForFile(currentFile, errorMessage, null, failedFiles);
-                continue;
-            }
-            
-            StringBuilder message = new StringBuilder();
-            boolean isArchivable = nodeDataRetriever.isCheckedResourceArchivable(typecheckedResults, topNodeArchiveLocalFile, message);
-            
-            if(!isArchivable) {
-                String errorMessage = "File [" + currentFile.getName() + "] not archivable: " + message;
-                failUploadForFile(currentFile, errorMessage, null, failedFiles);
-                continue;
-            } else {
-                String debugMessage = "File [" + currentFile.getName() + "] archivable: " + message;
-                logger.debug(debugMessage);
+        // the files are checked in parallel, but the results are handled (and the nodes added) in the same order as the files
+        List<File> filesToCheck = new ArrayList<>(uploadedFiles);
+        List<AbortableTask<UploadedFileCheck>> fileChecks = new ArrayList<>(filesToCheck.size());
+        try {
+            for(File currentFile : filesToCheck) {
+                CopiedFileInfo copiedFileInfo = copiedFilesInfoByFile.get(currentFile);
+                fileChecks.add(submitAbortableTask(
+                        new UploadedFileCheckTask(workspaceID, currentFile, copiedFileInfo, topNodeArchiveLocalFile)));
             }
             
-            //to be used if the file is metadata
-            MetadataDocument mdDocument = null;
-            
-            if(uploadedFileUrl.toString().endsWith("cmdi")) {
+            for(int i = 0; i < fileChecks.size(); i++) {
                 
-                try {
-                    mdDocument = metadataAPI.getMetadataDocument(uploadedFileUrl);
-                } catch (IOException | MetadataException ex) {
-                    String errorMessage = "Error retrieving metadata document for file [" + currentFile.getName() + "]";
-                    failUploadForFile(currentFile, errorMessage, null, failedFiles);
-                    continue;
+                UploadedFileCheck checkedFile = getFileCheckResult(workspaceID, filesToCheck.get(i), fileChecks.get(i), failedFiles);
+                
+                if(checkedFile == null) {
+                    // the nodes already added are kept, the remaining files are reported as not processed
+                    for(File unprocessedFile : filesToCheck.subList(i + 1, filesToCheck.size())) {
+                        String errorMessage = "File [" + unprocessedFile.getName() + "] not processed, since the processing of the uploaded files was aborted";
+                        logger.error(errorMessage);
+                        failedFiles.add(new FileImportProblem(unprocessedFile, errorMessage, null));
+                    }
+                    break;
                 }
                 
-                try {
-                    workspaceFileValidator.triggerSchemaValidationForFile(workspaceID, currentFile);
-                } catch(MetadataValidationException ex) {
-                    String issuesMessage = workspaceFileValidator.validationIssuesToString(ex.getValidationIssues());
-                    if(workspaceFileValidator.validationIssuesContainErrors(ex.getValidationIssues())) {
-                    	failUploadForFile(currentFile, issuesMessage, null, failedFiles);
-                    	continue;
+                if(checkedFile.errorMessage != null) {
+                    if(checkedFile.deleteFile) {
+                        failUploadForFile(checkedFile.file, checkedFile.errorMessage, checkedFile.errorCause, failedFiles);
                     } else {
-                        logger.warn(issuesMessage);
+                        logger.error(checkedFile.errorMessage, checkedFile.errorCause);
+                        failedFiles.add(new FileImportProblem(checkedFile.file, checkedFile.errorMessage, checkedFile.errorCause));
                     }
-                } catch(CMDIValidatorInitException ex) {
-                    String errorMessage = "Problems with the metadata validation when processing [" + currentFile.getName() + "]";
-                    failUploadForFile(currentFile, errorMessage, ex, failedFiles);
                     continue;
                 }
                 
-                logger.debug("Metadata API validation successful for file " + currentFile.getName());
+                if(checkedFile.mdDocument != null) {
+                    completeMetadataFileCheck(checkedFile);
+                }
                 
-                try{
-                    workspaceFileValidator.triggerSchematronValidationForFile(workspaceID, currentFile);
-                } catch(MetadataValidationException ex) {
-                    String issuesMessage = workspaceFileValidator.validationIssuesToString(ex.getValidationIssues());
-                    if(workspaceFileValidator.validationIssuesContainErrors(ex.getValidationIssues())) {
-                        failUploadForFile(currentFile, issuesMessage, null, failedFiles);
-                        continue;
-                    } else {
-                        logger.warn(issuesMessage);
-                    }
+                WorkspaceNode uploadedNode = this.workspaceNodeFactory.getNewWorkspaceNodeFromFile(
+                        workspaceID, checkedFile.archiveUri, checkedFile.originUri, checkedFile.fileUrl,
+                        checkedFile.profileSchemaURI, checkedFile.documentName,
+                        checkedFile.nodeMimetype, checkedFile.nodeType, WorkspaceNodeStatus.UPLOADED, false);
+                
+                this.workspaceDao.addWorkspaceNode(uploadedNode);
+                
+                uploadedNodes.add(uploadedNode);
+                
+                if(checkedFile.mdDocument != null && !checkedFile.documentChangedOnDisk) {
+                    processingContext.addMetadataDocument(checkedFile.fileUrl, checkedFile.mdDocument);
                 }
             }
+        } finally {
+            // no check should still be running once the nodes are linked
+            abortTasks(fileChecks);
+        }
+        
+        //Searching for links among the uploaded files
+        Collection<ImportProblem> failedLinks = workspaceUploadHelper.assureLinksInWorkspace(workspace, uploadedNodes, processingContext);
+        
+        allUploadProblems.addAll(failedFiles);
+        allUploadProblems.addAll(failedLinks);
+        
+        return allUploadProblems;
+    }
+    
+    
+    /**
+     * Checks the given uploaded file (typecheck, archivability, metadata validation)
+     * and retrieves most of the information needed to create its node.
+     * Nothing is changed in the database or in the upload directory.
+     */
+    private UploadedFileCheck checkUploadedFile(int workspaceID, File currentFile, CopiedFileInfo copiedFileInfo, File topNodeArchiveLocalFile) {
+        
+        UploadedFileCheck checkedFile = new UploadedFileCheck(currentFile);
+        
+        URI uploadedFileUri;
+        URL uploadedFileUrl;
+        try {
+            uploadedFileUri = currentFile.toURI();
+            uploadedFileUrl = uploadedFileUri.toURL();
+        } catch (MalformedURLException ex) {
+            String errorMessage = "Error retrieving URL from file " + currentFile.getPath();
+            return checkedFile.failed(errorMessage, ex, false);
+        }
+        checkedFile.fileUrl = uploadedFileUrl;
+        
+        TypecheckedResults typecheckedResults = null;
+        try {
+            typecheckedResults = this.nodeDataRetriever.triggerResourceFileCheck(uploadedFileUrl, currentFile.getName(), copiedFileInfo);
+        } catch(TypeCheckerException ex) {
+            String errorMessage = "Error while typechecking file [" + currentFile.getName() + "]";
+            return checkedFile.failed(errorMessage, null, true);
+        }
+        
+        StringBuilder message = new StringBuilder();
+        boolean isArchivable = nodeDataRetriever.isCheckedResourceArchivable(typecheckedResults, topNodeArchiveLocalFile, message);
+        
+        if(!isArchivable) {
+            String errorMessage = "File [" + currentFile.getName() + "] not archivable: " + message;
+            return checkedFile.failed(errorMessage, null, true);
+        } else {
+            String debugMessage = "File [" + currentFile.getName() + "] archivable: " + message;
+            logger.debug(debugMessage);
+        }
+        
+        //to be used if the file is metadata
+        MetadataDocument mdDocument = null;
+        
+        if(uploadedFileUrl.toString().endsWith("cmdi")) {
             
-            String nodeMimetype = typecheckedResults.getCheckedMimetype();
-            WorkspaceNodeType nodeType = nodeUtil.convertMimetype(nodeMimetype);
+            try {
+                mdDocument = metadataAPI.get().getMetadataDocument(uploadedFileUrl);
+            } catch (IOException | MetadataException ex) {
+                String errorMessage = "Error retrieving metadata document for file [" + currentFile.getName() + "]";
+                return checkedFile.failed(errorMessage, null, true);
+            }
             
-            URI archiveUri = null;
-            if(uploadedFileUrl.toString().endsWith("cmdi")) {
-                archiveUri = metadataApiBridge.getSelfHandleFromDocument(mdDocument);
-                if(archiveUri != null && !archiveUri.toString().trim().isEmpty()) {
-                    try {
-                    archiveUri = handleParser.prepareAndValidateHandleWithHdlPrefix(archiveUri);
-                    } catch(IllegalArgumentException ex) {
-                        try {
-                            // invalid handle - should be removed
-                            archiveUri = null;
-                            metadataApiBridge.removeSelfHandleAndSaveDocument(uploadedFileUrl);
-                        } catch (IOException | TransformerException | MetadataException ex1) {
-                            logger.error("Couldn't remove invalid self-handle from file [" + uploadedFileUrl + "]", ex1);
-                        }
-                    }
+            try {
+                workspaceFileValidator.triggerSchemaValidationForFile(workspaceID, currentFile);
+            } catch(MetadataValidationException ex) {
+                String issuesMessage = workspaceFileValidator.validationIssuesToString(ex.getValidationIssues());
+                if(workspaceFileValidator.validationIssuesContainErrors(ex.getValidationIssues())) {
+                    return checkedFile.failed(issuesMessage, null, true);
+                } else {
+                    logger.warn(issuesMessage);
                 }
-            }
-            URI originUri = null;
-            if(archiveFileLocationProvider.isFileInOrphansDirectory(currentFile)) {
-                originUri = uploadedFileUri;
+            } catch(CMDIValidatorInitException ex) {
+                String errorMessage = "Problems with the metadata validation when processing [" + currentFile.getName() + "]";
+                return checkedFile.failed(errorMessage, ex, true);
             }
             
-            URI profileSchemaURI = mdDocument != null ? mdDocument.getDocumentType().getSchemaLocation() : null;
+            logger.debug("Metadata API validation successful for file " + currentFile.getName());
             
-            String documentName = null;
-            if(mdDocument != null) {
-                documentName = metadataApiBridge.getDocumentNameForProfile(mdDocument, profileSchemaURI);
-                if(documentName == null) {
-                    documentName = mdDocument.getDisplayValue();
+            try{
+                workspaceFileValidator.triggerSchematronValidationForFile(workspaceID, currentFile);
+            } catch(MetadataValidationException ex) {
+                String issuesMessage = workspaceFileValidator.validationIssuesToString(ex.getValidationIssues());
+                if(workspaceFileValidator.validationIssuesContainErrors(ex.getValidationIssues())) {
+                    return checkedFile.failed(issuesMessage, null, true);
+                } else {
+                    logger.warn(issuesMessage);
                 }
             }
-            
-            WorkspaceNode uploadedNode = this.workspaceNodeFactory.getNewWorkspaceNodeFromFile(
-                    workspaceID, archiveUri, originUri, uploadedFileUrl, profileSchemaURI, documentName,
-                    nodeMimetype, nodeType, WorkspaceNodeStatus.UPLOADED, false);
+        }
         
-            this.workspaceDao.addWorkspaceNode(uploadedNode);
-            
-            uploadedNodes.add(uploadedNode);
+        checkedFile.nodeMimetype = typecheckedResults.getCheckedMimetype();
+        checkedFile.nodeType = nodeUtil.convertMimetype(checkedFile.nodeMimetype);
+        
+        if(archiveFileLocationProvider.isFileInOrphansDirectory(currentFile)) {
+            checkedFile.originUri = uploadedFileUri;
         }
         
-        //Searching for links among the uploaded files
-        Collection<ImportProblem> failedLinks = workspaceUploadHelper.assureLinksInWorkspace(workspace, uploadedNodes);
+        checkedFile.mdDocument = mdDocument;
         
-        allUploadProblems.addAll(failedFiles);
-        allUploadProblems.addAll(failedLinks);
+        return checkedFile;
+    }
+    
+    /**
+     * Retrieves the remaining information needed to create the node of a checked metadata file
+     * (self-handle, document name), which needs the metadata API bridge
+     * and is therefore done in the calling thread.
+     * An invalid self-handle is removed from the file.
+     */
+    private void completeMetadataFileCheck(UploadedFileCheck checkedFile) {
         
-        return allUploadProblems;
+        MetadataDocument mdDocument = checkedFile.mdDocument;
+        URL uploadedFileUrl = checkedFile.fileUrl;
+        
+        URI archiveUri = metadataApiBridge.getSelfHandleFromDocument(mdDocument);
+        if(archiveUri != null && !archiveUri.toString().trim().isEmpty()) {
+            try {
+                archiveUri = handleParser.prepareAndValidateHandleWithHdlPrefix(archiveUri);
+            } catch(IllegalArgumentException ex) {
+                try {
+                    // invalid handle - should be removed
+                    archiveUri = null;
+                    // the file changes, so the document parsed before can't be reused later
+                    checkedFile.documentChangedOnDisk = true;
+                    metadataApiBridge.removeSelfHandleAndSaveDocument(uploadedFileUrl);
+                } catch (IOException | TransformerException | MetadataException ex1) {
+                    logger.error("Couldn't remove invalid self-handle from file [" + uploadedFileUrl + "]", ex1);
+                }
+            }
+        }
+        checkedFile.archiveUri = archiveUri;
+        
+        checkedFile.profileSchemaURI = mdDocument.getDocumentType().getSchemaLocation();
+        
+        checkedFile.documentName = metadataApiBridge.getDocumentNameForProfile(mdDocument, checkedFile.profileSchemaURI);
+        if(checkedFile.documentName == null) {
+            checkedFile.documentName = mdDocument.getDisplayValue();
+        }
+    }
+    
+    /**
+     * Retrieves the outcome of the check of the given file. If the check itself failed
+     * (or the thread was interrupted), the file is added to the failed ones and null is returned.
+     */
+    private UploadedFileCheck getFileCheckResult(int workspaceID, File file, AbortableTask<UploadedFileCheck> fileCheck, Collection<ImportProblem> failedFiles) {
+        try {
+            return fileCheck.get();
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            String errorMessage = "Interrupted while processing uploaded files in workspace " + workspaceID;
+            logger.error(errorMessage, ex);
+            failedFiles.add(new FileImportProblem(file, errorMessage, ex));
+        } catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            String errorMessage = "Error processing uploaded file [" + file.getName() + "] in workspace " + workspaceID;
+            logger.error(errorMessage, cause);
+            failedFiles.add(new FileImportProblem(file, errorMessage, (Exception) cause));
+        }
+        return null;
     }
 
     
+    private void checkZipEntries(List<? extends ZipEntry> entries) throws IOException, DisallowedPathException {
+        
+        if(entries.size() > maxZipUploadEntries) {
+            String message = "Zip file contains " + entries.size() + " entries, more than the allowed " + maxZipUploadEntries;
+            logger.warn(message);
+            throw new IOException(message);
+        }
+        
+        long totalSize = 0;
+        for(ZipEntry entry : entries) {
+            
+            String entryName = entry.getName();
+            
+            assureFilenameIsValid(entryName);
+            
+            try {
+                workspaceDirectoryHandler.ensurePathIsAllowed(entryName);
+            } catch(DisallowedPathException ex) {
+                logger.warn(ex.getMessage());
+                throw ex;
+            }
+            
+            if(entry.getSize() > 0) {
+                totalSize += entry.getSize();
+            }
+        }
+        
+        if(totalSize > maxZipUploadSize) {
+            String message = "Zip file contents have " + totalSize + " bytes, more than the allowed " + maxZipUploadSize;
+            logger.warn(message);
+            throw new IOException(message);
+        }
+    }
+    
+    /**
+     * Extracts the given entries in parallel, returning the information of the copied files
+     * in the same order as the entries. If any extraction fails (or the thread is interrupted),
+     * the remaining ones are aborted. All the extractions are finished before
+     * returning or throwing an exception, so that nothing is still being written afterwards.
+     */
+    private List<CopiedFileInfo> extractZipEntries(final ZipFile zip, List<ZipEntry> entries, List<File> targetFiles) throws IOException {
+        
+        List<AbortableTask<CopiedFileInfo>> extractions = new ArrayList<>(entries.size());
+        for(int i = 0; i < entries.size(); i++) {
+            final ZipEntry entry = entries.get(i);
+            final File targetFile = targetFiles.get(i);
+            extractions.add(submitAbortableTask(new Callable<CopiedFileInfo>() {
+                @Override
+                public CopiedFileInfo call() throws IOException {
+                    // the declared size is not trusted, but the entry is not allowed to exceed it
+                    long maxEntrySize = entry.getSize() >= 0 ? entry.getSize() : maxZipUploadSize;
+                    try (InputStream entryStream = new SizeLimitedInputStream(zip.getInputStream(entry), maxEntrySize, entry.getName())) {
+                        return workspaceFileHandler.copyInputStreamToTargetFile(entryStream, targetFile);
+                    }
+                }
+            }));
+        }
+        
+        List<CopiedFileInfo> copiedInfo = new ArrayList<>(entries.size());
+        try {
+            for(AbortableTask<CopiedFileInfo> extraction : extractions) {
+                copiedInfo.add(extraction.get());
+            }
+        } catch(InterruptedException ex) {
+            abortTasks(extractions);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while extracting zip file");
+        } catch(ExecutionException ex) {
+            abortTasks(extractions);
+            Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            IOException failure = cause instanceof IOException
+                    ? (IOException) cause : new IOException("Error extracting zip file", cause);
+            logger.error("Error extracting zip file", failure);
+            throw failure;
+        }
+        
+        return copiedInfo;
+    }
+    
+    private <T> AbortableTask<T> submitAbortableTask(Callable<T> callable) {
+        AbortableTask<T> task = new AbortableTask<>(callable);
+        task.future = uploadProcessingExecutorService.submit(task);
+        return task;
+    }
+    
+    /**
+     * Aborts all the given tasks and waits until none of them is running anymore.
+     */
+    private <T> void abortTasks(Collection<AbortableTask<T>> tasks) {
+        for(AbortableTask<T> task : tasks) {
+            task.abort();
+        }
+        for(AbortableTask<T> task : tasks) {
+            task.awaitFinished();
+        }
+    }
+    
+    private void addMissingDirectories(File directory, List<File> createdDirectories) {
+        
+        List<File> missingDirectories = new ArrayList<>();
+        for(File current = directory; current != null && !current.exists(); current = current.getParentFile()) {
+            missingDirectories.add(current);
+        }
+        // top directory first, as they will be created
+        Collections.reverse(missingDirectories);
+        createdDirectories.addAll(missingDirectories);
+    }
+    
     private void failUploadForFile(File file, String errorMessage, Exception cause, Collection<ImportProblem> failedFiles) {
         logger.error(errorMessage);
         failedFiles.add(new FileImportProblem(file, errorMessage, cause));
@@ -422,4 +686,162 @@ public class LamusWorkspaceUploader implements WorkspaceUploader {
             throw new DisallowedPathException(filenameToUse, message);
         }
     }
+    
+    
+    /**
+     * Stream that fails if more than the given number of bytes is read from it,
+     * to protect against zip entries larger than declared.
+     */
+    private static class SizeLimitedInputStream extends FilterInputStream {
+        
+        private final long maxSize;
+        private final String entryName;
+        private long readSize;
+        
+        private SizeLimitedInputStream(InputStream in, long maxSize, String entryName) {
+            super(in);
+            this.maxSize = maxSize;
+            this.entryName = entryName;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if(result != -1) {
+                countRead(1);
+            }
+            return result;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if(result > 0) {
+                countRead(result);
+            }
+            return result;
+        }
+        
+        private void countRead(int bytes) throws IOException {
+            readSize += bytes;
+            if(readSize > maxSize) {
+                throw new IOException("Zip entry " + entryName + " is larger than allowed (" + maxSize + " bytes)");
+            }
+        }
+    }
+    
+    /**
+     * Task run by one of the upload processing threads, which can be aborted:
+     * if it didn't start yet, it is skipped, otherwise it is interrupted.
+     * Unlike with a cancelled future, it is possible to wait until it is
+     * really finished (e.g. not writing into the upload directory anymore).
+     */
+    private static class AbortableTask<T> implements Callable<T> {
+        
+        private final Callable<T> callable;
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private Future<T> future;
+        
+        private AbortableTask(Callable<T> callable) {
+            this.callable = callable;
+        }
+        
+        @Override
+        public T call() throws Exception {
+            if(!started.compareAndSet(false, true)) {
+                // aborted before starting
+                return null;
+            }
+            try {
+                return callable.call();
+            } finally {
+                finished.countDown();
+            }
+        }
+        
+        private T get() throws InterruptedException, ExecutionException {
+            return future.get();
+        }
+        
+        private void abort() {
+            if(started.compareAndSet(false, true)) {
+                finished.countDown();
+            } else {
+                future.cancel(true);
+            }
+        }
+        
+        private void awaitFinished() {
+            boolean interrupted = false;
+            while(true) {
+                try {
+                    finished.await();
+                    break;
+                } catch(InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+            if(interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Checks one uploaded file, in one of the upload processing threads.
+     */
+    private class UploadedFileCheckTask implements Callable<UploadedFileCheck> {
+        
+        private final int workspaceID;
+        private final File file;
+        private final CopiedFileInfo copiedFileInfo;
+        private final File topNodeArchiveLocalFile;
+        
+        private UploadedFileCheckTask(int workspaceID, File file, CopiedFileInfo copiedFileInfo, File topNodeArchiveLocalFile) {
+            this.workspaceID = workspaceID;
+            this.file = file;
+            this.copiedFileInfo = copiedFileInfo;
+            this.topNodeArchiveLocalFile = topNodeArchiveLocalFile;
+        }
+        
+        @Override
+        public UploadedFileCheck call() {
+            return checkUploadedFile(workspaceID, file, copiedFileInfo, topNodeArchiveLocalFile);
+        }
+    }
+    
+    /**
+     * Outcome of the check of one uploaded file: either the reason for its failure
+     * or the information needed to create its node.
+     */
+    private static class UploadedFileCheck {
+        
+        private final File file;
+        
+        private String errorMessage;
+        private Exception errorCause;
+        private boolean deleteFile;
+        
+        private URL fileUrl;
+        private String nodeMimetype;
+        private WorkspaceNodeType nodeType;
+        private URI archiveUri;
+        private URI originUri;
+        private URI profileSchemaURI;
+        private String documentName;
+        private MetadataDocument mdDocument;
+        private boolean documentChangedOnDisk;
+        
+        private UploadedFileCheck(File file) {
+            this.file = file;
+        }
+        
+        private UploadedFileCheck failed(String errorMessage, Exception errorCause, boolean deleteFile) {
+            this.errorMessage = errorMessage;
+            this.errorCause = errorCause;
+            this.deleteFile = deleteFile;
+            return this;
+        }
+    }
 }
@@ -19,6 +19,7 @@ package nl.mpi.lamus.workspace.upload.implementation;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.workspace.importing.implementation.ImportProblem;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -30,11 +31,13 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 public class ZipUploadResult {
     
     private final Collection<File> successfulUploads;
+    private final Collection<CopiedFileInfo> copiedFilesInfo;
     private final Collection<ImportProblem> failedUploads;
     
     
     public ZipUploadResult() {
         successfulUploads = new ArrayList<>();
+        copiedFilesInfo = new ArrayList<>();
         failedUploads = new ArrayList<>();
     }
     
@@ -43,8 +46,17 @@ public class ZipUploadResult {
         return successfulUploads;
     }
     
-    public void addSuccessfulUpload(File file) {
-        successfulUploads.add(file);
+    /**
+     * @return information calculated while extracting the successfully uploaded files,
+     *  to be passed on when processing them
+     */
+    public Collection<CopiedFileInfo> getCopiedFilesInfo() {
+        return copiedFilesInfo;
+    }
+    
+    public void addSuccessfulUpload(CopiedFileInfo copiedFileInfo) {
+        successfulUploads.add(copiedFileInfo.getFile());
+        copiedFilesInfo.add(copiedFileInfo);
     }
     
     public Collection<ImportProblem> getFailedUploads() {
@@ -61,6 +73,7 @@ public class ZipUploadResult {
         
         HashCodeBuilder hashCodeB = new HashCodeBuilder()
                 .append(this.successfulUploads)
+                .append(this.copiedFilesInfo)
                 .append(this.failedUploads);
         
         return hashCodeB.toHashCode();
@@ -80,6 +93,7 @@ public class ZipUploadResult {
         
         EqualsBuilder equalsB = new EqualsBuilder()
                 .append(this.successfulUploads, other.getSuccessfulUploads())
+                .append(this.copiedFilesInfo, other.getCopiedFilesInfo())
                 .append(this.failedUploads, other.getFailedUploads());
         
         return equalsB.isEquals();
@@ -9,4 +9,6 @@ DROP TABLE workspace CASCADE;
 DROP TABLE node CASCADE;
 DROP TABLE node_lock CASCADE;
 DROP TABLE node_link CASCADE;
-DROP TABLE node_replacement CASCADE;
\ No newline at end of file
+DROP TABLE node_replacement CASCADE;
+DROP TABLE typecheck_result CASCADE;
+DROP TABLE schema_version CASCADE;
@@ -0,0 +1,46 @@
+-- Upgrades the lamus2 database structure from version 1.6.2 (or earlier) to 1.6.3.
+-- Runs in a single transaction, so running it a second time fails without changing anything.
+
+BEGIN;
+
+CREATE TABLE schema_version (
+        version                     varchar                         NOT NULL,
+        description                 varchar,
+        applied_on                  timestamp(6) with time zone     NOT NULL DEFAULT now(),
+        PRIMARY KEY (version));
+
+INSERT INTO schema_version (version, description) VALUES ('1.6.3', 'Secondary indexes, typecheck result cache');
+
+CREATE INDEX workspace_user_status_idx ON workspace (user_id, status);
+CREATE INDEX workspace_status_idx ON workspace (status);
+
+CREATE INDEX node_workspace_idx ON node (workspace_id);
+CREATE INDEX node_archive_uri_idx ON node (archive_uri);
+-- the predicate must match the status condition used by the DAO for unlinked nodes
+CREATE INDEX node_workspace_active_idx ON node (workspace_id)
+    WHERE status NOT IN ('DELETED', 'EXTERNAL_DELETED', 'REPLACED');
+
+CREATE INDEX node_lock_workspace_idx ON node_lock (workspace_id);
+
+CREATE INDEX node_link_child_idx ON node_link (child_workspace_node_id);
+
+CREATE INDEX node_replacement_new_idx ON node_replacement (new_node_id);
+
+CREATE TABLE typecheck_result (
+        checksum                    varchar                         NOT NULL,
+        file_size                   bigint                          NOT NULL,
+        file_extension              varchar                         NOT NULL,
+        configuration_version       varchar                         NOT NULL,
+        mimetype                    varchar                         NOT NULL,
+        analysis                    varchar,
+        judgement                   varchar                         NOT NULL,
+        checked_on                  timestamp(6) with time zone     NOT NULL,
+        PRIMARY KEY (checksum, file_size, file_extension, configuration_version));
+
+ANALYZE workspace;
+ANALYZE node;
+ANALYZE node_lock;
+ANALYZE node_link;
+ANALYZE node_replacement;
+
+COMMIT;
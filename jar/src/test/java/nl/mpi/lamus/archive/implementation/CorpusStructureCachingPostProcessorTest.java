@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.archive.implementation;
+
+import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
+import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
+import nl.mpi.lamus.archive.CorpusStructureCache;
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ *
+ * @author guisil
+ */
+public class CorpusStructureCachingPostProcessorTest {
+    
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    
+    @Mock CorpusStructureCache mockCorpusStructureCache;
+    @Mock CorpusStructureProvider mockCorpusStructureProvider;
+    @Mock CorpusStructureProvider mockCachingCorpusStructureProvider;
+    @Mock NodeResolver mockNodeResolver;
+    @Mock NodeResolver mockCachingNodeResolver;
+    
+    private BeanPostProcessor postProcessor;
+    
+    public CorpusStructureCachingPostProcessorTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+        postProcessor = new CorpusStructureCachingPostProcessor(mockCorpusStructureCache);
+    }
+    
+    @After
+    public void tearDown() {
+    }
+
+
+    @Test
+    public void corpusStructureProviderDecorated() {
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureCache).decorate(mockCorpusStructureProvider); will(returnValue(mockCachingCorpusStructureProvider));
+        }});
+        
+        assertSame("Processed bean different from expected", mockCorpusStructureProvider,
+                postProcessor.postProcessBeforeInitialization(mockCorpusStructureProvider, "corpusStructureProvider"));
+        assertSame("Processed bean different from expected", mockCachingCorpusStructureProvider,
+                postProcessor.postProcessAfterInitialization(mockCorpusStructureProvider, "corpusStructureProvider"));
+    }
+    
+    @Test
+    public void nodeResolverDecorated() {
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureCache).decorate(mockNodeResolver); will(returnValue(mockCachingNodeResolver));
+        }});
+        
+        assertSame("Processed bean different from expected", mockCachingNodeResolver,
+                postProcessor.postProcessAfterInitialization(mockNodeResolver, "nodeResolver"));
+    }
+    
+    @Test
+    public void otherBeansNotDecorated() {
+        
+        Object someBean = new Object();
+        
+        assertSame("Processed bean different from expected", someBean,
+                postProcessor.postProcessAfterInitialization(someBean, "someBean"));
+    }
+}
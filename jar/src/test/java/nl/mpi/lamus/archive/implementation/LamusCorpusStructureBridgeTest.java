@@ -69,6 +69,8 @@ public class LamusCorpusStructureBridgeTest {
     private final String corpusstructureDirectoryName = "Corpusstructure";
     private final String metadataDirectoryName = "Metadata";
     
+    private final int workspaceID = 10;
+    
     
     private CorpusStructureBridge corpusStructureBridge;
     
@@ -111,6 +113,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             
             oneOf(mockCorpusStructureProvider).getNode(nodeArchiveURI); will(returnValue(mockCorpusNode));
             oneOf(mockNodeResolver).getLocalFile(mockCorpusNode); will(returnValue(localFile));
@@ -145,6 +148,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             allowing(mockParentCorpusNode).getNodeURI(); will(returnValue(parentArchiveURI));
             allowing(mockParentCorpusNode).getName(); will(returnValue(parentNodeName));
             allowing(mockArchiveFileHelper).correctPathElement(parentNodeName, "getCorpusNamePathToClosestTopNode"); will(returnValue(parentNodeName));
@@ -187,6 +191,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             allowing(mockParentCorpusNode).getNodeURI(); will(returnValue(parentArchiveURI));
             allowing(mockParentCorpusNode).getName(); will(returnValue(parentNodeName));
             allowing(mockArchiveFileHelper).correctPathElement(parentNodeName, "getCorpusNamePathToClosestTopNode"); will(returnValue(parentNodeName));
@@ -234,6 +239,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             allowing(mockParentCorpusNode).getNodeURI(); will(returnValue(parentArchiveURI));
             allowing(mockGrandParentCorpusNode).getNodeURI(); will(returnValue(grandParentArchiveURI));
             allowing(mockParentCorpusNode).getName(); will(returnValue(parentNodeName));
@@ -289,6 +295,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             allowing(mockParentCorpusNode).getNodeURI(); will(returnValue(parentArchiveURI));
             allowing(mockGrandParentCorpusNode).getNodeURI(); will(returnValue(grandParentArchiveURI));
             allowing(mockParentCorpusNode).getName(); will(returnValue(parentNodeName));
@@ -338,6 +345,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             allowing(mockParentCorpusNode).getNodeURI(); will(returnValue(parentArchiveURI));
             allowing(mockParentCorpusNode).getName(); will(returnValue(parentNodeName));
             allowing(mockArchiveFileHelper).correctPathElement(parentNodeName, "getCorpusNamePathToClosestTopNode"); will(returnValue(parentNodeName));
@@ -385,6 +393,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             allowing(mockParentCorpusNode).getNodeURI(); will(returnValue(parentArchiveURI));
             allowing(mockParentCorpusNode).getName(); will(returnValue(parentNodeName));
             allowing(mockArchiveFileHelper).correctPathElement(parentNodeName, "getCorpusNamePathToClosestTopNode"); will(returnValue(parentNodeName));
@@ -444,6 +453,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             allowing(mockParentCorpusNode).getNodeURI(); will(returnValue(parentArchiveURI));
             allowing(mockGrandParentCorpusNode).getNodeURI(); will(returnValue(grandParentArchiveURI));
             allowing(mockGreatGrandParentCorpusNode).getNodeURI(); will(returnValue(greatGrandParentArchiveURI));
@@ -485,6 +495,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             
             oneOf(mockCorpusStructureProvider).getNode(nodeArchiveURI); will(returnValue(null));
         }});
@@ -503,6 +514,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             
             oneOf(mockCorpusStructureProvider).getNode(nodeArchiveURI); will(returnValue(mockCorpusNode));
             oneOf(mockNodeResolver).getLocalFile(mockCorpusNode); will(returnValue(localFile));
@@ -526,6 +538,7 @@ public class LamusCorpusStructureBridgeTest {
         
         context.checking(new Expectations() {{
             allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
             
             oneOf(mockCorpusStructureProvider).getNode(nodeArchiveURI); will(returnValue(mockCorpusNode));
             oneOf(mockNodeResolver).getLocalFile(mockCorpusNode); will(returnValue(localFile));
@@ -539,6 +552,174 @@ public class LamusCorpusStructureBridgeTest {
         assertNull("Result should be null", result);
     }
     
+    @Test
+    public void getCorpusNamePathToClosestTopNode_CacheOpen_SiblingsShareAncestors() {
+        
+        final WorkspaceNode mockOtherNode = context.mock(WorkspaceNode.class, "otherNode");
+        final CorpusNode mockOtherCorpusNode = context.mock(CorpusNode.class, "otherCorpusNode");
+        
+        final URI nodeArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final File localFile = new File("/archive/root/TopNode/OtherNode/Metadata/session.cmdi");
+        final URI otherNodeArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final File otherLocalFile = new File("/archive/root/TopNode/OtherNode/Metadata/othersession.cmdi");
+        
+        final URI parentArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final File parentLocalFile = new File("/archive/root/TopNode/Corpusstructure/othernode.cmdi");
+        final String parentNodeName = "OtherNode";
+        
+        final URI grandParentArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final File grandParentLocalFile = new File("/archive/root/TopNode/Corpusstructure/topnode.cmdi");
+        final String grandParentNodeName = "TopNode";
+        
+        final URI greatGrandParentArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final File greatGrandParentLocalFile = new File("/archive/root/Corpusstructure/root.cmdi");
+        
+        final String expectedPath = "TopNode/OtherNode";
+        
+        context.checking(new Expectations() {{
+            allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockOtherNode).getArchiveURI(); will(returnValue(otherNodeArchiveURI));
+            allowing(mockOtherNode).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockParentCorpusNode).getName(); will(returnValue(parentNodeName));
+            allowing(mockArchiveFileHelper).correctPathElement(parentNodeName, "getCorpusNamePathToClosestTopNode"); will(returnValue(parentNodeName));
+            allowing(mockGrandParentCorpusNode).getName(); will(returnValue(grandParentNodeName));
+            allowing(mockArchiveFileHelper).correctPathElement(grandParentNodeName, "getCorpusNamePathToClosestTopNode"); will(returnValue(grandParentNodeName));
+            
+            oneOf(mockCorpusStructureProvider).getNode(nodeArchiveURI); will(returnValue(mockCorpusNode));
+            oneOf(mockNodeResolver).getLocalFile(mockCorpusNode); will(returnValue(localFile));
+            oneOf(mockCorpusStructureProvider).getCanonicalParent(nodeArchiveURI); will(returnValue(parentArchiveURI));
+            
+            oneOf(mockCorpusStructureProvider).getNode(otherNodeArchiveURI); will(returnValue(mockOtherCorpusNode));
+            oneOf(mockNodeResolver).getLocalFile(mockOtherCorpusNode); will(returnValue(otherLocalFile));
+            oneOf(mockCorpusStructureProvider).getCanonicalParent(otherNodeArchiveURI); will(returnValue(parentArchiveURI));
+            
+            // the shared ancestors are only retrieved once
+            oneOf(mockCorpusStructureProvider).getNode(parentArchiveURI); will(returnValue(mockParentCorpusNode));
+            oneOf(mockNodeResolver).getLocalFile(mockParentCorpusNode); will(returnValue(parentLocalFile));
+            oneOf(mockCorpusStructureProvider).getCanonicalParent(parentArchiveURI); will(returnValue(grandParentArchiveURI));
+            oneOf(mockArchiveFileLocationProvider).getFolderNameBeforeCorpusstructure(FilenameUtils.getFullPath(parentLocalFile.getAbsolutePath())); will(returnValue(grandParentNodeName));
+            
+            oneOf(mockCorpusStructureProvider).getNode(grandParentArchiveURI); will(returnValue(mockGrandParentCorpusNode));
+            oneOf(mockNodeResolver).getLocalFile(mockGrandParentCorpusNode); will(returnValue(grandParentLocalFile));
+            oneOf(mockCorpusStructureProvider).getCanonicalParent(grandParentArchiveURI); will(returnValue(greatGrandParentArchiveURI));
+            
+            oneOf(mockCorpusStructureProvider).getNode(greatGrandParentArchiveURI); will(returnValue(mockGreatGrandParentCorpusNode));
+            oneOf(mockNodeResolver).getLocalFile(mockGreatGrandParentCorpusNode); will(returnValue(greatGrandParentLocalFile));
+        }});
+        
+        corpusStructureBridge.openAncestorPathCache(workspaceID);
+        String result = corpusStructureBridge.getCorpusNamePathToClosestTopNode(mockNode);
+        String otherResult = corpusStructureBridge.getCorpusNamePathToClosestTopNode(mockOtherNode);
+        corpusStructureBridge.closeAncestorPathCache(workspaceID);
+        
+        assertEquals("Result different from expected", expectedPath, result);
+        assertEquals("Result different from expected", expectedPath, otherResult);
+    }
+    
+    @Test
+    public void getCorpusNamePathToClosestTopNode_CacheClosed_AncestorsRetrievedAgain() {
+        
+        final URI nodeArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final File localFile = new File("/archive/root/TopNode/Corpusstructure/topnode.cmdi");
+        
+        final URI parentArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final File parentLocalFile = new File("/archive/root/Corpusstructure/root.cmdi");
+        
+        context.checking(new Expectations() {{
+            allowing(mockNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
+            allowing(mockNode).getWorkspaceID(); will(returnValue(workspaceID));
+            
+            exactly(2).of(mockCorpusStructureProvider).getNode(nodeArchiveURI); will(returnValue(mockCorpusNode));
+            exactly(2).of(mockNodeResolver).getLocalFile(mockCorpusNode); will(returnValue(localFile));
+            exactly(2).of(mockCorpusStructureProvider).getCanonicalParent(nodeArchiveURI); will(returnValue(parentArchiveURI));
+            exactly(2).of(mockCorpusStructureProvider).getNode(parentArchiveURI); will(returnValue(mockParentCorpusNode));
+            exactly(2).of(mockNodeResolver).getLocalFile(mockParentCorpusNode); will(returnValue(parentLocalFile));
+        }});
+        
+        corpusStructureBridge.openAncestorPathCache(workspaceID);
+        String firstResult = corpusStructureBridge.getCorpusNamePathToClosestTopNode(mockNode);
+        corpusStructureBridge.closeAncestorPathCache(workspaceID);
+        
+        String secondResult = corpusStructureBridge.getCorpusNamePathToClosestTopNode(mockNode);
+        
+        assertEquals("Result different from expected", "", firstResult);
+        assertEquals("Result different from expected", "", secondResult);
+    }
+    
+    @Test
+    public void getCorpusNamePathToClosestTopNode_CacheOpen_DeepTreeWithManySessions() {
+        
+        final int depth = 20;
+        final int numberOfSessions = 200;
+        
+        final URI rootArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final URI topNodeArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        final File topNodeLocalFile = new File("/archive/root/TopNode/Corpusstructure/topnode.cmdi");
+        
+        final StringBuilder expectedPathBuilder = new StringBuilder("TopNode");
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureProvider).getNode(rootArchiveURI); will(returnValue(mockGreatestGrandParentCorpusNode));
+            oneOf(mockNodeResolver).getLocalFile(mockGreatestGrandParentCorpusNode); will(returnValue(new File("/archive/root/Corpusstructure/root.cmdi")));
+            
+            oneOf(mockCorpusStructureProvider).getNode(topNodeArchiveURI); will(returnValue(mockGreatGrandParentCorpusNode));
+            oneOf(mockNodeResolver).getLocalFile(mockGreatGrandParentCorpusNode); will(returnValue(topNodeLocalFile));
+            oneOf(mockCorpusStructureProvider).getCanonicalParent(topNodeArchiveURI); will(returnValue(rootArchiveURI));
+            allowing(mockGreatGrandParentCorpusNode).getName(); will(returnValue("TopNode"));
+            allowing(mockArchiveFileHelper).correctPathElement("TopNode", "getCorpusNamePathToClosestTopNode"); will(returnValue("TopNode"));
+            oneOf(mockArchiveFileLocationProvider).getFolderNameBeforeCorpusstructure(FilenameUtils.getFullPath(topNodeLocalFile.getAbsolutePath())); will(returnValue("TopNode"));
+        }});
+        
+        URI parentArchiveURI = topNodeArchiveURI;
+        for(int level = 1; level <= depth; level++) {
+            final URI currentParentArchiveURI = parentArchiveURI;
+            final URI nodeArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+            final CorpusNode corpusNode = context.mock(CorpusNode.class, "corpusNode_" + level);
+            final File localFile = new File("/archive/root/TopNode/Corpusstructure/node_" + level + ".cmdi");
+            final String nodeName = "Node" + level;
+            
+            context.checking(new Expectations() {{
+                oneOf(mockCorpusStructureProvider).getNode(nodeArchiveURI); will(returnValue(corpusNode));
+                oneOf(mockNodeResolver).getLocalFile(corpusNode); will(returnValue(localFile));
+                oneOf(mockCorpusStructureProvider).getCanonicalParent(nodeArchiveURI); will(returnValue(currentParentArchiveURI));
+                allowing(corpusNode).getName(); will(returnValue(nodeName));
+                allowing(mockArchiveFileHelper).correctPathElement(nodeName, "getCorpusNamePathToClosestTopNode"); will(returnValue(nodeName));
+            }});
+            
+            expectedPathBuilder.append(File.separator).append(nodeName);
+            parentArchiveURI = nodeArchiveURI;
+        }
+        
+        final URI deepestNodeArchiveURI = parentArchiveURI;
+        final List<WorkspaceNode> sessions = new ArrayList<>();
+        for(int i = 0; i < numberOfSessions; i++) {
+            final URI sessionArchiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+            final WorkspaceNode session = context.mock(WorkspaceNode.class, "session_" + i);
+            final CorpusNode sessionCorpusNode = context.mock(CorpusNode.class, "sessionCorpusNode_" + i);
+            final File sessionLocalFile = new File("/archive/root/TopNode/Metadata/session_" + i + ".cmdi");
+            
+            context.checking(new Expectations() {{
+                allowing(session).getArchiveURI(); will(returnValue(sessionArchiveURI));
+                allowing(session).getWorkspaceID(); will(returnValue(workspaceID));
+                oneOf(mockCorpusStructureProvider).getNode(sessionArchiveURI); will(returnValue(sessionCorpusNode));
+                oneOf(mockNodeResolver).getLocalFile(sessionCorpusNode); will(returnValue(sessionLocalFile));
+                oneOf(mockCorpusStructureProvider).getCanonicalParent(sessionArchiveURI); will(returnValue(deepestNodeArchiveURI));
+            }});
+            
+            sessions.add(session);
+        }
+        
+        corpusStructureBridge.openAncestorPathCache(workspaceID);
+        try {
+            for(WorkspaceNode session : sessions) {
+                assertEquals("Result different from expected", expectedPathBuilder.toString(), corpusStructureBridge.getCorpusNamePathToClosestTopNode(session));
+            }
+        } finally {
+            corpusStructureBridge.closeAncestorPathCache(workspaceID);
+        }
+    }
+    
     @Test
     public void getPIDsOfAncestorsAndDescendants_Root() {
         
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.archive.implementation;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import nl.mpi.archiving.corpusstructure.core.CorpusNode;
+import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
+import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
+import nl.mpi.lamus.archive.CorpusStructureCache;
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusCorpusStructureCacheTest {
+    
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    
+    @Mock CorpusStructureProvider mockCorpusStructureProvider;
+    @Mock NodeResolver mockNodeResolver;
+    @Mock CorpusNode mockCorpusNode;
+    @Mock CorpusNode mockOtherCorpusNode;
+    
+    private CorpusStructureCache corpusStructureCache;
+    
+    private final URI nodeURI = URI.create("hdl:11142/00-00000000-0000-0000-0000-000000000001");
+    private final URI otherNodeURI = URI.create("hdl:11142/00-00000000-0000-0000-0000-000000000002");
+    private final URI parentURI = URI.create("hdl:11142/00-00000000-0000-0000-0000-000000000003");
+    
+    public LamusCorpusStructureCacheTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+        corpusStructureCache = new LamusCorpusStructureCache(100, 300);
+    }
+    
+    @After
+    public void tearDown() {
+    }
+
+
+    @Test
+    public void nodeRetrievedOnlyOnce() throws Exception {
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureProvider).getNode(nodeURI); will(returnValue(mockCorpusNode));
+        }});
+        
+        CorpusStructureProvider cachingProvider = corpusStructureCache.decorate(mockCorpusStructureProvider);
+        
+        for(int i = 0; i < 3; i++) {
+            assertEquals("Retrieved node different from expected", mockCorpusNode, cachingProvider.getNode(nodeURI));
+        }
+        
+        assertEquals("Number of hits different from expected", 2, corpusStructureCache.getHitCount());
+        assertEquals("Number of misses different from expected", 1, corpusStructureCache.getMissCount());
+        assertEquals("Size different from expected", 1, corpusStructureCache.getSize());
+    }
+    
+    @Test
+    public void differentArgumentsCachedSeparately() throws Exception {
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureProvider).getNode(nodeURI); will(returnValue(mockCorpusNode));
+            oneOf(mockCorpusStructureProvider).getNode(otherNodeURI); will(returnValue(mockOtherCorpusNode));
+            oneOf(mockCorpusStructureProvider).getCanonicalParent(nodeURI); will(returnValue(parentURI));
+        }});
+        
+        CorpusStructureProvider cachingProvider = corpusStructureCache.decorate(mockCorpusStructureProvider);
+        
+        assertEquals("Retrieved node different from expected", mockCorpusNode, cachingProvider.getNode(nodeURI));
+        assertEquals("Retrieved node different from expected", mockOtherCorpusNode, cachingProvider.getNode(otherNodeURI));
+        assertEquals("Retrieved parent different from expected", parentURI, cachingProvider.getCanonicalParent(nodeURI));
+        assertEquals("Retrieved parent different from expected", parentURI, cachingProvider.getCanonicalParent(nodeURI));
+        
+        assertEquals("Size different from expected", 3, corpusStructureCache.getSize());
+    }
+    
+    @Test
+    public void nullResultCached() throws Exception {
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureProvider).getCanonicalParent(nodeURI); will(returnValue(null));
+        }});
+        
+        CorpusStructureProvider cachingProvider = corpusStructureCache.decorate(mockCorpusStructureProvider);
+        
+        assertNull("Retrieved parent should be null", cachingProvider.getCanonicalParent(nodeURI));
+        assertNull("Retrieved parent should be null", cachingProvider.getCanonicalParent(nodeURI));
+        
+        assertEquals("Number of hits different from expected", 1, corpusStructureCache.getHitCount());
+    }
+    
+    @Test
+    public void exceptionNotCached() throws Exception {
+        
+        final IllegalStateException expectedException = new IllegalStateException("some exception message");
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureProvider).getNode(nodeURI); will(throwException(expectedException));
+            oneOf(mockCorpusStructureProvider).getNode(nodeURI); will(returnValue(mockCorpusNode));
+        }});
+        
+        CorpusStructureProvider cachingProvider = corpusStructureCache.decorate(mockCorpusStructureProvider);
+        
+        try {
+            cachingProvider.getNode(nodeURI);
+            fail("should have thrown exception");
+        } catch(IllegalStateException ex) {
+            assertEquals("Exception different from expected", expectedException, ex);
+        }
+        
+        assertEquals("Retrieved node different from expected", mockCorpusNode, cachingProvider.getNode(nodeURI));
+    }
+    
+    @Test
+    public void otherMethodsNotCached() throws Exception {
+        
+        final Collection<URI> descendants = new ArrayList<>();
+        descendants.add(otherNodeURI);
+        
+        context.checking(new Expectations() {{
+            exactly(2).of(mockCorpusStructureProvider).getDescendants(nodeURI); will(returnValue(descendants));
+        }});
+        
+        CorpusStructureProvider cachingProvider = corpusStructureCache.decorate(mockCorpusStructureProvider);
+        
+        cachingProvider.getDescendants(nodeURI);
+        cachingProvider.getDescendants(nodeURI);
+        
+        assertEquals("Size different from expected", 0, corpusStructureCache.getSize());
+    }
+    
+    @Test
+    public void resolverLookupsCached() throws Exception {
+        
+        final File localFile = new File("/archive/location/file.cmdi");
+        
+        context.checking(new Expectations() {{
+            oneOf(mockNodeResolver).getLocalFile(mockCorpusNode); will(returnValue(localFile));
+        }});
+        
+        NodeResolver cachingResolver = corpusStructureCache.decorate(mockNodeResolver);
+        
+        assertEquals("Retrieved file different from expected", localFile, cachingResolver.getLocalFile(mockCorpusNode));
+        assertEquals("Retrieved file different from expected", localFile, cachingResolver.getLocalFile(mockCorpusNode));
+    }
+    
+    @Test
+    public void leastRecentlyUsedEntryEvicted() throws Exception {
+        
+        corpusStructureCache = new LamusCorpusStructureCache(2, 300);
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureProvider).getNode(nodeURI); will(returnValue(mockCorpusNode));
+            exactly(2).of(mockCorpusStructureProvider).getNode(otherNodeURI); will(returnValue(mockOtherCorpusNode));
+            oneOf(mockCorpusStructureProvider).getCanonicalParent(nodeURI); will(returnValue(parentURI));
+        }});
+        
+        CorpusStructureProvider cachingProvider = corpusStructureCache.decorate(mockCorpusStructureProvider);
+        
+        cachingProvider.getNode(nodeURI);
+        cachingProvider.getNode(otherNodeURI);
+        // makes the other node the least recently used
+        cachingProvider.getNode(nodeURI);
+        cachingProvider.getCanonicalParent(nodeURI);
+        
+        assertEquals("Size different from expected", 2, corpusStructureCache.getSize());
+        
+        // still cached
+        cachingProvider.getNode(nodeURI);
+        // evicted, so retrieved again
+        cachingProvider.getNode(otherNodeURI);
+    }
+    
+    @Test
+    public void expiredEntryRetrievedAgain() throws Exception {
+        
+        context.checking(new Expectations() {{
+            exactly(2).of(mockCorpusStructureProvider).getNode(nodeURI); will(returnValue(mockCorpusNode));
+        }});
+        
+        CorpusStructureProvider cachingProvider = corpusStructureCache.decorate(mockCorpusStructureProvider);
+        
+        // entries added from now on are already expired
+        ReflectionTestUtils.setField(corpusStructureCache, "timeToLiveMillis", -1L);
+        
+        cachingProvider.getNode(nodeURI);
+        cachingProvider.getNode(nodeURI);
+        
+        assertEquals("Number of hits different from expected", 0, corpusStructureCache.getHitCount());
+    }
+    
+    @Test
+    public void invalidatedEntriesRetrievedAgain() throws Exception {
+        
+        context.checking(new Expectations() {{
+            exactly(2).of(mockCorpusStructureProvider).getNode(nodeURI); will(returnValue(mockCorpusNode));
+        }});
+        
+        CorpusStructureProvider cachingProvider = corpusStructureCache.decorate(mockCorpusStructureProvider);
+        
+        cachingProvider.getNode(nodeURI);
+        
+        corpusStructureCache.invalidateAll();
+        assertEquals("Size different from expected", 0, corpusStructureCache.getSize());
+        
+        cachingProvider.getNode(nodeURI);
+    }
+    
+    @Test
+    public void disabledCacheDoesNotDecorate() {
+        
+        corpusStructureCache = new LamusCorpusStructureCache(0, 300);
+        
+        assertSame("Provider should not have been decorated", mockCorpusStructureProvider, corpusStructureCache.decorate(mockCorpusStructureProvider));
+        assertSame("Resolver should not have been decorated", mockNodeResolver, corpusStructureCache.decorate(mockNodeResolver));
+    }
+}
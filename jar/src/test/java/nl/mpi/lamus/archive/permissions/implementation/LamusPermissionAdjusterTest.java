@@ -29,10 +29,14 @@ import nl.mpi.lamus.archive.ArchiveFileLocationProvider;
 import nl.mpi.lamus.archive.permissions.PermissionAdjuster;
 import nl.mpi.lamus.archive.permissions.PermissionAdjusterHelper;
 import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.dao.WorkspaceNodeHandler;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
 import org.jmock.auto.Mock;
 import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.action.CustomAction;
 import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.After;
@@ -119,7 +123,7 @@ public class LamusPermissionAdjusterTest {
             
             oneOf(mockPermissionAdjusterHelper).loadConfiguredPermissions();
             
-            oneOf(mockWorkspaceDao).getNodesForWorkspace(workspaceID); will(returnValue(allNodes));
+            oneOf(mockWorkspaceDao).processNodesForWorkspace(with(equal(workspaceID)), with(any(WorkspaceNodeHandler.class))); will(passNodesToHandler(allNodes));
             
             //loop - first iteration
             oneOf(mockNode1).isExternal(); will(returnValue(Boolean.FALSE));
@@ -223,7 +227,7 @@ public class LamusPermissionAdjusterTest {
             
             oneOf(mockPermissionAdjusterHelper).loadConfiguredPermissions();
             
-            oneOf(mockWorkspaceDao).getNodesForWorkspace(workspaceID); will(returnValue(allNodes));
+            oneOf(mockWorkspaceDao).processNodesForWorkspace(with(equal(workspaceID)), with(any(WorkspaceNodeHandler.class))); will(passNodesToHandler(allNodes));
             
             //loop - first iteration
             oneOf(mockNode1).isExternal(); will(returnValue(Boolean.TRUE));
@@ -257,7 +261,7 @@ public class LamusPermissionAdjusterTest {
             
             oneOf(mockPermissionAdjusterHelper).loadConfiguredPermissions();
             
-            oneOf(mockWorkspaceDao).getNodesForWorkspace(workspaceID); will(returnValue(allNodes));
+            oneOf(mockWorkspaceDao).processNodesForWorkspace(with(equal(workspaceID)), with(any(WorkspaceNodeHandler.class))); will(passNodesToHandler(allNodes));
             
             //loop - first iteration
             oneOf(mockNode1).isExternal(); will(returnValue(Boolean.FALSE));
@@ -286,4 +290,18 @@ public class LamusPermissionAdjusterTest {
         
         permissionAdjuster.adjustPermissions(workspaceID, adjusterScope);
     }
-}
\ No newline at end of file
+    
+    
+    private static Action passNodesToHandler(final Collection<WorkspaceNode> nodes) {
+        return new CustomAction("pass the nodes to the handler") {
+            @Override
+            public Object invoke(Invocation invocation) throws Throwable {
+                WorkspaceNodeHandler nodeHandler = (WorkspaceNodeHandler) invocation.getParameter(1);
+                for(WorkspaceNode node : nodes) {
+                    nodeHandler.handleNode(node);
+                }
+                return null;
+            }
+        };
+    }
+}
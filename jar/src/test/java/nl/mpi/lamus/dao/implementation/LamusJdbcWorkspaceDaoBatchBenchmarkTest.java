@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.dao.implementation;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import javax.sql.DataSource;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNodeLink;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+/**
+ * Compares, against the embedded HSQL database used by the other DAO tests,
+ * inserting the nodes of an import (together with their locks and links)
+ * one row at a time with inserting them in batches.
+ * The rates are only logged; the assertions check that both ways
+ * result in the same data and count the insert statements sent to the database,
+ * to make sure the batch methods actually use JDBC batches.
+ * HSQLDB 1.8 has no sequence behind its identity columns, so node IDs cannot
+ * be allocated in advance and the nodes themselves are still inserted one at a time;
+ * the batching of nodes is checked against PostgreSQL in {@link LamusJdbcWorkspaceDaoQueryPlanTest}.
+ *
+ * @author guisil
+ */
+public class LamusJdbcWorkspaceDaoBatchBenchmarkTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LamusJdbcWorkspaceDaoBatchBenchmarkTest.class);
+    
+    private static final int NUMBER_OF_NODES = 2000;
+    
+    private EmbeddedDatabase dataSource;
+    private InsertCountingDataSource countingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private LamusJdbcWorkspaceDao workspaceDao;
+    
+    
+    @Before
+    public void setUp() {
+        dataSource = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .setName("lamus2_batch_benchmark")
+                .addScript("classpath:nl/mpi/lamus/dao/implementation/hsql_lamus2_drop.sql")
+                .addScript("classpath:nl/mpi/lamus/dao/implementation/hsql_lamus2_create.sql")
+                .build();
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        countingDataSource = new InsertCountingDataSource(dataSource);
+        workspaceDao = new LamusJdbcWorkspaceDao(countingDataSource);
+    }
+    
+    @After
+    public void tearDown() {
+        dataSource.shutdown();
+    }
+    
+    
+    @Test
+    public void compareRowByRowAndBatchInserts() {
+        
+        int rowByRowWorkspaceID = insertWorkspace();
+        int batchWorkspaceID = insertWorkspace();
+        
+        countingDataSource.reset();
+        long rowByRowTime = insertRowByRow(rowByRowWorkspaceID);
+        int rowByRowSingleInserts = countingDataSource.singleInserts;
+        int rowByRowBatches = countingDataSource.batches;
+        
+        countingDataSource.reset();
+        long batchTime = insertInBatch(batchWorkspaceID);
+        int batchSingleInserts = countingDataSource.singleInserts;
+        int batchBatches = countingDataSource.batches;
+        int batchedRows = countingDataSource.batchedRows;
+        
+        logger.info("Inserted " + NUMBER_OF_NODES + " nodes, locks and links row by row in " + rowByRowTime + " ms ("
+                + getRate(rowByRowTime) + " nodes/s) and in batch in " + batchTime + " ms (" + getRate(batchTime) + " nodes/s)");
+        
+        assertEquals("Number of nodes different from expected", NUMBER_OF_NODES + 1, countNodes(rowByRowWorkspaceID));
+        assertEquals("Number of nodes different from expected", NUMBER_OF_NODES + 1, countNodes(batchWorkspaceID));
+        assertEquals("Number of locks different from expected", NUMBER_OF_NODES, countLocks(rowByRowWorkspaceID));
+        assertEquals("Number of locks different from expected", NUMBER_OF_NODES, countLocks(batchWorkspaceID));
+        assertEquals("Number of links different from expected", NUMBER_OF_NODES, countLinks(rowByRowWorkspaceID));
+        assertEquals("Number of links different from expected", NUMBER_OF_NODES, countLinks(batchWorkspaceID));
+        
+        // parent node, then a node, a lock and a link per child
+        assertEquals("Row by row should use one insert per row", 1 + 3 * NUMBER_OF_NODES, rowByRowSingleInserts);
+        assertEquals("Row by row should not use batches", 0, rowByRowBatches);
+        // parent node, then a node per child (no ID preallocation in HSQLDB)
+        assertEquals("Only the nodes should be inserted one at a time", 1 + NUMBER_OF_NODES, batchSingleInserts);
+        assertEquals("Locks and links should be inserted in one batch each", 2, batchBatches);
+        assertEquals("All locks and links should be part of the batches", 2 * NUMBER_OF_NODES, batchedRows);
+    }
+    
+    
+    private long insertRowByRow(int workspaceID) {
+        
+        WorkspaceNode parentNode = createNode(workspaceID, "parent", WorkspaceNodeType.METADATA);
+        workspaceDao.addWorkspaceNode(parentNode);
+        
+        long start = System.currentTimeMillis();
+        for(int i = 0; i < NUMBER_OF_NODES; i++) {
+            WorkspaceNode childNode = createNode(workspaceID, "resource" + i, WorkspaceNodeType.RESOURCE_WRITTEN);
+            workspaceDao.addWorkspaceNode(childNode);
+            workspaceDao.lockNode(childNode.getArchiveURI(), workspaceID);
+            workspaceDao.addWorkspaceNodeLink(new LamusWorkspaceNodeLink(parentNode.getWorkspaceNodeID(), childNode.getWorkspaceNodeID()));
+        }
+        return System.currentTimeMillis() - start;
+    }
+    
+    private long insertInBatch(int workspaceID) {
+        
+        WorkspaceNode parentNode = createNode(workspaceID, "parent", WorkspaceNodeType.METADATA);
+        workspaceDao.addWorkspaceNode(parentNode);
+        
+        long start = System.currentTimeMillis();
+        List<WorkspaceNode> childNodes = new ArrayList<>(NUMBER_OF_NODES);
+        List<URI> urisToLock = new ArrayList<>(NUMBER_OF_NODES);
+        for(int i = 0; i < NUMBER_OF_NODES; i++) {
+            WorkspaceNode childNode = createNode(workspaceID, "resource" + i, WorkspaceNodeType.RESOURCE_WRITTEN);
+            childNodes.add(childNode);
+            urisToLock.add(childNode.getArchiveURI());
+        }
+        workspaceDao.addWorkspaceNodes(childNodes);
+        workspaceDao.lockNodes(urisToLock, workspaceID);
+        List<WorkspaceNodeLink> nodeLinks = new ArrayList<>(NUMBER_OF_NODES);
+        for(WorkspaceNode childNode : childNodes) {
+            nodeLinks.add(new LamusWorkspaceNodeLink(parentNode.getWorkspaceNodeID(), childNode.getWorkspaceNodeID()));
+        }
+        workspaceDao.addWorkspaceNodeLinks(nodeLinks);
+        return System.currentTimeMillis() - start;
+    }
+    
+    private int insertWorkspace() {
+        Timestamp now = new Timestamp(Calendar.getInstance().getTimeInMillis());
+        jdbcTemplate.update("INSERT INTO workspace (user_id, start_date, session_start_date, status, message) VALUES (?, ?, ?, ?, ?)",
+                "testUser", now, now, "INITIALISING", "benchmark");
+        return jdbcTemplate.queryForInt("CALL IDENTITY();");
+    }
+    
+    private WorkspaceNode createNode(int workspaceID, String name, WorkspaceNodeType type) {
+        WorkspaceNode node = new LamusWorkspaceNode();
+        node.setWorkspaceID(workspaceID);
+        node.setName(name);
+        node.setType(type);
+        node.setStatus(WorkspaceNodeStatus.ARCHIVE_COPY);
+        node.setFormat("text/plain");
+        node.setArchiveURI(URI.create("hdl:11142/" + workspaceID + "-" + name));
+        return node;
+    }
+    
+    private int countNodes(int workspaceID) {
+        return jdbcTemplate.queryForInt("SELECT COUNT(*) FROM node WHERE workspace_id = ?", workspaceID);
+    }
+    
+    private int countLocks(int workspaceID) {
+        return jdbcTemplate.queryForInt("SELECT COUNT(*) FROM node_lock WHERE workspace_id = ?", workspaceID);
+    }
+    
+    private int countLinks(int workspaceID) {
+        return jdbcTemplate.queryForInt("SELECT COUNT(*) FROM node_link WHERE parent_workspace_node_id IN"
+                + " (SELECT workspace_node_id FROM node WHERE workspace_id = ?)", workspaceID);
+    }
+    
+    private long getRate(long milliseconds) {
+        return NUMBER_OF_NODES * 1000L / Math.max(milliseconds, 1);
+    }
+    
+    
+    /**
+     * DataSource which counts the inserts executed through its prepared statements,
+     * either one at a time or as JDBC batches.
+     */
+    private static class InsertCountingDataSource extends DelegatingDataSource {
+        
+        private int singleInserts;
+        private int batches;
+        private int batchedRows;
+        
+        InsertCountingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+        
+        void reset() {
+            singleInserts = 0;
+            batches = 0;
+            batchedRows = 0;
+        }
+        
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    Object result = invokeTarget(connection, method, args);
+                    if("prepareStatement".equals(method.getName()) && args != null && args[0] instanceof String
+                            && ((String) args[0]).trim().toUpperCase().startsWith("INSERT")) {
+                        return countingStatement((PreparedStatement) result);
+                    }
+                    return result;
+                }
+            });
+        }
+        
+        private PreparedStatement countingStatement(final PreparedStatement statement) {
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    boolean noArgs = args == null || args.length == 0;
+                    String name = method.getName();
+                    if("addBatch".equals(name) && noArgs) {
+                        batchedRows++;
+                    } else if("executeBatch".equals(name)) {
+                        batches++;
+                    } else if(("executeUpdate".equals(name) || "execute".equals(name)) && noArgs) {
+                        singleInserts++;
+                    }
+                    return invokeTarget(statement, method, args);
+                }
+            });
+        }
+        
+        private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch(InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+}
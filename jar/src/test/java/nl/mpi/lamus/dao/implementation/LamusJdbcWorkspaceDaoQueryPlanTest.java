@@ -0,0 +1,402 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.dao.implementation;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+import nl.mpi.lamus.exception.WorkspaceNodeNotFoundException;
+import nl.mpi.lamus.workspace.model.Workspace;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspace;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Query plan regression test for the SQL issued by LamusJdbcWorkspaceDao.
+ *
+ * It needs an actual PostgreSQL database (the plans of the embedded HSQL database
+ * are not representative), so it only runs when the system property
+ * "lamus2.test.postgresql.url" is set (together with ".user" and ".password").
+ * The tables are created in a temporary schema, filled with enough data
+ * for the planner to prefer indexes, and every statement executed by the DAO
+ * is then explained and checked for sequential scans on the main tables.
+ * Methods meant to return whole tables (getAllWorkspaces, getAllNodeReplacements)
+ * are not exercised at all.
+ * The same data is used to check that the recursive queries return the same
+ * results as the fallbacks used for databases without recursive queries,
+ * and that new nodes are inserted in a single JDBC batch.
+ *
+ * @author guisil
+ */
+public class LamusJdbcWorkspaceDaoQueryPlanTest {
+
+    private static final String URL_PROPERTY = "lamus2.test.postgresql.url";
+    private static final String USER_PROPERTY = "lamus2.test.postgresql.user";
+    private static final String PASSWORD_PROPERTY = "lamus2.test.postgresql.password";
+
+    private static final String TEST_SCHEMA = "lamus2_plan_test";
+
+    private static final int NUMBER_OF_WORKSPACES = 50;
+    private static final int NODES_PER_WORKSPACE = 400;
+
+    /**
+     * Tables which are big in production and should never be scanned sequentially.
+     */
+    private static final Set<String> CHECKED_TABLES = new HashSet<>(Arrays.asList(
+            "workspace", "node", "node_lock", "node_link"));
+
+    private static final Pattern SEQ_SCAN_PATTERN = Pattern.compile("Seq Scan on (\\w+)");
+
+    private SingleConnectionDataSource postgresDataSource;
+    private final List<RecordedStatement> recordedStatements = new ArrayList<>();
+
+    private LamusJdbcWorkspaceDao workspaceDao;
+
+
+    @Before
+    public void setUp() throws SQLException {
+
+        String url = System.getProperty(URL_PROPERTY);
+        assumeTrue(url != null && !url.isEmpty());
+
+        postgresDataSource = new SingleConnectionDataSource(
+                url, System.getProperty(USER_PROPERTY), System.getProperty(PASSWORD_PROPERTY), true);
+
+        try (Statement stmt = postgresDataSource.getConnection().createStatement()) {
+            stmt.execute("DROP SCHEMA IF EXISTS " + TEST_SCHEMA + " CASCADE");
+            stmt.execute("CREATE SCHEMA " + TEST_SCHEMA);
+            stmt.execute("SET search_path TO " + TEST_SCHEMA);
+        }
+
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        populator.addScript(new FileSystemResource("src/main/sql/CreateDataStructure.sql"));
+        DatabasePopulatorUtils.execute(populator, postgresDataSource);
+
+        insertTestData();
+
+        workspaceDao = new LamusJdbcWorkspaceDao(new RecordingDataSource(postgresDataSource));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+
+        if(postgresDataSource == null) {
+            return;
+        }
+        try (Statement stmt = postgresDataSource.getConnection().createStatement()) {
+            stmt.execute("DROP SCHEMA IF EXISTS " + TEST_SCHEMA + " CASCADE");
+        }
+        postgresDataSource.destroy();
+    }
+
+
+    @Test
+    public void daoQueriesDoNotUseSequentialScans() throws SQLException, WorkspaceNodeNotFoundException {
+
+        int workspaceID = NUMBER_OF_WORKSPACES / 2;
+        int topNodeID = workspaceDao.getWorkspaceTopNodeID(workspaceID);
+        int someNodeID = topNodeID + 10;
+        URI someArchiveURI = URI.create("hdl:11142/node-" + someNodeID);
+
+        workspaceDao.getWorkspace(workspaceID);
+        workspaceDao.getWorkspacesForUser("user" + workspaceID);
+        workspaceDao.getWorkspacesInFinalStage();
+        workspaceDao.isNodeLocked(someArchiveURI);
+        workspaceDao.getWorkspaceNodeByArchiveURI(someArchiveURI);
+        workspaceDao.getWorkspaceNode(someNodeID);
+        workspaceDao.getWorkspaceTopNode(workspaceID);
+        workspaceDao.getNodesForWorkspace(workspaceID);
+        workspaceDao.getMetadataNodesInTreeForWorkspace(workspaceID);
+        workspaceDao.getChildWorkspaceNodes(topNodeID);
+        workspaceDao.getDescendantWorkspaceNodesByType(topNodeID, WorkspaceNodeType.METADATA);
+        workspaceDao.getParentWorkspaceNodes(someNodeID);
+        workspaceDao.getUnlinkedNodes(workspaceID);
+        workspaceDao.getUnlinkedAndDeletedTopNodes(workspaceID);
+        workspaceDao.getUnlinkedNodesAndDescendants(workspaceID);
+        workspaceDao.getNodeReplacementsForWorkspace(workspaceID);
+        workspaceDao.getReplacedAndDeletedNodeUrlsToUpdateForWorkspace(workspaceID);
+        try {
+            workspaceDao.getOlderVersionOfNode(workspaceID, someNodeID);
+        } catch(WorkspaceNodeNotFoundException ex) {
+            // only the query matters here
+        }
+
+        Workspace workspaceToDelete = new LamusWorkspace(
+                workspaceID + 1, "user" + (workspaceID + 1), -1, null, null, null, null, null, null, 0L, 0L, null, null, null);
+        workspaceDao.unlockAllNodesOfWorkspace(workspaceToDelete.getWorkspaceID());
+        workspaceDao.cleanWorkspaceNodesAndLinks(workspaceToDelete);
+        workspaceDao.deleteWorkspace(workspaceToDelete);
+
+        assertFalse("No statements were recorded", recordedStatements.isEmpty());
+
+        List<String> failures = new ArrayList<>();
+        for(RecordedStatement statement : recordedStatements) {
+            if(statement.isInsert()) {
+                continue;
+            }
+            String plan = explain(statement);
+            Matcher matcher = SEQ_SCAN_PATTERN.matcher(plan);
+            while(matcher.find()) {
+                if(CHECKED_TABLES.contains(matcher.group(1))) {
+                    failures.add(statement.sql + "\n" + plan);
+                    break;
+                }
+            }
+        }
+
+        assertTrue("Sequential scans found in the following queries:\n\n" + failures, failures.isEmpty());
+    }
+
+
+    @Test
+    public void unlinkedNodesAndDescendants_RecursiveQueryEquivalentToPerNodeFallback() throws SQLException {
+
+        int workspaceID = NUMBER_OF_WORKSPACES / 2;
+        int firstNodeID = (workspaceID - 1) * NODES_PER_WORKSPACE;
+        // two of the unlinked nodes share a subtree (a corpus node and its children)
+        int sharedSubtreeRootID = firstNodeID + 3;
+        try (Statement stmt = postgresDataSource.getConnection().createStatement()) {
+            stmt.execute("INSERT INTO node_link (parent_workspace_node_id, child_workspace_node_id) VALUES"
+                    + " (" + (firstNodeID + 396) + ", " + sharedSubtreeRootID + "),"
+                    + " (" + (firstNodeID + 397) + ", " + sharedSubtreeRootID + "),"
+                    + " (" + (firstNodeID + 397) + ", " + (firstNodeID + 2) + ")");
+        }
+
+        LamusJdbcWorkspaceDao perNodeWorkspaceDao = new LamusJdbcWorkspaceDao(postgresDataSource);
+        ReflectionTestUtils.setField(perNodeWorkspaceDao, "recursiveQueriesSupported", Boolean.FALSE);
+
+        List<Integer> recursiveResult = nodeIDs(workspaceDao.getUnlinkedNodesAndDescendants(workspaceID));
+        List<Integer> perNodeResult = nodeIDs(perNodeWorkspaceDao.getUnlinkedNodesAndDescendants(workspaceID));
+
+        assertEquals("Recursive query and per-node fallback should return the same nodes in the same order",
+                perNodeResult, recursiveResult);
+        assertEquals("Shared subtree should be returned under each of the unlinked nodes containing it",
+                2, Collections.frequency(recursiveResult, sharedSubtreeRootID));
+        assertTrue("Unlinked nodes should be returned before their descendants",
+                recursiveResult.indexOf(firstNodeID + 396) < recursiveResult.indexOf(sharedSubtreeRootID));
+    }
+
+
+    @Test
+    public void addWorkspaceNodes_InsertedInOneBatch() throws WorkspaceNodeNotFoundException {
+
+        int workspaceID = NUMBER_OF_WORKSPACES / 2;
+        List<WorkspaceNode> nodes = new ArrayList<>();
+        for(int i = 0; i < 50; i++) {
+            WorkspaceNode node = new LamusWorkspaceNode();
+            node.setWorkspaceID(workspaceID);
+            node.setName("batch" + i);
+            node.setType(WorkspaceNodeType.RESOURCE_WRITTEN);
+            node.setStatus(WorkspaceNodeStatus.ARCHIVE_COPY);
+            node.setArchiveURI(URI.create("hdl:11142/batch-" + i));
+            nodes.add(node);
+        }
+
+        recordedStatements.clear();
+        workspaceDao.addWorkspaceNodes(nodes);
+
+        List<String> insertExecutions = new ArrayList<>();
+        for(RecordedStatement statement : recordedStatements) {
+            if(statement.isInsert()) {
+                insertExecutions.add(statement.executeMethod);
+            }
+        }
+        assertEquals("Nodes should be inserted with a single batch", Collections.singletonList("executeBatch"), insertExecutions);
+        Set<Integer> newIDs = new HashSet<>(nodeIDs(nodes));
+        assertEquals("Each node should have got its own ID", nodes.size(), newIDs.size());
+        for(WorkspaceNode node : nodes) {
+            assertEquals("Inserted node different from expected",
+                    node.getName(), workspaceDao.getWorkspaceNode(node.getWorkspaceNodeID()).getName());
+        }
+    }
+
+
+    private static List<Integer> nodeIDs(Collection<WorkspaceNode> nodes) {
+
+        List<Integer> ids = new ArrayList<>();
+        for(WorkspaceNode node : nodes) {
+            ids.add(node.getWorkspaceNodeID());
+        }
+        return ids;
+    }
+
+    private String explain(RecordedStatement statement) throws SQLException {
+
+        StringBuilder plan = new StringBuilder();
+        try(PreparedStatement explainStatement = postgresDataSource.getConnection().prepareStatement("EXPLAIN " + statement.sql)) {
+            for(RecordedParameter parameter : statement.parameters) {
+                parameter.applyTo(explainStatement);
+            }
+            try(ResultSet rs = explainStatement.executeQuery()) {
+                while(rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Each workspace gets a three level tree (top node, corpus nodes, session nodes),
+     * with locks for all its nodes and a few unlinked and deleted nodes.
+     */
+    private void insertTestData() throws SQLException {
+
+        try (Statement stmt = postgresDataSource.getConnection().createStatement()) {
+            stmt.execute("INSERT INTO workspace (workspace_id, user_id, start_date, session_start_date, status, message)"
+                    + " SELECT w, 'user' || w, now(), now(),"
+                    + " CASE WHEN w % 10 = 0 THEN 'UPDATING_ARCHIVE' ELSE 'INITIALISED' END, ''"
+                    + " FROM generate_series(1, " + NUMBER_OF_WORKSPACES + ") w");
+            stmt.execute("INSERT INTO node (workspace_node_id, workspace_id, name, type, archive_uri, status, protected)"
+                    + " SELECT n, ((n - 1) / " + NODES_PER_WORKSPACE + ") + 1, 'node' || n,"
+                    + " CASE WHEN n % 3 = 0 THEN 'RESOURCE_WRITTEN' ELSE 'METADATA' END,"
+                    + " 'hdl:11142/node-' || n,"
+                    + " CASE WHEN n % 50 = 0 THEN 'DELETED' ELSE 'ARCHIVE_COPY' END, false"
+                    + " FROM generate_series(1, " + (NUMBER_OF_WORKSPACES * NODES_PER_WORKSPACE) + ") n");
+            stmt.execute("SELECT setval('node_workspace_node_id_seq', (SELECT max(workspace_node_id) FROM node))");
+            stmt.execute("SELECT setval('workspace_workspace_id_seq', (SELECT max(workspace_id) FROM workspace))");
+            stmt.execute("UPDATE workspace SET top_node_id = (workspace_id - 1) * " + NODES_PER_WORKSPACE + " + 1");
+            // corpus nodes (2 to 20) under the top node, the others (apart from the last 5) under the corpus nodes
+            stmt.execute("INSERT INTO node_link (parent_workspace_node_id, child_workspace_node_id)"
+                    + " SELECT CASE WHEN (n - 1) % " + NODES_PER_WORKSPACE + " < 20"
+                    + "   THEN ((n - 1) / " + NODES_PER_WORKSPACE + ") * " + NODES_PER_WORKSPACE + " + 1"
+                    + "   ELSE ((n - 1) / " + NODES_PER_WORKSPACE + ") * " + NODES_PER_WORKSPACE + " + 2 + (n % 19) END, n"
+                    + " FROM generate_series(1, " + (NUMBER_OF_WORKSPACES * NODES_PER_WORKSPACE) + ") n"
+                    + " WHERE (n - 1) % " + NODES_PER_WORKSPACE + " BETWEEN 1 AND " + (NODES_PER_WORKSPACE - 6));
+            stmt.execute("INSERT INTO node_lock (archive_uri, workspace_id) SELECT archive_uri, workspace_id FROM node");
+            stmt.execute("ANALYZE");
+        }
+    }
+
+
+    /**
+     * DataSource which records the SQL and parameters of the prepared statements executed through it.
+     */
+    private class RecordingDataSource extends DelegatingDataSource {
+
+        RecordingDataSource(DataSource targetDataSource) {
+            super(targetDataSource);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    Object result = invokeTarget(connection, method, args);
+                    if("prepareStatement".equals(method.getName()) && args != null && args[0] instanceof String) {
+                        return recordingStatement((PreparedStatement) result, (String) args[0]);
+                    }
+                    return result;
+                }
+            });
+        }
+    }
+
+    private PreparedStatement recordingStatement(final PreparedStatement statement, final String sql) {
+
+        final List<RecordedParameter> parameters = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if(name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    parameters.add(new RecordedParameter(method, args));
+                } else if("clearParameters".equals(name)) {
+                    parameters.clear();
+                } else if(name.startsWith("execute") && (args == null || args.length == 0)) {
+                    recordedStatements.add(new RecordedStatement(sql, name, new ArrayList<>(parameters)));
+                }
+                return invokeTarget(statement, method, args);
+            }
+        });
+    }
+
+    private static Object invokeTarget(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static class RecordedStatement {
+
+        private final String sql;
+        private final String executeMethod;
+        private final List<RecordedParameter> parameters;
+
+        RecordedStatement(String sql, String executeMethod, List<RecordedParameter> parameters) {
+            this.sql = sql.trim();
+            this.executeMethod = executeMethod;
+            this.parameters = parameters;
+        }
+
+        boolean isInsert() {
+            return sql.toUpperCase().startsWith("INSERT");
+        }
+    }
+
+    private static class RecordedParameter {
+
+        private final Method setter;
+        private final Object[] args;
+
+        RecordedParameter(Method setter, Object[] args) {
+            this.setter = setter;
+            this.args = args;
+        }
+
+        void applyTo(PreparedStatement statement) throws SQLException {
+            try {
+                setter.invoke(statement, args);
+            } catch(IllegalAccessException | InvocationTargetException ex) {
+                throw new SQLException("Could not replay parameter using " + setter.getName(), ex);
+            }
+        }
+    }
+}
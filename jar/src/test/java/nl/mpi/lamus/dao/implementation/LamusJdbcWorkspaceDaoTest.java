@@ -24,6 +24,7 @@ import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.*;
 import javax.sql.DataSource;
+import nl.mpi.lamus.dao.WorkspaceNodeHandler;
 import nl.mpi.lamus.exception.WorkspaceNodeNotFoundException;
 import nl.mpi.lamus.exception.WorkspaceNotFoundException;
 import nl.mpi.lamus.workspace.model.*;
@@ -227,6 +228,71 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
         assertTrue("Workspace was not deleted from the database", countRowsInTable("workspace") == initialNumberOfWorkspaceRows);
     }
     
+    @Test
+    public void deleteChunkOfWorkspaceNodes() throws URISyntaxException, MalformedURLException {
+        
+        int initialNumberOfWorkspaceRows = countRowsInTable("workspace");
+        int initialNumberOfNodeRows = countRowsInTable("node");
+        int initialNumberOfNodeLocks = countRowsInTable("node_lock");
+        int initialNumberOfLinkRows = countRowsInTable("node_link");
+        int initialNumberOfReplacementRows = countRowsInTable("node_replacement");
+        
+        Workspace insertedWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.FALSE);
+        URI firstNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        URL firstNodeURL = new URL("https://archive/location/firstNode.cmdi");
+        WorkspaceNode firstNode = insertTestWorkspaceNodeWithUriIntoDB(insertedWorkspace, firstNodeURI, firstNodeURL, firstNodeURL.toURI(), Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        addNodeLockToDb(firstNode);
+        URI secondNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        URL secondNodeURL = new URL("https://archive/location/secondNode.cmdi");
+        WorkspaceNode secondNode = insertTestWorkspaceNodeWithUriIntoDB(insertedWorkspace, secondNodeURI, secondNodeURL, secondNodeURL.toURI(), Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        addNodeLockToDb(secondNode);
+        URI thirdNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        URL thirdNodeURL = new URL("https://archive/location/thirdNode.cmdi");
+        WorkspaceNode thirdNode = insertTestWorkspaceNodeWithUriIntoDB(insertedWorkspace, thirdNodeURI, thirdNodeURL, thirdNodeURL.toURI(), Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        addNodeLockToDb(thirdNode);
+        // links and replacements crossing the chunks
+        setNodeAsParentAndInsertLinkIntoDatabase(firstNode, thirdNode);
+        setNodeAsReplacedAndAddReplacementInDatabase(thirdNode, secondNode);
+        
+        assertEquals("First chunk should contain two nodes and two locks", 4, workspaceDao.deleteChunkOfWorkspaceNodes(insertedWorkspace.getWorkspaceID(), 2));
+        
+        assertEquals("Link was not deleted from the database", initialNumberOfLinkRows, countRowsInTable("node_link"));
+        assertEquals("Replacement was not deleted from the database", initialNumberOfReplacementRows, countRowsInTable("node_replacement"));
+        assertEquals("Nodes of the first chunk were not deleted from the database", initialNumberOfNodeRows + 1, countRowsInTable("node"));
+        assertEquals("Node locks of the first chunk were not deleted from the database", initialNumberOfNodeLocks + 1, countRowsInTable("node_lock"));
+        
+        assertEquals("Second chunk should contain one node and one lock", 2, workspaceDao.deleteChunkOfWorkspaceNodes(insertedWorkspace.getWorkspaceID(), 2));
+        assertEquals("Nothing should be left to delete", 0, workspaceDao.deleteChunkOfWorkspaceNodes(insertedWorkspace.getWorkspaceID(), 2));
+        
+        assertEquals("Nodes were not deleted from the database", initialNumberOfNodeRows, countRowsInTable("node"));
+        assertEquals("Node locks were not deleted from the database", initialNumberOfNodeLocks, countRowsInTable("node_lock"));
+        assertEquals("Workspace should not have been deleted from the database", initialNumberOfWorkspaceRows + 1, countRowsInTable("workspace"));
+    }
+    
+    @Test
+    public void deleteChunkOfWorkspaceNodes_OtherWorkspaceNotAffected() throws URISyntaxException, MalformedURLException {
+        
+        Workspace insertedWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.FALSE);
+        Workspace otherWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.FALSE);
+        URI firstNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        URL firstNodeURL = new URL("https://archive/location/firstNode.cmdi");
+        WorkspaceNode firstNode = insertTestWorkspaceNodeWithUriIntoDB(insertedWorkspace, firstNodeURI, firstNodeURL, firstNodeURL.toURI(), Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        addNodeLockToDb(firstNode);
+        URI otherNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        URL otherNodeURL = new URL("https://archive/location/otherNode.cmdi");
+        WorkspaceNode otherNode = insertTestWorkspaceNodeWithUriIntoDB(otherWorkspace, otherNodeURI, otherNodeURL, otherNodeURL.toURI(), Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        addNodeLockToDb(otherNode);
+        
+        int initialNumberOfNodeRows = countRowsInTable("node");
+        int initialNumberOfNodeLocks = countRowsInTable("node_lock");
+        
+        assertEquals("Chunk should contain one node and one lock", 2, workspaceDao.deleteChunkOfWorkspaceNodes(insertedWorkspace.getWorkspaceID(), 10));
+        
+        assertEquals("Only the node of the workspace should have been deleted", initialNumberOfNodeRows - 1, countRowsInTable("node"));
+        assertEquals("Only the lock of the workspace should have been deleted", initialNumberOfNodeLocks - 1, countRowsInTable("node_lock"));
+        assertNotNull("Node of the other workspace should still exist", getNodeFromDB(otherNode.getWorkspaceNodeID()));
+    }
+    
     
     @Test
     public void updateWorkspaceTopNode() throws URISyntaxException, MalformedURLException {
@@ -744,6 +810,70 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
         assertEquals("Retrieved list is different from expected", expectedList, retrievedList);
     }
     
+    @Test
+    public void getSubmittedWorkspacesOneSubmitted() {
+        
+        Workspace workspace1 = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        workspace1.setStatus(WorkspaceStatus.UPDATING_ARCHIVE);
+        updateWorkspaceStatusInDb(workspace1);
+        Workspace workspace2 = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        workspace2.setStatus(WorkspaceStatus.SUBMITTED);
+        updateWorkspaceStatusInDb(workspace2);
+        
+        Collection<Workspace> expectedList = new ArrayList<>();
+        expectedList.add(workspace2);
+        
+        Collection<Workspace> retrievedList = workspaceDao.getSubmittedWorkspaces();
+        
+        assertEquals("Retrieved list is different from expected", expectedList, retrievedList);
+    }
+    
+    @Test
+    public void getSubmittedWorkspacesNoneSubmitted() {
+        
+        Workspace workspace1 = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        workspace1.setStatus(WorkspaceStatus.INITIALISED);
+        updateWorkspaceStatusInDb(workspace1);
+        
+        Collection<Workspace> expectedList = new ArrayList<>();
+        
+        Collection<Workspace> retrievedList = workspaceDao.getSubmittedWorkspaces();
+        
+        assertEquals("Retrieved list is different from expected", expectedList, retrievedList);
+    }
+    
+    @Test
+    public void getWorkspacesMarkedForDeletionOneDeleted() {
+        
+        Workspace workspace1 = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        workspace1.setStatus(WorkspaceStatus.INITIALISED);
+        updateWorkspaceStatusInDb(workspace1);
+        Workspace workspace2 = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        workspace2.setStatus(WorkspaceStatus.DELETING);
+        updateWorkspaceStatusInDb(workspace2);
+        
+        Collection<Workspace> expectedList = new ArrayList<>();
+        expectedList.add(workspace2);
+        
+        Collection<Workspace> retrievedList = workspaceDao.getWorkspacesMarkedForDeletion();
+        
+        assertEquals("Retrieved list is different from expected", expectedList, retrievedList);
+    }
+    
+    @Test
+    public void getWorkspacesMarkedForDeletionNoneDeleted() {
+        
+        Workspace workspace1 = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        workspace1.setStatus(WorkspaceStatus.INITIALISED);
+        updateWorkspaceStatusInDb(workspace1);
+        
+        Collection<Workspace> expectedList = new ArrayList<>();
+        
+        Collection<Workspace> retrievedList = workspaceDao.getWorkspacesMarkedForDeletion();
+        
+        assertEquals("Retrieved list is different from expected", expectedList, retrievedList);
+    }
+    
     @Test
     public void getAllWorkspacesOneExists() {
         
@@ -968,6 +1098,39 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
         assertEquals("Column was not added to the node table.", initialNumberOfRows + 1, countRowsInTable("node"));
     }
     
+    @Test
+    public void addWorkspaceNodes() throws URISyntaxException, MalformedURLException {
+
+        int initialNumberOfRows = countRowsInTable("node");
+        
+        Workspace testWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        
+        List<WorkspaceNode> insertedNodes = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            URI archiveURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+            URL archiveURL = new URL("https://archive/location/resource" + i + ".txt");
+            insertedNodes.add(createWorkspaceNode(testWorkspace, archiveURI, archiveURL, archiveURL.toURI(), Boolean.FALSE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE));
+        }
+        
+        this.workspaceDao.addWorkspaceNodes(insertedNodes);
+        
+        assertEquals("Columns were not added to the node table.", initialNumberOfRows + 3, countRowsInTable("node"));
+        for(WorkspaceNode insertedNode : insertedNodes) {
+            assertEquals("WorkspaceNode object retrieved from the database is different from expected",
+                    insertedNode, getNodeFromDB(insertedNode.getWorkspaceNodeID()));
+        }
+    }
+    
+    @Test
+    public void addWorkspaceNodesEmpty() {
+
+        int initialNumberOfRows = countRowsInTable("node");
+        
+        this.workspaceDao.addWorkspaceNodes(new ArrayList<WorkspaceNode>());
+        
+        assertEquals("Column was added to the node table.", initialNumberOfRows, countRowsInTable("node"));
+    }
+    
     @Test
     public void addWorkspaceNodeWithWrongParameters() {
         
@@ -1054,6 +1217,52 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
         assertEquals("Node lock wasn't created", finalNumberOfLocks, initialNumberOfLocks + 1);
     }
     
+    @Test
+    public void lockNodes() throws MalformedURLException, URISyntaxException {
+        
+        Workspace ws = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        URI firstNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        URL firstNodeURL = new URL("https://archive/location/node1.cmdi");
+        insertTestWorkspaceNodeWithUriIntoDB(ws, firstNodeURI, firstNodeURL, firstNodeURL.toURI(), Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI secondNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        URL secondNodeURL = new URL("https://archive/location/node2.cmdi");
+        insertTestWorkspaceNodeWithUriIntoDB(ws, secondNodeURI, secondNodeURL, secondNodeURL.toURI(), Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        
+        int initialNumberOfLocks = countRowsInTable("node_lock");
+        
+        workspaceDao.lockNodes(Arrays.asList(firstNodeURI, secondNodeURI), ws.getWorkspaceID());
+        
+        int finalNumberOfLocks = countRowsInTable("node_lock");
+        
+        assertEquals("Node locks weren't created", initialNumberOfLocks + 2, finalNumberOfLocks);
+        assertTrue("First node should be locked", workspaceDao.isNodeLocked(firstNodeURI));
+        assertTrue("Second node should be locked", workspaceDao.isNodeLocked(secondNodeURI));
+    }
+    
+    @Test
+    public void getLockedNodes() throws MalformedURLException, URISyntaxException {
+        
+        Workspace ws = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        URI lockedNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        URL lockedNodeURL = new URL("https://archive/location/node1.cmdi");
+        WorkspaceNode lockedNode = insertTestWorkspaceNodeWithUriIntoDB(ws, lockedNodeURI, lockedNodeURL, lockedNodeURL.toURI(), Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        addNodeLockToDb(lockedNode);
+        URI unlockedNodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
+        
+        Set<URI> result = workspaceDao.getLockedNodes(Arrays.asList(lockedNodeURI, unlockedNodeURI));
+        
+        assertEquals("Number of locked nodes different from expected", 1, result.size());
+        assertTrue("Locked node should be in the result", result.contains(lockedNodeURI));
+    }
+    
+    @Test
+    public void getLockedNodesEmptyCollection() {
+        
+        Set<URI> result = workspaceDao.getLockedNodes(Collections.<URI>emptyList());
+        
+        assertTrue("Result should be empty", result.isEmpty());
+    }
+    
     @Test
     public void unlockNode() throws MalformedURLException, URISyntaxException {
         
@@ -1180,6 +1389,34 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
         assertEquals("Archive URI of the node was not updated in the database.", expectedURI, retrievedNode.getArchiveURI());
     }
     
+    @Test
+    public void updateNodeArchiveURIs() throws MalformedURLException, URISyntaxException {
+        
+        Workspace testWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        URI firstURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL firstURL = new URL("file:/archive/folder/test1.cmdi");
+        WorkspaceNode firstNode = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, firstURI, firstURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI secondURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL secondURL = new URL("file:/archive/folder/test2.cmdi");
+        WorkspaceNode secondNode = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, secondURI, secondURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI firstExpectedURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URI secondExpectedURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+
+        firstNode.setArchiveURI(firstExpectedURI);
+        secondNode.setArchiveURI(secondExpectedURI);
+        
+        workspaceDao.updateNodeArchiveUris(Arrays.asList(firstNode, secondNode));
+        
+        assertEquals("Archive URI of the first node was not updated in the database.", firstExpectedURI, getNodeFromDB(firstNode.getWorkspaceNodeID()).getArchiveURI());
+        assertEquals("Archive URI of the second node was not updated in the database.", secondExpectedURI, getNodeFromDB(secondNode.getWorkspaceNodeID()).getArchiveURI());
+    }
+    
+    @Test
+    public void updateNodeArchiveURIsEmptyCollection() {
+        
+        workspaceDao.updateNodeArchiveUris(Collections.<WorkspaceNode>emptyList());
+    }
+    
     @Test
     public void updateNodeWithNullArchiveURI() throws MalformedURLException, URISyntaxException {
         
@@ -1270,6 +1507,29 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
         assertEquals("Column was not added to the node table.", initialNumberOfRows + 1, countRowsInTable("node_link"));
     }
 
+    @Test
+    public void addWorkspaceNodeLinks() throws URISyntaxException, MalformedURLException {
+        
+        int initialNumberOfRows = countRowsInTable("node_link");
+        
+        Workspace testWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        WorkspaceNode testParentNode = insertTestWorkspaceNodeIntoDB(testWorkspace);
+        WorkspaceNode testFirstChildNode = insertTestWorkspaceNodeIntoDB(testWorkspace);
+        WorkspaceNode testSecondChildNode = insertTestWorkspaceNodeIntoDB(testWorkspace);
+        
+        List<WorkspaceNodeLink> insertedLinks = new ArrayList<>();
+        insertedLinks.add(new LamusWorkspaceNodeLink(testParentNode.getWorkspaceNodeID(), testFirstChildNode.getWorkspaceNodeID()));
+        insertedLinks.add(new LamusWorkspaceNodeLink(testParentNode.getWorkspaceNodeID(), testSecondChildNode.getWorkspaceNodeID()));
+        
+        this.workspaceDao.addWorkspaceNodeLinks(insertedLinks);
+        
+        assertEquals("Columns were not added to the node_link table.", initialNumberOfRows + 2, countRowsInTable("node_link"));
+        for(WorkspaceNodeLink insertedLink : insertedLinks) {
+            assertEquals("WorkspaceNodeLink object retrieved from the database is different from expected",
+                    insertedLink, getNodeLinkFromDB(insertedLink.getParentWorkspaceNodeID(), insertedLink.getChildWorkspaceNodeID()));
+        }
+    }
+
     @Test
     public void addWorkspaceNodeLinkWhenParentDoesNotExist() throws URISyntaxException, MalformedURLException {
         
@@ -1414,6 +1674,19 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
         }
     }
     
+    @Test
+    public void getWorkspaceNodeCount() throws URISyntaxException, MalformedURLException {
+        
+        Workspace testWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        Workspace otherWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        URL testURL = new URL("file:/archive/folder/test.cmdi");
+        insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, URI.create("hdl:11142/" + UUID.randomUUID().toString()), testURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, URI.create("hdl:11142/" + UUID.randomUUID().toString()), testURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        insertTestWorkspaceNodeWithUriIntoDB(otherWorkspace, URI.create("hdl:11142/" + UUID.randomUUID().toString()), testURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        
+        assertEquals("Node count different from expected", 2, this.workspaceDao.getWorkspaceNodeCount(testWorkspace.getWorkspaceID()));
+    }
+    
     @Test
     public void getWorkspaceTopNodeID() throws URISyntaxException, MalformedURLException {
         
@@ -1493,6 +1766,45 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
 
     }
     
+    @Test
+    public void processExistingNodesForWorkspace() throws MalformedURLException, URISyntaxException {
+        
+        Workspace testWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        URI parentURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL parentURL = new URL("file:/archive/folder/parent.cmdi");
+        WorkspaceNode parentNode = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, parentURI, parentURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI childURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL childURL = new URL("file:/archive/folder/child.cmdi");
+        WorkspaceNode childNode = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, childURI, childURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        
+        final Collection<WorkspaceNode> result = new ArrayList<>();
+        this.workspaceDao.processNodesForWorkspace(testWorkspace.getWorkspaceID(), new WorkspaceNodeHandler() {
+            @Override
+            public void handleNode(WorkspaceNode node) {
+                result.add(node);
+            }
+        });
+        
+        assertEquals("Number of processed nodes is different from expected", 2, result.size());
+        assertTrue("The processed nodes are not the expected ones", result.contains(parentNode) && result.contains(childNode));
+    }
+    
+    @Test
+    public void processNonExistingNodesForWorkspace() {
+        
+        Workspace testWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        
+        final Collection<WorkspaceNode> result = new ArrayList<>();
+        this.workspaceDao.processNodesForWorkspace(testWorkspace.getWorkspaceID(), new WorkspaceNodeHandler() {
+            @Override
+            public void handleNode(WorkspaceNode node) {
+                result.add(node);
+            }
+        });
+        
+        assertTrue("No nodes should have been processed", result.isEmpty());
+    }
+    
     @Test
     public void getExistingMetadataNodesInTreeForWorkspace_workspaceHasNoUnlinkedNodes()
             throws MalformedURLException, URISyntaxException {
@@ -1746,6 +2058,98 @@ public class LamusJdbcWorkspaceDaoTest extends AbstractTransactionalJUnit4Spring
         assertEquals("Returned list of nodes should be empty", 0, result.size());
     }
     
+    @Test
+    public void getWorkspaceTreeSnapshot() throws MalformedURLException, URISyntaxException {
+        
+        Workspace testWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        URI topURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL topURL = new URL("file:/archive/folder/top.cmdi");
+        WorkspaceNode topNode = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, topURI, topURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        setNodeAsWorkspaceTopNodeInDB(testWorkspace, topNode);
+        URI childURI_1 = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL childURL_1 = new URL("file:/archive/folder/child_1.cmdi");
+        WorkspaceNode childNode_1 = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, childURI_1, childURL_1, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI childURI_2 = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL childURL_2 = new URL("file:/archive/folder/child_2.txt");
+        WorkspaceNode childNode_2 = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, childURI_2, childURL_2, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI unlinkedOriginURI = URI.create("file:/local/folder/unlinked.cmdi");
+        WorkspaceNode unlinkedNode = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, null, null, unlinkedOriginURI, Boolean.FALSE, WorkspaceNodeStatus.UPLOADED, Boolean.FALSE);
+        
+        // child_1 is linked both to the top node and to child_2
+        setNodeAsParentAndInsertLinkIntoDatabase(topNode, childNode_2);
+        setNodeAsParentAndInsertLinkIntoDatabase(topNode, childNode_1);
+        setNodeAsParentAndInsertLinkIntoDatabase(childNode_2, childNode_1);
+        
+        Workspace otherWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        URI otherURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL otherURL = new URL("file:/archive/folder/other.cmdi");
+        WorkspaceNode otherNode = insertTestWorkspaceNodeWithUriIntoDB(otherWorkspace, otherURI, otherURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        
+        List<WorkspaceNode> expectedTopNodeChildren = new ArrayList<>();
+        expectedTopNodeChildren.add(childNode_1);
+        expectedTopNodeChildren.add(childNode_2);
+        List<WorkspaceNode> expectedChildNodeChildren = new ArrayList<>();
+        expectedChildNodeChildren.add(childNode_1);
+        List<WorkspaceNode> expectedUnlinkedNodes = new ArrayList<>();
+        expectedUnlinkedNodes.add(unlinkedNode);
+        
+        WorkspaceTreeSnapshot result = this.workspaceDao.getWorkspaceTreeSnapshot(testWorkspace.getWorkspaceID());
+        
+        assertNotNull("The returned snapshot should not be null", result);
+        assertEquals("Workspace ID of the snapshot different from expected", testWorkspace.getWorkspaceID(), result.getWorkspaceID());
+        assertEquals("Top node ID of the snapshot different from expected", topNode.getWorkspaceNodeID(), result.getTopNodeID());
+        assertEquals("Node in the snapshot different from expected", topNode, result.getNode(topNode.getWorkspaceNodeID()));
+        assertEquals("Node in the snapshot different from expected", childNode_1, result.getNode(childNode_1.getWorkspaceNodeID()));
+        assertFalse("Node from another workspace should not be part of the snapshot", result.containsNode(otherNode.getWorkspaceNodeID()));
+        assertEquals("Children of the top node different from expected", expectedTopNodeChildren, result.getChildren(topNode.getWorkspaceNodeID()));
+        assertEquals("Children of a child node different from expected", expectedChildNodeChildren, result.getChildren(childNode_2.getWorkspaceNodeID()));
+        assertEquals("Unlinked nodes different from expected", expectedUnlinkedNodes, result.getUnlinkedNodes());
+    }
+    
+    @Test
+    public void getDescendantNodesInDepthFirstOrder() throws MalformedURLException, URISyntaxException {
+        
+        Workspace testWorkspace = insertTestWorkspaceWithDefaultUserIntoDB(Boolean.TRUE);
+        URI parentURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL parentURL = new URL("file:/archive/folder/parent.cmdi");
+        WorkspaceNode parentNode = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, parentURI, parentURL, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI childURI_1 = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL childURL_1 = new URL("file:/archive/folder/child_1.txt");
+        WorkspaceNode childNode_1 = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, childURI_1, childURL_1, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI childURI_2 = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL childURL_2 = new URL("file:/archive/folder/child_2.cmdi");
+        WorkspaceNode childNode_2 = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, childURI_2, childURL_2, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI subChildURI_1 = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL subChildURL_1 = new URL("file:/archive/folder/subchild_1.cmdi");
+        WorkspaceNode subChildNode_1 = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, subChildURI_1, subChildURL_1, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        URI subSubChildURI_1 = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        URL subSubChildURL_1 = new URL("file:/archive/folder/subsubchild_1.cmdi");
+        WorkspaceNode subSubChildNode_1 = insertTestWorkspaceNodeWithUriIntoDB(testWorkspace, subSubChildURI_1, subSubChildURL_1, null, Boolean.TRUE, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE);
+        
+        // links inserted in a different order than the node IDs
+        setNodeAsParentAndInsertLinkIntoDatabase(parentNode, childNode_2);
+        setNodeAsParentAndInsertLinkIntoDatabase(subChildNode_1, subSubChildNode_1);
+        setNodeAsParentAndInsertLinkIntoDatabase(parentNode, childNode_1);
+        setNodeAsParentAndInsertLinkIntoDatabase(childNode_1, subChildNode_1);
+        
+        List<WorkspaceNode> expectedAllDescendants = new ArrayList<>();
+        expectedAllDescendants.add(childNode_1);
+        expectedAllDescendants.add(subChildNode_1);
+        expectedAllDescendants.add(subSubChildNode_1);
+        expectedAllDescendants.add(childNode_2);
+        
+        List<WorkspaceNode> expectedMetadataDescendants = new ArrayList<>();
+        expectedMetadataDescendants.add(subChildNode_1);
+        expectedMetadataDescendants.add(subSubChildNode_1);
+        expectedMetadataDescendants.add(childNode_2);
+        
+        Collection<WorkspaceNode> allDescendants = this.workspaceDao.getDescendantWorkspaceNodes(parentNode.getWorkspaceNodeID());
+        Collection<WorkspaceNode> metadataDescendants = this.workspaceDao.getDescendantWorkspaceNodesByType(parentNode.getWorkspaceNodeID(), WorkspaceNodeType.METADATA);
+        
+        assertEquals("Descendant nodes different from expected (or in a different order)", expectedAllDescendants, new ArrayList<>(allDescendants));
+        assertEquals("Metadata descendant nodes different from expected (or in a different order)", expectedMetadataDescendants, new ArrayList<>(metadataDescendants));
+    }
+    
     @Test
     public void getExistingParentNodes() throws MalformedURLException, URISyntaxException {
         
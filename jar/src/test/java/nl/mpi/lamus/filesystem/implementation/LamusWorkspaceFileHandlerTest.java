@@ -15,6 +15,7 @@
  */
 package nl.mpi.lamus.filesystem.implementation;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -23,7 +24,9 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.UUID;
@@ -31,6 +34,7 @@ import javax.xml.transform.stream.StreamResult;
 import nl.mpi.lamus.archive.ArchiveFileHelper;
 import nl.mpi.lamus.archive.ArchiveFileLocationProvider;
 import nl.mpi.lamus.exception.NodeAccessException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.filesystem.LamusFilesystemTestProperties;
 import nl.mpi.lamus.filesystem.WorkspaceFileHandler;
 import nl.mpi.lamus.filesystem.implementation.LamusWorkspaceFileHandlerTest.LamusWorkspaceFileHandlerTestBeans;
@@ -389,9 +393,90 @@ public class LamusWorkspaceFileHandlerTest {
         InputStream originInputStream = new FileInputStream(originFile);
         File destinationFile = new File(workspaceDirectory, "someRandomLocation.txt");
         
-        workspaceFileHandler.copyInputStreamToTargetFile(originInputStream, destinationFile);
+        CopiedFileInfo copiedFileInfo = workspaceFileHandler.copyInputStreamToTargetFile(originInputStream, destinationFile);
         
         assertTrue("File doesn't exist in its expected final location", destinationFile.exists());
+        assertEquals("Copied file different from expected", destinationFile, copiedFileInfo.getFile());
+        assertEquals("Size different from expected", originFile.length(), copiedFileInfo.getSize());
+    }
+    
+    @Test
+    public void copyInputStreamToTargetFile_ChecksumAndSize() throws IOException {
+        
+        byte[] content = "some content".getBytes(StandardCharsets.UTF_8);
+        String expectedChecksum = "9893532233caff98cd083a116b013c0b";
+        File destinationFile = testFolder.newFile("someFile.txt");
+        
+        CopiedFileInfo copiedFileInfo = workspaceFileHandler.copyInputStreamToTargetFile(new ByteArrayInputStream(content), destinationFile);
+        
+        assertEquals("Size different from expected", content.length, copiedFileInfo.getSize());
+        assertEquals("Checksum different from expected", expectedChecksum, copiedFileInfo.getChecksum());
+        assertTrue("Copied content different from expected", Arrays.equals(content, Files.readAllBytes(destinationFile.toPath())));
+    }
+    
+    @Test
+    public void copyInputStreamToTargetFile_LargerThanBuffer() throws IOException {
+        
+        // larger than the copy buffer, so that it is filled and written more than once
+        byte[] content = new byte[(1024 * 1024 * 2) + 123];
+        for(int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        File destinationFile = testFolder.newFile("someLargeFile.bin");
+        
+        CopiedFileInfo copiedFileInfo = workspaceFileHandler.copyInputStreamToTargetFile(new ByteArrayInputStream(content), destinationFile);
+        
+        assertEquals("Size different from expected", content.length, copiedFileInfo.getSize());
+        assertTrue("Copied content different from expected", Arrays.equals(content, Files.readAllBytes(destinationFile.toPath())));
+    }
+    
+    @Test
+    public void moveUploadedFileToTargetFile() throws IOException {
+        
+        byte[] content = "some content".getBytes(StandardCharsets.UTF_8);
+        File uploadedFile = testFolder.newFile("someUploadedFile.txt");
+        Files.write(uploadedFile.toPath(), content);
+        File destinationFile = new File(testFolder.newFolder("upload"), "someFile.txt");
+        
+        CopiedFileInfo copiedFileInfo = workspaceFileHandler.moveUploadedFileToTargetFile(uploadedFile, destinationFile);
+        
+        assertFalse("File shouldn't exist anymore in its original location", uploadedFile.exists());
+        assertTrue("Moved content different from expected", Arrays.equals(content, Files.readAllBytes(destinationFile.toPath())));
+        assertEquals("Moved file different from expected", destinationFile, copiedFileInfo.getFile());
+        assertEquals("Size different from expected", content.length, copiedFileInfo.getSize());
+        assertNull("Checksum should not be calculated", copiedFileInfo.getChecksum());
+    }
+    
+    @Test
+    public void moveUploadedFileToTargetFile_FileAlreadyExists() throws IOException {
+        
+        byte[] content = "some content".getBytes(StandardCharsets.UTF_8);
+        File uploadedFile = testFolder.newFile("someUploadedFile.txt");
+        Files.write(uploadedFile.toPath(), content);
+        File destinationFile = testFolder.newFile("someFile.txt");
+        Files.write(destinationFile.toPath(), "some older content".getBytes(StandardCharsets.UTF_8));
+        
+        CopiedFileInfo copiedFileInfo = workspaceFileHandler.moveUploadedFileToTargetFile(uploadedFile, destinationFile);
+        
+        assertFalse("File shouldn't exist anymore in its original location", uploadedFile.exists());
+        assertTrue("Moved content different from expected", Arrays.equals(content, Files.readAllBytes(destinationFile.toPath())));
+        assertEquals("Size different from expected", content.length, copiedFileInfo.getSize());
+    }
+    
+    @Test
+    public void moveUploadedFileToTargetFile_UploadedFileDoesntExist() throws IOException {
+        
+        File uploadedFile = new File(testFolder.getRoot(), "someUploadedFile.txt");
+        File destinationFile = new File(testFolder.getRoot(), "someFile.txt");
+        
+        try {
+            workspaceFileHandler.moveUploadedFileToTargetFile(uploadedFile, destinationFile);
+            fail("An exception should have been thrown");
+        } catch(IOException ex) {
+            //expected exception is thrown
+        }
+        
+        assertFalse("File shouldn't exist in the destination location", destinationFile.exists());
     }
     
     @Test
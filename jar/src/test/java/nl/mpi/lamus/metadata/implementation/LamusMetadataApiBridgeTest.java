@@ -83,6 +83,7 @@ import static org.powermock.api.support.membermodification.MemberMatcher.method;
 import static org.powermock.api.support.membermodification.MemberModifier.stub;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.beans.factory.ObjectFactory;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
@@ -221,7 +222,12 @@ public class LamusMetadataApiBridgeTest {
     
     @Before
     public void setUp() {
-        lamusMetadataApiBridge = new LamusMetadataApiBridge(mockMetadataAPI,
+        lamusMetadataApiBridge = new LamusMetadataApiBridge(new ObjectFactory<MetadataAPI>() {
+            @Override
+            public MetadataAPI getObject() {
+                return mockMetadataAPI;
+            }
+        },
                 mockWorkspaceFileHandler, mockHandleParser,
                 mockMetadataElementFactory,
                 mockAllowedCmdiProfiles);
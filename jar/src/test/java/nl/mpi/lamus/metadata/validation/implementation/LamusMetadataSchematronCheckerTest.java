@@ -20,6 +20,9 @@ import java.io.File;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import nl.mpi.lamus.metadata.validation.MetadataSchematronChecker;
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
@@ -49,6 +52,7 @@ public class LamusMetadataSchematronCheckerTest {
     @Mock File mockSchematronFile;
     
     private MetadataSchematronChecker metadataChecker;
+    private ExecutorService validationExecutorService;
 
     
     public LamusMetadataSchematronCheckerTest() {
@@ -69,10 +73,13 @@ public class LamusMetadataSchematronCheckerTest {
                 new File(URLDecoder.decode(getClass().getClassLoader().getResource("cmdi_validation/cmdi_schematron_upload.xsl").getFile())));
         ReflectionTestUtils.setField(metadataChecker, "schematronXsltFile_submit",
                 new File(URLDecoder.decode(getClass().getClassLoader().getResource("cmdi_validation/cmdi_schematron_submit.xsl").getFile())));
+        validationExecutorService = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(metadataChecker, "validationExecutorService", validationExecutorService);
     }
     
     @After
     public void tearDown() {
+        validationExecutorService.shutdownNow();
     }
 
     
@@ -240,6 +247,46 @@ public class LamusMetadataSchematronCheckerTest {
         assertCollectionContainsIssue(issues, fileToCheck, expectedTest, expectedMessage, expectedLevel);
     }
     
+    @Test
+    public void validateSubmittedFile_issuesInFileOrder() throws Exception {
+        
+        final File fileToCheck_1 = getResourceFromLocation("cmdi_validation/testingReference_noResourceProxy.cmdi");
+        final File fileToCheck_2 = getResourceFromLocation("cmdi_validation/testingProfile_notAllowed.cmdi");
+        final Collection<File> filesToCheck = new ArrayList<>();
+        filesToCheck.add(fileToCheck_1);
+        filesToCheck.add(fileToCheck_2);
+        
+        Collection<MetadataValidationIssue> issues = metadataChecker.validateSubmittedFile(filesToCheck);
+        
+        assertFalse("Issues collection should not be empty", issues.isEmpty());
+        boolean secondFileReached = false;
+        for(MetadataValidationIssue issue : issues) {
+            if(fileToCheck_2.equals(issue.getMetadataFile())) {
+                secondFileReached = true;
+            } else {
+                assertFalse("Issues of the first file should come before the ones of the second", secondFileReached);
+                assertEquals("Issue refers to an unexpected file", fileToCheck_1, issue.getMetadataFile());
+            }
+        }
+        assertTrue("Issues of the second file are missing", secondFileReached);
+    }
+    
+    @Test
+    public void validateSubmittedFile_schematronCompiledOnce() throws Exception {
+        
+        final File fileToCheck = getResourceFromLocation("cmdi_validation/testing_everythingValid.cmdi");
+        final Collection<File> filesToCheck = new ArrayList<>();
+        filesToCheck.add(fileToCheck);
+        
+        metadataChecker.validateSubmittedFile(filesToCheck);
+        Object firstResource = ((Map<?, ?>) ReflectionTestUtils.getField(metadataChecker, "compiledSchematronResources")).values().iterator().next();
+        metadataChecker.validateSubmittedFile(filesToCheck);
+        Map<?, ?> compiledResources = (Map<?, ?>) ReflectionTestUtils.getField(metadataChecker, "compiledSchematronResources");
+        
+        assertEquals("Only one compiled schematron resource expected", 1, compiledResources.size());
+        assertSame("Compiled schematron resource should have been reused", firstResource, compiledResources.values().iterator().next());
+    }
+    
     @Test
     public void validateSubmittedFile_noResourceProxy() throws Exception {
         
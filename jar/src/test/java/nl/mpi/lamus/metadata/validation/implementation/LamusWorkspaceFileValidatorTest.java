@@ -24,6 +24,9 @@ import java.net.URL;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.MetadataValidationException;
 import nl.mpi.lamus.metadata.validation.MetadataSchematronChecker;
@@ -42,6 +45,7 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.Rule;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 
 /**
  *
@@ -57,6 +61,9 @@ public class LamusWorkspaceFileValidatorTest {
     @Rule
     public ExpectedException exceptionCheck = ExpectedException.none();
     
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+    
     @Mock WorkspaceDao mockWorkspaceDao;
     @Mock MetadataSchematronChecker mockMetadataChecker;
     
@@ -65,6 +72,7 @@ public class LamusWorkspaceFileValidatorTest {
     @Mock WorkspaceNode mockNode_3;
     
     private WorkspaceFileValidator workspaceFileValidator;
+    private ExecutorService validationExecutorService;
     
     private final int workspaceID = 10;
     
@@ -81,11 +89,14 @@ public class LamusWorkspaceFileValidatorTest {
     
     @Before
     public void setUp() {
-        workspaceFileValidator = new LamusWorkspaceFileValidator(mockWorkspaceDao, mockMetadataChecker);
+        validationExecutorService = Executors.newFixedThreadPool(2);
+        workspaceFileValidator = new LamusWorkspaceFileValidator(mockWorkspaceDao, mockMetadataChecker,
+                validationExecutorService, new File(testFolder.getRoot(), "schema_cache"));
     }
     
     @After
     public void tearDown() {
+        validationExecutorService.shutdownNow();
     }
 
     
@@ -327,6 +338,60 @@ public class LamusWorkspaceFileValidatorTest {
         }
     }
     
+    @Test
+    public void triggerSchemaValidationForMetadataFilesInWorkspace_valid() throws CMDIValidatorInitException, MetadataValidationException, MalformedURLException {
+        
+        final File validFile = getResourceFromLocation("cmdi_validation/testing_schemaValidation_valid.cmdi");
+        final Collection<WorkspaceNode> metadataNodes = new ArrayList<>();
+        metadataNodes.add(mockNode_1);
+        metadataNodes.add(mockNode_2);
+        
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getMetadataNodesInTreeForWorkspace(workspaceID); will(returnValue(metadataNodes));
+            allowing(mockNode_1).getWorkspaceURL(); will(returnValue(validFile.toURI().toURL()));
+            allowing(mockNode_2).getWorkspaceURL(); will(returnValue(null));
+            allowing(mockNode_2).getArchiveURL(); will(returnValue(validFile.toURI().toURL()));
+        }});
+        
+        workspaceFileValidator.triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
+    }
+    
+    @Test
+    public void triggerSchemaValidationForMetadataFilesInWorkspace_issuesInNodeOrder() throws CMDIValidatorInitException, MalformedURLException {
+        
+        final File invalidFile = getResourceFromLocation("cmdi_validation/testing_schemaValidation_invalid.cmdi");
+        final File validFile = getResourceFromLocation("cmdi_validation/testing_schemaValidation_valid.cmdi");
+        final File malformedFile = getResourceFromLocation("cmdi_validation/testing_schemaValidation_malformed.cmdi");
+        final Collection<WorkspaceNode> metadataNodes = new ArrayList<>();
+        metadataNodes.add(mockNode_1);
+        metadataNodes.add(mockNode_2);
+        metadataNodes.add(mockNode_3);
+        
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getMetadataNodesInTreeForWorkspace(workspaceID); will(returnValue(metadataNodes));
+            allowing(mockNode_1).getWorkspaceURL(); will(returnValue(malformedFile.toURI().toURL()));
+            allowing(mockNode_2).getWorkspaceURL(); will(returnValue(validFile.toURI().toURL()));
+            allowing(mockNode_3).getWorkspaceURL(); will(returnValue(invalidFile.toURI().toURL()));
+        }});
+        
+        try {
+            workspaceFileValidator.triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
+            fail("should have thrown an exception");
+        } catch(MetadataValidationException ex) {
+            assertEquals("Exception message different from expected", "Problems with schema metadata validation", ex.getMessage());
+            assertFalse("Exception should contain issues", ex.getValidationIssues().isEmpty());
+            
+            Iterator<MetadataValidationIssue> issues = ex.getValidationIssues().iterator();
+            assertEquals("First issue should be about the first node", malformedFile, issues.next().getMetadataFile());
+            MetadataValidationIssue lastIssue = null;
+            while(issues.hasNext()) {
+                lastIssue = issues.next();
+            }
+            assertNotNull("There should be issues about the last node", lastIssue);
+            assertEquals("Last issue should be about the last node", invalidFile, lastIssue.getMetadataFile());
+        }
+    }
+    
     @Test
     public void validationIssuesContainErrors() throws MalformedURLException {
         
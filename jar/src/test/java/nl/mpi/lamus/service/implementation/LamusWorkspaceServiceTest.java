@@ -17,7 +17,6 @@ package nl.mpi.lamus.service.implementation;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -28,7 +27,6 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
-import java.util.zip.ZipInputStream;
 import nl.mpi.archiving.corpusstructure.core.NodeNotFoundException;
 import nl.mpi.lamus.archive.ArchiveHandleHelper;
 import nl.mpi.lamus.dao.WorkspaceDao;
@@ -46,6 +44,7 @@ import nl.mpi.lamus.exception.TypeCheckerException;
 import nl.mpi.lamus.exception.WorkspaceException;
 import nl.mpi.lamus.exception.WorkspaceExportException;
 import nl.mpi.lamus.exception.WorkspaceImportException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.typechecking.TypecheckedResults;
 import nl.mpi.lamus.workspace.exporting.WorkspaceCorpusStructureExporter;
 import nl.mpi.lamus.workspace.management.WorkspaceNodeLinkManager;
@@ -95,13 +94,13 @@ public class LamusWorkspaceServiceTest {
     @Mock private WorkspaceNode mockNewNode;
     @Mock private File mockWorkspaceUploadDirectory;
     @Mock private List<WorkspaceNode> mockUnlinkedNodesList;
-    @Mock private InputStream mockInputStream;
     @Mock private File mockFile;
     @Mock private Collection<File> mockUploadedFiles;
+    @Mock private Collection<CopiedFileInfo> mockCopiedFilesInfo;
+    @Mock private CopiedFileInfo mockCopiedFileInfo;
     @Mock private Collection<ImportProblem> mockFailedUploads;
     @Mock private ZipUploadResult mockZipUploadResult;
     @Mock private TypecheckedResults mockTypecheckedResults;
-    @Mock private ZipInputStream mockZipInputStream;
 
     private final int workspaceID = 1;
     private final String userID = "testUser";
@@ -961,89 +960,47 @@ public class LamusWorkspaceServiceTest {
     }
     
     @Test
-    public void uploadFileIntoWorkspace() throws IOException, DisallowedPathException {
+    public void uploadFileIntoWorkspace_FromFile() throws IOException, DisallowedPathException {
         
-        final String filename = "someFile.cmdi";
+        final String filename = "someFile.txt";
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceUploader).uploadFileIntoWorkspace(workspaceID, mockInputStream, filename);
-                will(returnValue(mockFile));
+            oneOf(mockWorkspaceUploader).uploadFileIntoWorkspace(workspaceID, mockFile, filename);
+                will(returnValue(mockCopiedFileInfo));
         }});
         
-        File result = service.uploadFileIntoWorkspace(userID, workspaceID, mockInputStream, filename);
+        CopiedFileInfo result = service.uploadFileIntoWorkspace(userID, workspaceID, mockFile, filename);
         
-        assertEquals("Result different from expected", mockFile, result);
+        assertEquals("Result different from expected", mockCopiedFileInfo, result);
     }
     
     @Test
-    public void uploadFileIntoWorkspace_throwsException() throws IOException, DisallowedPathException {
+    public void uploadZipFileIntoWorkspace_FromFile() throws IOException, DisallowedPathException {
         
-        final String filename = "someFile.cmdi";
-        
-        final IOException expectedException = new IOException("some exception message");
-        
-        context.checking(new Expectations() {{
-            
-            oneOf(mockWorkspaceUploader).uploadFileIntoWorkspace(workspaceID, mockInputStream, filename);
-                will(throwException(expectedException));
-        }});
-        
-        try {
-            service.uploadFileIntoWorkspace(userID, workspaceID, mockInputStream, filename);
-            fail("should have thrown exception");
-        } catch(IOException ex) {
-            assertEquals("Exception different from expected", expectedException, ex);
-        }
-    }
-    
-    @Test
-    public void uploadZipFileIntoWorkspace() throws IOException, DisallowedPathException {
-        
-        final String filename = "someFile.cmdi";
+        final String filename = "someFile.zip";
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceUploader).uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
+            oneOf(mockWorkspaceUploader).uploadZipFileIntoWorkspace(workspaceID, mockFile);
                 will(returnValue(mockZipUploadResult));
         }});
         
-        ZipUploadResult result = service.uploadZipFileIntoWorkspace(userID, workspaceID, mockZipInputStream, filename);
+        ZipUploadResult result = service.uploadZipFileIntoWorkspace(userID, workspaceID, mockFile, filename);
         
         assertEquals("Result different from expected", mockZipUploadResult, result);
     }
     
-    @Test
-    public void uploadZipFileIntoWorkspace_throwsException() throws IOException, DisallowedPathException {
-        
-        final String filename = "someFile.cmdi";
-        
-        final IOException expectedException = new IOException("some exception message");
-        
-        context.checking(new Expectations() {{
-            
-            oneOf(mockWorkspaceUploader).uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-                will(throwException(expectedException));
-        }});
-        
-        try {
-             service.uploadZipFileIntoWorkspace(userID, workspaceID, mockZipInputStream, filename);
-             fail("should have thrown exception");
-        } catch(IOException ex) {
-            assertEquals("Exception different from expected", expectedException, ex);
-        }
-    }
-    
     @Test
     public void processUploadedFiles() throws IOException, WorkspaceException, TypeCheckerException {
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceUploader).processUploadedFiles(workspaceID, mockUploadedFiles);
+            oneOf(mockWorkspaceUploader).processUploadedFiles(workspaceID, mockUploadedFiles, mockCopiedFilesInfo);
                 will(returnValue(mockFailedUploads));
         }});
         
-        Collection<ImportProblem> result = service.processUploadedFiles(userID, workspaceID, mockUploadedFiles);
+        Collection<ImportProblem> result = service.processUploadedFiles(userID, workspaceID, mockUploadedFiles, mockCopiedFilesInfo);
         
         assertEquals("Resulting map different from expected", mockFailedUploads, result);
     }
@@ -1055,12 +1012,12 @@ public class LamusWorkspaceServiceTest {
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceUploader).processUploadedFiles(workspaceID, mockUploadedFiles);
+            oneOf(mockWorkspaceUploader).processUploadedFiles(workspaceID, mockUploadedFiles, mockCopiedFilesInfo);
                 will(throwException(workspaceException));
         }});
         
         try {
-            service.processUploadedFiles(userID, workspaceID, mockUploadedFiles);
+            service.processUploadedFiles(userID, workspaceID, mockUploadedFiles, mockCopiedFilesInfo);
             fail("should have thrown exception");
         } catch(WorkspaceException ex) {
             assertEquals("Exception different from expected", workspaceException, ex);
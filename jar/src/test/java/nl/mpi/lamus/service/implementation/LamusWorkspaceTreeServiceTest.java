@@ -17,6 +17,10 @@ package nl.mpi.lamus.service.implementation;
 
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import nl.mpi.lamus.archive.ArchiveHandleHelper;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.WorkspaceNodeNotFoundException;
@@ -29,9 +33,13 @@ import nl.mpi.lamus.workspace.management.WorkspaceAccessChecker;
 import nl.mpi.lamus.workspace.management.WorkspaceManager;
 import nl.mpi.lamus.workspace.management.WorkspaceNodeManager;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNodeLink;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceTreeSnapshot;
 import nl.mpi.lamus.workspace.replace.implementation.LamusNodeReplaceManager;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploader;
 import org.jmock.Expectations;
@@ -158,9 +166,16 @@ public class LamusWorkspaceTreeServiceTest {
         final WorkspaceTreeNode treeNodeToRetrieve = new LamusWorkspaceTreeNode(
                 node, parentTreeNode, mockWorkspaceDao);
         
+        Collection<WorkspaceNode> snapshotNodes = new ArrayList<>();
+        snapshotNodes.add(parentTreeNode);
+        snapshotNodes.add(node);
+        Collection<WorkspaceNodeLink> snapshotLinks = new ArrayList<>();
+        snapshotLinks.add(new LamusWorkspaceNodeLink(parentNodeID, nodeID));
+        final WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, parentNodeID, snapshotNodes, snapshotLinks);
+        
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDao).getWorkspaceNode(nodeID); will(returnValue(node));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(snapshot));
         }});
         
         WorkspaceTreeNode result = service.getTreeNode(nodeID, parentTreeNode);
@@ -169,4 +184,69 @@ public class LamusWorkspaceTreeServiceTest {
         assertNotNull("Returned tree node should have a null parent tree node.", result.getParent());
         assertEquals("The parent tree node of the returned tree node is different from expected", parentTreeNode, result.getParent());
     }
+    
+    @Test
+    public void testGetTreeNodeWithParentNotInSnapshot() throws WorkspaceNodeNotFoundException {
+
+        final int parentNodeID = 0;
+        final int workspaceID = 1;
+        final int nodeID = 1;
+        WorkspaceNodeType type = WorkspaceNodeType.METADATA;
+        WorkspaceNodeStatus status = WorkspaceNodeStatus.ARCHIVE_COPY;
+
+        final WorkspaceTreeNode parentTreeNode = new LamusWorkspaceTreeNode(
+                parentNodeID, workspaceID, null,
+                "parent_name", "parent_title", type, null, null,
+                null, null, status, Boolean.FALSE, "cmdi", null, mockWorkspaceDao);
+        
+        final WorkspaceNode node = new LamusWorkspaceNode(
+                nodeID, workspaceID, null,
+                "node_name", "node_title", type, null, null,
+                null, null, status, Boolean.FALSE, "cmdi");
+        
+        final WorkspaceTreeNode treeNodeToRetrieve = new LamusWorkspaceTreeNode(
+                node, parentTreeNode, mockWorkspaceDao);
+        
+        final WorkspaceTreeSnapshot emptySnapshot = new LamusWorkspaceTreeSnapshot(workspaceID, parentNodeID,
+                Collections.<WorkspaceNode>emptyList(), Collections.<WorkspaceNodeLink>emptyList());
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(emptySnapshot));
+            oneOf(mockWorkspaceDao).getWorkspaceNode(nodeID); will(returnValue(node));
+        }});
+        
+        WorkspaceTreeNode result = service.getTreeNode(nodeID, parentTreeNode);
+        assertEquals("Returned tree node is different from expected", treeNodeToRetrieve, result);
+    }
+    
+    @Test
+    public void listUnlinkedTreeNodes() {
+        
+        final int workspaceID = 1;
+        final int topNodeID = 1;
+        WorkspaceNodeType type = WorkspaceNodeType.METADATA;
+        
+        WorkspaceNode topNode = new LamusWorkspaceNode(topNodeID, workspaceID, null,
+                "top_name", "top_title", type, null, null, null, null, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE, "cmdi");
+        WorkspaceNode unlinkedNode = new LamusWorkspaceNode(2, workspaceID, null,
+                "unlinked_name", "unlinked_title", type, null, null, null, null, WorkspaceNodeStatus.UPLOADED, Boolean.FALSE, "cmdi");
+        WorkspaceNode deletedNode = new LamusWorkspaceNode(3, workspaceID, null,
+                "deleted_name", "deleted_title", type, null, null, null, null, WorkspaceNodeStatus.DELETED, Boolean.FALSE, "cmdi");
+        Collection<WorkspaceNode> snapshotNodes = new ArrayList<>();
+        snapshotNodes.add(topNode);
+        snapshotNodes.add(unlinkedNode);
+        snapshotNodes.add(deletedNode);
+        final WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID,
+                snapshotNodes, Collections.<WorkspaceNodeLink>emptyList());
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(snapshot));
+        }});
+        
+        List<WorkspaceTreeNode> result = service.listUnlinkedTreeNodes("someUser", workspaceID);
+        assertEquals("Number of unlinked tree nodes different from expected", 1, result.size());
+        assertEquals("Unlinked tree node different from expected", new LamusWorkspaceTreeNode(unlinkedNode, null, mockWorkspaceDao), result.get(0));
+    }
 }
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.typechecking.implementation;
+
+import javax.sql.DataSource;
+import nl.mpi.lamus.typechecking.TypecheckResultCache;
+import nl.mpi.lamus.typechecking.TypecheckedResults;
+import nl.mpi.lamus.typechecking.TypecheckerJudgement;
+import static org.junit.Assert.*;
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.AbstractTransactionalJUnit4SpringContextTests;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+
+/**
+ *
+ * @author guisil
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader = AnnotationConfigContextLoader.class)
+@ActiveProfiles("testing")
+public class LamusJdbcTypecheckResultCacheTest extends AbstractTransactionalJUnit4SpringContextTests {
+
+    @Configuration
+    @Profile("testing")
+    static class DataSourceConfig {
+
+        @Bean
+        @Qualifier("lamusDataSource")
+        public DataSource dataSource() {
+            return new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.HSQL)
+                .setName("lamus2_typecheck")
+                .addScript("classpath:nl/mpi/lamus/dao/implementation/hsql_lamus2_drop.sql")
+                .addScript("classpath:nl/mpi/lamus/dao/implementation/hsql_lamus2_create.sql")
+                .build();
+        }
+    }
+
+    @Configuration
+    static class TransactionManagerConfig {
+
+        @Autowired
+        @Qualifier("lamusDataSource")
+        private DataSource lamusDataSource;
+
+        @Bean
+        public DataSourceTransactionManager transactionManager() {
+            return new DataSourceTransactionManager(lamusDataSource);
+        }
+    }
+
+    @Autowired
+    @Qualifier("lamusDataSource")
+    DataSource lamusDataSource;
+
+    private TypecheckResultCache typecheckResultCache;
+
+    private final String configurationVersion = "1";
+    private final String checksum = "9893532233caff98cd083a116b013c0b";
+    private final long size = 12;
+
+    public LamusJdbcTypecheckResultCacheTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        typecheckResultCache = new LamusJdbcTypecheckResultCache(lamusDataSource, configurationVersion);
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+
+    @Test
+    public void cacheAndRetrieveResults() {
+
+        TypecheckedResults expectedResults = new LamusTypecheckedResults("audio/x-wav", "true okay (content, name)", TypecheckerJudgement.ARCHIVABLE_LONGTERM);
+
+        assertNull("Results should not be cached yet", typecheckResultCache.getCachedResults(checksum, size, "file.wav"));
+
+        typecheckResultCache.cacheResults(checksum, size, "file.wav", expectedResults);
+
+        assertEquals("Number of rows different from expected", 1, countRowsInTable("typecheck_result"));
+
+        TypecheckedResults retrievedResults = typecheckResultCache.getCachedResults(checksum, size, "other_name.WAV");
+        assertEquals("Retrieved results different from expected", expectedResults, retrievedResults);
+
+        assertEquals("Number of hits different from expected", 1, typecheckResultCache.getHitCount());
+        assertEquals("Number of misses different from expected", 1, typecheckResultCache.getMissCount());
+    }
+
+    @Test
+    public void resultsNotRetrievedForDifferentKey() {
+
+        TypecheckedResults results = new LamusTypecheckedResults("audio/x-wav", "true okay (content, name)", TypecheckerJudgement.ARCHIVABLE_LONGTERM);
+        typecheckResultCache.cacheResults(checksum, size, "file.wav", results);
+
+        assertNull("Results should not be retrieved for a different size", typecheckResultCache.getCachedResults(checksum, size + 1, "file.wav"));
+        assertNull("Results should not be retrieved for a different checksum", typecheckResultCache.getCachedResults("d41d8cd98f00b204e9800998ecf8427e", size, "file.wav"));
+        assertNull("Results should not be retrieved for a different extension", typecheckResultCache.getCachedResults(checksum, size, "file.txt"));
+
+        TypecheckResultCache otherVersionCache = new LamusJdbcTypecheckResultCache(lamusDataSource, "2");
+        assertNull("Results should not be retrieved for a different configuration version", otherVersionCache.getCachedResults(checksum, size, "file.wav"));
+
+        assertEquals("Number of hits different from expected", 0, typecheckResultCache.getHitCount());
+        assertEquals("Number of misses different from expected", 3, typecheckResultCache.getMissCount());
+    }
+
+    @Test
+    public void cacheSameResultsTwice() {
+
+        TypecheckedResults results = new LamusTypecheckedResults("audio/x-wav", "true okay (content, name)", TypecheckerJudgement.ARCHIVABLE_LONGTERM);
+
+        typecheckResultCache.cacheResults(checksum, size, "file.wav", results);
+        typecheckResultCache.cacheResults(checksum, size, "file.wav", results);
+
+        assertEquals("Number of rows different from expected", 1, countRowsInTable("typecheck_result"));
+    }
+
+    @Test
+    public void resultsWithoutJudgementNotCached() {
+
+        TypecheckedResults results = new LamusTypecheckedResults("Unknown", "Read error for file.wav", null);
+
+        typecheckResultCache.cacheResults(checksum, size, "file.wav", results);
+
+        assertEquals("Number of rows different from expected", 0, countRowsInTable("typecheck_result"));
+    }
+}
@@ -31,6 +31,7 @@ import org.jmock.integration.junit4.JUnitRuleMockery;
 import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.*;
+import org.springframework.beans.factory.ObjectFactory;
 import static org.junit.Assert.*;
 
 /**
@@ -47,6 +48,8 @@ public class LamusTypecheckHandlerTest {
     private TypecheckHandler typecheckHandler;
     @Mock FileType mockTypechecker;
     @Mock DeepFileType mockDeepTypechecker;
+    @Mock DeepFileType mockOtherDeepTypechecker;
+    @Mock ObjectFactory<DeepFileType> mockDeepTypecheckerFactory;
     @Mock InputStream mockInputStream;
     
     public LamusTypecheckHandlerTest() {
@@ -62,7 +65,7 @@ public class LamusTypecheckHandlerTest {
     
     @Before
     public void setUp() {
-        typecheckHandler = new LamusTypecheckHandler(mockTypechecker, mockDeepTypechecker);
+        typecheckHandler = new LamusTypecheckHandler(mockTypechecker, mockDeepTypecheckerFactory);
     }
     
     @After
@@ -93,6 +96,7 @@ public class LamusTypecheckHandlerTest {
         final String expectedResult = "true something";
         
         context.checking(new Expectations() {{
+            oneOf(mockDeepTypecheckerFactory).getObject(); will(returnValue(mockDeepTypechecker));
             oneOf(mockDeepTypechecker).checkURL(fileURL, filename); will(returnValue(expectedResult));
         }});
         
@@ -100,6 +104,44 @@ public class LamusTypecheckHandlerTest {
         
         assertEquals("Retrieved result is different from expected", expectedResult, retrievedResult);
     }
+    
+    @Test
+    public void deepTypecheckUsesOneTypecheckerPerThread() throws MalformedURLException, IOException, InterruptedException {
+        
+        final URL firstFileURL = new URL("file:/some/location/someFile.txt");
+        final String firstFilename = "someFile.txt";
+        final URL secondFileURL = new URL("file:/some/location/someOtherFile.txt");
+        final String secondFilename = "someOtherFile.txt";
+        final String expectedResult = "true something";
+        
+        context.checking(new Expectations() {{
+            // one for this thread, one for the other
+            oneOf(mockDeepTypecheckerFactory).getObject(); will(returnValue(mockDeepTypechecker));
+            oneOf(mockDeepTypecheckerFactory).getObject(); will(returnValue(mockOtherDeepTypechecker));
+            
+            oneOf(mockDeepTypechecker).checkURL(firstFileURL, firstFilename); will(returnValue(expectedResult));
+            oneOf(mockDeepTypechecker).checkURL(secondFileURL, secondFilename); will(returnValue(expectedResult));
+            oneOf(mockOtherDeepTypechecker).checkURL(firstFileURL, firstFilename); will(returnValue(expectedResult));
+        }});
+        
+        typecheckHandler.deepTypecheck(firstFileURL, firstFilename);
+        
+        Thread otherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    typecheckHandler.deepTypecheck(firstFileURL, firstFilename);
+                } catch(IOException ex) {
+                    fail("should not have thrown exception");
+                }
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        
+        // the typechecker of this thread is reused
+        typecheckHandler.deepTypecheck(secondFileURL, secondFilename);
+    }
 
     @Test
     public void reallyTypecheck() throws URISyntaxException, IOException {
@@ -108,7 +150,12 @@ public class LamusTypecheckHandlerTest {
         URL fileURL = getClass().getClassLoader().getResource("test_files/typechecking/" + filename);
         URL decodedFileURL = new URL(URLDecoder.decode(fileURL.toString()));
         
-        TypecheckHandler handler = new LamusTypecheckHandler(mockTypechecker, new DeepFileType());
+        TypecheckHandler handler = new LamusTypecheckHandler(mockTypechecker, new ObjectFactory<DeepFileType>() {
+            @Override
+            public DeepFileType getObject() {
+                return new DeepFileType();
+            }
+        });
 
         String retrievedResult = handler.deepTypecheck(decodedFileURL, filename);
 
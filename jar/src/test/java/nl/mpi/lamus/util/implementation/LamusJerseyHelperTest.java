@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.util.implementation;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.ServerErrorException;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the helper against a stub of the corpus structure service,
+ * running in a local HTTP server.
+ * 
+ * @author guisil
+ */
+public class LamusJerseyHelperTest {
+    
+    private static final String CRAWLER_PATH = "crawler";
+    private static final String DETAILS_PATH = "details";
+    private static final String START_PATH = "start";
+    
+    private HttpServer server;
+    private String location;
+    
+    // remote ports of the connections used by the requests received by the stub
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger failuresToSimulate = new AtomicInteger();
+    private volatile long responseDelayMillis = 0;
+    
+    private LamusJerseyHelper jerseyHelper;
+    
+    public LamusJerseyHelperTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() throws IOException {
+        
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/" + CRAWLER_PATH, new StubCrawlerHandler());
+        server.start();
+        location = "http://localhost:" + server.getAddress().getPort();
+        
+        jerseyHelper = new LamusJerseyHelper(1, 1, 2, 10);
+    }
+    
+    @After
+    public void tearDown() {
+        jerseyHelper.close();
+        server.stop(0);
+    }
+
+    
+    @Test
+    public void connectionReusedBetweenRequests() {
+        
+        final int numberOfPolls = 10;
+        
+        JsonObject startResponse = jerseyHelper.postRequestCallCrawler(URI.create("hdl:11142/00-NODE"), location, CRAWLER_PATH, START_PATH);
+        assertEquals("Response different from expected", "started", startResponse.getString("state"));
+        
+        for(int i = 0; i < numberOfPolls; i++) {
+            JsonObject detailsResponse = jerseyHelper.getRequestCrawlerDetails("crawler-" + i, location, CRAWLER_PATH, DETAILS_PATH);
+            assertEquals("Response different from expected", "crawler-" + i, detailsResponse.getString("id"));
+        }
+        
+        assertEquals("Number of requests different from expected", numberOfPolls + 1, requestCount.get());
+        assertEquals("All the requests should have used the same connection", 1, clientPorts.size());
+        
+        LamusJerseyHelper.EndpointStatistics pollStatistics = jerseyHelper.getStatistics("GET " + location + "/" + CRAWLER_PATH + "/" + DETAILS_PATH);
+        assertEquals("Number of counted polls different from expected", numberOfPolls, pollStatistics.getRequestCount());
+        assertEquals("There should be no failed polls", 0, pollStatistics.getFailureCount());
+        LamusJerseyHelper.EndpointStatistics startStatistics = jerseyHelper.getStatistics("POST " + location + "/" + CRAWLER_PATH + "/" + START_PATH);
+        assertEquals("Number of counted crawler starts different from expected", 1, startStatistics.getRequestCount());
+    }
+    
+    @Test
+    public void getRequestRetriedAfterServerError() {
+        
+        failuresToSimulate.set(2);
+        
+        JsonObject detailsResponse = jerseyHelper.getRequestCrawlerDetails("someCrawler", location, CRAWLER_PATH, DETAILS_PATH);
+        
+        assertEquals("Response different from expected", "someCrawler", detailsResponse.getString("id"));
+        assertEquals("Number of requests different from expected", 3, requestCount.get());
+        
+        LamusJerseyHelper.EndpointStatistics pollStatistics = jerseyHelper.getStatistics("GET " + location + "/" + CRAWLER_PATH + "/" + DETAILS_PATH);
+        assertEquals("Number of counted requests different from expected", 3, pollStatistics.getRequestCount());
+        assertEquals("Number of counted failures different from expected", 2, pollStatistics.getFailureCount());
+        assertEquals("Number of counted retries different from expected", 2, pollStatistics.getRetryCount());
+    }
+    
+    @Test
+    public void getRequestFailsAfterAllRetries() {
+        
+        failuresToSimulate.set(10);
+        
+        try {
+            jerseyHelper.getRequestCrawlerDetails("someCrawler", location, CRAWLER_PATH, DETAILS_PATH);
+            fail("should have thrown exception");
+        } catch(ServerErrorException ex) {
+            assertEquals("Status different from expected", 503, ex.getResponse().getStatus());
+        }
+        
+        assertEquals("Number of requests different from expected", 3, requestCount.get());
+    }
+    
+    @Test
+    public void postRequestNotRetried() {
+        
+        failuresToSimulate.set(1);
+        
+        try {
+            jerseyHelper.postRequestCallCrawler(URI.create("hdl:11142/00-NODE"), location, CRAWLER_PATH, START_PATH);
+            fail("should have thrown exception");
+        } catch(ServerErrorException ex) {
+            assertEquals("Status different from expected", 503, ex.getResponse().getStatus());
+        }
+        
+        assertEquals("Number of requests different from expected", 1, requestCount.get());
+        
+        LamusJerseyHelper.EndpointStatistics startStatistics = jerseyHelper.getStatistics("POST " + location + "/" + CRAWLER_PATH + "/" + START_PATH);
+        assertEquals("Number of counted failures different from expected", 1, startStatistics.getFailureCount());
+        assertEquals("There should be no retries", 0, startStatistics.getRetryCount());
+    }
+    
+    @Test
+    public void getRequestTimesOut() {
+        
+        jerseyHelper.close();
+        jerseyHelper = new LamusJerseyHelper(1, 1, 0, 10);
+        responseDelayMillis = 2000;
+        
+        try {
+            jerseyHelper.getRequestCrawlerDetails("someCrawler", location, CRAWLER_PATH, DETAILS_PATH);
+            fail("should have thrown exception");
+        } catch(ProcessingException ex) {
+            // read timeout
+        }
+        
+        LamusJerseyHelper.EndpointStatistics pollStatistics = jerseyHelper.getStatistics("GET " + location + "/" + CRAWLER_PATH + "/" + DETAILS_PATH);
+        assertEquals("Number of counted failures different from expected", 1, pollStatistics.getFailureCount());
+        assertTrue("Latency should include the time waiting for the response", pollStatistics.getMaxMillis() >= 1000);
+    }
+    
+    
+    @Test
+    public void postRequestDoesNotTimeOut() {
+        
+        jerseyHelper.close();
+        jerseyHelper = new LamusJerseyHelper(1, 1, 0, 10);
+        responseDelayMillis = 2000;
+        
+        JsonObject startResponse = jerseyHelper.postRequestCallCrawler(URI.create("hdl:11142/00-NODE"), location, CRAWLER_PATH, START_PATH);
+        
+        assertEquals("Response different from expected", "started", startResponse.getString("state"));
+        LamusJerseyHelper.EndpointStatistics startStatistics = jerseyHelper.getStatistics("POST " + location + "/" + CRAWLER_PATH + "/" + START_PATH);
+        assertEquals("There should be no failures", 0, startStatistics.getFailureCount());
+        assertTrue("Latency should include the time waiting for the response", startStatistics.getMaxMillis() >= 2000);
+    }
+    
+    
+    private class StubCrawlerHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            requestCount.incrementAndGet();
+            
+            try(InputStream requestBody = exchange.getRequestBody()) {
+                while(requestBody.read() != -1) {
+                    // consume the request
+                }
+            }
+            
+            if(responseDelayMillis > 0) {
+                try {
+                    Thread.sleep(responseDelayMillis);
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            
+            if(failuresToSimulate.getAndDecrement() > 0) {
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            
+            String path = exchange.getRequestURI().getPath();
+            JsonObject response;
+            if(path.endsWith("/" + START_PATH)) {
+                response = Json.createObjectBuilder().add("id", "someCrawler").add("state", "started").build();
+            } else {
+                response = Json.createObjectBuilder().add("id", path.substring(path.lastIndexOf('/') + 1)).add("state", "running").build();
+            }
+            
+            byte[] responseBytes = response.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, responseBytes.length);
+            try(OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(responseBytes);
+            }
+        }
+    }
+}
@@ -37,6 +37,8 @@ import nl.mpi.lamus.filesystem.WorkspaceFileHandler;
 import nl.mpi.lamus.exception.WorkspaceExportException;
 import nl.mpi.lamus.exception.WorkspaceNotFoundException;
 import nl.mpi.lamus.metadata.MetadataApiBridge;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
+import nl.mpi.lamus.workspace.exporting.ExportHandleAssigner;
 import nl.mpi.lamus.workspace.exporting.ExporterHelper;
 import nl.mpi.lamus.workspace.exporting.NodeExporter;
 import nl.mpi.lamus.workspace.exporting.WorkspaceTreeExporter;
@@ -50,12 +52,14 @@ import nl.mpi.lamus.workspace.model.WorkspaceStatus;
 import nl.mpi.lamus.workspace.model.WorkspaceSubmissionType;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspace;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
-import nl.mpi.metadata.api.MetadataAPI;
 import nl.mpi.metadata.api.MetadataException;
 import nl.mpi.metadata.api.model.ReferencingMetadataDocument;
 import nl.mpi.metadata.cmdi.api.model.ResourceProxy;
 import org.apache.commons.io.FilenameUtils;
+import org.hamcrest.Description;
 import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
 import org.jmock.auto.Mock;
 import org.jmock.integration.junit4.JUnitRuleMockery;
 import org.jmock.lib.legacy.ClassImposteriser;
@@ -83,7 +87,6 @@ public class AddedNodeExporterTest {
     @Mock ArchiveFileLocationProvider mockArchiveFileLocationProvider;
     @Mock WorkspaceFileHandler mockWorkspaceFileHandler;
     @Mock WorkspaceDirectoryHandler mockWorkspaceDirectoryHandler;
-    @Mock MetadataAPI mockMetadataAPI;
     @Mock WorkspaceDao mockWorkspaceDao;
     @Mock WorkspaceTreeExporter mockWorkspaceTreeExporter;
     @Mock HandleManager mockHandleManager;
@@ -93,6 +96,8 @@ public class AddedNodeExporterTest {
     @Mock NodeResolver mockNodeResolver;
     @Mock NodeUtil mockNodeUtil;
     @Mock ExporterHelper mockExporterHelper;
+    @Mock ExportDocumentSession mockExportDocumentSession;
+    @Mock ExportHandleAssigner mockExportHandleAssigner;
     
     // initially had these mock objects as CMDIDocument,
     // but the expectations were not being properly matched after the cast (to ReferencingMetadataObject) was made in the code to be tested
@@ -107,6 +112,7 @@ public class AddedNodeExporterTest {
     @Mock WorkspaceNode mockChildWsNode;
     
     private NodeExporter addedNodeExporter;
+    private ExportHandleAssigner.AssignedHandleListener assignedHandleListener;
     private Workspace testWorkspace;
     
     private final String metadataExtension = "cmdi";
@@ -135,7 +141,6 @@ public class AddedNodeExporterTest {
         ReflectionTestUtils.setField(addedNodeExporter, "archiveFileLocationProvider", mockArchiveFileLocationProvider);
         ReflectionTestUtils.setField(addedNodeExporter, "workspaceFileHandler", mockWorkspaceFileHandler);
         ReflectionTestUtils.setField(addedNodeExporter, "workspaceDirectoryHandler", mockWorkspaceDirectoryHandler);
-        ReflectionTestUtils.setField(addedNodeExporter, "metadataAPI", mockMetadataAPI);
         ReflectionTestUtils.setField(addedNodeExporter, "workspaceDao", mockWorkspaceDao);
         ReflectionTestUtils.setField(addedNodeExporter, "workspaceTreeExporter", mockWorkspaceTreeExporter);
         ReflectionTestUtils.setField(addedNodeExporter, "handleManager", mockHandleManager);
@@ -145,6 +150,8 @@ public class AddedNodeExporterTest {
         ReflectionTestUtils.setField(addedNodeExporter, "nodeResolver", mockNodeResolver);
         ReflectionTestUtils.setField(addedNodeExporter, "nodeUtil", mockNodeUtil);
         ReflectionTestUtils.setField(addedNodeExporter, "exporterHelper", mockExporterHelper);
+        ReflectionTestUtils.setField(addedNodeExporter, "exportDocumentSession", mockExportDocumentSession);
+        ReflectionTestUtils.setField(addedNodeExporter, "exportHandleAssigner", mockExportHandleAssigner);
         
         testWorkspace = new LamusWorkspace(1, "someUser", -1, null, URI.create("file:/archive/Root/SomeNode/currentNode").toURL(),
                 Calendar.getInstance().getTime(), null, Calendar.getInstance().getTime(), null,
@@ -250,14 +257,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, null);
         
@@ -265,6 +272,18 @@ public class AddedNodeExporterTest {
                 
         
         addedNodeExporter.exportNode(testWorkspace, mockParentWsNode, parentCorpusNamePathToClosestTopNode, mockChildWsNode, keepUnlinkedFiles, submissionType, exportPhase);
+        
+        assertNotNull("The listener for the new handle should have been given", assignedHandleListener);
+        
+        // once the handles of the siblings are completed, the reference in the parent gets the new handle
+        context.checking(new Expectations() {{
+            oneOf(mockChildWsNode).getArchiveURI(); will(returnValue(nodeNewArchiveHandle));
+            oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(nodeNewArchiveHandle); will(returnValue(preparedNewArchiveHandle));
+            oneOf(mockResourceProxy).setURI(preparedNewArchiveHandle);
+            oneOf(mockExportDocumentSession).documentChanged(testWorkspace.getWorkspaceID(), parentNodeWsURL, mockParentCmdiDocument);
+        }});
+        
+        assignedHandleListener.handleAssigned(mockChildWsNode);
     }
     
     @Test
@@ -324,14 +343,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, null);
         
@@ -398,14 +417,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, null);
         
@@ -474,14 +493,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, null);                
         
@@ -545,14 +564,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, null);
         
@@ -619,14 +638,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, null);
         
@@ -695,14 +714,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, null);
         
@@ -770,14 +789,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, null);
         
@@ -1021,7 +1040,7 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, expectedException);
         
         try {
@@ -1094,14 +1113,14 @@ public class AddedNodeExporterTest {
         
         checkRetrieveMetadataDocumentInvocations(isFileMetadata, nodeWsURL, null);
         
-        checkHandleAssignmentInvocations(nodeNewArchiveURL, nodeWsFile,
+        checkHandleAssignmentInvocations(isFileMetadata, nodeNewArchiveURL, nodeWsFile, nextAvailableFile,
                 nodeNewArchiveUrlToUri, nodeNewArchiveUriToUriHttpsRoot, nodeNewArchiveHandle, preparedNewArchiveHandle, null);
         
         checkUpdateSelfHandleInvocations(isFileMetadata, nodeNewArchiveHandle, nodeWsURL);
         
         checkFileMoveInvocations(isFileInOrphansFolder, isFileMetadata, nodeWsFile, nextAvailableFile);
         
-        checkParentReferenceUpdateInvocations(nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
+        checkParentReferenceUpdateInvocations(isFileMetadata, nodeWsURL, nodeNewArchiveHandle, preparedNewArchiveHandle,
                 parentNodeWsURL, parentNodeWsFile, parentNodeArchiveFile,
                 nextAvailableFile, childPathRelativeToParent, expectedException);
         
@@ -1256,11 +1275,11 @@ public class AddedNodeExporterTest {
         if(isMetadata) {
             if(expectedException != null) {
                 context.checking(new Expectations() {{
-                    oneOf(mockMetadataAPI).getMetadataDocument(nodeWsURL); will(throwException(expectedException));
+                    oneOf(mockExportDocumentSession).takeDocument(testWorkspace.getWorkspaceID(), nodeWsURL); will(throwException(expectedException));
                 }});
             } else {
                 context.checking(new Expectations() {{
-                    oneOf(mockMetadataAPI).getMetadataDocument(nodeWsURL); will(returnValue(mockChildCmdiDocument));
+                    oneOf(mockExportDocumentSession).takeDocument(testWorkspace.getWorkspaceID(), nodeWsURL); will(returnValue(mockChildCmdiDocument));
                 }});
             }
         }
@@ -1306,8 +1325,8 @@ public class AddedNodeExporterTest {
         }});
     }
     
-    private void checkHandleAssignmentInvocations(
-            final URL nodeNewArchiveURL, final File nodeWsFile,
+    private void checkHandleAssignmentInvocations(final boolean isMetadata,
+            final URL nodeNewArchiveURL, final File nodeWsFile, final File nextAvailableFile,
             final URI nodeNewArchiveUrlToUri, final URI nodeNewArchiveUriToUriHttpsRoot,
             final URI nodeNewArchiveHandle, final URI preparedNewArchiveHandle, final Exception expectedException)
                 throws HandleException, IOException, URISyntaxException {
@@ -1317,7 +1336,15 @@ public class AddedNodeExporterTest {
             oneOf(mockArchiveFileLocationProvider).getUriWithHttpsRoot(nodeNewArchiveUrlToUri); will(returnValue(nodeNewArchiveUriToUriHttpsRoot));
         }});
         
-        if(expectedException != null) {
+        if(!isMetadata) {
+            // resources only request the new handle, which is assigned later on
+            context.checking(new Expectations() {{
+                oneOf(mockExportHandleAssigner).requestHandle(
+                        with(equal(testWorkspace.getWorkspaceID())), with(same(mockParentWsNode)), with(same(mockChildWsNode)),
+                        with(equal(nextAvailableFile)), with(equal(nodeNewArchiveUriToUriHttpsRoot)), with(any(ExportHandleAssigner.AssignedHandleListener.class)));
+                    will(new KeepListenerAction());
+            }});
+        } else if(expectedException != null) {
             context.checking(new Expectations() {{
                 oneOf(mockHandleManager).assignNewHandle(nodeWsFile, nodeNewArchiveUriToUriHttpsRoot); will(throwException(expectedException));
             }});
@@ -1331,7 +1358,7 @@ public class AddedNodeExporterTest {
         }
     }
     
-    private void checkParentReferenceUpdateInvocations(
+    private void checkParentReferenceUpdateInvocations(final boolean isMetadata,
             final URL nodeWsURL, final URI nodeNewArchiveHandle, final URI preparedNewArchiveHandle,
             final URL parentNodeWsURL, final File parentNodeWsFile, final File parentNodeArchiveFile,
             final File nextAvailableFile, final String childPathRelativeToParent,
@@ -1342,7 +1369,7 @@ public class AddedNodeExporterTest {
         context.checking(new Expectations() {{
             
             oneOf(mockNodeUtil).isNodeMetadata(mockParentWsNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockMetadataAPI).getMetadataDocument(parentNodeWsURL);
+            oneOf(mockExportDocumentSession).getDocument(testWorkspace.getWorkspaceID(), parentNodeWsURL);
                 will(returnValue(mockParentCmdiDocument));
             
             oneOf(mockArchiveFileLocationProvider).getChildPathRelativeToParent(parentNodeArchiveFile, nextAvailableFile);
@@ -1350,9 +1377,11 @@ public class AddedNodeExporterTest {
             
             oneOf(mockParentCmdiDocument).getDocumentReferenceByLocation(nodeWsURL.toURI());
                 will(returnValue(mockResourceProxy));
-            oneOf(mockChildWsNode).getArchiveURI(); will(returnValue(nodeNewArchiveHandle));
-            oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(nodeNewArchiveHandle); will(returnValue(preparedNewArchiveHandle));
-            oneOf(mockResourceProxy).setURI(preparedNewArchiveHandle);
+            if(isMetadata) {
+                oneOf(mockChildWsNode).getArchiveURI(); will(returnValue(nodeNewArchiveHandle));
+                oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(nodeNewArchiveHandle); will(returnValue(preparedNewArchiveHandle));
+                oneOf(mockResourceProxy).setURI(preparedNewArchiveHandle);
+            }
             oneOf(mockResourceProxy).setLocation(childUriRelativeToParent);
             
             allowing(mockResourceProxy).getId(); will(returnValue("someID"));
@@ -1362,12 +1391,12 @@ public class AddedNodeExporterTest {
         
         if(expectedException != null) {
             context.checking(new Expectations() {{
-                oneOf(mockMetadataApiBridge).saveMetadataDocument(mockParentCmdiDocument, parentNodeWsURL);
+                oneOf(mockExportDocumentSession).documentChanged(testWorkspace.getWorkspaceID(), parentNodeWsURL, mockParentCmdiDocument);
                     will(throwException(expectedException));
             }});
         } else {
             context.checking(new Expectations() {{
-                oneOf(mockMetadataApiBridge).saveMetadataDocument(mockParentCmdiDocument, parentNodeWsURL);
+                oneOf(mockExportDocumentSession).documentChanged(testWorkspace.getWorkspaceID(), parentNodeWsURL, mockParentCmdiDocument);
             }});
         }
     }
@@ -1441,4 +1470,18 @@ public class AddedNodeExporterTest {
         return new LamusWorkspaceNode(nodeWsID, testWorkspace.getWorkspaceID(), nodeSchemaLocation,
                 nodeName, "", type, nodeWsURL, null, null, nodeOriginURI, nodeStatus, nodeProtected, format);
     }
-}
\ No newline at end of file
+    
+    public class KeepListenerAction implements Action {
+
+        @Override
+        public Object invoke(Invocation invocation) throws Throwable {
+            assignedHandleListener = (ExportHandleAssigner.AssignedHandleListener) invocation.getParameter(4);
+            return null;
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("keeps the listener for the new handle");
+        }
+    }
+}
@@ -34,6 +34,7 @@ import nl.mpi.lamus.archive.ArchiveFileLocationProvider;
 import nl.mpi.lamus.filesystem.WorkspaceFileHandler;
 import nl.mpi.lamus.exception.WorkspaceExportException;
 import nl.mpi.lamus.metadata.MetadataApiBridge;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
 import nl.mpi.lamus.workspace.exporting.ExporterHelper;
 import nl.mpi.lamus.workspace.exporting.NodeExporter;
 import nl.mpi.lamus.workspace.exporting.WorkspaceTreeExporter;
@@ -68,6 +69,7 @@ import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.test.util.ReflectionTestUtils;
 
 /**
@@ -92,6 +94,7 @@ public class GeneralNodeExporterTest {
     @Mock ArchiveFileLocationProvider mockArchiveFileLocationProvider;
     @Mock NodeUtil mockNodeUtil;
     @Mock ExporterHelper mockExporterHelper;
+    @Mock ExportDocumentSession mockExportDocumentSession;
     
     @Mock CMDIDocument mockChildCmdiDocument;
     @Mock CMDIDocument mockParentCmdiDocument;
@@ -128,7 +131,12 @@ public class GeneralNodeExporterTest {
                 0L, 10000L, WorkspaceStatus.SUBMITTED, "Workspace submitted", "");
 
         generalNodeExporter = new GeneralNodeExporter();
-        ReflectionTestUtils.setField(generalNodeExporter, "metadataAPI", mockMetadataAPI);
+        ReflectionTestUtils.setField(generalNodeExporter, "metadataAPIFactory", new ObjectFactory<MetadataAPI>() {
+            @Override
+            public MetadataAPI getObject() {
+                return mockMetadataAPI;
+            }
+        });
         ReflectionTestUtils.setField(generalNodeExporter, "metadataApiBridge", mockMetadataApiBridge);
         ReflectionTestUtils.setField(generalNodeExporter, "workspaceFileHandler", mockWorkspaceFileHandler);
         ReflectionTestUtils.setField(generalNodeExporter, "workspaceTreeExporter", mockWorkspaceTreeExporter);
@@ -137,6 +145,7 @@ public class GeneralNodeExporterTest {
         ReflectionTestUtils.setField(generalNodeExporter, "archiveFileLocationProvider", mockArchiveFileLocationProvider);
         ReflectionTestUtils.setField(generalNodeExporter, "nodeUtil", mockNodeUtil);
         ReflectionTestUtils.setField(generalNodeExporter, "exporterHelper", mockExporterHelper);
+        ReflectionTestUtils.setField(generalNodeExporter, "exportDocumentSession", mockExportDocumentSession);
     }
     
     @After
@@ -223,7 +232,7 @@ public class GeneralNodeExporterTest {
             oneOf(mockWorkspaceTreeExporter).explore(workspace, mockChildWsNode, currentCorpusNamePathToClosestTopNode, keepUnlinkedFiles, submissionType, exportPhase);
             
             oneOf(mockChildWsNode).getWorkspaceURL(); will(returnValue(nodeWsURL));
-            oneOf(mockMetadataAPI).getMetadataDocument(nodeWsURL); will(returnValue(mockChildCmdiDocument));
+            oneOf(mockExportDocumentSession).releaseDocument(workspace.getWorkspaceID(), nodeWsURL); will(returnValue(mockChildCmdiDocument));
             
             oneOf(mockWorkspaceFileHandler).getStreamResultForNodeFile(nodeArchiveLocalFile); will(returnValue(mockStreamResult));
             
@@ -244,7 +253,6 @@ public class GeneralNodeExporterTest {
         final String parentFilename = parentNodeName + FilenameUtils.EXTENSION_SEPARATOR_STR + metadataExtension;
         final String parentNodeWsPath = "file:/workspace" + workspace.getWorkspaceID() + File.separator + parentFilename;
         final URL parentNodeWsURL = new URL(parentNodeWsPath);
-        final File parentNodeWsFile = new File(URI.create(parentNodeWsPath));
         final URI parentNodeArchiveURI = new URI(UUID.randomUUID().toString());
         final String parentNodeArchiveLocalPath = "file:/archive/location/TopNode/Corpusstructure/" + parentFilename;
         final URL parentNodeArchiveLocalURL = new URL(parentNodeArchiveLocalPath);
@@ -292,14 +300,14 @@ public class GeneralNodeExporterTest {
             oneOf(mockWorkspaceTreeExporter).explore(workspace, mockChildWsNode, currentCorpusNamePathToClosestTopNode, keepUnlinkedFiles, submissionType, exportPhase);
             
             oneOf(mockChildWsNode).getWorkspaceURL(); will(returnValue(nodeWsURL));
-            oneOf(mockMetadataAPI).getMetadataDocument(nodeWsURL); will(returnValue(mockChildCmdiDocument));
+            oneOf(mockExportDocumentSession).releaseDocument(workspace.getWorkspaceID(), nodeWsURL); will(returnValue(mockChildCmdiDocument));
             
             oneOf(mockWorkspaceFileHandler).getStreamResultForNodeFile(nodeArchiveLocalFile); will(returnValue(mockStreamResult));
             
             oneOf(mockMetadataAPI).writeMetadataDocument(mockChildCmdiDocument, mockStreamResult);
         }});
         
-        checkParentReferenceUpdateInvocations(nodeArchiveURI, parentNodeArchiveURI, parentNodeWsURL, parentNodeWsFile,
+        checkParentReferenceUpdateInvocations(nodeArchiveURI, parentNodeArchiveURI, parentNodeWsURL,
                 parentNodeArchiveLocalURL, parentNodeArchiveLocalFile, nodeArchiveLocalFile, nodePathRelativeToParent, null);
         
         generalNodeExporter.exportNode(workspace, mockParentWsNode, parentCorpusNamePathToClosestTopNode, mockChildWsNode, keepUnlinkedFiles, submissionType, exportPhase);
@@ -526,7 +534,7 @@ public class GeneralNodeExporterTest {
             oneOf(mockWorkspaceTreeExporter).explore(workspace, mockChildWsNode, currentCorpusNamePathToClosestTopNode, keepUnlinkedFiles, submissionType, exportPhase);
             
             oneOf(mockChildWsNode).getWorkspaceURL(); will(returnValue(nodeWsURL));
-            oneOf(mockMetadataAPI).getMetadataDocument(nodeWsURL); will(throwException(expectedException));
+            oneOf(mockExportDocumentSession).releaseDocument(workspace.getWorkspaceID(), nodeWsURL); will(throwException(expectedException));
             //logger
             oneOf(mockChildWsNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
             
@@ -590,7 +598,7 @@ public class GeneralNodeExporterTest {
             oneOf(mockWorkspaceTreeExporter).explore(workspace, mockChildWsNode, currentCorpusNamePathToClosestTopNode, keepUnlinkedFiles, submissionType, exportPhase);
             
             oneOf(mockChildWsNode).getWorkspaceURL(); will(returnValue(nodeWsURL));
-            oneOf(mockMetadataAPI).getMetadataDocument(nodeWsURL); will(throwException(expectedException));
+            oneOf(mockExportDocumentSession).releaseDocument(workspace.getWorkspaceID(), nodeWsURL); will(throwException(expectedException));
             //logger
             oneOf(mockChildWsNode).getArchiveURI(); will(returnValue(nodeArchiveURI));
         }});
@@ -654,7 +662,7 @@ public class GeneralNodeExporterTest {
             oneOf(mockWorkspaceTreeExporter).explore(workspace, mockChildWsNode, currentCorpusNamePathToClosestTopNode, keepUnlinkedFiles, submissionType, exportPhase);
             
             oneOf(mockChildWsNode).getWorkspaceURL(); will(returnValue(nodeWsURL));
-            oneOf(mockMetadataAPI).getMetadataDocument(nodeWsURL); will(returnValue(mockChildCmdiDocument));
+            oneOf(mockExportDocumentSession).releaseDocument(workspace.getWorkspaceID(), nodeWsURL); will(returnValue(mockChildCmdiDocument));
             
             oneOf(mockWorkspaceFileHandler).getStreamResultForNodeFile(nodeArchiveLocalFile); will(returnValue(mockStreamResult));
             
@@ -683,7 +691,6 @@ public class GeneralNodeExporterTest {
         final String parentFilename = parentNodeName + FilenameUtils.EXTENSION_SEPARATOR_STR + metadataExtension;
         final URL parentNodeWsURL = new URL("file:/workspace" + workspace.getWorkspaceID() + File.separator + parentFilename);
         final URI parentNodeArchiveURI = new URI(UUID.randomUUID().toString());
-        final File parentNodeWsFile = new File(parentNodeWsURL.getPath());
         final String parentNodeArchiveLocalPath = "file:/archive/location/TopNode/SomeNode/Metadata/" + parentFilename;
         final URL parentNodeArchiveLocalUrl = new URL(parentNodeArchiveLocalPath);
         final File parentNodeArchiveLocalFile = new File(URI.create(parentNodeArchiveLocalPath));
@@ -722,7 +729,7 @@ public class GeneralNodeExporterTest {
             oneOf(mockNodeUtil).isNodeMetadata(mockChildWsNode); will(returnValue(Boolean.FALSE));
         }});
         
-        checkParentReferenceUpdateInvocations(nodeArchiveURI, parentNodeArchiveURI, parentNodeWsURL, parentNodeWsFile,
+        checkParentReferenceUpdateInvocations(nodeArchiveURI, parentNodeArchiveURI, parentNodeWsURL,
                 parentNodeArchiveLocalUrl, parentNodeArchiveLocalFile, nodeArchiveLocalFile, nodePathRelativeToParent, null);
         
         generalNodeExporter.exportNode(workspace, mockParentWsNode, parentCorpusNamePathToClosestTopNode, mockChildWsNode, keepUnlinkedFiles, submissionType, exportPhase);
@@ -741,7 +748,7 @@ public class GeneralNodeExporterTest {
     }
     
     private void checkParentReferenceUpdateInvocations(
-            final URI childArchiveURI, final URI parentArchiveURI, final URL parentWsURL, final File parentWsFile,
+            final URI childArchiveURI, final URI parentArchiveURI, final URL parentWsURL,
             final URL parentArchiveLocalUrl, final File parentArchiveLocalFile, final File childArchiveLocalFile,
             final String childPathRelativeToParent,
             final Exception expectedException) throws IOException, MetadataException, TransformerException, URISyntaxException {
@@ -757,7 +764,7 @@ public class GeneralNodeExporterTest {
             
             oneOf(mockNodeUtil).isNodeMetadata(mockParentWsNode); will(returnValue(Boolean.TRUE));
             oneOf(mockParentWsNode).getWorkspaceURL(); will(returnValue(parentWsURL));
-            oneOf(mockMetadataAPI).getMetadataDocument(parentWsURL);
+            oneOf(mockExportDocumentSession).getDocument(workspace.getWorkspaceID(), parentWsURL);
                 will(returnValue(mockParentCmdiDocument));
             
             oneOf(mockArchiveFileLocationProvider).getChildPathRelativeToParent(mockParentFile, childArchiveLocalFile);
@@ -770,8 +777,6 @@ public class GeneralNodeExporterTest {
             
             
             oneOf(mockParentWsNode).getWorkspaceURL(); will(returnValue(parentWsURL));
-            oneOf(mockWorkspaceFileHandler).getStreamResultForNodeFile(parentWsFile);
-                will(returnValue(mockStreamResult));
 
             oneOf(mockParentWsNode).getArchiveURL(); will(returnValue(mockParentFile.toURI().toURL()));
 
@@ -781,14 +786,14 @@ public class GeneralNodeExporterTest {
         
         if(expectedException != null) {
             context.checking(new Expectations() {{
-                oneOf(mockMetadataAPI).writeMetadataDocument(mockParentCmdiDocument, mockStreamResult);
+                oneOf(mockExportDocumentSession).documentChanged(workspace.getWorkspaceID(), parentWsURL, mockParentCmdiDocument);
                     will(throwException(expectedException));
                 //logging for the exception
                 oneOf(mockParentWsNode).getWorkspaceURL(); will(returnValue(parentWsURL));
             }});
         } else {
             context.checking(new Expectations() {{
-                oneOf(mockMetadataAPI).writeMetadataDocument(mockParentCmdiDocument, mockStreamResult);
+                oneOf(mockExportDocumentSession).documentChanged(workspace.getWorkspaceID(), parentWsURL, mockParentCmdiDocument);
             }});
         }
     }
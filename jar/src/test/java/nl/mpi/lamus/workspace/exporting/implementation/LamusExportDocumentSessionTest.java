@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.exporting.implementation;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import javax.xml.transform.TransformerException;
+import nl.mpi.lamus.metadata.MetadataApiBridge;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
+import nl.mpi.metadata.api.MetadataAPI;
+import nl.mpi.metadata.api.MetadataException;
+import nl.mpi.metadata.api.model.MetadataDocument;
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.beans.factory.ObjectFactory;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusExportDocumentSessionTest {
+
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+
+    @Mock MetadataAPI mockMetadataAPI;
+    @Mock MetadataApiBridge mockMetadataApiBridge;
+
+    @Mock MetadataDocument mockParentDocument;
+    @Mock MetadataDocument mockOtherDocument;
+
+    private ExportDocumentSession exportDocumentSession;
+
+    private final int workspaceID = 1;
+    private URL parentURL;
+    private URL otherURL;
+
+    public LamusExportDocumentSessionTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() {
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+    }
+
+    @Before
+    public void setUp() throws MalformedURLException {
+        exportDocumentSession = new LamusExportDocumentSession(new ObjectFactory<MetadataAPI>() {
+            @Override
+            public MetadataAPI getObject() {
+                return mockMetadataAPI;
+            }
+        }, mockMetadataApiBridge);
+        parentURL = new URL("file:/workspace/" + workspaceID + "/parent.cmdi");
+        otherURL = new URL("file:/workspace/" + workspaceID + "/other.cmdi");
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+
+    @Test
+    public void documentParsedOnceAndSavedOnceWhenReleased() throws IOException, MetadataException, TransformerException {
+
+        context.checking(new Expectations() {{
+            oneOf(mockMetadataAPI).getMetadataDocument(parentURL); will(returnValue(mockParentDocument));
+            oneOf(mockMetadataApiBridge).saveMetadataDocument(mockParentDocument, parentURL);
+        }});
+
+        exportDocumentSession.openSession(workspaceID);
+
+        for(int i = 0; i < 3; i++) {
+            MetadataDocument retrievedDocument = exportDocumentSession.getDocument(workspaceID, parentURL);
+            assertSame("Retrieved document different from expected", mockParentDocument, retrievedDocument);
+            exportDocumentSession.documentChanged(workspaceID, parentURL, retrievedDocument);
+        }
+
+        MetadataDocument releasedDocument = exportDocumentSession.releaseDocument(workspaceID, parentURL);
+        assertSame("Released document different from expected", mockParentDocument, releasedDocument);
+
+        assertTrue("All documents should have been saved", exportDocumentSession.closeSession(workspaceID));
+    }
+
+    @Test
+    public void unchangedDocumentNotSaved() throws IOException, MetadataException, TransformerException {
+
+        context.checking(new Expectations() {{
+            oneOf(mockMetadataAPI).getMetadataDocument(parentURL); will(returnValue(mockParentDocument));
+            never(mockMetadataApiBridge).saveMetadataDocument(mockParentDocument, parentURL);
+        }});
+
+        exportDocumentSession.openSession(workspaceID);
+        exportDocumentSession.getDocument(workspaceID, parentURL);
+        exportDocumentSession.releaseDocument(workspaceID, parentURL);
+
+        assertTrue("All documents should have been saved", exportDocumentSession.closeSession(workspaceID));
+    }
+
+    @Test
+    public void takenDocumentNotSaved() throws IOException, MetadataException, TransformerException {
+
+        context.checking(new Expectations() {{
+            oneOf(mockMetadataAPI).getMetadataDocument(parentURL); will(returnValue(mockParentDocument));
+            never(mockMetadataApiBridge).saveMetadataDocument(mockParentDocument, parentURL);
+        }});
+
+        exportDocumentSession.openSession(workspaceID);
+        MetadataDocument retrievedDocument = exportDocumentSession.getDocument(workspaceID, parentURL);
+        exportDocumentSession.documentChanged(workspaceID, parentURL, retrievedDocument);
+
+        MetadataDocument takenDocument = exportDocumentSession.takeDocument(workspaceID, parentURL);
+        assertSame("Taken document different from expected", mockParentDocument, takenDocument);
+
+        assertTrue("All documents should have been saved", exportDocumentSession.closeSession(workspaceID));
+    }
+
+    @Test
+    public void changedDocumentsSavedWhenClosing() throws IOException, MetadataException, TransformerException {
+
+        final IOException expectedException = new IOException("some exception message");
+
+        context.checking(new Expectations() {{
+            oneOf(mockMetadataAPI).getMetadataDocument(parentURL); will(returnValue(mockParentDocument));
+            oneOf(mockMetadataAPI).getMetadataDocument(otherURL); will(returnValue(mockOtherDocument));
+            oneOf(mockMetadataApiBridge).saveMetadataDocument(mockParentDocument, parentURL); will(throwException(expectedException));
+            oneOf(mockMetadataApiBridge).saveMetadataDocument(mockOtherDocument, otherURL);
+        }});
+
+        exportDocumentSession.openSession(workspaceID);
+        exportDocumentSession.documentChanged(workspaceID, parentURL, exportDocumentSession.getDocument(workspaceID, parentURL));
+        exportDocumentSession.documentChanged(workspaceID, otherURL, exportDocumentSession.getDocument(workspaceID, otherURL));
+
+        assertFalse("Closing should have failed", exportDocumentSession.closeSession(workspaceID));
+    }
+
+    @Test
+    public void documentsLoadedAndSavedDirectlyWithoutSession() throws IOException, MetadataException, TransformerException {
+
+        context.checking(new Expectations() {{
+            exactly(2).of(mockMetadataAPI).getMetadataDocument(parentURL); will(returnValue(mockParentDocument));
+            exactly(2).of(mockMetadataApiBridge).saveMetadataDocument(mockParentDocument, parentURL);
+        }});
+
+        for(int i = 0; i < 2; i++) {
+            MetadataDocument retrievedDocument = exportDocumentSession.getDocument(workspaceID, parentURL);
+            exportDocumentSession.documentChanged(workspaceID, parentURL, retrievedDocument);
+        }
+
+        assertTrue("Closing without session should succeed", exportDocumentSession.closeSession(workspaceID));
+    }
+
+    @Test
+    public void sessionsOfDifferentWorkspacesAreSeparate() throws IOException, MetadataException, TransformerException {
+
+        final int otherWorkspaceID = 2;
+
+        context.checking(new Expectations() {{
+            exactly(2).of(mockMetadataAPI).getMetadataDocument(parentURL); will(returnValue(mockParentDocument));
+            oneOf(mockMetadataApiBridge).saveMetadataDocument(mockParentDocument, parentURL);
+        }});
+
+        exportDocumentSession.openSession(workspaceID);
+        exportDocumentSession.openSession(otherWorkspaceID);
+
+        exportDocumentSession.documentChanged(workspaceID, parentURL, exportDocumentSession.getDocument(workspaceID, parentURL));
+        exportDocumentSession.getDocument(otherWorkspaceID, parentURL);
+
+        assertTrue("All documents should have been saved", exportDocumentSession.closeSession(otherWorkspaceID));
+        assertTrue("All documents should have been saved", exportDocumentSession.closeSession(workspaceID));
+    }
+}
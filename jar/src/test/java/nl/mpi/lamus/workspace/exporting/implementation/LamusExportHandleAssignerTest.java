@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.exporting.implementation;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.handle.hdllib.HandleException;
+import nl.mpi.handle.util.HandleManager;
+import nl.mpi.handle.util.HandleParser;
+import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.exception.WorkspaceExportException;
+import nl.mpi.lamus.workspace.exporting.ExportHandleAssigner;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
+import org.hamcrest.Description;
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusExportHandleAssignerTest {
+    
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    
+    @Mock HandleManager mockHandleManager;
+    @Mock HandleParser mockHandleParser;
+    @Mock WorkspaceDao mockWorkspaceDao;
+    
+    @Mock ExportHandleAssigner.AssignedHandleListener mockFirstListener;
+    @Mock ExportHandleAssigner.AssignedHandleListener mockSecondListener;
+    
+    private static final int NUMBER_OF_THREADS = 4;
+    
+    private ExecutorService executorService;
+    private ExportHandleAssigner exportHandleAssigner;
+    
+    private final int workspaceID = 10;
+    private WorkspaceNode parentNode;
+    
+    public LamusExportHandleAssignerTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() throws MalformedURLException {
+        executorService = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+        exportHandleAssigner = new LamusExportHandleAssigner(mockHandleManager, mockHandleParser, mockWorkspaceDao, executorService);
+        parentNode = createNode(1, "parent.cmdi");
+    }
+    
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    
+    @Test
+    public void completePendingHandles() throws MalformedURLException, URISyntaxException, HandleException, IOException, WorkspaceExportException {
+        
+        final WorkspaceNode firstNode = createNode(2, "first.txt");
+        final WorkspaceNode secondNode = createNode(3, "second.txt");
+        final URI firstTargetUri = new URI("https://server/archive/first.txt");
+        final URI secondTargetUri = new URI("https://server/archive/second.txt");
+        final URI firstHandle = new URI("11142/" + UUID.randomUUID().toString());
+        final URI secondHandle = new URI("11142/" + UUID.randomUUID().toString());
+        final URI firstPreparedHandle = new URI("hdl:" + firstHandle.toString());
+        final URI secondPreparedHandle = new URI("hdl:" + secondHandle.toString());
+        
+        final Sequence completion = context.sequence("completion");
+        
+        context.checking(new Expectations() {{
+            oneOf(mockHandleManager).assignNewHandle(new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri); will(returnValue(firstHandle));
+            oneOf(mockHandleManager).assignNewHandle(new File(secondNode.getWorkspaceURL().getPath()), secondTargetUri); will(returnValue(secondHandle));
+            
+            oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(firstHandle); will(returnValue(firstPreparedHandle));
+                inSequence(completion);
+            oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(secondHandle); will(returnValue(secondPreparedHandle));
+                inSequence(completion);
+            oneOf(mockWorkspaceDao).updateNodeArchiveUris(Arrays.asList(firstNode, secondNode));
+                inSequence(completion);
+            oneOf(mockFirstListener).handleAssigned(firstNode);
+                inSequence(completion);
+            oneOf(mockSecondListener).handleAssigned(secondNode);
+                inSequence(completion);
+        }});
+        
+        exportHandleAssigner.requestHandle(workspaceID, parentNode, firstNode, new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri, mockFirstListener);
+        exportHandleAssigner.requestHandle(workspaceID, parentNode, secondNode, new File(secondNode.getWorkspaceURL().getPath()), secondTargetUri, mockSecondListener);
+        
+        exportHandleAssigner.completePendingHandles(workspaceID, parentNode);
+        
+        assertEquals("First node has different archive URI than expected", firstPreparedHandle, firstNode.getArchiveURI());
+        assertEquals("Second node has different archive URI than expected", secondPreparedHandle, secondNode.getArchiveURI());
+        
+        // the pending handles of the parent were already completed
+        exportHandleAssigner.completePendingHandles(workspaceID, parentNode);
+    }
+    
+    @Test
+    public void completePendingHandlesWhenNoneWereRequested() throws WorkspaceExportException {
+        
+        context.checking(new Expectations() {{
+            never(mockWorkspaceDao).updateNodeArchiveUris(with(any(Collection.class)));
+        }});
+        
+        exportHandleAssigner.completePendingHandles(workspaceID, parentNode);
+    }
+    
+    @Test
+    public void completePendingHandlesThrowsHandleException() throws MalformedURLException, URISyntaxException, HandleException, IOException {
+        
+        final WorkspaceNode firstNode = createNode(2, "first.txt");
+        final URI firstTargetUri = new URI("https://server/archive/first.txt");
+        final HandleException expectedCause = new HandleException(HandleException.INTERNAL_ERROR, "some exception");
+        
+        final String expectedMessage = "Error assigning new handle for node " + firstNode.getWorkspaceURL();
+        
+        context.checking(new Expectations() {{
+            oneOf(mockHandleManager).assignNewHandle(new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri); will(throwException(expectedCause));
+            never(mockWorkspaceDao).updateNodeArchiveUris(with(any(Collection.class)));
+            never(mockFirstListener).handleAssigned(with(any(WorkspaceNode.class)));
+        }});
+        
+        exportHandleAssigner.requestHandle(workspaceID, parentNode, firstNode, new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri, mockFirstListener);
+        
+        try {
+            exportHandleAssigner.completePendingHandles(workspaceID, parentNode);
+            fail("should have thrown exception");
+        } catch(WorkspaceExportException ex) {
+            assertEquals("Message different from expected", expectedMessage, ex.getMessage());
+            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
+            assertEquals("Cause different from expected", expectedCause, ex.getCause());
+        }
+        
+        assertNull("Node should not have an archive URI", firstNode.getArchiveURI());
+    }
+    
+    @Test
+    public void completePendingHandlesSavesTheOnesRegisteredBeforeTheFailure() throws MalformedURLException, URISyntaxException, HandleException, IOException {
+        
+        final WorkspaceNode firstNode = createNode(2, "first.txt");
+        final WorkspaceNode secondNode = createNode(3, "second.txt");
+        final URI firstTargetUri = new URI("https://server/archive/first.txt");
+        final URI secondTargetUri = new URI("https://server/archive/second.txt");
+        final HandleException expectedCause = new HandleException(HandleException.INTERNAL_ERROR, "some exception");
+        final URI secondHandle = new URI("11142/" + UUID.randomUUID().toString());
+        final URI secondPreparedHandle = new URI("hdl:" + secondHandle.toString());
+        
+        context.checking(new Expectations() {{
+            oneOf(mockHandleManager).assignNewHandle(new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri); will(throwException(expectedCause));
+            // the second request may have been sent already, in which case its handle has to be kept
+            allowing(mockHandleManager).assignNewHandle(new File(secondNode.getWorkspaceURL().getPath()), secondTargetUri); will(returnValue(secondHandle));
+            allowing(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(secondHandle); will(returnValue(secondPreparedHandle));
+            allowing(mockWorkspaceDao).updateNodeArchiveUris(Arrays.asList(secondNode));
+            never(mockFirstListener).handleAssigned(with(any(WorkspaceNode.class)));
+            never(mockSecondListener).handleAssigned(with(any(WorkspaceNode.class)));
+        }});
+        
+        exportHandleAssigner.requestHandle(workspaceID, parentNode, firstNode, new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri, mockFirstListener);
+        exportHandleAssigner.requestHandle(workspaceID, parentNode, secondNode, new File(secondNode.getWorkspaceURL().getPath()), secondTargetUri, mockSecondListener);
+        
+        try {
+            exportHandleAssigner.completePendingHandles(workspaceID, parentNode);
+            fail("should have thrown exception");
+        } catch(WorkspaceExportException ex) {
+            assertEquals("Cause different from expected", expectedCause, ex.getCause());
+        }
+        
+        assertNull("Node should not have an archive URI", firstNode.getArchiveURI());
+        assertTrue("Second node should either have its registered handle or none at all",
+                secondNode.getArchiveURI() == null || secondPreparedHandle.equals(secondNode.getArchiveURI()));
+    }
+    
+    @Test
+    public void discardPendingHandles() throws MalformedURLException, URISyntaxException, HandleException, IOException, WorkspaceExportException, InterruptedException {
+        
+        final WorkspaceNode firstNode = createNode(2, "first.txt");
+        final URI firstTargetUri = new URI("https://server/archive/first.txt");
+        final URI firstHandle = new URI("11142/" + UUID.randomUUID().toString());
+        final URI firstPreparedHandle = new URI("hdl:" + firstHandle.toString());
+        final CountDownLatch requestSent = new CountDownLatch(1);
+        
+        context.checking(new Expectations() {{
+            // the request was already sent when the handles are discarded
+            oneOf(mockHandleManager).assignNewHandle(new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri);
+                will(new SignallingHandleAction(requestSent, firstHandle));
+            oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(firstHandle); will(returnValue(firstPreparedHandle));
+            oneOf(mockWorkspaceDao).updateNodeArchiveUris(Arrays.asList(firstNode));
+            never(mockFirstListener).handleAssigned(with(any(WorkspaceNode.class)));
+        }});
+        
+        exportHandleAssigner.requestHandle(workspaceID, parentNode, firstNode, new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri, mockFirstListener);
+        
+        requestSent.await();
+        exportHandleAssigner.discardPendingHandles(workspaceID, parentNode);
+        
+        assertEquals("Handle registered before discarding should have been kept", firstPreparedHandle, firstNode.getArchiveURI());
+        
+        // nothing left to complete
+        exportHandleAssigner.completePendingHandles(workspaceID, parentNode);
+    }
+    
+    @Test
+    public void discardPendingHandlesNotSentYet() throws MalformedURLException, URISyntaxException, HandleException, IOException {
+        
+        final WorkspaceNode firstNode = createNode(2, "first.txt");
+        final URI firstTargetUri = new URI("https://server/archive/first.txt");
+        
+        context.checking(new Expectations() {{
+            never(mockHandleManager).assignNewHandle(with(any(File.class)), with(any(URI.class)));
+            never(mockWorkspaceDao).updateNodeArchiveUris(with(any(Collection.class)));
+            never(mockFirstListener).handleAssigned(with(any(WorkspaceNode.class)));
+        }});
+        
+        // all the threads are busy for a while, so the request is not sent before being discarded
+        for(int i = 0; i < NUMBER_OF_THREADS; i++) {
+            executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws InterruptedException {
+                    Thread.sleep(500);
+                    return null;
+                }
+            });
+        }
+        
+        exportHandleAssigner.requestHandle(workspaceID, parentNode, firstNode, new File(firstNode.getWorkspaceURL().getPath()), firstTargetUri, mockFirstListener);
+        
+        exportHandleAssigner.discardPendingHandles(workspaceID, parentNode);
+        
+        assertNull("Node should not have an archive URI", firstNode.getArchiveURI());
+    }
+    
+    @Test
+    public void completeManyPendingHandlesWithSlowHandleServer() throws MalformedURLException, URISyntaxException, HandleException, IOException, WorkspaceExportException {
+        
+        final int numberOfNodes = 4000;
+        final List<WorkspaceNode> nodes = new ArrayList<>(numberOfNodes);
+        for(int i = 0; i < numberOfNodes; i++) {
+            nodes.add(createNode(i + 2, "resource" + i + ".txt"));
+        }
+        
+        final SlowHandleServerAction slowHandleServer = new SlowHandleServerAction(1);
+        final List<WorkspaceNode> notifiedNodes = new ArrayList<>(numberOfNodes);
+        ExportHandleAssigner.AssignedHandleListener listener = new ExportHandleAssigner.AssignedHandleListener() {
+            @Override
+            public void handleAssigned(WorkspaceNode node) {
+                notifiedNodes.add(node);
+            }
+        };
+        
+        context.checking(new Expectations() {{
+            exactly(numberOfNodes).of(mockHandleManager).assignNewHandle(with(any(File.class)), with(any(URI.class)));
+                will(slowHandleServer);
+            exactly(numberOfNodes).of(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(with(any(URI.class)));
+                will(new PrefixHandleAction());
+            // one single database batch for all the children of the parent
+            oneOf(mockWorkspaceDao).updateNodeArchiveUris(nodes);
+        }});
+        
+        for(WorkspaceNode node : nodes) {
+            exportHandleAssigner.requestHandle(workspaceID, parentNode, node, new File(node.getWorkspaceURL().getPath()),
+                    new URI("https://server/archive/" + node.getName()), listener);
+        }
+        exportHandleAssigner.completePendingHandles(workspaceID, parentNode);
+        
+        assertTrue("There should be no more requests to the handle server at the same time than threads in the pool",
+                slowHandleServer.getMaximumConcurrentRequests() <= NUMBER_OF_THREADS);
+        assertEquals("Listeners should have been notified in the order in which the handles were requested", nodes, notifiedNodes);
+        for(WorkspaceNode node : nodes) {
+            assertEquals("Node has different archive URI than expected",
+                    URI.create("hdl:11142/" + node.getName()), node.getArchiveURI());
+        }
+    }
+    
+    
+    private WorkspaceNode createNode(int nodeID, String filename) throws MalformedURLException {
+        URL wsURL = new URL("file:/workspaces/" + workspaceID + "/" + filename);
+        return new LamusWorkspaceNode(nodeID, workspaceID, null, filename, filename, WorkspaceNodeType.RESOURCE_WRITTEN,
+                wsURL, null, null, null, WorkspaceNodeStatus.UPLOADED, Boolean.FALSE, "text/plain");
+    }
+    
+    
+    /**
+     * Simulates the latency of the handle server,
+     * keeping track of how many requests are being served at the same time.
+     */
+    private static class SlowHandleServerAction implements Action {
+        
+        private final long latencyInMillis;
+        private final AtomicInteger concurrentRequests = new AtomicInteger();
+        private final AtomicInteger maximumConcurrentRequests = new AtomicInteger();
+        
+        private SlowHandleServerAction(long latencyInMillis) {
+            this.latencyInMillis = latencyInMillis;
+        }
+        
+        private int getMaximumConcurrentRequests() {
+            return maximumConcurrentRequests.get();
+        }
+
+        @Override
+        public Object invoke(Invocation invocation) throws Throwable {
+            int current = concurrentRequests.incrementAndGet();
+            int maximum = maximumConcurrentRequests.get();
+            while(current > maximum && !maximumConcurrentRequests.compareAndSet(maximum, current)) {
+                maximum = maximumConcurrentRequests.get();
+            }
+            try {
+                Thread.sleep(latencyInMillis);
+                File file = (File) invocation.getParameter(0);
+                return URI.create("11142/" + file.getName());
+            } finally {
+                concurrentRequests.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("returns a new handle after some delay");
+        }
+    }
+    
+    /**
+     * Signals that the request was sent before returning the handle.
+     */
+    private static class SignallingHandleAction implements Action {
+        
+        private final CountDownLatch requestSent;
+        private final URI handle;
+        
+        private SignallingHandleAction(CountDownLatch requestSent, URI handle) {
+            this.requestSent = requestSent;
+            this.handle = handle;
+        }
+
+        @Override
+        public Object invoke(Invocation invocation) throws Throwable {
+            requestSent.countDown();
+            return handle;
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("signals the request and returns a new handle");
+        }
+    }
+    
+    private static class PrefixHandleAction implements Action {
+
+        @Override
+        public Object invoke(Invocation invocation) throws Throwable {
+            return URI.create("hdl:" + invocation.getParameter(0).toString());
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("returns the handle with the 'hdl:' prefix");
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.exporting.implementation;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Compares, for a large synthetic workspace with protected nodes,
+ * the resolution of the canonical parents outside the top node done
+ * by the crawler checker when finalising a workspace with the previous one,
+ * which retrieved the descendants of the top node for every protected node
+ * and searched them sequentially.
+ * Both run against the same stub of the corpus structure provider.
+ * The times are only logged; the assertions check that both give
+ * the same result and count the lookups.
+ *
+ * @author guisil
+ */
+public class LamusWorkspaceCrawlerCheckerBenchmarkTest {
+    
+    private static final Logger logger = LoggerFactory.getLogger(LamusWorkspaceCrawlerCheckerBenchmarkTest.class);
+    
+    private static final int NUMBER_OF_NODES = 3000;
+    private static final int NUMBER_OF_PARENTS = 100;
+    
+    private final URI topNodeURI = URI.create("hdl:11142/00-TOPNODE");
+    private final Collection<WorkspaceNode> descendantNodes = new ArrayList<>();
+    private final Map<URI, URI> canonicalParentsByNode = new HashMap<>();
+    private final List<URI> topNodeDescendants = new ArrayList<>();
+    private final Set<URI> expectedCanonicalParents = new HashSet<>();
+    
+    private final AtomicInteger descendantRetrievals = new AtomicInteger();
+    private final AtomicInteger canonicalParentRetrievals = new AtomicInteger();
+    
+    private CorpusStructureProvider stubCSProvider;
+    private LamusWorkspaceCrawlerChecker workspaceCrawlerChecker;
+    
+    
+    @Before
+    public void setUp() throws MalformedURLException {
+        
+        // all the nodes are protected, their canonical parents are spread
+            // over a few corpora, half of them under the top node
+        for(int i = 0; i < NUMBER_OF_NODES; i++) {
+            URI nodeURI = URI.create("hdl:11142/00-NODE-" + i);
+            URI parentURI = URI.create("hdl:11142/00-PARENT-" + (i % NUMBER_OF_PARENTS));
+            descendantNodes.add(new LamusWorkspaceNode(i, 1, null, "node" + i, "node" + i, WorkspaceNodeType.METADATA,
+                    new URL("file:/workspaces/1/node" + i + ".cmdi"), nodeURI, null, null, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.TRUE, "text/x-cmdi+xml"));
+            canonicalParentsByNode.put(nodeURI, parentURI);
+            topNodeDescendants.add(nodeURI);
+            if(i % NUMBER_OF_PARENTS % 2 == 0) {
+                topNodeDescendants.add(parentURI);
+            } else {
+                expectedCanonicalParents.add(parentURI);
+            }
+        }
+        
+        stubCSProvider = (CorpusStructureProvider) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {CorpusStructureProvider.class}, new StubCorpusStructureProvider());
+        workspaceCrawlerChecker = new LamusWorkspaceCrawlerChecker(null, null, null, null, stubCSProvider, null, null, null);
+    }
+    
+    
+    @Test
+    public void comparePreviousAndCurrentCanonicalParentResolution() {
+        
+        long previousStart = System.nanoTime();
+        Set<URI> previousResult = getCanonicalParentsOutsideTopNodeAsBefore();
+        long previousMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - previousStart);
+        int previousDescendantRetrievals = descendantRetrievals.getAndSet(0);
+        int previousCanonicalParentRetrievals = canonicalParentRetrievals.getAndSet(0);
+        
+        long currentStart = System.nanoTime();
+        Set<URI> currentResult = ReflectionTestUtils.invokeMethod(workspaceCrawlerChecker,
+                "getCanonicalParentsOutsideTopNode", topNodeURI, descendantNodes);
+        long currentMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - currentStart);
+        
+        logger.info("Resolved the canonical parents of " + NUMBER_OF_NODES + " protected nodes in " + currentMillis
+                + " ms (previously " + previousMillis + " ms)");
+        
+        assertEquals("Previous result different from expected", expectedCanonicalParents, previousResult);
+        assertEquals("Result different from expected", expectedCanonicalParents, currentResult);
+        assertEquals("Previously, the descendants were retrieved once per node", NUMBER_OF_NODES, previousDescendantRetrievals);
+        assertEquals("Descendants of the top node should be retrieved only once", 1, descendantRetrievals.get());
+        assertEquals("Previously, the canonical parent was retrieved once per node", NUMBER_OF_NODES, previousCanonicalParentRetrievals);
+        assertEquals("Canonical parent should be retrieved once per node", NUMBER_OF_NODES, canonicalParentRetrievals.get());
+    }
+    
+    
+    private Set<URI> getCanonicalParentsOutsideTopNodeAsBefore() {
+        
+        Set<URI> canonicalParents = new HashSet<>();
+        for(WorkspaceNode node : descendantNodes) {
+            if(node.isProtected()) {
+                URI canonicalParent = stubCSProvider.getCanonicalParent(node.getArchiveURI());
+                Collection<URI> descendants = stubCSProvider.getDescendants(topNodeURI);
+                if(canonicalParent != null && !descendants.contains(canonicalParent)) {
+                    canonicalParents.add(canonicalParent);
+                }
+            }
+        }
+        return canonicalParents;
+    }
+    
+    
+    /**
+     * Counts the lookups and returns a new copy of the descendants, as if retrieved from the database.
+     */
+    private class StubCorpusStructureProvider implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch(method.getName()) {
+                case "getCanonicalParent":
+                    canonicalParentRetrievals.incrementAndGet();
+                    return canonicalParentsByNode.get((URI) args[0]);
+                case "getDescendants":
+                    descendantRetrievals.incrementAndGet();
+                    return topNodeURI.equals(args[0]) ? new ArrayList<>(topNodeDescendants) : new ArrayList<URI>();
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+}
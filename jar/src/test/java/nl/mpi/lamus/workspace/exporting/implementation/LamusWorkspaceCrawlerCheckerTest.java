@@ -17,14 +17,24 @@
 package nl.mpi.lamus.workspace.exporting.implementation;
 
 import java.net.URI;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
 import nl.mpi.lamus.ams.AmsServiceBridge;
+import nl.mpi.lamus.archive.CorpusStructureCache;
 import nl.mpi.lamus.archive.CorpusStructureServiceBridge;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.CrawlerStateRetrievalException;
@@ -33,10 +43,17 @@ import nl.mpi.lamus.workspace.exporting.WorkspaceMailer;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeReplacement;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
 import nl.mpi.lamus.workspace.model.WorkspaceStatus;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
+import org.hamcrest.Description;
 import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
 import org.jmock.auto.Mock;
 import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.DeterministicScheduler;
 import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.After;
@@ -46,6 +63,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.Rule;
+import org.springframework.test.util.ReflectionTestUtils;
 
 /**
  *
@@ -71,10 +89,15 @@ public class LamusWorkspaceCrawlerCheckerTest {
     @Mock WorkspaceNode mockWorkspaceNode1;
     @Mock WorkspaceNode mockWorkspaceNode2;
     @Mock CorpusStructureProvider mockCSProvider;
+    @Mock CorpusStructureCache mockCorpusStructureCache;
     
     
     private LamusWorkspaceCrawlerChecker workspaceCrawlerChecker;
     
+    private ExecutorService crawlerStatePollExecutorService;
+    private DeterministicScheduler workspaceFinalisationScheduler;
+    private long currentTimeMillis = 1000000;
+    
     
     public LamusWorkspaceCrawlerCheckerTest() {
     }
@@ -89,12 +112,24 @@ public class LamusWorkspaceCrawlerCheckerTest {
     
     @Before
     public void setUp() {
+        crawlerStatePollExecutorService = Executors.newFixedThreadPool(2);
+        workspaceFinalisationScheduler = new DeterministicScheduler();
         workspaceCrawlerChecker = new LamusWorkspaceCrawlerChecker(mockWorkspaceDao,
-                mockCorpusStructureServiceBridge, mockWorkspaceMailer, mockAmsBridge, mockCSProvider);
+                mockCorpusStructureServiceBridge, mockWorkspaceMailer, mockAmsBridge, mockCSProvider, mockCorpusStructureCache,
+                crawlerStatePollExecutorService, workspaceFinalisationScheduler) {
+            @Override
+            long currentTimeMillis() {
+                return currentTimeMillis;
+            }
+        };
+        ReflectionTestUtils.setField(workspaceCrawlerChecker, "crawlerPollMinIntervalSeconds", 10L);
+        ReflectionTestUtils.setField(workspaceCrawlerChecker, "crawlerPollMaxIntervalSeconds", 600L);
+        ReflectionTestUtils.setField(workspaceCrawlerChecker, "crawlerPollIntervalMillisecondsPerNode", 20L);
     }
     
     @After
     public void tearDown() {
+        crawlerStatePollExecutorService.shutdownNow();
     }
 
     
@@ -110,6 +145,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
         }});
         
         workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
     }
     
     @Test
@@ -142,6 +178,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
             
             oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
             oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue(crawlerState));
+            oneOf(mockCorpusStructureCache).invalidateAll();
             
             oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(nodeReplacements));
             
@@ -159,6 +196,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
         }});
         
         workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
     }
     
     @Test
@@ -199,6 +237,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
             
             oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(firstCrawlerID));
             oneOf(mockCorpusStructureServiceBridge).getCrawlerState(firstCrawlerID); will(returnValue(firstCrawlerState));
+            oneOf(mockCorpusStructureCache).invalidateAll();
             
             oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(firstNodeReplacements));
             
@@ -221,6 +260,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
             
             oneOf(mockSuccessfulSubmittedWorkspace2).getCrawlerID(); will(returnValue(secondCrawlerID));
             oneOf(mockCorpusStructureServiceBridge).getCrawlerState(secondCrawlerID); will(returnValue(secondCrawlerState));
+            oneOf(mockCorpusStructureCache).invalidateAll();
             
             oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_2); will(returnValue(secondNodeReplacements));
             
@@ -238,6 +278,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
         }});
         
         workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
     }
     
     @Test
@@ -267,6 +308,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
             
             oneOf(mockFailedSubmittedWorkspace).getCrawlerID(); will(returnValue(crawlerID));
             oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue(crawlerState));
+            oneOf(mockCorpusStructureCache).invalidateAll();
             
             oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(nodeReplacements));
             
@@ -281,6 +323,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
         }});
         
         workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
     }
     
     @Test
@@ -316,6 +359,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
             
             oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
             oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue(crawlerState));
+            oneOf(mockCorpusStructureCache).invalidateAll();
             
             oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(nodeReplacements));
             oneOf(mockCorpusStructureServiceBridge).createVersions(nodeReplacements);
@@ -340,6 +384,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
         }});
         
         workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
     }
     
     @Test
@@ -385,6 +430,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
             
             oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
             oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue(crawlerState));
+            oneOf(mockCorpusStructureCache).invalidateAll();
             
             oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(nodeReplacements));
             oneOf(mockCorpusStructureServiceBridge).createVersions(nodeReplacements);
@@ -399,14 +445,14 @@ public class LamusWorkspaceCrawlerCheckerTest {
             
             oneOf(mockWorkspaceNode1).isProtected(); will(returnValue(Boolean.TRUE));
             oneOf(mockWorkspaceNode1).getArchiveURI(); will(returnValue(wsChildNodeURI1));
-            oneOf(mockCSProvider).getDescendants(topNodeURI_1);
+            // the descendants of the top node are retrieved only once
+            oneOf(mockCSProvider).getDescendants(topNodeURI_1); will(returnValue(new ArrayList<URI>()));
 
             oneOf(mockCSProvider).getCanonicalParent(wsChildNodeURI1); will(returnValue(canonicalParentURI1));
             oneOf(mockWorkspaceNode1).getName();
             
             oneOf(mockWorkspaceNode2).isProtected(); will(returnValue(Boolean.TRUE));
             oneOf(mockWorkspaceNode2).getArchiveURI(); will(returnValue(wsChildNodeURI2));
-            oneOf(mockCSProvider).getDescendants(topNodeURI_1);
 
             oneOf(mockCSProvider).getCanonicalParent(wsChildNodeURI2); will(returnValue(canonicalParentURI2));
             oneOf(mockWorkspaceNode2).getName();
@@ -420,6 +466,75 @@ public class LamusWorkspaceCrawlerCheckerTest {
         }});
         
         workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
+    }
+    
+    @Test
+    public void checkCrawlersForSubmittedWorkspaces_LargeWorkspaceWithProtectedNodes() throws CrawlerStateRetrievalException, URISyntaxException, MalformedURLException {
+        
+        final int workspaceID_1 = 10;
+        final URI topNodeURI_1 = new URI("hdl:11142/00-TOPNODE");
+        final int numberOfNodes = 3000;
+        final int numberOfParents = 100;
+        
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockSuccessfulSubmittedWorkspace1);
+        final String crawlerID = UUID.randomUUID().toString();
+        
+        // synthetic workspace: all the nodes are protected, their canonical parents
+            // are spread over a few corpora, half of them under the top node
+        final Collection<WorkspaceNode> descendantNodes = new ArrayList<>();
+        final Map<URI, URI> canonicalParentsByNode = new HashMap<>();
+        final List<URI> topNodeDescendants = new ArrayList<>();
+        final Set<URI> expectedCanonicalParents = new HashSet<>();
+        for(int i = 0; i < numberOfNodes; i++) {
+            URI nodeURI = new URI("hdl:11142/00-NODE-" + i);
+            URI parentURI = new URI("hdl:11142/00-PARENT-" + (i % numberOfParents));
+            descendantNodes.add(new LamusWorkspaceNode(i, workspaceID_1, null, "node" + i, "node" + i, WorkspaceNodeType.METADATA,
+                    new URL("file:/workspaces/" + workspaceID_1 + "/node" + i + ".cmdi"), nodeURI, null, null, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.TRUE, "text/x-cmdi+xml"));
+            canonicalParentsByNode.put(nodeURI, parentURI);
+            topNodeDescendants.add(nodeURI);
+            if(i % numberOfParents % 2 == 0) {
+                topNodeDescendants.add(parentURI);
+            } else {
+                expectedCanonicalParents.add(parentURI);
+            }
+        }
+        expectedCanonicalParents.add(topNodeURI_1);
+        
+        final AtomicInteger descendantRetrievals = new AtomicInteger();
+        final AtomicInteger canonicalParentRetrievals = new AtomicInteger();
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(submittedWorkspaces));
+            allowing(mockSuccessfulSubmittedWorkspace1).getWorkspaceID(); will(returnValue(workspaceID_1));
+            oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue("SUCCESS"));
+            oneOf(mockCorpusStructureCache).invalidateAll();
+            
+            oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(new ArrayList<WorkspaceNodeReplacement>()));
+            oneOf(mockSuccessfulSubmittedWorkspace1).setStatus(WorkspaceStatus.SUCCESS);
+            oneOf(mockSuccessfulSubmittedWorkspace1).setMessage("Data was successfully moved to the archive and the crawler was successful.");
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockSuccessfulSubmittedWorkspace1);
+            oneOf(mockWorkspaceDao).getMetadataNodesInTreeForWorkspace(workspaceID_1); will(returnValue(descendantNodes));
+            
+            allowing(mockCSProvider).getCanonicalParent(with(any(URI.class)));
+                will(new CountingLookupAction(canonicalParentRetrievals, canonicalParentsByNode));
+            allowing(mockCSProvider).getDescendants(topNodeURI_1);
+                will(new CountingLookupAction(descendantRetrievals, Collections.singletonMap(topNodeURI_1, topNodeDescendants)));
+            
+            oneOf(mockWorkspaceDao).cleanWorkspaceNodesAndLinks(mockSuccessfulSubmittedWorkspace1);
+            oneOf(mockSuccessfulSubmittedWorkspace1).getTopNodeArchiveURI(); will(returnValue(topNodeURI_1));
+            oneOf(mockAmsBridge).triggerAccessRightsRecalculation(expectedCanonicalParents);
+            oneOf(mockWorkspaceMailer).sendWorkspaceFinalMessage(mockSuccessfulSubmittedWorkspace1, Boolean.TRUE, Boolean.TRUE);
+        }});
+        
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
+        
+        assertEquals("Descendants of the top node should be retrieved only once", 1, descendantRetrievals.get());
+        assertEquals("Canonical parent should be retrieved once per node", numberOfNodes, canonicalParentRetrievals.get());
     }
     
     @Test
@@ -453,6 +568,7 @@ public class LamusWorkspaceCrawlerCheckerTest {
             
             oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
             oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue(crawlerState));
+            oneOf(mockCorpusStructureCache).invalidateAll();
             
             oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(nodeReplacements));
             oneOf(mockCorpusStructureServiceBridge).createVersions(nodeReplacements); will(throwException(expectedException));
@@ -469,6 +585,156 @@ public class LamusWorkspaceCrawlerCheckerTest {
         }});
         
         workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
+    }
+    
+    @Test
+    public void checkCrawlersSubmittedWorkspaces_CrawlerStillRunning() throws CrawlerStateRetrievalException {
+        
+        final int workspaceID_1 = 10;
+        
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockSuccessfulSubmittedWorkspace1);
+        
+        final String crawlerID = UUID.randomUUID().toString();
+        final String crawlerState = "STARTED";
+        
+        // 1000 nodes to crawl, 20 ms per node
+        final int workspaceNodeCount = 1000;
+        final long expectedFirstInterval = 20000;
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(submittedWorkspaces));
+            
+            //loop
+            
+            //logger
+            allowing(mockSuccessfulSubmittedWorkspace1).getWorkspaceID(); will(returnValue(workspaceID_1));
+            
+            oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue(crawlerState));
+            
+            // the first interval depends on the size of the crawl
+            oneOf(mockWorkspaceDao).getWorkspaceNodeCount(workspaceID_1); will(returnValue(workspaceNodeCount));
+            
+            // nothing changed yet in the corpus structure database
+            never(mockCorpusStructureCache).invalidateAll();
+        }});
+        
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        
+        assertEquals("First interval different from expected", expectedFirstInterval, workspaceCrawlerChecker.getPollIntervalMillis(workspaceID_1));
+        
+        // before the interval has passed, the crawler is not polled
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(submittedWorkspaces));
+        }});
+        
+        currentTimeMillis += expectedFirstInterval - 1;
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        
+        // after the interval, the crawler is polled again and the interval is doubled
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(submittedWorkspaces));
+            oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue(crawlerState));
+        }});
+        
+        currentTimeMillis += 1;
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        
+        assertEquals("Second interval different from expected", expectedFirstInterval * 2, workspaceCrawlerChecker.getPollIntervalMillis(workspaceID_1));
+        assertTrue("Finalisation should not have been triggered", workspaceFinalisationScheduler.isIdle());
+    }
+    
+    @Test
+    public void checkCrawlersSubmittedWorkspaces_SmallCrawlUsesMinimumInterval() throws CrawlerStateRetrievalException {
+        
+        final int workspaceID_1 = 10;
+        
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockSuccessfulSubmittedWorkspace1);
+        
+        final String crawlerID = UUID.randomUUID().toString();
+        final int workspaceNodeCount = 1;
+        
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(submittedWorkspaces));
+            allowing(mockSuccessfulSubmittedWorkspace1).getWorkspaceID(); will(returnValue(workspaceID_1));
+            oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue("STARTED"));
+            oneOf(mockWorkspaceDao).getWorkspaceNodeCount(workspaceID_1); will(returnValue(workspaceNodeCount));
+        }});
+        
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        
+        assertEquals("Interval should be the minimum", 10000, workspaceCrawlerChecker.getPollIntervalMillis(workspaceID_1));
+    }
+    
+    @Test
+    public void checkCrawlersSubmittedWorkspaces_FinalisationHandedOver() throws CrawlerStateRetrievalException, URISyntaxException {
+        
+        final int workspaceID_1 = 10;
+        final URI topNodeURI_1 = new URI(UUID.randomUUID().toString());
+        final Set<URI> canoninalParents = new HashSet<URI>();
+        canoninalParents.add(topNodeURI_1);
+        final int workspaceID_2 = 20;
+        final URI topNodeURI_2 = new URI(UUID.randomUUID().toString());
+        
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockSuccessfulSubmittedWorkspace1);
+        submittedWorkspaces.add(mockSuccessfulSubmittedWorkspace2);
+        
+        final String firstCrawlerID = UUID.randomUUID().toString();
+        final String secondCrawlerID = UUID.randomUUID().toString();
+        
+        final Collection<WorkspaceNodeReplacement> nodeReplacements = new ArrayList<>();
+        
+        context.checking(new Expectations() {{
+            
+            exactly(2).of(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(submittedWorkspaces));
+            
+            allowing(mockSuccessfulSubmittedWorkspace1).getWorkspaceID(); will(returnValue(workspaceID_1));
+            allowing(mockSuccessfulSubmittedWorkspace2).getWorkspaceID(); will(returnValue(workspaceID_2));
+            
+            // the first workspace is polled only once, since it is being finalised
+            oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(firstCrawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(firstCrawlerID); will(returnValue("SUCCESS"));
+            oneOf(mockCorpusStructureCache).invalidateAll();
+            
+            // the second workspace is polled in the first run, which doesn't wait for the finalisation of the first one
+            oneOf(mockSuccessfulSubmittedWorkspace2).getCrawlerID(); will(returnValue(secondCrawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(secondCrawlerID); will(returnValue("STARTED"));
+            oneOf(mockWorkspaceDao).getWorkspaceNodeCount(workspaceID_2); will(returnValue(0));
+        }});
+        
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        
+        assertFalse("Finalisation should be waiting in its own pool", workspaceFinalisationScheduler.isIdle());
+        assertEquals("No workspace should have been finalised yet", 0, workspaceCrawlerChecker.getFinalisedCount());
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(nodeReplacements));
+            
+            oneOf(mockSuccessfulSubmittedWorkspace1).setStatus(WorkspaceStatus.SUCCESS);
+            oneOf(mockSuccessfulSubmittedWorkspace1).setMessage("Data was successfully moved to the archive and the crawler was successful.");
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockSuccessfulSubmittedWorkspace1);
+            oneOf(mockWorkspaceDao).getMetadataNodesInTreeForWorkspace(workspaceID_1);
+            
+            oneOf(mockWorkspaceDao).cleanWorkspaceNodesAndLinks(mockSuccessfulSubmittedWorkspace1);
+            
+            oneOf(mockSuccessfulSubmittedWorkspace1).getTopNodeArchiveURI(); will(returnValue(topNodeURI_1));
+            oneOf(mockAmsBridge).triggerAccessRightsRecalculation(canoninalParents);
+            
+            oneOf(mockWorkspaceMailer).sendWorkspaceFinalMessage(mockSuccessfulSubmittedWorkspace1, Boolean.TRUE, Boolean.TRUE);
+        }});
+        
+        workspaceFinalisationScheduler.runUntilIdle();
+        
+        assertEquals("One workspace should have been finalised", 1, workspaceCrawlerChecker.getFinalisedCount());
     }
     
     @Test
@@ -503,4 +769,129 @@ public class LamusWorkspaceCrawlerCheckerTest {
             assertEquals("Exception different from expected", expectedException, ex);
         }
     }
-}
\ No newline at end of file
+    
+    
+    @Test
+    public void checkCrawlersSubmittedWorkspaces_RuntimeException_OtherWorkspacesStillChecked() throws URISyntaxException {
+        
+        final int workspaceID_1 = 10;
+        final int workspaceID_2 = 20;
+        final URI topNodeURI_2 = new URI(UUID.randomUUID().toString());
+        
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockSuccessfulSubmittedWorkspace1);
+        submittedWorkspaces.add(mockSuccessfulSubmittedWorkspace2);
+        
+        final String firstCrawlerID = UUID.randomUUID().toString();
+        final String secondCrawlerID = UUID.randomUUID().toString();
+        
+        final RuntimeException expectedCause = new IllegalStateException("some exception message");
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(submittedWorkspaces));
+            
+            allowing(mockSuccessfulSubmittedWorkspace1).getWorkspaceID(); will(returnValue(workspaceID_1));
+            allowing(mockSuccessfulSubmittedWorkspace2).getWorkspaceID(); will(returnValue(workspaceID_2));
+            
+            oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(firstCrawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(firstCrawlerID); will(throwException(expectedCause));
+            
+            oneOf(mockSuccessfulSubmittedWorkspace2).getCrawlerID(); will(returnValue(secondCrawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(secondCrawlerID); will(returnValue("STARTED"));
+            oneOf(mockWorkspaceDao).getWorkspaceNodeCount(workspaceID_2); will(returnValue(0));
+        }});
+        
+        try {
+            workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+            fail("should have thrown exception");
+        } catch(CrawlerStateRetrievalException ex) {
+            assertEquals("Cause different from expected", expectedCause, ex.getCause());
+        }
+        
+        assertEquals("Second workspace should have been handled", 10000, workspaceCrawlerChecker.getPollIntervalMillis(workspaceID_2));
+    }
+    
+    @Test
+    public void checkCrawlersSubmittedWorkspaces_FinalisedWorkspaceStillListed_NotFinalisedAgain() throws CrawlerStateRetrievalException, URISyntaxException {
+        
+        final int workspaceID_1 = 10;
+        final URI topNodeURI_1 = new URI(UUID.randomUUID().toString());
+        final Set<URI> canoninalParents = new HashSet<URI>();
+        canoninalParents.add(topNodeURI_1);
+        
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockSuccessfulSubmittedWorkspace1);
+        
+        final String crawlerID = UUID.randomUUID().toString();
+        
+        final Collection<WorkspaceNodeReplacement> nodeReplacements = new ArrayList<>();
+        
+        context.checking(new Expectations() {{
+            
+            // the second check retrieved the workspaces before the status of the finalised one was updated
+            exactly(2).of(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(submittedWorkspaces));
+            
+            allowing(mockSuccessfulSubmittedWorkspace1).getWorkspaceID(); will(returnValue(workspaceID_1));
+            
+            oneOf(mockSuccessfulSubmittedWorkspace1).getCrawlerID(); will(returnValue(crawlerID));
+            oneOf(mockCorpusStructureServiceBridge).getCrawlerState(crawlerID); will(returnValue("SUCCESS"));
+            oneOf(mockCorpusStructureCache).invalidateAll();
+            
+            oneOf(mockWorkspaceDao).getNodeReplacementsForWorkspace(workspaceID_1); will(returnValue(nodeReplacements));
+            
+            oneOf(mockSuccessfulSubmittedWorkspace1).setStatus(WorkspaceStatus.SUCCESS);
+            oneOf(mockSuccessfulSubmittedWorkspace1).setMessage("Data was successfully moved to the archive and the crawler was successful.");
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockSuccessfulSubmittedWorkspace1);
+            oneOf(mockWorkspaceDao).getMetadataNodesInTreeForWorkspace(workspaceID_1);
+            
+            oneOf(mockWorkspaceDao).cleanWorkspaceNodesAndLinks(mockSuccessfulSubmittedWorkspace1);
+            
+            oneOf(mockSuccessfulSubmittedWorkspace1).getTopNodeArchiveURI(); will(returnValue(topNodeURI_1));
+            oneOf(mockAmsBridge).triggerAccessRightsRecalculation(canoninalParents);
+            
+            oneOf(mockWorkspaceMailer).sendWorkspaceFinalMessage(mockSuccessfulSubmittedWorkspace1, Boolean.TRUE, Boolean.TRUE);
+        }});
+        
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        workspaceFinalisationScheduler.runUntilIdle();
+        
+        assertEquals("Workspace should have been finalised only once", 1, workspaceCrawlerChecker.getFinalisedCount());
+        
+        // once the workspace is no longer listed, it is forgotten
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspacesInFinalStage(); will(returnValue(new ArrayList<Workspace>()));
+        }});
+        
+        workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
+        
+        Set<?> finalisedWorkspaces = (Set<?>) ReflectionTestUtils.getField(workspaceCrawlerChecker, "finalisedWorkspaces");
+        assertTrue("Finalised workspace should no longer be kept", finalisedWorkspaces.isEmpty());
+    }
+    
+    private static class CountingLookupAction implements Action {
+        
+        private final AtomicInteger counter;
+        private final Map<URI, ?> results;
+        
+        private CountingLookupAction(AtomicInteger counter, Map<URI, ?> results) {
+            this.counter = counter;
+            this.results = results;
+        }
+
+        @Override
+        public Object invoke(Invocation invocation) throws Throwable {
+            counter.incrementAndGet();
+            Object result = results.get((URI) invocation.getParameter(0));
+            // a new copy of collections, as if retrieved from the database
+            return result instanceof Collection ? new ArrayList<Object>((Collection<?>) result) : result;
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("looks up and counts");
+        }
+    }
+}
@@ -16,8 +16,10 @@
  */
 package nl.mpi.lamus.workspace.exporting.implementation;
 
+import nl.mpi.lamus.archive.CorpusStructureBridge;
 import nl.mpi.lamus.archive.CorpusStructureServiceBridge;
 import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
 import nl.mpi.lamus.workspace.exporting.NodeExporterFactory;
 import nl.mpi.lamus.workspace.exporting.UnlinkedAndDeletedNodesExportHandler;
 import nl.mpi.lamus.workspace.exporting.WorkspaceCorpusStructureExporter;
@@ -51,6 +53,8 @@ public class LamusWorkspaceExportRunnerFactoryTest {
     @Mock private UnlinkedAndDeletedNodesExportHandler mockUnlinkedAndDeletedNodesExportHandler;
     @Mock private CorpusStructureServiceBridge mockCorpusStructureServiceBridge;
     @Mock private WorkspaceCorpusStructureExporter mockWorkspaceCorpusStructureExporter;
+    @Mock private ExportDocumentSession mockExportDocumentSession;
+    @Mock private CorpusStructureBridge mockCorpusStructureBridge;
     
     private WorkspaceExportRunnerFactory workspaceExportRunnerFactory;
     
@@ -73,7 +77,9 @@ public class LamusWorkspaceExportRunnerFactoryTest {
                 mockWorkspaceDao, mockNodeExporterFactory,
                 mockUnlinkedAndDeletedNodesExportHandler,
                 mockCorpusStructureServiceBridge,
-                mockWorkspaceCorpusStructureExporter);
+                mockWorkspaceCorpusStructureExporter,
+                mockExportDocumentSession,
+                mockCorpusStructureBridge);
     }
     
     @After
@@ -90,5 +96,7 @@ public class LamusWorkspaceExportRunnerFactoryTest {
         assertEquals("'nodeExporterFactory' different from expected", mockNodeExporterFactory, ReflectionTestUtils.getField(exportRunner, "nodeExporterFactory"));
         assertEquals("'unlinkedAndDeletedNodesExportHandler' different from expected", mockUnlinkedAndDeletedNodesExportHandler, ReflectionTestUtils.getField(exportRunner, "unlinkedAndDeletedNodesExportHandler"));
         assertEquals("'corpusStructureServiceBridge' different from expected", mockCorpusStructureServiceBridge, ReflectionTestUtils.getField(exportRunner, "corpusStructureServiceBridge"));
+        assertEquals("'exportDocumentSession' different from expected", mockExportDocumentSession, ReflectionTestUtils.getField(exportRunner, "exportDocumentSession"));
+        assertEquals("'corpusStructureBridge' different from expected", mockCorpusStructureBridge, ReflectionTestUtils.getField(exportRunner, "corpusStructureBridge"));
     }
 }
@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.UUID;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.WorkspaceExportException;
+import nl.mpi.lamus.workspace.exporting.ExportHandleAssigner;
 import nl.mpi.lamus.workspace.exporting.NodeExporter;
 import nl.mpi.lamus.workspace.exporting.NodeExporterFactory;
 import nl.mpi.lamus.workspace.exporting.WorkspaceTreeExporter;
@@ -59,6 +60,7 @@ public class LamusWorkspaceTreeExporterTest {
     
     @Mock WorkspaceDao mockWorkspaceDao;
     @Mock NodeExporterFactory mockNodeExporterFactory;
+    @Mock ExportHandleAssigner mockExportHandleAssigner;
     
     @Mock NodeExporter mockNodeExporter;
     @Mock Workspace mockWorkspace;
@@ -80,6 +82,7 @@ public class LamusWorkspaceTreeExporterTest {
         workspaceTreeExporter = new LamusWorkspaceTreeExporter();
         ReflectionTestUtils.setField(workspaceTreeExporter, "workspaceDao", mockWorkspaceDao);
         ReflectionTestUtils.setField(workspaceTreeExporter, "nodeExporterFactory", mockNodeExporterFactory);
+        ReflectionTestUtils.setField(workspaceTreeExporter, "exportHandleAssigner", mockExportHandleAssigner);
     }
     
     @After
@@ -123,14 +126,14 @@ public class LamusWorkspaceTreeExporterTest {
         
         context.checking(new Expectations() {{
             
-            //logger
-            oneOf(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
             
             oneOf(mockWorkspaceDao).getChildWorkspaceNodes(node.getWorkspaceNodeID()); will(returnValue(children));
             
             oneOf(mockNodeExporterFactory).getNodeExporterForNode(mockWorkspace, childNode, exportPhase); will(returnValue(mockNodeExporter));
             oneOf(mockNodeExporter).exportNode(mockWorkspace, node, corpusNamePathToClosestTopNode, childNode, keepUnlinkedFiles, submissionType, exportPhase);
             
+            oneOf(mockExportHandleAssigner).completePendingHandles(workspaceID, node);
         }});
         
         workspaceTreeExporter.explore(mockWorkspace, node, corpusNamePathToClosestTopNode, keepUnlinkedFiles, submissionType, exportPhase);
@@ -174,8 +177,7 @@ public class LamusWorkspaceTreeExporterTest {
         
         context.checking(new Expectations() {{
             
-            //logger
-            oneOf(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
             
             oneOf(mockWorkspaceDao).getChildWorkspaceNodes(node.getWorkspaceNodeID()); will(returnValue(children));
             
@@ -183,6 +185,8 @@ public class LamusWorkspaceTreeExporterTest {
             oneOf(mockNodeExporter).exportNode(mockWorkspace, node, corpusNamePathToClosestTopNode, childNode, keepUnlinkedFiles, submissionType, exportPhase);
                 will(throwException(expectedException));
             
+            never(mockExportHandleAssigner).completePendingHandles(workspaceID, node);
+            oneOf(mockExportHandleAssigner).discardPendingHandles(workspaceID, node);
         }});
         
         try {
@@ -244,6 +248,9 @@ public class LamusWorkspaceTreeExporterTest {
             // should leave the loop for the second node because it's external and therefore doesn't require exporting
             never(mockNodeExporterFactory).getNodeExporterForNode(mockWorkspace, childNode, exportPhase); will(returnValue(mockNodeExporter));
             never(mockNodeExporter).exportNode(mockWorkspace, node, corpusNamePathToClosestTopNode, childNode, keepUnlinkedFiles, submissionType, exportPhase);
+            
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockExportHandleAssigner).completePendingHandles(workspaceID, node);
         }});
         
         workspaceTreeExporter.explore(mockWorkspace, node, corpusNamePathToClosestTopNode, keepUnlinkedFiles, submissionType, exportPhase);
@@ -55,6 +55,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.Rule;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.test.util.ReflectionTestUtils;
 
 /**
@@ -107,7 +108,12 @@ public class UnlinkedNodeExporterTest {
         ReflectionTestUtils.setField(unlinkedNodeExporter, "archiveHandleHelper", mockArchiveHandleHelper);
         ReflectionTestUtils.setField(unlinkedNodeExporter, "workspaceTreeExporter", mockWorkspaceTreeExporter);
         ReflectionTestUtils.setField(unlinkedNodeExporter, "metadataApiBridge", mockMetadataApiBridge);
-        ReflectionTestUtils.setField(unlinkedNodeExporter, "metadataAPI", mockMetadataAPI);
+        ReflectionTestUtils.setField(unlinkedNodeExporter, "metadataAPIFactory", new ObjectFactory<MetadataAPI>() {
+            @Override
+            public MetadataAPI getObject() {
+                return mockMetadataAPI;
+            }
+        });
         ReflectionTestUtils.setField(unlinkedNodeExporter, "workspaceDao", mockWorkspaceDao);
         ReflectionTestUtils.setField(unlinkedNodeExporter, "nodeUtil", mockNodeUtil);
         ReflectionTestUtils.setField(unlinkedNodeExporter, "handleManager", mockHandleManager);
@@ -25,6 +25,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import nl.mpi.lamus.archive.CorpusStructureBridge;
 import nl.mpi.lamus.archive.CorpusStructureServiceBridge;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.CrawlerInvocationException;
@@ -32,6 +33,7 @@ import nl.mpi.lamus.exception.NodeUrlUpdateException;
 import nl.mpi.lamus.exception.VersionCreationException;
 import nl.mpi.lamus.exception.WorkspaceNodeNotFoundException;
 import nl.mpi.lamus.exception.WorkspaceExportException;
+import nl.mpi.lamus.workspace.exporting.ExportDocumentSession;
 import nl.mpi.lamus.workspace.exporting.NodeExporter;
 import nl.mpi.lamus.workspace.exporting.NodeExporterFactory;
 import nl.mpi.lamus.workspace.exporting.UnlinkedAndDeletedNodesExportHandler;
@@ -76,6 +78,8 @@ public class WorkspaceExportRunnerTest {
     @Mock UnlinkedAndDeletedNodesExportHandler mockUnlinkedAndDeletedNodesExportHandler;
     @Mock CorpusStructureServiceBridge mockCorpusStructureServiceBridge;
     @Mock WorkspaceCorpusStructureExporter mockWorkspaceCorpusStructureExporter;
+    @Mock ExportDocumentSession mockExportDocumentSession;
+    @Mock CorpusStructureBridge mockCorpusStructureBridge;
     
     @Mock NodeExporter mockNodeExporter;
     
@@ -100,7 +104,9 @@ public class WorkspaceExportRunnerTest {
                 mockWorkspaceDao, mockNodeExporterFactory,
                 mockUnlinkedAndDeletedNodesExportHandler,
                 mockCorpusStructureServiceBridge,
-                mockWorkspaceCorpusStructureExporter);
+                mockWorkspaceCorpusStructureExporter,
+                mockExportDocumentSession,
+                mockCorpusStructureBridge);
         workspaceExportRunner.setWorkspace(mockWorkspace);
     }
     
@@ -172,8 +178,16 @@ public class WorkspaceExportRunnerTest {
             oneOf(mockNodeExporterFactory).getNodeExporterForNode(mockWorkspace, testNode, WorkspaceExportPhase.TREE_EXPORT); will(returnValue(mockNodeExporter));
                 when(exporting.isNot("finished"));
             
+            oneOf(mockExportDocumentSession).openSession(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).openAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
             oneOf(mockNodeExporter).exportNode(mockWorkspace, null, null, testNode, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.TREE_EXPORT);
                 when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).closeAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockExportDocumentSession).closeSession(workspaceID); will(returnValue(Boolean.TRUE));
+                when(exporting.isNot("finished"));
             
             oneOf(mockWorkspaceCorpusStructureExporter).triggerWorkspaceCrawl(mockWorkspace);
                 then(exporting.is("finished"));
@@ -277,8 +291,16 @@ public class WorkspaceExportRunnerTest {
             oneOf(mockNodeExporterFactory).getNodeExporterForNode(mockWorkspace, testNode, WorkspaceExportPhase.TREE_EXPORT); will(returnValue(mockNodeExporter));
                 when(exporting.isNot("finished"));
             
+            oneOf(mockExportDocumentSession).openSession(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).openAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
             oneOf(mockNodeExporter).exportNode(mockWorkspace, null, null, testNode, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.TREE_EXPORT);
                 when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).closeAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockExportDocumentSession).closeSession(workspaceID); will(returnValue(Boolean.TRUE));
+                when(exporting.isNot("finished"));
             
             oneOf(mockWorkspaceCorpusStructureExporter).triggerWorkspaceCrawl(mockWorkspace); will(throwException(expectedCause));
                 then(exporting.is("finished"));
@@ -295,6 +317,151 @@ public class WorkspaceExportRunnerTest {
         synchroniser.waitUntil(exporting.is("finished"), timeoutInMs);
     }
     
+    @Test
+    public void callExporterForGeneralNodeWithoutVersions_ExportException()
+            throws MalformedURLException, InterruptedException,
+            ExecutionException, WorkspaceNodeNotFoundException, WorkspaceExportException,
+            VersionCreationException, CrawlerInvocationException {
+        
+        final int workspaceID = 1;
+        final int wsNodeID = 10;
+        final URI archiveNodeURI = URI.create(UUID.randomUUID().toString());
+        final URL wsNodeURL = new URL("file:/workspace/folder/someName.cmdi");
+        final URI originURI = URI.create("http://some.url/someName.cmdi");
+        final URL archiveNodeURL = originURI.toURL();
+        final String testDisplayValue = "someName";
+        final WorkspaceNodeType testNodeType = WorkspaceNodeType.METADATA;
+        final String testNodeFormat = "";
+        final URI testSchemaLocation = URI.create("http://some.location");
+        final WorkspaceNode testNode = new LamusWorkspaceNode(wsNodeID, workspaceID, testSchemaLocation,
+                testDisplayValue, "", testNodeType, wsNodeURL, archiveNodeURI, archiveNodeURL, originURI, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE, testNodeFormat);
+        
+        final Collection<WorkspaceReplacedNodeUrlUpdate> emptyNodeUrlUpdates = new ArrayList<>();
+        
+        final WorkspaceExportException expectedCause = new WorkspaceExportException("some exception message", workspaceID, null);
+        
+        final States exporting = context.states("exporting");
+        
+        final boolean keepUnlinkedFiles = Boolean.FALSE;
+        final WorkspaceSubmissionType submissionType = WorkspaceSubmissionType.SUBMIT_WORKSPACE;
+        workspaceExportRunner.setKeepUnlinkedFiles(keepUnlinkedFiles);
+        workspaceExportRunner.setSubmissionType(submissionType);
+        
+        context.checking(new Expectations() {{
+            
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+                when(exporting.isNot("finished"));
+                
+            oneOf(mockUnlinkedAndDeletedNodesExportHandler).exploreUnlinkedAndDeletedNodes(mockWorkspace, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.UNLINKED_NODES_EXPORT);
+                when(exporting.isNot("finished"));
+                
+            oneOf(mockWorkspaceDao).getReplacedAndDeletedNodeUrlsToUpdateForWorkspace(workspaceID); will(returnValue(emptyNodeUrlUpdates));
+                when(exporting.isNot("finished"));
+                
+            oneOf(mockWorkspaceDao).getWorkspaceTopNode(workspaceID); will(returnValue(testNode));
+                when(exporting.isNot("finished"));
+            
+            oneOf(mockNodeExporterFactory).getNodeExporterForNode(mockWorkspace, testNode, WorkspaceExportPhase.TREE_EXPORT); will(returnValue(mockNodeExporter));
+                when(exporting.isNot("finished"));
+            
+            oneOf(mockExportDocumentSession).openSession(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).openAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockNodeExporter).exportNode(mockWorkspace, null, null, testNode, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.TREE_EXPORT);
+                will(throwException(expectedCause));
+                when(exporting.isNot("finished"));
+            //documents changed before the failure should still be saved
+            oneOf(mockCorpusStructureBridge).closeAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockExportDocumentSession).closeSession(workspaceID); will(returnValue(Boolean.TRUE));
+                then(exporting.is("finished"));
+        }});
+        
+        try {
+            executeRunner();
+            fail("should have thrown exception");
+        } catch(ExecutionException ex) {
+            assertEquals("Exception cause different from expected", expectedCause, ex.getCause());
+        }
+        
+        long timeoutInMs = 2000L;
+        synchroniser.waitUntil(exporting.is("finished"), timeoutInMs);
+    }
+    
+    @Test
+    public void callExporterForGeneralNodeWithoutVersions_DocumentsNotSaved()
+            throws MalformedURLException, InterruptedException,
+            ExecutionException, WorkspaceNodeNotFoundException, WorkspaceExportException,
+            VersionCreationException, CrawlerInvocationException {
+        
+        final int workspaceID = 1;
+        final int wsNodeID = 10;
+        final URI archiveNodeURI = URI.create(UUID.randomUUID().toString());
+        final URL wsNodeURL = new URL("file:/workspace/folder/someName.cmdi");
+        final URI originURI = URI.create("http://some.url/someName.cmdi");
+        final URL archiveNodeURL = originURI.toURL();
+        final String testDisplayValue = "someName";
+        final WorkspaceNodeType testNodeType = WorkspaceNodeType.METADATA;
+        final String testNodeFormat = "";
+        final URI testSchemaLocation = URI.create("http://some.location");
+        final WorkspaceNode testNode = new LamusWorkspaceNode(wsNodeID, workspaceID, testSchemaLocation,
+                testDisplayValue, "", testNodeType, wsNodeURL, archiveNodeURI, archiveNodeURL, originURI, WorkspaceNodeStatus.ARCHIVE_COPY, Boolean.FALSE, testNodeFormat);
+        
+        final Collection<WorkspaceReplacedNodeUrlUpdate> emptyNodeUrlUpdates = new ArrayList<>();
+        
+        final String expectedMessage = "Error saving metadata documents of workspace " + workspaceID;
+        
+        final States exporting = context.states("exporting");
+        
+        final boolean keepUnlinkedFiles = Boolean.FALSE;
+        final WorkspaceSubmissionType submissionType = WorkspaceSubmissionType.SUBMIT_WORKSPACE;
+        workspaceExportRunner.setKeepUnlinkedFiles(keepUnlinkedFiles);
+        workspaceExportRunner.setSubmissionType(submissionType);
+        
+        context.checking(new Expectations() {{
+            
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+                when(exporting.isNot("finished"));
+                
+            oneOf(mockUnlinkedAndDeletedNodesExportHandler).exploreUnlinkedAndDeletedNodes(mockWorkspace, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.UNLINKED_NODES_EXPORT);
+                when(exporting.isNot("finished"));
+                
+            oneOf(mockWorkspaceDao).getReplacedAndDeletedNodeUrlsToUpdateForWorkspace(workspaceID); will(returnValue(emptyNodeUrlUpdates));
+                when(exporting.isNot("finished"));
+                
+            oneOf(mockWorkspaceDao).getWorkspaceTopNode(workspaceID); will(returnValue(testNode));
+                when(exporting.isNot("finished"));
+            
+            oneOf(mockNodeExporterFactory).getNodeExporterForNode(mockWorkspace, testNode, WorkspaceExportPhase.TREE_EXPORT); will(returnValue(mockNodeExporter));
+                when(exporting.isNot("finished"));
+            
+            oneOf(mockExportDocumentSession).openSession(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).openAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockNodeExporter).exportNode(mockWorkspace, null, null, testNode, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.TREE_EXPORT);
+                when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).closeAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockExportDocumentSession).closeSession(workspaceID); will(returnValue(Boolean.FALSE));
+                then(exporting.is("finished"));
+            
+            never(mockWorkspaceCorpusStructureExporter).triggerWorkspaceCrawl(mockWorkspace);
+        }});
+        
+        try {
+            executeRunner();
+            fail("should have thrown exception");
+        } catch(ExecutionException ex) {
+            assertTrue("Exception cause different from expected", ex.getCause() instanceof WorkspaceExportException);
+            assertEquals("Exception message different from expected", expectedMessage, ex.getCause().getMessage());
+        }
+        
+        long timeoutInMs = 2000L;
+        synchroniser.waitUntil(exporting.is("finished"), timeoutInMs);
+    }
+    
     @Test
     public void callExporterForGeneralNodeWithVersions() throws MalformedURLException, WorkspaceExportException, WorkspaceNodeNotFoundException, CrawlerInvocationException, InterruptedException, ExecutionException, NodeUrlUpdateException {
         
@@ -341,8 +508,16 @@ public class WorkspaceExportRunnerTest {
             oneOf(mockNodeExporterFactory).getNodeExporterForNode(mockWorkspace, testNode, WorkspaceExportPhase.TREE_EXPORT); will(returnValue(mockNodeExporter));
                 when(exporting.isNot("finished"));
             
+            oneOf(mockExportDocumentSession).openSession(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).openAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
             oneOf(mockNodeExporter).exportNode(mockWorkspace, null, null, testNode, keepUnlinkedFiles, submissionType, WorkspaceExportPhase.TREE_EXPORT);
                 when(exporting.isNot("finished"));
+            oneOf(mockCorpusStructureBridge).closeAncestorPathCache(workspaceID);
+                when(exporting.isNot("finished"));
+            oneOf(mockExportDocumentSession).closeSession(workspaceID); will(returnValue(Boolean.TRUE));
+                when(exporting.isNot("finished"));
             
             oneOf(mockWorkspaceCorpusStructureExporter).triggerWorkspaceCrawl(mockWorkspace);
                 then(exporting.is("finished"));
@@ -22,15 +22,20 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import nl.mpi.archiving.corpusstructure.core.CorpusNode;
+import nl.mpi.archiving.corpusstructure.core.FileInfo;
 import nl.mpi.archiving.corpusstructure.core.NodeNotFoundException;
 import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
 import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
 import nl.mpi.lamus.archive.ArchiveFileHelper;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.typechecking.FileTypeHandler;
+import nl.mpi.lamus.typechecking.TypecheckResultCache;
 import nl.mpi.lamus.typechecking.TypecheckedResults;
 import nl.mpi.lamus.exception.TypeCheckerException;
 import nl.mpi.lamus.typechecking.TypecheckerConfiguration;
@@ -40,6 +45,7 @@ import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import nl.mpi.metadata.api.model.MetadataDocument;
 import nl.mpi.metadata.api.model.Reference;
 import nl.mpi.metadata.cmdi.api.model.ResourceProxy;
+import nl.mpi.util.Checksum;
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
 import org.jmock.integration.junit4.JUnitRuleMockery;
@@ -52,6 +58,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
 
 /**
  *
@@ -63,6 +70,9 @@ public class LamusNodeDataRetrieverTest {
         setThreadingPolicy(new Synchroniser());
         setImposteriser(ClassImposteriser.INSTANCE);
     }};
+    
+    @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+    
     private NodeDataRetriever nodeDataRetriever;
     
     @Mock CorpusStructureProvider mockCorpusStructureProvider;
@@ -70,6 +80,8 @@ public class LamusNodeDataRetrieverTest {
     @Mock FileTypeHandler mockFileTypeHandler;
     @Mock TypecheckerConfiguration mockTypecheckerConfiguration;
     @Mock ArchiveFileHelper mockArchiveFileHelper;
+    @Mock TypecheckResultCache mockTypecheckResultCache;
+    @Mock FileInfo mockFileInfo;
     
     @Mock MetadataDocument mockMetadataDocument;
     @Mock Reference mockReferenceWithoutHandle;
@@ -98,7 +110,8 @@ public class LamusNodeDataRetrieverTest {
     public void setUp() {
         nodeDataRetriever = new LamusNodeDataRetriever(
                 mockCorpusStructureProvider, mockNodeResolver,
-                mockFileTypeHandler, mockTypecheckerConfiguration, mockArchiveFileHelper);
+                mockFileTypeHandler, mockTypecheckerConfiguration, mockArchiveFileHelper,
+                mockTypecheckResultCache);
     }
     
     @After
@@ -261,6 +274,115 @@ public class LamusNodeDataRetrieverTest {
         assertEquals("Typechecked results different from expected", mockTypecheckedResults, results);
     }
 
+    @Test
+    public void testTriggerCopiedFileCheck() throws TypeCheckerException, MalformedURLException {
+        
+        final String filename = "file.txt";
+        final URL fileUrl = new URL("file:/some/location/" + filename);
+        final CopiedFileInfo copiedFileInfo = new CopiedFileInfo(new File(fileUrl.getPath()), 12, "9893532233caff98cd083a116b013c0b");
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockTypecheckResultCache).getCachedResults(copiedFileInfo.getChecksum(), copiedFileInfo.getSize(), filename); will(returnValue(null));
+            oneOf(mockFileTypeHandler).checkType(fileUrl, filename); will(returnValue(mockTypecheckedResults));
+            oneOf(mockTypecheckResultCache).cacheResults(copiedFileInfo.getChecksum(), copiedFileInfo.getSize(), filename, mockTypecheckedResults);
+        }});
+        
+        TypecheckedResults results = nodeDataRetriever.triggerResourceFileCheck(fileUrl, filename, copiedFileInfo);
+        assertEquals("Typechecked results different from expected", mockTypecheckedResults, results);
+    }
+    
+    @Test
+    public void testTriggerCopiedFileCheck_Cached() throws TypeCheckerException, MalformedURLException {
+        
+        final String filename = "file.txt";
+        final URL fileUrl = new URL("file:/some/location/" + filename);
+        final CopiedFileInfo copiedFileInfo = new CopiedFileInfo(new File(fileUrl.getPath()), 12, "9893532233caff98cd083a116b013c0b");
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockTypecheckResultCache).getCachedResults(copiedFileInfo.getChecksum(), copiedFileInfo.getSize(), filename); will(returnValue(mockTypecheckedResults));
+            never(mockFileTypeHandler).checkType(fileUrl, filename);
+        }});
+        
+        TypecheckedResults results = nodeDataRetriever.triggerResourceFileCheck(fileUrl, filename, copiedFileInfo);
+        assertEquals("Typechecked results different from expected", mockTypecheckedResults, results);
+    }
+    
+    @Test
+    public void testTriggerCopiedFileCheck_NoChecksum() throws TypeCheckerException, IOException {
+        
+        final String filename = "file.txt";
+        final File movedFile = testFolder.newFile(filename);
+        Files.write(movedFile.toPath(), "some content".getBytes(StandardCharsets.UTF_8));
+        final URL fileUrl = movedFile.toURI().toURL();
+        // the checksum of moved files is only calculated when needed
+        final CopiedFileInfo copiedFileInfo = new CopiedFileInfo(movedFile, movedFile.length(), null);
+        final String expectedChecksum = Checksum.create(movedFile.getPath());
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockTypecheckResultCache).getCachedResults(expectedChecksum, copiedFileInfo.getSize(), filename); will(returnValue(mockTypecheckedResults));
+            never(mockFileTypeHandler).checkType(fileUrl, filename);
+        }});
+        
+        TypecheckedResults results = nodeDataRetriever.triggerResourceFileCheck(fileUrl, filename, copiedFileInfo);
+        assertEquals("Typechecked results different from expected", mockTypecheckedResults, results);
+    }
+    
+    @Test
+    public void testTriggerCopiedFileCheck_NoInfo() throws TypeCheckerException, MalformedURLException {
+        
+        final String filename = "file.txt";
+        final URL fileUrl = new URL("file:/some/location/" + filename);
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockFileTypeHandler).checkType(fileUrl, filename); will(returnValue(mockTypecheckedResults));
+        }});
+        
+        TypecheckedResults results = nodeDataRetriever.triggerResourceFileCheck(fileUrl, filename, (CopiedFileInfo) null);
+        assertEquals("Typechecked results different from expected", mockTypecheckedResults, results);
+    }
+    
+    @Test
+    public void testTriggerArchiveFileCheck() throws TypeCheckerException, MalformedURLException {
+        
+        final String filename = "file.wav";
+        final URL fileUrl = new URL("file:/some/archive/location/" + filename);
+        final String checksum = "9893532233caff98cd083a116b013c0b";
+        final long size = 12;
+        
+        context.checking(new Expectations() {{
+            
+            allowing(mockFileInfo).getChecksum(); will(returnValue(checksum));
+            allowing(mockFileInfo).getSize(); will(returnValue(size));
+            oneOf(mockTypecheckResultCache).getCachedResults(checksum, size, filename); will(returnValue(null));
+            oneOf(mockFileTypeHandler).checkType(fileUrl, filename); will(returnValue(mockTypecheckedResults));
+            oneOf(mockTypecheckResultCache).cacheResults(checksum, size, filename, mockTypecheckedResults);
+        }});
+        
+        TypecheckedResults results = nodeDataRetriever.triggerResourceFileCheck(fileUrl, filename, mockFileInfo);
+        assertEquals("Typechecked results different from expected", mockTypecheckedResults, results);
+    }
+    
+    @Test
+    public void testTriggerArchiveFileCheck_NoChecksum() throws TypeCheckerException, MalformedURLException {
+        
+        final String filename = "file.wav";
+        final URL fileUrl = new URL("file:/some/archive/location/" + filename);
+        
+        context.checking(new Expectations() {{
+            
+            allowing(mockFileInfo).getChecksum(); will(returnValue(null));
+            allowing(mockFileInfo).getSize(); will(returnValue(12L));
+            oneOf(mockFileTypeHandler).checkType(fileUrl, filename); will(returnValue(mockTypecheckedResults));
+        }});
+        
+        TypecheckedResults results = nodeDataRetriever.triggerResourceFileCheck(fileUrl, filename, mockFileInfo);
+        assertEquals("Typechecked results different from expected", mockTypecheckedResults, results);
+    }
+
     @Test
     public void testTriggerFileStreamCheckThrowsException() throws TypeCheckerException, MalformedURLException {
         
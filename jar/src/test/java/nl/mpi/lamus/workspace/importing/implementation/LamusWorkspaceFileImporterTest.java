@@ -45,6 +45,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.Rule;
+import org.springframework.beans.factory.ObjectFactory;
 
 /**
  *
@@ -62,6 +63,8 @@ public class LamusWorkspaceFileImporterTest {
     @Mock WorkspaceFileHandler mockWorkspaceFileHandler;
     @Mock WorkspaceDao mockWorkspaceDao;
     @Mock MetadataAPI mockMetadataAPI;
+    @Mock MetadataAPI mockOtherMetadataAPI;
+    @Mock ObjectFactory<MetadataAPI> mockMetadataAPIFactory;
     
     @Mock Workspace mockWorkspace;
     @Mock WorkspaceNode mockWorkspaceNode;
@@ -86,7 +89,12 @@ public class LamusWorkspaceFileImporterTest {
     @Before
     public void setUp() {
         
-        fileImporter = new LamusWorkspaceFileImporter(mockWorkspaceFileHandler, mockWorkspaceDao, mockMetadataAPI);
+        fileImporter = new LamusWorkspaceFileImporter(mockWorkspaceFileHandler, mockWorkspaceDao, new ObjectFactory<MetadataAPI>() {
+            @Override
+            public MetadataAPI getObject() {
+                return mockMetadataAPI;
+            }
+        });
     }
     
     @After
@@ -120,6 +128,53 @@ public class LamusWorkspaceFileImporterTest {
         fileImporter.importMetadataFileToWorkspace(mockArchiveFile, mockWorkspaceNode, mockMetadataDocument);
     }
     
+    @Test
+    public void importMetadataFileToWorkspaceUsesOneMetadataAPIPerThread()
+            throws URISyntaxException, MalformedURLException, IOException, TransformerException, MetadataException, InterruptedException {
+        
+        final int workspaceID = 10;
+        final String archivePath = "file://archive/path/file.cmdi";
+        final URI testURI = new URI("http://some/location/file.cmdi");
+        
+        final WorkspaceFileImporter importer = new LamusWorkspaceFileImporter(mockWorkspaceFileHandler, mockWorkspaceDao, mockMetadataAPIFactory);
+        
+        context.checking(new Expectations() {{
+            
+            // one for this thread, one for the other
+            oneOf(mockMetadataAPIFactory).getObject(); will(returnValue(mockMetadataAPI));
+            oneOf(mockMetadataAPIFactory).getObject(); will(returnValue(mockOtherMetadataAPI));
+            
+            allowing(mockArchiveFile).getAbsolutePath(); will(returnValue(archivePath));
+            allowing(mockWorkspaceNode).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockWorkspaceFileHandler).getFileForImportedWorkspaceNode(mockArchiveFile, mockWorkspaceNode); will(returnValue(mockNodeFile));
+            allowing(mockWorkspaceFileHandler).getStreamResultForNodeFile(mockNodeFile); will(returnValue(mockNodeFileStreamResult));
+            allowing(mockNodeFile).toURI(); will(returnValue(testURI));
+            allowing(mockWorkspaceNode).setWorkspaceURL(testURI.toURL());
+            allowing(mockWorkspaceDao).updateNodeWorkspaceURL(mockWorkspaceNode);
+            
+            exactly(2).of(mockMetadataAPI).writeMetadataDocument(mockMetadataDocument, mockNodeFileStreamResult);
+            oneOf(mockOtherMetadataAPI).writeMetadataDocument(mockMetadataDocument, mockNodeFileStreamResult);
+        }});
+        
+        importer.importMetadataFileToWorkspace(mockArchiveFile, mockWorkspaceNode, mockMetadataDocument);
+        
+        Thread otherThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    importer.importMetadataFileToWorkspace(mockArchiveFile, mockWorkspaceNode, mockMetadataDocument);
+                } catch(IOException | TransformerException | MetadataException ex) {
+                    fail("should not have thrown exception");
+                }
+            }
+        });
+        otherThread.start();
+        otherThread.join();
+        
+        // the metadata API of this thread is reused
+        importer.importMetadataFileToWorkspace(mockArchiveFile, mockWorkspaceNode, mockMetadataDocument);
+    }
+    
     @Test
     public void importMetadataFileToWorkspaceThrowsIOException()
             throws URISyntaxException, MalformedURLException, IOException, TransformerException, MetadataException {
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.importing.implementation;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.workspace.factory.WorkspaceNodeLinkFactory;
+import nl.mpi.lamus.workspace.importing.WorkspaceNodeBatchWriter;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusWorkspaceNodeBatchWriterTest {
+    
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    
+    @Mock WorkspaceDao mockWorkspaceDao;
+    @Mock WorkspaceNodeLinkFactory mockWorkspaceNodeLinkFactory;
+    
+    @Mock WorkspaceNode mockParentNode;
+    @Mock WorkspaceNode mockFirstChildNode;
+    @Mock WorkspaceNode mockSecondChildNode;
+    @Mock WorkspaceNodeLink mockFirstLink;
+    @Mock WorkspaceNodeLink mockSecondLink;
+    
+    private WorkspaceNodeBatchWriter nodeBatchWriter;
+    
+    private final int workspaceID = 1;
+    private final int parentNodeID = 10;
+    private final int firstChildNodeID = 11;
+    private final int secondChildNodeID = 12;
+    private final URI firstChildURI = URI.create("hdl:11142/00-00000000-0000-0000-0000-000000000011");
+    
+    public LamusWorkspaceNodeBatchWriterTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+        nodeBatchWriter = new LamusWorkspaceNodeBatchWriter(mockWorkspaceDao, mockWorkspaceNodeLinkFactory, 100);
+        
+        context.checking(new Expectations() {{
+            allowing(mockParentNode).getWorkspaceNodeID(); will(returnValue(parentNodeID));
+            allowing(mockFirstChildNode).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockFirstChildNode).getWorkspaceNodeID(); will(returnValue(firstChildNodeID));
+            allowing(mockSecondChildNode).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockSecondChildNode).getWorkspaceNodeID(); will(returnValue(secondChildNodeID));
+        }});
+    }
+    
+    @After
+    public void tearDown() {
+    }
+
+
+    @Test
+    public void nothingWrittenBeforeFlush() {
+        
+        context.checking(new Expectations() {{
+            never(mockWorkspaceDao).addWorkspaceNodes(with(any(List.class)));
+        }});
+        
+        nodeBatchWriter.addLinkedNode(mockParentNode, mockFirstChildNode, firstChildURI);
+        nodeBatchWriter.addLinkedNode(mockParentNode, mockSecondChildNode, null);
+    }
+    
+    @Test
+    public void flushWritesNodesThenLocksThenLinks() {
+        
+        final Sequence flushSequence = context.sequence("flushSequence");
+        
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).addWorkspaceNodes(Arrays.asList(mockFirstChildNode, mockSecondChildNode));
+                inSequence(flushSequence);
+            oneOf(mockWorkspaceDao).lockNodes(Collections.singletonList(firstChildURI), workspaceID);
+                inSequence(flushSequence);
+            oneOf(mockWorkspaceNodeLinkFactory).getNewWorkspaceNodeLink(parentNodeID, firstChildNodeID); will(returnValue(mockFirstLink));
+            oneOf(mockWorkspaceNodeLinkFactory).getNewWorkspaceNodeLink(parentNodeID, secondChildNodeID); will(returnValue(mockSecondLink));
+            oneOf(mockWorkspaceDao).addWorkspaceNodeLinks(Arrays.asList(mockFirstLink, mockSecondLink));
+                inSequence(flushSequence);
+        }});
+        
+        nodeBatchWriter.addLinkedNode(mockParentNode, mockFirstChildNode, firstChildURI);
+        nodeBatchWriter.addLinkedNode(mockParentNode, mockSecondChildNode, null);
+        
+        nodeBatchWriter.flush(workspaceID);
+        
+        // nothing left to write
+        nodeBatchWriter.flush(workspaceID);
+    }
+    
+    @Test
+    public void flushWhenBatchSizeReached() {
+        
+        nodeBatchWriter = new LamusWorkspaceNodeBatchWriter(mockWorkspaceDao, mockWorkspaceNodeLinkFactory, 2);
+        
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).addWorkspaceNodes(Arrays.asList(mockFirstChildNode, mockSecondChildNode));
+            oneOf(mockWorkspaceDao).lockNodes(Collections.singletonList(firstChildURI), workspaceID);
+            oneOf(mockWorkspaceNodeLinkFactory).getNewWorkspaceNodeLink(parentNodeID, firstChildNodeID); will(returnValue(mockFirstLink));
+            oneOf(mockWorkspaceNodeLinkFactory).getNewWorkspaceNodeLink(parentNodeID, secondChildNodeID); will(returnValue(mockSecondLink));
+            oneOf(mockWorkspaceDao).addWorkspaceNodeLinks(Arrays.asList(mockFirstLink, mockSecondLink));
+        }});
+        
+        nodeBatchWriter.addLinkedNode(mockParentNode, mockFirstChildNode, firstChildURI);
+        nodeBatchWriter.addLinkedNode(mockParentNode, mockSecondChildNode, null);
+    }
+    
+    @Test
+    public void discardedNodesNotWritten() {
+        
+        context.checking(new Expectations() {{
+            never(mockWorkspaceDao).addWorkspaceNodes(with(any(List.class)));
+        }});
+        
+        nodeBatchWriter.addLinkedNode(mockParentNode, mockFirstChildNode, firstChildURI);
+        nodeBatchWriter.discard(workspaceID);
+        
+        nodeBatchWriter.flush(workspaceID);
+    }
+    
+    @Test
+    public void pendingWritesOfOtherWorkspaceNotFlushed() {
+        
+        final int otherWorkspaceID = 2;
+        
+        context.checking(new Expectations() {{
+            never(mockWorkspaceDao).addWorkspaceNodes(with(any(List.class)));
+        }});
+        
+        nodeBatchWriter.addLinkedNode(mockParentNode, mockFirstChildNode, firstChildURI);
+        nodeBatchWriter.flush(otherWorkspaceID);
+    }
+}
@@ -22,12 +22,16 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import javax.xml.transform.TransformerException;
 import nl.mpi.lamus.exception.UnusableReferenceTypeException;
 import nl.mpi.lamus.exception.WorkspaceImportException;
 import nl.mpi.lamus.metadata.MetadataApiBridge;
+import nl.mpi.lamus.workspace.importing.NodeImportData;
 import nl.mpi.lamus.workspace.importing.NodeImporter;
 import nl.mpi.lamus.workspace.importing.NodeImporterAssigner;
+import nl.mpi.lamus.workspace.importing.WorkspaceNodeBatchWriter;
 import nl.mpi.lamus.workspace.importing.WorkspaceNodeExplorer;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
@@ -38,8 +42,11 @@ import nl.mpi.metadata.cmdi.api.model.DataResourceProxy;
 import nl.mpi.metadata.cmdi.api.model.MetadataResourceProxy;
 import nl.mpi.metadata.cmdi.api.model.ResourceProxy;
 import org.jmock.Expectations;
+import org.jmock.Sequence;
 import org.jmock.auto.Mock;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.action.CustomAction;
 import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.*;
@@ -60,11 +67,16 @@ public class LamusWorkspaceNodeExplorerTest {
     @Mock private NodeImporterAssigner mockNodeImporterAssigner;
     @Mock private MetadataApiBridge mockMetadataApiBridge;
     @Mock private NodeImporter mockNodeImporter;
+    @Mock private WorkspaceNodeBatchWriter mockNodeBatchWriter;
     @Mock private WorkspaceNode mockNodeToExplore;
     @Mock private ReferencingMetadataDocument mockNodeDocument;
+    @Mock private WorkspaceNode mockChildNode;
+    @Mock private ReferencingMetadataDocument mockChildDocument;
     
     @Mock private Workspace mockWorkspace;
     
+    private ExecutorService importExecutorService;
+    
     private final int workspaceID = 1;
     
     public LamusWorkspaceNodeExplorerTest() {
@@ -83,10 +95,16 @@ public class LamusWorkspaceNodeExplorerTest {
         nodeExplorer = new LamusWorkspaceNodeExplorer();
         ReflectionTestUtils.setField(nodeExplorer, "nodeImporterAssigner", mockNodeImporterAssigner);
         ReflectionTestUtils.setField(nodeExplorer, "metadataApiBridge", mockMetadataApiBridge);
+        ReflectionTestUtils.setField(nodeExplorer, "nodeBatchWriter", mockNodeBatchWriter);
+        
+        importExecutorService = Executors.newFixedThreadPool(2);
+        ReflectionTestUtils.setField(nodeExplorer, "importExecutorService", importExecutorService);
+        ReflectionTestUtils.setField(nodeExplorer, "numberOfWorkspaceImportThreads", 2);
     }
     
     @After
     public void tearDown() {
+        importExecutorService.shutdownNow();
     }
 
     @Test
@@ -121,10 +139,13 @@ public class LamusWorkspaceNodeExplorerTest {
             
             for(Reference currentLink : testLinks) { //instances of HandleCarrier
                 
+                NodeImportData currentData = createNodeImportData(currentLink);
                 oneOf(mockNodeImporterAssigner).getImporterForReference(currentLink); will(returnValue(mockNodeImporter));
-                oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, currentLink);
+                oneOf(mockNodeImporter).retrieveNodeData(mockWorkspace, currentLink); will(returnValue(currentData));
+                oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, currentLink, currentData);
             }
             
+            oneOf(mockNodeBatchWriter).flush(workspaceID);
             oneOf(mockMetadataApiBridge).saveMetadataDocument(mockNodeDocument, nodeURL);
         }});
         
@@ -168,9 +189,12 @@ public class LamusWorkspaceNodeExplorerTest {
                 
             // even with the exception, the loop continues
             currentLink = linkIterator.next();
+            NodeImportData currentData = createNodeImportData(currentLink);
             oneOf(mockNodeImporterAssigner).getImporterForReference(currentLink); will(returnValue(mockNodeImporter));
-            oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, currentLink);
+            oneOf(mockNodeImporter).retrieveNodeData(mockWorkspace, currentLink); will(returnValue(currentData));
+            oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, currentLink, currentData);
             
+            oneOf(mockNodeBatchWriter).flush(workspaceID);
             oneOf(mockMetadataApiBridge).saveMetadataDocument(mockNodeDocument, nodeURL);
         }});
 
@@ -224,6 +248,123 @@ public class LamusWorkspaceNodeExplorerTest {
         }
     }
     
+    @Test
+    public void exploreImportsNodesInReferenceOrder() throws Exception {
+
+        final int nodeID = 10;
+        
+        final URL nodeURL = new URL("file:/workspace/location/parentTest.cmdi");
+        
+        final Collection<Reference> testLinks = new ArrayList<>();
+        for(int i = 0; i < 40; i++) {
+            ResourceProxy currentLink = new DataResourceProxy(Integer.toString(i), URI.create("https://testURL.mpi.nl/test" + i + ".jpg"), "jpg");
+            currentLink.setHandle(URI.create("hdl:3492/" + i));
+            testLinks.add(currentLink);
+        }
+        
+        final Sequence importSequence = context.sequence("importSequence");
+        
+        context.checking(new Expectations() {{
+            
+            //logger
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockNodeToExplore).getWorkspaceNodeID(); will(returnValue(nodeID));
+            allowing(mockNodeToExplore).getWorkspaceURL(); will(returnValue(nodeURL));
+            
+            for(Reference currentLink : testLinks) {
+                
+                NodeImportData currentData = createNodeImportData(currentLink);
+                oneOf(mockNodeImporterAssigner).getImporterForReference(currentLink); will(returnValue(mockNodeImporter));
+                oneOf(mockNodeImporter).retrieveNodeData(mockWorkspace, currentLink); will(returnValue(currentData));
+                oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, currentLink, currentData);
+                    inSequence(importSequence);
+            }
+            
+            oneOf(mockNodeBatchWriter).flush(workspaceID);
+            oneOf(mockMetadataApiBridge).saveMetadataDocument(mockNodeDocument, nodeURL);
+        }});
+        
+        nodeExplorer.explore(mockWorkspace, mockNodeToExplore, mockNodeDocument, testLinks);
+    }
+    
+    @Test
+    public void retrieveNodeDataThrowsException() throws Exception {
+
+        final int nodeID = 10;
+        
+        final URI metadataURI = URI.create("https://testURL.mpi.nl/test.cmdi");
+        final URI resourceURI = URI.create("https://testURL.mpi.nl/test.jpg");
+        final ResourceProxy metadataLink = new MetadataResourceProxy("1", metadataURI, "cmdi");
+        final ResourceProxy resourceLink = new DataResourceProxy("2", resourceURI, "jpg");
+        
+        final Collection<Reference> testLinks = new ArrayList<>();
+        testLinks.add(metadataLink);
+        testLinks.add(resourceLink);
+        
+        final WorkspaceImportException expectedException = new WorkspaceImportException("some error retrieving data", workspaceID, null);
+        
+        context.checking(new Expectations() {{
+            
+            //logger
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockNodeToExplore).getWorkspaceNodeID(); will(returnValue(nodeID));
+            
+            oneOf(mockNodeImporterAssigner).getImporterForReference(metadataLink); will(returnValue(mockNodeImporter));
+            oneOf(mockNodeImporterAssigner).getImporterForReference(resourceLink); will(returnValue(mockNodeImporter));
+            
+            oneOf(mockNodeImporter).retrieveNodeData(mockWorkspace, metadataLink); will(throwException(expectedException));
+            // the second retrieval may or may not have started before the first one failed
+            allowing(mockNodeImporter).retrieveNodeData(mockWorkspace, resourceLink); will(returnValue(createNodeImportData(resourceLink)));
+            
+            // no node should be imported, and the pending ones are discarded
+            oneOf(mockNodeBatchWriter).discard(workspaceID);
+        }});
+        
+        try {
+            nodeExplorer.explore(mockWorkspace, mockNodeToExplore, mockNodeDocument, testLinks);
+            fail("should have thrown exception");
+        } catch(WorkspaceImportException ex) {
+            assertEquals("Exception different from expected", expectedException, ex);
+        }
+    }
+    
+    @Test
+    public void importNodeThrowsException() throws Exception {
+
+        final int nodeID = 10;
+        
+        final URI resourceURI = URI.create("https://testURL.mpi.nl/test.jpg");
+        final ResourceProxy resourceLink = new DataResourceProxy("1", resourceURI, "jpg");
+        
+        final Collection<Reference> testLinks = new ArrayList<>();
+        testLinks.add(resourceLink);
+        
+        final NodeImportData resourceData = createNodeImportData(resourceLink);
+        final WorkspaceImportException expectedException = new WorkspaceImportException("some error importing node", workspaceID, null);
+        
+        context.checking(new Expectations() {{
+            
+            //logger
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockNodeToExplore).getWorkspaceNodeID(); will(returnValue(nodeID));
+            
+            oneOf(mockNodeImporterAssigner).getImporterForReference(resourceLink); will(returnValue(mockNodeImporter));
+            oneOf(mockNodeImporter).retrieveNodeData(mockWorkspace, resourceLink); will(returnValue(resourceData));
+            oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, resourceLink, resourceData);
+                will(throwException(expectedException));
+            
+            never(mockNodeBatchWriter).flush(workspaceID);
+            oneOf(mockNodeBatchWriter).discard(workspaceID);
+        }});
+        
+        try {
+            nodeExplorer.explore(mockWorkspace, mockNodeToExplore, mockNodeDocument, testLinks);
+            fail("should have thrown exception");
+        } catch(WorkspaceImportException ex) {
+            assertEquals("Exception different from expected", expectedException, ex);
+        }
+    }
+    
     @Test
     public void saveMetadataThrowsException() throws Exception {
 
@@ -257,12 +398,15 @@ public class LamusWorkspaceNodeExplorerTest {
             int current = 0;
             for(Reference currentLink : testLinks) { //instances of HandleCarrier
                 
+                NodeImportData currentData = createNodeImportData(currentLink);
                 oneOf(mockNodeImporterAssigner).getImporterForReference(currentLink); will(returnValue(mockNodeImporter));
-                oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, currentLink);
+                oneOf(mockNodeImporter).retrieveNodeData(mockWorkspace, currentLink); will(returnValue(currentData));
+                oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, currentLink, currentData);
                 
                 current++;
             }
             
+            oneOf(mockNodeBatchWriter).flush(workspaceID);
             oneOf(mockMetadataApiBridge).saveMetadataDocument(mockNodeDocument, nodeURL); will(throwException(expectedException));
         }});
         
@@ -277,4 +421,138 @@ public class LamusWorkspaceNodeExplorerTest {
             assertEquals("Cause different from expected", expectedException, ex.getCause());
         }
     }
+    
+    @Test
+    public void nestedExploreLeavesFlushToOutermost() throws Exception {
+
+        final URL nodeURL = new URL("file:/workspace/location/parentTest.cmdi");
+        final URL childURL = new URL("file:/workspace/location/childTest.cmdi");
+        
+        final ResourceProxy metadataLink = new MetadataResourceProxy("1", URI.create("https://testURL.mpi.nl/child.cmdi"), "cmdi");
+        final ResourceProxy resourceLink = new DataResourceProxy("2", URI.create("https://testURL.mpi.nl/test.jpg"), "jpg");
+        final NodeImportData metadataData = createNodeImportData(metadataLink);
+        
+        final Collection<Reference> testLinks = new ArrayList<>();
+        testLinks.add(metadataLink);
+        final Collection<Reference> childLinks = new ArrayList<>();
+        childLinks.add(resourceLink);
+        
+        final NodeImporter childImporter = new StubNodeImporter(null);
+        
+        context.checking(new Expectations() {{
+            
+            //logger
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockNodeToExplore).getWorkspaceNodeID(); will(returnValue(10));
+            allowing(mockNodeToExplore).getWorkspaceURL(); will(returnValue(nodeURL));
+            allowing(mockChildNode).getWorkspaceNodeID(); will(returnValue(11));
+            allowing(mockChildNode).getWorkspaceURL(); will(returnValue(childURL));
+            
+            oneOf(mockNodeImporterAssigner).getImporterForReference(metadataLink); will(returnValue(mockNodeImporter));
+            oneOf(mockNodeImporter).retrieveNodeData(mockWorkspace, metadataLink); will(returnValue(metadataData));
+            oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, metadataLink, metadataData);
+                will(exploreChild(childLinks));
+            oneOf(mockNodeImporterAssigner).getImporterForReference(resourceLink); will(returnValue(childImporter));
+            
+            // only the outermost exploration flushes the pending writes
+            oneOf(mockMetadataApiBridge).saveMetadataDocument(mockChildDocument, childURL);
+            oneOf(mockNodeBatchWriter).flush(workspaceID);
+            oneOf(mockMetadataApiBridge).saveMetadataDocument(mockNodeDocument, nodeURL);
+        }});
+        
+        nodeExplorer.explore(mockWorkspace, mockNodeToExplore, mockNodeDocument, testLinks);
+    }
+    
+    @Test
+    public void nestedExploreFailureDiscardsOnlyOnce() throws Exception {
+
+        final URL nodeURL = new URL("file:/workspace/location/parentTest.cmdi");
+        
+        final ResourceProxy metadataLink = new MetadataResourceProxy("1", URI.create("https://testURL.mpi.nl/child.cmdi"), "cmdi");
+        final ResourceProxy resourceLink = new DataResourceProxy("2", URI.create("https://testURL.mpi.nl/test.jpg"), "jpg");
+        final NodeImportData metadataData = createNodeImportData(metadataLink);
+        
+        final Collection<Reference> testLinks = new ArrayList<>();
+        testLinks.add(metadataLink);
+        final Collection<Reference> childLinks = new ArrayList<>();
+        childLinks.add(resourceLink);
+        
+        final WorkspaceImportException expectedException = new WorkspaceImportException("some error importing child node", workspaceID, null);
+        final NodeImporter childImporter = new StubNodeImporter(expectedException);
+        
+        context.checking(new Expectations() {{
+            
+            //logger
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockNodeToExplore).getWorkspaceNodeID(); will(returnValue(10));
+            allowing(mockNodeToExplore).getWorkspaceURL(); will(returnValue(nodeURL));
+            allowing(mockChildNode).getWorkspaceNodeID(); will(returnValue(11));
+            
+            oneOf(mockNodeImporterAssigner).getImporterForReference(metadataLink); will(returnValue(mockNodeImporter));
+            oneOf(mockNodeImporter).retrieveNodeData(mockWorkspace, metadataLink); will(returnValue(metadataData));
+            oneOf(mockNodeImporter).importNode(mockWorkspace, mockNodeToExplore, mockNodeDocument, metadataLink, metadataData);
+                will(exploreChild(childLinks));
+            oneOf(mockNodeImporterAssigner).getImporterForReference(resourceLink); will(returnValue(childImporter));
+            
+            // the nested exploration leaves the pending writes to the outermost one, which discards them
+            never(mockNodeBatchWriter).flush(workspaceID);
+            oneOf(mockNodeBatchWriter).discard(workspaceID);
+        }});
+        
+        try {
+            nodeExplorer.explore(mockWorkspace, mockNodeToExplore, mockNodeDocument, testLinks);
+            fail("should have thrown exception");
+        } catch(WorkspaceImportException ex) {
+            assertEquals("Exception different from expected", expectedException, ex);
+        }
+    }
+    
+    
+    private CustomAction exploreChild(final Collection<Reference> childLinks) {
+        return new CustomAction("explore child node") {
+            @Override
+            public Object invoke(Invocation invocation) throws Throwable {
+                nodeExplorer.explore(mockWorkspace, mockChildNode, mockChildDocument, childLinks);
+                return null;
+            }
+        };
+    }
+    
+    private NodeImportData createNodeImportData(Reference reference) {
+        return new NodeImportData(null, reference.getURI(), reference.getURI(), null, "someName",
+                true, null, null, null, reference.getMimetype(), null, false);
+    }
+    
+    
+    /**
+     * Importer for the nested level, since the mocks cannot be invoked
+     * from the import threads while the outer importNode action is running.
+     */
+    private class StubNodeImporter implements NodeImporter<Reference> {
+        
+        private final WorkspaceImportException importException;
+        
+        StubNodeImporter(WorkspaceImportException importException) {
+            this.importException = importException;
+        }
+
+        @Override
+        public void importNode(Workspace workspace, WorkspaceNode parentNode, ReferencingMetadataDocument parentDocument,
+                Reference referenceFromParent) throws WorkspaceImportException {
+            importNode(workspace, parentNode, parentDocument, referenceFromParent, retrieveNodeData(workspace, referenceFromParent));
+        }
+
+        @Override
+        public NodeImportData retrieveNodeData(Workspace workspace, Reference referenceFromParent) {
+            return createNodeImportData(referenceFromParent);
+        }
+
+        @Override
+        public void importNode(Workspace workspace, WorkspaceNode parentNode, ReferencingMetadataDocument parentDocument,
+                Reference referenceFromParent, NodeImportData nodeData) throws WorkspaceImportException {
+            if(importException != null) {
+                throw importException;
+            }
+        }
+    }
 }
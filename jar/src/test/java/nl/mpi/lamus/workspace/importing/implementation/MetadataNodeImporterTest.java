@@ -36,6 +36,7 @@ import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.exception.WorkspaceImportException;
 import nl.mpi.lamus.workspace.factory.WorkspaceNodeFactory;
 import nl.mpi.lamus.workspace.importing.NodeDataRetriever;
+import nl.mpi.lamus.workspace.importing.NodeImportData;
 import nl.mpi.lamus.workspace.importing.NodeImporter;
 import nl.mpi.lamus.workspace.importing.WorkspaceFileImporter;
 import nl.mpi.lamus.workspace.importing.WorkspaceNodeExplorer;
@@ -57,6 +58,7 @@ import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.*;
 import static org.junit.Assert.*;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.test.util.ReflectionTestUtils;
 
 
@@ -128,7 +130,12 @@ public class MetadataNodeImporterTest {
         ReflectionTestUtils.setField(nodeImporter, "corpusStructureProvider", mockCorpusStructureProvider);
         ReflectionTestUtils.setField(nodeImporter, "nodeResolver", mockNodeResolver);
         ReflectionTestUtils.setField(nodeImporter, "workspaceDao", mockWorkspaceDao);
-        ReflectionTestUtils.setField(nodeImporter, "metadataAPI", mockMetadataAPI);
+        ReflectionTestUtils.setField(nodeImporter, "metadataAPIFactory", new ObjectFactory<MetadataAPI>() {
+            @Override
+            public MetadataAPI getObject() {
+                return mockMetadataAPI;
+            }
+        });
         ReflectionTestUtils.setField(nodeImporter, "workspaceNodeLinkManager", mockWorkspaceNodeLinkManager);
         ReflectionTestUtils.setField(nodeImporter, "workspaceFileImporter", mockWorkspaceFileImporter);
         ReflectionTestUtils.setField(nodeImporter, "workspaceNodeFactory", mockWorkspaceNodeFactory);
@@ -427,6 +434,50 @@ public class MetadataNodeImporterTest {
         nodeImporter.importNode(testWorkspace, testParentNode, mockReferencingMetadataDocument, mockMetadataResourceProxy);
     }
 
+    @Test
+    public void retrieveNodeDataWithHandle() throws MalformedURLException, IOException, MetadataException, URISyntaxException,
+        WorkspaceImportException {
+
+        final URI testChildArchiveURI = URI.create("file:/some.url/node.something");
+        final URL testChildArchiveURL = testChildArchiveURI.toURL();
+        final String testChildRawHandle = UUID.randomUUID().toString();
+        final URI testChildURI = URI.create(handlePrefixWithSlash + testChildRawHandle);
+        final URI completeChildURI = URI.create(handleProxyPlusPrefixWithSlash + testChildRawHandle);
+        final String testChildName = "someName";
+        final boolean testChildOnSite = Boolean.TRUE;
+        final boolean testChildProtected = Boolean.FALSE;
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockMetadataResourceProxy).getHandle(); will(returnValue(testChildURI));
+            oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(testChildURI); will(returnValue(completeChildURI));
+            // the reference is not changed while retrieving the data
+            never(mockMetadataResourceProxy).setHandle(completeChildURI);
+            
+            oneOf(mockCorpusStructureProvider).getNode(completeChildURI); will(returnValue(mockCorpusNode));
+            oneOf(mockNodeResolver).getLocalFile(mockCorpusNode); will(returnValue(mockArchiveFile));
+            oneOf(mockArchiveFile).toURI(); will(returnValue(testChildArchiveURI));
+            oneOf(mockCorpusNode).getName(); will(returnValue(testChildName));
+            oneOf(mockCorpusNode).isOnSite(); will(returnValue(testChildOnSite));
+            
+            oneOf(mockMetadataAPI).getMetadataDocument(testChildArchiveURL);
+                will(returnValue(mockTestReferencingMetadataDocumentWithHandle));
+            
+            oneOf(mockNodeDataRetriever).isNodeToBeProtected(completeChildURI); will(returnValue(testChildProtected));
+        }});
+        
+        NodeImportData result = nodeImporter.retrieveNodeData(testWorkspace, mockMetadataResourceProxy);
+        
+        assertEquals("Handle in reference different from expected", testChildURI, result.getHandleInReference());
+        assertEquals("Node URI different from expected", completeChildURI, result.getNodeURI());
+        assertTrue("Handle should be marked to update", result.isHandleToUpdate());
+        assertEquals("Archive URL different from expected", testChildArchiveURL, result.getArchiveURL());
+        assertEquals("Local file different from expected", mockArchiveFile, result.getLocalFile());
+        assertEquals("Metadata document different from expected", mockTestReferencingMetadataDocumentWithHandle, result.getMetadataDocument());
+        assertEquals("Name different from expected", testChildName, result.getName());
+        assertEquals("Protected flag different from expected", testChildProtected, result.isToBeProtected());
+    }
+
     @Test
     public void importNormalNodeWithHandleAndNoLinks() throws MalformedURLException, IOException, MetadataException, URISyntaxException,
         WorkspaceImportException, TransformerException {
@@ -24,11 +24,11 @@ import java.net.URL;
 import java.util.Calendar;
 import java.util.UUID;
 import nl.mpi.archiving.corpusstructure.core.CorpusNode;
+import nl.mpi.archiving.corpusstructure.core.FileInfo;
 import nl.mpi.archiving.corpusstructure.core.service.NodeResolver;
 import nl.mpi.archiving.corpusstructure.provider.CorpusStructureProvider;
 import nl.mpi.handle.util.HandleParser;
 import nl.mpi.handle.util.implementation.HandleConstants;
-import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.typechecking.TypecheckedResults;
 import nl.mpi.lamus.exception.TypeCheckerException;
 import nl.mpi.lamus.exception.WorkspaceImportException;
@@ -36,13 +36,13 @@ import nl.mpi.lamus.metadata.MetadataApiBridge;
 import nl.mpi.lamus.typechecking.TypecheckerJudgement;
 import nl.mpi.lamus.typechecking.implementation.LamusTypecheckedResults;
 import nl.mpi.lamus.workspace.factory.WorkspaceNodeFactory;
-import nl.mpi.lamus.workspace.factory.WorkspaceNodeLinkFactory;
 import nl.mpi.lamus.workspace.importing.NodeDataRetriever;
+import nl.mpi.lamus.workspace.importing.NodeImportData;
 import nl.mpi.lamus.workspace.importing.NodeImporter;
+import nl.mpi.lamus.workspace.importing.WorkspaceNodeBatchWriter;
 import nl.mpi.lamus.workspace.model.*;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspace;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
-import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNodeLink;
 import nl.mpi.metadata.api.model.Reference;
 import nl.mpi.metadata.api.model.ReferencingMetadataDocument;
 import nl.mpi.metadata.cmdi.api.model.ResourceProxy;
@@ -70,11 +70,10 @@ public class ResourceNodeImporterTest {
     
     @Mock CorpusStructureProvider mockCorpusStructureProvider;
     @Mock NodeResolver mockNodeResolver;
-    @Mock WorkspaceDao mockWorkspaceDao;
     @Mock MetadataApiBridge mockMetadataApiBridge;
     @Mock NodeDataRetriever mockNodeDataRetriever;
     @Mock WorkspaceNodeFactory mockWorkspaceNodeFactory;
-    @Mock WorkspaceNodeLinkFactory mockWorkspaceNodeLinkFactory;
+    @Mock WorkspaceNodeBatchWriter mockNodeBatchWriter;
     @Mock NodeUtil mockNodeUtil;
     @Mock HandleParser mockHandleParser;
     
@@ -86,6 +85,7 @@ public class ResourceNodeImporterTest {
     
     @Mock TypecheckedResults mockTypecheckedResults;
     @Mock CorpusNode mockCorpusNode;
+    @Mock FileInfo mockFileInfo;
     @Mock File mockFile;
     @Mock InputStream mockInputStream;
     
@@ -115,11 +115,10 @@ public class ResourceNodeImporterTest {
         nodeImporter = new ResourceNodeImporter();
         ReflectionTestUtils.setField(nodeImporter, "corpusStructureProvider", mockCorpusStructureProvider);
         ReflectionTestUtils.setField(nodeImporter, "nodeResolver", mockNodeResolver);
-        ReflectionTestUtils.setField(nodeImporter, "workspaceDao", mockWorkspaceDao);
         ReflectionTestUtils.setField(nodeImporter, "metadataApiBridge", mockMetadataApiBridge);
         ReflectionTestUtils.setField(nodeImporter, "nodeDataRetriever", mockNodeDataRetriever);
         ReflectionTestUtils.setField(nodeImporter, "workspaceNodeFactory", mockWorkspaceNodeFactory);
-        ReflectionTestUtils.setField(nodeImporter, "workspaceNodeLinkFactory", mockWorkspaceNodeLinkFactory);
+        ReflectionTestUtils.setField(nodeImporter, "nodeBatchWriter", mockNodeBatchWriter);
         ReflectionTestUtils.setField(nodeImporter, "nodeUtil", mockNodeUtil);
         ReflectionTestUtils.setField(nodeImporter, "handleParser", mockHandleParser);
     }
@@ -162,7 +161,6 @@ public class ResourceNodeImporterTest {
                 "parent label", "", WorkspaceNodeType.METADATA, parentWsURL, parentURI, parentArchiveURL, parentOriginURI, parentStatus, parentProtected, "cmdi");
         final WorkspaceNode testChildNode = new LamusWorkspaceNode(childWorkspaceNodeID, testWorkspace.getWorkspaceID(), childNodeSchemaLocation,
                 childNodeName, "", childNodeType, childWsURL, childURI, childArchiveURL, childOriginURI, childStatus, childProtected, childNodeMimetype);
-        final WorkspaceNodeLink testNodeLink = new LamusWorkspaceNodeLink(parentWorkspaceNodeID, childWorkspaceNodeID);
         
         context.checking(new Expectations() {{
             
@@ -182,7 +180,8 @@ public class ResourceNodeImporterTest {
                 will(returnValue(Boolean.TRUE));
 
             oneOf(mockFile).getName(); will(returnValue(childFilename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename);
+            oneOf(mockCorpusNode).getFileInfo(); will(returnValue(mockFileInfo));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename, mockFileInfo);
                 will(returnValue(mockTypecheckedResults));
                 
             oneOf(mockNodeDataRetriever).verifyTypecheckedResults(mockFile, mockChildLinkWithHandle, mockTypecheckedResults);
@@ -201,12 +200,7 @@ public class ResourceNodeImporterTest {
                     childNodeName, childOnSite, childProtected);
                 will(returnValue(testChildNode));
 
-            oneOf(mockWorkspaceDao).addWorkspaceNode(testChildNode);
-            oneOf(mockWorkspaceDao).lockNode(completeChildURI, testWorkspace.getWorkspaceID());
-
-            oneOf (mockWorkspaceNodeLinkFactory).getNewWorkspaceNodeLink(parentWorkspaceNodeID, childWorkspaceNodeID);
-                will(returnValue(testNodeLink));
-            oneOf(mockWorkspaceDao).addWorkspaceNodeLink(testNodeLink);
+            oneOf(mockNodeBatchWriter).addLinkedNode(testParentNode, testChildNode, completeChildURI);
             
             oneOf(mockChildLinkWithHandle).setLocation(null);
         }});
@@ -248,7 +242,6 @@ public class ResourceNodeImporterTest {
                 "parent label", "", WorkspaceNodeType.METADATA, parentWsURL, parentURI, parentArchiveURL, parentOriginURI, parentStatus, parentProtected, "cmdi");
         final WorkspaceNode testChildNode = new LamusWorkspaceNode(childWorkspaceNodeID, testWorkspace.getWorkspaceID(), childNodeSchemaLocation,
                 childNodeName, "", childInfoNodeType, childWsURL, childURI, childArchiveURL, childOriginURI, childStatus, childProtected, childNodeMimetype);
-        final WorkspaceNodeLink testNodeLink = new LamusWorkspaceNodeLink(parentWorkspaceNodeID, childWorkspaceNodeID);
         
         context.checking(new Expectations() {{
             
@@ -268,7 +261,8 @@ public class ResourceNodeImporterTest {
                 will(returnValue(Boolean.TRUE));
 
             oneOf(mockFile).getName(); will(returnValue(childFilename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename);
+            oneOf(mockCorpusNode).getFileInfo(); will(returnValue(mockFileInfo));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename, mockFileInfo);
                 will(returnValue(mockTypecheckedResults));
                 
             oneOf(mockNodeDataRetriever).verifyTypecheckedResults(mockFile, mockChildLinkWithHandle, mockTypecheckedResults);
@@ -287,12 +281,7 @@ public class ResourceNodeImporterTest {
                     childNodeName, childOnSite, childProtected);
                 will(returnValue(testChildNode));
 
-            oneOf(mockWorkspaceDao).addWorkspaceNode(testChildNode);
-            oneOf(mockWorkspaceDao).lockNode(completeChildURI, testWorkspace.getWorkspaceID());
-
-            oneOf (mockWorkspaceNodeLinkFactory).getNewWorkspaceNodeLink(parentWorkspaceNodeID, childWorkspaceNodeID);
-                will(returnValue(testNodeLink));
-            oneOf(mockWorkspaceDao).addWorkspaceNodeLink(testNodeLink);
+            oneOf(mockNodeBatchWriter).addLinkedNode(testParentNode, testChildNode, completeChildURI);
             
             oneOf(mockChildLinkWithHandle).setLocation(null);
         }});
@@ -330,7 +319,6 @@ public class ResourceNodeImporterTest {
                 "parent label", "", WorkspaceNodeType.METADATA, parentWsURL, parentURI, parentArchiveURL, parentOriginURI, parentStatus, parentProtected, "cmdi");
         final WorkspaceNode testChildNode = new LamusWorkspaceNode(childWorkspaceNodeID, testWorkspace.getWorkspaceID(), childNodeSchemaLocation,
                 childNodeName, "", childNodeType, childWsURL, childOriginURI, childArchiveURL, childOriginURI, childStatus, childProtected, childNodeMimetype);
-        final WorkspaceNodeLink testNodeLink = new LamusWorkspaceNodeLink(parentWorkspaceNodeID, childWorkspaceNodeID);
         
         context.checking(new Expectations() {{
             
@@ -348,7 +336,8 @@ public class ResourceNodeImporterTest {
                 will(returnValue(Boolean.TRUE));
                 
             oneOf(mockFile).getName(); will(returnValue(childFilename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename);
+            oneOf(mockCorpusNode).getFileInfo(); will(returnValue(mockFileInfo));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename, mockFileInfo);
                 will(returnValue(mockTypecheckedResults));
                 
             oneOf(mockNodeDataRetriever).verifyTypecheckedResults(mockFile, mockChildLinkWithoutHandle, mockTypecheckedResults);
@@ -367,12 +356,7 @@ public class ResourceNodeImporterTest {
                     childNodeName, childOnSite, childProtected);
                 will(returnValue(testChildNode));
 
-            oneOf(mockWorkspaceDao).addWorkspaceNode(testChildNode);
-            oneOf(mockWorkspaceDao).lockNode(childOriginURI, testWorkspace.getWorkspaceID());
-
-            oneOf (mockWorkspaceNodeLinkFactory).getNewWorkspaceNodeLink(parentWorkspaceNodeID, childWorkspaceNodeID);
-                will(returnValue(testNodeLink));
-            oneOf(mockWorkspaceDao).addWorkspaceNodeLink(testNodeLink);
+            oneOf(mockNodeBatchWriter).addLinkedNode(testParentNode, testChildNode, childOriginURI);
             
             oneOf(mockChildLinkWithoutHandle).setLocation(null);
         }});
@@ -410,7 +394,6 @@ public class ResourceNodeImporterTest {
                 "parent label", "", WorkspaceNodeType.METADATA, parentWsURL, parentURI, parentArchiveURL, parentOriginURI, parentStatus, parentProtected, "cmdi");
         final WorkspaceNode testChildNode = new LamusWorkspaceNode(childWorkspaceNodeID, testWorkspace.getWorkspaceID(), childNodeSchemaLocation,
                 childNodeName, "", childNodeType, childWsURL, childOriginURI, childArchiveURL, childOriginURI, childStatus, childProtected, childNodeMimetype);
-        final WorkspaceNodeLink testNodeLink = new LamusWorkspaceNodeLink(parentWorkspaceNodeID, childWorkspaceNodeID);
         
         context.checking(new Expectations() {{
             
@@ -438,12 +421,7 @@ public class ResourceNodeImporterTest {
                     childNodeName, childOnSite, childProtected);
                 will(returnValue(testChildNode));
 
-            oneOf(mockWorkspaceDao).addWorkspaceNode(testChildNode);
-            oneOf(mockWorkspaceDao).lockNode(childOriginURI, testWorkspace.getWorkspaceID());
-
-            oneOf (mockWorkspaceNodeLinkFactory).getNewWorkspaceNodeLink(parentWorkspaceNodeID, childWorkspaceNodeID);
-                will(returnValue(testNodeLink));
-            oneOf(mockWorkspaceDao).addWorkspaceNodeLink(testNodeLink);
+            oneOf(mockNodeBatchWriter).addLinkedNode(testParentNode, testChildNode, childOriginURI);
             
             oneOf(mockChildLinkWithoutHandle).setLocation(null);
         }});
@@ -451,6 +429,68 @@ public class ResourceNodeImporterTest {
         nodeImporter.importNode(testWorkspace, testParentNode, mockReferencingMetadataDocument, mockChildLinkWithoutHandle);
     }
     
+    @Test
+    public void retrieveNodeDataWithHandle()
+            throws MalformedURLException, TypeCheckerException, WorkspaceImportException {
+
+        final String childNodeName = "file name label";
+        final WorkspaceNodeType childNodeType = WorkspaceNodeType.RESOURCE_WRITTEN;
+        final String childNodeMimetype = "text/plain";
+        final String childRawHandle = UUID.randomUUID().toString();
+        final URI childURI = URI.create(handlePrefixWithSlash + childRawHandle);
+        final URI completeChildURI = URI.create(handleProxyPlusPrefixWithSlash + childRawHandle);
+        final String childFilename = "childname.txt";
+        final URI childOriginURI = URI.create("file:/some.uri/" + childFilename);
+        final URL childArchiveURL = childOriginURI.toURL();
+        final boolean childOnSite = Boolean.TRUE;
+        final boolean childProtected = Boolean.FALSE;
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockChildLinkWithHandle).getHandle(); will(returnValue(childURI));
+            oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(childURI); will(returnValue(completeChildURI));
+            // the reference is not changed while retrieving the data
+            never(mockChildLinkWithHandle).setHandle(completeChildURI);
+            
+            oneOf(mockCorpusStructureProvider).getNode(completeChildURI); will(returnValue(mockCorpusNode));
+            
+            allowing(mockCorpusNode).isOnSite(); will(returnValue(childOnSite));
+            
+            oneOf(mockNodeResolver).getLocalFile(mockCorpusNode); will(returnValue(mockFile));
+            oneOf(mockFile).toURI(); will(returnValue(childOriginURI));
+            
+            oneOf(mockChildLinkWithHandle).getMimetype(); will(returnValue(childNodeMimetype));
+            oneOf(mockNodeDataRetriever).shouldResourceBeTypechecked(mockChildLinkWithHandle, mockFile, mockCorpusNode);
+                will(returnValue(Boolean.TRUE));
+
+            oneOf(mockFile).getName(); will(returnValue(childFilename));
+            oneOf(mockCorpusNode).getFileInfo(); will(returnValue(mockFileInfo));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename, mockFileInfo);
+                will(returnValue(mockTypecheckedResults));
+                
+            oneOf(mockNodeDataRetriever).verifyTypecheckedResults(mockFile, mockChildLinkWithHandle, mockTypecheckedResults);
+            
+            oneOf(mockTypecheckedResults).getCheckedMimetype(); will(returnValue(childNodeMimetype));
+            
+            oneOf(mockNodeUtil).convertMimetype(childNodeMimetype); will(returnValue(childNodeType));
+            oneOf(mockNodeDataRetriever).isNodeToBeProtected(completeChildURI); will(returnValue(childProtected));
+            
+            oneOf(mockCorpusNode).getName(); will(returnValue(childNodeName));
+        }});
+        
+        NodeImportData result = nodeImporter.retrieveNodeData(testWorkspace, mockChildLinkWithHandle);
+        
+        assertEquals("Handle in reference different from expected", childURI, result.getHandleInReference());
+        assertEquals("Prepared handle different from expected", completeChildURI, result.getPreparedHandle());
+        assertTrue("Handle should be marked to update", result.isHandleToUpdate());
+        assertEquals("Node URI different from expected", completeChildURI, result.getNodeURI());
+        assertEquals("Archive URL different from expected", childArchiveURL, result.getArchiveURL());
+        assertEquals("Name different from expected", childNodeName, result.getName());
+        assertEquals("Mimetype different from expected", childNodeMimetype, result.getMimetype());
+        assertEquals("Node type different from expected", childNodeType, result.getNodeType());
+        assertEquals("Protected flag different from expected", childProtected, result.isToBeProtected());
+    }
+    
     @Test
     public void workspaceWasNotSet() throws MalformedURLException, WorkspaceImportException {
         
@@ -599,7 +639,8 @@ public class ResourceNodeImporterTest {
                 will(returnValue(Boolean.TRUE));
             
             oneOf(mockFile).getName(); will(returnValue(childFilename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename);
+            oneOf(mockCorpusNode).getFileInfo(); will(returnValue(mockFileInfo));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(childArchiveURL, childFilename, mockFileInfo);
                 will(throwException(expectedException));
         }});
         
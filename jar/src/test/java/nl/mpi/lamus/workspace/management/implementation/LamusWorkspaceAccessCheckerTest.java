@@ -20,8 +20,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.UUID;
 import nl.mpi.archiving.corpusstructure.core.CorpusNode;
@@ -370,6 +372,10 @@ public class LamusWorkspaceAccessCheckerTest {
             //loop
             oneOf(mockCorpusNode_Descendant_1).isOnSite(); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getId(mockCorpusNode_Descendant_1); will(returnValue(corpusNodeID_Descendant_1));
+            oneOf(mockNodeResolver).getPID(mockCorpusNode_Descendant_1); will(returnValue(corpusNodePID_Descendant_1));
+            
+            oneOf(mockWorkspaceDao).getLockedNodes(Arrays.asList(corpusNodePID_Descendant_1)); will(returnValue(Collections.emptySet()));
+            
             oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_1); will(returnValue(Boolean.FALSE));
         }});
         
@@ -420,8 +426,11 @@ public class LamusWorkspaceAccessCheckerTest {
             //loop
             oneOf(mockCorpusNode_Descendant_1).isOnSite(); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getId(mockCorpusNode_Descendant_1); will(returnValue(corpusNodeID_Descendant_1));
-            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_1); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getPID(mockCorpusNode_Descendant_1); will(returnValue(corpusNodePID_Descendant_1));
+            
+            oneOf(mockWorkspaceDao).getLockedNodes(Arrays.asList(corpusNodePID_Descendant_1)); will(returnValue(Collections.singleton(corpusNodePID_Descendant_1)));
+            
+            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_1); will(returnValue(Boolean.TRUE));
             oneOf(mockWorkspaceDao).isNodeLocked(corpusNodePID_Descendant_1); will(returnValue(Boolean.TRUE));
             
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(corpusNodePID_Descendant_1); will(returnValue(lockedNodes));
@@ -479,14 +488,16 @@ public class LamusWorkspaceAccessCheckerTest {
             //loop
             oneOf(mockCorpusNode_Descendant_1).isOnSite(); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getId(mockCorpusNode_Descendant_1); will(returnValue(corpusNodeID_Descendant_1));
-            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_1); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getPID(mockCorpusNode_Descendant_1); will(returnValue(corpusNodePID_Descendant_1));
-            oneOf(mockWorkspaceDao).isNodeLocked(corpusNodePID_Descendant_1); will(returnValue(Boolean.FALSE));
             
             oneOf(mockCorpusNode_Descendant_2).isOnSite(); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getId(mockCorpusNode_Descendant_2); will(returnValue(corpusNodeID_Descendant_2));
-            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_2); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getPID(mockCorpusNode_Descendant_2); will(returnValue(corpusNodePID_Descendant_2));
+            
+            oneOf(mockWorkspaceDao).getLockedNodes(Arrays.asList(corpusNodePID_Descendant_1, corpusNodePID_Descendant_2)); will(returnValue(Collections.singleton(corpusNodePID_Descendant_2)));
+            
+            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_1); will(returnValue(Boolean.TRUE));
+            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_2); will(returnValue(Boolean.TRUE));
             oneOf(mockWorkspaceDao).isNodeLocked(corpusNodePID_Descendant_2); will(returnValue(Boolean.TRUE));
             
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(corpusNodePID_Descendant_2); will(returnValue(lockedNodes));
@@ -504,6 +515,63 @@ public class LamusWorkspaceAccessCheckerTest {
         }
     }
     
+    @Test
+    public void cannotCreateWorkspaceIfDescendantNodeHasNoPid() throws URISyntaxException, NodeNotFoundException, NodeAccessException {
+        
+        final String userID = "someUser";
+        final URI archiveNodeURI = URI.create(UUID.randomUUID().toString());
+        final String archiveNodeID = "12";
+        final URI archiveNodeID_URI = URI.create("node:" + archiveNodeID);
+        
+        final Collection<CorpusNode> descendants = new ArrayList<>();
+        descendants.add(mockCorpusNode_Descendant_1);
+        descendants.add(mockCorpusNode_Descendant_2);
+        
+        final String corpusNodeID_Descendant_1 = "13";
+        final URI corpusNodeID_URI_Descendant_1 = URI.create("node:" + corpusNodeID_Descendant_1);
+        final URI corpusNodePID_Descendant_2 = URI.create("hdl:" + UUID.randomUUID().toString());
+        final String corpusNodeID_Descendant_2 = "14";
+        
+        final IllegalArgumentException expectedException = new IllegalArgumentException("URI to check should not be null");
+        
+        context.checking(new Expectations() {{
+            oneOf(mockCorpusStructureProvider).getNode(archiveNodeURI); will(returnValue(mockCorpusNode));
+            oneOf(mockCorpusNode).isOnSite(); will(returnValue(Boolean.TRUE));
+            exactly(2).of(mockCorpusNode).getType(); will(returnValue(CorpusNodeType.METADATA));
+            oneOf(mockNodeResolver).getId(mockCorpusNode); will(returnValue(archiveNodeID));
+            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, archiveNodeID_URI); will(returnValue(Boolean.TRUE));
+            
+            oneOf(mockNodeResolver).getPID(mockCorpusNode); will(returnValue(archiveNodeURI));
+            oneOf(mockPreLockChecker).ensureNoNodesInPathArePreLocked(archiveNodeURI);
+            oneOf(mockWorkspaceDao).isNodeLocked(archiveNodeURI); will(returnValue(Boolean.FALSE));
+            
+            oneOf(mockCorpusStructureProvider).getDescendantNodes(archiveNodeURI); will(returnValue(descendants));
+            
+            //loop
+            oneOf(mockCorpusNode_Descendant_1).isOnSite(); will(returnValue(Boolean.TRUE));
+            oneOf(mockNodeResolver).getId(mockCorpusNode_Descendant_1); will(returnValue(corpusNodeID_Descendant_1));
+            oneOf(mockNodeResolver).getPID(mockCorpusNode_Descendant_1); will(returnValue(null));
+            
+            oneOf(mockCorpusNode_Descendant_2).isOnSite(); will(returnValue(Boolean.TRUE));
+            oneOf(mockNodeResolver).getId(mockCorpusNode_Descendant_2); will(returnValue(corpusNodeID_Descendant_2));
+            oneOf(mockNodeResolver).getPID(mockCorpusNode_Descendant_2); will(returnValue(corpusNodePID_Descendant_2));
+            
+            // the missing PID is not part of the bulk query
+            oneOf(mockWorkspaceDao).getLockedNodes(Arrays.asList(corpusNodePID_Descendant_2)); will(returnValue(Collections.emptySet()));
+            
+            // but it is still rejected when its turn comes, as with the single lock check
+            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_1); will(returnValue(Boolean.TRUE));
+            oneOf(mockWorkspaceDao).isNodeLocked(null); will(throwException(expectedException));
+        }});
+        
+        try {
+            nodeAccessChecker.ensureWorkspaceCanBeCreated(userID, archiveNodeURI);
+            fail("should have thrown an exception");
+        } catch(IllegalArgumentException ex) {
+            assertEquals("Exception different from expected", expectedException, ex);
+        }
+    }
+    
     @Test
     public void cannotCreateWorkspaceIfDescendantNodeIsLockedMultipleTimes() throws URISyntaxException, NodeNotFoundException, PreLockedNodeException {
         
@@ -540,8 +608,11 @@ public class LamusWorkspaceAccessCheckerTest {
             //loop
             oneOf(mockCorpusNode_Descendant_1).isOnSite(); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getId(mockCorpusNode_Descendant_1); will(returnValue(corpusNodeID_Descendant_1));
-            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_1); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getPID(mockCorpusNode_Descendant_1); will(returnValue(corpusNodePID_Descendant_1));
+            
+            oneOf(mockWorkspaceDao).getLockedNodes(Arrays.asList(corpusNodePID_Descendant_1)); will(returnValue(Collections.singleton(corpusNodePID_Descendant_1)));
+            
+            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_1); will(returnValue(Boolean.TRUE));
             oneOf(mockWorkspaceDao).isNodeLocked(corpusNodePID_Descendant_1); will(returnValue(Boolean.TRUE));
             
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(corpusNodePID_Descendant_1); will(returnValue(lockedNodes));
@@ -580,6 +651,8 @@ public class LamusWorkspaceAccessCheckerTest {
             oneOf(mockWorkspaceDao).isNodeLocked(archiveNodeURI); will(returnValue(Boolean.FALSE));
             
             oneOf(mockCorpusStructureProvider).getDescendantNodes(archiveNodeURI); will(returnValue(noDescendants));
+            
+            oneOf(mockWorkspaceDao).getLockedNodes(Collections.<URI>emptyList()); will(returnValue(Collections.emptySet()));
         }});
         
         nodeAccessChecker.ensureWorkspaceCanBeCreated(userID, archiveNodeURI);
@@ -607,6 +680,8 @@ public class LamusWorkspaceAccessCheckerTest {
             oneOf(mockWorkspaceDao).isNodeLocked(archiveNodeURI); will(returnValue(Boolean.FALSE));
             
             oneOf(mockCorpusStructureProvider).getDescendantNodes(archiveNodeID_URI); will(returnValue(noDescendants));
+            
+            oneOf(mockWorkspaceDao).getLockedNodes(Collections.<URI>emptyList()); will(returnValue(Collections.emptySet()));
         }});
         
         nodeAccessChecker.ensureWorkspaceCanBeCreated(userID, archiveNodeID_URI);
@@ -646,9 +721,11 @@ public class LamusWorkspaceAccessCheckerTest {
             
             oneOf(mockCorpusNode_Descendant_2).isOnSite(); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getId(mockCorpusNode_Descendant_2); will(returnValue(corpusNodeID_Descendant_2));
-            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_2); will(returnValue(Boolean.TRUE));
             oneOf(mockNodeResolver).getPID(mockCorpusNode_Descendant_2); will(returnValue(corpusNodePID_Descendant_2));
-            oneOf(mockWorkspaceDao).isNodeLocked(corpusNodePID_Descendant_2); will(returnValue(Boolean.FALSE));
+            
+            oneOf(mockWorkspaceDao).getLockedNodes(Arrays.asList(corpusNodePID_Descendant_2)); will(returnValue(Collections.emptySet()));
+            
+            oneOf(mockCorpusStructureAccessChecker).hasWriteAccess(userID, corpusNodeID_URI_Descendant_2); will(returnValue(Boolean.TRUE));
         }});
         
         nodeAccessChecker.ensureWorkspaceCanBeCreated(userID, archiveNodeURI);
@@ -742,6 +819,40 @@ public class LamusWorkspaceAccessCheckerTest {
         }
     }
     
+    @Test
+    public void doesNotHaveAccessToWorkspaceThrowsExceptionIfWorkspaceIsBeingDeleted() throws URISyntaxException, MalformedURLException, WorkspaceNotFoundException {
+        
+        final int workspaceID = 1;
+        final String userID = "someUser";
+        final int topNodeID = 1;
+        final URI topNodeArchiveURI = new URI(UUID.randomUUID().toString());
+        final URL topNodeArchiveURL = new URL("file:/archive/folder/someNode.cmdi");
+        final Date startDate = Calendar.getInstance().getTime();
+        final long usedStorageSpace = 0L;
+        final long maxStorageSpace = 10000000L;
+        final WorkspaceStatus status = WorkspaceStatus.DELETING;
+        final String message = "Workspace deleted; its data is being removed";
+        final String crawlerID = "";
+        final Workspace testWorkspace = new LamusWorkspace(workspaceID, userID, topNodeID, topNodeArchiveURI, topNodeArchiveURL,
+                startDate, null, startDate, null, usedStorageSpace, maxStorageSpace, status, message, crawlerID);
+        
+        final String expectedErrorMessage = "Workspace with ID " + workspaceID + " is being deleted";
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(testWorkspace));
+        }});
+        
+        try {
+            nodeAccessChecker.ensureUserHasAccessToWorkspace(userID, workspaceID);
+            fail("exception should have been thrown");
+        } catch(WorkspaceAccessException ex) {
+            assertEquals("Message different from expected", expectedErrorMessage, ex.getMessage());
+            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
+            assertNull("Cause should be null", ex.getCause());
+        }
+    }
+    
     @Test
     public void doesNotHaveAccessToWorkspaceThrowsExceptionIfWorkspaceIsNotFound() throws WorkspaceNotFoundException, WorkspaceAccessException {
         
@@ -850,6 +961,40 @@ public class LamusWorkspaceAccessCheckerTest {
         }
     }
     
+    @Test
+    public void userCannotDeleteWorkspaceAlreadyBeingDeleted() throws URISyntaxException, MalformedURLException, WorkspaceNotFoundException {
+        
+        final int workspaceID = 1;
+        final String userID = "someUser";
+        final int topNodeID = 1;
+        final URI topNodeArchiveURI = new URI(UUID.randomUUID().toString());
+        final URL topNodeArchiveURL = new URL("file:/archive/folder/someNode.cmdi");
+        final Date startDate = Calendar.getInstance().getTime();
+        final long usedStorageSpace = 0L;
+        final long maxStorageSpace = 10000000L;
+        final WorkspaceStatus status = WorkspaceStatus.DELETING;
+        final String message = "Workspace deleted; its data is being removed";
+        final String crawlerID = "";
+        final Workspace testWorkspace = new LamusWorkspace(workspaceID, userID, topNodeID, topNodeArchiveURI, topNodeArchiveURL,
+                startDate, null, startDate, null, usedStorageSpace, maxStorageSpace, status, message, crawlerID);
+        
+        final String expectedErrorMessage = "Workspace with ID " + workspaceID + " is being deleted";
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(testWorkspace));
+        }});
+        
+        try {
+            nodeAccessChecker.ensureUserCanDeleteWorkspace(userID, workspaceID);
+            fail("exception should have been thrown");
+        } catch(WorkspaceAccessException ex) {
+            assertEquals("Message different from expected", expectedErrorMessage, ex.getMessage());
+            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
+            assertNull("Cause should be null", ex.getCause());
+        }
+    }
+    
     @Test
     public void userCannotDeleteWorkspaceThrowsException() throws URISyntaxException, MalformedURLException, WorkspaceNotFoundException, WorkspaceAccessException {
         
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.management.implementation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import nl.mpi.lamus.workspace.management.WorkspaceJobScheduler;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusWorkspaceJobSchedulerTest {
+
+    private ExecutorService executorService;
+    private WorkspaceJobScheduler jobScheduler;
+
+    public LamusWorkspaceJobSchedulerTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(2);
+        jobScheduler = new LamusWorkspaceJobScheduler(executorService);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+
+    @Test
+    public void jobsOfSameWorkspaceRunInOrder() throws InterruptedException, ExecutionException {
+
+        final int workspaceID = 1;
+        final CountDownLatch firstJobStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstJob = new CountDownLatch(1);
+        final List<Integer> executedJobs = Collections.synchronizedList(new ArrayList<Integer>());
+
+        Future<Boolean> firstResult = jobScheduler.submitJob(workspaceID, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws InterruptedException {
+                firstJobStarted.countDown();
+                boolean released = releaseFirstJob.await(10, TimeUnit.SECONDS);
+                executedJobs.add(1);
+                return released;
+            }
+        });
+        Future<Boolean> secondResult = jobScheduler.submitJob(workspaceID, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                executedJobs.add(2);
+                return Boolean.TRUE;
+            }
+        });
+
+        assertTrue("First job should have started", firstJobStarted.await(10, TimeUnit.SECONDS));
+        assertFalse("Second job should be waiting for the first one", secondResult.isDone());
+        assertTrue("Workspace should have pending jobs", jobScheduler.hasPendingJobs(workspaceID));
+
+        releaseFirstJob.countDown();
+
+        assertTrue("First job should have been released", firstResult.get());
+        assertTrue("Second job should have been executed", secondResult.get());
+        assertEquals("Jobs executed in a different order than expected", 1, (int) executedJobs.get(0));
+        assertEquals("Jobs executed in a different order than expected", 2, (int) executedJobs.get(1));
+    }
+
+    @Test
+    public void jobsOfDifferentWorkspacesRunInParallel() throws InterruptedException, ExecutionException {
+
+        final CountDownLatch bothJobsStarted = new CountDownLatch(2);
+
+        Callable<Boolean> job = new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws InterruptedException {
+                bothJobsStarted.countDown();
+                return bothJobsStarted.await(10, TimeUnit.SECONDS);
+            }
+        };
+
+        Future<Boolean> firstResult = jobScheduler.submitJob(1, job);
+        Future<Boolean> secondResult = jobScheduler.submitJob(2, job);
+
+        assertTrue("First job should have run at the same time as the second", firstResult.get());
+        assertTrue("Second job should have run at the same time as the first", secondResult.get());
+    }
+
+    @Test
+    public void failedJobDoesNotBlockTheNextOne() throws InterruptedException, ExecutionException {
+
+        final int workspaceID = 1;
+        final IllegalStateException expectedException = new IllegalStateException("some exception message");
+
+        Future<Boolean> firstResult = jobScheduler.submitJob(workspaceID, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                throw expectedException;
+            }
+        });
+        Future<Boolean> secondResult = jobScheduler.submitJob(workspaceID, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Boolean.TRUE;
+            }
+        });
+
+        assertTrue("Second job should have been executed", secondResult.get());
+        try {
+            firstResult.get();
+            fail("should have thrown exception");
+        } catch(ExecutionException ex) {
+            assertEquals("Cause different from expected", expectedException, ex.getCause());
+        }
+    }
+
+    @Test
+    public void noPendingJobsAfterFinishing() throws InterruptedException, ExecutionException {
+
+        executorService.shutdownNow();
+        // with a single thread, a job only starts after the previous one has completely finished
+        executorService = Executors.newSingleThreadExecutor();
+        jobScheduler = new LamusWorkspaceJobScheduler(executorService);
+
+        final int workspaceID = 1;
+        final int otherWorkspaceID = 2;
+
+        Callable<Boolean> job = new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Boolean.TRUE;
+            }
+        };
+
+        assertFalse("Workspace should have no pending jobs", jobScheduler.hasPendingJobs(workspaceID));
+
+        jobScheduler.submitJob(workspaceID, job);
+        jobScheduler.submitJob(otherWorkspaceID, job).get();
+
+        assertFalse("Workspace should have no pending jobs", jobScheduler.hasPendingJobs(workspaceID));
+    }
+}
@@ -25,9 +25,10 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import nl.mpi.lamus.archive.permissions.PermissionAdjuster;
 import nl.mpi.lamus.archive.permissions.implementation.PermissionAdjusterScope;
 import nl.mpi.lamus.dao.WorkspaceDao;
@@ -47,7 +48,9 @@ import nl.mpi.lamus.workspace.factory.WorkspaceFactory;
 import nl.mpi.lamus.workspace.importing.WorkspaceImportRunnerFactory;
 import nl.mpi.lamus.workspace.importing.implementation.ImportProblem;
 import nl.mpi.lamus.workspace.importing.implementation.WorkspaceImportRunner;
+import nl.mpi.lamus.workspace.management.WorkspaceJobScheduler;
 import nl.mpi.lamus.workspace.management.WorkspaceManager;
+import nl.mpi.lamus.workspace.management.WorkspacePurgeQueue;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceStatus;
 import nl.mpi.lamus.workspace.model.WorkspaceSubmissionType;
@@ -55,8 +58,11 @@ import nl.mpi.lamus.workspace.model.implementation.LamusWorkspace;
 import org.hamcrest.Factory;
 import org.hamcrest.Matcher;
 import org.jmock.Expectations;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
 import org.jmock.auto.Mock;
 import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.action.CustomAction;
 import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import static org.junit.Assert.*;
@@ -75,7 +81,7 @@ public class LamusWorkspaceManagerTest {
         setImposteriser(ClassImposteriser.INSTANCE);
     }};
     private WorkspaceManager manager;
-    @Mock private ExecutorService mockExecutorService;
+    @Mock private WorkspaceJobScheduler mockWorkspaceJobScheduler;
     @Mock private WorkspaceFactory mockWorkspaceFactory;
     @Mock private WorkspaceDao mockWorkspaceDao;
     @Mock private WorkspaceDirectoryHandler mockWorkspaceDirectoryHandler;
@@ -88,6 +94,8 @@ public class LamusWorkspaceManagerTest {
     @Mock private WorkspaceImportRunnerFactory mockWorkspaceImportRunnerFactory;
     @Mock private WorkspaceExportRunnerFactory mockWorkspaceExportRunnerFactory;
     
+    @Mock private WorkspacePurgeQueue mockWorkspacePurgeQueue;
+    
     @Mock private Future<Boolean> mockFuture;
     @Mock private Workspace mockWorkspace;
     @Mock private Workspace mockSubmittedWorkspace;
@@ -115,10 +123,11 @@ public class LamusWorkspaceManagerTest {
     @Before
     public void setUp() {
         this.manager = new LamusWorkspaceManager(
-                mockExecutorService, mockWorkspaceFactory, mockWorkspaceDao,
+                mockWorkspaceJobScheduler, mockWorkspaceFactory, mockWorkspaceDao,
                 mockWorkspaceDirectoryHandler, mockCalendarHelper,
                 mockWorkspaceFileValidator, mockPermissionAdjuster,
-                mockWorkspaceImportRunnerFactory, mockWorkspaceExportRunnerFactory);
+                mockWorkspaceImportRunnerFactory, mockWorkspaceExportRunnerFactory,
+                mockWorkspacePurgeQueue);
         
         ReflectionTestUtils.setField(manager, "numberOfDaysOfInactivityAllowedSinceLastSession", numberOfDaysOfInactivityAllowedSinceLastSession);
     }
@@ -158,7 +167,7 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceImportRunnerFactory).getNewImportRunner(); will(returnValue(mockWorkspaceImportRunner));
             oneOf(mockWorkspaceImportRunner).setWorkspace(newWorkspace);
             oneOf(mockWorkspaceImportRunner).setTopNodeArchiveURI(archiveNodeURI);
-            oneOf(mockExecutorService).submit(mockWorkspaceImportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceImportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(returnValue(new ArrayList<ImportProblem>()));
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(expectedWorkspace));
         }});
@@ -232,7 +241,7 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceImportRunnerFactory).getNewImportRunner(); will(returnValue(mockWorkspaceImportRunner));
             oneOf(mockWorkspaceImportRunner).setWorkspace(newWorkspace);
             oneOf(mockWorkspaceImportRunner).setTopNodeArchiveURI(archiveNodeURI);
-            oneOf(mockExecutorService).submit(mockWorkspaceImportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceImportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(throwException(expectedException));
             oneOf(mockWorkspaceDao).unlockAllNodesOfWorkspace(workspaceID);
         }});
@@ -279,7 +288,7 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceImportRunnerFactory).getNewImportRunner(); will(returnValue(mockWorkspaceImportRunner));
             oneOf(mockWorkspaceImportRunner).setWorkspace(newWorkspace);
             oneOf(mockWorkspaceImportRunner).setTopNodeArchiveURI(archiveNodeURI);
-            oneOf(mockExecutorService).submit(mockWorkspaceImportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceImportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(throwException(expectedException));
             oneOf(mockWorkspaceDao).unlockAllNodesOfWorkspace(workspaceID);
         }});
@@ -324,7 +333,7 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceImportRunnerFactory).getNewImportRunner(); will(returnValue(mockWorkspaceImportRunner));
             oneOf(mockWorkspaceImportRunner).setWorkspace(newWorkspace);
             oneOf(mockWorkspaceImportRunner).setTopNodeArchiveURI(archiveNodeURI);
-            oneOf(mockExecutorService).submit(mockWorkspaceImportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceImportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(returnValue(null));
             oneOf(mockWorkspaceDao).unlockAllNodesOfWorkspace(workspaceID);
         }});
@@ -371,7 +380,7 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceImportRunnerFactory).getNewImportRunner(); will(returnValue(mockWorkspaceImportRunner));
             oneOf(mockWorkspaceImportRunner).setWorkspace(newWorkspace);
             oneOf(mockWorkspaceImportRunner).setTopNodeArchiveURI(archiveNodeURI);
-            oneOf(mockExecutorService).submit(mockWorkspaceImportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceImportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(returnValue(new ArrayList<ImportProblem>()));
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(throwException(expectedException));
         }});
@@ -394,20 +403,47 @@ public class LamusWorkspaceManagerTest {
         
         context.checking(new Expectations() {{
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             oneOf(mockWorkspaceExportRunnerFactory).getNewExportRunner(); will(returnValue(mockWorkspaceExportRunner));
             oneOf(mockWorkspaceExportRunner).setWorkspace(mockWorkspace);
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.DELETE_WORKSPACE);
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceExportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(returnValue(Boolean.TRUE));
-            oneOf(mockWorkspaceDao).deleteWorkspace(mockWorkspace);
-            oneOf(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(workspaceID);
-            oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+            oneOf(mockWorkspace).setStatus(WorkspaceStatus.DELETING);
+            oneOf(mockWorkspace).setMessage(with(any(String.class)));
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockWorkspace);
+            oneOf(mockWorkspacePurgeQueue).purgeWorkspace(mockWorkspace);
         }});
         
         manager.deleteWorkspace(workspaceID, keepUnlinkedFiles);
     }
     
+    @Test
+    public void deleteWorkspaceAlreadyBeingDeleted() throws WorkspaceNotFoundException, IOException {
+        
+        final int workspaceID = 1;
+        final boolean keepUnlinkedFiles = Boolean.FALSE;
+        final String expectedErrorMessage = "Workspace " + workspaceID + " is already being deleted";
+        
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.DELETING));
+            
+            never(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class)));
+            never(mockWorkspacePurgeQueue).purgeWorkspace(mockWorkspace);
+        }});
+        
+        try {
+            manager.deleteWorkspace(workspaceID, keepUnlinkedFiles);
+            fail("should have thrown exception");
+        } catch(WorkspaceExportException ex) {
+            assertEquals("Message different from expected", expectedErrorMessage, ex.getMessage());
+            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
+            assertNull("Cause should be null", ex.getCause());
+        }
+    }
+    
     @Test
     public void deleteWorkspaceThrowsWorkspaceNotFoundException() throws WorkspaceNotFoundException, WorkspaceExportException, IOException {
         
@@ -439,11 +475,12 @@ public class LamusWorkspaceManagerTest {
         
         context.checking(new Expectations() {{
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             oneOf(mockWorkspaceExportRunnerFactory).getNewExportRunner(); will(returnValue(mockWorkspaceExportRunner));
             oneOf(mockWorkspaceExportRunner).setWorkspace(mockWorkspace);
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.DELETE_WORKSPACE);
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceExportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(throwException(expectedException));
             oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
         }});
@@ -469,11 +506,12 @@ public class LamusWorkspaceManagerTest {
         
         context.checking(new Expectations() {{
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             oneOf(mockWorkspaceExportRunnerFactory).getNewExportRunner(); will(returnValue(mockWorkspaceExportRunner));
             oneOf(mockWorkspaceExportRunner).setWorkspace(mockWorkspace);
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.DELETE_WORKSPACE);
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceExportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(throwException(expectedException));
             oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
         }});
@@ -498,11 +536,12 @@ public class LamusWorkspaceManagerTest {
         
         context.checking(new Expectations() {{
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             oneOf(mockWorkspaceExportRunnerFactory).getNewExportRunner(); will(returnValue(mockWorkspaceExportRunner));
             oneOf(mockWorkspaceExportRunner).setWorkspace(mockWorkspace);
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.DELETE_WORKSPACE);
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspaceJobScheduler).submitJob(workspaceID, mockWorkspaceExportRunner); will(returnValue(mockFuture));
             oneOf(mockFuture).get(); will(returnValue(Boolean.FALSE));
             oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
         }});
@@ -517,6 +556,30 @@ public class LamusWorkspaceManagerTest {
         }
     }
     
+    @Test
+    public void openWorkspaceBeingDeleted() throws WorkspaceNotFoundException, IOException {
+        
+        final int workspaceID = 1;
+        final String expectedErrorMessage = "Workspace " + workspaceID + " was deleted";
+        
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.DELETING));
+            
+            never(mockWorkspaceDirectoryHandler).workspaceDirectoryExists(mockWorkspace);
+            never(mockWorkspaceDao).updateWorkspaceSessionDates(mockWorkspace);
+        }});
+        
+        try {
+            manager.openWorkspace(workspaceID);
+            fail("should have thrown exception");
+        } catch(WorkspaceNotFoundException ex) {
+            assertEquals("Message different from expected", expectedErrorMessage, ex.getMessage());
+            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
+            assertNull("Cause should be null", ex.getCause());
+        }
+    }
+    
     @Test
     public void openExistingWorkspace() throws URISyntaxException, MalformedURLException, WorkspaceNotFoundException, IOException {
         
@@ -531,6 +594,7 @@ public class LamusWorkspaceManagerTest {
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             //check if the workspace directory exists
             oneOf(mockWorkspaceDirectoryHandler).workspaceDirectoryExists(mockWorkspace); will(returnValue(Boolean.TRUE));
             oneOf(mockCalendarHelper).getCalendarInstance(); will(returnValue(now));
@@ -622,6 +686,7 @@ public class LamusWorkspaceManagerTest {
         
         final WorkspaceStatus submittedStatus = WorkspaceStatus.SUBMITTED;
         final String submittedMessage = "workspace was submitted";
+        final String exportingMessage = "workspace was submitted; data is being moved to the archive";
         
         final WorkspaceStatus successfullySubmittedStatus = WorkspaceStatus.UPDATING_ARCHIVE;
         final String successfullySubmittedMessage = "Data was successfully moved to the archive. It is now being updated in the database.\nAn email will be sent after this process is finished (it can take a while, depending on the size of the workspace).";
@@ -634,6 +699,7 @@ public class LamusWorkspaceManagerTest {
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             
             oneOf(mockWorkspaceFileValidator).triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
             oneOf(mockWorkspaceFileValidator).triggerSchematronValidationForMetadataFilesInWorkspace(workspaceID);
@@ -647,9 +713,12 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.SUBMIT_WORKSPACE);
             
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class))); will(runJob());
+            oneOf(mockWorkspace).setMessage(exportingMessage);
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockWorkspace);
+            oneOf(mockWorkspaceExportRunner).call(); will(returnValue(Boolean.TRUE));
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockSubmittedWorkspace));
-            oneOf(mockFuture).get(); will(returnValue(Boolean.TRUE));
             
             oneOf(mockCalendarHelper).getCalendarInstance(); will(returnValue(endCalendar));
             
@@ -663,7 +732,8 @@ public class LamusWorkspaceManagerTest {
         }});
         
         
-        manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
+        Future<Boolean> result = manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
+        assertTrue("Submission should have been successful", result.get());
     }
     
     @Test
@@ -693,6 +763,7 @@ public class LamusWorkspaceManagerTest {
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             
             oneOf(mockWorkspaceFileValidator).triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
             oneOf(mockWorkspaceFileValidator).triggerSchematronValidationForMetadataFilesInWorkspace(workspaceID); will(throwException(expectedException));
@@ -720,6 +791,7 @@ public class LamusWorkspaceManagerTest {
         
         final WorkspaceStatus submittedStatus = WorkspaceStatus.SUBMITTED;
         final String submittedMessage = "workspace was submitted";
+        final String exportingMessage = "workspace was submitted; data is being moved to the archive";
         
         final WorkspaceStatus successfullySubmittedStatus = WorkspaceStatus.UPDATING_ARCHIVE;
         final String successfullySubmittedMessage = "Data was successfully moved to the archive. It is now being updated in the database.\nAn email will be sent after this process is finished (it can take a while, depending on the size of the workspace).";
@@ -743,6 +815,7 @@ public class LamusWorkspaceManagerTest {
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             
             oneOf(mockWorkspaceFileValidator).triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
             oneOf(mockWorkspaceFileValidator).triggerSchematronValidationForMetadataFilesInWorkspace(workspaceID); will(throwException(expectedException));
@@ -758,9 +831,12 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.SUBMIT_WORKSPACE);
 
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class))); will(runJob());
+            oneOf(mockWorkspace).setMessage(exportingMessage);
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockWorkspace);
+            oneOf(mockWorkspaceExportRunner).call(); will(returnValue(Boolean.TRUE));
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockSubmittedWorkspace));
-            oneOf(mockFuture).get(); will(returnValue(Boolean.TRUE));
             
             oneOf(mockCalendarHelper).getCalendarInstance(); will(returnValue(endCalendar));
             
@@ -773,7 +849,33 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.ALL_NODES);
         }});
         
-        manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
+        Future<Boolean> result = manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
+        assertTrue("Submission should have been successful", result.get());
+    }
+    
+    @Test
+    public void submitWorkspaceBeingDeleted() throws WorkspaceNotFoundException, MetadataValidationException, CMDIValidatorInitException {
+        
+        final int workspaceID = 1;
+        final boolean keepUnlinkedFiles = Boolean.TRUE;
+        final String expectedErrorMessage = "Cannot submit workspace " + workspaceID + ", since it is being deleted";
+        
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.DELETING));
+            
+            never(mockWorkspaceFileValidator).triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
+            never(mockWorkspace).setStatus(WorkspaceStatus.SUBMITTED);
+        }});
+        
+        try {
+            manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
+            fail("should have thrown exception");
+        } catch(WorkspaceExportException ex) {
+            assertEquals("Message different from expected", expectedErrorMessage, ex.getMessage());
+            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
+            assertNull("Cause should be null", ex.getCause());
+        }
     }
     
     @Test
@@ -802,7 +904,7 @@ public class LamusWorkspaceManagerTest {
     }
     
     @Test
-    public void submitWorkspaceThreadInterrupted()
+    public void submitWorkspaceExportThrowsException()
             throws InterruptedException, ExecutionException, URISyntaxException,
             MalformedURLException, WorkspaceNotFoundException,
             WorkspaceExportException, MetadataValidationException, CMDIValidatorInitException {
@@ -813,6 +915,7 @@ public class LamusWorkspaceManagerTest {
         
         final WorkspaceStatus submittedStatus = WorkspaceStatus.SUBMITTED;
         final String submittedMessage = "workspace was submitted";
+        final String exportingMessage = "workspace was submitted; data is being moved to the archive";
         
         final WorkspaceStatus errorSubmittingStatus = WorkspaceStatus.ERROR_MOVING_DATA;
         final String errorSubmittingMessage = "There were errors when submitting the workspace. Please contact the corpus management team.";
@@ -822,12 +925,12 @@ public class LamusWorkspaceManagerTest {
         
         final boolean keepUnlinkedFiles = Boolean.TRUE;
         
-        final String expectedErrorMessage = "Interruption in thread while submitting workspace " + workspaceID;
-        final InterruptedException expectedException = new InterruptedException("some exception message");
+        final WorkspaceExportException expectedException = new WorkspaceExportException("some exception message", workspaceID, null);
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             
             oneOf(mockWorkspaceFileValidator).triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
             oneOf(mockWorkspaceFileValidator).triggerSchematronValidationForMetadataFilesInWorkspace(workspaceID);
@@ -841,9 +944,12 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.SUBMIT_WORKSPACE);
 
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class))); will(runJob());
+            oneOf(mockWorkspace).setMessage(exportingMessage);
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockWorkspace);
+            oneOf(mockWorkspaceExportRunner).call(); will(throwException(expectedException));
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockSubmittedWorkspace));
-            oneOf(mockFuture).get(); will(throwException(expectedException));
             
             oneOf(mockCalendarHelper).getCalendarInstance(); will(returnValue(endCalendar));
             
@@ -856,18 +962,12 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.ALL_NODES);
         }});
         
-        try {
-            manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
-            fail("should have thrown exception");
-        } catch(WorkspaceExportException ex) {
-            assertEquals("Message different from expected", expectedErrorMessage, ex.getMessage());
-            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
-            assertEquals("Cause different from expected", expectedException, ex.getCause());
-        }
+        Future<Boolean> result = manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
+        assertFalse("Submission should have failed", result.get());
     }
     
     @Test
-    public void submitWorkspaceExecutionException()
+    public void submitWorkspaceExportThrowsRuntimeException()
             throws InterruptedException, ExecutionException, URISyntaxException,
             MalformedURLException, WorkspaceNotFoundException,
             WorkspaceExportException, MetadataValidationException, CMDIValidatorInitException {
@@ -878,6 +978,7 @@ public class LamusWorkspaceManagerTest {
         
         final WorkspaceStatus submittedStatus = WorkspaceStatus.SUBMITTED;
         final String submittedMessage = "workspace was submitted";
+        final String exportingMessage = "workspace was submitted; data is being moved to the archive";
         
         final WorkspaceStatus errorSubmittingStatus = WorkspaceStatus.ERROR_MOVING_DATA;
         final String errorSubmittingMessage = "There were errors when submitting the workspace. Please contact the corpus management team.";
@@ -887,12 +988,12 @@ public class LamusWorkspaceManagerTest {
         
         final boolean keepUnlinkedFiles = Boolean.TRUE;
         
-        final String expectedErrorMessage = "Problem with thread execution while submitting workspace " + workspaceID;
-        final ExecutionException expectedException = new ExecutionException("some exception message", null);
+        final IllegalStateException expectedException = new IllegalStateException("some exception message");
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             
             oneOf(mockWorkspaceFileValidator).triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
             oneOf(mockWorkspaceFileValidator).triggerSchematronValidationForMetadataFilesInWorkspace(workspaceID);
@@ -906,9 +1007,12 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.SUBMIT_WORKSPACE);
 
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class))); will(runJob());
+            oneOf(mockWorkspace).setMessage(exportingMessage);
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockWorkspace);
+            oneOf(mockWorkspaceExportRunner).call(); will(throwException(expectedException));
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockSubmittedWorkspace));
-            oneOf(mockFuture).get(); will(throwException(expectedException));
             
             oneOf(mockCalendarHelper).getCalendarInstance(); will(returnValue(endCalendar));
             
@@ -921,14 +1025,8 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.ALL_NODES);
         }});
         
-        try {
-            manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
-            fail("should have thrown exception");
-        } catch(WorkspaceExportException ex) {
-            assertEquals("Message different from expected", expectedErrorMessage, ex.getMessage());
-            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
-            assertEquals("Cause different from expected", expectedException, ex.getCause());
-        }
+        Future<Boolean> result = manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
+        assertFalse("Submission should have failed", result.get());
     }
     
     @Test
@@ -943,6 +1041,7 @@ public class LamusWorkspaceManagerTest {
         
         final WorkspaceStatus submittedStatus = WorkspaceStatus.SUBMITTED;
         final String submittedMessage = "workspace was submitted";
+        final String exportingMessage = "workspace was submitted; data is being moved to the archive";
         
         final WorkspaceStatus errorSubmittingStatus = WorkspaceStatus.ERROR_MOVING_DATA;
         final String errorSubmittingMessage = "There were errors when submitting the workspace. Please contact the corpus management team.";
@@ -952,11 +1051,10 @@ public class LamusWorkspaceManagerTest {
         
         final boolean keepUnlinkedFiles = Boolean.TRUE;
         
-        final String expectedErrorMessage = "Workspace submission failed for workspace " + workspaceID;
-        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            allowing(mockWorkspace).getStatus(); will(returnValue(WorkspaceStatus.INITIALISED));
             
             oneOf(mockWorkspaceFileValidator).triggerSchemaValidationForMetadataFilesInWorkspace(workspaceID);
             oneOf(mockWorkspaceFileValidator).triggerSchematronValidationForMetadataFilesInWorkspace(workspaceID);
@@ -970,9 +1068,12 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(keepUnlinkedFiles);
             oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.SUBMIT_WORKSPACE);
 
-            oneOf(mockExecutorService).submit(mockWorkspaceExportRunner); will(returnValue(mockFuture));
+            oneOf(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class))); will(runJob());
+            oneOf(mockWorkspace).setMessage(exportingMessage);
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockWorkspace);
+            oneOf(mockWorkspaceExportRunner).call(); will(returnValue(Boolean.FALSE));
             oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockSubmittedWorkspace));
-            oneOf(mockFuture).get(); will(returnValue(Boolean.FALSE));
             
             oneOf(mockCalendarHelper).getCalendarInstance(); will(returnValue(endCalendar));
             
@@ -985,13 +1086,123 @@ public class LamusWorkspaceManagerTest {
             oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.ALL_NODES);
         }});
         
-        try {
-            manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
-            fail("should have thrown exception");
-        } catch(WorkspaceExportException ex) {
-            assertEquals("Message different from expected", expectedErrorMessage, ex.getMessage());
-            assertEquals("Workspace ID different from expected", workspaceID, ex.getWorkspaceID());
-            assertNull("Cause should be null", ex.getCause());
-        }
+        Future<Boolean> result = manager.submitWorkspace(workspaceID, keepUnlinkedFiles);
+        assertFalse("Submission should have failed", result.get());
+    }
+    
+    @Test
+    public void resumeSubmittedWorkspaceStillWaiting()
+            throws InterruptedException, ExecutionException, WorkspaceNotFoundException {
+        
+        final int workspaceID = 1;
+        final String exportingMessage = "workspace was submitted; data is being moved to the archive";
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockWorkspace);
+        
+        final WorkspaceStatus successfullySubmittedStatus = WorkspaceStatus.UPDATING_ARCHIVE;
+        final String successfullySubmittedMessage = "Data was successfully moved to the archive. It is now being updated in the database.\nAn email will be sent after this process is finished (it can take a while, depending on the size of the workspace).";
+        
+        final Calendar endCalendar = Calendar.getInstance();
+        final Date endDate = endCalendar.getTime();
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getSubmittedWorkspaces(); will(returnValue(submittedWorkspaces));
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockWorkspaceJobScheduler).hasPendingJobs(workspaceID); will(returnValue(Boolean.FALSE));
+            oneOf(mockWorkspace).getMessage(); will(returnValue("workspace was submitted"));
+            
+            // the original choice is unknown, so the unlinked files are kept
+            oneOf(mockWorkspaceExportRunnerFactory).getNewExportRunner(); will(returnValue(mockWorkspaceExportRunner));
+            oneOf(mockWorkspaceExportRunner).setWorkspace(mockWorkspace);
+            oneOf(mockWorkspaceExportRunner).setKeepUnlinkedFiles(Boolean.TRUE);
+            oneOf(mockWorkspaceExportRunner).setSubmissionType(WorkspaceSubmissionType.SUBMIT_WORKSPACE);
+            
+            oneOf(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class))); will(runJob());
+            oneOf(mockWorkspace).setMessage(exportingMessage);
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockWorkspace);
+            oneOf(mockWorkspaceExportRunner).call(); will(returnValue(Boolean.TRUE));
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockSubmittedWorkspace));
+            
+            oneOf(mockCalendarHelper).getCalendarInstance(); will(returnValue(endCalendar));
+            
+            oneOf(mockSubmittedWorkspace).setSessionEndDate(endDate);
+            oneOf(mockSubmittedWorkspace).setEndDate(endDate);
+            oneOf(mockSubmittedWorkspace).setStatus(successfullySubmittedStatus);
+            oneOf(mockSubmittedWorkspace).setMessage(successfullySubmittedMessage);
+            oneOf(mockWorkspaceDao).updateWorkspaceEndDates(mockSubmittedWorkspace);
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockSubmittedWorkspace);
+            oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.ALL_NODES);
+        }});
+        
+        manager.resumeSubmittedWorkspaces();
+    }
+    
+    @Test
+    public void resumeSubmittedWorkspaceInterruptedWhileExporting() {
+        
+        final int workspaceID = 1;
+        final String exportingMessage = "workspace was submitted; data is being moved to the archive";
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockWorkspace);
+        
+        final WorkspaceStatus errorSubmittingStatus = WorkspaceStatus.ERROR_MOVING_DATA;
+        final String errorSubmittingMessage = "There were errors when submitting the workspace. Please contact the corpus management team.";
+        
+        final Calendar endCalendar = Calendar.getInstance();
+        final Date endDate = endCalendar.getTime();
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getSubmittedWorkspaces(); will(returnValue(submittedWorkspaces));
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockWorkspaceJobScheduler).hasPendingJobs(workspaceID); will(returnValue(Boolean.FALSE));
+            oneOf(mockWorkspace).getMessage(); will(returnValue(exportingMessage));
+            
+            never(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class)));
+            
+            oneOf(mockCalendarHelper).getCalendarInstance(); will(returnValue(endCalendar));
+            
+            oneOf(mockWorkspace).setSessionEndDate(endDate);
+            oneOf(mockWorkspace).setEndDate(endDate);
+            oneOf(mockWorkspace).setStatus(errorSubmittingStatus);
+            oneOf(mockWorkspace).setMessage(errorSubmittingMessage);
+            oneOf(mockWorkspaceDao).updateWorkspaceEndDates(mockWorkspace);
+            oneOf(mockWorkspaceDao).updateWorkspaceStatusMessage(mockWorkspace);
+            oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.ALL_NODES);
+        }});
+        
+        manager.resumeSubmittedWorkspaces();
+    }
+    
+    @Test
+    public void resumeSubmittedWorkspaceWithPendingJobs() {
+        
+        final int workspaceID = 1;
+        final Collection<Workspace> submittedWorkspaces = new ArrayList<>();
+        submittedWorkspaces.add(mockWorkspace);
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getSubmittedWorkspaces(); will(returnValue(submittedWorkspaces));
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            oneOf(mockWorkspaceJobScheduler).hasPendingJobs(workspaceID); will(returnValue(Boolean.TRUE));
+            
+            never(mockWorkspaceJobScheduler).submitJob(with(equal(workspaceID)), with(any(Callable.class)));
+        }});
+        
+        manager.resumeSubmittedWorkspaces();
+    }
+    
+    private Action runJob() {
+        return new CustomAction("run the submitted job") {
+            @Override
+            public Object invoke(Invocation invocation) throws Throwable {
+                @SuppressWarnings("unchecked")
+                FutureTask<Object> job = new FutureTask<>((Callable<Object>) invocation.getParameter(1));
+                job.run();
+                return job;
+            }
+        };
     }
 }
@@ -68,6 +68,7 @@ import static org.powermock.api.support.membermodification.MemberMatcher.method;
 import static org.powermock.api.support.membermodification.MemberModifier.stub;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
+import org.springframework.beans.factory.ObjectFactory;
 
 /**
  *
@@ -145,7 +146,12 @@ public class LamusWorkspaceNodeLinkManagerTest {
         
         nodeLinkManager = new LamusWorkspaceNodeLinkManager(
                 mockWorkspaceNodeLinkFactory, mockWorkspaceDao,
-                mockMetadataAPI, mockWorkspaceFileHandler,
+                new ObjectFactory<MetadataAPI>() {
+                    @Override
+                    public MetadataAPI getObject() {
+                        return mockMetadataAPI;
+                    }
+                }, mockWorkspaceFileHandler,
                 mockMetadataApiBridge, mockNodeUtil);
     }
     
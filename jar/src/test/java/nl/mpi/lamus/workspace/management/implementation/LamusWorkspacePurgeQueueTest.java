@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.management.implementation;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import nl.mpi.lamus.archive.permissions.PermissionAdjuster;
+import nl.mpi.lamus.archive.permissions.implementation.PermissionAdjusterScope;
+import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.filesystem.WorkspaceDirectoryHandler;
+import nl.mpi.lamus.workspace.management.WorkspacePurgeQueue;
+import nl.mpi.lamus.workspace.model.Workspace;
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.DeterministicScheduler;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusWorkspacePurgeQueueTest {
+    
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    
+    @Mock WorkspaceDao mockWorkspaceDao;
+    @Mock WorkspaceDirectoryHandler mockWorkspaceDirectoryHandler;
+    @Mock PermissionAdjuster mockPermissionAdjuster;
+    
+    @Mock Workspace mockWorkspace;
+    @Mock Workspace mockOtherWorkspace;
+    
+    private WorkspacePurgeQueue workspacePurgeQueue;
+    
+    private DeterministicScheduler purgeScheduler;
+    
+    private final int workspaceID = 10;
+    private final int otherWorkspaceID = 20;
+    private final int chunkSize = 1000;
+    
+    
+    public LamusWorkspacePurgeQueueTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+        purgeScheduler = new DeterministicScheduler();
+        workspacePurgeQueue = new LamusWorkspacePurgeQueue(mockWorkspaceDao,
+                mockWorkspaceDirectoryHandler, mockPermissionAdjuster, purgeScheduler);
+        ReflectionTestUtils.setField(workspacePurgeQueue, "workspacePurgeChunkSize", chunkSize);
+    }
+    
+    @After
+    public void tearDown() {
+    }
+
+    
+    @Test
+    public void purgeWorkspace_NothingHappensBeforeTheQueueRuns() {
+        
+        context.checking(new Expectations() {{
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+        }});
+        
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+    }
+    
+    @Test
+    public void purgeWorkspace_DeletesChunksUntilNothingIsLeft() throws IOException {
+        
+        final Sequence purgeSequence = context.sequence("purgeSequence");
+        
+        context.checking(new Expectations() {{
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            
+            oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+                inSequence(purgeSequence);
+            oneOf(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(workspaceID);
+                inSequence(purgeSequence);
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(returnValue(chunkSize));
+                inSequence(purgeSequence);
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(returnValue(300));
+                inSequence(purgeSequence);
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(returnValue(0));
+                inSequence(purgeSequence);
+            oneOf(mockWorkspaceDao).deleteWorkspace(mockWorkspace);
+                inSequence(purgeSequence);
+        }});
+        
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        purgeScheduler.runUntilIdle();
+    }
+    
+    @Test
+    public void purgeWorkspace_AlreadyQueued() throws IOException {
+        
+        context.checking(new Expectations() {{
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(returnValue(0));
+            oneOf(mockWorkspaceDao).deleteWorkspace(mockWorkspace);
+            oneOf(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(workspaceID);
+            oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+        }});
+        
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        purgeScheduler.runUntilIdle();
+    }
+    
+    @Test
+    public void purgeWorkspace_QueuedAgainAfterBeingPurged() throws IOException {
+        
+        context.checking(new Expectations() {{
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            
+            exactly(2).of(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(returnValue(0));
+            exactly(2).of(mockWorkspaceDao).deleteWorkspace(mockWorkspace);
+            exactly(2).of(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(workspaceID);
+            exactly(2).of(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+        }});
+        
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        purgeScheduler.runUntilIdle();
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        purgeScheduler.runUntilIdle();
+    }
+    
+    @Test
+    public void purgeWorkspace_DirectoryDeletionFails() throws IOException {
+        
+        final IOException expectedException = new IOException("some exception message");
+        
+        context.checking(new Expectations() {{
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            
+            oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+            oneOf(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(workspaceID); will(throwException(expectedException));
+            
+            // workspace is kept (marked for deletion) and nothing else is deleted
+            never(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize);
+            never(mockWorkspaceDao).deleteWorkspace(mockWorkspace);
+        }});
+        
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        purgeScheduler.runUntilIdle();
+    }
+    
+    @Test
+    public void purgeWorkspace_PermissionAdjustmentFails() throws IOException {
+        
+        final RuntimeException expectedException = new RuntimeException("some exception message");
+        
+        context.checking(new Expectations() {{
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            
+            oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY); will(throwException(expectedException));
+            
+            // workspace is kept (marked for deletion) and nothing else is deleted
+            never(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(workspaceID);
+            never(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize);
+            never(mockWorkspaceDao).deleteWorkspace(mockWorkspace);
+        }});
+        
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        purgeScheduler.runUntilIdle();
+    }
+    
+    @Test
+    public void purgeWorkspace_DatabaseDeletionFails() throws IOException {
+        
+        final RuntimeException expectedException = new RuntimeException("some exception message");
+        
+        context.checking(new Expectations() {{
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            
+            exactly(2).of(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+            exactly(2).of(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(workspaceID);
+            
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(throwException(expectedException));
+            
+            // workspace is kept (marked for deletion) and can be queued again
+            
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(returnValue(0));
+            oneOf(mockWorkspaceDao).deleteWorkspace(mockWorkspace);
+        }});
+        
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        purgeScheduler.runUntilIdle();
+        workspacePurgeQueue.purgeWorkspace(mockWorkspace);
+        purgeScheduler.runUntilIdle();
+    }
+    
+    @Test
+    public void purgeWorkspacesMarkedForDeletion() throws IOException {
+        
+        final Collection<Workspace> markedWorkspaces = new ArrayList<>();
+        markedWorkspaces.add(mockWorkspace);
+        markedWorkspaces.add(mockOtherWorkspace);
+        
+        context.checking(new Expectations() {{
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(workspaceID));
+            allowing(mockOtherWorkspace).getWorkspaceID(); will(returnValue(otherWorkspaceID));
+            
+            oneOf(mockWorkspaceDao).getWorkspacesMarkedForDeletion(); will(returnValue(markedWorkspaces));
+            
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(returnValue(0));
+            oneOf(mockWorkspaceDao).deleteWorkspace(mockWorkspace);
+            oneOf(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(workspaceID);
+            oneOf(mockPermissionAdjuster).adjustPermissions(workspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+            
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(otherWorkspaceID, chunkSize); will(returnValue(0));
+            oneOf(mockWorkspaceDao).deleteWorkspace(mockOtherWorkspace);
+            oneOf(mockWorkspaceDirectoryHandler).deleteWorkspaceDirectory(otherWorkspaceID);
+            oneOf(mockPermissionAdjuster).adjustPermissions(otherWorkspaceID, PermissionAdjusterScope.UNLINKED_NODES_ONLY);
+        }});
+        
+        workspacePurgeQueue.purgeWorkspacesMarkedForDeletion();
+        purgeScheduler.runUntilIdle();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.model.implementation;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.UUID;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusLazyWorkspaceNodeTest {
+    
+    private int workspaceNodeID = 10;
+    private int workspaceID = 1;
+    private URI profileSchemaURI;
+    private String workspaceNodeName = "nodeName";
+    private String workspaceNodeTitle = "nodeTitle";
+    private WorkspaceNodeType workspaceNodeType = WorkspaceNodeType.METADATA;
+    private URL workspaceNodeURL;
+    private URI archiveNodeURI;
+    private URL archiveNodeURL;
+    private URI originNodeURI;
+    private WorkspaceNodeStatus workspaceNodeStatus = WorkspaceNodeStatus.ARCHIVE_COPY;
+    private boolean workspaceNodeIsProtected = Boolean.FALSE;
+    private String workspaceNodeFormat = "someFormat";
+    
+    public LamusLazyWorkspaceNodeTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+    
+    @Before
+    public void setUp() throws URISyntaxException, MalformedURLException {
+        
+        this.profileSchemaURI = URI.create("http://some.uri/file.xsd");
+        this.workspaceNodeURL = new URL("file:/workspace/some.uri/file.cmdi");
+        this.archiveNodeURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        this.archiveNodeURL = new URL("file:/archive/some.url/file.cmdi");
+        this.originNodeURI = this.archiveNodeURL.toURI();
+    }
+    
+    @After
+    public void tearDown() {
+    }
+
+
+    @Test
+    public void locationsAreParsedWhenRequested() {
+        
+        WorkspaceNode testNode = new LamusLazyWorkspaceNode(
+                this.workspaceNodeID, this.workspaceID,
+                this.profileSchemaURI, this.workspaceNodeName, this.workspaceNodeTitle,
+                this.workspaceNodeType, this.workspaceNodeURL.toString(), this.archiveNodeURI.toString(),
+                this.archiveNodeURL.toString(), this.originNodeURI.toString(), this.workspaceNodeStatus,
+                this.workspaceNodeIsProtected, this.workspaceNodeFormat);
+        
+        assertEquals("Value for 'workspaceNodeID' is not the expected one.", this.workspaceNodeID, testNode.getWorkspaceNodeID());
+        assertEquals("Value for 'workspaceID' is not the expected one.", this.workspaceID, testNode.getWorkspaceID());
+        assertEquals("Value for 'profileSchemaURI' is not the expected one.", this.profileSchemaURI, testNode.getProfileSchemaURI());
+        assertEquals("Value for 'workspaceURL' is not the expected one.", this.workspaceNodeURL, testNode.getWorkspaceURL());
+        assertEquals("Value for 'archiveURI' is not the expected one.", this.archiveNodeURI, testNode.getArchiveURI());
+        assertEquals("Value for 'archiveURL' is not the expected one.", this.archiveNodeURL, testNode.getArchiveURL());
+        assertEquals("Value for 'originURI' is not the expected one.", this.originNodeURI, testNode.getOriginURI());
+        assertSame("Parsed value should be kept", testNode.getArchiveURI(), testNode.getArchiveURI());
+    }
+    
+    @Test
+    public void emptyOrMissingLocationsAreNull() {
+        
+        WorkspaceNode testNode = new LamusLazyWorkspaceNode(
+                this.workspaceNodeID, this.workspaceID,
+                null, this.workspaceNodeName, this.workspaceNodeTitle,
+                this.workspaceNodeType, "", "",
+                null, null, this.workspaceNodeStatus,
+                this.workspaceNodeIsProtected, this.workspaceNodeFormat);
+        
+        assertNull("Value for 'workspaceURL' should be null.", testNode.getWorkspaceURL());
+        assertNull("Value for 'archiveURI' should be null.", testNode.getArchiveURI());
+        assertNull("Value for 'archiveURL' should be null.", testNode.getArchiveURL());
+        assertNull("Value for 'originURI' should be null.", testNode.getOriginURI());
+    }
+    
+    @Test
+    public void malformedLocationsAreNull() {
+        
+        WorkspaceNode testNode = new LamusLazyWorkspaceNode(
+                this.workspaceNodeID, this.workspaceID,
+                this.profileSchemaURI, this.workspaceNodeName, this.workspaceNodeTitle,
+                this.workspaceNodeType, "not a url", "not a uri",
+                "not:a:url", "not a uri", this.workspaceNodeStatus,
+                this.workspaceNodeIsProtected, this.workspaceNodeFormat);
+        
+        assertNull("Value for 'workspaceURL' should be null.", testNode.getWorkspaceURL());
+        assertNull("Value for 'archiveURI' should be null.", testNode.getArchiveURI());
+        assertNull("Value for 'archiveURL' should be null.", testNode.getArchiveURL());
+        assertNull("Value for 'originURI' should be null.", testNode.getOriginURI());
+    }
+    
+    @Test
+    public void setterReplacesLocationNotYetParsed() throws MalformedURLException {
+        
+        URL differentURL = new URL("file:/archive/some.url/different.cmdi");
+        
+        WorkspaceNode testNode = new LamusLazyWorkspaceNode(
+                this.workspaceNodeID, this.workspaceID,
+                this.profileSchemaURI, this.workspaceNodeName, this.workspaceNodeTitle,
+                this.workspaceNodeType, this.workspaceNodeURL.toString(), this.archiveNodeURI.toString(),
+                this.archiveNodeURL.toString(), this.originNodeURI.toString(), this.workspaceNodeStatus,
+                this.workspaceNodeIsProtected, this.workspaceNodeFormat);
+        
+        testNode.setArchiveURL(differentURL);
+        testNode.setArchiveURI(null);
+        
+        assertEquals("Value for 'archiveURL' is not the expected one.", differentURL, testNode.getArchiveURL());
+        assertNull("Value for 'archiveURI' should be null.", testNode.getArchiveURI());
+    }
+    
+    @Test
+    public void equalToEagerNode() {
+        
+        WorkspaceNode lazyNode = new LamusLazyWorkspaceNode(
+                this.workspaceNodeID, this.workspaceID,
+                this.profileSchemaURI, this.workspaceNodeName, this.workspaceNodeTitle,
+                this.workspaceNodeType, this.workspaceNodeURL.toString(), this.archiveNodeURI.toString(),
+                this.archiveNodeURL.toString(), this.originNodeURI.toString(), this.workspaceNodeStatus,
+                this.workspaceNodeIsProtected, this.workspaceNodeFormat);
+        
+        WorkspaceNode eagerNode = new LamusWorkspaceNode(
+                this.workspaceNodeID, this.workspaceID,
+                this.profileSchemaURI, this.workspaceNodeName, this.workspaceNodeTitle,
+                this.workspaceNodeType, this.workspaceNodeURL, this.archiveNodeURI,
+                this.archiveNodeURL, this.originNodeURI, this.workspaceNodeStatus,
+                this.workspaceNodeIsProtected, this.workspaceNodeFormat);
+        
+        assertEquals("Workspace objects are not equal.", eagerNode, lazyNode);
+        assertEquals("Workspace objects are not equal.", lazyNode, eagerNode);
+        assertEquals("Workspace objects don't have the same hashcode.", eagerNode.hashCode(), lazyNode.hashCode());
+    }
+    
+    @Test
+    public void notEqualToDifferentEagerNode() throws MalformedURLException {
+        
+        URL differentURL = new URL("file:/archive/some.url/different.cmdi");
+        
+        WorkspaceNode lazyNode = new LamusLazyWorkspaceNode(
+                this.workspaceNodeID, this.workspaceID,
+                this.profileSchemaURI, this.workspaceNodeName, this.workspaceNodeTitle,
+                this.workspaceNodeType, this.workspaceNodeURL.toString(), this.archiveNodeURI.toString(),
+                this.archiveNodeURL.toString(), this.originNodeURI.toString(), this.workspaceNodeStatus,
+                this.workspaceNodeIsProtected, this.workspaceNodeFormat);
+        
+        WorkspaceNode eagerNode = new LamusWorkspaceNode(
+                this.workspaceNodeID, this.workspaceID,
+                this.profileSchemaURI, this.workspaceNodeName, this.workspaceNodeTitle,
+                this.workspaceNodeType, this.workspaceNodeURL, this.archiveNodeURI,
+                differentURL, this.originNodeURI, this.workspaceNodeStatus,
+                this.workspaceNodeIsProtected, this.workspaceNodeFormat);
+        
+        assertFalse("Workspace objects should not be equal.", eagerNode.equals(lazyNode));
+        assertFalse("Workspace objects should not be equal.", lazyNode.equals(eagerNode));
+    }
+}
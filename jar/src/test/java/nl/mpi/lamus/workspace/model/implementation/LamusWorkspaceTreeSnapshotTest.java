@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.model.implementation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusWorkspaceTreeSnapshotTest {
+
+    private final int workspaceID = 1;
+    private final int topNodeID = 10;
+
+    private WorkspaceNode topNode;
+    private WorkspaceNode firstChild;
+    private WorkspaceNode secondChild;
+    private WorkspaceNode grandChild;
+    private WorkspaceNode unlinkedNode;
+    private WorkspaceNode deletedNode;
+    private WorkspaceNode replacedNode;
+
+    private Collection<WorkspaceNode> nodes;
+    private Collection<WorkspaceNodeLink> links;
+
+    public LamusWorkspaceTreeSnapshotTest() {
+    }
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    @Before
+    public void setUp() {
+
+        topNode = createNode(topNodeID, WorkspaceNodeStatus.ARCHIVE_COPY);
+        firstChild = createNode(30, WorkspaceNodeStatus.ARCHIVE_COPY);
+        secondChild = createNode(20, WorkspaceNodeStatus.UPLOADED);
+        grandChild = createNode(40, WorkspaceNodeStatus.CREATED);
+        unlinkedNode = createNode(50, WorkspaceNodeStatus.UPLOADED);
+        deletedNode = createNode(60, WorkspaceNodeStatus.DELETED);
+        replacedNode = createNode(70, WorkspaceNodeStatus.REPLACED);
+
+        nodes = new ArrayList<>();
+        nodes.add(grandChild);
+        nodes.add(unlinkedNode);
+        nodes.add(firstChild);
+        nodes.add(topNode);
+        nodes.add(deletedNode);
+        nodes.add(secondChild);
+        nodes.add(replacedNode);
+
+        links = new ArrayList<>();
+        links.add(new LamusWorkspaceNodeLink(topNodeID, 30));
+        links.add(new LamusWorkspaceNodeLink(topNodeID, 20));
+        links.add(new LamusWorkspaceNodeLink(30, 40));
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+
+    @Test
+    public void getIDs() {
+
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodes, links);
+
+        assertEquals("Workspace ID different from expected", workspaceID, snapshot.getWorkspaceID());
+        assertEquals("Top node ID different from expected", topNodeID, snapshot.getTopNodeID());
+        assertEquals("Node count different from expected", nodes.size(), snapshot.getNodeCount());
+    }
+
+    @Test
+    public void getNode() {
+
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodes, links);
+
+        assertTrue("Node should be part of the snapshot", snapshot.containsNode(40));
+        assertEquals("Retrieved node different from expected", grandChild, snapshot.getNode(40));
+        assertFalse("Node should not be part of the snapshot", snapshot.containsNode(45));
+        assertNull("Retrieved node should be null", snapshot.getNode(45));
+    }
+
+    @Test
+    public void changingRetrievedNodeDoesNotAffectSnapshot() {
+
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodes, links);
+
+        WorkspaceNode retrievedNode = snapshot.getNode(40);
+        assertNotSame("Retrieved node should be a copy", grandChild, retrievedNode);
+        retrievedNode.setStatus(WorkspaceNodeStatus.DELETED);
+        snapshot.getChildren(30).get(0).setName("changed");
+
+        assertEquals("Status in the snapshot should not have changed", WorkspaceNodeStatus.CREATED, snapshot.getNode(40).getStatus());
+        assertEquals("Name in the snapshot should not have changed", "node40", snapshot.getNode(40).getName());
+    }
+
+    @Test
+    public void getChildrenOrderedByID() {
+
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodes, links);
+
+        List<WorkspaceNode> children = snapshot.getChildren(topNodeID);
+
+        assertEquals("Number of children different from expected", 2, children.size());
+        assertEquals("First child different from expected", secondChild, children.get(0));
+        assertEquals("Second child different from expected", firstChild, children.get(1));
+    }
+
+    @Test
+    public void getChildrenOfLeafOrUnknownNode() {
+
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodes, links);
+
+        assertTrue("Leaf node should have no children", snapshot.getChildren(40).isEmpty());
+        assertTrue("Unknown node should have no children", snapshot.getChildren(45).isEmpty());
+    }
+
+    @Test
+    public void linksToUnknownNodesAreIgnored() {
+
+        links.add(new LamusWorkspaceNodeLink(topNodeID, 999));
+        links.add(new LamusWorkspaceNodeLink(999, 50));
+
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodes, links);
+
+        assertEquals("Number of children different from expected", 2, snapshot.getChildren(topNodeID).size());
+        assertTrue("Node linked from an unknown node should be unlinked", snapshot.getUnlinkedNodes().contains(unlinkedNode));
+    }
+
+    @Test
+    public void duplicateNodesAreIgnored() {
+
+        nodes.add(createNode(40, WorkspaceNodeStatus.CREATED));
+
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodes, links);
+
+        assertEquals("Number of children different from expected", 1, snapshot.getChildren(30).size());
+    }
+
+    @Test
+    public void getUnlinkedNodes() {
+
+        WorkspaceTreeSnapshot snapshot = new LamusWorkspaceTreeSnapshot(workspaceID, topNodeID, nodes, links);
+
+        List<WorkspaceNode> unlinkedNodes = snapshot.getUnlinkedNodes();
+
+        assertEquals("Number of unlinked nodes different from expected", 1, unlinkedNodes.size());
+        assertEquals("Unlinked node different from expected", unlinkedNode, unlinkedNodes.get(0));
+    }
+
+
+    private WorkspaceNode createNode(int nodeID, WorkspaceNodeStatus status) {
+        return new LamusWorkspaceNode(nodeID, workspaceID, null, "node" + nodeID, "node " + nodeID,
+                WorkspaceNodeType.METADATA, null, null, null, null, status, Boolean.FALSE, "cmdi");
+    }
+}
@@ -25,9 +25,13 @@ import java.util.UUID;
 import nl.mpi.lamus.dao.WorkspaceDao;
 import nl.mpi.lamus.workspace.tree.WorkspaceTreeNode;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeStatus;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
 import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNodeLink;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceTreeSnapshot;
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
 import org.jmock.integration.junit4.JUnitRuleMockery;
@@ -52,6 +56,8 @@ public class LamusWorkspaceTreeNodeTest {
     private WorkspaceTreeNode childTreeNode2;
     private List<WorkspaceTreeNode> treeNodeChildren;
     
+    private WorkspaceTreeSnapshot treeSnapshot;
+    
     @Mock private WorkspaceDao mockWorkspaceDao;
     
 
@@ -111,6 +117,8 @@ public class LamusWorkspaceTreeNodeTest {
                 WorkspaceNodeStatus.CREATED, Boolean.FALSE, "unknown",
                 treeNode, mockWorkspaceDao);
         treeNodeChildren.add(childTreeNode2);
+        
+        treeSnapshot = createTreeSnapshot();
     }
     
     @After
@@ -125,7 +133,7 @@ public class LamusWorkspaceTreeNodeTest {
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDao).getChildWorkspaceNodes(treeNode.getWorkspaceNodeID()); will(returnValue(nodeChildren));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(treeNode.getWorkspaceID()); will(returnValue(treeSnapshot));
         }});
         
         WorkspaceTreeNode retrievedChild = treeNode.getChild(index);
@@ -138,7 +146,7 @@ public class LamusWorkspaceTreeNodeTest {
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDao).getChildWorkspaceNodes(treeNode.getWorkspaceNodeID()); will(returnValue(nodeChildren));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(treeNode.getWorkspaceID()); will(returnValue(treeSnapshot));
         }});
         
         int childCount = treeNode.getChildCount();
@@ -153,7 +161,7 @@ public class LamusWorkspaceTreeNodeTest {
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDao).getChildWorkspaceNodes(treeNode.getWorkspaceNodeID()); will(returnValue(nodeChildren));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(treeNode.getWorkspaceID()); will(returnValue(treeSnapshot));
         }});
         
         int retrievedIndex = treeNode.getIndexOfChild(childTreeNode2);
@@ -174,7 +182,7 @@ public class LamusWorkspaceTreeNodeTest {
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDao).getChildWorkspaceNodes(treeNode.getWorkspaceNodeID()); will(returnValue(nodeChildren));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(treeNode.getWorkspaceID()); will(returnValue(treeSnapshot));
         }});
         
         List<WorkspaceTreeNode> retrievedChildren = treeNode.getChildren();
@@ -182,12 +190,55 @@ public class LamusWorkspaceTreeNodeTest {
         assertEquals("Retrieved list of children different from expected", treeNodeChildren, retrievedChildren);
     }
     
+    @Test
+    public void getChildrenTwiceFromSameSnapshot() {
+        
+        context.checking(new Expectations() {{
+            
+            exactly(2).of(mockWorkspaceDao).getWorkspaceTreeSnapshot(treeNode.getWorkspaceID()); will(returnValue(treeSnapshot));
+        }});
+        
+        List<WorkspaceTreeNode> firstRetrievedChildren = treeNode.getChildren();
+        List<WorkspaceTreeNode> secondRetrievedChildren = treeNode.getChildren();
+        
+        assertEquals("Retrieved list of children different from expected", treeNodeChildren, secondRetrievedChildren);
+        assertSame("Children should not be created again while the snapshot is the same", firstRetrievedChildren, secondRetrievedChildren);
+    }
+    
+    @Test
+    public void getChildrenAfterSnapshotChanged() {
+        
+        final Collection<WorkspaceNode> changedNodes = new ArrayList<>();
+        changedNodes.add(parentTreeNode);
+        changedNodes.add(treeNode);
+        changedNodes.add(child1);
+        changedNodes.add(child2);
+        final Collection<WorkspaceNodeLink> changedLinks = new ArrayList<>();
+        changedLinks.add(new LamusWorkspaceNodeLink(parentTreeNode.getWorkspaceNodeID(), treeNode.getWorkspaceNodeID()));
+        changedLinks.add(new LamusWorkspaceNodeLink(treeNode.getWorkspaceNodeID(), child2.getWorkspaceNodeID()));
+        final WorkspaceTreeSnapshot changedSnapshot = new LamusWorkspaceTreeSnapshot(
+                treeNode.getWorkspaceID(), parentTreeNode.getWorkspaceNodeID(), changedNodes, changedLinks);
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(treeNode.getWorkspaceID()); will(returnValue(treeSnapshot));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(treeNode.getWorkspaceID()); will(returnValue(changedSnapshot));
+        }});
+        
+        List<WorkspaceTreeNode> firstRetrievedChildren = treeNode.getChildren();
+        List<WorkspaceTreeNode> secondRetrievedChildren = treeNode.getChildren();
+        
+        assertEquals("First retrieved list of children different from expected", treeNodeChildren, firstRetrievedChildren);
+        assertEquals("Second retrieved list of children has a different size from expected", 1, secondRetrievedChildren.size());
+        assertEquals("Second retrieved list of children different from expected", childTreeNode2, secondRetrievedChildren.get(0));
+    }
+    
     @Test
     public void isTopNodeOfWorkspace() {
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDao).getWorkspaceTopNodeID(parentTreeNode.getWorkspaceID()); will(returnValue(parentTreeNode.getWorkspaceNodeID()));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(parentTreeNode.getWorkspaceID()); will(returnValue(treeSnapshot));
         }});
         
         boolean result = parentTreeNode.isTopNodeOfWorkspace();
@@ -200,11 +251,28 @@ public class LamusWorkspaceTreeNodeTest {
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDao).getWorkspaceTopNodeID(treeNode.getWorkspaceID()); will(returnValue(parentTreeNode.getWorkspaceNodeID()));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(treeNode.getWorkspaceID()); will(returnValue(treeSnapshot));
         }});
         
         boolean result = treeNode.isTopNodeOfWorkspace();
         
         assertFalse("Result should be false", result);
     }
+    
+    
+    private WorkspaceTreeSnapshot createTreeSnapshot() {
+        
+        Collection<WorkspaceNode> nodes = new ArrayList<>();
+        nodes.add(parentTreeNode);
+        nodes.add(treeNode);
+        nodes.addAll(nodeChildren);
+        
+        Collection<WorkspaceNodeLink> links = new ArrayList<>();
+        links.add(new LamusWorkspaceNodeLink(parentTreeNode.getWorkspaceNodeID(), treeNode.getWorkspaceNodeID()));
+        for(WorkspaceNode child : nodeChildren) {
+            links.add(new LamusWorkspaceNodeLink(treeNode.getWorkspaceNodeID(), child.getWorkspaceNodeID()));
+        }
+        
+        return new LamusWorkspaceTreeSnapshot(treeNode.getWorkspaceID(), parentTreeNode.getWorkspaceNodeID(), nodes, links);
+    }
 }
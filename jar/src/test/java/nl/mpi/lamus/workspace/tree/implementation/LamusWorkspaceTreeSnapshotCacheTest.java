@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.tree.implementation;
+
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
+import nl.mpi.lamus.workspace.tree.WorkspaceTreeSnapshotCache;
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author guisil
+ */
+public class LamusWorkspaceTreeSnapshotCacheTest {
+    
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+    }};
+    
+    @Mock WorkspaceTreeSnapshot mockFirstSnapshot;
+    @Mock WorkspaceTreeSnapshot mockSecondSnapshot;
+    @Mock WorkspaceTreeSnapshot mockThirdSnapshot;
+    
+    private WorkspaceTreeSnapshotCache treeSnapshotCache;
+    
+    private final int maxCachedTreeSnapshotNodes = 100;
+    
+    
+    public LamusWorkspaceTreeSnapshotCacheTest() {
+    }
+    
+    @BeforeClass
+    public static void setUpClass() {
+    }
+    
+    @AfterClass
+    public static void tearDownClass() {
+    }
+    
+    @Before
+    public void setUp() {
+        treeSnapshotCache = new LamusWorkspaceTreeSnapshotCache(maxCachedTreeSnapshotNodes);
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstSnapshot).getWorkspaceID(); will(returnValue(1));
+            allowing(mockSecondSnapshot).getWorkspaceID(); will(returnValue(2));
+            allowing(mockThirdSnapshot).getWorkspaceID(); will(returnValue(3));
+        }});
+    }
+    
+    @After
+    public void tearDown() {
+    }
+
+
+    @Test
+    public void putAndGetSnapshot() {
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstSnapshot).getNodeCount(); will(returnValue(10));
+        }});
+        
+        treeSnapshotCache.putTreeSnapshot(mockFirstSnapshot, treeSnapshotCache.getModificationCount());
+        
+        assertSame("Retrieved snapshot different from expected", mockFirstSnapshot, treeSnapshotCache.getTreeSnapshot(1));
+        assertNull("There should be no snapshot for other workspaces", treeSnapshotCache.getTreeSnapshot(2));
+    }
+    
+    @Test
+    public void snapshotNotCachedIfSomethingChangedWhileLoading() {
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstSnapshot).getNodeCount(); will(returnValue(10));
+        }});
+        
+        long modificationCountBeforeLoading = treeSnapshotCache.getModificationCount();
+        treeSnapshotCache.invalidateWorkspace(1);
+        treeSnapshotCache.putTreeSnapshot(mockFirstSnapshot, modificationCountBeforeLoading);
+        
+        assertNull("Outdated snapshot should not have been cached", treeSnapshotCache.getTreeSnapshot(1));
+    }
+    
+    @Test
+    public void snapshotBiggerThanLimitNotCached() {
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstSnapshot).getNodeCount(); will(returnValue(maxCachedTreeSnapshotNodes + 1));
+        }});
+        
+        treeSnapshotCache.putTreeSnapshot(mockFirstSnapshot, treeSnapshotCache.getModificationCount());
+        
+        assertNull("Snapshot with too many nodes should not have been cached", treeSnapshotCache.getTreeSnapshot(1));
+    }
+    
+    @Test
+    public void leastRecentlyUsedSnapshotsDiscardedWhenLimitReached() {
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstSnapshot).getNodeCount(); will(returnValue(40));
+            allowing(mockSecondSnapshot).getNodeCount(); will(returnValue(40));
+            allowing(mockThirdSnapshot).getNodeCount(); will(returnValue(40));
+        }});
+        
+        treeSnapshotCache.putTreeSnapshot(mockFirstSnapshot, treeSnapshotCache.getModificationCount());
+        treeSnapshotCache.putTreeSnapshot(mockSecondSnapshot, treeSnapshotCache.getModificationCount());
+        // the first one becomes the most recently used
+        treeSnapshotCache.getTreeSnapshot(1);
+        treeSnapshotCache.putTreeSnapshot(mockThirdSnapshot, treeSnapshotCache.getModificationCount());
+        
+        assertSame("Most recently used snapshot should still be cached", mockFirstSnapshot, treeSnapshotCache.getTreeSnapshot(1));
+        assertNull("Least recently used snapshot should have been discarded", treeSnapshotCache.getTreeSnapshot(2));
+        assertSame("New snapshot should be cached", mockThirdSnapshot, treeSnapshotCache.getTreeSnapshot(3));
+    }
+    
+    @Test
+    public void invalidatedWorkspaceFreesSpace() {
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstSnapshot).getNodeCount(); will(returnValue(60));
+            allowing(mockSecondSnapshot).getNodeCount(); will(returnValue(40));
+            allowing(mockThirdSnapshot).getNodeCount(); will(returnValue(60));
+        }});
+        
+        treeSnapshotCache.putTreeSnapshot(mockFirstSnapshot, treeSnapshotCache.getModificationCount());
+        treeSnapshotCache.putTreeSnapshot(mockSecondSnapshot, treeSnapshotCache.getModificationCount());
+        treeSnapshotCache.invalidateWorkspace(1);
+        treeSnapshotCache.putTreeSnapshot(mockThirdSnapshot, treeSnapshotCache.getModificationCount());
+        
+        assertNull("Invalidated snapshot should have been discarded", treeSnapshotCache.getTreeSnapshot(1));
+        assertSame("Snapshot should still be cached", mockSecondSnapshot, treeSnapshotCache.getTreeSnapshot(2));
+        assertSame("New snapshot should be cached", mockThirdSnapshot, treeSnapshotCache.getTreeSnapshot(3));
+    }
+    
+    @Test
+    public void invalidateWorkspacesContainingNode() {
+        
+        final int nodeID = 100;
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstSnapshot).getNodeCount(); will(returnValue(10));
+            allowing(mockSecondSnapshot).getNodeCount(); will(returnValue(10));
+            oneOf(mockFirstSnapshot).containsNode(nodeID); will(returnValue(Boolean.FALSE));
+            oneOf(mockSecondSnapshot).containsNode(nodeID); will(returnValue(Boolean.TRUE));
+        }});
+        
+        treeSnapshotCache.putTreeSnapshot(mockFirstSnapshot, treeSnapshotCache.getModificationCount());
+        treeSnapshotCache.putTreeSnapshot(mockSecondSnapshot, treeSnapshotCache.getModificationCount());
+        treeSnapshotCache.invalidateWorkspacesContainingNode(nodeID);
+        
+        assertSame("Snapshot without the node should still be cached", mockFirstSnapshot, treeSnapshotCache.getTreeSnapshot(1));
+        assertNull("Snapshot containing the node should have been discarded", treeSnapshotCache.getTreeSnapshot(2));
+    }
+}
@@ -18,16 +18,23 @@ package nl.mpi.lamus.workspace.tree.implementation;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import nl.mpi.lamus.dao.WorkspaceDao;
+import nl.mpi.lamus.dao.WorkspaceNodeHandler;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeReplacement;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
 import nl.mpi.lamus.workspace.model.WorkspaceReplacedNodeUrlUpdate;
+import nl.mpi.lamus.workspace.model.WorkspaceTreeSnapshot;
 import nl.mpi.lamus.workspace.tree.WorkspaceDaoFactory;
+import nl.mpi.lamus.workspace.tree.WorkspaceTreeSnapshotCache;
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
 import org.jmock.integration.junit4.JUnitRuleMockery;
@@ -65,8 +72,12 @@ public class WorkspaceDaoProxyTest {
     @Mock List<WorkspaceNodeLink> mockWorkspaceNodeLinkCollection;
     @Mock List<WorkspaceNodeReplacement> mockWorkspaceNodeReplacementCollection;
     @Mock List<WorkspaceReplacedNodeUrlUpdate> mockWorkspaceReplacedNodeUrlUpdateCollection;
+    @Mock WorkspaceTreeSnapshot mockWorkspaceTreeSnapshot;
+    @Mock WorkspaceTreeSnapshot mockOtherWorkspaceTreeSnapshot;
+    @Mock WorkspaceNodeHandler mockWorkspaceNodeHandler;
     
     private WorkspaceDaoProxy workspaceDaoProxy;
+    private WorkspaceTreeSnapshotCache treeSnapshotCache;
     
     
     public WorkspaceDaoProxyTest() {
@@ -85,6 +96,20 @@ public class WorkspaceDaoProxyTest {
         workspaceDaoProxy = new WorkspaceDaoProxy();
         
         ReflectionTestUtils.setField(workspaceDaoProxy, "workspaceDaoFactory", mockWorkspaceDaoFactory);
+        
+        treeSnapshotCache = new LamusWorkspaceTreeSnapshotCache(1000);
+        ReflectionTestUtils.setField(workspaceDaoProxy, "treeSnapshotCache", treeSnapshotCache);
+        
+        // used to discard cached tree snapshots when something changes
+        context.checking(new Expectations() {{
+            allowing(mockWorkspaceTreeSnapshot).getWorkspaceID(); will(returnValue(10));
+            allowing(mockWorkspaceTreeSnapshot).getNodeCount(); will(returnValue(5));
+            allowing(mockOtherWorkspaceTreeSnapshot).getNodeCount(); will(returnValue(5));
+            allowing(mockWorkspace).getWorkspaceID(); will(returnValue(10));
+            allowing(mockWorkspaceNode).getWorkspaceID(); will(returnValue(10));
+            allowing(mockOtherWorkspaceNode).getWorkspaceID(); will(returnValue(10));
+            allowing(mockWorkspaceNodeLink).getParentWorkspaceNodeID(); will(returnValue(100));
+        }});
     }
     
     @After
@@ -110,6 +135,18 @@ public class WorkspaceDaoProxyTest {
         workspaceDaoProxy.deleteWorkspace(mockWorkspace);
     }
 
+    @Test
+    public void testDeleteChunkOfWorkspaceNodes() {
+        final int workspaceID = 10;
+        final int chunkSize = 1000;
+        final int deleted = 250;
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).deleteChunkOfWorkspaceNodes(workspaceID, chunkSize); will(returnValue(deleted));
+        }});
+        assertEquals(deleted, workspaceDaoProxy.deleteChunkOfWorkspaceNodes(workspaceID, chunkSize));
+    }
+
     @Test
     public void testUpdateWorkspaceTopNode() {
         allowCallToDaoFactory();
@@ -193,6 +230,24 @@ public class WorkspaceDaoProxyTest {
         assertEquals(mockWorkspaceCollection, workspaceDaoProxy.getWorkspacesInFinalStage());
     }
 
+    @Test
+    public void testGetSubmittedWorkspaces() {
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getSubmittedWorkspaces(); will(returnValue(mockWorkspaceCollection));
+        }});
+        assertEquals(mockWorkspaceCollection, workspaceDaoProxy.getSubmittedWorkspaces());
+    }
+
+    @Test
+    public void testGetWorkspacesMarkedForDeletion() {
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspacesMarkedForDeletion(); will(returnValue(mockWorkspaceCollection));
+        }});
+        assertEquals(mockWorkspaceCollection, workspaceDaoProxy.getWorkspacesMarkedForDeletion());
+    }
+
     @Test
     public void testGetAllWorkspaces() {
         allowCallToDaoFactory();
@@ -255,6 +310,32 @@ public class WorkspaceDaoProxyTest {
         workspaceDaoProxy.lockNode(nodeURI, workspaceID);
     }
 
+    @Test
+    public void testLockNodes() {
+        final int workspaceID = 10;
+        final List<URI> nodeURIs = new ArrayList<>();
+        nodeURIs.add(URI.create("hdl:11111/" + UUID.randomUUID().toString()));
+        nodeURIs.add(URI.create("hdl:11111/" + UUID.randomUUID().toString()));
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).lockNodes(nodeURIs, workspaceID);
+        }});
+        workspaceDaoProxy.lockNodes(nodeURIs, workspaceID);
+    }
+
+    @Test
+    public void testGetLockedNodes() {
+        final List<URI> nodeURIs = new ArrayList<>();
+        nodeURIs.add(URI.create("hdl:11111/" + UUID.randomUUID().toString()));
+        nodeURIs.add(URI.create("hdl:11111/" + UUID.randomUUID().toString()));
+        final Set<URI> lockedNodeURIs = Collections.singleton(nodeURIs.get(0));
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getLockedNodes(nodeURIs); will(returnValue(lockedNodeURIs));
+        }});
+        assertEquals(lockedNodeURIs, workspaceDaoProxy.getLockedNodes(nodeURIs));
+    }
+
     @Test
     public void testUnlockNode() {
         final URI nodeURI = URI.create("hdl:11111/" + UUID.randomUUID().toString());
@@ -294,6 +375,18 @@ public class WorkspaceDaoProxyTest {
         workspaceDaoProxy.addWorkspaceNode(mockWorkspaceNode);
     }
 
+    @Test
+    public void testAddWorkspaceNodes() {
+        final List<WorkspaceNode> nodes = new ArrayList<>();
+        nodes.add(mockWorkspaceNode);
+        nodes.add(mockOtherWorkspaceNode);
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).addWorkspaceNodes(nodes);
+        }});
+        workspaceDaoProxy.addWorkspaceNodes(nodes);
+    }
+
     @Test
     public void testSetWorkspaceNodeAsDeleted() {
         final int workspaceID = 10;
@@ -336,6 +429,17 @@ public class WorkspaceDaoProxyTest {
         assertEquals(mockWorkspaceNode, workspaceDaoProxy.getWorkspaceTopNode(workspaceID));
     }
 
+    @Test
+    public void testGetWorkspaceNodeCount() {
+        final int workspaceID = 10;
+        final int nodeCount = 5;
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspaceNodeCount(workspaceID); will(returnValue(nodeCount));
+        }});
+        assertEquals(nodeCount, workspaceDaoProxy.getWorkspaceNodeCount(workspaceID));
+    }
+
     @Test
     public void testGetWorkspaceTopNodeID() {
         final int workspaceID = 10;
@@ -368,6 +472,16 @@ public class WorkspaceDaoProxyTest {
         assertEquals(mockWorkspaceNodeCollection, workspaceDaoProxy.getNodesForWorkspace(workspaceID));
     }
 
+    @Test
+    public void testProcessNodesForWorkspace() {
+        final int workspaceID = 10;
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).processNodesForWorkspace(workspaceID, mockWorkspaceNodeHandler);
+        }});
+        workspaceDaoProxy.processNodesForWorkspace(workspaceID, mockWorkspaceNodeHandler);
+    }
+
     @Test
     public void testGetMetadataNodesInTreeForWorkspace() {
         final int workspaceID = 10;
@@ -378,6 +492,118 @@ public class WorkspaceDaoProxyTest {
         assertEquals(mockWorkspaceNodeCollection, workspaceDaoProxy.getMetadataNodesInTreeForWorkspace(workspaceID));
     }
 
+    @Test
+    public void testGetWorkspaceTreeSnapshot() {
+        final int workspaceID = 10;
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockWorkspaceTreeSnapshot));
+        }});
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+        assertEquals("Snapshot should be retrieved from the cache the second time",
+                mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+    }
+
+    @Test
+    public void testGetWorkspaceTreeSnapshotForDifferentWorkspaces() {
+        final int workspaceID = 10;
+        final int otherWorkspaceID = 20;
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockWorkspaceTreeSnapshot));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(otherWorkspaceID); will(returnValue(mockOtherWorkspaceTreeSnapshot));
+            allowing(mockOtherWorkspaceTreeSnapshot).getWorkspaceID(); will(returnValue(otherWorkspaceID));
+        }});
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+        assertEquals(mockOtherWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(otherWorkspaceID));
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+    }
+
+    @Test
+    public void testGetWorkspaceTreeSnapshotAfterNodeDeleted() {
+        final int workspaceID = 10;
+        final int nodeID = 100;
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockWorkspaceTreeSnapshot));
+            oneOf(mockWorkspaceDao).setWorkspaceNodeAsDeleted(workspaceID, nodeID, false);
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockOtherWorkspaceTreeSnapshot));
+        }});
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+        workspaceDaoProxy.setWorkspaceNodeAsDeleted(workspaceID, nodeID, false);
+        assertEquals("Snapshot should be retrieved again after a change in the workspace",
+                mockOtherWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+    }
+
+    @Test
+    public void testGetWorkspaceTreeSnapshotAfterOtherWorkspaceChanged() {
+        final int workspaceID = 10;
+        final int otherWorkspaceID = 20;
+        final int nodeID = 100;
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockWorkspaceTreeSnapshot));
+            oneOf(mockWorkspaceDao).deleteWorkspaceNode(otherWorkspaceID, nodeID);
+        }});
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+        workspaceDaoProxy.deleteWorkspaceNode(otherWorkspaceID, nodeID);
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+    }
+
+    @Test
+    public void testGetWorkspaceTreeSnapshotAfterLinkAdded() {
+        final int workspaceID = 10;
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockWorkspaceTreeSnapshot));
+            oneOf(mockWorkspaceDao).addWorkspaceNodeLink(mockWorkspaceNodeLink);
+            oneOf(mockWorkspaceTreeSnapshot).containsNode(100); will(returnValue(Boolean.TRUE));
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockOtherWorkspaceTreeSnapshot));
+        }});
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+        workspaceDaoProxy.addWorkspaceNodeLink(mockWorkspaceNodeLink);
+        assertEquals("Snapshot should be retrieved again after a link was added to the workspace",
+                mockOtherWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+    }
+
+    @Test
+    public void testGetWorkspaceTreeSnapshotAfterChangeThroughOtherInstance() {
+        final int workspaceID = 10;
+        final int nodeID = 100;
+        
+        WorkspaceDaoProxy otherWorkspaceDaoProxy = new WorkspaceDaoProxy();
+        ReflectionTestUtils.setField(otherWorkspaceDaoProxy, "workspaceDaoFactory", mockWorkspaceDaoFactory);
+        ReflectionTestUtils.setField(otherWorkspaceDaoProxy, "treeSnapshotCache", treeSnapshotCache);
+        
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockWorkspaceTreeSnapshot));
+            oneOf(mockWorkspaceDao).deleteWorkspaceNode(workspaceID, nodeID);
+            oneOf(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockOtherWorkspaceTreeSnapshot));
+        }});
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+        assertEquals("Snapshot should be shared between the instances of the proxy",
+                mockWorkspaceTreeSnapshot, otherWorkspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+        otherWorkspaceDaoProxy.deleteWorkspaceNode(workspaceID, nodeID);
+        assertEquals("Snapshot should be retrieved again after a change made through another instance",
+                mockOtherWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+    }
+
+    @Test
+    public void testGetWorkspaceTreeSnapshotWithoutCache() {
+        final int workspaceID = 10;
+        
+        // as in a copy of the proxy which was deserialised
+        ReflectionTestUtils.setField(workspaceDaoProxy, "treeSnapshotCache", null);
+        
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            exactly(2).of(mockWorkspaceDao).getWorkspaceTreeSnapshot(workspaceID); will(returnValue(mockWorkspaceTreeSnapshot));
+        }});
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+        assertEquals(mockWorkspaceTreeSnapshot, workspaceDaoProxy.getWorkspaceTreeSnapshot(workspaceID));
+    }
+
     @Test
     public void testGetChildWorkspaceNodes() {
         final int nodeID = 100;
@@ -466,6 +692,16 @@ public class WorkspaceDaoProxyTest {
         workspaceDaoProxy.updateNodeArchiveUri(mockWorkspaceNode);
     }
 
+    @Test
+    public void testUpdateNodeArchiveUris() {
+        allowCallToDaoFactory();
+        final Collection<WorkspaceNode> nodes = Arrays.asList(mockWorkspaceNode);
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).updateNodeArchiveUris(nodes);
+        }});
+        workspaceDaoProxy.updateNodeArchiveUris(nodes);
+    }
+
     @Test
     public void testUpdateNodeArchiveUrl() {
         allowCallToDaoFactory();
@@ -493,6 +729,17 @@ public class WorkspaceDaoProxyTest {
         workspaceDaoProxy.addWorkspaceNodeLink(mockWorkspaceNodeLink);
     }
 
+    @Test
+    public void testAddWorkspaceNodeLinks() {
+        final List<WorkspaceNodeLink> nodeLinks = new ArrayList<>();
+        nodeLinks.add(mockWorkspaceNodeLink);
+        allowCallToDaoFactory();
+        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceDao).addWorkspaceNodeLinks(nodeLinks);
+        }});
+        workspaceDaoProxy.addWorkspaceNodeLinks(nodeLinks);
+    }
+
     @Test
     public void testDeleteWorkspaceNodeLink() {
         final int workspaceID = 10;
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.upload;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import org.jmock.Expectations;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author guisil
+ */
+public class UploadMatchIndexTest {
+    
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    
+    @Mock WorkspaceNode mockFirstNode;
+    @Mock WorkspaceNode mockSecondNode;
+    @Mock WorkspaceNode mockThirdNode;
+    
+    private UploadMatchIndex matchIndex;
+    
+    private final Path firstNodePath = Paths.get("/workspaces/10/upload/corpus/session.cmdi");
+    private final Path secondNodePath = Paths.get("/workspaces/10/upload/corpus/Media/file.wav");
+    private final Path thirdNodePath = Paths.get("/workspaces/10/upload/other/Media/file.wav");
+    
+    
+    @Before
+    public void setUp() {
+        matchIndex = new UploadMatchIndex();
+        matchIndex.addNode(mockFirstNode, firstNodePath);
+        matchIndex.addNode(mockSecondNode, secondNodePath);
+        matchIndex.addNode(mockThirdNode, thirdNodePath);
+    }
+    
+    
+    @Test
+    public void getFirstNodeWithPathEnding() {
+        
+        for(Path nodePath : new Path[] { firstNodePath, secondNodePath, thirdNodePath }) {
+            for(int i = 0; i < nodePath.getNameCount(); i++) {
+                Path ending = nodePath.subpath(i, nodePath.getNameCount());
+                WorkspaceNode expected = null;
+                if(firstNodePath.endsWith(ending)) {
+                    expected = mockFirstNode;
+                } else if(secondNodePath.endsWith(ending)) {
+                    expected = mockSecondNode;
+                } else if(thirdNodePath.endsWith(ending)) {
+                    expected = mockThirdNode;
+                }
+                assertEquals("Result different from Path#endsWith for " + ending, expected, matchIndex.getFirstNodeWithPathEnding(ending));
+            }
+        }
+    }
+    
+    @Test
+    public void getFirstNodeWithPathEnding_SeveralMatches() {
+        
+        assertEquals("Matching node different from expected", mockSecondNode, matchIndex.getFirstNodeWithPathEnding(Paths.get("Media/file.wav")));
+        assertEquals("Matching node different from expected", mockThirdNode, matchIndex.getFirstNodeWithPathEnding(Paths.get("other/Media/file.wav")));
+    }
+    
+    @Test
+    public void getFirstNodeWithPathEnding_NoMatch() {
+        
+        assertNull("Matching node should be null", matchIndex.getFirstNodeWithPathEnding(Paths.get("file.mp3")));
+        assertNull("Matching node should be null", matchIndex.getFirstNodeWithPathEnding(Paths.get("corpus/other/Media/file.wav")));
+        assertNull("Matching node should be null", matchIndex.getFirstNodeWithPathEnding(Paths.get("")));
+        assertNull("Matching node should be null", matchIndex.getFirstNodeWithPathEnding(Paths.get("/")));
+    }
+    
+    @Test
+    public void getFirstNodeWithPathEnding_AbsolutePath() {
+        
+        assertEquals("Matching node different from expected", mockSecondNode, matchIndex.getFirstNodeWithPathEnding(secondNodePath));
+        assertNull("Matching node should be null", matchIndex.getFirstNodeWithPathEnding(Paths.get("/corpus/Media/file.wav")));
+    }
+    
+    @Test
+    public void getNodesWithHandle() {
+        
+        matchIndex.addNodeHandle(mockThirdNode, "11142/ABC");
+        matchIndex.addNodeHandle(mockFirstNode, "11142/ABC");
+        matchIndex.addNodeHandle(mockFirstNode, "11142/ABC");
+        matchIndex.addNodeHandle(mockSecondNode, "11142/DEF");
+        
+        List<WorkspaceNode> nodes = matchIndex.getNodesWithHandle("11142/ABC");
+        
+        // in the order in which the nodes were added, without repetitions
+        assertEquals("Number of nodes different from expected", 2, nodes.size());
+        assertEquals("First node different from expected", mockFirstNode, nodes.get(0));
+        assertEquals("Second node different from expected", mockThirdNode, nodes.get(1));
+        
+        assertTrue("Result should be empty", matchIndex.getNodesWithHandle("11142/GHI").isEmpty());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void addHandleForNodeNotInIndex() {
+        
+        UploadMatchIndex emptyIndex = new UploadMatchIndex();
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstNode).getWorkspaceNodeID(); will(returnValue(1));
+        }});
+        
+        emptyIndex.addNodeHandle(mockFirstNode, "11142/ABC");
+    }
+    
+    @Test
+    public void size() {
+        
+        matchIndex.addNode(mockFirstNode, firstNodePath);
+        
+        assertEquals("Size different from expected", 3, matchIndex.size());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016 Max Planck Institute for Psycholinguistics
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 3 of the License.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nl.mpi.lamus.workspace.upload;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import nl.mpi.metadata.api.model.MetadataDocument;
+import org.jmock.auto.Mock;
+import org.jmock.integration.junit4.JUnitRuleMockery;
+import org.jmock.lib.concurrent.Synchroniser;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author guisil
+ */
+public class UploadProcessingContextTest {
+    
+    @Rule public JUnitRuleMockery context = new JUnitRuleMockery() {{
+        setThreadingPolicy(new Synchroniser());
+        setImposteriser(ClassImposteriser.INSTANCE);
+    }};
+    
+    @Mock MetadataDocument mockFirstDocument;
+    @Mock MetadataDocument mockSecondDocument;
+    
+    private UploadProcessingContext processingContext;
+    
+    private URL firstFileURL;
+    private URL secondFileURL;
+    
+    
+    @Before
+    public void setUp() throws MalformedURLException {
+        firstFileURL = new File("/workspaces/10/upload/corpus/session.cmdi").toURI().toURL();
+        secondFileURL = new File("/workspaces/10/upload/corpus/other.cmdi").toURI().toURL();
+        
+        processingContext = new UploadProcessingContext();
+        processingContext.addMetadataDocument(firstFileURL, mockFirstDocument);
+    }
+    
+    
+    @Test
+    public void getMetadataDocument() throws MalformedURLException {
+        
+        assertSame("Document different from expected", mockFirstDocument, processingContext.getMetadataDocument(firstFileURL));
+        assertSame("Document different from expected", mockFirstDocument,
+                processingContext.getMetadataDocument(new URL(firstFileURL.toString())));
+        assertEquals("Size different from expected", 1, processingContext.size());
+    }
+    
+    @Test
+    public void getMetadataDocumentNotParsed() {
+        
+        assertNull("Document should be null", processingContext.getMetadataDocument(secondFileURL));
+    }
+    
+    @Test
+    public void getMetadataDocumentNullURL() {
+        
+        assertNull("Document should be null", processingContext.getMetadataDocument(null));
+    }
+    
+    @Test
+    public void addMetadataDocumentReplacesPrevious() {
+        
+        processingContext.addMetadataDocument(firstFileURL, mockSecondDocument);
+        
+        assertSame("Document different from expected", mockSecondDocument, processingContext.getMetadataDocument(firstFileURL));
+        assertEquals("Size different from expected", 1, processingContext.size());
+    }
+    
+    @Test
+    public void removeMetadataDocument() {
+        
+        processingContext.removeMetadataDocument(firstFileURL);
+        
+        assertNull("Document should be null", processingContext.getMetadataDocument(firstFileURL));
+        assertEquals("Size different from expected", 0, processingContext.size());
+    }
+}
@@ -34,7 +34,11 @@ import nl.mpi.lamus.metadata.MetadataApiBridge;
 import nl.mpi.lamus.workspace.model.NodeUtil;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.model.implementation.LamusWorkspaceNode;
+import nl.mpi.lamus.workspace.upload.UploadMatchIndex;
+import nl.mpi.lamus.workspace.upload.UploadProcessingContext;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadHelper;
+import nl.mpi.lamus.workspace.upload.WorkspaceUploadNodeMatcher;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadReferenceHandler;
 import nl.mpi.metadata.api.MetadataAPI;
 import nl.mpi.metadata.api.MetadataException;
@@ -53,6 +57,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.Rule;
+import org.springframework.beans.factory.ObjectFactory;
 import static org.junit.Assert.*;
 
 /**
@@ -71,6 +76,7 @@ public class LamusWorkspaceUploadHelperTest {
     @Mock MetadataAPI mockMetadataAPI;
     @Mock MetadataApiBridge mockMetadataApiBridge;
     @Mock WorkspaceUploadReferenceHandler mockWorkspaceUploadReferenceHandler;
+    @Mock WorkspaceUploadNodeMatcher mockWorkspaceUploadNodeMatcher;
     @Mock NodeUtil mockNodeUtil;
 
     @Mock Workspace mockWorkpace;
@@ -89,6 +95,8 @@ public class LamusWorkspaceUploadHelperTest {
     
     @Mock ImportProblem mockUploadProblem;
     
+    private final UploadMatchIndex matchIndex = new UploadMatchIndex();
+    
     private final int workspaceID = 10;
     
     public LamusWorkspaceUploadHelperTest() {
@@ -105,8 +113,14 @@ public class LamusWorkspaceUploadHelperTest {
     @Before
     public void setUp() {
         
-        workspaceUploadHelper = new LamusWorkspaceUploadHelper(mockMetadataAPI,
-                mockMetadataApiBridge, mockWorkspaceUploadReferenceHandler, mockNodeUtil);
+        workspaceUploadHelper = new LamusWorkspaceUploadHelper(new ObjectFactory<MetadataAPI>() {
+            @Override
+            public MetadataAPI getObject() {
+                return mockMetadataAPI;
+            }
+        },
+                mockMetadataApiBridge, mockWorkspaceUploadReferenceHandler,
+                mockWorkspaceUploadNodeMatcher, mockNodeUtil);
     }
     
     @After
@@ -130,6 +144,8 @@ public class LamusWorkspaceUploadHelperTest {
         
         context.checking(new Expectations() {{
             
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
             // loop
             
             // first iteration - not metadata, so jumps to next iteration
@@ -140,11 +156,11 @@ public class LamusWorkspaceUploadHelperTest {
             oneOf(mockParentNode).getWorkspaceURL(); will(returnValue(parentFileURL));
             oneOf(mockMetadataAPI).getMetadataDocument(parentFileURL); will(returnValue(mockParentDocument));
             
-            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, nodesToCheck, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
+            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, matchIndex, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
                 will(returnValue(failedLinks));
         }});
         
-        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck);
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, new UploadProcessingContext());
         
         assertTrue("Result different from expected", result.isEmpty());
     }
@@ -170,6 +186,8 @@ public class LamusWorkspaceUploadHelperTest {
         
         context.checking(new Expectations() {{
             
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
             // loop
             
             // first iteration - metadata, so continues in this iteration
@@ -182,11 +200,11 @@ public class LamusWorkspaceUploadHelperTest {
             oneOf(mockParentNode).getWorkspaceURL(); will(returnValue(parentFileURL));
             oneOf(mockMetadataAPI).getMetadataDocument(parentFileURL); will(returnValue(mockParentDocument));
             
-            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, nodesToCheck, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
+            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, matchIndex, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
                 will(returnValue(failedLinks));
         }});
         
-        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck);
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, new UploadProcessingContext());
         
         assertTrue("Result different from expected", result.isEmpty());
     }
@@ -213,6 +231,8 @@ public class LamusWorkspaceUploadHelperTest {
         
         context.checking(new Expectations() {{
             
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
             // loop
             
             // first iteration - metadata, so continues in this iteration
@@ -225,11 +245,11 @@ public class LamusWorkspaceUploadHelperTest {
             oneOf(mockParentNode).getWorkspaceURL(); will(returnValue(parentFileURL));
             oneOf(mockMetadataAPI).getMetadataDocument(parentFileURL); will(returnValue(mockParentDocument));
             
-            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, nodesToCheck, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
+            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, matchIndex, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
                 will(returnValue(failedLinks));
         }});
         
-        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck);
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, new UploadProcessingContext());
         
         assertTrue("Result different from expected", result.containsAll(failedLinks));
     }
@@ -256,6 +276,8 @@ public class LamusWorkspaceUploadHelperTest {
         
         context.checking(new Expectations() {{
             
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
             // loop
             
             // first iteration - metadata, so continues in this iteration
@@ -268,7 +290,7 @@ public class LamusWorkspaceUploadHelperTest {
             oneOf(mockParentNode).getWorkspaceURL(); will(returnValue(parentFileURL));
             oneOf(mockMetadataAPI).getMetadataDocument(parentFileURL); will(returnValue(mockParentDocument));
             
-            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, nodesToCheck, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
+            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, matchIndex, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
                 will(doAll(AddEntryToMap.putElements(mockParentDocument, mockParentNode), returnValue(failedLinks)));
         }});
         
@@ -278,7 +300,7 @@ public class LamusWorkspaceUploadHelperTest {
             oneOf(mockMetadataApiBridge).removeSelfHandleAndSaveDocument(mockParentDocument, parentFileURL);
         }});
         
-        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck);
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, new UploadProcessingContext());
         
         assertTrue("Result different from expected", result.containsAll(failedLinks));
     }
@@ -301,6 +323,8 @@ public class LamusWorkspaceUploadHelperTest {
         
         context.checking(new Expectations() {{
             
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
             // loop
             
             // first iteration - not metadata, so jumps to next iteration
@@ -311,11 +335,11 @@ public class LamusWorkspaceUploadHelperTest {
             oneOf(mockParentNode).getWorkspaceURL(); will(returnValue(parentFileURL));
             oneOf(mockMetadataAPI).getMetadataDocument(parentFileURL); will(returnValue(mockParentDocument));
             
-            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, nodesToCheck, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
+            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, matchIndex, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
                 will(returnValue(failedLinks));
         }});
         
-        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck);
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, new UploadProcessingContext());
         
         assertTrue("Result different from expected", result.isEmpty());
     }
@@ -337,6 +361,8 @@ public class LamusWorkspaceUploadHelperTest {
         
         context.checking(new Expectations() {{
             
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
             // loop
             
             // first iteration - not metadata, so jumps to next iteration
@@ -347,11 +373,11 @@ public class LamusWorkspaceUploadHelperTest {
             oneOf(mockParentNode).getWorkspaceURL(); will(returnValue(parentFileURL));
             oneOf(mockMetadataAPI).getMetadataDocument(parentFileURL); will(returnValue(mockParentDocument));
             
-            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, nodesToCheck, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
+            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, matchIndex, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
                 will(returnValue(failedLinks));
         }});
         
-        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck);
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, new UploadProcessingContext());
         
         assertTrue("Result different from expected", result.isEmpty());
     }
@@ -372,6 +398,8 @@ public class LamusWorkspaceUploadHelperTest {
         
         context.checking(new Expectations() {{
             
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
             // loop
             
             // first iteration - not metadata, so jumps to next iteration
@@ -382,12 +410,94 @@ public class LamusWorkspaceUploadHelperTest {
             oneOf(mockParentNode).getWorkspaceURL(); will(returnValue(parentFileURL));
             oneOf(mockMetadataAPI).getMetadataDocument(parentFileURL); will(returnValue(mockParentDocument));            
             
-            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, nodesToCheck, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
+            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, matchIndex, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
                 will(returnValue(failedLinks));
         }});
         
-        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck);
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, new UploadProcessingContext());
+        
+        assertTrue("Result different from expected", result.isEmpty());
+    }
+    
+    @Test
+    public void assureLinksDocumentAlreadyParsed() throws URISyntaxException, MalformedURLException, IOException, MetadataException, WorkspaceException {
+        
+        final String parentFilename = "parent.cmdi";
+        final URI parentFileURI = new URI("file:/workspaces/" + workspaceID + "/upload/" + parentFilename);
+        final URL parentFileURL = parentFileURI.toURL();
+        
+        final String childFilename = "child.cmdi";
+        final File childFile = new File("/workspaces/" + workspaceID + "/upload/" + FilenameUtils.getBaseName(parentFilename) + File.separator + childFilename);
+        final URL childFileURL = childFile.toURI().toURL();
+
+        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
+        nodesToCheck.add(mockChildNode);
+        nodesToCheck.add(mockParentNode);
+        
+        // only the parent document was parsed during the upload
+        final UploadProcessingContext processingContext = new UploadProcessingContext();
+        processingContext.addMetadataDocument(parentFileURL, mockParentDocument);
+        
+        final Collection<ImportProblem> failedLinks = new ArrayList<>();
+        final Map<MetadataDocument, WorkspaceNode> documentsWithInvalidSelfHandles = new HashMap<>();
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
+            // loop
+            
+            // first iteration - metadata not parsed yet, so it's loaded from the file
+            oneOf(mockNodeUtil).isNodeMetadata(mockChildNode); will(returnValue(Boolean.TRUE));
+            oneOf(mockChildNode).getWorkspaceURL(); will(returnValue(childFileURL));
+            oneOf(mockMetadataAPI).getMetadataDocument(childFileURL); will(returnValue(mockChildDocument));
+            
+            // second iteration - metadata already parsed, so the file is not loaded again
+            oneOf(mockNodeUtil).isNodeMetadata(mockParentNode); will(returnValue(Boolean.TRUE));
+            oneOf(mockParentNode).getWorkspaceURL(); will(returnValue(parentFileURL));
+            never(mockMetadataAPI).getMetadataDocument(parentFileURL);
+            
+            oneOf(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(mockWorkpace, matchIndex, mockParentNode, mockParentDocument, documentsWithInvalidSelfHandles);
+                will(returnValue(failedLinks));
+        }});
+        
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, processingContext);
+        
+        assertTrue("Result different from expected", result.isEmpty());
+        assertEquals("Parsed documents should have been released after being used", 0, processingContext.size());
+    }
+    
+    @Test
+    public void assureLinksLargeUploadDocumentsAlreadyParsed() throws MalformedURLException, IOException, MetadataException {
+        
+        final int numberOfFiles = 1000;
+        
+        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
+        final UploadProcessingContext processingContext = new UploadProcessingContext();
+        for(int i = 0; i < numberOfFiles; i++) {
+            URL fileURL = new File("/workspaces/" + workspaceID + "/upload/file" + i + ".cmdi").toURI().toURL();
+            WorkspaceNode node = new LamusWorkspaceNode(workspaceID, null, null);
+            node.setWorkspaceURL(fileURL);
+            nodesToCheck.add(node);
+            processingContext.addMetadataDocument(fileURL, mockParentDocument);
+        }
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceUploadNodeMatcher).buildMatchIndex(nodesToCheck); will(returnValue(matchIndex));
+            
+            allowing(mockNodeUtil).isNodeMetadata(with(any(WorkspaceNode.class))); will(returnValue(Boolean.TRUE));
+            never(mockMetadataAPI).getMetadataDocument(with(any(URL.class)));
+            
+            exactly(numberOfFiles).of(mockWorkspaceUploadReferenceHandler).matchReferencesWithNodes(
+                    with(same(mockWorkpace)), with(same(matchIndex)), with(any(WorkspaceNode.class)),
+                    with(same(mockParentDocument)), with(any(Map.class)));
+                will(returnValue(new ArrayList<ImportProblem>()));
+        }});
+        
+        Collection<ImportProblem> result = workspaceUploadHelper.assureLinksInWorkspace(mockWorkpace, nodesToCheck, processingContext);
         
         assertTrue("Result different from expected", result.isEmpty());
+        assertEquals("Parsed documents should have been released after being used", 0, processingContext.size());
     }
-}
\ No newline at end of file
+}
@@ -34,6 +34,7 @@ import nl.mpi.lamus.workspace.factory.WorkspaceNodeFactory;
 import nl.mpi.lamus.workspace.model.NodeUtil;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
+import nl.mpi.lamus.workspace.upload.UploadMatchIndex;
 import nl.mpi.metadata.api.model.Reference;
 import org.jmock.Expectations;
 import org.jmock.auto.Mock;
@@ -122,19 +123,19 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         //handle will match the URI of the first node
         final URI firstNodeURI = handleToMatch;
         
+        final UploadMatchIndex matchIndex = buildMatchIndex(nodesToCheck, firstNodeURI, handleToMatch);
+        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
             oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
             
-            //loop
-            //first node is metadata and matches the given handle, so it won't continue the loop and return the node
+            //first node has the same handle, is metadata and matches the given handle, so it will be returned
             oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
             oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, firstNodeURI); will(returnValue(Boolean.TRUE));
         }});
         
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, nodesToCheck, handleToMatch);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
         
         assertNotNull("Matching node should not be null", retrievedNode);
         assertEquals("Matching node different from expected", mockFirstNode, retrievedNode);
@@ -160,27 +161,20 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         final Collection<WorkspaceNode> matchesInWorkspace = new ArrayList<>();
         matchesInWorkspace.add(mockSomeOtherNode);
         
+        final UploadMatchIndex matchIndex = buildMatchIndex(nodesToCheck, firstNodeURI, handleToMatch);
+        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
             oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
             
-            //loop
-            //first node is metadata and doesn't match the given handle, so it will continue the loop
-            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
-            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, firstNodeURI); will(returnValue(Boolean.FALSE));
-            
-            //next iteration
-            //second node is resource, so a match will be searched in the corpusstructure DB
-            // and its URL will not match the one of the current node, so it will exit the loop
-            //  and create an external node pointing to the matched corpus node
-            oneOf(mockNodeUtil).isNodeMetadata(mockSecondNode); will(returnValue(Boolean.FALSE));
+            //the first node has a different handle and the second node has none, so there are no candidates
+            // and a match will be searched in the rest of the workspace
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(handleToMatch); will(returnValue(matchesInWorkspace));
             oneOf(mockSomeOtherNode).getWorkspaceNodeID(); will(returnValue(someOtherNodeID));
         }});
         
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, nodesToCheck, handleToMatch);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
         
         assertNotNull("Matching node should not be null", retrievedNode);
         assertEquals("Matching node different from expected", mockSomeOtherNode, retrievedNode);
@@ -223,22 +217,15 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         expectedExceptionMessage.append(" Archive URL: ");
         expectedExceptionMessage.append(yetAnotherNodeArchURL);
         
+        final UploadMatchIndex matchIndex = buildMatchIndex(nodesToCheck, firstNodeURI, handleToMatch);
+        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
             oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
             
-            //loop
-            //first node is metadata and doesn't match the given handle, so it will continue the loop
-            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
-            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, firstNodeURI); will(returnValue(Boolean.FALSE));
-            
-            //next iteration
-            //second node is resource, so a match will be searched in the corpusstructure DB
-            // and its URL will not match the one of the current node, so it will exit the loop
-            //  and create an external node pointing to the matched corpus node
-            oneOf(mockNodeUtil).isNodeMetadata(mockSecondNode); will(returnValue(Boolean.FALSE));
+            //the first node has a different handle and the second node has none, so there are no candidates
+            // and a match will be searched in the rest of the workspace
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(handleToMatch); will(returnValue(matchesInWorkspace));
             oneOf(mockSomeOtherNode).getWorkspaceURL(); will(returnValue(someOtherNodeWSuRL));
             oneOf(mockSomeOtherNode).getArchiveURL(); will(returnValue(someOtherNodeArchURL));
@@ -247,7 +234,7 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         }});
         
         try {
-            workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, nodesToCheck, handleToMatch);
+            workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
             fail("should have thrown exception");
         } catch(IllegalStateException ex) {
             assertEquals(expectedExceptionMessage.toString(), ex.getMessage());
@@ -274,22 +261,15 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         final String expectedExceptionMessage = "Circular link found in reference " + handleToMatch;
         
+        final UploadMatchIndex matchIndex = buildMatchIndex(nodesToCheck, firstNodeURI, handleToMatch);
+        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
             oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
             
-            //loop
-            //first node is metadata and doesn't match the given handle, so it will continue the loop
-            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
-            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, firstNodeURI); will(returnValue(Boolean.FALSE));
-            
-            //next iteration
-            //second node is resource, so a match will be searched in the corpusstructure DB
-            // and its URL will not match the one of the current node, so it will exit the loop
-            //  and create an external node pointing to the matched corpus node
-            oneOf(mockNodeUtil).isNodeMetadata(mockSecondNode); will(returnValue(Boolean.FALSE));
+            //the first node has a different handle and the second node has none, so there are no candidates
+            // and a match will be searched in the rest of the workspace
             
             // matches top node, so a circular link is found
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(handleToMatch); will(returnValue(matchesInWorkspace));
@@ -297,7 +277,7 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         }});
         
         try {
-            workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, nodesToCheck, handleToMatch);
+            workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
             fail("should have thrown exception");
         } catch(IllegalStateException ex) {
             assertEquals(expectedExceptionMessage, ex.getMessage());
@@ -332,22 +312,15 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         final Collection<WorkspaceNode> emptyMatchesInWorkspace = new ArrayList<>();
         
+        final UploadMatchIndex matchIndex = buildMatchIndex(nodesToCheck, firstNodeURI, handleToMatch);
+        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
             oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
             
-            //loop
-            //first node is metadata and doesn't match the given handle, so it will continue the loop
-            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
-            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, firstNodeURI); will(returnValue(Boolean.FALSE));
-            
-            //next iteration
-            //second node is resource, so a match will be searched in the corpusstructure DB
-            // and its URL will not match the one of the current node, so it will exit the loop
-            //  and create an external node pointing to the matched corpus node
-            oneOf(mockNodeUtil).isNodeMetadata(mockSecondNode); will(returnValue(Boolean.FALSE));
+            //the first node has a different handle and the second node has none, so there are no candidates
+            // and a match will be searched in the rest of the workspace
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(handleToMatch); will(returnValue(emptyMatchesInWorkspace));
             
             oneOf(mockCorpusStructureProvider).getNode(handleToMatch); will(returnValue(mockCorpusNode));
@@ -366,7 +339,7 @@ public class LamusWorkspaceUploadNodeMatcherTest {
             oneOf(mockWorkspaceDao).addWorkspaceNode(mockSomeOtherNode);
         }});
         
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, nodesToCheck, handleToMatch);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
         
         assertNotNull("Matching node should not be null", retrievedNode);
         assertEquals("Matching node different from expected", mockSomeOtherNode, retrievedNode);
@@ -403,24 +376,17 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         final String expectedExceptionMessage = "Circular link found in reference " + handleToMatch;
         
+        final UploadMatchIndex matchIndex = buildMatchIndex(nodesToCheck, firstNodeURI, handleToMatch);
+        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
             oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
             
-            //loop
-            //first node is metadata and doesn't match the given handle, so it will continue the loop
+            //the first node has a different handle and the second node has none, so there are no candidates
+            // and a match will be searched in the rest of the workspace
             allowing(mockFirstNode).getWorkspaceNodeID(); will(returnValue(firstNodeID));
-            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
-            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, firstNodeURI); will(returnValue(Boolean.FALSE));
-            
-            //next iteration
-            //second node is resource, so a match will be searched in the corpusstructure DB
-            // and its URL will not match the one of the current node, so it will exit the loop
-            //  and create an external node pointing to the matched corpus node
             allowing(mockSecondNode).getWorkspaceNodeID(); will(returnValue(secondNodeID));
-            oneOf(mockNodeUtil).isNodeMetadata(mockSecondNode); will(returnValue(Boolean.FALSE));
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(handleToMatch); will(returnValue(emptyMatchesInWorkspace));
             
             oneOf(mockCorpusStructureProvider).getNode(handleToMatch); will(returnValue(mockCorpusNode));
@@ -434,7 +400,7 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         }});
         
         try {
-            workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, nodesToCheck, handleToMatch);
+            workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
             fail("should have thrown exception");
         } catch(IllegalStateException ex) {
             assertEquals(expectedExceptionMessage, ex.getMessage());
@@ -461,23 +427,17 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         final Collection<WorkspaceNode> emptyMatchesInWorkspace = new ArrayList<>();
         
+        final UploadMatchIndex matchIndex = buildMatchIndex(nodesToCheck, firstNodeURI, handleToMatch);
+        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
             oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
             
-            //loop
-            //first node is metadata and doesn't match the given handle, so it will continue the loop
+            //the first node has a different handle and the second node has none, so there are no candidates
+            // and a match will be searched in the rest of the workspace
             allowing(mockFirstNode).getWorkspaceNodeID(); will(returnValue(firstNodeID));
-            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
-            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, firstNodeURI); will(returnValue(Boolean.FALSE));
-            
-            //next iteration
-            //second node is resource, so a match will be searched in the corpusstructure DB
-            // and since the retrieved archive URL is null, it will continue (in this case exit) the loop
             allowing(mockSecondNode).getWorkspaceNodeID(); will(returnValue(secondNodeID));
-            oneOf(mockNodeUtil).isNodeMetadata(mockSecondNode); will(returnValue(Boolean.FALSE));
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(handleToMatch); will(returnValue(emptyMatchesInWorkspace));
 
             //since the node could not be found in the archive, an external archive node won't be created, and null will be returned instead
@@ -485,7 +445,7 @@ public class LamusWorkspaceUploadNodeMatcherTest {
             
         }});
         
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, nodesToCheck, handleToMatch);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
         
         assertNull("Matching node should be null", retrievedNode);
     }
@@ -505,29 +465,19 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         nodesToCheck.add(mockFirstNode);
         nodesToCheck.add(mockSecondNode);
         
-        final IllegalArgumentException secondExpectedException = new IllegalArgumentException("some error message");
-        
         final Collection<WorkspaceNode> emptyMatchesInWorkspace = new ArrayList<>();
         
+        final UploadMatchIndex matchIndex = buildMatchIndex(nodesToCheck, null, handleToMatch);
+        
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
             oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
             
-            //loop
-            //first node is metadata and retrieved archive URI is null, so it will continue the loop
+            //none of the nodes has an archive URI, so there are no candidates
+            // and a match will be searched in the rest of the workspace
             allowing(mockFirstNode).getWorkspaceNodeID(); will(returnValue(firstNodeID));
-            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(null));
-            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, null); will(throwException(secondExpectedException));
-            //extra call from the logger
-            oneOf(mockFirstNode).getArchiveURI(); will(returnValue(null));
-            
-            //next iteration
-            //second node is resource, so a match will be searched in the corpusstructure DB
-            // and since the retrieved archive URL is null, it will continue (in this case exit) the loop
             allowing(mockSecondNode).getWorkspaceNodeID(); will(returnValue(secondNodeID));
-            oneOf(mockNodeUtil).isNodeMetadata(mockSecondNode); will(returnValue(Boolean.FALSE));
             oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(handleToMatch); will(returnValue(emptyMatchesInWorkspace));
 
             //since the node could not be found in the archive, an external archive node won't be created, and null will be returned instead
@@ -535,7 +485,7 @@ public class LamusWorkspaceUploadNodeMatcherTest {
             
         }});
         
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, nodesToCheck, handleToMatch);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
         
         assertNull("Matching node should be null", retrievedNode);
     }
@@ -558,16 +508,17 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         context.checking(new Expectations() {{
             
-            //loop
-            //first node doesn't match the given reference URI, so it will continue the loop
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(null));
+            allowing(mockSecondNode).getArchiveURI(); will(returnValue(null));
+            
+            //first node doesn't match the given reference URI
             allowing(mockFirstNode).getWorkspaceURL(); will(returnValue(firstNodeWorkspaceURL));
             
-            //second iteration
-            //second node matches the given reference URI, so it will return this node
+            //second node matches the given reference URI, so it will be returned
             allowing(mockSecondNode).getWorkspaceURL(); will(returnValue(secondNodeWorkspaceURL));
         }});
         
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, referencePath);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck), referencePath);
         
         assertNotNull("Matching node should not be null", retrievedNode);
         assertEquals("Matching node different from expected", mockSecondNode, retrievedNode);
@@ -589,16 +540,17 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         context.checking(new Expectations() {{
             
-            //loop
-            //first node doesn't match the given reference URI, so it will continue the loop
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(null));
+            allowing(mockSecondNode).getArchiveURI(); will(returnValue(null));
+            
+            //first node doesn't match the given reference URI
             allowing(mockFirstNode).getWorkspaceURL(); will(returnValue(firstNodeWorkspaceURL));
             
-            //second iteration
-            //second node matches the given reference URI, so it will return this node
+            //second node matches the given reference URI, so it will be returned
             allowing(mockSecondNode).getWorkspaceURL(); will(returnValue(secondNodeWorkspaceURL));
         }});
         
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, referencePath);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck), referencePath);
         
         assertNotNull("Matching node should not be null", retrievedNode);
         assertEquals("Matching node different from expected", mockSecondNode, retrievedNode);
@@ -622,17 +574,18 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         context.checking(new Expectations() {{
             
-            //loop
-            //first node doesn't match the given reference URI, so it will continue the loop
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(null));
+            allowing(mockSecondNode).getArchiveURI(); will(returnValue(null));
+            
+            //first node doesn't match the given reference URI
             allowing(mockFirstNode).getWorkspaceURL(); will(returnValue(firstNodeWorkspaceURL));
             
-            //second iteration
-            //second node doesn't match the given reference URI, so it will continue the loop (in this case it will finish)
+            //second node doesn't match the given reference URI
             allowing(mockSecondNode).getWorkspaceURL(); will(returnValue(secondNodeWorkspaceURL));
         }});
         
         //no match was found, so a null value will be returned
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, referencepath);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck), referencepath);
         
         assertNull("Matching node should be null", retrievedNode);
     }
@@ -653,17 +606,18 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         context.checking(new Expectations() {{
             
-            //loop
-            //first node doesn't match the given reference URI, so it will continue the loop
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(null));
+            allowing(mockSecondNode).getArchiveURI(); will(returnValue(null));
+            
+            //first node doesn't match the given reference URI
             allowing(mockFirstNode).getWorkspaceURL(); will(returnValue(firstNodeWorkspaceURL));
             
-            //second iteration
-            //second node doesn't match the given reference URI, so it will continue the loop (in this case it will finish)
+            //second node doesn't match the given reference URI
             allowing(mockSecondNode).getWorkspaceURL(); will(returnValue(secondNodeWorkspaceURL));
         }});
         
         //no match was found, so a null value will be returned
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, referencepath);
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck), referencepath);
         
         assertNull("Matching node should be null", retrievedNode);
     }
@@ -671,12 +625,12 @@ public class LamusWorkspaceUploadNodeMatcherTest {
     @Test
     public void findNodeForEmptyPath() {
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
+        final UploadMatchIndex matchIndex = new UploadMatchIndex();
+        matchIndex.addNode(mockFirstNode, null);
+        matchIndex.addNode(mockSecondNode, null);
         
         //no match was found, so a null value will be returned
-        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(nodesToCheck, "");
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForPath(matchIndex, "");
         
         assertNull("Matching node should be null", retrievedNode);
     }
@@ -777,4 +731,176 @@ public class LamusWorkspaceUploadNodeMatcherTest {
         
         assertNull("Retrieved node should be null", retrievedNode);
     }
+    
+    @Test
+    public void findNodeForMetadataHandleWithSeveralCandidates() throws MalformedURLException {
+        
+        final URI handleToMatch = URI.create("hdl:11142/" + UUID.randomUUID().toString().toUpperCase());
+        
+        final int topNodeID = 111;
+        final URI topNodeURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        
+        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
+        nodesToCheck.add(mockFirstNode);
+        nodesToCheck.add(mockSecondNode);
+        
+        //both nodes have the handle, with different case, so they are both candidates
+        final URI firstNodeURI = URI.create(handleToMatch.toString().toLowerCase());
+        final URI secondNodeURI = handleToMatch;
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstNode).getWorkspaceURL(); will(returnValue(null));
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
+            allowing(mockSecondNode).getWorkspaceURL(); will(returnValue(null));
+            allowing(mockSecondNode).getArchiveURI(); will(returnValue(secondNodeURI));
+            allowing(mockHandleParser).stripAndValidateHandleIfPrefixIsKnown(firstNodeURI); will(returnValue(firstNodeURI.getSchemeSpecificPart()));
+            allowing(mockHandleParser).stripAndValidateHandleIfPrefixIsKnown(handleToMatch); will(returnValue(handleToMatch.getSchemeSpecificPart()));
+        }});
+        
+        final UploadMatchIndex matchIndex = workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck);
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
+            oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
+            
+            //the candidates are checked in the order in which they were given, so the first one is returned
+            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
+            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, firstNodeURI); will(returnValue(Boolean.TRUE));
+        }});
+        
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
+        
+        assertEquals("Matching node different from expected", mockFirstNode, retrievedNode);
+    }
+    
+    @Test
+    public void findNodeForMetadataHandleAfterUpdatingMatchIndex() throws MalformedURLException {
+        
+        final URI handleToMatch = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        
+        final int topNodeID = 111;
+        final URI topNodeURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        
+        //the node had no handle when it was indexed
+        final UploadMatchIndex matchIndex = new UploadMatchIndex();
+        matchIndex.addNode(mockFirstNode, null);
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(handleToMatch));
+            allowing(mockHandleParser).stripAndValidateHandleIfPrefixIsKnown(handleToMatch); will(returnValue(handleToMatch.getSchemeSpecificPart()));
+        }});
+        
+        workspaceUploadNodeMatcher.updateMatchIndex(matchIndex, mockFirstNode);
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
+            oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
+            
+            oneOf(mockNodeUtil).isNodeMetadata(mockFirstNode); will(returnValue(Boolean.TRUE));
+            oneOf(mockHandleParser).areHandlesEquivalent(handleToMatch, handleToMatch); will(returnValue(Boolean.TRUE));
+        }});
+        
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
+        
+        assertEquals("Matching node different from expected", mockFirstNode, retrievedNode);
+    }
+    
+    @Test
+    public void findNodeForInvalidHandle() throws MalformedURLException {
+        
+        final URI handleToMatch = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        
+        final int topNodeID = 111;
+        final URI topNodeURI = URI.create("hdl:11142/" + UUID.randomUUID().toString());
+        
+        final UploadMatchIndex matchIndex = new UploadMatchIndex();
+        
+        final Collection<WorkspaceNode> emptyMatchesInWorkspace = new ArrayList<>();
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspace).getTopNodeID(); will(returnValue(topNodeID));
+            oneOf(mockWorkspace).getTopNodeArchiveURI(); will(returnValue(topNodeURI));
+            
+            //the handle can't be normalised, so there are no candidates
+            oneOf(mockHandleParser).stripAndValidateHandleIfPrefixIsKnown(handleToMatch); will(throwException(new IllegalArgumentException("invalid handle")));
+            
+            oneOf(mockWorkspaceDao).getWorkspaceNodeByArchiveURI(handleToMatch); will(returnValue(emptyMatchesInWorkspace));
+            oneOf(mockCorpusStructureProvider).getNode(handleToMatch); will(returnValue(null));
+        }});
+        
+        WorkspaceNode retrievedNode = workspaceUploadNodeMatcher.findNodeForHandle(mockWorkspace, matchIndex, handleToMatch);
+        
+        assertNull("Matching node should be null", retrievedNode);
+    }
+    
+    @Test
+    public void findNodeForPathWithSeveralMatches() throws MalformedURLException {
+        
+        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
+        nodesToCheck.add(mockFirstNode);
+        nodesToCheck.add(mockSecondNode);
+        
+        final File wsUploadDirectory = new File("/workspaces/upload/" + workspaceID);
+        final URL firstNodeWorkspaceURL = new URL(wsUploadDirectory.toURI() + File.separator + "first" + File.separator + "child.txt");
+        final URL secondNodeWorkspaceURL = new URL(wsUploadDirectory.toURI() + File.separator + "second" + File.separator + "child.txt");
+        
+        //reference will match both nodes
+        final String referencePath = "child.txt";
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(null));
+            allowing(mockSecondNode).getArchiveURI(); will(returnValue(null));
+            allowing(mockFirstNode).getWorkspaceURL(); will(returnValue(firstNodeWorkspaceURL));
+            allowing(mockSecondNode).getWorkspaceURL(); will(returnValue(secondNodeWorkspaceURL));
+        }});
+        
+        UploadMatchIndex matchIndex = workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck);
+        
+        //the first node in the given order is returned
+        assertEquals("Matching node different from expected", mockFirstNode, workspaceUploadNodeMatcher.findNodeForPath(matchIndex, referencePath));
+        assertEquals("Matching node different from expected", mockSecondNode, workspaceUploadNodeMatcher.findNodeForPath(matchIndex, "second" + File.separator + referencePath));
+    }
+    
+    @Test
+    public void findNodeForAbsolutePath() throws MalformedURLException {
+        
+        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
+        nodesToCheck.add(mockFirstNode);
+        
+        final File wsUploadDirectory = new File("/workspaces/upload/" + workspaceID);
+        final URL firstNodeWorkspaceURL = new URL(wsUploadDirectory.toURI() + File.separator + "parent" + File.separator + "child.txt");
+        
+        context.checking(new Expectations() {{
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(null));
+            allowing(mockFirstNode).getWorkspaceURL(); will(returnValue(firstNodeWorkspaceURL));
+        }});
+        
+        UploadMatchIndex matchIndex = workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck);
+        
+        //an absolute path only matches the whole path of the node
+        assertEquals("Matching node different from expected", mockFirstNode, workspaceUploadNodeMatcher.findNodeForPath(matchIndex, firstNodeWorkspaceURL.getPath()));
+        assertNull("Matching node should be null", workspaceUploadNodeMatcher.findNodeForPath(matchIndex, File.separator + "parent" + File.separator + "child.txt"));
+    }
+    
+    
+    private UploadMatchIndex buildMatchIndex(final Collection<WorkspaceNode> nodesToCheck, final URI firstNodeURI, final URI handleToMatch) {
+        
+        context.checking(new Expectations() {{
+            //the nodes have no workspace URL and only the first node can have an archive URI,
+            // so only the first node can be a candidate when matching a handle
+            allowing(mockFirstNode).getWorkspaceURL(); will(returnValue(null));
+            allowing(mockFirstNode).getArchiveURI(); will(returnValue(firstNodeURI));
+            allowing(mockSecondNode).getWorkspaceURL(); will(returnValue(null));
+            allowing(mockSecondNode).getArchiveURI(); will(returnValue(null));
+            if(firstNodeURI != null) {
+                allowing(mockHandleParser).stripAndValidateHandleIfPrefixIsKnown(firstNodeURI); will(returnValue(firstNodeURI.getSchemeSpecificPart()));
+            }
+            allowing(mockHandleParser).stripAndValidateHandleIfPrefixIsKnown(handleToMatch); will(returnValue(handleToMatch.getSchemeSpecificPart()));
+        }});
+        
+        return workspaceUploadNodeMatcher.buildMatchIndex(nodesToCheck);
+    }
 }
\ No newline at end of file
@@ -48,6 +48,7 @@ import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeLink;
 import nl.mpi.lamus.workspace.model.WorkspaceNodeType;
+import nl.mpi.lamus.workspace.upload.UploadMatchIndex;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadNodeMatcher;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadReferenceHandler;
 import nl.mpi.metadata.api.MetadataAPI;
@@ -70,6 +71,7 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.test.util.ReflectionTestUtils;
 
 /**
@@ -120,6 +122,8 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
     private final int thirdNodeID = 103;
     private final int externalNodeID = 104;
     
+    private final UploadMatchIndex matchIndex = new UploadMatchIndex();
+    
     public LamusWorkspaceUploadReferenceHandlerTest() {
     }
     
@@ -137,7 +141,12 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         workspaceUploadReferenceHandler = new LamusWorkspaceUploadReferenceHandler(
                 mockWorkspaceUploadNodeMatcher,
                 mockWorkspaceDao, mockWorkspaceNodeLinkManager, mockHandleParser,
-                mockMetadataAPI, mockMetadataApiBridge, mockWorkspaceFileHandler, mockNodeUtil);
+                new ObjectFactory<MetadataAPI>() {
+                    @Override
+                    public MetadataAPI getObject() {
+                        return mockMetadataAPI;
+                    }
+                }, mockMetadataApiBridge, mockWorkspaceFileHandler, mockNodeUtil);
         ReflectionTestUtils.setField(workspaceUploadReferenceHandler, "workspaceDirectoryHandler", mockWorkspaceDirectoryHandler);
         ReflectionTestUtils.setField(workspaceUploadReferenceHandler, "archiveFileLocationProvider", mockArchiveFileLocationProvider);
         baseDirectory = testFolder.newFolder("temp_directory");
@@ -153,7 +162,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         final URI parentDocumentHandle = URI.create("hdl:11142/" + UUID.randomUUID().toString());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
         final List<Reference> references = new ArrayList<>();
         final Map<MetadataDocument, WorkspaceNode> documentsWithExternalSelfHandles = new HashMap<>();
         
@@ -162,7 +170,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                    mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                    mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection of failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -183,10 +191,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URL secondNodeURL = new URL("file:/workspaces/" + workspaceID + "/upload/parent/child.txt");
         final URI secondNodeURI = secondNodeURL.toURI();
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -196,7 +200,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, nodesToCheck);
+        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, matchIndex);
         //empty URI, so it will be set with the value of the location URL
         clearReferenceUri(mockMetadataDocument, firstDocumentLocation, firstDocumentLocationFile, mockFirstReference, firstRefURI, Boolean.FALSE);
         
@@ -210,7 +214,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                    mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                    mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection of failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -232,10 +236,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI secondDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File secondDocumentLocationFile = new File(secondDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         references.add(mockSecondReference);
@@ -248,7 +248,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         reference_IsAPage(mockFirstReference, firstRefURI);
         
         reference_IsNotAPage(mockSecondReference, secondRefURI);
-        reference_WithLocalUri_MatchesNode(mockSecondReference, mockSecondNode, secondDocumentLocation, secondRefLocalUri, secondRefURI, nodesToCheck);
+        reference_WithLocalUri_MatchesNode(mockSecondReference, mockSecondNode, secondDocumentLocation, secondRefLocalUri, secondRefURI, matchIndex);
         //empty URI, so it will be set with the value of the location URL
         clearReferenceUri(mockMetadataDocument, secondDocumentLocation, secondDocumentLocationFile, mockSecondReference, secondRefURI, Boolean.FALSE);
         
@@ -262,7 +262,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                    mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                    mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection of failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -280,10 +280,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URL secondNodeURL = new URL("file:/workspaces/" + workspaceID + "/upload/parent/child.txt");
         final URI secondNodeURI = secondNodeURL.toURI();
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -293,7 +289,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, null, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, nodesToCheck);
+        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, matchIndex);
         //empty URI, so it will be set with the value of the location URL
         clearReferenceUri(mockMetadataDocument, firstDocumentLocation, firstDocumentLocationFile, mockFirstReference, firstRefURI, Boolean.FALSE);
         
@@ -307,7 +303,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                    mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                    mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection of failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -327,10 +323,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URL secondNodeURL = new URL("file:/workspaces/" + workspaceID + "/upload/parent/child.txt");
         final URI secondNodeURI = secondNodeURL.toURI();
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -343,7 +335,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.FALSE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, nodesToCheck);
+        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, matchIndex);
         //empty URI, so it will be set with the value of the location URL
         clearReferenceUri(mockMetadataDocument, firstDocumentLocation, firstDocumentLocationFile, mockFirstReference, firstRefURI, Boolean.FALSE);
         
@@ -357,7 +349,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                    mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                    mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection of failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should have one entry", documentsWithExternalSelfHandles.size() == 1);
@@ -377,10 +369,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URL secondNodeURL = new URL("file:/workspaces/" + workspaceID + "/upload/parent/child.txt");
         final URI secondNodeURI = secondNodeURL.toURI();
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -392,7 +380,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, nodesToCheck);
+        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, matchIndex);
         //URI is a handle, so URI in DB should be updated
         updateReferenceDbUri_refHasLocalUri(firstRefURI, mockSecondNode, Boolean.TRUE);
         
@@ -406,7 +394,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
 
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection of failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -426,10 +414,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URL secondNodeURL = new URL("file:/workspaces/" + workspaceID + "/upload/parent/child.txt");
         final URI secondNodeURI = secondNodeURL.toURI();
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -441,7 +425,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, nodesToCheck);
+        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, matchIndex);
         //URI is a handle, so URI in DB should be updated
         updateReferenceDbUri_refHasLocalUri(firstRefURI, mockSecondNode, Boolean.TRUE);
         
@@ -455,7 +439,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
 
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection of failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -476,10 +460,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -492,7 +472,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithLocalUriButNoMatchThere_WithHandle_MatchesNode(mockFirstReference, mockSecondNode, firstRefLocalUri, Boolean.TRUE, Boolean.FALSE, firstRefURI, nodesToCheck, mockWorkspace);
+        reference_WithLocalUriButNoMatchThere_WithHandle_MatchesNode(mockFirstReference, mockSecondNode, firstRefLocalUri, Boolean.TRUE, Boolean.FALSE, firstRefURI, matchIndex, mockWorkspace);
         
         //change the reference URI to the workspace URL and save the document in the same location
         updateLocalUri(mockMetadataDocument, mockFirstReference, firstRefURI, Boolean.TRUE, Boolean.TRUE, mockSecondNode,
@@ -503,7 +483,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
 
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection of failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -526,10 +506,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URL secondNodeURL = new URL("file:/workspaces/" + workspaceID + "/upload/parent/child.txt");
         final URI secondNodeURI = secondNodeURL.toURI();
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -542,7 +518,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, nodesToCheck);
+        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefURI, matchIndex);
         //URI is a handle, so URI in DB should be updated
         updateReferenceDbUri_refHasLocalUri(firstRefURI, mockSecondNode, Boolean.TRUE);
         
@@ -556,7 +532,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertFalse("Collection with failed links should not be empty", failedLinks.isEmpty());
         assertTrue("Collection with failed links should have one entry", failedLinks.size() == 1);
@@ -585,10 +561,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URL secondNodeURL = new URL("file:/workspaces/" + workspaceID + "/upload/parent/child.txt");
         final URI secondNodeURI = secondNodeURL.toURI();
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -600,7 +572,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefLocalUri, nodesToCheck);
+        reference_WithLocalUri_MatchesNode(mockFirstReference, mockSecondNode, firstDocumentLocation, firstRefLocalUri, firstRefLocalUri, matchIndex);
         //URI is not a handle, so it should be cleared (since the local URL is already present in the localURI attribute)
         clearReferenceUri(mockMetadataDocument, firstDocumentLocation, firstDocumentLocationFile, mockFirstReference, firstRefLocalUri, Boolean.TRUE);
         
@@ -614,7 +586,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection with failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -635,10 +607,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -650,7 +618,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, nodesToCheck, mockWorkspace, null);
+        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, matchIndex, mockWorkspace, null);
         //change the reference URI to the workspace URL and save the document in the same location
         updateLocalUri(mockMetadataDocument, mockFirstReference, completeFirstRefURI, Boolean.TRUE, Boolean.TRUE, mockSecondNode,
                 secondNodeURL, null, null, secondNodeURI, completeFirstRefURI, firstDocumentLocation, firstDocumentLocationFile);
@@ -663,7 +631,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection with failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -685,10 +653,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -700,7 +664,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, nodesToCheck, mockWorkspace, null);
+        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, matchIndex, mockWorkspace, null);
         //change the reference URI to the workspace URL and save the document in the same location
         updateLocalUri(mockMetadataDocument, mockFirstReference, completeFirstRefURI, Boolean.TRUE, Boolean.FALSE, mockSecondNode,
                 secondNodeURL, null, null, secondNodeURI, null, firstDocumentLocation, firstDocumentLocationFile);
@@ -713,7 +677,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection with failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -732,10 +696,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -747,14 +707,14 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockExternalNode, Boolean.TRUE, Boolean.TRUE, firstRefURI, completeFirstRefURI, nodesToCheck, mockWorkspace, null);
+        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockExternalNode, Boolean.TRUE, Boolean.TRUE, firstRefURI, completeFirstRefURI, matchIndex, mockWorkspace, null);
         dealWithMatchedNode(mockExternalNode, externalNodeID, existingParents, mockFirstNode, Boolean.FALSE, firstNodeID, null);
         isRefInfoLink(mockMetadataDocument, mockFirstReference, Boolean.FALSE, mockSecondNode);
         
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection with failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -773,10 +733,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -790,14 +746,14 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockExternalNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, nodesToCheck, mockWorkspace, expectedException);
+        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockExternalNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, matchIndex, mockWorkspace, expectedException);
         
         removeReference(mockMetadataDocument, mockFirstNode, firstNodeID, firstDocumentLocation, firstDocumentLocationFile, mockFirstReference, firstRefURI, null);
         removeComponent();
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertFalse("Collection with failed links should not be empty", failedLinks.isEmpty());
         assertTrue("Collection with failed links should have one entry", failedLinks.size() == 1);
@@ -823,10 +779,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -838,7 +790,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.FALSE, Boolean.FALSE, firstRefURI, null, nodesToCheck, mockWorkspace, null);
+        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.FALSE, Boolean.FALSE, firstRefURI, null, matchIndex, mockWorkspace, null);
         //change the reference URI to the workspace URL and save the document in the same location
         updateLocalUri(mockMetadataDocument, mockFirstReference, firstRefURI, Boolean.FALSE, Boolean.FALSE, mockSecondNode,
                 secondNodeURL, null, null, secondNodeURI, null, firstDocumentLocation, firstDocumentLocationFile);
@@ -848,7 +800,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection with failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -862,10 +814,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         //URI is not a handle
         final URI firstRefURI = URI.create("http://some/external/folder/file.txt");
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -877,14 +825,14 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockExternalNode, Boolean.FALSE, Boolean.TRUE, firstRefURI, null, nodesToCheck, mockWorkspace, null);
+        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockExternalNode, Boolean.FALSE, Boolean.TRUE, firstRefURI, null, matchIndex, mockWorkspace, null);
         dealWithMatchedNode(mockExternalNode, externalNodeID, existingParents, mockFirstNode, Boolean.FALSE, firstNodeID, null);
         isRefInfoLink(mockMetadataDocument, mockFirstReference, Boolean.FALSE, mockSecondNode);
         
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection with failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -905,10 +853,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -922,7 +866,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, nodesToCheck, mockWorkspace, null);
+        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, matchIndex, mockWorkspace, null);
         //change the reference URI to the workspace URL and save the document in the same location
         updateLocalUri(mockMetadataDocument, mockFirstReference, completeFirstRefURI, Boolean.TRUE, Boolean.TRUE, mockSecondNode, secondNodeURL, null, null, secondNodeURI, completeFirstRefURI, firstDocumentLocation, firstDocumentLocationFile);
         
@@ -934,7 +878,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertFalse("Collection with failed links should not be empty", failedLinks.isEmpty());
         assertTrue("Collection with failed links should have one entry", failedLinks.size() == 1);
@@ -967,11 +911,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        nodesToCheck.add(mockThirdNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         references.add(mockSecondReference);
@@ -985,7 +924,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, nodesToCheck, mockWorkspace, null);
+        reference_WithoutLocalUri_MatchesNode(mockFirstReference, mockSecondNode, Boolean.TRUE, Boolean.FALSE, firstRefURI, completeFirstRefURI, matchIndex, mockWorkspace, null);
         //change the reference URI to the workspace URL and save the document in the same location
         updateLocalUri(mockMetadataDocument, mockFirstReference, completeFirstRefURI, Boolean.TRUE, Boolean.TRUE, mockSecondNode,
                 secondNodeURL, null, null, secondNodeURI, completeFirstRefURI, firstDocumentLocation, firstDocumentLocationFile);
@@ -996,7 +935,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         isRefInfoLink(mockMetadataDocument, mockFirstReference, Boolean.FALSE, mockSecondNode);
         
         reference_IsNotAPage(mockSecondReference, secondRefURI);
-        reference_WithoutLocalUri_MatchesNode(mockSecondReference, mockThirdNode, Boolean.FALSE, Boolean.FALSE, secondRefURI, null, nodesToCheck, mockWorkspace, null);
+        reference_WithoutLocalUri_MatchesNode(mockSecondReference, mockThirdNode, Boolean.FALSE, Boolean.FALSE, secondRefURI, null, matchIndex, mockWorkspace, null);
         //change the reference URI to the workspace URL and save the document in the same location
         updateLocalUri(mockMetadataDocument, mockSecondReference, secondRefURI, Boolean.FALSE, Boolean.FALSE, mockThirdNode,
                 thirdNodeURL, null, null, thirdNodeURI, null, firstDocumentLocation, firstDocumentLocationFile);
@@ -1006,7 +945,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertTrue("Collection with failed links should be empty", failedLinks.isEmpty());
         assertTrue("Map of documents with external self-handle should be empty", documentsWithExternalSelfHandles.isEmpty());
@@ -1023,10 +962,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -1036,7 +971,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutMatch(mockFirstReference, Boolean.FALSE, firstRefURI, nodesToCheck, mockWorkspace);
+        reference_WithoutMatch(mockFirstReference, Boolean.FALSE, firstRefURI, matchIndex, mockWorkspace);
         
         removeReference(mockMetadataDocument, mockFirstNode, firstNodeID, firstDocumentLocation,
                 firstDocumentLocationFile, mockFirstReference, firstRefURI, null);
@@ -1045,7 +980,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertFalse("Collection with failed links should not be empty", failedLinks.isEmpty());
         assertTrue("Collection with failed links should have one entry", failedLinks.size() == 1);
@@ -1068,10 +1003,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         final URI firstDocumentLocation = URI.create("file:/workspaces/" + workspaceID + "/upload/parent.cmdi");
         final File firstDocumentLocationFile = new File(firstDocumentLocation.getPath());
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -1081,14 +1012,14 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutMatch(mockFirstReference, Boolean.TRUE, firstRefURI, nodesToCheck, mockWorkspace);
+        reference_WithoutMatch(mockFirstReference, Boolean.TRUE, firstRefURI, matchIndex, mockWorkspace);
         
         removeReference(mockMetadataDocument, mockFirstNode, firstNodeID, firstDocumentLocation, firstDocumentLocationFile, mockFirstReference, firstRefURI, null);
         removeComponent();
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertFalse("Collection with failed links should not be empty", failedLinks.isEmpty());
         assertTrue("Collection with failed links should have one entry", failedLinks.size() == 1);
@@ -1108,10 +1039,6 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         //URI is not a handle
         final URI firstRefURI = URI.create("parent/child.txt");
         
-        final Collection<WorkspaceNode> nodesToCheck = new ArrayList<>();
-        nodesToCheck.add(mockFirstNode);
-        nodesToCheck.add(mockSecondNode);
-        
         final List<Reference> references = new ArrayList<>();
         references.add(mockFirstReference);
         
@@ -1123,14 +1050,14 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
         initialChecks(mockMetadataDocument, parentDocumentHandle, Boolean.TRUE, references);
         //loop over references
         reference_IsNotAPage(mockFirstReference, firstRefURI);
-        reference_WithoutMatch(mockFirstReference, Boolean.FALSE, firstRefURI, nodesToCheck, mockWorkspace);
+        reference_WithoutMatch(mockFirstReference, Boolean.FALSE, firstRefURI, matchIndex, mockWorkspace);
         
         removeReference(mockMetadataDocument, mockFirstNode, firstNodeID, null, null, mockFirstReference, firstRefURI, expectedException);
         removeComponent();
         
         Collection<ImportProblem> failedLinks =
                 workspaceUploadReferenceHandler.matchReferencesWithNodes(
-                mockWorkspace, nodesToCheck, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
+                mockWorkspace, matchIndex, mockFirstNode, mockMetadataDocument, documentsWithExternalSelfHandles);
         
         assertFalse("Collection with failed links should not be empty", failedLinks.isEmpty());
         assertTrue("Collection with failed links should have one entry", failedLinks.size() == 1);
@@ -1184,7 +1111,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
     }
     
     private void reference_WithLocalUri_MatchesNode(final Reference mockReference, final WorkspaceNode mockNode, final URI documentLocation,
-            final URI firstRefLocalUri, final URI firstRefURI, final Collection<WorkspaceNode> nodesToCheck) throws URISyntaxException, IOException {
+            final URI firstRefLocalUri, final URI firstRefURI, final UploadMatchIndex matchIndex) throws URISyntaxException, IOException {
     	    	
         final URI metadataDocumentLocation = new URI("file://" + baseDirectory + documentLocation.getPath());
     	final Path metadataDocumentPath = Paths.get(metadataDocumentLocation.getPath());
@@ -1201,12 +1128,12 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
             	oneOf(mockMetadataDocument).getFileLocation(); will(returnValue(metadataDocumentLocation));
             	
                 //matches second node
-                oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(nodesToCheck, resourceFile.toString());
+                oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(matchIndex, resourceFile.toString());
                     will(returnValue(mockNode));
             	
             } else {
                 //matches second node
-                oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(nodesToCheck, firstRefLocalUri.toString());
+                oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(matchIndex, firstRefLocalUri.toString());
                     will(returnValue(mockNode));
             }
         }});
@@ -1214,7 +1141,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
     
     private void reference_WithoutLocalUri_MatchesNode(final Reference mockReference, final WorkspaceNode mockNode,
             final boolean hasHandle, final boolean isExternal, final URI firstRefURI, final URI completeFirstRefURI,
-            final Collection<WorkspaceNode> nodesToCheck, final Workspace workspace, final Exception expectedException) {
+            final UploadMatchIndex matchIndex, final Workspace workspace, final Exception expectedException) {
         
         context.checking(new Expectations() {{
             //first reference contains a handle
@@ -1229,16 +1156,16 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
                 oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(firstRefURI); will(returnValue(completeFirstRefURI));
                 
                 if(expectedException != null) {
-                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, nodesToCheck, completeFirstRefURI);
+                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, matchIndex, completeFirstRefURI);
                         will(throwException(expectedException));
                 } else {
                     if(!isExternal) {
                         //matches second node
-                        oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, nodesToCheck, completeFirstRefURI);
+                        oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, matchIndex, completeFirstRefURI);
                             will(returnValue(mockNode));
                     } else {
                         //doesn't match any node
-                        oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, nodesToCheck, completeFirstRefURI);
+                        oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, matchIndex, completeFirstRefURI);
                             will(returnValue(null));
                     }
                 }
@@ -1247,11 +1174,11 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
             context.checking(new Expectations() {{
                 if(!isExternal) {
                     //matches second node
-                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(nodesToCheck, firstRefURI.toString());
+                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(matchIndex, firstRefURI.toString());
                         will(returnValue(mockNode));
                 } else {
                     //doesn't match any node
-                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(nodesToCheck, firstRefURI.toString());
+                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(matchIndex, firstRefURI.toString());
                         will(returnValue(null));
                 }
             }});
@@ -1267,14 +1194,14 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
     }
     
     private void reference_WithLocalUriButNoMatchThere_WithHandle_MatchesNode(final Reference mockReference, final WorkspaceNode mockNode, final URI firstRefLocalUri,
-            final boolean hasHandle, final boolean isExternal, final URI firstRefURI, final Collection<WorkspaceNode> nodesToCheck, final Workspace workspace) {
+            final boolean hasHandle, final boolean isExternal, final URI firstRefURI, final UploadMatchIndex matchIndex, final Workspace workspace) {
         
         context.checking(new Expectations() {{
             //first reference contains a localURI
             oneOf(mockReference).getLocation(); will(returnValue(firstRefLocalUri));
             oneOf(mockReference).getURI(); will(returnValue(firstRefURI));
             //localURI doesn't match any node
-            oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(nodesToCheck, firstRefLocalUri.toString());
+            oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(matchIndex, firstRefLocalUri.toString());
                 will(returnValue(null));
 
             oneOf(mockHandleParser).isHandleUriWithKnownPrefix(firstRefURI); will(returnValue(hasHandle));
@@ -1285,11 +1212,11 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
                 oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(firstRefURI); will(returnValue(firstRefURI));
                 if(!isExternal) {
                     //matches second node
-                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, nodesToCheck, firstRefURI);
+                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, matchIndex, firstRefURI);
                         will(returnValue(mockNode));
                 } else {
                     //doesn't match any node
-                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, nodesToCheck, firstRefURI);
+                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, matchIndex, firstRefURI);
                         will(returnValue(null));
                 }
             }});
@@ -1297,11 +1224,11 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
             context.checking(new Expectations() {{
                 if(!isExternal) {
                     //matches second node
-                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(nodesToCheck, firstRefURI.toString());
+                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(matchIndex, firstRefURI.toString());
                         will(returnValue(mockNode));
                 } else {
                     //doesn't match any node
-                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(nodesToCheck, firstRefURI.toString());
+                    oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(matchIndex, firstRefURI.toString());
                         will(returnValue(null));
                 }
             }});
@@ -1317,7 +1244,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
     }
     
     private void reference_WithoutMatch(final Reference mockReference, final boolean hasHandle,
-            final URI firstRefURI, final Collection<WorkspaceNode> nodesToCheck, final Workspace workspace) {
+            final URI firstRefURI, final UploadMatchIndex matchIndex, final Workspace workspace) {
         
         context.checking(new Expectations() {{
             //first reference contains a URI
@@ -1330,13 +1257,13 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
             context.checking(new Expectations() {{
                 oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(firstRefURI); will(returnValue(firstRefURI));
                 //no matches
-                oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, nodesToCheck, firstRefURI);
+                oneOf(mockWorkspaceUploadNodeMatcher).findNodeForHandle(workspace, matchIndex, firstRefURI);
                     will(returnValue(null));
             }});
         } else {
             context.checking(new Expectations() {{
                 //no matches
-                oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(nodesToCheck, firstRefURI.toString());
+                oneOf(mockWorkspaceUploadNodeMatcher).findNodeForPath(matchIndex, firstRefURI.toString());
                     will(returnValue(null));
             }});
         }
@@ -1374,6 +1301,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
             oneOf(mockHandleParser).prepareAndValidateHandleWithHdlPrefix(referenceUri); will(returnValue(referenceUri));
             oneOf(mockNode).setArchiveURI(referenceUri);
             oneOf(mockWorkspaceDao).updateNodeArchiveUri(mockNode);
+            oneOf(mockWorkspaceUploadNodeMatcher).updateMatchIndex(matchIndex, mockNode);
         }});
     }
     
@@ -1387,6 +1315,7 @@ public class LamusWorkspaceUploadReferenceHandlerTest {
             if(!handlesEquivalent) {
                 oneOf(mockNode).setArchiveURI(referenceUri);
                 oneOf(mockWorkspaceDao).updateNodeArchiveUri(mockNode);
+                oneOf(mockWorkspaceUploadNodeMatcher).updateMatchIndex(matchIndex, mockNode);
             }
         }});
     }
@@ -22,17 +22,33 @@ import nl.mpi.lamus.workspace.importing.implementation.ImportProblem;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import nl.mpi.archiving.corpusstructure.core.NodeNotFoundException;
 import nl.mpi.handle.util.HandleParser;
@@ -47,6 +63,7 @@ import nl.mpi.lamus.filesystem.WorkspaceDirectoryHandler;
 import nl.mpi.lamus.typechecking.TypecheckedResults;
 import nl.mpi.lamus.exception.TypeCheckerException;
 import nl.mpi.lamus.exception.WorkspaceException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.filesystem.WorkspaceFileHandler;
 import nl.mpi.lamus.workspace.factory.WorkspaceNodeFactory;
 import nl.mpi.lamus.workspace.importing.NodeDataRetriever;
@@ -61,6 +78,7 @@ import nl.mpi.lamus.metadata.validation.implementation.MetadataValidationIssueSe
 import nl.mpi.lamus.typechecking.testing.ValidationIssueCollectionMatcher;
 import nl.mpi.lamus.workspace.model.NodeUtil;
 import nl.mpi.lamus.workspace.model.Workspace;
+import nl.mpi.lamus.workspace.upload.UploadProcessingContext;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploadHelper;
 import nl.mpi.lamus.workspace.upload.WorkspaceUploader;
 import nl.mpi.metadata.api.MetadataAPI;
@@ -72,7 +90,9 @@ import org.apache.commons.fileupload.FileItem;
 import org.hamcrest.Description;
 import org.hamcrest.Factory;
 import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
 import org.jmock.Expectations;
+import org.jmock.Sequence;
 import org.jmock.api.Action;
 import org.jmock.api.Invocation;
 import org.jmock.auto.Mock;
@@ -88,6 +108,7 @@ import static org.junit.Assert.*;
 
 import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
+import org.springframework.beans.factory.ObjectFactory;
 
 import org.jmock.lib.concurrent.Synchroniser;
 
@@ -120,21 +141,16 @@ public class LamusWorkspaceUploaderTest {
     
     @Mock Workspace mockWorkspace;
     @Mock FileItem mockFileItem;
-    @Mock InputStream mockInputStream;
     @Mock FileInputStream mockFileInputStream;
     @Mock File mockUploadedFile;
     @Mock File mockWorkspaceTopNodeFile;
     @Mock WorkspaceNode mockWorkspaceTopNode;
     @Mock TypecheckedResults mockTypecheckedResults;
+    @Mock TypecheckedResults mockTypecheckedResults2;
     
     @Mock MetadataDocument mockMetadataDocument;
     @Mock MetadataDocumentType mockMetadataDocumentType;
     
-    @Mock ZipInputStream mockZipInputStream;
-    @Mock ZipEntry mockFirstZipEntry;
-    @Mock ZipEntry mockSecondZipEntry;
-    @Mock ZipEntry mockThirdZipEntry;
-    
     @Mock File mockFile1;
     @Mock File mockFile2;
     
@@ -149,7 +165,20 @@ public class LamusWorkspaceUploaderTest {
         return new ValidationIssueCollectionMatcher(collection);
     }
     
+    @Factory
+    public static Matcher<UploadProcessingContext> processingContextWithDocument(URL fileURL, MetadataDocument document) {
+        return new UploadProcessingContextMatcher(fileURL, document);
+    }
+    
+    @Factory
+    public static Matcher<UploadProcessingContext> emptyProcessingContext() {
+        return new UploadProcessingContextMatcher(null, null);
+    }
+    
     private WorkspaceUploader uploader;
+    private ExecutorService uploadProcessingExecutorService;
+    private final int maxZipUploadEntries = 10;
+    private final long maxZipUploadSizeInMegabytes = 1;
     
     private File baseDirectory;
     private File workspaceBaseDirectory;// = new File("/lamus/workspaces");
@@ -176,13 +205,8 @@ public class LamusWorkspaceUploaderTest {
     
     @Before
     public void setUp() throws IOException {
-        uploader = new LamusWorkspaceUploader(mockNodeDataRetriever,
-                mockWorkspaceDirectoryHandler, mockWorkspaceFileHandler,
-                mockWorkspaceNodeFactory, mockWorkspaceDao,
-                mockWorkspaceUploadHelper, mockMetadataAPI,
-                mockMetadataApiBridge, mockWorkspaceFileValidator,
-                mockArchiveFileLocationProvider, mockArchiveFileHelper,
-                mockNodeUtil, mockHandleParser);
+        uploadProcessingExecutorService = Executors.newFixedThreadPool(2);
+        uploader = createUploader(mockNodeDataRetriever, mockWorkspaceFileHandler);
         
         baseDirectory = testFolder.newFolder("lamus");
         workspaceBaseDirectory = new File(baseDirectory, "workspace");
@@ -192,6 +216,7 @@ public class LamusWorkspaceUploaderTest {
     
     @After
     public void tearDown() {
+        uploadProcessingExecutorService.shutdownNow();
     }
 
     @Test
@@ -208,9 +233,10 @@ public class LamusWorkspaceUploaderTest {
     }
     
     @Test
-    public void uploadFile_nameNotValid() throws IOException, DisallowedPathException {
+    public void uploadFileFromDisk_nameNotValid() throws IOException, DisallowedPathException {
         
         final String filename = "file with spaces.txt";
+        final File uploadedFile = new File(testFolder.getRoot(), "spooledUpload.tmp");
         final String correctedFilename = "file_with_spaces.txt";
         
         context.checking(new Expectations() {{
@@ -219,7 +245,7 @@ public class LamusWorkspaceUploaderTest {
         }});
         
         try {
-            uploader.uploadFileIntoWorkspace(workspaceID, mockInputStream, filename);
+            uploader.uploadFileIntoWorkspace(workspaceID, uploadedFile, filename);
             fail("should have thrown exception");
         } catch(DisallowedPathException ex) {
             assertEquals("Problematic filename different from expected", filename, ex.getProblematicPath());
@@ -227,19 +253,21 @@ public class LamusWorkspaceUploaderTest {
     }
     
     @Test
-    public void uploadFile_nameNotAllowed() throws IOException, DisallowedPathException {
+    public void uploadFileFromDisk_nameNotAllowed() throws IOException, DisallowedPathException {
         
         final String filename = "temp";
+        final File uploadedFile = new File(testFolder.getRoot(), "spooledUpload.tmp");
         final DisallowedPathException expectedException = new DisallowedPathException(filename, "path is not allowed and so on");
         
         context.checking(new Expectations() {{
         
             oneOf(mockArchiveFileHelper).correctPathElement(with(equal(filename)), with(any(String.class))); will(returnValue(filename));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(filename); will(throwException(expectedException));
+            never(mockWorkspaceFileHandler).moveUploadedFileToTargetFile(with(any(File.class)), with(any(File.class)));
         }});
         
         try {
-            uploader.uploadFileIntoWorkspace(workspaceID, mockInputStream, filename);
+            uploader.uploadFileIntoWorkspace(workspaceID, uploadedFile, filename);
             fail("should have thrown exception");
         } catch(DisallowedPathException ex) {
             assertEquals("Exception different from expected", expectedException, ex);
@@ -247,47 +275,31 @@ public class LamusWorkspaceUploaderTest {
     }
     
     @Test
-    public void uploadFile_noNameChange() throws IOException, DisallowedPathException {
+    public void uploadFileFromDisk() throws IOException, DisallowedPathException {
         
         final String filename = "file.cmdi";
+        final File uploadedFile = new File(testFolder.getRoot(), "spooledUpload.tmp");
         final File expectedFile = new File(workspaceUploadDirectory, filename);
+        final CopiedFileInfo movedFileInfo = new CopiedFileInfo(expectedFile, 10, null);
         
         context.checking(new Expectations() {{
             
             oneOf(mockArchiveFileHelper).correctPathElement(with(equal(filename)), with(any(String.class))); will(returnValue(filename));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(filename);
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockInputStream, expectedFile);
+            oneOf(mockWorkspaceFileHandler).moveUploadedFileToTargetFile(uploadedFile, expectedFile); will(returnValue(movedFileInfo));
         }});
         
-        File resultingFile = uploader.uploadFileIntoWorkspace(workspaceID, mockInputStream, filename);
+        CopiedFileInfo result = uploader.uploadFileIntoWorkspace(workspaceID, uploadedFile, filename);
         
-        assertEquals("Resulting file different from expected", expectedFile, resultingFile);
+        assertEquals("Moved file information different from expected", movedFileInfo, result);
     }
     
     @Test
-    public void uploadFile_nameChanged() throws IOException, DisallowedPathException {
-        
-        final String filename = "file.cmdi";
-        final File expectedFile = new File(workspaceUploadDirectory, filename);
-        
-        context.checking(new Expectations() {{
-            
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(filename)), with(any(String.class))); will(returnValue(filename));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(filename);
-            oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockInputStream, expectedFile);
-        }});
-        
-        File resultingFile = uploader.uploadFileIntoWorkspace(workspaceID, mockInputStream, filename);
-        
-        assertEquals("Resulting file different from expected", expectedFile, resultingFile);
-    }
-    
-    @Test
-    public void uploadFile_ThrowsException() throws IOException, DisallowedPathException {
+    public void uploadFileFromDisk_ThrowsException() throws IOException, DisallowedPathException {
         
         final String filename = "file.cmdi";
+        final File uploadedFile = new File(testFolder.getRoot(), "spooledUpload.tmp");
         final File expectedFile = new File(workspaceUploadDirectory, filename);
         
         final IOException expectedException = new IOException("some exception message");
@@ -297,11 +309,11 @@ public class LamusWorkspaceUploaderTest {
             oneOf(mockArchiveFileHelper).correctPathElement(with(equal(filename)), with(any(String.class))); will(returnValue(filename));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(filename);
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockInputStream, expectedFile); will(throwException(expectedException));
+            oneOf(mockWorkspaceFileHandler).moveUploadedFileToTargetFile(uploadedFile, expectedFile); will(throwException(expectedException));
         }});
         
         try {
-            uploader.uploadFileIntoWorkspace(workspaceID, mockInputStream, filename);
+            uploader.uploadFileIntoWorkspace(workspaceID, uploadedFile, filename);
             fail("should have thrown exception");
         } catch(IOException ex) {
             assertEquals("Exception different from expected", expectedException, ex);
@@ -309,397 +321,392 @@ public class LamusWorkspaceUploaderTest {
     }
     
     @Test
-    public void uploadZipFile_IsDirectory() throws IOException, DisallowedPathException {
+    public void uploadZipFileFromDisk_DirectoriesAndFiles() throws IOException, DisallowedPathException {
         
-        final String firstEntryName = "directory";
+        final String firstEntryName = "directory/";
+        final File createdDirectory = new File(workspaceUploadDirectory, firstEntryName);
+        final String secondEntryName = "directory/file.cmdi";
+        final File firstCreatedFile = new File(workspaceUploadDirectory, secondEntryName);
+        // no entry for the directory, as in some zips created in windows
+        final String thirdEntryName = "other/file.txt";
+        final File secondCreatedFile = new File(workspaceUploadDirectory, thirdEntryName);
+        
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put(firstEntryName, null);
+        entries.put(secondEntryName, "some metadata");
+        entries.put(thirdEntryName, "some text");
+        final File zipFile = createZipFile(entries);
+        workspaceUploadDirectory.mkdirs();
         
         final ZipUploadResult expectedResult = new ZipUploadResult();
+        expectedResult.addSuccessfulUpload(new CopiedFileInfo(firstCreatedFile, "some metadata".length(), ""));
+        expectedResult.addSuccessfulUpload(new CopiedFileInfo(secondCreatedFile, "some text".length(), ""));
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryName)), with(any(String.class))); will(returnValue(firstEntryName));
+            
+            // all the entries are checked first
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("directory")), with(any(String.class))); will(returnValue("directory"));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.TRUE));
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file.cmdi")), with(any(String.class))); will(returnValue("file.cmdi"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(secondEntryName);
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file.txt")), with(any(String.class))); will(returnValue("file.txt"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(thirdEntryName);
             
-            oneOf(mockWorkspaceDirectoryHandler).createDirectoryInWorkspace(workspaceID, firstEntryName);
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(null));
+            oneOf(mockWorkspaceDirectoryHandler).createDirectoryInWorkspace(workspaceID, firstEntryName); will(new CreateDirectoryOnInvokeAction(createdDirectory));
+            
+            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(equal(firstCreatedFile)));
+                will(new CopyStreamToFileAction(firstCreatedFile));
+            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(equal(secondCreatedFile)));
+                will(new CopyStreamToFileAction(secondCreatedFile));
         }});
         
-        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
+        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, zipFile);
         
         assertEquals("Result different from expected", expectedResult, result);
+        assertEquals("Content of extracted file different from expected", "some metadata", readFile(firstCreatedFile));
+        assertEquals("Content of extracted file different from expected", "some text", readFile(secondCreatedFile));
     }
     
     @Test
-    public void uploadZipFile_IsDirectory_EndingWithSlash() throws IOException, DisallowedPathException {
+    public void uploadZipFileFromDisk_withOneSuccessfulAndOneFailedUpload() throws IOException, DisallowedPathException {
         
-        final String firstEntryName = "directory/";
-        final String firstEntryNameWithoutSlash = "directory";
+        final String firstEntryName = "directory/file1.cmdi";
+        final File existingFile = new File(workspaceUploadDirectory, firstEntryName);
+        existingFile.getParentFile().mkdirs();
+        existingFile.createNewFile();
+        final String secondEntryName = "directory/file2.cmdi";
+        final File createdFile = new File(workspaceUploadDirectory, secondEntryName);
+        
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put(firstEntryName, "some metadata");
+        entries.put(secondEntryName, "some other metadata");
+        final File zipFile = createZipFile(entries);
         
         final ZipUploadResult expectedResult = new ZipUploadResult();
+        expectedResult.addFailedUpload(new FileImportProblem(existingFile, "A file with the same path already exists", null));
+        expectedResult.addSuccessfulUpload(new CopiedFileInfo(createdFile, "some other metadata".length(), ""));
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryNameWithoutSlash)), with(any(String.class))); will(returnValue(firstEntryNameWithoutSlash));
+            
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file1.cmdi")), with(any(String.class))); will(returnValue("file1.cmdi"));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.TRUE));
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file2.cmdi")), with(any(String.class))); will(returnValue("file2.cmdi"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(secondEntryName);
             
-            oneOf(mockWorkspaceDirectoryHandler).createDirectoryInWorkspace(workspaceID, firstEntryName);
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(null));
+            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(equal(createdFile)));
+                will(new CopyStreamToFileAction(createdFile));
         }});
         
-        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
+        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, zipFile);
         
         assertEquals("Result different from expected", expectedResult, result);
+        assertEquals("Existing file should not have been changed", 0, existingFile.length());
     }
     
     @Test
-    public void uploadZipFile_IsNotDirectory() throws IOException, DisallowedPathException {
+    public void uploadZipFileFromDisk_NameNotAllowed() throws IOException, DisallowedPathException {
         
-        final String firstEntryName = "file.cmdi";
-        final File firstEntryFile = new File(workspaceUploadDirectory, firstEntryName);
+        final String firstEntryName = "dir/";
+        final String secondEntryName = "dir/file.cmdi";
+        final String thirdEntryName = "temp/";
         
-        final ZipUploadResult expectedResult = new ZipUploadResult();
-        expectedResult.addSuccessfulUpload(firstEntryFile);
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put(firstEntryName, null);
+        entries.put(secondEntryName, "some metadata");
+        entries.put(thirdEntryName, null);
+        final File zipFile = createZipFile(entries);
+        
+        final DisallowedPathException expectedException = new DisallowedPathException(thirdEntryName, "Path not allowed and so on...");
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryName)), with(any(String.class))); will(returnValue(firstEntryName));
+            
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("dir")), with(any(String.class))); will(returnValue("dir"));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockZipInputStream, firstEntryFile);
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(null));
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file.cmdi")), with(any(String.class))); will(returnValue("file.cmdi"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(secondEntryName);
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("temp")), with(any(String.class))); will(returnValue("temp"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(thirdEntryName); will(throwException(expectedException));
+            
+            // paths are checked before anything is created, so nothing has to be deleted
+            never(mockWorkspaceDirectoryHandler).createDirectoryInWorkspace(with(any(Integer.class)), with(any(String.class)));
+            never(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(any(File.class)));
         }});
         
-        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-        
-        assertEquals("Result different from expected", expectedResult, result);
+        try {
+            uploader.uploadZipFileIntoWorkspace(workspaceID, zipFile);
+            fail("should have thrown exception");
+        } catch(DisallowedPathException ex) {
+            assertEquals("Exception different from expected", expectedException, ex);
+        }
     }
     
     @Test
-    public void uploadZipFile_IsNotDirectory_fileNeedsRenaming() throws IOException, DisallowedPathException {
-        
-        final String firstEntryName = "file.cmdi";
-        final File firstEntryFile = new File(workspaceUploadDirectory, firstEntryName);
+    public void uploadZipFileFromDisk_TooManyEntries() throws IOException, DisallowedPathException {
         
-        final ZipUploadResult expectedResult = new ZipUploadResult();
-        expectedResult.addSuccessfulUpload(firstEntryFile);
+        final Map<String, String> entries = new LinkedHashMap<>();
+        for(int i = 0; i <= maxZipUploadEntries; i++) {
+            entries.put("file" + i + ".txt", "some text");
+        }
+        final File zipFile = createZipFile(entries);
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryName)), with(any(String.class))); will(returnValue(firstEntryName));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockZipInputStream, firstEntryFile);
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(null));
+            never(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(any(File.class)));
         }});
         
-        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-        
-        assertEquals("Result different from expected", expectedResult, result);
+        try {
+            uploader.uploadZipFileIntoWorkspace(workspaceID, zipFile);
+            fail("should have thrown exception");
+        } catch(IOException ex) {
+            assertTrue("Exception message different from expected", ex.getMessage().contains("more than the allowed " + maxZipUploadEntries));
+        }
     }
     
     @Test
-    public void uploadZipFile_DirectoryAndFile() throws IOException, DisallowedPathException {
+    public void uploadZipFileFromDisk_TooLarge() throws IOException, DisallowedPathException {
         
-        final String firstEntryName = "directory/";
-        final String firstEntryNameWithoutSlash = "directory";
-        final File createdDirectory = new File(workspaceUploadDirectory, firstEntryName);
-        final String secondEntryName = "directory/file.cmdi";
-        final String secondEntryFilename = "file.cmdi";
-        final File createdFile = new File(workspaceUploadDirectory, secondEntryName);
+        final String entryName = "file.txt";
         
-        final ZipUploadResult expectedResult = new ZipUploadResult();
-        expectedResult.addSuccessfulUpload(createdFile);
+        final char[] largeContent = new char[(int) maxZipUploadSizeInMegabytes * 1024 * 1024 + 1];
+        Arrays.fill(largeContent, 'a');
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put(entryName, new String(largeContent));
+        final File zipFile = createZipFile(entries);
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryNameWithoutSlash)), with(any(String.class))); will(returnValue(firstEntryNameWithoutSlash));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.TRUE));
-            
-            oneOf(mockWorkspaceDirectoryHandler).createDirectoryInWorkspace(workspaceID, firstEntryName); will(new CreateDirectoryOnInvokeAction(createdDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockSecondZipEntry));
-
-            // second loop iteration
-            
-            allowing(mockSecondZipEntry).getName(); will(returnValue(secondEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(secondEntryFilename)), with(any(String.class))); will(returnValue(secondEntryFilename));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(secondEntryName);
-            allowing(mockSecondZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockZipInputStream, createdFile);
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(null));
-        }});
-        
-        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-        
-        assertEquals("Result different from expected", expectedResult, result);
-    }
-    
-    @Test
-    public void uploadZipFile_DirectoryAndFile_Windows() throws IOException, DisallowedPathException {
-        
-        final String entryName = "directory/file.cmdi";
-        final File createdFile = new File(workspaceUploadDirectory, entryName);
-        
-        final ZipUploadResult expectedResult = new ZipUploadResult();
-        expectedResult.addSuccessfulUpload(createdFile);
-        
-        context.checking(new Expectations() {{
-        	oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-        	oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-        	oneOf(mockFirstZipEntry).getName(); will(returnValue(entryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(createdFile.getName())), with(any(String.class))); will(returnValue(createdFile.getName()));
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(entryName)), with(any(String.class))); will(returnValue(entryName));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(entryName);
-            oneOf(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockZipInputStream, createdFile);
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(null));
+            never(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(any(File.class)));
         }});
         
-        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-        
-        assertEquals("Result different from expected", expectedResult, result);
+        try {
+            uploader.uploadZipFileIntoWorkspace(workspaceID, zipFile);
+            fail("should have thrown exception");
+        } catch(IOException ex) {
+            assertTrue("Exception message different from expected", ex.getMessage().contains("more than the allowed"));
+        }
     }
     
     @Test
-    public void uploadZipFile_withOneFailedUpload() throws IOException, DisallowedPathException {
-        
-        
+    public void uploadZipFileFromDisk_ExtractionFails() throws IOException, DisallowedPathException {
         
         final String firstEntryName = "directory/";
-        final String firstEntryNameWithoutSlash = "directory";
-        final File existingDirectory = new File(workspaceUploadDirectory, firstEntryName);
-        existingDirectory.mkdirs();
-        final String secondEntryName = "directory/file.cmdi";
-        final String secondEntryFilename = "file.cmdi";
-        final File existingFile = new File(workspaceUploadDirectory, secondEntryName);
-        existingFile.createNewFile();
+        final File createdDirectory = new File(workspaceUploadDirectory, firstEntryName);
+        final String secondEntryName = "directory/file1.cmdi";
+        final File firstCreatedFile = new File(workspaceUploadDirectory, secondEntryName);
+        final String thirdEntryName = "directory/file2.cmdi";
+        final File secondCreatedFile = new File(workspaceUploadDirectory, thirdEntryName);
         
-        final ZipUploadResult expectedResult = new ZipUploadResult();
-        expectedResult.addFailedUpload(new FileImportProblem(existingFile, "A file with the same path already exists", null));
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put(firstEntryName, null);
+        entries.put(secondEntryName, "some metadata");
+        entries.put(thirdEntryName, "some other metadata");
+        final File zipFile = createZipFile(entries);
+        workspaceUploadDirectory.mkdirs();
+        
+        final IOException expectedException = new IOException("some exception message");
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryNameWithoutSlash)), with(any(String.class))); will(returnValue(firstEntryNameWithoutSlash));
+            
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("directory")), with(any(String.class))); will(returnValue("directory"));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.TRUE));
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file1.cmdi")), with(any(String.class))); will(returnValue("file1.cmdi"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(secondEntryName);
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file2.cmdi")), with(any(String.class))); will(returnValue("file2.cmdi"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(thirdEntryName);
             
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockSecondZipEntry));
-
-            // second loop iteration
+            oneOf(mockWorkspaceDirectoryHandler).createDirectoryInWorkspace(workspaceID, firstEntryName); will(new CreateDirectoryOnInvokeAction(createdDirectory));
             
-            allowing(mockSecondZipEntry).getName(); will(returnValue(secondEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(secondEntryFilename)), with(any(String.class))); will(returnValue(secondEntryFilename));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(secondEntryName);
-            allowing(mockSecondZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(null));
+            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(equal(firstCreatedFile)));
+                will(new CopyStreamToFileAction(firstCreatedFile));
+            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(equal(secondCreatedFile)));
+                will(throwException(expectedException));
+            
+            // the extracted file and the created directory are deleted
+            oneOf(mockWorkspaceFileHandler).deleteFile(firstCreatedFile);
+            oneOf(mockWorkspaceFileHandler).deleteFile(createdDirectory);
         }});
         
-        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-        
-        assertEquals("Result different from expected", expectedResult, result);
+        try {
+            uploader.uploadZipFileIntoWorkspace(workspaceID, zipFile);
+            fail("should have thrown exception");
+        } catch(IOException ex) {
+            assertEquals("Exception different from expected", expectedException, ex);
+        }
     }
     
     @Test
-    public void uploadZipFile_withOneSuccessfulAndOneFailedUpload() throws IOException, DisallowedPathException {
-        
-        
+    public void uploadZipFileFromDisk_ExtractionFails_OtherExtractionsAbortedAndWaitedFor() throws IOException, DisallowedPathException {
         
         final String firstEntryName = "directory/";
-        final String firstEntryNameWithoutSlash = "directory";
-        final File existingDirectory = new File(workspaceUploadDirectory, firstEntryName);
-        existingDirectory.mkdirs();
+        final File createdDirectory = new File(workspaceUploadDirectory, firstEntryName);
         final String secondEntryName = "directory/file1.cmdi";
-        final String secondEntryFilename = "file1.cmdi";
-        final File existingFile = new File(workspaceUploadDirectory, secondEntryName);
-        existingFile.createNewFile();
+        final File firstCreatedFile = new File(workspaceUploadDirectory, secondEntryName);
         final String thirdEntryName = "directory/file2.cmdi";
-        final String thirdEntryFilename = "file2.cmdi";
-        final File createdFile = new File(workspaceUploadDirectory, thirdEntryName);
+        final File secondCreatedFile = new File(workspaceUploadDirectory, thirdEntryName);
+        final String fourthEntryName = "directory/file3.cmdi";
+        final File thirdCreatedFile = new File(workspaceUploadDirectory, fourthEntryName);
+        
+        final Map<String, String> entries = new LinkedHashMap<>();
+        entries.put(firstEntryName, null);
+        entries.put(secondEntryName, "some metadata");
+        entries.put(thirdEntryName, "some other metadata");
+        entries.put(fourthEntryName, "some more metadata");
+        final File zipFile = createZipFile(entries);
+        workspaceUploadDirectory.mkdirs();
         
-        final ZipUploadResult expectedResult = new ZipUploadResult();
-        expectedResult.addFailedUpload(new FileImportProblem(existingFile, "A file with the same path already exists", null));
-        expectedResult.addSuccessfulUpload(createdFile);
+        final IOException expectedException = new IOException("some exception message");
+        final CountDownLatch secondExtractionStarted = new CountDownLatch(1);
+        final AtomicBoolean secondExtractionInterrupted = new AtomicBoolean(false);
+        final AtomicBoolean secondExtractionFinished = new AtomicBoolean(false);
+        
+        // the first extraction only fails when the second one is already running;
+        // the second one runs until it is interrupted
+        WorkspaceFileHandler fileHandler = withInvocationHook(WorkspaceFileHandler.class, mockWorkspaceFileHandler, new InvocationHook() {
+            @Override
+            void beforeInvocation(Method method, Object[] args) throws Exception {
+                if(!"copyInputStreamToTargetFile".equals(method.getName())) {
+                    return;
+                }
+                if(firstCreatedFile.equals(args[1])) {
+                    assertTrue("Second extraction didn't start in time", secondExtractionStarted.await(10, TimeUnit.SECONDS));
+                } else if(secondCreatedFile.equals(args[1])) {
+                    secondExtractionStarted.countDown();
+                    try {
+                        new CountDownLatch(1).await(10, TimeUnit.SECONDS);
+                    } catch(InterruptedException ex) {
+                        secondExtractionInterrupted.set(true);
+                        throw new InterruptedIOException();
+                    } finally {
+                        secondExtractionFinished.set(true);
+                    }
+                    fail("Second extraction should have been interrupted");
+                }
+            }
+        });
+        LamusWorkspaceUploader uploaderWithHook = createUploader(mockNodeDataRetriever, fileHandler);
         
         context.checking(new Expectations() {{
             
             oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryNameWithoutSlash)), with(any(String.class))); will(returnValue(firstEntryNameWithoutSlash));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.TRUE));
-            
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockSecondZipEntry));
-
-            // second loop iteration
             
-            allowing(mockSecondZipEntry).getName(); will(returnValue(secondEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(secondEntryFilename)), with(any(String.class))); will(returnValue(secondEntryFilename));
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("directory")), with(any(String.class))); will(returnValue("directory"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file1.cmdi")), with(any(String.class))); will(returnValue("file1.cmdi"));
             oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(secondEntryName);
-            allowing(mockSecondZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockThirdZipEntry));
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file2.cmdi")), with(any(String.class))); will(returnValue("file2.cmdi"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(thirdEntryName);
+            oneOf(mockArchiveFileHelper).correctPathElement(with(equal("file3.cmdi")), with(any(String.class))); will(returnValue("file3.cmdi"));
+            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(fourthEntryName);
             
-            // third loop iteration
+            oneOf(mockWorkspaceDirectoryHandler).createDirectoryInWorkspace(workspaceID, firstEntryName); will(new CreateDirectoryOnInvokeAction(createdDirectory));
             
-            allowing(mockThirdZipEntry).getName(); will(returnValue(thirdEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(thirdEntryFilename)), with(any(String.class))); will(returnValue(thirdEntryFilename));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(thirdEntryName);
-            allowing(mockThirdZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockZipInputStream, createdFile);
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(null));
-        }});
-        
-        ZipUploadResult result = uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-        
-        assertEquals("Result different from expected", expectedResult, result);
-    }
-    
-    @Test
-    public void uploadZipFile_File_NameNotValid() throws IOException, DisallowedPathException {
-        
-        final String firstEntryName = "file with spaces.txt";
-        final String correctedEntryName = "file_with_spaces.txt";
-        
-        context.checking(new Expectations() {{
+            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(equal(firstCreatedFile)));
+                will(throwException(expectedException));
+            never(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(equal(secondCreatedFile)));
+            // depending on timing, the third extraction might start before being aborted
+            allowing(mockWorkspaceFileHandler).copyInputStreamToTargetFile(with(any(InputStream.class)), with(equal(thirdCreatedFile)));
+                will(returnValue(null));
             
-            oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryName)), with(any(String.class))); will(returnValue(correctedEntryName));
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-            // nothing was created, so nothing has to be deleted
+            // no file was extracted, only the created directory is deleted
+            oneOf(mockWorkspaceFileHandler).deleteFile(createdDirectory);
         }});
         
         try {
-            uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
+            uploaderWithHook.uploadZipFileIntoWorkspace(workspaceID, zipFile);
             fail("should have thrown exception");
-        } catch(DisallowedPathException ex) {
-            assertEquals("Problematic filename different from expected", firstEntryName, ex.getProblematicPath());
+        } catch(IOException ex) {
+            assertEquals("Exception different from expected", expectedException, ex);
         }
+        
+        assertTrue("Running extraction should have been interrupted", secondExtractionInterrupted.get());
+        assertTrue("Running extraction should have finished before returning", secondExtractionFinished.get());
     }
     
     @Test
-    public void uploadZipFile_DirectoryAndFile_NameNotAllowed() throws IOException, DisallowedPathException {
+    public void processOneUploadedResourceFile() throws IOException, WorkspaceNodeNotFoundException, URISyntaxException, WorkspaceException, NodeNotFoundException, TypeCheckerException {
         
-        final String firstEntryName = "temp/";
-        final String firstEntryNameWithoutSlash = "temp";
+        final String filename = "someFile.txt";
+        final URI workspaceTopNodeArchiveURI = URI.create(handleProxyPlusPrefixWithSlash + UUID.randomUUID().toString());
+        final File workspaceTopNodeArchiveFile = new File("/archive/some/node.cmdi");
+        final File uploadedFile = new File(workspaceUploadDirectory, filename);
+        final URI uploadedFileURI = uploadedFile.toURI();
+        final URL uploadedFileURL = uploadedFileURI.toURL();
+        final WorkspaceNodeType fileNodeType = WorkspaceNodeType.RESOURCE_WRITTEN;
+        final String fileMimetype = "text/plain";
         
-        final DisallowedPathException expectedException = new DisallowedPathException(firstEntryName, "Path not allowed and so on...");
+        final WorkspaceNode uploadedNode = new LamusWorkspaceNode(workspaceID, null, null);
+        uploadedNode.setName(filename);
+        uploadedNode.setStatus(WorkspaceNodeStatus.UPLOADED);
+        uploadedNode.setType(fileNodeType);
+        uploadedNode.setFormat(fileMimetype);
+        uploadedNode.setWorkspaceURL(uploadedFileURL);
         
-        context.checking(new Expectations() {{
-            
-            oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryNameWithoutSlash)), with(any(String.class))); will(returnValue(firstEntryNameWithoutSlash));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName); will(throwException(expectedException));
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.TRUE));
-            // nothing was created, so nothing has to be deleted
-        }});
+        final Collection<File> uploadedFiles = new ArrayList<>();
+        uploadedFiles.add(mockFile1);
         
-        try {
-            uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-            fail("should have thrown exception");
-        } catch(DisallowedPathException ex) {
-            assertEquals("Exception different from expected", expectedException, ex);
-        }
-    }
-    
-    @Test
-    public void uploadZipFile_MoreThanOneDirectoryAndFile_NameNotAllowed() throws IOException, DisallowedPathException {
+        final Collection<WorkspaceNode> uploadedNodes = new ArrayList<>();
+        uploadedNodes.add(uploadedNode);
         
-        final String firstEntryName = "dir";
-        final File createdDirectory = new File(workspaceUploadDirectory, firstEntryName);
-        final String secondEntryName = "dir/file.cmdi";
-        final String secondEntryFilename = "file.cmdi";
-        final File createdFile = new File(workspaceUploadDirectory, secondEntryName);
-        final String thirdEntryName = "temp/";
-        final String thindEntryNameWithoutSlash = "temp";
+        //only one file in the collection, so only one loop cycle
         
-        final DisallowedPathException expectedException = new DisallowedPathException(firstEntryName, "Path not allowed and so on...");
+        final Collection<ImportProblem> failedLinks = new ArrayList<>();
         
         context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockFirstZipEntry));
-            allowing(mockFirstZipEntry).getName(); will(returnValue(firstEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(firstEntryName)), with(any(String.class))); will(returnValue(firstEntryName));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(firstEntryName);
-            allowing(mockFirstZipEntry).isDirectory(); will(returnValue(Boolean.TRUE));
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            oneOf(mockWorkspaceDao).getWorkspaceTopNode(workspaceID); will(returnValue(mockWorkspaceTopNode));
+            oneOf(mockWorkspaceTopNode).getArchiveURI(); will(returnValue(workspaceTopNodeArchiveURI));
+            oneOf(mockNodeDataRetriever).getNodeLocalFile(workspaceTopNodeArchiveURI);
+                will(returnValue(workspaceTopNodeArchiveFile));
             
-            oneOf(mockWorkspaceDirectoryHandler).createDirectoryInWorkspace(workspaceID, firstEntryName); will(new CreateDirectoryOnInvokeAction(createdDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockSecondZipEntry));
+            //loop
 
-            // second loop iteration
+            oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
+            oneOf(mockFile1).getName(); will(returnValue(filename));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
+                will(returnValue(mockTypecheckedResults));
             
-            allowing(mockSecondZipEntry).getName(); will(returnValue(secondEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(secondEntryFilename)), with(any(String.class))); will(returnValue(secondEntryFilename));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(secondEntryName);
-            allowing(mockSecondZipEntry).isDirectory(); will(returnValue(Boolean.FALSE));
-            oneOf(mockWorkspaceFileHandler).copyInputStreamToTargetFile(mockZipInputStream, createdFile);
-            oneOf(mockZipInputStream).getNextEntry(); will(returnValue(mockThirdZipEntry));
+            oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
+                will(returnValue(Boolean.TRUE));
+            oneOf(mockFile1).getName(); will(returnValue(filename));
+                
+            oneOf(mockTypecheckedResults).getCheckedMimetype(); will(returnValue(fileMimetype));
+            oneOf(mockNodeUtil).convertMimetype(fileMimetype); will(returnValue(fileNodeType));
             
-            // third loop iteration
+            oneOf(mockArchiveFileLocationProvider).isFileInOrphansDirectory(mockFile1); will(returnValue(Boolean.FALSE));
             
-            allowing(mockThirdZipEntry).getName(); will(returnValue(thirdEntryName));
-            oneOf(mockArchiveFileHelper).correctPathElement(with(equal(thindEntryNameWithoutSlash)), with(any(String.class))); will(returnValue(thindEntryNameWithoutSlash));
-            oneOf(mockWorkspaceDirectoryHandler).ensurePathIsAllowed(thirdEntryName); will(throwException(expectedException));
-            allowing(mockThirdZipEntry).isDirectory(); will(returnValue(Boolean.TRUE));
+            oneOf(mockWorkspaceNodeFactory).getNewWorkspaceNodeFromFile(workspaceID, null, null, uploadedFileURL, null, null, fileMimetype, fileNodeType,
+                    WorkspaceNodeStatus.UPLOADED, Boolean.FALSE);
+                will(returnValue(uploadedNode));
+
+            oneOf(mockWorkspaceDao).addWorkspaceNode(uploadedNode);
             
-            // folder and file were created, so will have to be deleted in this case
-            oneOf(mockWorkspaceFileHandler).deleteFile(createdFile);
-            oneOf(mockWorkspaceFileHandler).deleteFile(createdDirectory);
-        }});
-        
-        try {
-            uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-            fail("should have thrown exception");
-        } catch(DisallowedPathException ex) {
-            assertEquals("Exception different from expected", expectedException, ex);
-        }
-    }
-    
-    @Test
-    public void uploadZipFile_ThrowsException() throws IOException, DisallowedPathException {
-        
-        final IOException expectedException = new IOException("some exception message");
-        
-        context.checking(new Expectations() {{
             
-            oneOf(mockWorkspaceDirectoryHandler).getUploadDirectoryForWorkspace(workspaceID); will(returnValue(workspaceUploadDirectory));
-            oneOf(mockZipInputStream).getNextEntry(); will(throwException(expectedException));
+            //check links
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
+                will(returnValue(failedLinks));
         }});
         
-        try {
-            uploader.uploadZipFileIntoWorkspace(workspaceID, mockZipInputStream);
-            fail("should have thrown exception");
-        } catch(IOException ex) {
-            assertEquals("Exception different from expected", expectedException, ex);
-        }
+        Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
+        
+        assertNotNull("Collection with failed uploads should not be null", result);
+        assertTrue("Collection with failed uploads should be empty", result.isEmpty());
     }
     
     @Test
-    public void processOneUploadedResourceFile() throws IOException, WorkspaceNodeNotFoundException, URISyntaxException, WorkspaceException, NodeNotFoundException, TypeCheckerException {
+    public void processOneUploadedResourceFile_WithCopiedFileInfo() throws IOException, WorkspaceNodeNotFoundException, URISyntaxException, WorkspaceException, NodeNotFoundException, TypeCheckerException {
         
         final String filename = "someFile.txt";
         final URI workspaceTopNodeArchiveURI = URI.create(handleProxyPlusPrefixWithSlash + UUID.randomUUID().toString());
@@ -720,6 +727,11 @@ public class LamusWorkspaceUploaderTest {
         final Collection<File> uploadedFiles = new ArrayList<>();
         uploadedFiles.add(mockFile1);
         
+        //information calculated while uploading the file, passed on to the typecheck
+        final CopiedFileInfo copiedFileInfo = new CopiedFileInfo(mockFile1, 10, "0123456789abcdef");
+        final Collection<CopiedFileInfo> copiedFilesInfo = new ArrayList<>();
+        copiedFilesInfo.add(copiedFileInfo);
+        
         final Collection<WorkspaceNode> uploadedNodes = new ArrayList<>();
         uploadedNodes.add(uploadedNode);
         
@@ -739,7 +751,7 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
             oneOf(mockFile1).getName(); will(returnValue(filename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, copiedFileInfo);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -759,11 +771,11 @@ public class LamusWorkspaceUploaderTest {
             
             
             //check links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
                 will(returnValue(failedLinks));
         }});
         
-        Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
+        Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles, copiedFilesInfo);
         
         assertNotNull("Collection with failed uploads should not be null", result);
         assertTrue("Collection with failed uploads should be empty", result.isEmpty());
@@ -810,7 +822,7 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
             oneOf(mockFile1).getName(); will(returnValue(filename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -830,7 +842,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //check links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
                 will(returnValue(failedLinks));
         }});
         
@@ -888,7 +900,7 @@ public class LamusWorkspaceUploaderTest {
             allowing(mockFile1).getName(); will(returnValue(filename));
                 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -919,7 +931,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //check links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(processingContextWithDocument(uploadedFileURL, mockMetadataDocument)));
                 will(returnValue(failedLinks));
         }});
         
@@ -978,7 +990,7 @@ public class LamusWorkspaceUploaderTest {
             allowing(mockFile1).getName(); will(returnValue(filename));
                 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1012,7 +1024,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //check links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(processingContextWithDocument(uploadedFileURL, mockMetadataDocument)));
                 will(returnValue(failedLinks));
         }});
         
@@ -1069,7 +1081,7 @@ public class LamusWorkspaceUploaderTest {
             allowing(mockFile1).getName(); will(returnValue(filename));
                 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1101,7 +1113,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //check links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
                 will(returnValue(failedLinks));
         }});
         
@@ -1162,7 +1174,7 @@ public class LamusWorkspaceUploaderTest {
             allowing(mockFile1).getName(); will(returnValue(filename));
                 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1181,7 +1193,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //still calls method to process links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
         }});
         
         Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
@@ -1249,7 +1261,7 @@ public class LamusWorkspaceUploaderTest {
             allowing(mockFile1).getName(); will(returnValue(filename));
                 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1268,7 +1280,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //still calls method to process links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
         }});
         
         Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
@@ -1339,7 +1351,7 @@ public class LamusWorkspaceUploaderTest {
             allowing(mockFile1).getName(); will(returnValue(filename));
                 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1372,7 +1384,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //still calls method to process links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(processingContextWithDocument(uploadedFileURL, mockMetadataDocument)));
         }});
         
         Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
@@ -1432,7 +1444,7 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
             oneOf(mockFile1).getName(); will(returnValue(filename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1450,7 +1462,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //still calls method to process links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
         }});
         
         Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
@@ -1507,7 +1519,7 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
             oneOf(mockFile1).getName(); will(returnValue(filename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1525,7 +1537,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //still calls method to process links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
         }});
         
         Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
@@ -1597,7 +1609,7 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI1));
             oneOf(mockFile1).getName(); will(returnValue(filename1));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL1, filename1);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL1, filename1, null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1619,14 +1631,14 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile2).toURI(); will(returnValue(uploadedFileURI2));
             oneOf(mockFile2).getName(); will(returnValue(filename2));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL2, filename2);
-                will(returnValue(mockTypecheckedResults));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL2, filename2, null);
+                will(returnValue(mockTypecheckedResults2));
             
-            oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
+            oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults2)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
                 will(returnValue(Boolean.TRUE));
             oneOf(mockFile2).getName(); will(returnValue(filename2));
                 
-            oneOf(mockTypecheckedResults).getCheckedMimetype(); will(returnValue(fileMimetype2));
+            oneOf(mockTypecheckedResults2).getCheckedMimetype(); will(returnValue(fileMimetype2));
             oneOf(mockNodeUtil).convertMimetype(fileMimetype2); will(returnValue(fileNodeType2));
             
             oneOf(mockArchiveFileLocationProvider).isFileInOrphansDirectory(mockFile2); will(returnValue(Boolean.FALSE));
@@ -1639,7 +1651,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //check links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
                 will(returnValue(failedLinks));
         }});
         
@@ -1649,6 +1661,203 @@ public class LamusWorkspaceUploaderTest {
         assertTrue("Collection with failed uploads should be empty", result.isEmpty());
     }
     
+    @Test
+    public void processTwoUploadedFiles_FirstFileCheckedLast() throws InterruptedException, IOException, WorkspaceNodeNotFoundException, URISyntaxException, WorkspaceException, NodeNotFoundException, TypeCheckerException {
+        
+        final URI workspaceTopNodeArchiveURI = URI.create(handleProxyPlusPrefixWithSlash + UUID.randomUUID().toString());
+        final File workspaceTopNodeArchiveFile = new File("/archive/some/node.cmdi");
+        final String filename1 = "someFile.txt";
+        final File uploadedFile1 = new File(workspaceUploadDirectory, filename1);
+        final URI uploadedFileURI1 = uploadedFile1.toURI();
+        final URL uploadedFileURL1 = uploadedFileURI1.toURL();
+        final WorkspaceNodeType fileNodeType1 = WorkspaceNodeType.RESOURCE_WRITTEN;
+        final String fileMimetype1 = "text/plain";
+        
+        final String filename2 = "someOtherFile.jpg";
+        final File uploadedFile2 = new File(workspaceUploadDirectory, filename2);
+        final URI uploadedFileURI2 = uploadedFile2.toURI();
+        final URL uploadedFileURL2 = uploadedFileURI2.toURL();
+        final WorkspaceNodeType fileNodeType2 = WorkspaceNodeType.RESOURCE_IMAGE;
+        final String fileMimetype2 = "image/jpeg";
+        
+        final WorkspaceNode uploadedNode1 = new LamusWorkspaceNode(workspaceID, null, null);
+        uploadedNode1.setName(filename1);
+        uploadedNode1.setStatus(WorkspaceNodeStatus.UPLOADED);
+        uploadedNode1.setType(fileNodeType1);
+        uploadedNode1.setFormat(fileMimetype1);
+        uploadedNode1.setWorkspaceURL(uploadedFileURL1);
+        
+        final WorkspaceNode uploadedNode2 = new LamusWorkspaceNode(workspaceID, null, null);
+        uploadedNode2.setName(filename2);
+        uploadedNode2.setStatus(WorkspaceNodeStatus.UPLOADED);
+        uploadedNode2.setType(fileNodeType2);
+        uploadedNode2.setFormat(fileMimetype2);
+        uploadedNode2.setWorkspaceURL(uploadedFileURL2);
+        
+        final Collection<File> uploadedFiles = new ArrayList<>();
+        uploadedFiles.add(mockFile1);
+        uploadedFiles.add(mockFile2);
+        
+        final Collection<WorkspaceNode> uploadedNodes = new ArrayList<>();
+        uploadedNodes.add(uploadedNode1);
+        uploadedNodes.add(uploadedNode2);
+        
+        //two files in the collection, checked at the same time; the check of the first one only finishes after the second one
+        final CountDownLatch secondFileChecked = new CountDownLatch(1);
+        NodeDataRetriever nodeDataRetriever = withInvocationHook(NodeDataRetriever.class, mockNodeDataRetriever, new InvocationHook() {
+            @Override
+            void beforeInvocation(Method method, Object[] args) throws Exception {
+                if("triggerResourceFileCheck".equals(method.getName()) && filename1.equals(args[1])) {
+                    assertTrue("Second file was not checked in time", secondFileChecked.await(10, TimeUnit.SECONDS));
+                }
+            }
+            @Override
+            void afterInvocation(Method method, Object[] args) {
+                if("triggerResourceFileCheck".equals(method.getName()) && filename2.equals(args[1])) {
+                    secondFileChecked.countDown();
+                }
+            }
+        });
+        LamusWorkspaceUploader uploaderWithHook = createUploader(nodeDataRetriever, mockWorkspaceFileHandler);
+        final Sequence addingNodes = context.sequence("addingNodes");
+        
+        final Collection<ImportProblem> failedLinks = new ArrayList<>();
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            oneOf(mockWorkspaceDao).getWorkspaceTopNode(workspaceID); will(returnValue(mockWorkspaceTopNode));
+            oneOf(mockWorkspaceTopNode).getArchiveURI(); will(returnValue(workspaceTopNodeArchiveURI));
+            oneOf(mockNodeDataRetriever).getNodeLocalFile(workspaceTopNodeArchiveURI);
+                will(returnValue(workspaceTopNodeArchiveFile));
+            
+            //first loop cycle
+
+            oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI1));
+            oneOf(mockFile1).getName(); will(returnValue(filename1));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL1, filename1, null);
+                will(returnValue(mockTypecheckedResults));
+            
+            oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
+                will(returnValue(Boolean.TRUE));
+            oneOf(mockFile1).getName(); will(returnValue(filename1));
+                
+            oneOf(mockTypecheckedResults).getCheckedMimetype(); will(returnValue(fileMimetype1));
+            oneOf(mockNodeUtil).convertMimetype(fileMimetype1); will(returnValue(fileNodeType1));
+            
+            oneOf(mockArchiveFileLocationProvider).isFileInOrphansDirectory(mockFile1); will(returnValue(Boolean.FALSE));
+            
+            oneOf(mockWorkspaceNodeFactory).getNewWorkspaceNodeFromFile(workspaceID, null, null, uploadedFileURL1, null, null, fileMimetype1, fileNodeType1,
+                    WorkspaceNodeStatus.UPLOADED, Boolean.FALSE);
+                will(returnValue(uploadedNode1));
+
+            oneOf(mockWorkspaceDao).addWorkspaceNode(uploadedNode1); inSequence(addingNodes);
+            
+            //second loop cycle
+
+            oneOf(mockFile2).toURI(); will(returnValue(uploadedFileURI2));
+            oneOf(mockFile2).getName(); will(returnValue(filename2));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL2, filename2, null);
+                will(returnValue(mockTypecheckedResults2));
+            
+            oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults2)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
+                will(returnValue(Boolean.TRUE));
+            oneOf(mockFile2).getName(); will(returnValue(filename2));
+                
+            oneOf(mockTypecheckedResults2).getCheckedMimetype(); will(returnValue(fileMimetype2));
+            oneOf(mockNodeUtil).convertMimetype(fileMimetype2); will(returnValue(fileNodeType2));
+            
+            oneOf(mockArchiveFileLocationProvider).isFileInOrphansDirectory(mockFile2); will(returnValue(Boolean.FALSE));
+            
+            oneOf(mockWorkspaceNodeFactory).getNewWorkspaceNodeFromFile(workspaceID, null, null, uploadedFileURL2, null, null, fileMimetype2, fileNodeType2,
+                    WorkspaceNodeStatus.UPLOADED, Boolean.FALSE);
+                will(returnValue(uploadedNode2));
+
+            oneOf(mockWorkspaceDao).addWorkspaceNode(uploadedNode2); inSequence(addingNodes);
+            
+            
+            //check links
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
+                will(returnValue(failedLinks));
+        }});
+        
+        Collection<ImportProblem> result = uploaderWithHook.processUploadedFiles(workspaceID, uploadedFiles);
+        
+        assertNotNull("Collection with failed uploads should not be null", result);
+        assertTrue("Collection with failed uploads should be empty", result.isEmpty());
+    }
+    
+    @Test
+    public void processTwoUploadedFiles_FirstFileCheckFails() throws InterruptedException, IOException, WorkspaceNodeNotFoundException, URISyntaxException, WorkspaceException, NodeNotFoundException, TypeCheckerException {
+        
+        final URI workspaceTopNodeArchiveURI = URI.create(handleProxyPlusPrefixWithSlash + UUID.randomUUID().toString());
+        final File workspaceTopNodeArchiveFile = new File("/archive/some/node.cmdi");
+        final String filename1 = "someFile.txt";
+        final File uploadedFile1 = new File(workspaceUploadDirectory, filename1);
+        final URI uploadedFileURI1 = uploadedFile1.toURI();
+        final URL uploadedFileURL1 = uploadedFileURI1.toURL();
+        
+        final String filename2 = "someOtherFile.jpg";
+        final File uploadedFile2 = new File(workspaceUploadDirectory, filename2);
+        final URI uploadedFileURI2 = uploadedFile2.toURI();
+        final URL uploadedFileURL2 = uploadedFileURI2.toURL();
+        final WorkspaceNodeType fileNodeType2 = WorkspaceNodeType.RESOURCE_IMAGE;
+        final String fileMimetype2 = "image/jpeg";
+        
+        final Collection<File> uploadedFiles = new ArrayList<>();
+        uploadedFiles.add(mockFile1);
+        uploadedFiles.add(mockFile2);
+        
+        //no node is added
+        final Collection<WorkspaceNode> uploadedNodes = new ArrayList<>();
+        
+        final RuntimeException expectedException = new IllegalStateException("some exception message");
+        
+        final Collection<ImportProblem> expectedProblems = new ArrayList<>();
+        expectedProblems.add(new FileImportProblem(mockFile1, "Error processing uploaded file [" + filename1 + "] in workspace " + workspaceID, expectedException));
+        expectedProblems.add(new FileImportProblem(mockFile2, "File [" + filename2 + "] not processed, since the processing of the uploaded files was aborted", null));
+        
+        context.checking(new Expectations() {{
+            
+            oneOf(mockWorkspaceDao).getWorkspace(workspaceID); will(returnValue(mockWorkspace));
+            oneOf(mockWorkspaceDao).getWorkspaceTopNode(workspaceID); will(returnValue(mockWorkspaceTopNode));
+            oneOf(mockWorkspaceTopNode).getArchiveURI(); will(returnValue(workspaceTopNodeArchiveURI));
+            oneOf(mockNodeDataRetriever).getNodeLocalFile(workspaceTopNodeArchiveURI);
+                will(returnValue(workspaceTopNodeArchiveFile));
+            
+            //check of the first file fails unexpectedly
+
+            oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI1));
+            allowing(mockFile1).getName(); will(returnValue(filename1));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL1, filename1, null);
+                will(throwException(expectedException));
+            
+            //the second file is checked at the same time, or its check is skipped
+            
+            allowing(mockFile2).toURI(); will(returnValue(uploadedFileURI2));
+            allowing(mockFile2).getName(); will(returnValue(filename2));
+            allowing(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL2, filename2, null);
+                will(returnValue(mockTypecheckedResults2));
+            allowing(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults2)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
+                will(returnValue(Boolean.TRUE));
+            allowing(mockTypecheckedResults2).getCheckedMimetype(); will(returnValue(fileMimetype2));
+            allowing(mockNodeUtil).convertMimetype(fileMimetype2); will(returnValue(fileNodeType2));
+            allowing(mockArchiveFileLocationProvider).isFileInOrphansDirectory(mockFile2); will(returnValue(Boolean.FALSE));
+            
+            //but no node is added and no file is deleted
+            never(mockWorkspaceDao).addWorkspaceNode(with(any(WorkspaceNode.class)));
+            never(mockWorkspaceFileHandler).deleteFile(with(any(File.class)));
+            
+            //still calls method to process links
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
+                will(returnValue(new ArrayList<ImportProblem>()));
+        }});
+        
+        Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
+        
+        assertEquals("Upload problems different from expected", expectedProblems, result);
+    }
+    
     @Test
     public void processTwoUploadedFiles_LinkingFailed() throws IOException, WorkspaceNodeNotFoundException, URISyntaxException, WorkspaceException, NodeNotFoundException, TypeCheckerException {
         
@@ -1707,7 +1916,7 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI1));
             oneOf(mockFile1).getName(); will(returnValue(filename1));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL1, filename1);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL1, filename1, null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1729,14 +1938,14 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile2).toURI(); will(returnValue(uploadedFileURI2));
             oneOf(mockFile2).getName(); will(returnValue(filename2));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL2, filename2);
-                will(returnValue(mockTypecheckedResults));
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL2, filename2, null);
+                will(returnValue(mockTypecheckedResults2));
             
-            oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
+            oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults2)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
                 will(returnValue(Boolean.TRUE));
             oneOf(mockFile2).getName(); will(returnValue(filename2));
                 
-            oneOf(mockTypecheckedResults).getCheckedMimetype(); will(returnValue(fileMimetype2));
+            oneOf(mockTypecheckedResults2).getCheckedMimetype(); will(returnValue(fileMimetype2));
             oneOf(mockNodeUtil).convertMimetype(fileMimetype2); will(returnValue(fileNodeType2));
             
             oneOf(mockArchiveFileLocationProvider).isFileInOrphansDirectory(mockFile2); will(returnValue(Boolean.FALSE));
@@ -1749,7 +1958,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //check links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
                 will(returnValue(failedLinks));
         }});
         
@@ -1851,7 +2060,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //still calls method to process links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
                 will(returnValue(failedLinks));
         }});
         
@@ -1908,7 +2117,7 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
             oneOf(mockFile1).getName(); will(returnValue(filename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1920,7 +2129,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //still calls method to process links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
         }});
         
         Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
@@ -1976,7 +2185,7 @@ public class LamusWorkspaceUploaderTest {
 
             oneOf(mockFile1).toURI(); will(returnValue(uploadedFileURI));
             oneOf(mockFile1).getName(); will(returnValue(filename));
-            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename);
+            oneOf(mockNodeDataRetriever).triggerResourceFileCheck(uploadedFileURL, filename, (CopiedFileInfo) null);
                 will(returnValue(mockTypecheckedResults));
             
             oneOf(mockNodeDataRetriever).isCheckedResourceArchivable(with(same(mockTypecheckedResults)), with(same(workspaceTopNodeArchiveFile)), with(any(StringBuilder.class)));
@@ -1987,7 +2196,7 @@ public class LamusWorkspaceUploaderTest {
             
             
             //still calls method to process links
-            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(mockWorkspace, uploadedNodes);
+            oneOf(mockWorkspaceUploadHelper).assureLinksInWorkspace(with(same(mockWorkspace)), with(equal(uploadedNodes)), with(emptyProcessingContext()));
         }});
         
         Collection<ImportProblem> result = uploader.processUploadedFiles(workspaceID, uploadedFiles);
@@ -2019,4 +2228,114 @@ public class LamusWorkspaceUploaderTest {
             description.appendValue(result);
         }
     }
+    
+    public static class UploadProcessingContextMatcher extends TypeSafeMatcher<UploadProcessingContext> {
+        private final URL fileURL;
+        private final MetadataDocument document;
+        
+        public UploadProcessingContextMatcher(URL fileURL, MetadataDocument document) {
+            this.fileURL = fileURL;
+            this.document = document;
+        }
+        
+        @Override
+        public boolean matchesSafely(UploadProcessingContext processingContext) {
+            if(document == null) {
+                return processingContext.size() == 0;
+            }
+            return processingContext.size() == 1 && processingContext.getMetadataDocument(fileURL) == document;
+        }
+        
+        @Override
+        public void describeTo(Description description) {
+            if(document == null) {
+                description.appendText("empty processing context");
+            } else {
+                description.appendText("processing context with document ").appendValue(document).appendText(" for ").appendValue(fileURL);
+            }
+        }
+    }
+    
+    private LamusWorkspaceUploader createUploader(NodeDataRetriever nodeDataRetriever, WorkspaceFileHandler workspaceFileHandler) {
+        return new LamusWorkspaceUploader(nodeDataRetriever,
+                mockWorkspaceDirectoryHandler, workspaceFileHandler,
+                mockWorkspaceNodeFactory, mockWorkspaceDao,
+                mockWorkspaceUploadHelper, new ObjectFactory<MetadataAPI>() {
+                    @Override
+                    public MetadataAPI getObject() {
+                        return mockMetadataAPI;
+                    }
+                },
+                mockMetadataApiBridge, mockWorkspaceFileValidator,
+                mockArchiveFileLocationProvider, mockArchiveFileHelper,
+                mockNodeUtil, mockHandleParser, uploadProcessingExecutorService,
+                maxZipUploadEntries, maxZipUploadSizeInMegabytes);
+    }
+    
+    /**
+     * Wraps the given mock, running the hook around each of its invocations.
+     * The hook runs outside of the mockery, so it can wait for other threads
+     * (the synchroniser doesn't let any mock be invoked while another one is being invoked).
+     */
+    private <T> T withInvocationHook(Class<T> type, final T mock, final InvocationHook hook) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                hook.beforeInvocation(method, args);
+                try {
+                    return method.invoke(mock, args);
+                } catch(InvocationTargetException ex) {
+                    throw ex.getCause();
+                } finally {
+                    hook.afterInvocation(method, args);
+                }
+            }
+        }));
+    }
+    
+    private abstract static class InvocationHook {
+        
+        void beforeInvocation(Method method, Object[] args) throws Exception {
+        }
+        
+        void afterInvocation(Method method, Object[] args) {
+        }
+    }
+    
+    private File createZipFile(Map<String, String> entries) throws IOException {
+        File zipFile = testFolder.newFile("upload" + UUID.randomUUID().toString() + ".zip");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(zipFile))) {
+            for(Map.Entry<String, String> entry : entries.entrySet()) {
+                zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+                if(entry.getValue() != null) {
+                    zipOutputStream.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+                zipOutputStream.closeEntry();
+            }
+        }
+        return zipFile;
+    }
+    
+    private String readFile(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+    
+    public class CopyStreamToFileAction implements Action {
+        private final File targetFile;
+
+        public CopyStreamToFileAction(File targetFile) {
+            this.targetFile = targetFile;
+        }
+
+        public Object invoke(Invocation invocation) throws Throwable {
+            InputStream inputStream = (InputStream) invocation.getParameter(0);
+            long size = Files.copy(inputStream, targetFile.toPath());
+            return new CopiedFileInfo(targetFile, size, "");
+        }
+
+        public void describeTo(Description description) {
+            description.appendText("copies stream to ");
+            description.appendValue(targetFile);
+        }
+    }
 }
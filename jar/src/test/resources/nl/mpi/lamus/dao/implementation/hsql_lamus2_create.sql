@@ -50,6 +50,17 @@ CREATE TABLE node_replacement (
         new_node_id integer NOT NULL,
         PRIMARY KEY (old_node_id, new_node_id));
 
+CREATE TABLE typecheck_result (
+        checksum varchar(255) NOT NULL,
+        file_size bigint NOT NULL,
+        file_extension varchar(255) NOT NULL,
+        configuration_version varchar(255) NOT NULL,
+        mimetype varchar(255) NOT NULL,
+        analysis varchar(4096),
+        judgement varchar(255) NOT NULL,
+        checked_on timestamp NOT NULL,
+        PRIMARY KEY (checksum, file_size, file_extension, configuration_version));
+
 ALTER TABLE node ADD CONSTRAINT workspace_node FOREIGN KEY (workspace_id) REFERENCES workspace (workspace_id);
 
 ALTER TABLE node_lock ADD CONSTRAINT node_lock_workspace FOREIGN KEY (workspace_id) REFERENCES workspace (workspace_id);
@@ -58,4 +69,11 @@ ALTER TABLE node_link ADD CONSTRAINT node_link_parent FOREIGN KEY (parent_worksp
 ALTER TABLE node_link ADD CONSTRAINT node_link_child FOREIGN KEY (child_workspace_node_id) REFERENCES node (workspace_node_id);
 
 ALTER TABLE node_replacement ADD CONSTRAINT node_replacement_old FOREIGN KEY (old_node_id) REFERENCES node (workspace_node_id);
-ALTER TABLE node_replacement ADD CONSTRAINT node_replacement_new FOREIGN KEY (new_node_id) REFERENCES node (workspace_node_id);
\ No newline at end of file
+ALTER TABLE node_replacement ADD CONSTRAINT node_replacement_new FOREIGN KEY (new_node_id) REFERENCES node (workspace_node_id);
+CREATE INDEX workspace_user_status_idx ON workspace (user_id, status);
+CREATE INDEX workspace_status_idx ON workspace (status);
+CREATE INDEX node_workspace_idx ON node (workspace_id);
+CREATE INDEX node_archive_uri_idx ON node (archive_uri);
+CREATE INDEX node_lock_workspace_idx ON node_lock (workspace_id);
+CREATE INDEX node_link_child_idx ON node_link (child_workspace_node_id);
+CREATE INDEX node_replacement_new_idx ON node_replacement (new_node_id);
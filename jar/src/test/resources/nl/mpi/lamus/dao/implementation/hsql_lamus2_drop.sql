@@ -2,4 +2,5 @@ DROP TABLE workspace IF EXISTS;
 DROP TABLE node IF EXISTS;
 DROP TABLE node_lock IF EXISTS;
 DROP TABLE node_link IF EXISTS;
-DROP TABLE node_replacement IF EXISTS;
\ No newline at end of file
+DROP TABLE node_replacement IF EXISTS;
+DROP TABLE typecheck_result IF EXISTS;
@@ -30,4 +30,10 @@ public interface UnfinishedWorkspacesChecker {
      * the finalisation of the workspace.
      */
     public void checkAndFinaliseWorkspaces() throws CrawlerStateRetrievalException;
+    
+    /**
+     * Checks if there are workspaces which were deleted
+     * but whose data was not removed yet, triggering its removal.
+     */
+    public void purgeDeletedWorkspaces();
 }
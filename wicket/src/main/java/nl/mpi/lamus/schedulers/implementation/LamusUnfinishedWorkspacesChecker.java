@@ -5,6 +5,7 @@ package nl.mpi.lamus.schedulers.implementation;
 import nl.mpi.lamus.exception.CrawlerStateRetrievalException;
 import nl.mpi.lamus.workspace.exporting.WorkspaceCrawlerChecker;
 import nl.mpi.lamus.schedulers.UnfinishedWorkspacesChecker;
+import nl.mpi.lamus.workspace.management.WorkspacePurgeQueue;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
@@ -34,22 +35,44 @@ import org.springframework.stereotype.Component;
 public class LamusUnfinishedWorkspacesChecker implements UnfinishedWorkspacesChecker {
 
     private final WorkspaceCrawlerChecker workspaceCrawlerChecker;
+    private final WorkspacePurgeQueue workspacePurgeQueue;
     
     @Autowired
-    public LamusUnfinishedWorkspacesChecker(WorkspaceCrawlerChecker wsCrawlerChecker) {
+    public LamusUnfinishedWorkspacesChecker(WorkspaceCrawlerChecker wsCrawlerChecker,
+            WorkspacePurgeQueue wsPurgeQueue) {
         workspaceCrawlerChecker = wsCrawlerChecker;
+        workspacePurgeQueue = wsPurgeQueue;
     }
     
     /**
      * This method is supposed to run periodically in order
      * to check and finalise workspaces as needed.
+     * It runs often, since the interval between the requests for the state
+     * of each crawler is decided by the WorkspaceCrawlerChecker: the delay here
+     * should not be longer than 'crawler_poll_min_interval_seconds' (default 10),
+     * otherwise small workspaces would wait for this delay instead.
+     * A run in which no crawler is due only queries the workspace table
+     * (by status, which is indexed), so the shorter delay costs little.
      * 
      * @see WorkspaceFinaliser#checkAndFinaliseWorkspaces()
      */
     @Override
-    @Scheduled(fixedDelay = 60000)
+    @Scheduled(fixedDelay = 10000)
     public void checkAndFinaliseWorkspaces() throws CrawlerStateRetrievalException {
         workspaceCrawlerChecker.checkCrawlersForSubmittedWorkspaces();
     }
     
+    /**
+     * This method is supposed to run periodically in order
+     * to resume the purge of deleted workspaces which was interrupted
+     * (e.g. by a restart of the application) or failed.
+     * 
+     * @see UnfinishedWorkspacesChecker#purgeDeletedWorkspaces()
+     */
+    @Override
+    @Scheduled(fixedDelay = 600000)
+    public void purgeDeletedWorkspaces() {
+        workspacePurgeQueue.purgeWorkspacesMarkedForDeletion();
+    }
+    
 }
@@ -18,14 +18,13 @@ package nl.mpi.lamus.web.components;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipInputStream;
 import nl.mpi.lamus.archive.implementation.LamusArchiveFileHelper;
 import nl.mpi.lamus.exception.DisallowedPathException;
 import nl.mpi.lamus.exception.WorkspaceException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.service.WorkspaceService;
 import nl.mpi.lamus.web.pages.LamusPage;
 import nl.mpi.lamus.web.session.LamusSession;
@@ -78,6 +77,26 @@ public class UploadPanel extends FeedbackPanelAwarePanel<Workspace> {
         add(progressUploadForm);
     }
     
+    /**
+     * Gets the uploaded data as a file of its own, which is moved from where
+     * it was already spooled by Wicket (and only written again if it was kept in memory).
+     */
+    private File getSpooledFile(FileUpload upload) throws IOException {
+        try {
+            return upload.writeToTempFile();
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Couldn't store uploaded file " + upload.getClientFileName(), ex);
+        }
+    }
+    
+    private void deleteSpooledFile(File spooledFile) {
+        if(spooledFile != null && spooledFile.exists() && !spooledFile.delete()) {
+            log.warn("Couldn't delete temporary file " + spooledFile);
+        }
+    }
+    
 
     private class FileUploadForm extends Form<Void> {
 
@@ -102,6 +121,8 @@ public class UploadPanel extends FeedbackPanelAwarePanel<Workspace> {
                         File uploadDirectory = workspaceService.getWorkspaceUploadDirectory(model.getObject().getWorkspaceID());
 
                         Collection<File> copiedFiles = new ArrayList<>();
+                        // calculated while uploading, to be reused when processing the files
+                        Collection<CopiedFileInfo> copiedFilesInfo = new ArrayList<>();
                         
                         Collection<ImportProblem> uploadProblems = new ArrayList<>();
                         int failedUploadsCount = 0;
@@ -119,23 +140,27 @@ public class UploadPanel extends FeedbackPanelAwarePanel<Workspace> {
 
                             if (newFile.getName().endsWith(".zip")) {
 
+                                File spooledZipFile = null;
                                 try {
-                                    InputStream newInputStream = upload.getInputStream();
-                                    try (ZipInputStream zipInputStream = new ZipInputStream(newInputStream)) {
-                                        
-                                        ZipUploadResult zipUploadResults =
-                                                workspaceService.uploadZipFileIntoWorkspace(LamusSession.get().getUserId(), model.getObject().getWorkspaceID(), zipInputStream, newFile.getName());
-                                        
-                                        copiedFiles.addAll(zipUploadResults.getSuccessfulUploads());
-                                        uploadProblems.addAll(zipUploadResults.getFailedUploads());
-                                        failedUploadsCount += uploadProblems.size();
-                                    }
+                                    // the zip is kept on disk, so that its entries can then be read in any order
+                                    spooledZipFile = getSpooledFile(upload);
+                                    
+                                    ZipUploadResult zipUploadResults =
+                                            workspaceService.uploadZipFileIntoWorkspace(LamusSession.get().getUserId(), model.getObject().getWorkspaceID(), spooledZipFile, newFile.getName());
+                                    
+                                    copiedFiles.addAll(zipUploadResults.getSuccessfulUploads());
+                                    copiedFilesInfo.addAll(zipUploadResults.getCopiedFilesInfo());
+                                    uploadProblems.addAll(zipUploadResults.getFailedUploads());
+                                    failedUploadsCount += uploadProblems.size();
 
                                 } catch (IOException | DisallowedPathException ex) {
                                     UploadPanel.this.error(ex.getMessage());
+                                } finally {
+                                    deleteSpooledFile(spooledZipFile);
                                 }
                             } else {
 
+                                File spooledFile = null;
                                 try {
                                     if(newFile.exists()) {
                                         uploadProblems.add(new FileImportProblem(newFile, "Uploaded file with the same path already exists.", null));
@@ -143,13 +168,19 @@ public class UploadPanel extends FeedbackPanelAwarePanel<Workspace> {
                                         continue;
                                     }
                                     
-                                    File tempCopiedFile =
-                                            workspaceService.uploadFileIntoWorkspace(LamusSession.get().getUserId(), model.getObject().getWorkspaceID(), upload.getInputStream(), newFile.getName());
+                                    // the file is moved into the workspace instead of being written again
+                                    spooledFile = getSpooledFile(upload);
+                                    
+                                    CopiedFileInfo tempCopiedFileInfo =
+                                            workspaceService.uploadFileIntoWorkspace(LamusSession.get().getUserId(), model.getObject().getWorkspaceID(), spooledFile, newFile.getName());
                                     
-                                    copiedFiles.add(tempCopiedFile);
+                                    copiedFiles.add(tempCopiedFileInfo.getFile());
+                                    copiedFilesInfo.add(tempCopiedFileInfo);
 
                                 } catch (IOException | DisallowedPathException ex) {
                                     UploadPanel.this.error(ex.getMessage());
+                                } finally {
+                                    deleteSpooledFile(spooledFile);
                                 }
                             }
                         }
@@ -160,7 +191,7 @@ public class UploadPanel extends FeedbackPanelAwarePanel<Workspace> {
                         }
                         
                         try {
-                            uploadProblems.addAll(workspaceService.processUploadedFiles(LamusSession.get().getUserId(), model.getObject().getWorkspaceID(), copiedFiles));
+                            uploadProblems.addAll(workspaceService.processUploadedFiles(LamusSession.get().getUserId(), model.getObject().getWorkspaceID(), copiedFiles, copiedFilesInfo));
 
                             int failedLinksCount = 0;
                             
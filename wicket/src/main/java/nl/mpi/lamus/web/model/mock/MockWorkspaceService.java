@@ -18,17 +18,16 @@ package nl.mpi.lamus.web.model.mock;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
-import java.util.zip.ZipInputStream;
 import nl.mpi.lamus.exception.CrawlerInvocationException;
 import nl.mpi.lamus.exception.ProtectedNodeException;
 import nl.mpi.lamus.exception.WorkspaceAccessException;
 import nl.mpi.lamus.exception.WorkspaceException;
 import nl.mpi.lamus.exception.WorkspaceNotFoundException;
+import nl.mpi.lamus.filesystem.CopiedFileInfo;
 import nl.mpi.lamus.service.WorkspaceTreeService;
 import nl.mpi.lamus.workspace.model.Workspace;
 import nl.mpi.lamus.workspace.model.WorkspaceNode;
@@ -210,7 +209,7 @@ public class MockWorkspaceService implements WorkspaceTreeService {
     }
 
     @Override
-    public Collection<ImportProblem> processUploadedFiles(String userID, int workspaceID, Collection<File> uploadedFiles) {
+    public Collection<ImportProblem> processUploadedFiles(String userID, int workspaceID, Collection<File> uploadedFiles, Collection<CopiedFileInfo> copiedFilesInfo) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
@@ -231,17 +230,17 @@ public class MockWorkspaceService implements WorkspaceTreeService {
     }
 
     @Override
-    public ZipUploadResult uploadZipFileIntoWorkspace(String userID, int workspaceID, ZipInputStream zipInputStream, String filename) throws IOException {
+    public CopiedFileInfo uploadFileIntoWorkspace(String userID, int workspaceID, File uploadedFile, String filename) throws IOException {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
     @Override
-    public void deleteTreeNodes(String userID, Collection<WorkspaceTreeNode> nodes) throws WorkspaceNotFoundException, WorkspaceAccessException, WorkspaceException, ProtectedNodeException {
+    public ZipUploadResult uploadZipFileIntoWorkspace(String userID, int workspaceID, File zipFile, String filename) throws IOException {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
     @Override
-    public File uploadFileIntoWorkspace(String userID, int workspaceID, InputStream inputStream, String filename) throws IOException {
+    public void deleteTreeNodes(String userID, Collection<WorkspaceTreeNode> nodes) throws WorkspaceNotFoundException, WorkspaceAccessException, WorkspaceException, ProtectedNodeException {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
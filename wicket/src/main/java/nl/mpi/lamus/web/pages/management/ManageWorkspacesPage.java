@@ -87,24 +87,30 @@ public class ManageWorkspacesPage extends LamusPage {
             @Override
             public void populateItem(Item<ICellPopulator<Workspace>> cellItem, String componentId, IModel<Workspace> model) {
                 
-                Link<Workspace> deleteLink = new Link<Workspace>(componentId, model) {
+                // a workspace being deleted has no actions left
+                if(!WorkspaceStatus.DELETING.equals(model.getObject().getStatus())) {
+                    
+                    Link<Workspace> deleteLink = new Link<Workspace>(componentId, model) {
 
-                    @Override
-                    public void onClick() {
-                        try {
-                            workspaceService.deleteWorkspace(LamusSession.get().getUserId(), getModelObject().getWorkspaceID(), false);
+                        @Override
+                        public void onClick() {
+                            try {
+                                workspaceService.deleteWorkspace(LamusSession.get().getUserId(), getModelObject().getWorkspaceID(), false);
                             
-                            refreshDataView();
+                                refreshDataView();
                             
-                        } catch (WorkspaceNotFoundException | WorkspaceAccessException | WorkspaceExportException | IOException ex) {
-                            Session.get().error(ex.getMessage());
+                            } catch (WorkspaceNotFoundException | WorkspaceAccessException | WorkspaceExportException | IOException ex) {
+                                Session.get().error(ex.getMessage());
+                            }
                         }
-                    }
                     
-                };
-                deleteLink.setBody(Model.of(getLocalizer().getString("management_table_delete_button", ManageWorkspacesPage.this)));
-                deleteLink.add(AttributeModifier.append("class", new Model<>("tableActionLink")));
-                cellItem.add(deleteLink);
+                    };
+                    deleteLink.setBody(Model.of(getLocalizer().getString("management_table_delete_button", ManageWorkspacesPage.this)));
+                    deleteLink.add(AttributeModifier.append("class", new Model<>("tableActionLink")));
+                    cellItem.add(deleteLink);
+                } else {
+                    cellItem.add(new Label(componentId));
+                }
             }
         });
         
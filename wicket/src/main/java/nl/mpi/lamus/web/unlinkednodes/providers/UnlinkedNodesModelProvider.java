@@ -17,6 +17,7 @@
 package nl.mpi.lamus.web.unlinkednodes.providers;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import nl.mpi.archiving.tree.GenericTreeModelListener;
@@ -43,6 +44,9 @@ public class UnlinkedNodesModelProvider implements MultiRootTreeModelProvider<Wo
     
     private final int workspaceID;
     
+    // roots are retrieved once per request and discarded on detach
+    private transient List<WorkspaceTreeNode> unlinkedRoots;
+    
     
     public UnlinkedNodesModelProvider(WorkspaceTreeService wsService, int wsID) {
         this.workspaceService = wsService;
@@ -83,19 +87,22 @@ public class UnlinkedNodesModelProvider implements MultiRootTreeModelProvider<Wo
 
     @Override
     public void onDetach() {
-        // Do no thing by default, can be overridden
+        this.unlinkedRoots = null;
     }
     
 
     @Override
     public Iterator<? extends WorkspaceTreeNode> getRoots() {
         
-        return this.workspaceService.listUnlinkedTreeNodes("", workspaceID).iterator();
+        if(this.unlinkedRoots == null) {
+            this.unlinkedRoots = this.workspaceService.listUnlinkedTreeNodes("", workspaceID);
+        }
+        return this.unlinkedRoots.iterator();
     }
 
     @Override
     public boolean hasChildren(WorkspaceTreeNode t) {
-        return !t.getChildren().isEmpty();
+        return t.getChildCount() > 0;
     }
 
     @Override
@@ -110,7 +117,7 @@ public class UnlinkedNodesModelProvider implements MultiRootTreeModelProvider<Wo
 
     @Override
     public void detach() {
-        // Do no thing by default, can be overridden
+        this.unlinkedRoots = null;
     }
 
     @Override
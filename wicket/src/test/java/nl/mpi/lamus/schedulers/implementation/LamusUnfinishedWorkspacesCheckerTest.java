@@ -21,6 +21,7 @@ package nl.mpi.lamus.schedulers.implementation;
 import nl.mpi.lamus.exception.CrawlerStateRetrievalException;
 import nl.mpi.lamus.workspace.exporting.WorkspaceCrawlerChecker;
 import nl.mpi.lamus.schedulers.UnfinishedWorkspacesChecker;
+import nl.mpi.lamus.workspace.management.WorkspacePurgeQueue;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -38,6 +39,7 @@ import org.mockito.MockitoAnnotations;
 public class LamusUnfinishedWorkspacesCheckerTest {
     
     @Mock WorkspaceCrawlerChecker mockWorkspaceCrawlerChecker;
+    @Mock WorkspacePurgeQueue mockWorkspacePurgeQueue;
     
     private UnfinishedWorkspacesChecker unfinishedWorkspacesChecker;
     
@@ -58,7 +60,7 @@ public class LamusUnfinishedWorkspacesCheckerTest {
         
         MockitoAnnotations.initMocks(this);
         
-        unfinishedWorkspacesChecker = new LamusUnfinishedWorkspacesChecker(mockWorkspaceCrawlerChecker);
+        unfinishedWorkspacesChecker = new LamusUnfinishedWorkspacesChecker(mockWorkspaceCrawlerChecker, mockWorkspacePurgeQueue);
     }
     
     @After
@@ -90,4 +92,12 @@ public class LamusUnfinishedWorkspacesCheckerTest {
         
         verify(mockWorkspaceCrawlerChecker).checkCrawlersForSubmittedWorkspaces();
     }
+    
+    @Test
+    public void purgeDeletedWorkspaces() {
+        
+        unfinishedWorkspacesChecker.purgeDeletedWorkspaces();
+        
+        verify(mockWorkspacePurgeQueue).purgeWorkspacesMarkedForDeletion();
+    }
 }
\ No newline at end of file